@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.videoplayer.benchmark;
+
+import android.net.Uri;
+import androidx.annotation.Nullable;
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.example.videoplayer.common.C;
+import com.example.videoplayer.datasource.AesCipherDataSource;
+import com.example.videoplayer.datasource.AesFlushingCipher;
+import com.example.videoplayer.datasource.ByteArrayDataSource;
+import com.example.videoplayer.datasource.DataSpec;
+import java.io.IOException;
+import java.util.Random;
+import javax.crypto.Cipher;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Benchmarks decrypting encrypted data with {@link AesCipherDataSource}, with and without reading
+ * ahead, for the small reads that extractors typically make.
+ */
+@RunWith(AndroidJUnit4.class)
+public final class AesCipherBenchmark {
+
+  private static final int DATA_LENGTH = 4 * 1024 * 1024;
+  private static final int READ_SIZE = 4 * 1024;
+  private static final int READ_AHEAD_SIZE = 256 * 1024;
+  private static final byte[] SECRET_KEY = new byte[16];
+  private static final String CACHE_KEY = "key";
+
+  @Rule public final BenchmarkRule benchmarkRule = new BenchmarkRule();
+  @Rule public final WorkloadRecorder workloadRecorder = new WorkloadRecorder();
+
+  @Test
+  public void decrypt_perRead() throws IOException {
+    benchmarkDecryption(/* readAheadBuffer= */ null);
+  }
+
+  @Test
+  public void decrypt_readAhead() throws IOException {
+    benchmarkDecryption(new byte[READ_AHEAD_SIZE]);
+  }
+
+  private void benchmarkDecryption(@Nullable byte[] readAheadBuffer) throws IOException {
+    byte[] data = new byte[DATA_LENGTH];
+    new Random(/* seed= */ 0).nextBytes(data);
+    new AesFlushingCipher(Cipher.ENCRYPT_MODE, SECRET_KEY, CACHE_KEY, /* offset= */ 0)
+        .updateInPlace(data, /* offset= */ 0, data.length);
+    DataSpec dataSpec =
+        new DataSpec.Builder().setUri(Uri.parse("cache://media")).setKey(CACHE_KEY).build();
+    AesCipherDataSource dataSource =
+        new AesCipherDataSource(SECRET_KEY, new ByteArrayDataSource(data), readAheadBuffer);
+    byte[] buffer = new byte[READ_SIZE];
+    workloadRecorder.setWorkload(DATA_LENGTH, /* samplesPerOperation= */ 0);
+    BenchmarkState state = benchmarkRule.getState();
+    while (state.keepRunning()) {
+      dataSource.open(dataSpec);
+      while (dataSource.read(buffer, /* offset= */ 0, buffer.length) != C.RESULT_END_OF_INPUT) {
+        // Do nothing.
+      }
+      dataSource.close();
+    }
+  }
+}
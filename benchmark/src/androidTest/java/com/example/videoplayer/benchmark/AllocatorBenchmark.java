@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.videoplayer.benchmark;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.example.videoplayer.exoplayer.upstream.Allocation;
+import com.example.videoplayer.exoplayer.upstream.DefaultAllocator;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Benchmarks {@link DefaultAllocator} when several threads allocate and release concurrently, as
+ * the loaders of several renderers' sample queues do, and when allocations are released on a
+ * different thread from the one that allocated them, as happens between a loading thread and the
+ * playback thread.
+ *
+ * <p>Each operation allocates and releases a fixed number of allocations on the measuring thread.
+ * The allocator scales with the thread count if the time per operation stays flat.
+ */
+@RunWith(AndroidJUnit4.class)
+public final class AllocatorBenchmark {
+
+  private static final int ALLOCATION_SIZE = 64 * 1024;
+  private static final int ALLOCATIONS_PER_OPERATION = 64;
+
+  @Rule public final BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+  @Test
+  public void allocateRelease_1Thread() throws InterruptedException {
+    benchmarkAllocateRelease(/* threadCount= */ 1);
+  }
+
+  @Test
+  public void allocateRelease_2Threads() throws InterruptedException {
+    benchmarkAllocateRelease(/* threadCount= */ 2);
+  }
+
+  @Test
+  public void allocateRelease_4Threads() throws InterruptedException {
+    benchmarkAllocateRelease(/* threadCount= */ 4);
+  }
+
+  @Test
+  public void allocateRelease_8Threads() throws InterruptedException {
+    benchmarkAllocateRelease(/* threadCount= */ 8);
+  }
+
+  @Test
+  public void allocate_releasedOnOtherThread() throws InterruptedException {
+    DefaultAllocator allocator = createAllocator();
+    BlockingQueue<Allocation[]> releaseQueue = new ArrayBlockingQueue<>(/* capacity= */ 4);
+    Thread releasingThread =
+        new Thread(
+            () -> {
+              try {
+                while (true) {
+                  releaseAll(allocator, releaseQueue.take());
+                }
+              } catch (InterruptedException e) {
+                // Stop releasing.
+              }
+            });
+    releasingThread.start();
+    try {
+      BenchmarkState state = benchmarkRule.getState();
+      while (state.keepRunning()) {
+        Allocation[] allocations = new Allocation[ALLOCATIONS_PER_OPERATION];
+        for (int i = 0; i < allocations.length; i++) {
+          allocations[i] = allocator.allocate();
+        }
+        releaseQueue.put(allocations);
+      }
+    } finally {
+      releasingThread.interrupt();
+      releasingThread.join();
+    }
+  }
+
+  private void benchmarkAllocateRelease(int threadCount) throws InterruptedException {
+    DefaultAllocator allocator = createAllocator();
+    List<Thread> threads = new ArrayList<>();
+    // The measuring thread is one of the allocating threads.
+    for (int i = 1; i < threadCount; i++) {
+      threads.add(new AllocatingThread(allocator));
+    }
+    for (int i = 0; i < threads.size(); i++) {
+      threads.get(i).start();
+    }
+    try {
+      Allocation[] allocations = new Allocation[ALLOCATIONS_PER_OPERATION];
+      BenchmarkState state = benchmarkRule.getState();
+      while (state.keepRunning()) {
+        allocateAndRelease(allocator, allocations);
+      }
+    } finally {
+      for (int i = 0; i < threads.size(); i++) {
+        threads.get(i).interrupt();
+      }
+      for (int i = 0; i < threads.size(); i++) {
+        threads.get(i).join();
+      }
+    }
+  }
+
+  private static DefaultAllocator createAllocator() {
+    return new DefaultAllocator(
+        /* trimOnReset= */ true,
+        ALLOCATION_SIZE,
+        /* initialAllocationCount= */ 0,
+        /* useDirectBuffers= */ true);
+  }
+
+  private static void allocateAndRelease(DefaultAllocator allocator, Allocation[] allocations) {
+    for (int i = 0; i < allocations.length; i++) {
+      allocations[i] = allocator.allocate();
+    }
+    releaseAll(allocator, allocations);
+  }
+
+  private static void releaseAll(DefaultAllocator allocator, Allocation[] allocations) {
+    for (int i = 0; i < allocations.length; i++) {
+      allocator.release(allocations[i]);
+    }
+  }
+
+  private static final class AllocatingThread extends Thread {
+
+    private final DefaultAllocator allocator;
+    private final Allocation[] allocations;
+
+    public AllocatingThread(DefaultAllocator allocator) {
+      this.allocator = allocator;
+      allocations = new Allocation[ALLOCATIONS_PER_OPERATION];
+    }
+
+    @Override
+    public void run() {
+      while (!isInterrupted()) {
+        allocateAndRelease(allocator, allocations);
+      }
+    }
+  }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.videoplayer.benchmark;
+
+import android.net.Uri;
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.example.videoplayer.datasource.ByteArrayDataSource;
+import com.example.videoplayer.datasource.DataSource;
+import com.example.videoplayer.datasource.DataSpec;
+import com.example.videoplayer.exoplayer.upstream.DefaultBandwidthMeter;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Benchmarks reporting transfers to a {@link DefaultBandwidthMeter}, as loaders do on every read,
+ * while other threads report transfers concurrently.
+ */
+@RunWith(AndroidJUnit4.class)
+public final class BandwidthMeterBenchmark {
+
+  private static final int TRANSFER_THREAD_COUNT = 8;
+  private static final int READS_PER_TRANSFER = 100;
+  private static final int READ_SIZE = 16 * 1024;
+
+  @Rule public final BenchmarkRule benchmarkRule = new BenchmarkRule();
+  @Rule public final WorkloadRecorder workloadRecorder = new WorkloadRecorder();
+
+  @Test
+  public void transfers_uncontended() throws InterruptedException {
+    benchmarkTransfers(/* concurrentThreadCount= */ 0);
+  }
+
+  @Test
+  public void transfers_eightThreads() throws InterruptedException {
+    // The measuring thread is one of the transfer threads.
+    benchmarkTransfers(/* concurrentThreadCount= */ TRANSFER_THREAD_COUNT - 1);
+  }
+
+  private void benchmarkTransfers(int concurrentThreadCount) throws InterruptedException {
+    // A null context disables network type detection, so that the estimate isn't reset.
+    DefaultBandwidthMeter bandwidthMeter =
+        new DefaultBandwidthMeter.Builder(/* context= */ null).build();
+    DataSpec dataSpec = new DataSpec(Uri.parse("https://example.test/media"));
+    List<TransferThread> transferThreads = new ArrayList<>();
+    for (int i = 0; i < concurrentThreadCount; i++) {
+      TransferThread transferThread = new TransferThread(bandwidthMeter, dataSpec);
+      transferThreads.add(transferThread);
+      transferThread.start();
+    }
+    DataSource source = new ByteArrayDataSource(new byte[1]);
+    workloadRecorder.setWorkload(
+        /* bytesPerOperation= */ (long) READS_PER_TRANSFER * READ_SIZE,
+        /* samplesPerOperation= */ 0);
+    try {
+      BenchmarkState state = benchmarkRule.getState();
+      while (state.keepRunning()) {
+        transfer(bandwidthMeter, source, dataSpec);
+      }
+    } finally {
+      for (int i = 0; i < transferThreads.size(); i++) {
+        transferThreads.get(i).interrupt();
+      }
+      for (int i = 0; i < transferThreads.size(); i++) {
+        transferThreads.get(i).join();
+      }
+    }
+  }
+
+  /** Reports a transfer, polling the estimate on each read as adaptive track selections do. */
+  private static long transfer(
+      DefaultBandwidthMeter bandwidthMeter, DataSource source, DataSpec dataSpec) {
+    long estimateSum = 0;
+    bandwidthMeter.onTransferStart(source, dataSpec, /* isNetwork= */ true);
+    for (int i = 0; i < READS_PER_TRANSFER; i++) {
+      bandwidthMeter.onBytesTransferred(source, dataSpec, /* isNetwork= */ true, READ_SIZE);
+      estimateSum += bandwidthMeter.getBitrateEstimate();
+    }
+    bandwidthMeter.onTransferEnd(source, dataSpec, /* isNetwork= */ true);
+    return estimateSum;
+  }
+
+  private static final class TransferThread extends Thread {
+
+    private final DefaultBandwidthMeter bandwidthMeter;
+    private final DataSpec dataSpec;
+    private final DataSource source;
+
+    public TransferThread(DefaultBandwidthMeter bandwidthMeter, DataSpec dataSpec) {
+      this.bandwidthMeter = bandwidthMeter;
+      this.dataSpec = dataSpec;
+      source = new ByteArrayDataSource(new byte[1]);
+    }
+
+    @Override
+    public void run() {
+      while (!isInterrupted()) {
+        transfer(bandwidthMeter, source, dataSpec);
+      }
+    }
+  }
+}
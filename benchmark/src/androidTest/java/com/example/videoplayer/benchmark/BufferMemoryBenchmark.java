@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.videoplayer.benchmark;
+
+import static com.example.videoplayer.common.util.Assertions.checkState;
+
+import android.os.Build;
+import android.os.Debug;
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.example.videoplayer.common.C;
+import com.example.videoplayer.common.Format;
+import com.example.videoplayer.common.MimeTypes;
+import com.example.videoplayer.common.util.ParsableByteArray;
+import com.example.videoplayer.decoder.DecoderInputBuffer;
+import com.example.videoplayer.exoplayer.DefaultLoadControl;
+import com.example.videoplayer.exoplayer.FormatHolder;
+import com.example.videoplayer.exoplayer.source.SampleQueue;
+import com.example.videoplayer.exoplayer.upstream.DefaultAllocator;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Benchmarks filling a {@link SampleQueue} up to the {@link DefaultLoadControl} buffer size and
+ * reading it out into a direct {@link DecoderInputBuffer}, as a renderer does, with the queue's
+ * allocations backed by byte arrays or by direct buffers.
+ *
+ * <p>Each sample written is accompanied by a short-lived allocation, standing in for the garbage
+ * that the rest of the app creates while media is buffered. The Java heap retained by the buffered
+ * media and the garbage collections per operation are recorded by {@link WorkloadRecorder}
+ * alongside the time per operation. Retaining the buffer on the Java heap makes collections more
+ * frequent, while direct buffers keep it off the heap.
+ */
+@RunWith(AndroidJUnit4.class)
+public final class BufferMemoryBenchmark {
+
+  private static final int SAMPLE_SIZE = 16 * 1024;
+  private static final int GARBAGE_PER_SAMPLE = 4 * 1024;
+  private static final long SAMPLE_DURATION_US = 33_333;
+
+  @Rule public final BenchmarkRule benchmarkRule = new BenchmarkRule();
+  @Rule public final WorkloadRecorder workloadRecorder = new WorkloadRecorder();
+
+  /** Holds the most recent garbage allocation, so that it isn't optimized away. */
+  private volatile byte[] garbage;
+
+  @Test
+  public void audioBuffer_heap() {
+    benchmarkBuffer(DefaultLoadControl.DEFAULT_AUDIO_BUFFER_SIZE, /* useDirectBuffers= */ false);
+  }
+
+  @Test
+  public void audioBuffer_direct() {
+    benchmarkBuffer(DefaultLoadControl.DEFAULT_AUDIO_BUFFER_SIZE, /* useDirectBuffers= */ true);
+  }
+
+  @Test
+  public void videoBuffer_heap() {
+    benchmarkBuffer(DefaultLoadControl.DEFAULT_VIDEO_BUFFER_SIZE, /* useDirectBuffers= */ false);
+  }
+
+  @Test
+  public void videoBuffer_direct() {
+    benchmarkBuffer(DefaultLoadControl.DEFAULT_VIDEO_BUFFER_SIZE, /* useDirectBuffers= */ true);
+  }
+
+  private void benchmarkBuffer(int bufferSize, boolean useDirectBuffers) {
+    DefaultAllocator allocator =
+        new DefaultAllocator(
+            /* trimOnReset= */ true,
+            C.DEFAULT_BUFFER_SEGMENT_SIZE,
+            /* initialAllocationCount= */ 0,
+            useDirectBuffers);
+    // Keep the allocations between operations, as DefaultLoadControl does during playback.
+    allocator.setTargetBufferSize(bufferSize);
+    SampleQueue sampleQueue = SampleQueue.createWithoutDrm(allocator);
+    sampleQueue.format(new Format.Builder().setSampleMimeType(MimeTypes.VIDEO_H264).build());
+    int sampleCount = bufferSize / SAMPLE_SIZE;
+    ParsableByteArray sampleData = new ParsableByteArray(SAMPLE_SIZE);
+    FormatHolder formatHolder = new FormatHolder();
+    DecoderInputBuffer buffer =
+        new DecoderInputBuffer(DecoderInputBuffer.BUFFER_REPLACEMENT_MODE_DIRECT);
+    buffer.ensureSpaceForWrite(SAMPLE_SIZE);
+
+    long heapBytesBefore = getUsedHeapBytes();
+    fill(sampleQueue, sampleData, sampleCount);
+    long retainedHeapBytes = getUsedHeapBytes() - heapBytesBefore;
+    drain(sampleQueue, formatHolder, buffer, sampleCount);
+
+    long gcCountBefore = getGcCount();
+    int operationCount = 0;
+    BenchmarkState state = benchmarkRule.getState();
+    while (state.keepRunning()) {
+      fill(sampleQueue, sampleData, sampleCount);
+      drain(sampleQueue, formatHolder, buffer, sampleCount);
+      operationCount++;
+    }
+    long gcCount = getGcCount() - gcCountBefore;
+    sampleQueue.release();
+
+    workloadRecorder.setWorkload((long) sampleCount * SAMPLE_SIZE, sampleCount);
+    workloadRecorder.setMemoryUsage(
+        retainedHeapBytes,
+        gcCountBefore == C.INDEX_UNSET ? C.INDEX_UNSET : (double) gcCount / operationCount);
+  }
+
+  private void fill(SampleQueue sampleQueue, ParsableByteArray sampleData, int sampleCount) {
+    for (int i = 0; i < sampleCount; i++) {
+      sampleData.setPosition(0);
+      sampleQueue.sampleData(sampleData, SAMPLE_SIZE);
+      sampleQueue.sampleMetadata(
+          /* timeUs= */ i * SAMPLE_DURATION_US,
+          i % 30 == 0 ? C.BUFFER_FLAG_KEY_FRAME : 0,
+          SAMPLE_SIZE,
+          /* offset= */ 0,
+          /* cryptoData= */ null);
+      garbage = new byte[GARBAGE_PER_SAMPLE];
+    }
+  }
+
+  private static void drain(
+      SampleQueue sampleQueue,
+      FormatHolder formatHolder,
+      DecoderInputBuffer buffer,
+      int sampleCount) {
+    int samplesRead = 0;
+    while (samplesRead < sampleCount) {
+      buffer.clear();
+      int result =
+          sampleQueue.read(formatHolder, buffer, /* readFlags= */ 0, /* loadingFinished= */ false);
+      if (result == C.RESULT_BUFFER_READ) {
+        samplesRead++;
+      }
+    }
+    sampleQueue.discardToRead();
+    // Keep the upstream format, so that it's not output again on each iteration.
+    sampleQueue.reset(/* resetUpstreamFormat= */ false);
+    checkState(sampleQueue.getWriteIndex() == 0);
+  }
+
+  private static long getUsedHeapBytes() {
+    Runtime runtime = Runtime.getRuntime();
+    runtime.gc();
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  /** Returns the number of garbage collections so far, or {@link C#INDEX_UNSET} if unknown. */
+  private static long getGcCount() {
+    if (Build.VERSION.SDK_INT < 23) {
+      return C.INDEX_UNSET;
+    }
+    return Long.parseLong(Debug.getRuntimeStat("art.gc.gc-count"));
+  }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.videoplayer.benchmark;
+
+import static com.example.videoplayer.common.util.Assertions.checkNotNull;
+import static com.example.videoplayer.common.util.Assertions.checkState;
+
+import android.net.Uri;
+import androidx.annotation.Nullable;
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.example.videoplayer.common.C;
+import com.example.videoplayer.datasource.DataSource;
+import com.example.videoplayer.datasource.DataSpec;
+import com.example.videoplayer.datasource.FileDataSource;
+import com.example.videoplayer.datasource.MappedFileDataSource;
+import com.example.videoplayer.datasource.cache.CacheDataSource;
+import com.example.videoplayer.datasource.cache.CacheSpan;
+import com.example.videoplayer.datasource.cache.NoOpCacheEvictor;
+import com.example.videoplayer.datasource.cache.SimpleCache;
+import com.example.videoplayer.extractor.DefaultExtractorInput;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+
+/**
+ * Benchmarks reading and skipping fully cached content through a {@link CacheDataSource}, with the
+ * span files read by a {@link FileDataSource} or a {@link MappedFileDataSource}.
+ */
+@RunWith(AndroidJUnit4.class)
+public final class CacheReadBenchmark {
+
+  private static final String KEY = "https://example.test/media";
+  private static final int SPAN_COUNT = 4;
+  private static final int SPAN_LENGTH = 1024 * 1024;
+  private static final int DATA_LENGTH = SPAN_COUNT * SPAN_LENGTH;
+  private static final int READ_SIZE = 16 * 1024;
+
+  @Rule public final BenchmarkRule benchmarkRule = new BenchmarkRule();
+  @Rule public final WorkloadRecorder workloadRecorder = new WorkloadRecorder();
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private SimpleCache cache;
+  private DataSpec dataSpec;
+
+  @Before
+  public void setUp() throws IOException {
+    cache =
+        new SimpleCache(
+            temporaryFolder.newFolder(),
+            new NoOpCacheEvictor(),
+            /* databaseProvider= */ null,
+            /* legacyIndexSecretKey= */ null,
+            /* legacyIndexEncrypt= */ false,
+            /* preferLegacyIndex= */ false);
+    Random random = new Random(/* seed= */ 0);
+    byte[] spanData = new byte[SPAN_LENGTH];
+    for (int i = 0; i < SPAN_COUNT; i++) {
+      random.nextBytes(spanData);
+      writeSpan(cache, (long) i * SPAN_LENGTH, spanData);
+    }
+    dataSpec = new DataSpec.Builder().setUri(Uri.parse(KEY)).setLength(DATA_LENGTH).build();
+  }
+
+  @After
+  public void tearDown() {
+    cache.release();
+  }
+
+  @Test
+  public void read_fileDataSource() throws IOException {
+    benchmarkRead(new FileDataSource.Factory());
+  }
+
+  @Test
+  public void read_mappedFileDataSource() throws IOException {
+    benchmarkRead(new MappedFileDataSource.Factory());
+  }
+
+  @Test
+  public void readBuffer_mappedFileDataSource() throws IOException {
+    CacheDataSource dataSource = createCacheDataSource(new MappedFileDataSource.Factory());
+    workloadRecorder.setWorkload(DATA_LENGTH, /* samplesPerOperation= */ 0);
+    BenchmarkState state = benchmarkRule.getState();
+    while (state.keepRunning()) {
+      dataSource.open(dataSpec);
+      long bytesRead = 0;
+      @Nullable ByteBuffer buffer;
+      while ((buffer = dataSource.readBuffer(READ_SIZE)) != null) {
+        bytesRead += buffer.remaining();
+      }
+      dataSource.close();
+      checkState(bytesRead == DATA_LENGTH);
+    }
+  }
+
+  @Test
+  public void skip_fileDataSource() throws IOException {
+    benchmarkSkip(new FileDataSource.Factory());
+  }
+
+  @Test
+  public void skip_mappedFileDataSource() throws IOException {
+    benchmarkSkip(new MappedFileDataSource.Factory());
+  }
+
+  private void benchmarkRead(DataSource.Factory cacheReadDataSourceFactory) throws IOException {
+    CacheDataSource dataSource = createCacheDataSource(cacheReadDataSourceFactory);
+    byte[] buffer = new byte[READ_SIZE];
+    workloadRecorder.setWorkload(DATA_LENGTH, /* samplesPerOperation= */ 0);
+    BenchmarkState state = benchmarkRule.getState();
+    while (state.keepRunning()) {
+      dataSource.open(dataSpec);
+      while (dataSource.read(buffer, /* offset= */ 0, buffer.length) != C.RESULT_END_OF_INPUT) {
+        // Do nothing.
+      }
+      dataSource.close();
+    }
+  }
+
+  /** Skips the whole content in one call, as extractors do when skipping over unwanted data. */
+  private void benchmarkSkip(DataSource.Factory cacheReadDataSourceFactory) throws IOException {
+    CacheDataSource dataSource = createCacheDataSource(cacheReadDataSourceFactory);
+    workloadRecorder.setWorkload(DATA_LENGTH, /* samplesPerOperation= */ 0);
+    BenchmarkState state = benchmarkRule.getState();
+    while (state.keepRunning()) {
+      long length = dataSource.open(dataSpec);
+      DefaultExtractorInput input =
+          new DefaultExtractorInput(dataSource, /* position= */ 0, length);
+      input.skipFully(DATA_LENGTH);
+      dataSource.close();
+    }
+  }
+
+  private CacheDataSource createCacheDataSource(DataSource.Factory cacheReadDataSourceFactory) {
+    // There's no upstream, so reads fail if any of the content isn't cached.
+    return new CacheDataSource.Factory()
+        .setCache(cache)
+        .setCacheReadDataSourceFactory(cacheReadDataSourceFactory)
+        .createDataSource();
+  }
+
+  private static void writeSpan(SimpleCache cache, long position, byte[] data) throws IOException {
+    CacheSpan holeSpan = checkNotNull(cache.startReadWriteNonBlocking(KEY, position, data.length));
+    File file = cache.startFile(KEY, position, data.length);
+    try (OutputStream outputStream = new FileOutputStream(file)) {
+      outputStream.write(data);
+    }
+    cache.commitFile(file, data.length);
+    cache.releaseHoleSpan(holeSpan);
+  }
+}
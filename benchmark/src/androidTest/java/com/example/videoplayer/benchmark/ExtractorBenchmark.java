@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.videoplayer.benchmark;
+
+import static com.example.videoplayer.common.util.Assertions.checkState;
+import static java.lang.Math.min;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.example.videoplayer.common.C;
+import com.example.videoplayer.common.util.TimestampAdjuster;
+import com.example.videoplayer.extractor.Extractor;
+import com.example.videoplayer.extractor.mkv.MatroskaExtractor;
+import com.example.videoplayer.extractor.mp4.FragmentedMp4Extractor;
+import com.example.videoplayer.extractor.mp4.Mp4Extractor;
+import com.example.videoplayer.extractor.text.SubtitleParser;
+import com.example.videoplayer.extractor.ts.DefaultTsPayloadReaderFactory;
+import com.example.videoplayer.extractor.ts.TsExtractor;
+import java.io.IOException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Benchmarks extracting all samples from a stream held in memory. */
+@RunWith(AndroidJUnit4.class)
+public final class ExtractorBenchmark {
+
+  @Rule public final BenchmarkRule benchmarkRule = new BenchmarkRule();
+  @Rule public final WorkloadRecorder workloadRecorder = new WorkloadRecorder();
+
+  @Test
+  public void tsExtractor_adtsAudio() throws IOException {
+    byte[] data =
+        SyntheticMedia.createAdtsTransportStream(/* frameCount= */ 2_000, /* frameSize= */ 400);
+    benchmarkExtractor(TsExtractor::new, data);
+  }
+
+  @Test
+  public void tsExtractor_multiProgram_singlePmt() throws IOException {
+    // Only the first program is extracted, so the packets of the others are dropped.
+    byte[] data =
+        SyntheticMedia.createMultiProgramTransportStream(
+            /* programCount= */ 8, /* frameCount= */ 500, /* frameSize= */ 400);
+    benchmarkExtractor(() -> new TsExtractor(SubtitleParser.Factory.UNSUPPORTED), data);
+  }
+
+  @Test
+  public void tsExtractor_multiProgram_multiPmt() throws IOException {
+    benchmarkMultiPmtTsExtractor(/* parallelThreadCount= */ 0);
+  }
+
+  @Test
+  public void tsExtractor_multiProgram_multiPmt_parallel1Thread() throws IOException {
+    benchmarkMultiPmtTsExtractor(/* parallelThreadCount= */ 1);
+  }
+
+  @Test
+  public void tsExtractor_multiProgram_multiPmt_parallel2Threads() throws IOException {
+    benchmarkMultiPmtTsExtractor(/* parallelThreadCount= */ 2);
+  }
+
+  @Test
+  public void tsExtractor_multiProgram_multiPmt_parallel4Threads() throws IOException {
+    benchmarkMultiPmtTsExtractor(/* parallelThreadCount= */ 4);
+  }
+
+  @Test
+  public void tsExtractor_multiProgram_multiPmt_parallel8Threads() throws IOException {
+    benchmarkMultiPmtTsExtractor(/* parallelThreadCount= */ 8);
+  }
+
+  @Test
+  public void mp4Extractor() throws IOException {
+    byte[] data = SyntheticMedia.createMp4(/* sampleCount= */ 2_000, /* sampleSize= */ 400);
+    benchmarkExtractor(() -> new Mp4Extractor(SubtitleParser.Factory.UNSUPPORTED), data);
+  }
+
+  @Test
+  public void fragmentedMp4Extractor() throws IOException {
+    benchmarkFragmentedMp4Extractor(/* maxPrefetchedMoofCount= */ 0);
+  }
+
+  @Test
+  public void fragmentedMp4Extractor_moofPrefetching() throws IOException {
+    benchmarkFragmentedMp4Extractor(/* maxPrefetchedMoofCount= */ 2);
+  }
+
+  @Test
+  public void matroskaExtractor() throws IOException {
+    byte[] data =
+        SyntheticMedia.createMatroska(/* frameCount= */ 2_000, /* frameSize= */ 400);
+    benchmarkExtractor(() -> new MatroskaExtractor(SubtitleParser.Factory.UNSUPPORTED), data);
+  }
+
+  @Test
+  public void mp4Extractor_firstSample_longRecording() throws IOException {
+    benchmarkMp4ExtractorFirstSample(/* flags= */ 0);
+  }
+
+  @Test
+  public void mp4Extractor_firstSample_longRecording_decodeSampleTablesOnDemand()
+      throws IOException {
+    benchmarkMp4ExtractorFirstSample(Mp4Extractor.FLAG_DECODE_SAMPLE_TABLES_ON_DEMAND);
+  }
+
+  /**
+   * Benchmarks the time taken to output the first sample of a two hour recording, which is
+   * dominated by the time taken to prepare its sample table.
+   */
+  private void benchmarkMp4ExtractorFirstSample(@Mp4Extractor.Flags int flags) throws IOException {
+    // Small samples, so that the sample table is a large part of the file.
+    byte[] data =
+        SyntheticMedia.createMp4(/* sampleCount= */ 2 * 60 * 60 * 30, /* sampleSize= */ 16);
+    long bytesRead =
+        ExtractorRunner.extractFirstSample(
+            new Mp4Extractor(SubtitleParser.Factory.UNSUPPORTED, flags), data);
+    workloadRecorder.setWorkload(bytesRead, /* samplesPerOperation= */ 1);
+    BenchmarkState state = benchmarkRule.getState();
+    while (state.keepRunning()) {
+      ExtractorRunner.extractFirstSample(
+          new Mp4Extractor(SubtitleParser.Factory.UNSUPPORTED, flags), data);
+    }
+  }
+
+  /**
+   * Benchmarks extracting a fragmented MP4 stream with long fragments, whose moof boxes are
+   * prefetched if {@code maxPrefetchedMoofCount} is positive.
+   *
+   * <p>The input is read from memory, so the extractor often reaches a moof box before its
+   * prefetch completes. This measures the overhead of prefetching, while the time saved by it is
+   * only realized if the input is slower than the prefetches.
+   */
+  private void benchmarkFragmentedMp4Extractor(int maxPrefetchedMoofCount) throws IOException {
+    byte[] data =
+        SyntheticMedia.createFragmentedMp4(
+            /* fragmentCount= */ 100, /* samplesPerFragment= */ 60, /* sampleSize= */ 400);
+    FragmentedMp4Extractor.RangeReader rangeReader =
+        (position, buffer, offset, length) -> {
+          if (position >= data.length) {
+            return C.RESULT_END_OF_INPUT;
+          }
+          int bytesRead = (int) min(length, data.length - position);
+          System.arraycopy(data, (int) position, buffer, offset, bytesRead);
+          return bytesRead;
+        };
+    benchmarkExtractor(
+        () -> {
+          FragmentedMp4Extractor extractor =
+              new FragmentedMp4Extractor(SubtitleParser.Factory.UNSUPPORTED);
+          if (maxPrefetchedMoofCount > 0) {
+            extractor.experimentalSetMoofPrefetching(rangeReader, maxPrefetchedMoofCount);
+          }
+          return extractor;
+        },
+        data);
+  }
+
+  private void benchmarkMultiPmtTsExtractor(int parallelThreadCount) throws IOException {
+    // Larger frames than in the other TS benchmarks, so that the work per program dominates.
+    byte[] data =
+        SyntheticMedia.createMultiProgramTransportStream(
+            /* programCount= */ 8, /* frameCount= */ 250, /* frameSize= */ 4_000);
+    benchmarkExtractor(
+        () -> {
+          TsExtractor extractor =
+              new TsExtractor(
+                  TsExtractor.MODE_MULTI_PMT,
+                  /* extractorFlags= */ 0,
+                  SubtitleParser.Factory.UNSUPPORTED,
+                  new TimestampAdjuster(/* firstSampleTimestampUs= */ 0),
+                  new DefaultTsPayloadReaderFactory(/* defaultTsPayloadReaderFlags= */ 0),
+                  TsExtractor.DEFAULT_TIMESTAMP_SEARCH_BYTES);
+          extractor.experimentalSetParallelProgramReadingThreadCount(parallelThreadCount);
+          return extractor;
+        },
+        data);
+  }
+
+  private void benchmarkExtractor(ExtractorSupplier extractorSupplier, byte[] data)
+      throws IOException {
+    int sampleCount = ExtractorRunner.extractAll(extractorSupplier.get(), data);
+    // Fail rather than measure nothing if the extractor doesn't recognize the synthetic media.
+    checkState(sampleCount > 0);
+    workloadRecorder.setWorkload(data.length, sampleCount);
+    BenchmarkState state = benchmarkRule.getState();
+    while (state.keepRunning()) {
+      ExtractorRunner.extractAll(extractorSupplier.get(), data);
+    }
+  }
+
+  private interface ExtractorSupplier {
+    Extractor get();
+  }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.videoplayer.benchmark;
+
+import android.util.SparseArray;
+import androidx.annotation.Nullable;
+import com.example.videoplayer.common.C;
+import com.example.videoplayer.common.DataReader;
+import com.example.videoplayer.common.Format;
+import com.example.videoplayer.common.util.ParsableByteArray;
+import com.example.videoplayer.extractor.DefaultExtractorInput;
+import com.example.videoplayer.extractor.DiscardingTrackOutput;
+import com.example.videoplayer.extractor.Extractor;
+import com.example.videoplayer.extractor.ExtractorInput;
+import com.example.videoplayer.extractor.ExtractorOutput;
+import com.example.videoplayer.extractor.PositionHolder;
+import com.example.videoplayer.extractor.SeekMap;
+import com.example.videoplayer.extractor.TrackOutput;
+import java.io.IOException;
+
+/** Runs an {@link Extractor} over in-memory data, discarding the samples that it outputs. */
+public final class ExtractorRunner {
+
+  private ExtractorRunner() {}
+
+  /**
+   * Extracts all samples from {@code data}.
+   *
+   * @param extractor The {@link Extractor}, which must not have been initialized.
+   * @param data The data from which to extract samples.
+   * @return The number of samples output by the extractor.
+   * @throws IOException If an error occurs extracting the samples.
+   */
+  public static int extractAll(Extractor extractor, byte[] data) throws IOException {
+    CountingExtractorOutput output = new CountingExtractorOutput();
+    extract(extractor, data, output, /* stopAfterFirstSample= */ false);
+    return output.getSampleCount();
+  }
+
+  /**
+   * Extracts samples from {@code data} until the first sample has been output, as a player does
+   * before it can start playback.
+   *
+   * @param extractor The {@link Extractor}, which must not have been initialized.
+   * @param data The data from which to extract the sample.
+   * @return The position in {@code data} up to which the extractor had read.
+   * @throws IOException If an error occurs extracting the sample.
+   */
+  public static long extractFirstSample(Extractor extractor, byte[] data) throws IOException {
+    CountingExtractorOutput output = new CountingExtractorOutput();
+    return extract(extractor, data, output, /* stopAfterFirstSample= */ true);
+  }
+
+  private static long extract(
+      Extractor extractor,
+      byte[] data,
+      CountingExtractorOutput output,
+      boolean stopAfterFirstSample)
+      throws IOException {
+    extractor.init(output);
+    PositionHolder positionHolder = new PositionHolder();
+    ExtractorInput input = newInput(data, /* position= */ 0);
+    int result = Extractor.RESULT_CONTINUE;
+    while (result != Extractor.RESULT_END_OF_INPUT
+        && (!stopAfterFirstSample || output.getSampleCount() == 0)) {
+      result = extractor.read(input, positionHolder);
+      if (result == Extractor.RESULT_SEEK) {
+        input = newInput(data, (int) positionHolder.position);
+      }
+    }
+    extractor.release();
+    return input.getPosition();
+  }
+
+  private static ExtractorInput newInput(byte[] data, int position) {
+    DataReader dataReader = new InMemoryDataReader(data, position);
+    return new DefaultExtractorInput(dataReader, position, data.length);
+  }
+
+  private static final class CountingExtractorOutput implements ExtractorOutput {
+
+    private final SparseArray<CountingTrackOutput> trackOutputs;
+
+    public CountingExtractorOutput() {
+      trackOutputs = new SparseArray<>();
+    }
+
+    public int getSampleCount() {
+      int sampleCount = 0;
+      for (int i = 0; i < trackOutputs.size(); i++) {
+        sampleCount += trackOutputs.valueAt(i).sampleCount;
+      }
+      return sampleCount;
+    }
+
+    @Override
+    public TrackOutput track(int id, @C.TrackType int type) {
+      @Nullable CountingTrackOutput trackOutput = trackOutputs.get(id);
+      if (trackOutput == null) {
+        trackOutput = new CountingTrackOutput();
+        trackOutputs.put(id, trackOutput);
+      }
+      return trackOutput;
+    }
+
+    @Override
+    public void endTracks() {
+      // Do nothing.
+    }
+
+    @Override
+    public void seekMap(SeekMap seekMap) {
+      // Do nothing.
+    }
+
+    // Counts per track, since an extractor may output different tracks on different threads.
+    private static final class CountingTrackOutput implements TrackOutput {
+
+      private final DiscardingTrackOutput discardingTrackOutput;
+      private int sampleCount;
+
+      public CountingTrackOutput() {
+        discardingTrackOutput = new DiscardingTrackOutput();
+      }
+
+      @Override
+      public void format(Format format) {
+        // Do nothing.
+      }
+
+      @Override
+      public int sampleData(
+          DataReader input, int length, boolean allowEndOfInput, @SampleDataPart int sampleDataPart)
+          throws IOException {
+        return discardingTrackOutput.sampleData(input, length, allowEndOfInput, sampleDataPart);
+      }
+
+      @Override
+      public void sampleData(
+          ParsableByteArray data, int length, @SampleDataPart int sampleDataPart) {
+        data.skipBytes(length);
+      }
+
+      @Override
+      public void sampleMetadata(
+          long timeUs,
+          @C.BufferFlags int flags,
+          int size,
+          int offset,
+          @Nullable CryptoData cryptoData) {
+        sampleCount++;
+      }
+    }
+  }
+}
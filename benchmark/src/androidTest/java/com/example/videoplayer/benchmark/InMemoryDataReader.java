@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.videoplayer.benchmark;
+
+import static java.lang.Math.min;
+
+import com.example.videoplayer.common.C;
+import com.example.videoplayer.common.DataReader;
+
+/** A {@link DataReader} that reads from a byte array, for feeding extractors without any I/O. */
+public final class InMemoryDataReader implements DataReader {
+
+  private final byte[] data;
+  private int position;
+
+  /**
+   * Creates an instance.
+   *
+   * @param data The data to read.
+   * @param position The position in {@code data} from which to start reading.
+   */
+  public InMemoryDataReader(byte[] data, int position) {
+    this.data = data;
+    this.position = position;
+  }
+
+  @Override
+  public int read(byte[] buffer, int offset, int length) {
+    if (length == 0) {
+      return 0;
+    } else if (position == data.length) {
+      return C.RESULT_END_OF_INPUT;
+    }
+    int bytesRead = min(length, data.length - position);
+    System.arraycopy(data, position, buffer, offset, bytesRead);
+    position += bytesRead;
+    return bytesRead;
+  }
+}
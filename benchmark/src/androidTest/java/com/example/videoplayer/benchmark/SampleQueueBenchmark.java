@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.videoplayer.benchmark;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.example.videoplayer.common.C;
+import com.example.videoplayer.common.Format;
+import com.example.videoplayer.common.MimeTypes;
+import com.example.videoplayer.common.util.ParsableByteArray;
+import com.example.videoplayer.exoplayer.source.SampleQueue;
+import com.example.videoplayer.exoplayer.upstream.DefaultAllocator;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Benchmarks writing samples to a {@link SampleQueue}, as extractors do when loading media. */
+@RunWith(AndroidJUnit4.class)
+public final class SampleQueueBenchmark {
+
+  private static final int SAMPLE_COUNT = 1_000;
+  private static final int SAMPLE_SIZE = 1_000;
+  private static final long SAMPLE_DURATION_US = 33_333;
+
+  @Rule public final BenchmarkRule benchmarkRule = new BenchmarkRule();
+  @Rule public final WorkloadRecorder workloadRecorder = new WorkloadRecorder();
+
+  @Test
+  public void sampleDataAndMetadata() {
+    benchmarkSampleQueue(/* useDirectBuffers= */ false);
+  }
+
+  @Test
+  public void sampleDataAndMetadata_directBuffers() {
+    benchmarkSampleQueue(/* useDirectBuffers= */ true);
+  }
+
+  private void benchmarkSampleQueue(boolean useDirectBuffers) {
+    DefaultAllocator allocator =
+        new DefaultAllocator(
+            /* trimOnReset= */ true,
+            C.DEFAULT_BUFFER_SEGMENT_SIZE,
+            /* initialAllocationCount= */ 0,
+            useDirectBuffers);
+    SampleQueue sampleQueue = SampleQueue.createWithoutDrm(allocator);
+    sampleQueue.format(new Format.Builder().setSampleMimeType(MimeTypes.VIDEO_H264).build());
+    ParsableByteArray sampleData = new ParsableByteArray(SAMPLE_SIZE);
+    workloadRecorder.setWorkload((long) SAMPLE_COUNT * SAMPLE_SIZE, SAMPLE_COUNT);
+    BenchmarkState state = benchmarkRule.getState();
+    while (state.keepRunning()) {
+      for (int i = 0; i < SAMPLE_COUNT; i++) {
+        sampleData.setPosition(0);
+        sampleQueue.sampleData(sampleData, SAMPLE_SIZE);
+        sampleQueue.sampleMetadata(
+            /* timeUs= */ i * SAMPLE_DURATION_US,
+            i % 30 == 0 ? C.BUFFER_FLAG_KEY_FRAME : 0,
+            SAMPLE_SIZE,
+            /* offset= */ 0,
+            /* cryptoData= */ null);
+      }
+      // Keep the upstream format, so that it's not output again on each iteration.
+      sampleQueue.reset(/* resetUpstreamFormat= */ false);
+    }
+    sampleQueue.release();
+  }
+}
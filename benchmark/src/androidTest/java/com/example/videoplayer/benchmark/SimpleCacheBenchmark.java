@@ -0,0 +1,220 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.videoplayer.benchmark;
+
+import static com.example.videoplayer.common.util.Assertions.checkNotNull;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.example.videoplayer.datasource.cache.Cache.CacheException;
+import com.example.videoplayer.datasource.cache.CacheSpan;
+import com.example.videoplayer.datasource.cache.NoOpCacheEvictor;
+import com.example.videoplayer.datasource.cache.SimpleCache;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+
+/**
+ * Benchmarks looking up cached spans in a {@link SimpleCache}, as each {@code CacheDataSource} does
+ * when it opens and reads, while other threads look up spans or commit files concurrently.
+ *
+ * <p>Each operation is a fixed number of lookups on the measuring thread, so reads per second
+ * across all threads are the number of reading threads times the reads per operation, divided by
+ * the time per operation. Lookups scale with the thread count if the time per operation stays flat.
+ */
+@RunWith(AndroidJUnit4.class)
+public final class SimpleCacheBenchmark {
+
+  private static final int KEY_COUNT = 64;
+  private static final int SPANS_PER_KEY = 16;
+  private static final int SPAN_LENGTH = 1024;
+  private static final int LOOKUPS_PER_OPERATION = 1_000;
+
+  @Rule public final BenchmarkRule benchmarkRule = new BenchmarkRule();
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private SimpleCache cache;
+  private String[] keys;
+
+  @Before
+  public void setUp() throws IOException {
+    cache =
+        new SimpleCache(
+            temporaryFolder.newFolder(),
+            new NoOpCacheEvictor(),
+            /* databaseProvider= */ null,
+            /* legacyIndexSecretKey= */ null,
+            /* legacyIndexEncrypt= */ false,
+            /* preferLegacyIndex= */ false);
+    keys = new String[KEY_COUNT];
+    byte[] spanData = new byte[SPAN_LENGTH];
+    for (int i = 0; i < KEY_COUNT; i++) {
+      keys[i] = "https://example.test/media/" + i;
+      for (int j = 0; j < SPANS_PER_KEY; j++) {
+        writeSpan(cache, keys[i], (long) j * SPAN_LENGTH, spanData);
+      }
+    }
+  }
+
+  @After
+  public void tearDown() {
+    cache.release();
+  }
+
+  @Test
+  public void lookups_1Thread() throws InterruptedException {
+    benchmarkLookups(/* readerThreadCount= */ 1, /* withWriter= */ false);
+  }
+
+  @Test
+  public void lookups_2Threads() throws InterruptedException {
+    benchmarkLookups(/* readerThreadCount= */ 2, /* withWriter= */ false);
+  }
+
+  @Test
+  public void lookups_4Threads() throws InterruptedException {
+    benchmarkLookups(/* readerThreadCount= */ 4, /* withWriter= */ false);
+  }
+
+  @Test
+  public void lookups_8Threads() throws InterruptedException {
+    benchmarkLookups(/* readerThreadCount= */ 8, /* withWriter= */ false);
+  }
+
+  @Test
+  public void lookups_4Threads_withWriter() throws InterruptedException {
+    benchmarkLookups(/* readerThreadCount= */ 4, /* withWriter= */ true);
+  }
+
+  private void benchmarkLookups(int readerThreadCount, boolean withWriter)
+      throws InterruptedException {
+    List<Thread> threads = new ArrayList<>();
+    // The measuring thread is one of the reader threads.
+    for (int i = 1; i < readerThreadCount; i++) {
+      threads.add(new ReaderThread(cache, keys, /* seed= */ i));
+    }
+    if (withWriter) {
+      threads.add(new WriterThread(cache));
+    }
+    for (int i = 0; i < threads.size(); i++) {
+      threads.get(i).start();
+    }
+    try {
+      Random random = new Random(/* seed= */ 0);
+      BenchmarkState state = benchmarkRule.getState();
+      while (state.keepRunning()) {
+        lookUp(cache, keys, random);
+      }
+    } finally {
+      for (int i = 0; i < threads.size(); i++) {
+        threads.get(i).interrupt();
+      }
+      for (int i = 0; i < threads.size(); i++) {
+        threads.get(i).join();
+      }
+    }
+  }
+
+  /** Looks up random ranges, as a {@code CacheDataSource} does when it opens and reads. */
+  private static long lookUp(SimpleCache cache, String[] keys, Random random) {
+    long result = 0;
+    long contentLength = (long) SPANS_PER_KEY * SPAN_LENGTH;
+    for (int i = 0; i < LOOKUPS_PER_OPERATION; i++) {
+      String key = keys[random.nextInt(keys.length)];
+      long position = random.nextInt((int) contentLength);
+      result += cache.getCachedLength(key, position, contentLength - position);
+      try {
+        CacheSpan span = cache.startReadWriteNonBlocking(key, position, SPAN_LENGTH);
+        result += span.length;
+        if (!span.isCached) {
+          cache.releaseHoleSpan(span);
+        }
+      } catch (CacheException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+    return result;
+  }
+
+  private static void writeSpan(SimpleCache cache, String key, long position, byte[] data)
+      throws IOException {
+    // Nothing else writes to the key, so the range is never locked.
+    CacheSpan holeSpan = checkNotNull(cache.startReadWriteNonBlocking(key, position, data.length));
+    File file = cache.startFile(key, position, data.length);
+    try (OutputStream outputStream = new FileOutputStream(file)) {
+      outputStream.write(data);
+    }
+    cache.commitFile(file, data.length);
+    cache.releaseHoleSpan(holeSpan);
+  }
+
+  private static final class ReaderThread extends Thread {
+
+    private final SimpleCache cache;
+    private final String[] keys;
+    private final Random random;
+
+    public ReaderThread(SimpleCache cache, String[] keys, long seed) {
+      this.cache = cache;
+      this.keys = keys;
+      random = new Random(seed);
+    }
+
+    @Override
+    public void run() {
+      while (!isInterrupted()) {
+        lookUp(cache, keys, random);
+      }
+    }
+  }
+
+  /** Repeatedly commits and removes spans of a key that the readers don't look up. */
+  private static final class WriterThread extends Thread {
+
+    private static final String KEY = "https://example.test/media/written";
+
+    private final SimpleCache cache;
+    private final byte[] data;
+
+    public WriterThread(SimpleCache cache) {
+      this.cache = cache;
+      data = new byte[SPAN_LENGTH];
+    }
+
+    @Override
+    public void run() {
+      try {
+        while (!isInterrupted()) {
+          writeSpan(cache, KEY, /* position= */ 0, data);
+          cache.removeResource(KEY);
+        }
+      } catch (IOException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+  }
+}
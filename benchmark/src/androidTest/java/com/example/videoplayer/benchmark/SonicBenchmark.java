@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.videoplayer.benchmark;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.example.videoplayer.common.C;
+import com.example.videoplayer.common.audio.AudioProcessor.AudioFormat;
+import com.example.videoplayer.common.audio.AudioProcessor.UnhandledAudioFormatException;
+import com.example.videoplayer.common.audio.SonicAudioProcessor;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Benchmarks time stretching and resampling PCM audio with {@link SonicAudioProcessor}. */
+@RunWith(AndroidJUnit4.class)
+public final class SonicBenchmark {
+
+  private static final int SAMPLE_RATE = 44_100;
+  private static final int CHANNEL_COUNT = 2;
+  // One second of audio.
+  private static final int FRAME_COUNT = SAMPLE_RATE;
+  private static final int BYTES_PER_FRAME = CHANNEL_COUNT * 2;
+
+  @Rule public final BenchmarkRule benchmarkRule = new BenchmarkRule();
+  @Rule public final WorkloadRecorder workloadRecorder = new WorkloadRecorder();
+
+  @Test
+  public void speedUp() throws UnhandledAudioFormatException {
+    benchmarkSonic(/* speed= */ 1.5f, /* outputSampleRateHz= */ SAMPLE_RATE);
+  }
+
+  @Test
+  public void resample() throws UnhandledAudioFormatException {
+    benchmarkSonic(/* speed= */ 1f, /* outputSampleRateHz= */ 48_000);
+  }
+
+  private void benchmarkSonic(float speed, int outputSampleRateHz)
+      throws UnhandledAudioFormatException {
+    SonicAudioProcessor sonicAudioProcessor = new SonicAudioProcessor();
+    sonicAudioProcessor.setSpeed(speed);
+    sonicAudioProcessor.setOutputSampleRateHz(outputSampleRateHz);
+    sonicAudioProcessor.configure(
+        new AudioFormat(SAMPLE_RATE, CHANNEL_COUNT, C.ENCODING_PCM_16BIT));
+    sonicAudioProcessor.flush();
+    ByteBuffer input =
+        ByteBuffer.allocateDirect(FRAME_COUNT * BYTES_PER_FRAME).order(ByteOrder.nativeOrder());
+    for (int i = 0; i < FRAME_COUNT * CHANNEL_COUNT; i++) {
+      // A 441 Hz sine wave.
+      input.putShort((short) (Math.sin(2 * Math.PI * i / (CHANNEL_COUNT * 100)) * 10_000));
+    }
+    workloadRecorder.setWorkload(input.capacity(), FRAME_COUNT);
+    BenchmarkState state = benchmarkRule.getState();
+    while (state.keepRunning()) {
+      input.rewind();
+      while (input.hasRemaining()) {
+        sonicAudioProcessor.queueInput(input);
+        drainOutput(sonicAudioProcessor);
+      }
+      sonicAudioProcessor.queueEndOfStream();
+      drainOutput(sonicAudioProcessor);
+      sonicAudioProcessor.flush();
+    }
+    sonicAudioProcessor.reset();
+  }
+
+  private static void drainOutput(SonicAudioProcessor sonicAudioProcessor) {
+    ByteBuffer output = sonicAudioProcessor.getOutput();
+    while (output.hasRemaining()) {
+      output.position(output.limit());
+      output = sonicAudioProcessor.getOutput();
+    }
+  }
+}
@@ -0,0 +1,626 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.videoplayer.benchmark;
+
+import static java.lang.Math.min;
+
+import com.example.videoplayer.common.util.Util;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates synthetic media for benchmarks, so that no media files need to be bundled.
+ *
+ * <p>The payloads are arbitrary bytes, so the media is only suitable for exercising extractors and
+ * parsers, not decoders.
+ */
+public final class SyntheticMedia {
+
+  /** The number of bytes in an ADTS frame header without a CRC. */
+  public static final int ADTS_HEADER_SIZE = 7;
+
+  private static final int TS_PACKET_SIZE = 188;
+  private static final int PAT_PID = 0;
+  private static final int PMT_PID = 0x100;
+  private static final int AUDIO_PID = 0x101;
+  private static final int STREAM_TYPE_AAC_ADTS = 0x0F;
+  private static final int AAC_SAMPLE_RATE_INDEX_44100 = 4;
+  private static final int AAC_SAMPLES_PER_FRAME = 1024;
+
+  private static final int MP4_BOX_HEADER_SIZE = 8;
+  private static final long MP3_FRAME_DURATION_US = 1152L * 1_000_000 / 44_100;
+
+  private static final int MKV_ID_EBML = 0x1A45DFA3;
+  private static final int MKV_ID_DOC_TYPE = 0x4282;
+  private static final int MKV_ID_DOC_TYPE_READ_VERSION = 0x4285;
+  private static final int MKV_ID_SEGMENT = 0x18538067;
+  private static final int MKV_ID_INFO = 0x1549A966;
+  private static final int MKV_ID_TIMECODE_SCALE = 0x2AD7B1;
+  private static final int MKV_ID_DURATION = 0x4489;
+  private static final int MKV_ID_TRACKS = 0x1654AE6B;
+  private static final int MKV_ID_TRACK_ENTRY = 0xAE;
+  private static final int MKV_ID_TRACK_NUMBER = 0xD7;
+  private static final int MKV_ID_TRACK_TYPE = 0x83;
+  private static final int MKV_ID_CODEC_ID = 0x86;
+  private static final int MKV_ID_AUDIO = 0xE1;
+  private static final int MKV_ID_CHANNELS = 0x9F;
+  private static final int MKV_ID_SAMPLING_FREQUENCY = 0xB5;
+  private static final int MKV_ID_CLUSTER = 0x1F43B675;
+  private static final int MKV_ID_TIMECODE = 0xE7;
+  private static final int MKV_ID_SIMPLE_BLOCK = 0xA3;
+
+  private SyntheticMedia() {}
+
+  /**
+   * Returns an MPEG transport stream with a single program that contains an AAC audio track in
+   * ADTS format, with one frame per PES packet.
+   *
+   * @param frameCount The number of audio frames.
+   * @param frameSize The size of each frame's payload, excluding the ADTS header.
+   */
+  public static byte[] createAdtsTransportStream(int frameCount, int frameSize) {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    int[] continuityCounters = new int[0x2000];
+    writeSection(output, PAT_PID, createPat(/* programCount= */ 1), continuityCounters);
+    writeSection(output, PMT_PID, createPmt(/* programNumber= */ 1, AUDIO_PID), continuityCounters);
+    byte[] frame = new byte[ADTS_HEADER_SIZE + frameSize];
+    writeAdtsHeader(frame, frame.length);
+    for (int i = 0; i < frameCount; i++) {
+      long pts = (long) i * AAC_SAMPLES_PER_FRAME * 90_000 / 44_100;
+      writePesPacket(output, AUDIO_PID, pts, frame, continuityCounters);
+    }
+    return output.toByteArray();
+  }
+
+  /**
+   * Returns an MPEG transport stream with several programs that each contain an AAC audio track
+   * in ADTS format, with one frame per PES packet. The programs' packets are interleaved, as in a
+   * broadcast multiplex.
+   *
+   * @param programCount The number of programs.
+   * @param frameCount The number of audio frames in each program.
+   * @param frameSize The size of each frame's payload, excluding the ADTS header.
+   */
+  public static byte[] createMultiProgramTransportStream(
+      int programCount, int frameCount, int frameSize) {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    int[] continuityCounters = new int[0x2000];
+    writeSection(output, PAT_PID, createPat(programCount), continuityCounters);
+    for (int i = 0; i < programCount; i++) {
+      writeSection(
+          output,
+          getPmtPid(/* programIndex= */ i),
+          createPmt(/* programNumber= */ i + 1, getAudioPid(/* programIndex= */ i)),
+          continuityCounters);
+    }
+    byte[] frame = new byte[ADTS_HEADER_SIZE + frameSize];
+    writeAdtsHeader(frame, frame.length);
+    for (int i = 0; i < frameCount; i++) {
+      long pts = (long) i * AAC_SAMPLES_PER_FRAME * 90_000 / 44_100;
+      for (int j = 0; j < programCount; j++) {
+        writePesPacket(output, getAudioPid(/* programIndex= */ j), pts, frame, continuityCounters);
+      }
+    }
+    return output.toByteArray();
+  }
+
+  /**
+   * Returns NAL unit payload data of the given length that contains an emulation prevention byte
+   * roughly every {@code emulationPreventionInterval} bytes.
+   */
+  public static byte[] createEscapedNalUnitPayload(int length, int emulationPreventionInterval) {
+    byte[] data = new byte[length];
+    new Random(/* seed= */ 0).nextBytes(data);
+    for (int i = 0; i < length; i++) {
+      // Remove any naturally occurring start codes and emulation prevention sequences.
+      if (data[i] == 0) {
+        data[i] = 1;
+      }
+    }
+    for (int i = emulationPreventionInterval; i + 3 < length; i += emulationPreventionInterval) {
+      data[i] = 0;
+      data[i + 1] = 0;
+      data[i + 2] = 3;
+    }
+    return data;
+  }
+
+  /**
+   * Returns an H.264 Annex B byte stream of the given length, made of NAL units that are each
+   * {@code nalUnitSize} bytes long including their four byte start code, and whose payloads contain
+   * an emulation prevention byte roughly every {@code emulationPreventionInterval} bytes.
+   */
+  public static byte[] createAnnexBStream(
+      int length, int nalUnitSize, int emulationPreventionInterval) {
+    byte[] data = createEscapedNalUnitPayload(length, emulationPreventionInterval);
+    for (int i = 0; i + 5 <= length; i += nalUnitSize) {
+      data[i] = 0;
+      data[i + 1] = 0;
+      data[i + 2] = 0;
+      data[i + 3] = 1;
+      // A non-IDR coded slice.
+      data[i + 4] = 0x41;
+    }
+    return data;
+  }
+
+  /**
+   * Returns an MP4 file with a single H.263 video track at 30 frames per second, with a key frame
+   * every 30 frames and ten samples per chunk. The moov box precedes the mdat box.
+   *
+   * @param sampleCount The number of samples.
+   * @param sampleSize The size of each sample.
+   */
+  public static byte[] createMp4(int sampleCount, int sampleSize) {
+    byte[] brand = Util.getUtf8Bytes("isom");
+    // The major brand, minor version and a single compatible brand.
+    byte[] ftyp = mp4Box("ftyp", brand, new byte[4], brand);
+    // The chunk offsets depend on the size of the moov box, which doesn't depend on their values.
+    int moovSize =
+        createMoov(sampleCount, sampleSize, /* mdatDataOffset= */ 0, /* fragmented= */ false)
+            .length;
+    int mdatDataOffset = ftyp.length + moovSize + MP4_BOX_HEADER_SIZE;
+    byte[] moov = createMoov(sampleCount, sampleSize, mdatDataOffset, /* fragmented= */ false);
+    byte[] mdat = mp4Box("mdat", createSamples(sampleCount * sampleSize));
+    byte[] data = new byte[ftyp.length + moov.length + mdat.length];
+    System.arraycopy(ftyp, 0, data, 0, ftyp.length);
+    System.arraycopy(moov, 0, data, ftyp.length, moov.length);
+    System.arraycopy(mdat, 0, data, ftyp.length + moov.length, mdat.length);
+    return data;
+  }
+
+  /**
+   * Returns a fragmented MP4 file with a single H.263 video track at 30 frames per second, with a
+   * key frame every 30 frames. The moov box is followed by a segment index (sidx) and the
+   * fragments, each of which has a moof box that lists the size, duration and flags of each of its
+   * samples.
+   *
+   * @param fragmentCount The number of fragments.
+   * @param samplesPerFragment The number of samples in each fragment.
+   * @param sampleSize The size of each sample.
+   */
+  public static byte[] createFragmentedMp4(
+      int fragmentCount, int samplesPerFragment, int sampleSize) {
+    int sampleDuration = 1_001;
+    int timescale = 30_000;
+    int keyFrameInterval = 30;
+    byte[] brand = Util.getUtf8Bytes("iso6");
+    byte[] ftyp = mp4Box("ftyp", brand, new byte[4], brand);
+    byte[] moov =
+        createMoov(
+            /* sampleCount= */ 0, sampleSize, /* mdatDataOffset= */ 0, /* fragmented= */ true);
+
+    ByteArrayOutputStream mfhd = new ByteArrayOutputStream();
+    writeInts(mfhd, /* sequenceNumber= */ 1);
+    ByteArrayOutputStream tfhd = new ByteArrayOutputStream();
+    writeInts(tfhd, /* trackId= */ 1);
+    byte[] mdat = mp4Box("mdat", createSamples(samplesPerFragment * sampleSize));
+    List<byte[]> fragments = new ArrayList<>();
+    for (int i = 0; i < fragmentCount; i++) {
+      ByteArrayOutputStream tfdt = new ByteArrayOutputStream();
+      long baseMediaDecodeTime = (long) i * samplesPerFragment * sampleDuration;
+      writeInts(tfdt, (int) (baseMediaDecodeTime >>> 32), (int) baseMediaDecodeTime);
+      // The data offset doesn't change the size of the moof box, so it's built twice to find it.
+      byte[] moof = new byte[0];
+      for (int j = 0; j < 2; j++) {
+        ByteArrayOutputStream trun = new ByteArrayOutputStream();
+        writeInts(trun, samplesPerFragment, /* dataOffset= */ moof.length + MP4_BOX_HEADER_SIZE);
+        for (int k = 0; k < samplesPerFragment; k++) {
+          boolean isKeyFrame = (i * samplesPerFragment + k) % keyFrameInterval == 0;
+          writeInts(trun, sampleDuration, sampleSize, isKeyFrame ? 0x02000000 : 0x01010000);
+        }
+        moof =
+            mp4Box(
+                "moof",
+                mp4FullBox("mfhd", mfhd),
+                mp4Box(
+                    "traf",
+                    // Default base is moof.
+                    mp4FullBox("tfhd", /* versionAndFlags= */ 0x020000, tfhd),
+                    mp4FullBox("tfdt", /* versionAndFlags= */ 0x01000000, tfdt),
+                    // Data offset, sample duration, sample size and sample flags are present.
+                    mp4FullBox("trun", /* versionAndFlags= */ 0x000701, trun)));
+      }
+      fragments.add(moof);
+      fragments.add(mdat);
+    }
+
+    ByteArrayOutputStream sidx = new ByteArrayOutputStream();
+    // Reference ID, timescale, earliest presentation time, first offset, and reference count.
+    writeInts(sidx, 1, timescale, 0, 0, fragmentCount);
+    for (int i = 0; i < fragmentCount; i++) {
+      int fragmentSize = fragments.get(2 * i).length + mdat.length;
+      // The fragment size and duration, and that it starts with a type 1 stream access point.
+      writeInts(sidx, fragmentSize, samplesPerFragment * sampleDuration, 0x90000000);
+    }
+
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    output.write(ftyp, 0, ftyp.length);
+    output.write(moov, 0, moov.length);
+    byte[] sidxBox = mp4FullBox("sidx", sidx);
+    output.write(sidxBox, 0, sidxBox.length);
+    for (byte[] box : fragments) {
+      output.write(box, 0, box.length);
+    }
+    return output.toByteArray();
+  }
+
+  /**
+   * Returns a Matroska file with a single MP3 audio track, whose frames are stored as simple blocks
+   * in clusters of one second. The file has no cues, so it isn't seekable.
+   *
+   * @param frameCount The number of audio frames.
+   * @param frameSize The size of each frame.
+   */
+  public static byte[] createMatroska(int frameCount, int frameSize) {
+    ByteArrayOutputStream ebmlHeader = new ByteArrayOutputStream();
+    writeEbmlElement(ebmlHeader, MKV_ID_DOC_TYPE, Util.getUtf8Bytes("matroska"));
+    writeEbmlElement(ebmlHeader, MKV_ID_DOC_TYPE_READ_VERSION, new byte[] {2});
+
+    ByteArrayOutputStream segment = new ByteArrayOutputStream();
+    ByteArrayOutputStream info = new ByteArrayOutputStream();
+    // Timecodes are in milliseconds.
+    writeEbmlElement(info, MKV_ID_TIMECODE_SCALE, toBigEndian(1_000_000, /* length= */ 4));
+    long durationMs = (long) frameCount * MP3_FRAME_DURATION_US / 1_000;
+    writeEbmlElement(
+        info, MKV_ID_DURATION, toBigEndian(Float.floatToIntBits(durationMs), /* length= */ 4));
+    writeEbmlElement(segment, MKV_ID_INFO, info.toByteArray());
+
+    ByteArrayOutputStream audio = new ByteArrayOutputStream();
+    writeEbmlElement(audio, MKV_ID_CHANNELS, new byte[] {2});
+    byte[] samplingFrequency = toBigEndian(Float.floatToIntBits(44_100), /* length= */ 4);
+    writeEbmlElement(audio, MKV_ID_SAMPLING_FREQUENCY, samplingFrequency);
+    ByteArrayOutputStream trackEntry = new ByteArrayOutputStream();
+    writeEbmlElement(trackEntry, MKV_ID_TRACK_NUMBER, new byte[] {1});
+    writeEbmlElement(trackEntry, MKV_ID_TRACK_TYPE, new byte[] {2});
+    writeEbmlElement(trackEntry, MKV_ID_CODEC_ID, Util.getUtf8Bytes("A_MPEG/L3"));
+    writeEbmlElement(trackEntry, MKV_ID_AUDIO, audio.toByteArray());
+    ByteArrayOutputStream tracks = new ByteArrayOutputStream();
+    writeEbmlElement(tracks, MKV_ID_TRACK_ENTRY, trackEntry.toByteArray());
+    writeEbmlElement(segment, MKV_ID_TRACKS, tracks.toByteArray());
+
+    byte[] block = new byte[4 + frameSize];
+    System.arraycopy(createSamples(frameSize), 0, block, 4, frameSize);
+    // Track number 1, and a key frame.
+    block[0] = (byte) 0x81;
+    block[3] = (byte) 0x80;
+    ByteArrayOutputStream cluster = new ByteArrayOutputStream();
+    long clusterTimecodeMs = 0;
+    for (int i = 0; i < frameCount; i++) {
+      long timecodeMs = (long) i * MP3_FRAME_DURATION_US / 1_000;
+      if (i == 0 || timecodeMs - clusterTimecodeMs >= 1_000) {
+        if (i > 0) {
+          writeEbmlElement(segment, MKV_ID_CLUSTER, cluster.toByteArray());
+          cluster.reset();
+        }
+        clusterTimecodeMs = timecodeMs;
+        writeEbmlElement(cluster, MKV_ID_TIMECODE, toBigEndian(clusterTimecodeMs, /* length= */ 4));
+      }
+      int relativeTimecodeMs = (int) (timecodeMs - clusterTimecodeMs);
+      block[1] = (byte) (relativeTimecodeMs >> 8);
+      block[2] = (byte) relativeTimecodeMs;
+      writeEbmlElement(cluster, MKV_ID_SIMPLE_BLOCK, block);
+    }
+    writeEbmlElement(segment, MKV_ID_CLUSTER, cluster.toByteArray());
+
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    writeEbmlElement(output, MKV_ID_EBML, ebmlHeader.toByteArray());
+    writeEbmlElement(output, MKV_ID_SEGMENT, segment.toByteArray());
+    return output.toByteArray();
+  }
+
+  private static void writeAdtsHeader(byte[] frame, int frameLength) {
+    int channelConfig = 2;
+    frame[0] = (byte) 0xFF;
+    // MPEG-4, layer 0, no CRC.
+    frame[1] = (byte) 0xF1;
+    // AAC LC.
+    frame[2] = (byte) ((1 << 6) | (AAC_SAMPLE_RATE_INDEX_44100 << 2) | (channelConfig >> 2));
+    frame[3] = (byte) (((channelConfig & 3) << 6) | (frameLength >> 11));
+    frame[4] = (byte) (frameLength >> 3);
+    frame[5] = (byte) (((frameLength & 7) << 5) | 0x1F);
+    frame[6] = (byte) 0xFC;
+  }
+
+  private static int getPmtPid(int programIndex) {
+    return PMT_PID + programIndex * 0x10;
+  }
+
+  private static int getAudioPid(int programIndex) {
+    return getPmtPid(programIndex) + 1;
+  }
+
+  private static byte[] createPat(int programCount) {
+    byte[] body = new byte[programCount * 4];
+    for (int i = 0; i < programCount; i++) {
+      int programNumber = i + 1;
+      int pmtPid = getPmtPid(/* programIndex= */ i);
+      body[i * 4] = (byte) (programNumber >> 8);
+      body[i * 4 + 1] = (byte) programNumber;
+      body[i * 4 + 2] = (byte) (0xE0 | (pmtPid >> 8));
+      body[i * 4 + 3] = (byte) pmtPid;
+    }
+    return createSection(/* tableId= */ 0x00, /* tableIdExtension= */ 1, body);
+  }
+
+  private static byte[] createPmt(int programNumber, int audioPid) {
+    return createSection(
+        /* tableId= */ 0x02,
+        /* tableIdExtension= */ programNumber,
+        new byte[] {
+          // PCR PID and empty program info.
+          (byte) (0xE0 | (audioPid >> 8)),
+          (byte) audioPid,
+          (byte) 0xF0,
+          0x00,
+          // Elementary stream with no descriptors.
+          STREAM_TYPE_AAC_ADTS,
+          (byte) (0xE0 | (audioPid >> 8)),
+          (byte) audioPid,
+          (byte) 0xF0,
+          0x00
+        });
+  }
+
+  private static byte[] createSection(int tableId, int tableIdExtension, byte[] body) {
+    // Table ID extension, version and section numbers, body and CRC.
+    int sectionLength = 5 + body.length + 4;
+    byte[] section = new byte[3 + sectionLength];
+    section[0] = (byte) tableId;
+    section[1] = (byte) (0xB0 | (sectionLength >> 8));
+    section[2] = (byte) sectionLength;
+    section[3] = (byte) (tableIdExtension >> 8);
+    section[4] = (byte) tableIdExtension;
+    // Version 0, current.
+    section[5] = (byte) 0xC1;
+    section[6] = 0;
+    section[7] = 0;
+    System.arraycopy(body, 0, section, 8, body.length);
+    int crc = Util.crc32(section, 0, section.length - 4, /* initialValue= */ 0xFFFFFFFF);
+    section[section.length - 4] = (byte) (crc >> 24);
+    section[section.length - 3] = (byte) (crc >> 16);
+    section[section.length - 2] = (byte) (crc >> 8);
+    section[section.length - 1] = (byte) crc;
+    return section;
+  }
+
+  private static void writeSection(
+      ByteArrayOutputStream output, int pid, byte[] section, int[] continuityCounters) {
+    // Sections are preceded by a pointer field.
+    byte[] payload = new byte[section.length + 1];
+    System.arraycopy(section, 0, payload, 1, section.length);
+    writePayload(output, pid, payload, continuityCounters);
+  }
+
+  private static void writePesPacket(
+      ByteArrayOutputStream output, int pid, long pts, byte[] data, int[] continuityCounters) {
+    byte[] payload = new byte[14 + data.length];
+    // Start code prefix and the first audio stream ID.
+    payload[2] = 1;
+    payload[3] = (byte) 0xC0;
+    int pesPacketLength = payload.length - 6;
+    payload[4] = (byte) (pesPacketLength >> 8);
+    payload[5] = (byte) pesPacketLength;
+    payload[6] = (byte) 0x80;
+    // PTS only.
+    payload[7] = (byte) 0x80;
+    payload[8] = 5;
+    payload[9] = (byte) (0x21 | ((pts >> 29) & 0x0E));
+    payload[10] = (byte) (pts >> 22);
+    payload[11] = (byte) (((pts >> 14) & 0xFE) | 1);
+    payload[12] = (byte) (pts >> 7);
+    payload[13] = (byte) (((pts << 1) & 0xFE) | 1);
+    System.arraycopy(data, 0, payload, 14, data.length);
+    writePayload(output, pid, payload, continuityCounters);
+  }
+
+  /** Writes {@code payload} as a sequence of transport stream packets, starting a payload unit. */
+  private static void writePayload(
+      ByteArrayOutputStream output, int pid, byte[] payload, int[] continuityCounters) {
+    byte[] packet = new byte[TS_PACKET_SIZE];
+    int offset = 0;
+    while (offset < payload.length) {
+      int length = min(TS_PACKET_SIZE - 4, payload.length - offset);
+      int stuffingLength = TS_PACKET_SIZE - 4 - length;
+      packet[0] = 0x47;
+      packet[1] = (byte) ((offset == 0 ? 0x40 : 0) | (pid >> 8));
+      packet[2] = (byte) pid;
+      int continuityCounter = continuityCounters[pid];
+      continuityCounters[pid] = (continuityCounter + 1) & 0x0F;
+      int position = 4;
+      if (stuffingLength == 0) {
+        packet[3] = (byte) (0x10 | continuityCounter);
+      } else {
+        // Pad the packet with an adaptation field.
+        packet[3] = (byte) (0x30 | continuityCounter);
+        int adaptationFieldLength = stuffingLength - 1;
+        packet[position++] = (byte) adaptationFieldLength;
+        if (adaptationFieldLength > 0) {
+          packet[position++] = 0;
+          Arrays.fill(packet, position, position + adaptationFieldLength - 1, (byte) 0xFF);
+          position += adaptationFieldLength - 1;
+        }
+      }
+      System.arraycopy(payload, offset, packet, position, length);
+      output.write(packet, 0, TS_PACKET_SIZE);
+      offset += length;
+    }
+  }
+
+  private static byte[] createMoov(
+      int sampleCount, int sampleSize, int mdatDataOffset, boolean fragmented) {
+    int sampleDuration = 1_001;
+    int timescale = 30_000;
+    int keyFrameInterval = 30;
+    int samplesPerChunk = 10;
+    int mediaDuration = sampleCount * sampleDuration;
+    int movieDuration = (int) ((long) mediaDuration * 1_000 / timescale);
+
+    ByteArrayOutputStream mvhd = new ByteArrayOutputStream();
+    // Creation and modification times, timescale, duration, rate and volume.
+    writeInts(mvhd, 0, 0, 1_000, movieDuration, 0x00010000, 0x01000000, 0, 0);
+    writeIdentityMatrix(mvhd);
+    writeInts(mvhd, 0, 0, 0, 0, 0, 0, /* nextTrackId= */ 2);
+
+    ByteArrayOutputStream tkhd = new ByteArrayOutputStream();
+    // Creation and modification times, track ID, reserved, duration, reserved, layer, alternate
+    // group and volume.
+    writeInts(tkhd, 0, 0, /* trackId= */ 1, 0, movieDuration, 0, 0, 0, 0);
+    writeIdentityMatrix(tkhd);
+    writeInts(tkhd, 176 << 16, 144 << 16);
+
+    ByteArrayOutputStream mdhd = new ByteArrayOutputStream();
+    // Creation and modification times, timescale, duration, and the "und" language.
+    writeInts(mdhd, 0, 0, timescale, mediaDuration, 0x55C40000);
+
+    ByteArrayOutputStream hdlr = new ByteArrayOutputStream();
+    writeInts(hdlr, 0);
+    hdlr.write(Util.getUtf8Bytes("vide"), 0, 4);
+    // Reserved, and an empty name.
+    hdlr.write(new byte[13], 0, 13);
+
+    ByteArrayOutputStream h263 = new ByteArrayOutputStream();
+    // Reserved, data reference index, pre-defined and reserved.
+    writeInts(h263, 0, 1, 0, 0, 0, 0);
+    // Width and height, horizontal and vertical resolution, reserved and frame count.
+    writeInts(h263, (176 << 16) | 144, 0x00480000, 0x00480000, 0);
+    h263.write(new byte[] {0, 1}, 0, 2);
+    // Compressor name, depth and pre-defined.
+    h263.write(new byte[32], 0, 32);
+    writeInts(h263, 0x0018FFFF);
+    ByteArrayOutputStream stsd = new ByteArrayOutputStream();
+    writeInts(stsd, /* entryCount= */ 1);
+    byte[] h263Box = mp4Box("H263", h263.toByteArray());
+    stsd.write(h263Box, 0, h263Box.length);
+
+    ByteArrayOutputStream stts = new ByteArrayOutputStream();
+    writeInts(stts, /* entryCount= */ 1, sampleCount, sampleDuration);
+
+    ByteArrayOutputStream stss = new ByteArrayOutputStream();
+    int keyFrameCount = Util.ceilDivide(sampleCount, keyFrameInterval);
+    writeInts(stss, keyFrameCount);
+    for (int i = 0; i < keyFrameCount; i++) {
+      writeInts(stss, i * keyFrameInterval + 1);
+    }
+
+    int chunkCount = Util.ceilDivide(sampleCount, samplesPerChunk);
+    int lastChunkSampleCount = sampleCount - (chunkCount - 1) * samplesPerChunk;
+    ByteArrayOutputStream stsc = new ByteArrayOutputStream();
+    if (lastChunkSampleCount == samplesPerChunk) {
+      writeInts(stsc, /* entryCount= */ 1, /* firstChunk= */ 1, samplesPerChunk, 1);
+    } else {
+      writeInts(stsc, /* entryCount= */ 2, /* firstChunk= */ 1, samplesPerChunk, 1);
+      writeInts(stsc, /* firstChunk= */ chunkCount, lastChunkSampleCount, 1);
+    }
+
+    ByteArrayOutputStream stsz = new ByteArrayOutputStream();
+    // Each sample's size is listed, as it is for most video tracks.
+    writeInts(stsz, /* sampleSize= */ 0, sampleCount);
+    for (int i = 0; i < sampleCount; i++) {
+      writeInts(stsz, sampleSize);
+    }
+
+    ByteArrayOutputStream stco = new ByteArrayOutputStream();
+    writeInts(stco, chunkCount);
+    for (int i = 0; i < chunkCount; i++) {
+      writeInts(stco, mdatDataOffset + i * samplesPerChunk * sampleSize);
+    }
+
+    byte[] stbl =
+        mp4Box(
+            "stbl",
+            mp4FullBox("stsd", stsd),
+            mp4FullBox("stts", stts),
+            mp4FullBox("stss", stss),
+            mp4FullBox("stsc", stsc),
+            mp4FullBox("stsz", stsz),
+            mp4FullBox("stco", stco));
+    byte[] mdia =
+        mp4Box(
+            "mdia", mp4FullBox("mdhd", mdhd), mp4FullBox("hdlr", hdlr), mp4Box("minf", stbl));
+    byte[] trak = mp4Box("trak", mp4FullBox("tkhd", tkhd), mdia);
+    if (!fragmented) {
+      return mp4Box("moov", mp4FullBox("mvhd", mvhd), trak);
+    }
+    ByteArrayOutputStream trex = new ByteArrayOutputStream();
+    // Track ID, default sample description index, and default sample duration, size and flags.
+    writeInts(trex, /* trackId= */ 1, 1, 0, 0, 0);
+    byte[] mvex = mp4Box("mvex", mp4FullBox("trex", trex));
+    return mp4Box("moov", mp4FullBox("mvhd", mvhd), trak, mvex);
+  }
+
+  private static void writeIdentityMatrix(ByteArrayOutputStream output) {
+    writeInts(output, 0x00010000, 0, 0, 0, 0x00010000, 0, 0, 0, 0x40000000);
+  }
+
+  private static void writeInts(ByteArrayOutputStream output, int... values) {
+    for (int value : values) {
+      output.write(toBigEndian(value, /* length= */ 4), 0, 4);
+    }
+  }
+
+  private static byte[] mp4Box(String type, byte[]... payloads) {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    int size = MP4_BOX_HEADER_SIZE;
+    for (byte[] payload : payloads) {
+      size += payload.length;
+    }
+    writeInts(output, size);
+    output.write(Util.getUtf8Bytes(type), 0, 4);
+    for (byte[] payload : payloads) {
+      output.write(payload, 0, payload.length);
+    }
+    return output.toByteArray();
+  }
+
+  private static byte[] mp4FullBox(String type, ByteArrayOutputStream payload) {
+    // Version 0 and no flags.
+    return mp4FullBox(type, /* versionAndFlags= */ 0, payload);
+  }
+
+  private static byte[] mp4FullBox(
+      String type, int versionAndFlags, ByteArrayOutputStream payload) {
+    return mp4Box(type, toBigEndian(versionAndFlags, /* length= */ 4), payload.toByteArray());
+  }
+
+  /** Writes an EBML element whose size is always coded on eight bytes, for simplicity. */
+  private static void writeEbmlElement(ByteArrayOutputStream output, int id, byte[] data) {
+    int idLength = id > 0xFFFFFF ? 4 : id > 0xFFFF ? 3 : id > 0xFF ? 2 : 1;
+    output.write(toBigEndian(id, idLength), 0, idLength);
+    byte[] size = toBigEndian(data.length, /* length= */ 8);
+    size[0] = 0x01;
+    output.write(size, 0, size.length);
+    output.write(data, 0, data.length);
+  }
+
+  private static byte[] toBigEndian(long value, int length) {
+    byte[] bytes = new byte[length];
+    for (int i = 0; i < length; i++) {
+      bytes[i] = (byte) (value >> (8 * (length - 1 - i)));
+    }
+    return bytes;
+  }
+
+  /** Returns arbitrary sample data that contains no start codes. */
+  private static byte[] createSamples(int length) {
+    byte[] data = new byte[length];
+    Arrays.fill(data, (byte) 0x55);
+    return data;
+  }
+}
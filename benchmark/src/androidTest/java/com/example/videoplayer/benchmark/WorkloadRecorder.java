@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.videoplayer.benchmark;
+
+import androidx.annotation.Nullable;
+import androidx.test.platform.app.InstrumentationRegistry;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Properties;
+import org.junit.rules.TestWatcher;
+import org.junit.runner.Description;
+
+/**
+ * Records the amount of work that a benchmark does per operation, so that the {@code
+ * compareBenchmarks} Gradle task can report throughput in MB/s and samples/s, and optionally the
+ * benchmark's memory usage.
+ *
+ * <p>The workload is written to the directory into which the benchmark library writes its results,
+ * and from which they're pulled from the device.
+ */
+public final class WorkloadRecorder extends TestWatcher {
+
+  private long bytesPerOperation;
+  private long samplesPerOperation;
+  private long retainedHeapBytes;
+  private double gcCountPerOperation;
+  private boolean recorded;
+  private boolean memoryUsageRecorded;
+
+  /**
+   * Sets the work done per operation.
+   *
+   * @param bytesPerOperation The number of bytes read or written per operation.
+   * @param samplesPerOperation The number of samples output per operation, or 0 if not applicable.
+   */
+  public void setWorkload(long bytesPerOperation, long samplesPerOperation) {
+    this.bytesPerOperation = bytesPerOperation;
+    this.samplesPerOperation = samplesPerOperation;
+    recorded = true;
+  }
+
+  /**
+   * Sets the memory used by the benchmark. Must be called in addition to {@link #setWorkload}.
+   *
+   * @param retainedHeapBytes The number of bytes of Java heap retained by the data under test.
+   * @param gcCountPerOperation The mean number of garbage collections per operation, or {@link
+   *     com.example.videoplayer.common.C#INDEX_UNSET} if unknown.
+   */
+  public void setMemoryUsage(long retainedHeapBytes, double gcCountPerOperation) {
+    this.retainedHeapBytes = retainedHeapBytes;
+    this.gcCountPerOperation = gcCountPerOperation;
+    memoryUsageRecorded = true;
+  }
+
+  @Override
+  protected void succeeded(Description description) {
+    @Nullable
+    String outputDirectory =
+        InstrumentationRegistry.getArguments().getString("additionalTestOutputDir");
+    if (!recorded || outputDirectory == null) {
+      return;
+    }
+    // Matches the benchmark name that the benchmark library derives from the test.
+    String benchmark = description.getClassName() + "#" + description.getMethodName();
+    Properties properties = new Properties();
+    properties.setProperty("benchmark", benchmark);
+    properties.setProperty("bytesPerOperation", Long.toString(bytesPerOperation));
+    properties.setProperty("samplesPerOperation", Long.toString(samplesPerOperation));
+    if (memoryUsageRecorded) {
+      properties.setProperty("retainedHeapBytes", Long.toString(retainedHeapBytes));
+      if (gcCountPerOperation >= 0) {
+        properties.setProperty("gcCountPerOperation", Double.toString(gcCountPerOperation));
+      }
+    }
+    File file = new File(outputDirectory, benchmark.replace('#', '_') + ".workload");
+    try (OutputStream outputStream = new FileOutputStream(file)) {
+      properties.store(outputStream, /* comments= */ null);
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.videoplayer.datasource.cache;
+
+import androidx.annotation.Nullable;
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+import com.example.videoplayer.database.StandaloneDatabaseProvider;
+import java.io.File;
+import java.io.IOException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+
+/**
+ * Benchmarks storing a {@link CachedContentIndex} after a single key has changed, as {@link
+ * SimpleCache} does each time a span is committed, for each storage backend and several key
+ * counts.
+ *
+ * <p>This benchmark is in the index's package because the index isn't public.
+ */
+@RunWith(AndroidJUnit4.class)
+public final class CachedContentIndexBenchmark {
+
+  private static final int BACKEND_LEGACY = 0;
+  private static final int BACKEND_JOURNALED_LEGACY = 1;
+  private static final int BACKEND_DATABASE = 2;
+
+  private static final String METADATA_NAME = "benchmark";
+  private static final long DATABASE_UID = 0x5EED;
+
+  @Rule public final BenchmarkRule benchmarkRule = new BenchmarkRule();
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void store_legacy_100Keys() throws IOException {
+    benchmarkStore(BACKEND_LEGACY, /* keyCount= */ 100);
+  }
+
+  @Test
+  public void store_legacy_1000Keys() throws IOException {
+    benchmarkStore(BACKEND_LEGACY, /* keyCount= */ 1_000);
+  }
+
+  @Test
+  public void store_legacy_10000Keys() throws IOException {
+    benchmarkStore(BACKEND_LEGACY, /* keyCount= */ 10_000);
+  }
+
+  @Test
+  public void store_journaledLegacy_100Keys() throws IOException {
+    benchmarkStore(BACKEND_JOURNALED_LEGACY, /* keyCount= */ 100);
+  }
+
+  @Test
+  public void store_journaledLegacy_1000Keys() throws IOException {
+    benchmarkStore(BACKEND_JOURNALED_LEGACY, /* keyCount= */ 1_000);
+  }
+
+  @Test
+  public void store_journaledLegacy_10000Keys() throws IOException {
+    benchmarkStore(BACKEND_JOURNALED_LEGACY, /* keyCount= */ 10_000);
+  }
+
+  @Test
+  public void store_database_100Keys() throws IOException {
+    benchmarkStore(BACKEND_DATABASE, /* keyCount= */ 100);
+  }
+
+  @Test
+  public void store_database_1000Keys() throws IOException {
+    benchmarkStore(BACKEND_DATABASE, /* keyCount= */ 1_000);
+  }
+
+  @Test
+  public void store_database_10000Keys() throws IOException {
+    benchmarkStore(BACKEND_DATABASE, /* keyCount= */ 10_000);
+  }
+
+  private void benchmarkStore(int backend, int keyCount) throws IOException {
+    @Nullable
+    StandaloneDatabaseProvider databaseProvider =
+        backend == BACKEND_DATABASE
+            ? new StandaloneDatabaseProvider(
+                InstrumentationRegistry.getInstrumentation().getTargetContext())
+            : null;
+    @Nullable
+    File legacyStorageDir = backend != BACKEND_DATABASE ? temporaryFolder.newFolder() : null;
+    CachedContentIndex index =
+        new CachedContentIndex(
+            databaseProvider,
+            legacyStorageDir,
+            /* legacyStorageSecretKey= */ null,
+            /* legacyStorageEncrypt= */ false,
+            /* preferLegacyStorage= */ false,
+            /* journalLegacyStorage= */ backend == BACKEND_JOURNALED_LEGACY);
+    String[] keys = new String[keyCount];
+    try {
+      index.initialize(DATABASE_UID);
+      for (int i = 0; i < keyCount; i++) {
+        keys[i] = "https://example.test/media/" + i;
+        index.getOrAdd(keys[i]);
+      }
+      index.store();
+
+      BenchmarkState state = benchmarkRule.getState();
+      int operationCount = 0;
+      while (state.keepRunning()) {
+        index.applyContentMetadataMutations(
+            keys[operationCount % keyCount],
+            new ContentMetadataMutations().set(METADATA_NAME, operationCount));
+        index.store();
+        operationCount++;
+      }
+    } finally {
+      index.release();
+      if (databaseProvider != null) {
+        CachedContentIndex.delete(databaseProvider, DATABASE_UID);
+        databaseProvider.close();
+      }
+    }
+  }
+}
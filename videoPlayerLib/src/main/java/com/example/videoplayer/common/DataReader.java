@@ -15,8 +15,10 @@
  */
 package com.example.videoplayer.common;
 
+import androidx.annotation.Nullable;
 import com.example.videoplayer.common.util.UnstableApi;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 /** Reads bytes from a data stream. */
 @UnstableApi
@@ -38,4 +40,40 @@ public interface DataReader {
    * @throws IOException If an error occurs reading from the input.
    */
   int read(byte[] buffer, int offset, int length) throws IOException;
+
+  /**
+   * Returns whether the next call to {@link #readBuffer(int)} can return data without copying it
+   * into an intermediate array.
+   *
+   * <p>The default implementation returns {@code false}.
+   */
+  default boolean isZeroCopyReadSupported() {
+    return false;
+  }
+
+  /**
+   * Reads up to {@code length} bytes of data from the input and returns them as the remaining bytes
+   * of a {@link ByteBuffer}. This method follows the same blocking and end of input semantics as
+   * {@link #read(byte[], int, int)}.
+   *
+   * <p>The returned buffer may be a read-only view onto the underlying data, and is only valid until
+   * the next call to a read method on this reader, or until the reader is closed. Callers must not
+   * modify its contents.
+   *
+   * <p>The default implementation reads into a newly allocated array. Callers should check {@link
+   * #isZeroCopyReadSupported()} and use {@link #read(byte[], int, int)} if it returns false.
+   *
+   * @param length The maximum number of bytes to read from the input.
+   * @return A buffer whose remaining bytes are the bytes that were read, or null if the input has
+   *     ended.
+   * @throws IOException If an error occurs reading from the input.
+   */
+  @Nullable
+  default ByteBuffer readBuffer(int length) throws IOException {
+    byte[] buffer = new byte[length];
+    int bytesRead = read(buffer, /* offset= */ 0, length);
+    return bytesRead == C.RESULT_END_OF_INPUT
+        ? null
+        : ByteBuffer.wrap(buffer, /* offset= */ 0, bytesRead);
+  }
 }
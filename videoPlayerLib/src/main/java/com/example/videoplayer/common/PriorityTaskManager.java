@@ -15,11 +15,17 @@
  */
 package com.example.videoplayer.common;
 
+import static com.example.videoplayer.common.util.Assertions.checkArgument;
 import static java.lang.Math.max;
+import static java.lang.Math.min;
 
+import android.util.SparseArray;
+import androidx.annotation.VisibleForTesting;
+import com.example.videoplayer.common.util.Clock;
 import com.example.videoplayer.common.util.UnstableApi;
 import com.example.videoplayer.common.util.Util;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.Collections;
 import java.util.PriorityQueue;
 
@@ -34,6 +40,14 @@ import java.util.PriorityQueue;
  *
  * <p>It is recommended to use predefined {@linkplain C.Priority priorities} or priority values
  * defined relative to those defaults.
+ *
+ * <p>By default, only tasks of the highest registered priority may proceed. If a {@linkplain
+ * #setLowerPriorityBandwidthShare(float) bandwidth share} is set, then tasks that transfer data and
+ * call {@link #proceedWithShareOrThrow(int)} may also proceed while a task of higher priority is
+ * registered, provided that the data they {@linkplain #onBytesTransferred(int, long) transfer}
+ * stays within the share of the bandwidth. The share is withdrawn immediately while lower
+ * priorities are {@linkplain #setLowerPrioritiesPreempted(boolean) preempted}, for example because
+ * the buffer of a player is running low.
  */
 @UnstableApi
 public final class PriorityTaskManager {
@@ -46,17 +60,144 @@ public final class PriorityTaskManager {
     }
   }
 
+  /** The duration over which throughput is measured, in milliseconds. */
+  private static final long THROUGHPUT_WINDOW_MS = 1000;
+
+  /** The duration of bandwidth share that lower priority tasks may use in a burst. */
+  private static final long SHARE_BURST_DURATION_MS = 500;
+
+  /** The minimum number of bytes that lower priority tasks may transfer in a burst. */
+  private static final long MIN_SHARE_BURST_BYTES = 64 * 1024;
+
+  /** The fraction of the observed bandwidth retained from one throughput window to the next. */
+  private static final float OBSERVED_BANDWIDTH_DECAY = 0.9f;
+
   private final Object lock = new Object();
+  private final Clock clock;
 
   // Guarded by lock.
   private final PriorityQueue<@C.Priority Integer> queue;
+  private final SparseArray<Throughput> throughputs;
+  private final Throughput totalThroughput;
   private @C.Priority int highestPriority;
+  private float lowerPriorityBandwidthShare;
+  private boolean lowerPrioritiesPreempted;
+  private long bandwidthEstimate;
+  private long observedBandwidth;
+  private double shareTokens;
+  private long shareTokensUpdateTimeMs;
 
   public PriorityTaskManager() {
+    this(Clock.DEFAULT);
+  }
+
+  @VisibleForTesting
+  /* package */ PriorityTaskManager(Clock clock) {
+    this.clock = clock;
     queue = new PriorityQueue<>(10, Collections.reverseOrder());
+    throughputs = new SparseArray<>();
+    totalThroughput = new Throughput();
     highestPriority = Integer.MIN_VALUE;
   }
 
+  /**
+   * Sets the share of the bandwidth that tasks may use while a task of higher priority is
+   * registered, when proceeding with {@link #proceedWithShareOrThrow(int)}. The default is 0, in
+   * which case only tasks of the highest registered priority may proceed.
+   *
+   * <p>The bandwidth is the larger of the {@linkplain #setBandwidthEstimate(long) estimate} and the
+   * bandwidth observed from the data transfers reported by {@link #onBytesTransferred(int, long)}.
+   * The share is shared by all lower priority tasks.
+   *
+   * @param share The share of the bandwidth, in the range [0, 1).
+   */
+  public void setLowerPriorityBandwidthShare(float share) {
+    checkArgument(share >= 0 && share < 1);
+    synchronized (lock) {
+      lowerPriorityBandwidthShare = share;
+      lock.notifyAll();
+    }
+  }
+
+  /**
+   * Sets whether lower priority tasks are preempted, in which case no {@linkplain
+   * #setLowerPriorityBandwidthShare(float) bandwidth share} is available to them and only tasks of
+   * the highest registered priority may proceed.
+   *
+   * @param preempted Whether lower priority tasks are preempted.
+   */
+  public void setLowerPrioritiesPreempted(boolean preempted) {
+    synchronized (lock) {
+      if (lowerPrioritiesPreempted != preempted) {
+        lowerPrioritiesPreempted = preempted;
+        lock.notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Sets an estimate of the available bandwidth, used to calculate the {@linkplain
+   * #setLowerPriorityBandwidthShare(float) bandwidth share} of lower priority tasks. A player that
+   * uses this manager keeps the estimate up to date with the estimate of its bandwidth meter.
+   *
+   * @param bitsPerSecond The bandwidth estimate, in bits per second, or 0 if unknown.
+   */
+  public void setBandwidthEstimate(long bitsPerSecond) {
+    synchronized (lock) {
+      bandwidthEstimate = bitsPerSecond / 8;
+      lock.notifyAll();
+    }
+  }
+
+  /**
+   * Reports that a task transferred data. Data transferred by lower priority tasks while a task of
+   * higher priority is registered is deducted from their bandwidth share.
+   *
+   * @param priority The {@link C.Priority} of the task.
+   * @param bytesTransferred The number of bytes transferred.
+   */
+  public void onBytesTransferred(@C.Priority int priority, long bytesTransferred) {
+    synchronized (lock) {
+      long nowMs = clock.elapsedRealtime();
+      if (priority < highestPriority) {
+        updateShareTokens(nowMs);
+        shareTokens -= bytesTransferred;
+      }
+      getThroughput(priority).add(nowMs, bytesTransferred);
+      if (totalThroughput.add(nowMs, bytesTransferred)) {
+        observedBandwidth =
+            max(
+                totalThroughput.bytesPerSecond,
+                (long) (observedBandwidth * OBSERVED_BANDWIDTH_DECAY));
+      }
+    }
+  }
+
+  /**
+   * Returns the throughput of the tasks with the given priority, in bytes per second, measured
+   * over the last complete measurement window.
+   *
+   * @param priority The {@link C.Priority} of the tasks.
+   */
+  public long getThroughputBytesPerSecond(@C.Priority int priority) {
+    synchronized (lock) {
+      Throughput throughput = throughputs.get(priority);
+      return throughput != null ? throughput.bytesPerSecond : 0;
+    }
+  }
+
+  /**
+   * Returns the total number of bytes transferred by the tasks with the given priority.
+   *
+   * @param priority The {@link C.Priority} of the tasks.
+   */
+  public long getBytesTransferred(@C.Priority int priority) {
+    synchronized (lock) {
+      Throughput throughput = throughputs.get(priority);
+      return throughput != null ? throughput.totalBytes : 0;
+    }
+  }
+
   /**
    * Register a new task. The task must call {@link #remove(int)} when done.
    *
@@ -112,6 +253,36 @@ public final class PriorityTaskManager {
     }
   }
 
+  /**
+   * A variant of {@link #proceedOrThrow(int)} for tasks that transfer data. If the task may use a
+   * {@linkplain #setLowerPriorityBandwidthShare(float) bandwidth share}, then rather than throwing,
+   * this method blocks until the share allows the task to proceed.
+   *
+   * @param priority The {@link C.Priority} of the task.
+   * @throws PriorityTooLowException If the task is not allowed to proceed, or stops being allowed
+   *     to use a bandwidth share while blocked.
+   * @throws InterruptedIOException If the thread is interrupted while blocked.
+   */
+  public void proceedWithShareOrThrow(@C.Priority int priority)
+      throws PriorityTooLowException, InterruptedIOException {
+    synchronized (lock) {
+      while (highestPriority != priority) {
+        long shareWaitMs = getShareWaitMs(priority);
+        if (shareWaitMs == 0) {
+          return;
+        } else if (shareWaitMs == C.TIME_UNSET) {
+          throw new PriorityTooLowException(priority, highestPriority);
+        }
+        try {
+          lock.wait(shareWaitMs);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException();
+        }
+      }
+    }
+  }
+
   /**
    * Unregister a task.
    *
@@ -124,4 +295,83 @@ public final class PriorityTaskManager {
       lock.notifyAll();
     }
   }
+
+  /**
+   * Returns how long a task of lower priority than the highest registered priority must wait for
+   * its bandwidth share, in milliseconds, 0 if it may proceed now, or {@link C#TIME_UNSET} if it
+   * has no share.
+   */
+  @VisibleForTesting
+  /* package */ long getShareWaitMs(@C.Priority int priority) {
+    synchronized (lock) {
+      long shareBytesPerSecond = getShareBytesPerSecond();
+      if (priority > highestPriority || shareBytesPerSecond == 0) {
+        return C.TIME_UNSET;
+      }
+      updateShareTokens(clock.elapsedRealtime());
+      if (shareTokens > 0) {
+        return 0;
+      }
+      return max(1, (long) Math.ceil(-shareTokens * 1000 / shareBytesPerSecond));
+    }
+  }
+
+  // Guarded by lock.
+  private long getShareBytesPerSecond() {
+    if (lowerPrioritiesPreempted) {
+      return 0;
+    }
+    return (long) (max(bandwidthEstimate, observedBandwidth) * lowerPriorityBandwidthShare);
+  }
+
+  // Guarded by lock.
+  private void updateShareTokens(long nowMs) {
+    long shareBytesPerSecond = getShareBytesPerSecond();
+    long elapsedMs = nowMs - shareTokensUpdateTimeMs;
+    shareTokensUpdateTimeMs = nowMs;
+    double maxShareTokens =
+        max(MIN_SHARE_BURST_BYTES, shareBytesPerSecond * SHARE_BURST_DURATION_MS / 1000);
+    shareTokens = min(maxShareTokens, shareTokens + shareBytesPerSecond * elapsedMs / 1000.0);
+  }
+
+  // Guarded by lock.
+  private Throughput getThroughput(@C.Priority int priority) {
+    Throughput throughput = throughputs.get(priority);
+    if (throughput == null) {
+      throughput = new Throughput();
+      throughputs.put(priority, throughput);
+    }
+    return throughput;
+  }
+
+  /** Measures throughput over consecutive windows of {@link #THROUGHPUT_WINDOW_MS}. */
+  private static final class Throughput {
+
+    public long totalBytes;
+    public long bytesPerSecond;
+
+    private long windowStartTimeMs;
+    private long windowBytes;
+
+    public Throughput() {
+      windowStartTimeMs = C.TIME_UNSET;
+    }
+
+    /** Adds bytes transferred, and returns whether a measurement window completed. */
+    public boolean add(long nowMs, long bytes) {
+      totalBytes += bytes;
+      if (windowStartTimeMs == C.TIME_UNSET) {
+        windowStartTimeMs = nowMs;
+      }
+      windowBytes += bytes;
+      long windowDurationMs = nowMs - windowStartTimeMs;
+      if (windowDurationMs < THROUGHPUT_WINDOW_MS) {
+        return false;
+      }
+      bytesPerSecond = windowBytes * 1000 / windowDurationMs;
+      windowStartTimeMs = nowMs;
+      windowBytes = 0;
+      return true;
+    }
+  }
 }
@@ -523,59 +523,38 @@ public final class NalUnitUtil {
 
   private static final int INVALID_ID = -1; // Invalid ID.
 
-  private static final Object scratchEscapePositionsLock = new Object();
-
-  /**
-   * Temporary store for positions of escape codes in {@link #unescapeStream(byte[], int)}. Guarded
-   * by {@link #scratchEscapePositionsLock}.
-   */
-  private static int[] scratchEscapePositions = new int[10];
-
   /**
    * Unescapes {@code data} up to the specified limit, replacing occurrences of [0, 0, 3] with [0,
    * 0]. The unescaped data is returned in-place, with the return value indicating its length.
    *
-   * <p>Executions of this method are mutually exclusive, so it should not be called with very large
-   * buffers.
+   * <p>The data is scanned and compacted in a single pass, and nothing is copied until the first
+   * occurrence is found.
    *
    * @param data The data to unescape.
    * @param limit The limit (exclusive) of the data to unescape.
    * @return The length of the unescaped data.
    */
   public static int unescapeStream(byte[] data, int limit) {
-    synchronized (scratchEscapePositionsLock) {
-      int position = 0;
-      int scratchEscapeCount = 0;
-      while (position < limit) {
-        position = findNextUnescapeIndex(data, position, limit);
-        if (position < limit) {
-          if (scratchEscapePositions.length <= scratchEscapeCount) {
-            // Grow scratchEscapePositions to hold a larger number of positions.
-            scratchEscapePositions =
-                Arrays.copyOf(scratchEscapePositions, scratchEscapePositions.length * 2);
-          }
-          scratchEscapePositions[scratchEscapeCount++] = position;
-          position += 3;
-        }
+    int escapedPosition = 0; // The position being read from.
+    int unescapedPosition = 0; // The position being written to.
+    while (escapedPosition < limit) {
+      int nextEscapePosition = findNextUnescapeIndex(data, escapedPosition, limit);
+      if (nextEscapePosition == limit) {
+        break;
       }
-
-      int unescapedLength = limit - scratchEscapeCount;
-      int escapedPosition = 0; // The position being read from.
-      int unescapedPosition = 0; // The position being written to.
-      for (int i = 0; i < scratchEscapeCount; i++) {
-        int nextEscapePosition = scratchEscapePositions[i];
-        int copyLength = nextEscapePosition - escapedPosition;
+      // Keep the two zero bytes, and drop the emulation prevention byte that follows them.
+      int copyLength = nextEscapePosition + 2 - escapedPosition;
+      if (unescapedPosition != escapedPosition) {
         System.arraycopy(data, escapedPosition, data, unescapedPosition, copyLength);
-        unescapedPosition += copyLength;
-        data[unescapedPosition++] = 0;
-        data[unescapedPosition++] = 0;
-        escapedPosition += copyLength + 3;
       }
-
-      int remainingLength = unescapedLength - unescapedPosition;
+      unescapedPosition += copyLength;
+      escapedPosition = nextEscapePosition + 3;
+    }
+    int remainingLength = limit - escapedPosition;
+    if (unescapedPosition != escapedPosition) {
       System.arraycopy(data, escapedPosition, data, unescapedPosition, remainingLength);
-      return unescapedLength;
     }
+    return unescapedPosition + remainingLength;
   }
 
   /**
@@ -1921,18 +1900,27 @@ public final class NalUnitUtil {
 
     int limit = endOffset - 1;
     // We're looking for the NAL unit start code prefix 0x000001. The value of i tracks the index of
-    // the third byte.
+    // a byte that's checked for being part of a prefix. Every prefix whose third byte is before i
+    // has already been ruled out, and checking byte i rules out those whose third byte is at i,
+    // i + 1 or i + 2, so the loop always advances by three without revisiting bytes.
     for (int i = startOffset + 2; i < limit; i += 3) {
-      if ((data[i] & 0xFE) != 0) {
-        // There isn't a NAL prefix here, or at the next two positions. Do nothing and let the
-        // loop advance the index by three.
-      } else if (data[i - 2] == 0 && data[i - 1] == 0 && data[i] == 1) {
+      int value = data[i];
+      if ((value & 0xFE) != 0) {
+        // Byte i can't be part of a prefix.
+      } else if (value == 1) {
+        // Byte i can only be the third byte of a prefix.
+        if (data[i - 2] == 0 && data[i - 1] == 0) {
+          clearPrefixFlags(prefixFlags);
+          return i - 2;
+        }
+      } else if (data[i - 1] == 0 && i + 1 < limit && data[i + 1] == 1) {
+        // Byte i is the second byte of a prefix.
         clearPrefixFlags(prefixFlags);
-        return i - 2;
-      } else {
-        // There isn't a NAL prefix here, but there might be at the next position. We should
-        // only skip forward by one. The loop will skip forward by three, so subtract two here.
-        i -= 2;
+        return i - 1;
+      } else if (i + 2 < limit && data[i + 1] == 0 && data[i + 2] == 1) {
+        // Byte i is the first byte of a prefix.
+        clearPrefixFlags(prefixFlags);
+        return i;
       }
     }
 
@@ -2035,9 +2023,24 @@ public final class NalUnitUtil {
         profileTierLevel.generalLevelIdc);
   }
 
+  /**
+   * Returns the index of the first occurrence of [0, 0, 3] in {@code bytes} that starts at or after
+   * {@code offset} and ends before {@code limit}, or {@code limit} if there isn't one.
+   */
   private static int findNextUnescapeIndex(byte[] bytes, int offset, int limit) {
-    for (int i = offset; i < limit - 2; i++) {
-      if (bytes[i] == 0x00 && bytes[i + 1] == 0x00 && bytes[i + 2] == 0x03) {
+    // As in findNalUnit, i tracks the index of a byte that rules out every occurrence whose third
+    // byte is at i, i + 1 or i + 2.
+    for (int i = offset + 2; i < limit; i += 3) {
+      int value = bytes[i];
+      if (value != 0 && value != 3) {
+        // Byte i can't be part of an occurrence.
+      } else if (value == 3) {
+        if (bytes[i - 2] == 0 && bytes[i - 1] == 0) {
+          return i - 2;
+        }
+      } else if (bytes[i - 1] == 0 && i + 1 < limit && bytes[i + 1] == 3) {
+        return i - 1;
+      } else if (i + 2 < limit && bytes[i + 1] == 0 && bytes[i + 2] == 3) {
         return i;
       }
     }
@@ -15,8 +15,10 @@
  */
 package com.example.videoplayer.datasource;
 
+import static com.example.videoplayer.common.util.Assertions.checkArgument;
 import static com.example.videoplayer.common.util.Assertions.checkNotNull;
 import static com.example.videoplayer.common.util.Util.castNonNull;
+import static java.lang.Math.min;
 
 import android.net.Uri;
 import androidx.annotation.Nullable;
@@ -31,14 +33,50 @@ import javax.crypto.Cipher;
 @UnstableApi
 public final class AesCipherDataSource implements DataSource {
 
+  /** The AES block size, in bytes. */
+  private static final int BLOCK_SIZE = 16;
+
   private final DataSource upstream;
   private final byte[] secretKey;
+  @Nullable private final byte[] readAheadBuffer;
 
   @Nullable private AesFlushingCipher cipher;
+  private int readAheadPosition;
+  private int readAheadLimit;
+  private boolean upstreamEnded;
 
+  /**
+   * Creates an instance that decrypts each read in place.
+   *
+   * @param secretKey The key data.
+   * @param upstream The upstream {@link DataSource}.
+   */
   public AesCipherDataSource(byte[] secretKey, DataSource upstream) {
+    this(secretKey, upstream, /* readAheadBuffer= */ null);
+  }
+
+  /**
+   * Creates an instance that may read ahead of the reads that are requested, so that data is
+   * decrypted in large batches.
+   *
+   * <p>Reading ahead improves throughput when the caller's reads are small, but each read that
+   * needs more data blocks until the read-ahead buffer is full or the upstream source ends. It's
+   * intended for upstream sources that read from local storage, such as encrypted offline caches.
+   *
+   * @param secretKey The key data.
+   * @param upstream The upstream {@link DataSource}.
+   * @param readAheadBuffer A buffer into which data is read ahead and decrypted, whose length is a
+   *     multiple of the AES block size of 16 bytes. Reads at least as large as the buffer bypass
+   *     it. If {@code null} then each read is decrypted in place.
+   */
+  public AesCipherDataSource(
+      byte[] secretKey, DataSource upstream, @Nullable byte[] readAheadBuffer) {
+    checkArgument(
+        readAheadBuffer == null
+            || (readAheadBuffer.length > 0 && readAheadBuffer.length % BLOCK_SIZE == 0));
     this.upstream = upstream;
     this.secretKey = secretKey;
+    this.readAheadBuffer = readAheadBuffer;
   }
 
   @Override
@@ -56,6 +94,9 @@ public final class AesCipherDataSource implements DataSource {
             secretKey,
             dataSpec.key,
             dataSpec.uriPositionOffset + dataSpec.position);
+    readAheadPosition = 0;
+    readAheadLimit = 0;
+    upstreamEnded = false;
     return dataLength;
   }
 
@@ -64,6 +105,22 @@ public final class AesCipherDataSource implements DataSource {
     if (length == 0) {
       return 0;
     }
+    if (readAheadBuffer != null) {
+      if (readAheadPosition == readAheadLimit
+          && !upstreamEnded
+          && length < readAheadBuffer.length) {
+        fillReadAheadBuffer(readAheadBuffer);
+      }
+      if (readAheadPosition < readAheadLimit) {
+        int bytesToCopy = min(length, readAheadLimit - readAheadPosition);
+        System.arraycopy(readAheadBuffer, readAheadPosition, buffer, offset, bytesToCopy);
+        readAheadPosition += bytesToCopy;
+        return bytesToCopy;
+      } else if (upstreamEnded) {
+        return C.RESULT_END_OF_INPUT;
+      }
+      // The read is at least as large as the buffer, so decrypt it in place instead.
+    }
     int read = upstream.read(buffer, offset, length);
     if (read == C.RESULT_END_OF_INPUT) {
       return C.RESULT_END_OF_INPUT;
@@ -72,6 +129,29 @@ public final class AesCipherDataSource implements DataSource {
     return read;
   }
 
+  /**
+   * Fills the read-ahead buffer from upstream, and decrypts it in a single batch. The cipher's
+   * counter advances by the number of bytes read, so it stays aligned with the stream position.
+   * If upstream has already ended, the buffer is left empty so that the read returns {@link
+   * C#RESULT_END_OF_INPUT}.
+   */
+  private void fillReadAheadBuffer(byte[] readAheadBuffer) throws IOException {
+    int filled = 0;
+    while (filled < readAheadBuffer.length) {
+      int read = upstream.read(readAheadBuffer, filled, readAheadBuffer.length - filled);
+      if (read == C.RESULT_END_OF_INPUT) {
+        upstreamEnded = true;
+        break;
+      }
+      filled += read;
+    }
+    readAheadPosition = 0;
+    readAheadLimit = filled;
+    if (filled > 0) {
+      castNonNull(cipher).updateInPlace(readAheadBuffer, /* offset= */ 0, filled);
+    }
+  }
+
   @Override
   @Nullable
   public Uri getUri() {
@@ -86,6 +166,8 @@ public final class AesCipherDataSource implements DataSource {
   @Override
   public void close() throws IOException {
     cipher = null;
+    readAheadPosition = 0;
+    readAheadLimit = 0;
     upstream.close();
   }
 }
@@ -78,6 +78,10 @@ public final class AesFlushingCipher {
   }
 
   public void update(byte[] in, int inOffset, int length, byte[] out, int outOffset) {
+    if (length == 0) {
+      // The loop below transforms at least one byte if there are pending bytes to XOR.
+      return;
+    }
     // If we previously flushed the cipher by inputting zeros up to a block boundary, then we need
     // to manually transform the data that actually ended the block. See the comment below for more
     // details.
@@ -111,9 +115,7 @@ public final class AesFlushingCipher {
     Assertions.checkState(written == blockSize);
     // The first part of xorBytes contains the flushed data, which we copy out. The remainder
     // contains the bytes that will be needed for manual transformation in a subsequent call.
-    for (int i = 0; i < bytesToFlush; i++) {
-      out[outOffset++] = flushedBlock[i];
-    }
+    System.arraycopy(flushedBlock, 0, out, outOffset, bytesToFlush);
   }
 
   private int nonFlushingUpdate(byte[] in, int inOffset, int length, byte[] out, int outOffset) {
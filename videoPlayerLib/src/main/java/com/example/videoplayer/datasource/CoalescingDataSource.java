@@ -0,0 +1,481 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.videoplayer.datasource;
+
+import static com.example.videoplayer.common.util.Assertions.checkArgument;
+import static com.example.videoplayer.common.util.Assertions.checkNotNull;
+import static java.lang.Math.min;
+
+import android.net.Uri;
+import androidx.annotation.Nullable;
+import com.example.videoplayer.common.C;
+import com.example.videoplayer.common.util.UnstableApi;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link DataSource} that coalesces concurrent reads of the same data into a single upstream
+ * request.
+ *
+ * <p>When a source opens a {@link DataSpec} whose data is already being read from upstream by
+ * another source created by the same {@link Factory}, it becomes a follower of that read rather
+ * than opening the upstream itself. The first source, the leader, buffers the data that it reads,
+ * and followers read from the buffer as data arrives. A follower can join a read if the data that
+ * it requests is contained by the data being read, and if the data from its position onwards is
+ * still buffered. Data is only buffered while a read has followers, so a source can only join a
+ * read that has no followers at the position that the leader has reached.
+ *
+ * <p>The leader's reads drive the upstream request, so followers are never faster than the leader.
+ * If the leader is closed before it reads all of its data, fails, or discards buffered data that a
+ * follower still needs, then the follower opens the upstream itself from the position that it has
+ * reached.
+ *
+ * <p>Only GET requests without a body are coalesced, and only with other requests that have the
+ * same flags and request headers. Typically a {@link Factory} is set as the upstream of a {@link
+ * com.example.videoplayer.datasource.cache.CacheDataSource.Factory}, so that sources that find a
+ * range locked by another source's pending cache write read the data as it's fetched, rather than
+ * fetching it again.
+ */
+@UnstableApi
+public final class CoalescingDataSource implements DataSource {
+
+  /** The default maximum number of bytes buffered for followers by each leader. */
+  public static final int DEFAULT_MAX_BUFFER_SIZE = 4 * 1024 * 1024;
+
+  /** {@link DataSource.Factory} for {@link CoalescingDataSource} instances. */
+  public static final class Factory implements DataSource.Factory {
+
+    private final DataSource.Factory upstreamFactory;
+    private final ReadRegistry readRegistry;
+
+    /**
+     * Creates an instance that buffers up to {@link #DEFAULT_MAX_BUFFER_SIZE} bytes per read.
+     *
+     * @param upstreamFactory A {@link DataSource.Factory} for upstream sources.
+     */
+    public Factory(DataSource.Factory upstreamFactory) {
+      this(upstreamFactory, DEFAULT_MAX_BUFFER_SIZE);
+    }
+
+    /**
+     * Creates an instance.
+     *
+     * @param upstreamFactory A {@link DataSource.Factory} for upstream sources.
+     * @param maxBufferSize The maximum number of bytes that each leader buffers for followers. Once
+     *     this is exceeded, the oldest buffered data is discarded.
+     */
+    public Factory(DataSource.Factory upstreamFactory, int maxBufferSize) {
+      checkArgument(maxBufferSize > 0);
+      this.upstreamFactory = upstreamFactory;
+      readRegistry = new ReadRegistry(maxBufferSize);
+    }
+
+    /** Returns the number of sources that have been opened as followers of another source. */
+    public int getCoalescedOpenCount() {
+      return readRegistry.getCoalescedOpenCount();
+    }
+
+    @Override
+    public CoalescingDataSource createDataSource() {
+      return new CoalescingDataSource(upstreamFactory, readRegistry);
+    }
+  }
+
+  private final DataSource.Factory upstreamFactory;
+  private final ReadRegistry readRegistry;
+  private final List<TransferListener> transferListeners;
+
+  @Nullable private DataSpec dataSpec;
+  @Nullable private DataSource upstream;
+  @Nullable private SharedRead sharedRead;
+  private boolean isLeader;
+  private long readOffset;
+  private long bytesRead;
+  private long bytesRemaining;
+
+  private CoalescingDataSource(DataSource.Factory upstreamFactory, ReadRegistry readRegistry) {
+    this.upstreamFactory = upstreamFactory;
+    this.readRegistry = readRegistry;
+    transferListeners = new ArrayList<>();
+  }
+
+  @Override
+  public void addTransferListener(TransferListener transferListener) {
+    checkNotNull(transferListener);
+    // Followers don't transfer any data from upstream, so listeners are only added to upstreams.
+    transferListeners.add(transferListener);
+    if (upstream != null) {
+      upstream.addTransferListener(transferListener);
+    }
+  }
+
+  @Override
+  public long open(DataSpec dataSpec) throws IOException {
+    this.dataSpec = dataSpec;
+    bytesRead = 0;
+    @Nullable String key = ReadRegistry.getKey(dataSpec);
+    @Nullable SharedRead sharedRead = key != null ? readRegistry.join(key, dataSpec) : null;
+    if (sharedRead != null) {
+      this.sharedRead = sharedRead;
+      readOffset = dataSpec.position - sharedRead.dataSpec.position;
+      if (dataSpec.length != C.LENGTH_UNSET) {
+        bytesRemaining = dataSpec.length;
+      } else {
+        bytesRemaining =
+            sharedRead.length == C.LENGTH_UNSET ? C.LENGTH_UNSET : sharedRead.length - readOffset;
+      }
+      return bytesRemaining;
+    }
+
+    DataSource upstream = createUpstream();
+    long length = upstream.open(dataSpec);
+    if (key != null) {
+      SharedRead newSharedRead =
+          new SharedRead(
+              dataSpec,
+              length,
+              upstream.getUri(),
+              upstream.getResponseHeaders(),
+              readRegistry.maxBufferSize);
+      if (readRegistry.register(key, newSharedRead)) {
+        this.sharedRead = newSharedRead;
+        isLeader = true;
+      }
+    }
+    bytesRemaining = length;
+    return length;
+  }
+
+  @Override
+  public int read(byte[] buffer, int offset, int length) throws IOException {
+    if (length == 0) {
+      return 0;
+    } else if (bytesRemaining == 0) {
+      return C.RESULT_END_OF_INPUT;
+    }
+    if (bytesRemaining != C.LENGTH_UNSET) {
+      length = (int) min(length, bytesRemaining);
+    }
+    int result;
+    if (upstream == null) {
+      result = checkNotNull(sharedRead).read(readOffset + bytesRead, buffer, offset, length);
+      if (result == SharedRead.RESULT_UNAVAILABLE) {
+        // The data can't be read from the leader, so fall back to reading from upstream.
+        readRegistry.leave(checkNotNull(sharedRead));
+        sharedRead = null;
+        DataSpec dataSpec = checkNotNull(this.dataSpec);
+        createUpstream().open(dataSpec.subrange(bytesRead));
+        result = checkNotNull(upstream).read(buffer, offset, length);
+      }
+    } else {
+      result = upstream.read(buffer, offset, length);
+      if (isLeader) {
+        SharedRead sharedRead = checkNotNull(this.sharedRead);
+        if (result == C.RESULT_END_OF_INPUT) {
+          sharedRead.end(/* reachedEnd= */ true);
+        } else {
+          sharedRead.write(buffer, offset, result);
+        }
+      }
+    }
+    if (result == C.RESULT_END_OF_INPUT) {
+      return C.RESULT_END_OF_INPUT;
+    }
+    bytesRead += result;
+    if (bytesRemaining != C.LENGTH_UNSET) {
+      bytesRemaining -= result;
+    }
+    return result;
+  }
+
+  @Override
+  @Nullable
+  public Uri getUri() {
+    if (upstream != null) {
+      return upstream.getUri();
+    }
+    return sharedRead != null ? sharedRead.uri : null;
+  }
+
+  @Override
+  public Map<String, List<String>> getResponseHeaders() {
+    if (upstream != null) {
+      return upstream.getResponseHeaders();
+    }
+    return sharedRead != null ? sharedRead.responseHeaders : Collections.emptyMap();
+  }
+
+  @Override
+  public void close() throws IOException {
+    @Nullable SharedRead sharedRead = this.sharedRead;
+    @Nullable DataSource upstream = this.upstream;
+    this.sharedRead = null;
+    this.upstream = null;
+    dataSpec = null;
+    try {
+      if (sharedRead != null) {
+        if (isLeader) {
+          // Followers that need data beyond what's been read will fall back to upstream.
+          sharedRead.end(/* reachedEnd= */ false);
+        }
+        readRegistry.leave(sharedRead);
+      }
+    } finally {
+      isLeader = false;
+      if (upstream != null) {
+        upstream.close();
+      }
+    }
+  }
+
+  private DataSource createUpstream() {
+    DataSource upstream = upstreamFactory.createDataSource();
+    for (int i = 0; i < transferListeners.size(); i++) {
+      upstream.addTransferListener(transferListeners.get(i));
+    }
+    this.upstream = upstream;
+    return upstream;
+  }
+
+  /** Tracks the reads that are in progress, by key. */
+  private static final class ReadRegistry {
+
+    public final int maxBufferSize;
+
+    private final HashMap<String, List<SharedRead>> sharedReads;
+    private int coalescedOpenCount;
+
+    public ReadRegistry(int maxBufferSize) {
+      this.maxBufferSize = maxBufferSize;
+      sharedReads = new HashMap<>();
+    }
+
+    /** Returns the key for reads of {@code dataSpec}, or null if it can't be coalesced. */
+    @Nullable
+    public static String getKey(DataSpec dataSpec) {
+      if (dataSpec.httpMethod != DataSpec.HTTP_METHOD_GET || dataSpec.httpBody != null) {
+        return null;
+      }
+      return dataSpec.key != null ? dataSpec.key : dataSpec.uri.toString();
+    }
+
+    public synchronized int getCoalescedOpenCount() {
+      return coalescedOpenCount;
+    }
+
+    /**
+     * Returns a read that {@code dataSpec} can follow, having registered a follower with it, or
+     * null if there's no such read.
+     */
+    @Nullable
+    public synchronized SharedRead join(String key, DataSpec dataSpec) {
+      @Nullable List<SharedRead> reads = sharedReads.get(key);
+      if (reads == null) {
+        return null;
+      }
+      for (int i = 0; i < reads.size(); i++) {
+        SharedRead read = reads.get(i);
+        if (read.addFollower(dataSpec)) {
+          coalescedOpenCount++;
+          return read;
+        }
+      }
+      return null;
+    }
+
+    /**
+     * Registers a read by a leader, returning whether it was registered. A read isn't registered if
+     * an equivalent read was registered while the leader was opening its upstream.
+     */
+    public synchronized boolean register(String key, SharedRead sharedRead) {
+      @Nullable List<SharedRead> reads = sharedReads.get(key);
+      if (reads == null) {
+        reads = new ArrayList<>();
+        sharedReads.put(key, reads);
+      }
+      for (int i = 0; i < reads.size(); i++) {
+        if (reads.get(i).dataSpec.position == sharedRead.dataSpec.position) {
+          return false;
+        }
+      }
+      reads.add(sharedRead);
+      return true;
+    }
+
+    /**
+     * Removes a leader or follower from a read. The read is unregistered when it can no longer be
+     * joined, and is released once it has no leader or followers.
+     */
+    public synchronized void leave(SharedRead sharedRead) {
+      if (sharedRead.removeParticipant()) {
+        String key = checkNotNull(getKey(sharedRead.dataSpec));
+        @Nullable List<SharedRead> reads = sharedReads.get(key);
+        if (reads != null && reads.remove(sharedRead) && reads.isEmpty()) {
+          sharedReads.remove(key);
+        }
+      }
+    }
+  }
+
+  /** The data read from upstream by a leader, which is shared with its followers. */
+  private static final class SharedRead {
+
+    /** Returned by {@link #read} if the requested data isn't and won't become available. */
+    public static final int RESULT_UNAVAILABLE = -2;
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    public final DataSpec dataSpec;
+    public final long length;
+    @Nullable public final Uri uri;
+    public final Map<String, List<String>> responseHeaders;
+
+    private final int maxBufferSize;
+
+    /**
+     * The buffered data. The first chunk starts at {@link #discardedBytes}, and each chunk except
+     * the last one is full.
+     */
+    private final ArrayList<byte[]> chunks;
+
+    private long discardedBytes;
+    private long writtenBytes;
+    private boolean ended;
+    private boolean reachedEnd;
+    private int participantCount;
+
+    public SharedRead(
+        DataSpec dataSpec,
+        long length,
+        @Nullable Uri uri,
+        Map<String, List<String>> responseHeaders,
+        int maxBufferSize) {
+      this.dataSpec = dataSpec;
+      this.length = length;
+      this.uri = uri;
+      this.responseHeaders = responseHeaders;
+      this.maxBufferSize = maxBufferSize;
+      chunks = new ArrayList<>();
+      // The leader.
+      participantCount = 1;
+    }
+
+    /** Adds a follower for {@code followerDataSpec}, if the read can provide its data. */
+    public synchronized boolean addFollower(DataSpec followerDataSpec) {
+      if (ended
+          || followerDataSpec.flags != dataSpec.flags
+          || !followerDataSpec.httpRequestHeaders.equals(dataSpec.httpRequestHeaders)) {
+        return false;
+      }
+      long offset = followerDataSpec.position - dataSpec.position;
+      if (offset < discardedBytes || offset > writtenBytes) {
+        return false;
+      }
+      if (dataSpec.length != C.LENGTH_UNSET
+          && (followerDataSpec.length == C.LENGTH_UNSET
+              || offset + followerDataSpec.length > dataSpec.length)) {
+        return false;
+      }
+      participantCount++;
+      return true;
+    }
+
+    /** Removes a leader or follower, returning whether the read can no longer be joined. */
+    public synchronized boolean removeParticipant() {
+      participantCount--;
+      if (participantCount == 0) {
+        chunks.clear();
+      }
+      return ended || participantCount == 0;
+    }
+
+    /** Appends data read by the leader. */
+    public synchronized void write(byte[] buffer, int offset, int length) {
+      if (participantCount == 1) {
+        // There are no followers to read the data, and followers that join later can only start
+        // reading from its end, so it's discarded without being buffered.
+        chunks.clear();
+        writtenBytes += length;
+        discardedBytes = writtenBytes;
+        return;
+      }
+      while (length > 0) {
+        int chunkOffset = (int) ((writtenBytes - discardedBytes) % CHUNK_SIZE);
+        if (chunkOffset == 0) {
+          chunks.add(new byte[CHUNK_SIZE]);
+        }
+        int bytesToCopy = min(length, CHUNK_SIZE - chunkOffset);
+        System.arraycopy(buffer, offset, chunks.get(chunks.size() - 1), chunkOffset, bytesToCopy);
+        offset += bytesToCopy;
+        length -= bytesToCopy;
+        writtenBytes += bytesToCopy;
+      }
+      // Discard the oldest chunks while the data after them is at least the maximum buffer size.
+      while (!chunks.isEmpty() && writtenBytes - discardedBytes - CHUNK_SIZE >= maxBufferSize) {
+        chunks.remove(0);
+        discardedBytes += CHUNK_SIZE;
+      }
+      notifyAll();
+    }
+
+    /** Marks the end of the data read by the leader. */
+    public synchronized void end(boolean reachedEnd) {
+      if (ended) {
+        return;
+      }
+      ended = true;
+      this.reachedEnd = reachedEnd;
+      notifyAll();
+    }
+
+    /**
+     * Reads data at {@code offset} from the start of the shared read, blocking until it's
+     * available.
+     *
+     * @return The number of bytes read, {@link C#RESULT_END_OF_INPUT}, or {@link
+     *     #RESULT_UNAVAILABLE} if the data isn't and won't become available.
+     * @throws InterruptedIOException If the thread was interrupted while waiting.
+     */
+    public synchronized int read(long offset, byte[] buffer, int bufferOffset, int length)
+        throws InterruptedIOException {
+      while (true) {
+        if (offset < discardedBytes) {
+          return RESULT_UNAVAILABLE;
+        } else if (offset < writtenBytes) {
+          int chunkIndex = (int) ((offset - discardedBytes) / CHUNK_SIZE);
+          int chunkOffset = (int) ((offset - discardedBytes) % CHUNK_SIZE);
+          int bytesToCopy =
+              (int) min(length, min(CHUNK_SIZE - chunkOffset, writtenBytes - offset));
+          System.arraycopy(chunks.get(chunkIndex), chunkOffset, buffer, bufferOffset, bytesToCopy);
+          return bytesToCopy;
+        } else if (ended) {
+          return reachedEnd ? C.RESULT_END_OF_INPUT : RESULT_UNAVAILABLE;
+        }
+        try {
+          wait();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException();
+        }
+      }
+    }
+  }
+}
@@ -35,6 +35,7 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Sets;
 import com.google.common.io.ByteStreams;
 import com.google.common.net.HttpHeaders;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InterruptedIOException;
@@ -47,6 +48,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.zip.GZIPInputStream;
 
 /**
@@ -75,6 +77,7 @@ public class DefaultHttpDataSource extends BaseDataSource implements HttpDataSou
     private boolean allowCrossProtocolRedirects;
     private boolean crossProtocolRedirectsForceOriginal;
     private boolean keepPostFor302Redirects;
+    @Nullable private HttpConnectionPool connectionPool;
 
     /** Creates an instance. */
     public Factory() {
@@ -215,6 +218,24 @@ public class DefaultHttpDataSource extends BaseDataSource implements HttpDataSou
       return this;
     }
 
+    /**
+     * Sets the {@link HttpConnectionPool} that bounds and tracks the connections made by data
+     * sources created by the factory, and through which they speculatively prefetch ranges if
+     * enabled.
+     *
+     * <p>The default is {@code null}, in which case connections aren't bounded and are
+     * disconnected when a data source is closed.
+     *
+     * @param connectionPool The {@link HttpConnectionPool}, or {@code null} to not pool
+     *     connections.
+     * @return This factory.
+     */
+    @UnstableApi
+    public Factory setConnectionPool(@Nullable HttpConnectionPool connectionPool) {
+      this.connectionPool = connectionPool;
+      return this;
+    }
+
     @UnstableApi
     @Override
     public DefaultHttpDataSource createDataSource() {
@@ -227,7 +248,9 @@ public class DefaultHttpDataSource extends BaseDataSource implements HttpDataSou
               crossProtocolRedirectsForceOriginal,
               defaultRequestProperties,
               contentTypePredicate,
-              keepPostFor302Redirects);
+              keepPostFor302Redirects,
+              connectionPool,
+              /* isPrefetch= */ false);
       if (transferListener != null) {
         dataSource.addTransferListener(transferListener);
       }
@@ -255,10 +278,14 @@ public class DefaultHttpDataSource extends BaseDataSource implements HttpDataSou
   private final RequestProperties requestProperties;
   @Nullable private final Predicate<String> contentTypePredicate;
   private final boolean keepPostFor302Redirects;
+  @Nullable private final HttpConnectionPool connectionPool;
+  private final boolean isPrefetch;
 
   @Nullable private DataSpec dataSpec;
   @Nullable private HttpURLConnection connection;
   @Nullable private InputStream inputStream;
+  @Nullable private String pooledHost;
+  @Nullable private Map<String, List<String>> prefetchedResponseHeaders;
   private boolean transferStarted;
   private int responseCode;
   private long bytesToRead;
@@ -272,7 +299,9 @@ public class DefaultHttpDataSource extends BaseDataSource implements HttpDataSou
       boolean crossProtocolRedirectsForceOriginal,
       @Nullable RequestProperties defaultRequestProperties,
       @Nullable Predicate<String> contentTypePredicate,
-      boolean keepPostFor302Redirects) {
+      boolean keepPostFor302Redirects,
+      @Nullable HttpConnectionPool connectionPool,
+      boolean isPrefetch) {
     super(/* isNetwork= */ true);
     this.userAgent = userAgent;
     this.connectTimeoutMillis = connectTimeoutMillis;
@@ -288,6 +317,8 @@ public class DefaultHttpDataSource extends BaseDataSource implements HttpDataSou
     this.contentTypePredicate = contentTypePredicate;
     this.requestProperties = new RequestProperties();
     this.keepPostFor302Redirects = keepPostFor302Redirects;
+    this.connectionPool = connectionPool;
+    this.isPrefetch = isPrefetch;
   }
 
   @UnstableApi
@@ -306,13 +337,18 @@ public class DefaultHttpDataSource extends BaseDataSource implements HttpDataSou
   @UnstableApi
   @Override
   public int getResponseCode() {
+    if (prefetchedResponseHeaders != null) {
+      return responseCode;
+    }
     return connection == null || responseCode <= 0 ? -1 : responseCode;
   }
 
   @UnstableApi
   @Override
   public Map<String, List<String>> getResponseHeaders() {
-    if (connection == null) {
+    if (prefetchedResponseHeaders != null) {
+      return prefetchedResponseHeaders;
+    } else if (connection == null) {
       return ImmutableMap.of();
     }
     // connection.getHeaderFields() always contains a null key with a value like
@@ -356,9 +392,30 @@ public class DefaultHttpDataSource extends BaseDataSource implements HttpDataSou
     bytesToRead = 0;
     transferInitializing(dataSpec);
 
+    if (connectionPool != null && !isPrefetch) {
+      @Nullable HttpConnectionPool.PrefetchedResponse prefetchedResponse;
+      try {
+        prefetchedResponse = takePrefetchedResponse(connectionPool, dataSpec);
+      } catch (InterruptedIOException e) {
+        throw HttpDataSourceException.createForIOException(
+            e, dataSpec, HttpDataSourceException.TYPE_OPEN);
+      }
+      if (prefetchedResponse != null) {
+        return openPrefetchedResponse(dataSpec, prefetchedResponse);
+      }
+    }
+
     String responseMessage;
     HttpURLConnection connection;
     try {
+      if (connectionPool != null) {
+        String host = getHost(dataSpec);
+        if (!isPrefetch) {
+          // Prefetches acquire their connection before they're opened.
+          connectionPool.acquire(host);
+        }
+        pooledHost = host;
+      }
       this.connection = makeConnection(dataSpec);
       connection = this.connection;
       responseCode = connection.getResponseCode();
@@ -481,6 +538,21 @@ public class DefaultHttpDataSource extends BaseDataSource implements HttpDataSou
   @UnstableApi
   @Override
   public void close() throws HttpDataSourceException {
+    @Nullable DataSpec dataSpec = this.dataSpec;
+    @Nullable String pooledHost = this.pooledHost;
+    @Nullable HttpURLConnection connection = this.connection;
+    // The socket of a connection whose response was read in full can be reused, provided that the
+    // connection isn't disconnected.
+    boolean reusable =
+        connection != null
+            && inputStream != null
+            && bytesToRead != C.LENGTH_UNSET
+            && bytesRead == bytesToRead;
+    @Nullable
+    String contentRange =
+        reusable ? checkNotNull(connection).getHeaderField(HttpHeaders.CONTENT_RANGE) : null;
+    this.pooledHost = null;
+    prefetchedResponseHeaders = null;
     try {
       @Nullable InputStream inputStream = this.inputStream;
       if (inputStream != null) {
@@ -496,13 +568,22 @@ public class DefaultHttpDataSource extends BaseDataSource implements HttpDataSou
       }
     } finally {
       inputStream = null;
-      closeConnectionQuietly();
+      if (pooledHost == null || !reusable) {
+        closeConnectionQuietly();
+      }
       if (transferStarted) {
         transferStarted = false;
         transferEnded();
       }
-      connection = null;
-      dataSpec = null;
+      this.connection = null;
+      this.dataSpec = null;
+      if (pooledHost != null) {
+        HttpConnectionPool connectionPool = checkNotNull(this.connectionPool);
+        connectionPool.release(pooledHost, reusable);
+        if (reusable && !isPrefetch) {
+          maybePrefetchNextRange(connectionPool, castNonNull(dataSpec), contentRange);
+        }
+      }
     }
   }
 
@@ -781,10 +862,184 @@ public class DefaultHttpDataSource extends BaseDataSource implements HttpDataSou
     }
 
     bytesRead += read;
-    bytesTransferred(read);
+    if (prefetchedResponseHeaders == null) {
+      // Reads of prefetched responses are from memory, and so aren't reported as transfers.
+      bytesTransferred(read);
+    }
     return read;
   }
 
+  /**
+   * Returns the response that was prefetched for {@code dataSpec}, waiting for it if the prefetch
+   * is in progress, or null if it wasn't prefetched.
+   */
+  @Nullable
+  private HttpConnectionPool.PrefetchedResponse takePrefetchedResponse(
+      HttpConnectionPool connectionPool, DataSpec dataSpec) throws InterruptedIOException {
+    @Nullable
+    String prefetchKey =
+        getPrefetchKey(connectionPool, dataSpec, requestProperties.getSnapshot());
+    return prefetchKey != null ? connectionPool.takePrefetchedResponse(prefetchKey) : null;
+  }
+
+  private long openPrefetchedResponse(
+      DataSpec dataSpec, HttpConnectionPool.PrefetchedResponse prefetchedResponse)
+      throws InvalidContentTypeException {
+    byte[] data = checkNotNull(prefetchedResponse.data);
+    Map<String, List<String>> responseHeaders = checkNotNull(prefetchedResponse.responseHeaders);
+    // The prefetch may have been made by a source with a different content type predicate.
+    @Nullable String contentType = getHeaderField(responseHeaders, HttpHeaders.CONTENT_TYPE);
+    if (contentTypePredicate != null && !contentTypePredicate.apply(contentType)) {
+      throw new InvalidContentTypeException(contentType, dataSpec);
+    }
+    responseCode = HttpURLConnection.HTTP_PARTIAL;
+    prefetchedResponseHeaders = responseHeaders;
+    inputStream = new ByteArrayInputStream(data);
+    bytesToRead = data.length;
+    transferStarted = true;
+    transferStarted(dataSpec);
+    return bytesToRead;
+  }
+
+  /**
+   * Speculatively prefetches the range that follows {@code dataSpec}, which has been read in full,
+   * if the connection pool allows it.
+   */
+  private void maybePrefetchNextRange(
+      HttpConnectionPool connectionPool, DataSpec dataSpec, @Nullable String contentRange) {
+    if (dataSpec.length == C.LENGTH_UNSET) {
+      return;
+    }
+    long nextPosition = dataSpec.position + dataSpec.length;
+    long nextLength = dataSpec.length;
+    long documentSize = HttpUtil.getDocumentSize(contentRange);
+    if (documentSize != C.LENGTH_UNSET) {
+      if (nextPosition >= documentSize) {
+        return;
+      }
+      nextLength = min(nextLength, documentSize - nextPosition);
+    }
+    DataSpec nextDataSpec =
+        dataSpec.buildUpon().setPosition(nextPosition).setLength(nextLength).build();
+    // Snapshot the request properties, since they may be changed before the prefetch runs.
+    Map<String, String> requestProperties = this.requestProperties.getSnapshot();
+    @Nullable
+    String prefetchKey = getPrefetchKey(connectionPool, nextDataSpec, requestProperties);
+    if (prefetchKey == null) {
+      return;
+    }
+    connectionPool.prefetch(
+        prefetchKey,
+        () -> prefetch(connectionPool, prefetchKey, nextDataSpec, requestProperties));
+  }
+
+  /** Reads a range into memory on a pooled connection. Runs on the pool's prefetch thread. */
+  private void prefetch(
+      HttpConnectionPool connectionPool,
+      String prefetchKey,
+      DataSpec dataSpec,
+      Map<String, String> requestProperties) {
+    if (!connectionPool.tryAcquireIdle(getHost(dataSpec))) {
+      // Don't open a new connection, or wait for one, just to speculate.
+      connectionPool.onPrefetched(prefetchKey, /* data= */ null, ImmutableMap.of());
+      return;
+    }
+    DefaultHttpDataSource dataSource =
+        new DefaultHttpDataSource(
+            userAgent,
+            connectTimeoutMillis,
+            readTimeoutMillis,
+            allowCrossProtocolRedirects,
+            crossProtocolRedirectsForceOriginal,
+            defaultRequestProperties,
+            contentTypePredicate,
+            keepPostFor302Redirects,
+            connectionPool,
+            /* isPrefetch= */ true);
+    for (Map.Entry<String, String> property : requestProperties.entrySet()) {
+      dataSource.setRequestProperty(property.getKey(), property.getValue());
+    }
+    @Nullable byte[] data = null;
+    Map<String, List<String>> responseHeaders = ImmutableMap.of();
+    try {
+      dataSource.open(dataSpec);
+      if (dataSource.getResponseCode() == HttpURLConnection.HTTP_PARTIAL) {
+        responseHeaders = ImmutableMap.copyOf(dataSource.getResponseHeaders());
+        data = DataSourceUtil.readToEnd(dataSource);
+      }
+    } catch (IOException e) {
+      // Prefetching is speculative, so failures are ignored.
+      data = null;
+    } finally {
+      DataSourceUtil.closeQuietly(dataSource);
+    }
+    connectionPool.onPrefetched(prefetchKey, data, responseHeaders);
+  }
+
+  /**
+   * Returns the key for a prefetched response for {@code dataSpec}, or null if it can't be
+   * prefetched.
+   *
+   * <p>The pool may be shared by sources created by different factories, so the key includes
+   * everything that affects the request made for {@code dataSpec}: the headers that are sent,
+   * merged in the same way as when making a connection, the user agent and the redirect options.
+   *
+   * @param connectionPool The {@link HttpConnectionPool}.
+   * @param dataSpec The {@link DataSpec} of the request.
+   * @param requestProperties A snapshot of the request properties set on this source.
+   */
+  @Nullable
+  private String getPrefetchKey(
+      HttpConnectionPool connectionPool, DataSpec dataSpec, Map<String, String> requestProperties) {
+    if (dataSpec.httpMethod != DataSpec.HTTP_METHOD_GET
+        || dataSpec.httpBody != null
+        || dataSpec.length == C.LENGTH_UNSET
+        || dataSpec.length > connectionPool.getMaxPrefetchSize()
+        || dataSpec.isFlagSet(DataSpec.FLAG_ALLOW_GZIP)) {
+      return null;
+    }
+    // Sort the headers, so that the key doesn't depend on the order in which they were set.
+    Map<String, String> requestHeaders = new TreeMap<>();
+    if (defaultRequestProperties != null) {
+      requestHeaders.putAll(defaultRequestProperties.getSnapshot());
+    }
+    requestHeaders.putAll(requestProperties);
+    requestHeaders.putAll(dataSpec.httpRequestHeaders);
+    return dataSpec.uri
+        + "|"
+        + dataSpec.position
+        + "|"
+        + dataSpec.length
+        + "|"
+        + requestHeaders
+        + "|"
+        + userAgent
+        + "|"
+        + allowCrossProtocolRedirects
+        + "|"
+        + crossProtocolRedirectsForceOriginal
+        + "|"
+        + keepPostFor302Redirects;
+  }
+
+  /** Returns the last value of the header with the given name, ignoring case, or null. */
+  @Nullable
+  private static String getHeaderField(Map<String, List<String>> headers, String name) {
+    @Nullable String value = null;
+    for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+      List<String> values = header.getValue();
+      if (name.equalsIgnoreCase(header.getKey()) && !values.isEmpty()) {
+        value = values.get(values.size() - 1);
+      }
+    }
+    return value;
+  }
+
+  private static String getHost(DataSpec dataSpec) {
+    @Nullable String host = dataSpec.uri.getHost();
+    return host != null ? host : "";
+  }
+
   /** Closes the current connection quietly, if there is one. */
   private void closeConnectionQuietly() {
     if (connection != null) {
@@ -0,0 +1,320 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.videoplayer.datasource;
+
+import static com.example.videoplayer.common.util.Assertions.checkArgument;
+
+import android.os.SystemClock;
+import androidx.annotation.Nullable;
+import com.example.videoplayer.common.util.UnstableApi;
+import com.example.videoplayer.common.util.Util;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Pools the HTTP connections made by {@link DefaultHttpDataSource} instances.
+ *
+ * <p>{@link java.net.HttpURLConnection} reuses the socket of a connection whose response was read
+ * in full and whose input stream was closed without disconnecting. When a {@link
+ * DefaultHttpDataSource} uses a pool, it releases connections in this way wherever possible, and
+ * the pool bounds the number of connections that are open to each host. Opening a connection
+ * blocks while the bound is reached. The pool tracks which connections were released for reuse,
+ * and reports an open as a {@link #getHitCount() hit} if it could reuse one of them.
+ *
+ * <p>If speculative prefetch is enabled, then when a data source finishes reading a range of a
+ * resource, the next range of the same length is fetched in the background onto an idle pooled
+ * connection. If a data source then opens that range, it's read from memory rather than paying for
+ * another round trip. Only GET requests without a body are prefetched, and only if the connection
+ * limit for the host hasn't been reached. Reads of prefetched data aren't reported to {@link
+ * TransferListener TransferListeners} as network transfers.
+ *
+ * <p>A pool can be shared by the data sources of several {@link DefaultHttpDataSource.Factory}
+ * instances.
+ */
+@UnstableApi
+public final class HttpConnectionPool {
+
+  /** The default maximum number of connections that are open to each host. */
+  public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 6;
+
+  /**
+   * How long released connections are assumed to be kept alive for, in milliseconds. Matches the
+   * default keep-alive duration of the platform's connection pool.
+   */
+  private static final long KEEP_ALIVE_DURATION_MS = 5 * 60 * 1000;
+
+  /** The maximum number of prefetched responses that are retained. */
+  private static final int MAX_PREFETCHED_RESPONSES = 4;
+
+  private final int maxConnectionsPerHost;
+  private final int maxPrefetchSize;
+  private final HashMap<String, HostState> hostStates;
+  private final LinkedHashMap<String, PrefetchedResponse> prefetchedResponses;
+
+  @Nullable private ExecutorService prefetchExecutor;
+  private int hitCount;
+  private int missCount;
+  private int prefetchHitCount;
+  private int prefetchWastedCount;
+
+  /**
+   * Creates an instance with {@link #DEFAULT_MAX_CONNECTIONS_PER_HOST} and speculative prefetch
+   * disabled.
+   */
+  public HttpConnectionPool() {
+    this(DEFAULT_MAX_CONNECTIONS_PER_HOST, /* maxPrefetchSize= */ 0);
+  }
+
+  /**
+   * Creates an instance.
+   *
+   * @param maxConnectionsPerHost The maximum number of connections that are open to each host.
+   * @param maxPrefetchSize The maximum length of a range that's speculatively prefetched, in bytes,
+   *     or 0 to disable speculative prefetch.
+   */
+  public HttpConnectionPool(int maxConnectionsPerHost, int maxPrefetchSize) {
+    checkArgument(maxConnectionsPerHost > 0 && maxPrefetchSize >= 0);
+    this.maxConnectionsPerHost = maxConnectionsPerHost;
+    this.maxPrefetchSize = maxPrefetchSize;
+    hostStates = new HashMap<>();
+    prefetchedResponses =
+        new LinkedHashMap<String, PrefetchedResponse>() {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, PrefetchedResponse> eldest) {
+            if (size() > MAX_PREFETCHED_RESPONSES) {
+              prefetchWastedCount++;
+              return true;
+            }
+            return false;
+          }
+        };
+  }
+
+  /**
+   * Returns the number of connections that were opened when a connection to the same host had been
+   * released for reuse.
+   */
+  public synchronized int getHitCount() {
+    return hitCount;
+  }
+
+  /** Returns the number of connections that were opened with no connection available for reuse. */
+  public synchronized int getMissCount() {
+    return missCount;
+  }
+
+  /** Returns the number of opens that were served from a speculatively prefetched response. */
+  public synchronized int getPrefetchHitCount() {
+    return prefetchHitCount;
+  }
+
+  /** Returns the number of speculatively prefetched responses that were discarded without use. */
+  public synchronized int getPrefetchWastedCount() {
+    return prefetchWastedCount;
+  }
+
+  /** Resets the metrics to zero. */
+  public synchronized void resetMetrics() {
+    hitCount = 0;
+    missCount = 0;
+    prefetchHitCount = 0;
+    prefetchWastedCount = 0;
+  }
+
+  /**
+   * Releases the resources held by the pool. Pending prefetches are abandoned, and no further
+   * prefetches are made.
+   */
+  public synchronized void release() {
+    if (prefetchExecutor != null) {
+      prefetchExecutor.shutdownNow();
+      prefetchExecutor = null;
+    }
+    prefetchWastedCount += prefetchedResponses.size();
+    prefetchedResponses.clear();
+  }
+
+  /* package */ int getMaxPrefetchSize() {
+    return maxPrefetchSize;
+  }
+
+  /**
+   * Acquires a connection to {@code host}, blocking until the number of open connections to the
+   * host is below the limit.
+   *
+   * @throws InterruptedIOException If the thread is interrupted while waiting.
+   */
+  /* package */ synchronized void acquire(String host) throws InterruptedIOException {
+    HostState hostState = getHostState(host);
+    while (hostState.activeConnectionCount >= maxConnectionsPerHost) {
+      try {
+        wait();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException();
+      }
+    }
+    onAcquired(hostState);
+  }
+
+  /**
+   * Acquires a connection to {@code host} if it's below the limit and a connection to it has been
+   * released for reuse, without blocking. Returns whether a connection was acquired.
+   */
+  /* package */ synchronized boolean tryAcquireIdle(String host) {
+    HostState hostState = getHostState(host);
+    hostState.expireIdleConnections();
+    if (hostState.activeConnectionCount >= maxConnectionsPerHost
+        || hostState.idleConnectionReleaseTimesMs.isEmpty()) {
+      return false;
+    }
+    onAcquired(hostState);
+    return true;
+  }
+
+  /**
+   * Releases a connection to {@code host}.
+   *
+   * @param host The host.
+   * @param reusable Whether the connection's response was read in full, so that its socket can be
+   *     reused.
+   */
+  /* package */ synchronized void release(String host, boolean reusable) {
+    HostState hostState = getHostState(host);
+    hostState.activeConnectionCount--;
+    if (reusable && hostState.idleConnectionReleaseTimesMs.size() < maxConnectionsPerHost) {
+      hostState.idleConnectionReleaseTimesMs.add(SystemClock.elapsedRealtime());
+    }
+    notifyAll();
+  }
+
+  /**
+   * Schedules a speculative prefetch, unless one is already pending or available for {@code key}.
+   */
+  /* package */ synchronized void prefetch(String key, Runnable prefetchRunnable) {
+    if (prefetchedResponses.containsKey(key)) {
+      return;
+    }
+    if (prefetchExecutor == null) {
+      prefetchExecutor = Util.newSingleThreadExecutor("ExoPlayer:HttpPrefetch");
+    }
+    prefetchedResponses.put(key, new PrefetchedResponse());
+    // Wake any thread waiting for a pending response that was evicted to make room.
+    notifyAll();
+    prefetchExecutor.execute(prefetchRunnable);
+  }
+
+  /** Completes a speculative prefetch, or abandons it if {@code data} is null. */
+  /* package */ synchronized void onPrefetched(
+      String key, @Nullable byte[] data, Map<String, List<String>> responseHeaders) {
+    @Nullable PrefetchedResponse response = prefetchedResponses.get(key);
+    if (response == null) {
+      return;
+    }
+    if (data == null) {
+      prefetchedResponses.remove(key);
+    } else {
+      response.data = data;
+      response.responseHeaders = responseHeaders;
+    }
+    response.completed = true;
+    notifyAll();
+  }
+
+  /**
+   * Returns the prefetched response for {@code key}, waiting for it if the prefetch is pending, or
+   * null if there's no prefetched response.
+   *
+   * @throws InterruptedIOException If the thread is interrupted while waiting.
+   */
+  @Nullable
+  /* package */ synchronized PrefetchedResponse takePrefetchedResponse(String key)
+      throws InterruptedIOException {
+    @Nullable PrefetchedResponse response = prefetchedResponses.get(key);
+    if (response == null) {
+      return null;
+    }
+    // The request is already in flight, so waiting for it is faster than making another.
+    while (!response.completed && prefetchedResponses.get(key) == response) {
+      try {
+        wait();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException();
+      }
+    }
+    if (prefetchedResponses.get(key) != response || response.data == null) {
+      // The prefetch failed, or was evicted before it completed.
+      return null;
+    }
+    prefetchedResponses.remove(key);
+    prefetchHitCount++;
+    return response;
+  }
+
+  private HostState getHostState(String host) {
+    @Nullable HostState hostState = hostStates.get(host);
+    if (hostState == null) {
+      hostState = new HostState();
+      hostStates.put(host, hostState);
+    }
+    return hostState;
+  }
+
+  private void onAcquired(HostState hostState) {
+    hostState.activeConnectionCount++;
+    hostState.expireIdleConnections();
+    if (hostState.idleConnectionReleaseTimesMs.pollLast() != null) {
+      hitCount++;
+    } else {
+      missCount++;
+    }
+  }
+
+  /** A response that was speculatively prefetched. */
+  /* package */ static final class PrefetchedResponse {
+
+    @Nullable public byte[] data;
+    @Nullable public Map<String, List<String>> responseHeaders;
+    public boolean completed;
+  }
+
+  private static final class HostState {
+
+    /** Release times of connections that can be reused, in ascending order. */
+    public final ArrayDeque<Long> idleConnectionReleaseTimesMs;
+
+    public int activeConnectionCount;
+
+    public HostState() {
+      idleConnectionReleaseTimesMs = new ArrayDeque<>();
+    }
+
+    public void expireIdleConnections() {
+      long nowMs = SystemClock.elapsedRealtime();
+      Iterator<Long> iterator = idleConnectionReleaseTimesMs.iterator();
+      while (iterator.hasNext() && nowMs - iterator.next() > KEEP_ALIVE_DURATION_MS) {
+        iterator.remove();
+      }
+    }
+  }
+}
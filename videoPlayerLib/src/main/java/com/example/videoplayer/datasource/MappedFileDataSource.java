@@ -0,0 +1,264 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.videoplayer.datasource;
+
+import static com.example.videoplayer.common.util.Assertions.checkArgument;
+import static com.example.videoplayer.common.util.Assertions.checkNotNull;
+import static com.example.videoplayer.common.util.Util.castNonNull;
+import static java.lang.Math.min;
+
+import android.net.Uri;
+import androidx.annotation.Nullable;
+import com.example.videoplayer.common.C;
+import com.example.videoplayer.common.PlaybackException;
+import com.example.videoplayer.common.util.UnstableApi;
+import com.example.videoplayer.datasource.FileDataSource.FileDataSourceException;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A {@link DataSource} for reading local files by memory mapping them.
+ *
+ * <p>Reads are served from a {@link MappedByteBuffer} rather than through a system call per read,
+ * and {@link #readBuffer(int)} returns read-only views onto the mapping without copying any data.
+ * This makes the source well suited to reading immutable files that are read repeatedly, such as
+ * the span files of a {@link com.example.videoplayer.datasource.cache.SimpleCache}. It can be used
+ * for this purpose by passing a {@link Factory} to {@link
+ * com.example.videoplayer.datasource.cache.CacheDataSource.Factory#setCacheReadDataSourceFactory}.
+ *
+ * <p>Instances created by the same {@link Factory} share a bounded, least recently used set of
+ * mappings, so that reopening a recently read file (for example when seeking) doesn't map it again.
+ * A mapping is reused only if the file's length and last modified time are unchanged, and so files
+ * must not be modified in place while they're being read. Mappings are released when they're
+ * garbage collected after having been evicted.
+ *
+ * <p>Files longer than {@link Integer#MAX_VALUE} bytes can't be mapped, and opening them will fail.
+ */
+@UnstableApi
+public final class MappedFileDataSource extends BaseDataSource {
+
+  /** The default maximum number of mappings that are retained by a {@link Factory}. */
+  public static final int DEFAULT_MAX_MAPPINGS = 16;
+
+  /** {@link DataSource.Factory} for {@link MappedFileDataSource} instances. */
+  public static final class Factory implements DataSource.Factory {
+
+    private final MappingCache mappingCache;
+    @Nullable private TransferListener listener;
+
+    /** Creates an instance that retains up to {@link #DEFAULT_MAX_MAPPINGS} mappings. */
+    public Factory() {
+      this(DEFAULT_MAX_MAPPINGS);
+    }
+
+    /**
+     * Creates an instance.
+     *
+     * @param maxMappings The maximum number of mappings that are retained for reuse by the {@link
+     *     MappedFileDataSource} instances created by this factory.
+     */
+    public Factory(int maxMappings) {
+      checkArgument(maxMappings > 0);
+      mappingCache = new MappingCache(maxMappings);
+    }
+
+    /**
+     * Sets a {@link TransferListener} for {@link MappedFileDataSource} instances created by this
+     * factory.
+     *
+     * @param listener The {@link TransferListener}.
+     * @return This factory.
+     */
+    public Factory setListener(@Nullable TransferListener listener) {
+      this.listener = listener;
+      return this;
+    }
+
+    @Override
+    public MappedFileDataSource createDataSource() {
+      MappedFileDataSource dataSource = new MappedFileDataSource(mappingCache);
+      if (listener != null) {
+        dataSource.addTransferListener(listener);
+      }
+      return dataSource;
+    }
+  }
+
+  private final MappingCache mappingCache;
+
+  @Nullable private Uri uri;
+  @Nullable private ByteBuffer buffer;
+  private boolean opened;
+
+  /** Creates an instance that doesn't share mappings with any other instance. */
+  public MappedFileDataSource() {
+    this(new MappingCache(/* maxMappings= */ 1));
+  }
+
+  private MappedFileDataSource(MappingCache mappingCache) {
+    super(/* isNetwork= */ false);
+    this.mappingCache = mappingCache;
+  }
+
+  @Override
+  public long open(DataSpec dataSpec) throws FileDataSourceException {
+    Uri uri = dataSpec.uri;
+    this.uri = uri;
+    transferInitializing(dataSpec);
+    MappedByteBuffer mapping = mappingCache.getMapping(uri);
+    long fileLength = mapping.capacity();
+    long bytesRemaining =
+        dataSpec.length == C.LENGTH_UNSET ? fileLength - dataSpec.position : dataSpec.length;
+    if (dataSpec.position > fileLength
+        || bytesRemaining < 0
+        || bytesRemaining > fileLength - dataSpec.position) {
+      throw new FileDataSourceException(
+          /* message= */ null,
+          /* cause= */ null,
+          PlaybackException.ERROR_CODE_IO_READ_POSITION_OUT_OF_RANGE);
+    }
+    ByteBuffer buffer = mapping.duplicate();
+    buffer.limit((int) (dataSpec.position + bytesRemaining));
+    buffer.position((int) dataSpec.position);
+    this.buffer = buffer;
+
+    opened = true;
+    transferStarted(dataSpec);
+
+    return bytesRemaining;
+  }
+
+  @Override
+  public int read(byte[] buffer, int offset, int length) {
+    ByteBuffer source = castNonNull(this.buffer);
+    if (length == 0) {
+      return 0;
+    } else if (!source.hasRemaining()) {
+      return C.RESULT_END_OF_INPUT;
+    }
+    int bytesRead = min(source.remaining(), length);
+    source.get(buffer, offset, bytesRead);
+    bytesTransferred(bytesRead);
+    return bytesRead;
+  }
+
+  @Override
+  public boolean isZeroCopyReadSupported() {
+    return buffer != null;
+  }
+
+  @Override
+  @Nullable
+  public ByteBuffer readBuffer(int length) {
+    ByteBuffer source = castNonNull(buffer);
+    if (length != 0 && !source.hasRemaining()) {
+      return null;
+    }
+    int bytesRead = min(source.remaining(), length);
+    ByteBuffer slice = source.slice();
+    slice.limit(bytesRead);
+    source.position(source.position() + bytesRead);
+    if (bytesRead > 0) {
+      bytesTransferred(bytesRead);
+    }
+    return slice;
+  }
+
+  @Override
+  @Nullable
+  public Uri getUri() {
+    return uri;
+  }
+
+  @Override
+  public void close() {
+    uri = null;
+    buffer = null;
+    if (opened) {
+      opened = false;
+      transferEnded();
+    }
+  }
+
+  /** A bounded, least recently used set of read-only file mappings, keyed by file path. */
+  private static final class MappingCache {
+
+    private final LinkedHashMap<String, Mapping> mappings;
+
+    public MappingCache(int maxMappings) {
+      mappings =
+          new LinkedHashMap<String, Mapping>(
+              /* initialCapacity= */ 16, /* loadFactor= */ 0.75f, /* accessOrder= */ true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Mapping> eldest) {
+              return size() > maxMappings;
+            }
+          };
+    }
+
+    /**
+     * Returns a mapping of the whole file identified by {@code uri}, mapping the file if there's no
+     * valid mapping of it already.
+     */
+    public synchronized MappedByteBuffer getMapping(Uri uri) throws FileDataSourceException {
+      File file = new File(checkNotNull(uri.getPath()));
+      String path = file.getAbsolutePath();
+      long lastModified = file.lastModified();
+      @Nullable Mapping mapping = mappings.get(path);
+      if (mapping != null
+          && mapping.lastModified == lastModified
+          && mapping.buffer.capacity() == file.length()) {
+        return mapping.buffer;
+      }
+      MappedByteBuffer buffer = mapFile(file);
+      mappings.put(path, new Mapping(buffer, lastModified));
+      return buffer;
+    }
+
+    private static MappedByteBuffer mapFile(File file) throws FileDataSourceException {
+      try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+          FileChannel channel = randomAccessFile.getChannel()) {
+        // The mapping remains valid after the channel is closed. Mapping a file that's larger than
+        // Integer.MAX_VALUE bytes throws an IllegalArgumentException.
+        return channel.map(FileChannel.MapMode.READ_ONLY, /* position= */ 0, channel.size());
+      } catch (FileNotFoundException e) {
+        throw new FileDataSourceException(e, PlaybackException.ERROR_CODE_IO_FILE_NOT_FOUND);
+      } catch (SecurityException e) {
+        throw new FileDataSourceException(e, PlaybackException.ERROR_CODE_IO_NO_PERMISSION);
+      } catch (IOException | RuntimeException e) {
+        throw new FileDataSourceException(e, PlaybackException.ERROR_CODE_IO_UNSPECIFIED);
+      }
+    }
+  }
+
+  private static final class Mapping {
+
+    public final MappedByteBuffer buffer;
+    public final long lastModified;
+
+    public Mapping(MappedByteBuffer buffer, long lastModified) {
+      this.buffer = buffer;
+      this.lastModified = lastModified;
+    }
+  }
+}
@@ -32,7 +32,10 @@ import java.util.Map;
  * <p>Calls to {@link #open(DataSpec)} and {@link #read(byte[], int, int)} are allowed to proceed
  * only if there are no higher priority tasks registered to the {@link PriorityTaskManager}. If
  * there exists a higher priority task then {@link PriorityTaskManager.PriorityTooLowException} is
- * thrown.
+ * thrown, unless the {@link PriorityTaskManager} grants lower priority tasks a {@linkplain
+ * PriorityTaskManager#setLowerPriorityBandwidthShare(float) bandwidth share}, in which case the
+ * calls block as needed to keep the data read within the share. The data read is reported to the
+ * {@link PriorityTaskManager} with {@link PriorityTaskManager#onBytesTransferred(int, long)}.
  *
  * <p>Instances of this class are intended to be used as parts of (possibly larger) tasks that are
  * registered with the {@link PriorityTaskManager}, and hence do <em>not</em> register as tasks
@@ -98,14 +101,18 @@ public final class PriorityDataSource implements DataSource {
 
   @Override
   public long open(DataSpec dataSpec) throws IOException {
-    priorityTaskManager.proceedOrThrow(priority);
+    priorityTaskManager.proceedWithShareOrThrow(priority);
     return upstream.open(dataSpec);
   }
 
   @Override
   public int read(byte[] buffer, int offset, int length) throws IOException {
-    priorityTaskManager.proceedOrThrow(priority);
-    return upstream.read(buffer, offset, length);
+    priorityTaskManager.proceedWithShareOrThrow(priority);
+    int bytesRead = upstream.read(buffer, offset, length);
+    if (bytesRead > 0) {
+      priorityTaskManager.onBytesTransferred(priority, bytesRead);
+    }
+    return bytesRead;
   }
 
   @Override
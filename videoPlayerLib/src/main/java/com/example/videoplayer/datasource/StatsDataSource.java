@@ -21,6 +21,7 @@ import com.example.videoplayer.common.C;
 import com.example.videoplayer.common.util.Assertions;
 import com.example.videoplayer.common.util.UnstableApi;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -107,6 +108,21 @@ public final class StatsDataSource implements DataSource {
     return bytesRead;
   }
 
+  @Override
+  public boolean isZeroCopyReadSupported() {
+    return dataSource.isZeroCopyReadSupported();
+  }
+
+  @Override
+  @Nullable
+  public ByteBuffer readBuffer(int length) throws IOException {
+    @Nullable ByteBuffer buffer = dataSource.readBuffer(length);
+    if (buffer != null) {
+      this.bytesRead += buffer.remaining();
+    }
+    return buffer;
+  }
+
   @Override
   @Nullable
   public Uri getUri() {
@@ -24,14 +24,24 @@ import com.example.videoplayer.common.C;
 import com.example.videoplayer.common.PlaybackException;
 import com.example.videoplayer.common.util.UnstableApi;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.MulticastSocket;
 import java.net.SocketTimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
-/** A UDP {@link DataSource}. */
+/**
+ * A UDP {@link DataSource}.
+ *
+ * <p>By default, each read receives at most one datagram from the socket. If a receive ring is
+ * enabled, a dedicated thread instead receives datagrams into a ring of preallocated packets, and
+ * each read drains as many buffered datagrams as fit. This keeps receiving while the reading
+ * thread is busy, which avoids losing datagrams of high rate streams such as multicast MPEG-TS.
+ */
 @UnstableApi
 public final class UdpDataSource extends BaseDataSource {
 
@@ -59,13 +69,18 @@ public final class UdpDataSource extends BaseDataSource {
   public static final int UDP_PORT_UNSET = -1;
 
   private final int socketTimeoutMillis;
+  private final int receiveRingPacketCount;
+  private final int receiveBufferSize;
   private final byte[] packetBuffer;
   private final DatagramPacket packet;
+  private final AtomicLong droppedPacketCount;
+  private final AtomicLong overrunCount;
 
   @Nullable private Uri uri;
   @Nullable private DatagramSocket socket;
   @Nullable private MulticastSocket multicastSocket;
   @Nullable private InetAddress address;
+  @Nullable private PacketReceiver packetReceiver;
   private boolean opened;
 
   private int packetRemaining;
@@ -91,10 +106,38 @@ public final class UdpDataSource extends BaseDataSource {
    *     as an infinite timeout.
    */
   public UdpDataSource(int maxPacketSize, int socketTimeoutMillis) {
+    this(
+        maxPacketSize,
+        socketTimeoutMillis,
+        /* receiveRingPacketCount= */ 0,
+        /* receiveBufferSize= */ 0);
+  }
+
+  /**
+   * Constructs a new instance.
+   *
+   * @param maxPacketSize The maximum datagram packet size, in bytes.
+   * @param socketTimeoutMillis The socket timeout in milliseconds. A timeout of zero is interpreted
+   *     as an infinite timeout.
+   * @param receiveRingPacketCount The number of datagrams that a dedicated receiving thread can
+   *     buffer ahead of reads, or 0 to receive datagrams on the reading thread. Datagrams received
+   *     while the ring is full are dropped, and counted by {@link #getDroppedPacketCount()}.
+   * @param receiveBufferSize The size of the socket's receive buffer, in bytes, or 0 to use the
+   *     system default.
+   */
+  public UdpDataSource(
+      int maxPacketSize,
+      int socketTimeoutMillis,
+      int receiveRingPacketCount,
+      int receiveBufferSize) {
     super(/* isNetwork= */ true);
     this.socketTimeoutMillis = socketTimeoutMillis;
+    this.receiveRingPacketCount = receiveRingPacketCount;
+    this.receiveBufferSize = receiveBufferSize;
     packetBuffer = new byte[maxPacketSize];
     packet = new DatagramPacket(packetBuffer, 0, maxPacketSize);
+    droppedPacketCount = new AtomicLong();
+    overrunCount = new AtomicLong();
   }
 
   @Override
@@ -113,7 +156,22 @@ public final class UdpDataSource extends BaseDataSource {
       } else {
         socket = new DatagramSocket(socketAddress);
       }
-      socket.setSoTimeout(socketTimeoutMillis);
+      if (receiveBufferSize > 0) {
+        socket.setReceiveBufferSize(receiveBufferSize);
+      }
+      if (receiveRingPacketCount > 0) {
+        // The receiving thread blocks until the socket is closed, and reads time out instead.
+        socket.setSoTimeout(0);
+        packetReceiver =
+            new PacketReceiver(
+                socket,
+                receiveRingPacketCount,
+                packetBuffer.length,
+                droppedPacketCount,
+                overrunCount);
+      } else {
+        socket.setSoTimeout(socketTimeoutMillis);
+      }
     } catch (SecurityException e) {
       throw new UdpDataSourceException(e, PlaybackException.ERROR_CODE_IO_NO_PERMISSION);
     } catch (IOException e) {
@@ -130,6 +188,8 @@ public final class UdpDataSource extends BaseDataSource {
   public int read(byte[] buffer, int offset, int length) throws UdpDataSourceException {
     if (length == 0) {
       return 0;
+    } else if (packetReceiver != null) {
+      return readFromPacketReceiver(packetReceiver, buffer, offset, length);
     }
 
     if (packetRemaining == 0) {
@@ -163,6 +223,10 @@ public final class UdpDataSource extends BaseDataSource {
   @Override
   public void close() {
     uri = null;
+    if (packetReceiver != null) {
+      packetReceiver.release();
+      packetReceiver = null;
+    }
     if (multicastSocket != null) {
       try {
         multicastSocket.leaveGroup(checkNotNull(address));
@@ -193,4 +257,201 @@ public final class UdpDataSource extends BaseDataSource {
     }
     return socket.getLocalPort();
   }
+
+  /**
+   * Returns the number of datagrams that were dropped because the receive ring was full. Datagrams
+   * dropped by the system, for example because the socket's receive buffer was full, aren't
+   * counted.
+   */
+  public long getDroppedPacketCount() {
+    return droppedPacketCount.get();
+  }
+
+  /** Returns the number of times that the receive ring became full and datagrams were dropped. */
+  public long getOverrunCount() {
+    return overrunCount.get();
+  }
+
+  /**
+   * Reads from the datagrams buffered by the receiver, blocking only if none is buffered. Reads
+   * across datagram boundaries, so that each read drains as many datagrams as fit.
+   */
+  private int readFromPacketReceiver(
+      PacketReceiver packetReceiver, byte[] buffer, int offset, int length)
+      throws UdpDataSourceException {
+    int bytesRead = 0;
+    while (bytesRead < length) {
+      if (packetRemaining == 0) {
+        if (bytesRead > 0 && !packetReceiver.hasPacket()) {
+          break;
+        }
+        try {
+          packetRemaining = packetReceiver.awaitPacket(socketTimeoutMillis).getLength();
+        } catch (SocketTimeoutException e) {
+          throw new UdpDataSourceException(
+              e, PlaybackException.ERROR_CODE_IO_NETWORK_CONNECTION_TIMEOUT);
+        } catch (IOException e) {
+          throw new UdpDataSourceException(
+              e, PlaybackException.ERROR_CODE_IO_NETWORK_CONNECTION_FAILED);
+        }
+        if (packetRemaining == 0) {
+          packetReceiver.releasePacket();
+          continue;
+        }
+        bytesTransferred(packetRemaining);
+      }
+      DatagramPacket packet = packetReceiver.getPacket();
+      int packetOffset = packet.getLength() - packetRemaining;
+      int bytesToRead = min(packetRemaining, length - bytesRead);
+      System.arraycopy(packet.getData(), packetOffset, buffer, offset + bytesRead, bytesToRead);
+      packetRemaining -= bytesToRead;
+      bytesRead += bytesToRead;
+      if (packetRemaining == 0) {
+        packetReceiver.releasePacket();
+      }
+    }
+    return bytesRead;
+  }
+
+  /**
+   * Receives datagrams on a dedicated thread into a single-producer single-consumer ring of
+   * preallocated packets. The ring is lock-free: the receiving thread publishes a packet by
+   * swapping it into a free slot and advancing the write index, and the reading thread releases it
+   * by advancing the read index.
+   */
+  private static final class PacketReceiver implements Runnable {
+
+    private final DatagramSocket socket;
+    private final DatagramPacket[] packets;
+    private final int maxPacketSize;
+    private final AtomicLong droppedPacketCount;
+    private final AtomicLong overrunCount;
+
+    private DatagramPacket sparePacket;
+    private volatile long writeIndex;
+    private volatile long readIndex;
+    private volatile boolean released;
+    @Nullable private volatile IOException exception;
+    @Nullable private volatile Thread waitingThread;
+
+    public PacketReceiver(
+        DatagramSocket socket,
+        int packetCount,
+        int maxPacketSize,
+        AtomicLong droppedPacketCount,
+        AtomicLong overrunCount) {
+      this.socket = socket;
+      this.maxPacketSize = maxPacketSize;
+      this.droppedPacketCount = droppedPacketCount;
+      this.overrunCount = overrunCount;
+      packets = new DatagramPacket[packetCount];
+      for (int i = 0; i < packetCount; i++) {
+        packets[i] = new DatagramPacket(new byte[maxPacketSize], maxPacketSize);
+      }
+      sparePacket = new DatagramPacket(new byte[maxPacketSize], maxPacketSize);
+      new Thread(this, "ExoPlayer:UdpReceiver").start();
+    }
+
+    /** Returns whether a received packet is available to read. */
+    public boolean hasPacket() {
+      return readIndex != writeIndex;
+    }
+
+    /**
+     * Returns the next packet to read, blocking until one is received.
+     *
+     * @param timeoutMs The maximum time to block for, in milliseconds, or 0 to block indefinitely.
+     * @throws SocketTimeoutException If the timeout elapses.
+     * @throws IOException If receiving failed, or the thread was interrupted.
+     */
+    public DatagramPacket awaitPacket(long timeoutMs) throws IOException {
+      long deadlineNs = System.nanoTime() + timeoutMs * 1_000_000;
+      while (!hasPacket()) {
+        @Nullable IOException exception = this.exception;
+        if (exception != null) {
+          throw exception;
+        }
+        // Publish the waiting thread before checking again, so that a packet published by the
+        // receiving thread concurrently either is seen or unparks this thread.
+        waitingThread = Thread.currentThread();
+        if (!hasPacket() && this.exception == null) {
+          if (timeoutMs == 0) {
+            LockSupport.park(this);
+          } else {
+            long remainingNs = deadlineNs - System.nanoTime();
+            if (remainingNs <= 0) {
+              waitingThread = null;
+              throw new SocketTimeoutException();
+            }
+            LockSupport.parkNanos(this, remainingNs);
+          }
+        }
+        waitingThread = null;
+        if (Thread.interrupted()) {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException();
+        }
+      }
+      return getPacket();
+    }
+
+    /** Returns the next packet to read. Must only be called if {@link #hasPacket()}. */
+    public DatagramPacket getPacket() {
+      return packets[(int) (readIndex % packets.length)];
+    }
+
+    /** Releases the next packet to read, so that it can be reused for receiving. */
+    public void releasePacket() {
+      // Only the reading thread writes the read index.
+      readIndex = readIndex + 1;
+    }
+
+    /** Stops receiving once the socket is closed. */
+    public void release() {
+      released = true;
+    }
+
+    @Override
+    public void run() {
+      boolean overrunning = false;
+      while (!released) {
+        sparePacket.setLength(maxPacketSize);
+        try {
+          socket.receive(sparePacket);
+        } catch (IOException e) {
+          if (!released) {
+            exception = e;
+            unparkWaitingThread();
+          }
+          return;
+        }
+        // Check for a free slot only once a datagram is received, since the reading thread may
+        // release packets while this thread is blocked receiving.
+        long writeIndex = this.writeIndex;
+        if (writeIndex - readIndex == packets.length) {
+          droppedPacketCount.incrementAndGet();
+          if (!overrunning) {
+            overrunning = true;
+            overrunCount.incrementAndGet();
+          }
+        } else {
+          overrunning = false;
+          int slot = (int) (writeIndex % packets.length);
+          DatagramPacket packet = sparePacket;
+          sparePacket = packets[slot];
+          packets[slot] = packet;
+          // Only the receiving thread writes the write index.
+          this.writeIndex = writeIndex + 1;
+          unparkWaitingThread();
+        }
+      }
+    }
+
+    private void unparkWaitingThread() {
+      @Nullable Thread waitingThread = this.waitingThread;
+      if (waitingThread != null) {
+        LockSupport.unpark(waitingThread);
+      }
+    }
+  }
 }
@@ -48,6 +48,7 @@ import java.lang.annotation.Documented;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
+import java.nio.ByteBuffer;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -662,6 +663,41 @@ public final class CacheDataSource implements DataSource {
     }
   }
 
+  @Override
+  public boolean isZeroCopyReadSupported() {
+    return currentDataSource != null
+        && isReadingFromCache()
+        && readPosition < checkCachePosition
+        && currentDataSource.isZeroCopyReadSupported();
+  }
+
+  @Override
+  @Nullable
+  public ByteBuffer readBuffer(int length) throws IOException {
+    if (length != 0 && bytesRemaining != 0 && isZeroCopyReadSupported()) {
+      @Nullable ByteBuffer buffer;
+      try {
+        buffer = checkNotNull(currentDataSource).readBuffer(length);
+      } catch (Throwable e) {
+        handleBeforeThrow(e);
+        throw e;
+      }
+      if (buffer != null) {
+        int bytesRead = buffer.remaining();
+        totalCachedBytesRead += bytesRead;
+        readPosition += bytesRead;
+        currentDataSourceBytesRead += bytesRead;
+        if (bytesRemaining != C.LENGTH_UNSET) {
+          bytesRemaining -= bytesRead;
+        }
+        return buffer;
+      }
+      // The end of the cached span has been reached. Fall through to read, which opens the next
+      // source.
+    }
+    return DataSource.super.readBuffer(length);
+  }
+
   @Override
   @Nullable
   public Uri getUri() {
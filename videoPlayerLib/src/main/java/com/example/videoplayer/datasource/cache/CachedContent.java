@@ -25,7 +25,7 @@ import androidx.annotation.Nullable;
 import com.example.videoplayer.common.C;
 import com.example.videoplayer.common.util.Log;
 import java.io.File;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.TreeSet;
 
 /** Defines the cached content for a single resource. */
@@ -33,6 +33,8 @@ import java.util.TreeSet;
 
   private static final String TAG = "CachedContent";
 
+  private static final int INITIAL_SPAN_CAPACITY = 4;
+
   /** The cache id that uniquely identifies the resource. */
   public final int id;
 
@@ -42,8 +44,23 @@ import java.util.TreeSet;
   /** The cached spans of this content. */
   private final TreeSet<SimpleCacheSpan> cachedSpans;
 
+  /**
+   * The positions of {@link #cachedSpans} in ascending order, so that spans can be looked up
+   * without allocating a lookup span.
+   */
+  private long[] spanPositions;
+
+  /** The spans at each of {@link #spanPositions}. */
+  private SimpleCacheSpan[] spansByPosition;
+
+  /** The number of spans in {@link #spanPositions} and {@link #spansByPosition}. */
+  private int spanCount;
+
+  /** The ranges covered by {@link #cachedSpans}, with contiguous spans coalesced into runs. */
+  private final RangeIndex cachedRanges;
+
   /** Currently locked ranges. */
-  private final ArrayList<Range> lockedRanges;
+  private final RangeIndex lockedRanges;
 
   /** Metadata values. */
   private DefaultContentMetadata metadata;
@@ -63,7 +80,10 @@ import java.util.TreeSet;
     this.key = key;
     this.metadata = metadata;
     cachedSpans = new TreeSet<>();
-    lockedRanges = new ArrayList<>();
+    spanPositions = new long[INITIAL_SPAN_CAPACITY];
+    spansByPosition = new SimpleCacheSpan[INITIAL_SPAN_CAPACITY];
+    cachedRanges = new RangeIndex(/* coalescing= */ true);
+    lockedRanges = new RangeIndex(/* coalescing= */ false);
   }
 
   /** Returns the metadata. */
@@ -95,12 +115,7 @@ import java.util.TreeSet;
    * @return Whether the range is fully locked by a single lock.
    */
   public boolean isFullyLocked(long position, long length) {
-    for (int i = 0; i < lockedRanges.size(); i++) {
-      if (lockedRanges.get(i).contains(position, length)) {
-        return true;
-      }
-    }
-    return false;
+    return lockedRanges.containsInSingleRange(position, getEndPosition(position, length));
   }
 
   /**
@@ -111,12 +126,11 @@ import java.util.TreeSet;
    * @return Whether the range was successfully locked.
    */
   public boolean lockRange(long position, long length) {
-    for (int i = 0; i < lockedRanges.size(); i++) {
-      if (lockedRanges.get(i).intersects(position, length)) {
-        return false;
-      }
+    long endPosition = getEndPosition(position, length);
+    if (lockedRanges.intersects(position, endPosition)) {
+      return false;
     }
-    lockedRanges.add(new Range(position, length));
+    lockedRanges.add(position, endPosition);
     return true;
   }
 
@@ -127,18 +141,15 @@ import java.util.TreeSet;
    * @throws IllegalStateException If there was no locked range starting at the specified position.
    */
   public void unlockRange(long position) {
-    for (int i = 0; i < lockedRanges.size(); i++) {
-      if (lockedRanges.get(i).position == position) {
-        lockedRanges.remove(i);
-        return;
-      }
-    }
-    throw new IllegalStateException();
+    checkState(lockedRanges.removeStartingAt(position));
   }
 
   /** Adds the given {@link SimpleCacheSpan} which contains a part of the content. */
   public void addSpan(SimpleCacheSpan span) {
-    cachedSpans.add(span);
+    if (cachedSpans.add(span)) {
+      insertSpanPosition(floorSpanIndex(span.position) + 1, span);
+      cachedRanges.add(span.position, span.position + span.length);
+    }
   }
 
   /** Returns a set of all {@link SimpleCacheSpan}s. */
@@ -155,14 +166,24 @@ import java.util.TreeSet;
    * @return The corresponding cache {@link SimpleCacheSpan}.
    */
   public SimpleCacheSpan getSpan(long position, long length) {
-    SimpleCacheSpan lookupSpan = SimpleCacheSpan.createLookup(key, position);
-    SimpleCacheSpan floorSpan = cachedSpans.floor(lookupSpan);
-    if (floorSpan != null && floorSpan.position + floorSpan.length > position) {
-      return floorSpan;
+    long cachedLength = cachedRanges.getContainedLength(position, Long.MAX_VALUE);
+    if (cachedLength < 0) {
+      // No span covers the position, so the hole extends to the start of the next cached run.
+      long holeLength = -cachedLength;
+      if (holeLength != Long.MAX_VALUE) {
+        length = length == C.LENGTH_UNSET ? holeLength : min(holeLength, length);
+      }
+      return SimpleCacheSpan.createHole(key, position, length);
+    }
+    int floorIndex = floorSpanIndex(position);
+    if (floorIndex >= 0) {
+      SimpleCacheSpan floorSpan = spansByPosition[floorIndex];
+      if (floorSpan.position + floorSpan.length > position) {
+        return floorSpan;
+      }
     }
-    SimpleCacheSpan ceilSpan = cachedSpans.ceiling(lookupSpan);
-    if (ceilSpan != null) {
-      long holeLength = ceilSpan.position - position;
+    if (floorIndex + 1 < spanCount) {
+      long holeLength = spanPositions[floorIndex + 1] - position;
       length = length == C.LENGTH_UNSET ? holeLength : min(holeLength, length);
     }
     return SimpleCacheSpan.createHole(key, position, length);
@@ -182,33 +203,19 @@ import java.util.TreeSet;
   public long getCachedBytesLength(long position, long length) {
     checkArgument(position >= 0);
     checkArgument(length >= 0);
-    SimpleCacheSpan span = getSpan(position, length);
-    if (span.isHoleSpan()) {
-      // We don't have a span covering the start of the queried region.
-      return -min(span.isOpenEnded() ? Long.MAX_VALUE : span.length, length);
-    }
-    long queryEndPosition = position + length;
-    if (queryEndPosition < 0) {
-      // The calculation rolled over (length is probably Long.MAX_VALUE).
-      queryEndPosition = Long.MAX_VALUE;
-    }
-    long currentEndPosition = span.position + span.length;
-    if (currentEndPosition < queryEndPosition) {
-      for (SimpleCacheSpan next : cachedSpans.tailSet(span, false)) {
-        if (next.position > currentEndPosition) {
-          // There's a hole in the cache within the queried region.
-          break;
-        }
-        // We expect currentEndPosition to always equal (next.position + next.length), but
-        // perform a max check anyway to guard against the existence of overlapping spans.
-        currentEndPosition = max(currentEndPosition, next.position + next.length);
-        if (currentEndPosition >= queryEndPosition) {
-          // We've found spans covering the queried region.
-          break;
-        }
-      }
-    }
-    return min(currentEndPosition - position, length);
+    return cachedRanges.getContainedLength(position, length);
+  }
+
+  /**
+   * Returns the total number of bytes that are cached within the specified range.
+   *
+   * @param position The starting position of the range.
+   * @param length The length of the range, or {@link C#LENGTH_UNSET} if unbounded.
+   * @return The total number of cached bytes within the range.
+   */
+  public long getCachedBytes(long position, long length) {
+    checkArgument(position >= 0);
+    return cachedRanges.getIntersectionLength(position, getEndPosition(position, length));
   }
 
   /**
@@ -237,6 +244,7 @@ import java.util.TreeSet;
     SimpleCacheSpan newCacheSpan =
         cacheSpan.copyWithFileAndLastTouchTimestamp(file, lastTouchTimestamp);
     cachedSpans.add(newCacheSpan);
+    spansByPosition[floorSpanIndex(newCacheSpan.position)] = newCacheSpan;
     return newCacheSpan;
   }
 
@@ -251,6 +259,16 @@ import java.util.TreeSet;
       if (span.file != null) {
         span.file.delete();
       }
+      int index = floorSpanIndex(span.position);
+      removeSpanPosition(index);
+      long endPosition = span.position + span.length;
+      cachedRanges.subtract(span.position, endPosition);
+      // Spans aren't expected to overlap, but restore any coverage that's still provided by the
+      // remaining spans in case they do.
+      for (int i = max(index - 1, 0); i < spanCount && spanPositions[i] < endPosition; i++) {
+        SimpleCacheSpan next = spansByPosition[i];
+        cachedRanges.add(next.position, next.position + next.length);
+      }
       return true;
     }
     return false;
@@ -279,51 +297,51 @@ import java.util.TreeSet;
         && metadata.equals(that.metadata);
   }
 
-  private static final class Range {
-
-    /** The starting position of the range. */
-    public final long position;
-
-    /** The length of the range, or {@link C#LENGTH_UNSET} if unbounded. */
-    public final long length;
-
-    public Range(long position, long length) {
-      this.position = position;
-      this.length = length;
-    }
-
-    /**
-     * Returns whether this range fully contains the range specified by {@code otherPosition} and
-     * {@code otherLength}.
-     *
-     * @param otherPosition The position of the range to check.
-     * @param otherLength The length of the range to check, or {@link C#LENGTH_UNSET} if unbounded.
-     * @return Whether this range fully contains the specified range.
-     */
-    public boolean contains(long otherPosition, long otherLength) {
-      if (length == C.LENGTH_UNSET) {
-        return otherPosition >= position;
-      } else if (otherLength == C.LENGTH_UNSET) {
-        return false;
+  /** Returns the index of the last span that starts at or before {@code position}, or -1. */
+  private int floorSpanIndex(long position) {
+    int low = 0;
+    int high = spanCount - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      if (spanPositions[mid] <= position) {
+        low = mid + 1;
       } else {
-        return position <= otherPosition && (otherPosition + otherLength) <= (position + length);
+        high = mid - 1;
       }
     }
+    return high;
+  }
 
-    /**
-     * Returns whether this range intersects with the range specified by {@code otherPosition} and
-     * {@code otherLength}.
-     *
-     * @param otherPosition The position of the range to check.
-     * @param otherLength The length of the range to check, or {@link C#LENGTH_UNSET} if unbounded.
-     * @return Whether this range intersects with the specified range.
-     */
-    public boolean intersects(long otherPosition, long otherLength) {
-      if (position <= otherPosition) {
-        return length == C.LENGTH_UNSET || position + length > otherPosition;
-      } else {
-        return otherLength == C.LENGTH_UNSET || otherPosition + otherLength > position;
-      }
+  private void insertSpanPosition(int index, SimpleCacheSpan span) {
+    if (spanCount == spanPositions.length) {
+      spanPositions = Arrays.copyOf(spanPositions, spanCount * 2);
+      spansByPosition = Arrays.copyOf(spansByPosition, spanCount * 2);
+    }
+    System.arraycopy(spanPositions, index, spanPositions, index + 1, spanCount - index);
+    System.arraycopy(spansByPosition, index, spansByPosition, index + 1, spanCount - index);
+    spanPositions[index] = span.position;
+    spansByPosition[index] = span;
+    spanCount++;
+  }
+
+  private void removeSpanPosition(int index) {
+    System.arraycopy(spanPositions, index + 1, spanPositions, index, spanCount - index - 1);
+    System.arraycopy(spansByPosition, index + 1, spansByPosition, index, spanCount - index - 1);
+    spanCount--;
+    // Release the reference to the removed span.
+    spansByPosition[spanCount] = null;
+  }
+
+  /**
+   * Returns the end position of the range specified by {@code position} and {@code length}, or
+   * {@link Long#MAX_VALUE} if the range is unbounded.
+   */
+  private static long getEndPosition(long position, long length) {
+    if (length == C.LENGTH_UNSET) {
+      return Long.MAX_VALUE;
     }
+    long endPosition = position + length;
+    // The calculation may roll over (length is probably Long.MAX_VALUE).
+    return endPosition < 0 ? Long.MAX_VALUE : endPosition;
   }
 }
@@ -18,6 +18,7 @@ package com.example.videoplayer.datasource.cache;
 import static com.example.videoplayer.common.util.Assertions.checkNotNull;
 import static com.example.videoplayer.common.util.Assertions.checkState;
 import static com.example.videoplayer.common.util.Util.castNonNull;
+import static java.lang.Math.max;
 import static java.lang.Math.min;
 
 import android.content.ContentValues;
@@ -32,6 +33,7 @@ import androidx.annotation.VisibleForTesting;
 import androidx.annotation.WorkerThread;
 import com.example.videoplayer.common.util.Assertions;
 import com.example.videoplayer.common.util.AtomicFile;
+import com.example.videoplayer.common.util.Log;
 import com.example.videoplayer.common.util.NullableType;
 import com.example.videoplayer.common.util.Util;
 import com.example.videoplayer.database.DatabaseIOException;
@@ -44,9 +46,13 @@ import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
@@ -57,6 +63,10 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.zip.CRC32;
 import javax.crypto.Cipher;
 import javax.crypto.CipherInputStream;
 import javax.crypto.CipherOutputStream;
@@ -71,7 +81,7 @@ import javax.crypto.spec.SecretKeySpec;
 
   private static final int INCREMENTAL_METADATA_READ_LENGTH = 10 * 1024 * 1024;
 
-  private final HashMap<String, CachedContent> keyToContent;
+  private final ConcurrentHashMap<String, CachedContent> keyToContent;
 
   /**
    * Maps assigned ids to their corresponding keys. Also contains (id -> null) entries for ids that
@@ -160,22 +170,57 @@ import javax.crypto.spec.SecretKeySpec;
       @Nullable byte[] legacyStorageSecretKey,
       boolean legacyStorageEncrypt,
       boolean preferLegacyStorage) {
+    this(
+        databaseProvider,
+        legacyStorageDir,
+        legacyStorageSecretKey,
+        legacyStorageEncrypt,
+        preferLegacyStorage,
+        /* journalLegacyStorage= */ false);
+  }
+
+  /**
+   * Creates an instance supporting either or both of database and legacy storage.
+   *
+   * @param databaseProvider Provides the database in which the index is stored, or {@code null} to
+   *     use only legacy storage.
+   * @param legacyStorageDir The directory in which any legacy storage is stored, or {@code null} to
+   *     use only database storage.
+   * @param legacyStorageSecretKey A 16 byte AES key for reading, and optionally writing, legacy
+   *     storage.
+   * @param legacyStorageEncrypt Whether to encrypt when writing to legacy storage. Must be false if
+   *     {@code legacyStorageSecretKey} is null.
+   * @param preferLegacyStorage Whether to use prefer legacy storage if both storage types are
+   *     enabled. This option is only useful for downgrading from database storage back to legacy
+   *     storage.
+   * @param journalLegacyStorage Whether legacy storage appends changes to a journal that's
+   *     periodically compacted, rather than rewriting the whole index each time it's stored.
+   */
+  public CachedContentIndex(
+      @Nullable DatabaseProvider databaseProvider,
+      @Nullable File legacyStorageDir,
+      @Nullable byte[] legacyStorageSecretKey,
+      boolean legacyStorageEncrypt,
+      boolean preferLegacyStorage,
+      boolean journalLegacyStorage) {
     checkState(databaseProvider != null || legacyStorageDir != null);
-    keyToContent = new HashMap<>();
+    keyToContent = new ConcurrentHashMap<>();
     idToKey = new SparseArray<>();
     removedIds = new SparseBooleanArray();
     newIds = new SparseBooleanArray();
     @Nullable
     Storage databaseStorage =
         databaseProvider != null ? new DatabaseStorage(databaseProvider) : null;
-    @Nullable
-    Storage legacyStorage =
-        legacyStorageDir != null
-            ? new LegacyStorage(
-                new File(legacyStorageDir, FILE_NAME_ATOMIC),
-                legacyStorageSecretKey,
-                legacyStorageEncrypt)
-            : null;
+    @Nullable Storage legacyStorage = null;
+    if (legacyStorageDir != null) {
+      File legacyStorageFile = new File(legacyStorageDir, FILE_NAME_ATOMIC);
+      legacyStorage =
+          new JournaledStorage(
+              legacyStorageFile,
+              legacyStorageSecretKey,
+              legacyStorageEncrypt,
+              /* journal= */ journalLegacyStorage);
+    }
     if (databaseStorage == null || (legacyStorage != null && preferLegacyStorage)) {
       storage = castNonNull(legacyStorage);
       previousStorage = databaseStorage;
@@ -232,6 +277,15 @@ import javax.crypto.spec.SecretKeySpec;
     newIds.clear();
   }
 
+  /**
+   * Releases any resources held by the index. Background writes that are in progress are completed
+   * first. The index must not be used after it's released.
+   */
+  @WorkerThread
+  public void release() {
+    storage.release();
+  }
+
   /**
    * Adds a resource to the index, if it's not there already.
    *
@@ -449,7 +503,7 @@ import javax.crypto.spec.SecretKeySpec;
      * @param idToKey The id to key map to populate with persisted data.
      * @throws IOException If an error occurs loading the index.
      */
-    void load(HashMap<String, CachedContent> content, SparseArray<@NullableType String> idToKey)
+    void load(Map<String, CachedContent> content, SparseArray<@NullableType String> idToKey)
         throws IOException;
 
     /**
@@ -459,17 +513,17 @@ import javax.crypto.spec.SecretKeySpec;
      * @param content The key to content map to persist.
      * @throws IOException If an error occurs persisting the index.
      */
-    void storeFully(HashMap<String, CachedContent> content) throws IOException;
+    void storeFully(Map<String, CachedContent> content) throws IOException;
 
     /**
      * Ensures incremental changes to the index since the initial {@link #initialize(long)} or last
-     * {@link #storeFully(HashMap)} are persisted. The storage will have been notified of all such
+     * {@link #storeFully(Map)} are persisted. The storage will have been notified of all such
      * changes via {@link #onUpdate(CachedContent)} and {@link #onRemove(CachedContent, boolean)}.
      *
      * @param content The key to content map to persist.
      * @throws IOException If an error occurs persisting the index.
      */
-    void storeIncremental(HashMap<String, CachedContent> content) throws IOException;
+    void storeIncremental(Map<String, CachedContent> content) throws IOException;
 
     /**
      * Called when a {@link CachedContent} is added or updated.
@@ -486,6 +540,9 @@ import javax.crypto.spec.SecretKeySpec;
      *     index was last stored.
      */
     void onRemove(CachedContent cachedContent, boolean neverStored);
+
+    /** Releases any resources held by the storage, completing any background writes first. */
+    void release();
   }
 
   /** {@link Storage} implementation that uses an {@link AtomicFile}. */
@@ -543,7 +600,7 @@ import javax.crypto.spec.SecretKeySpec;
 
     @Override
     public void load(
-        HashMap<String, CachedContent> content, SparseArray<@NullableType String> idToKey) {
+        Map<String, CachedContent> content, SparseArray<@NullableType String> idToKey) {
       checkState(!changed);
       if (!readFile(content, idToKey)) {
         content.clear();
@@ -553,13 +610,13 @@ import javax.crypto.spec.SecretKeySpec;
     }
 
     @Override
-    public void storeFully(HashMap<String, CachedContent> content) throws IOException {
+    public void storeFully(Map<String, CachedContent> content) throws IOException {
       writeFile(content);
       changed = false;
     }
 
     @Override
-    public void storeIncremental(HashMap<String, CachedContent> content) throws IOException {
+    public void storeIncremental(Map<String, CachedContent> content) throws IOException {
       if (!changed) {
         return;
       }
@@ -576,8 +633,13 @@ import javax.crypto.spec.SecretKeySpec;
       changed = true;
     }
 
+    @Override
+    public void release() {
+      // Do nothing.
+    }
+
     private boolean readFile(
-        HashMap<String, CachedContent> content, SparseArray<@NullableType String> idToKey) {
+        Map<String, CachedContent> content, SparseArray<@NullableType String> idToKey) {
       if (!atomicFile.exists()) {
         return true;
       }
@@ -632,7 +694,7 @@ import javax.crypto.spec.SecretKeySpec;
       return true;
     }
 
-    private void writeFile(HashMap<String, CachedContent> content) throws IOException {
+    private void writeFile(Map<String, CachedContent> content) throws IOException {
       @Nullable DataOutputStream output = null;
       try {
         OutputStream outputStream = atomicFile.startWrite();
@@ -731,6 +793,458 @@ import javax.crypto.spec.SecretKeySpec;
     }
   }
 
+  /**
+   * {@link Storage} implementation that keeps a snapshot of the index in the same format as {@link
+   * LegacyStorage}, and appends the changes made since the snapshot was written to journal files.
+   *
+   * <p>Each call to {@link #storeIncremental(Map)} appends a single checksummed frame holding the
+   * pending changes to the current journal file, so the cost of storing the index is proportional
+   * to the number of changes rather than to the size of the index. A frame that was only partially
+   * written when the process died is discarded when the journal is loaded.
+   *
+   * <p>Once the journal holds more records than the index holds entries, it's compacted by writing
+   * a new snapshot on a background thread. Appends continue into a new journal file whilst this
+   * happens, and the journal files that the new snapshot covers are deleted once it's written.
+   * Replaying covered journal files on top of a newer snapshot is harmless, because each record
+   * replaces the whole entry for its id.
+   *
+   * <p>If journaling is disabled, each store writes a full snapshot, as {@link LegacyStorage} does,
+   * and deletes any journal files left over from when journaling was last enabled. Those journal
+   * files are still replayed when the index is loaded, so the changes they hold aren't lost, and
+   * they can't be replayed on top of a newer snapshot if journaling is enabled again later.
+   */
+  private static final class JournaledStorage implements Storage {
+
+    private static final String TAG = "JournaledStorage";
+
+    private static final String JOURNAL_FILE_INFIX = ".journal.";
+    private static final int JOURNAL_VERSION = 1;
+    private static final int FLAG_ENCRYPTED_JOURNAL = 1;
+
+    private static final int RECORD_TYPE_UPDATE = 0;
+    private static final int RECORD_TYPE_REMOVE = 1;
+
+    /** The minimum number of journal records that must be written before compaction occurs. */
+    private static final int MIN_COMPACTION_RECORD_COUNT = 1024;
+
+    private final File snapshotFile;
+    private final LegacyStorage snapshotStorage;
+    private final boolean journal;
+    private final boolean encrypt;
+    @Nullable private final Cipher cipher;
+    @Nullable private final SecretKeySpec secretKeySpec;
+    @Nullable private final SecureRandom random;
+    private final SparseArray<@NullableType CachedContent> pendingUpdates;
+    private final ByteArrayOutputStream frameBuffer;
+    private final CRC32 crc32;
+
+    private long journalIndex;
+    @Nullable private FileOutputStream journalOutputStream;
+    private int journalRecordCount;
+    private boolean compactionRequired;
+    @Nullable private FutureTask<Void> compaction;
+
+    public JournaledStorage(
+        File file, @Nullable byte[] secretKey, boolean encrypt, boolean journal) {
+      snapshotFile = file;
+      snapshotStorage = new LegacyStorage(file, secretKey, encrypt);
+      this.journal = journal;
+      @Nullable Cipher cipher = null;
+      @Nullable SecretKeySpec secretKeySpec = null;
+      if (secretKey != null) {
+        try {
+          cipher = Cipher.getInstance("AES/CBC/PKCS5PADDING");
+          secretKeySpec = new SecretKeySpec(secretKey, "AES");
+        } catch (NoSuchAlgorithmException | NoSuchPaddingException e) {
+          throw new IllegalStateException(e); // Should never happen.
+        }
+      }
+      this.encrypt = encrypt;
+      this.cipher = cipher;
+      this.secretKeySpec = secretKeySpec;
+      random = encrypt ? new SecureRandom() : null;
+      pendingUpdates = new SparseArray<>();
+      frameBuffer = new ByteArrayOutputStream();
+      crc32 = new CRC32();
+    }
+
+    @Override
+    public void initialize(long uid) {
+      // Do nothing. Journaled storage uses separate files for each cache.
+    }
+
+    @Override
+    public boolean exists() {
+      return snapshotStorage.exists() || getJournalIndices().length > 0;
+    }
+
+    @Override
+    public void delete() {
+      awaitCompaction();
+      closeJournal();
+      snapshotStorage.delete();
+      deleteJournals(/* maxJournalIndex= */ Long.MAX_VALUE);
+      journalIndex = 0;
+      journalRecordCount = 0;
+    }
+
+    @Override
+    public void load(
+        Map<String, CachedContent> content, SparseArray<@NullableType String> idToKey) {
+      checkState(pendingUpdates.size() == 0);
+      snapshotStorage.load(content, idToKey);
+      long[] journalIndices = getJournalIndices();
+      for (long index : journalIndices) {
+        if (!readJournal(getJournalFile(index), content, idToKey)) {
+          content.clear();
+          idToKey.clear();
+          snapshotStorage.delete();
+          deleteJournals(/* maxJournalIndex= */ Long.MAX_VALUE);
+          journalRecordCount = 0;
+          return;
+        }
+      }
+      // Never append to a journal that was loaded, since it may end with a partially written frame.
+      journalIndex =
+          journalIndices.length == 0 ? 0 : journalIndices[journalIndices.length - 1] + 1;
+      // The snapshot is marked as changed if it needs to be rewritten, for example to encrypt it.
+      compactionRequired |= snapshotStorage.changed;
+      // Without journaling, the next store writes a snapshot that covers the loaded journals.
+      compactionRequired |= !journal && journalIndices.length > 0;
+    }
+
+    @Override
+    public void storeFully(Map<String, CachedContent> content) throws IOException {
+      awaitCompaction();
+      closeJournal();
+      snapshotStorage.storeFully(content);
+      deleteJournals(/* maxJournalIndex= */ Long.MAX_VALUE);
+      pendingUpdates.clear();
+      journalIndex = 0;
+      journalRecordCount = 0;
+      compactionRequired = false;
+    }
+
+    @Override
+    public void storeIncremental(Map<String, CachedContent> content) throws IOException {
+      if (!journal) {
+        if (pendingUpdates.size() > 0 || compactionRequired) {
+          storeFully(content);
+        }
+        return;
+      }
+      if (pendingUpdates.size() > 0) {
+        appendPendingUpdates();
+      }
+      if (compaction != null && compaction.isDone()) {
+        try {
+          compaction.get();
+        } catch (ExecutionException | InterruptedException e) {
+          // The covered journals haven't been deleted, so nothing has been lost.
+          Log.w(TAG, "Journal compaction failed", e);
+          compactionRequired = true;
+        }
+        compaction = null;
+      }
+      if (compaction == null
+          && (compactionRequired
+              || journalRecordCount > max(MIN_COMPACTION_RECORD_COUNT, content.size()))) {
+        startCompaction(content);
+      }
+    }
+
+    @Override
+    public void onUpdate(CachedContent cachedContent) {
+      pendingUpdates.put(cachedContent.id, cachedContent);
+    }
+
+    @Override
+    public void onRemove(CachedContent cachedContent, boolean neverStored) {
+      if (neverStored) {
+        pendingUpdates.delete(cachedContent.id);
+      } else {
+        pendingUpdates.put(cachedContent.id, null);
+      }
+    }
+
+    @Override
+    public void release() {
+      awaitCompaction();
+      closeJournal();
+    }
+
+    private void appendPendingUpdates() throws IOException {
+      frameBuffer.reset();
+      DataOutputStream output = new DataOutputStream(frameBuffer);
+      output.writeInt(pendingUpdates.size());
+      for (int i = 0; i < pendingUpdates.size(); i++) {
+        @Nullable CachedContent cachedContent = pendingUpdates.valueAt(i);
+        if (cachedContent == null) {
+          output.writeByte(RECORD_TYPE_REMOVE);
+          output.writeInt(pendingUpdates.keyAt(i));
+        } else {
+          output.writeByte(RECORD_TYPE_UPDATE);
+          output.writeInt(cachedContent.id);
+          output.writeUTF(cachedContent.key);
+          writeContentMetadata(cachedContent.getMetadata(), output);
+        }
+      }
+      output.flush();
+      byte[] frame = frameBuffer.toByteArray();
+      if (encrypt) {
+        frame = encryptFrame(frame);
+      }
+      crc32.reset();
+      crc32.update(frame, 0, frame.length);
+      ByteBuffer framedRecords = ByteBuffer.allocate(8 + frame.length);
+      framedRecords.putInt(frame.length).putInt((int) crc32.getValue()).put(frame);
+
+      try {
+        FileOutputStream journalOutputStream = getJournalOutputStream();
+        journalOutputStream.write(framedRecords.array());
+        journalOutputStream.getFD().sync();
+      } catch (IOException e) {
+        // The journal may now end with a partially written frame, which would cause any frames
+        // appended after it to be ignored when loading. Start a new journal for the next attempt.
+        closeJournal();
+        journalIndex++;
+        throw e;
+      }
+      journalRecordCount += pendingUpdates.size();
+      pendingUpdates.clear();
+    }
+
+    private FileOutputStream getJournalOutputStream() throws IOException {
+      if (journalOutputStream == null) {
+        FileOutputStream journalOutputStream = new FileOutputStream(getJournalFile(journalIndex));
+        this.journalOutputStream = journalOutputStream;
+        DataOutputStream output = new DataOutputStream(journalOutputStream);
+        output.writeInt(JOURNAL_VERSION);
+        output.writeInt(encrypt ? FLAG_ENCRYPTED_JOURNAL : 0);
+        output.flush();
+      }
+      return journalOutputStream;
+    }
+
+    private void closeJournal() {
+      Util.closeQuietly(journalOutputStream);
+      journalOutputStream = null;
+    }
+
+    /**
+     * Writes a snapshot of {@code content} on a background thread. The current journal is closed,
+     * so that the snapshot covers exactly the journals up to and including it.
+     */
+    private void startCompaction(Map<String, CachedContent> content) {
+      closeJournal();
+      long lastCoveredJournalIndex = journalIndex;
+      journalIndex++;
+      journalRecordCount = 0;
+      compactionRequired = false;
+      // Copy the content, since it continues to be modified whilst the snapshot is written.
+      HashMap<String, CachedContent> snapshot = new HashMap<>();
+      for (CachedContent cachedContent : content.values()) {
+        snapshot.put(
+            cachedContent.key,
+            new CachedContent(cachedContent.id, cachedContent.key, cachedContent.getMetadata()));
+      }
+      FutureTask<Void> compaction =
+          new FutureTask<>(
+              () -> {
+                snapshotStorage.storeFully(snapshot);
+                deleteJournals(lastCoveredJournalIndex);
+                return null;
+              });
+      this.compaction = compaction;
+      new Thread(compaction, "ExoPlayer:CacheIndexCompaction").start();
+    }
+
+    private void awaitCompaction() {
+      if (compaction == null) {
+        return;
+      }
+      try {
+        compaction.get();
+      } catch (ExecutionException e) {
+        Log.w(TAG, "Journal compaction failed", e);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        Log.w(TAG, "Interrupted whilst awaiting journal compaction", e);
+      }
+      compaction = null;
+    }
+
+    /**
+     * Replays a journal file into {@code content} and {@code idToKey}.
+     *
+     * @return Whether the journal was read successfully. A partially written final frame does not
+     *     cause a failure.
+     */
+    private boolean readJournal(
+        File file, Map<String, CachedContent> content, SparseArray<@NullableType String> idToKey) {
+      long fileLength = file.length();
+      @Nullable DataInputStream input = null;
+      try {
+        input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        if (fileLength < 8) {
+          // The header was only partially written.
+          return true;
+        }
+        int version = input.readInt();
+        int flags = input.readInt();
+        boolean encrypted = (flags & FLAG_ENCRYPTED_JOURNAL) != 0;
+        if (version != JOURNAL_VERSION || (encrypted && cipher == null)) {
+          return false;
+        }
+        if (!encrypted && encrypt) {
+          compactionRequired = true; // Force the index to be rewritten encrypted after read.
+        }
+        long remainingLength = fileLength - 8;
+        while (remainingLength >= 8) {
+          int frameLength = input.readInt();
+          int frameCrc = input.readInt();
+          remainingLength -= 8;
+          if (frameLength < 0 || frameLength > remainingLength) {
+            // The frame was only partially written.
+            break;
+          }
+          byte[] frame = new byte[frameLength];
+          input.readFully(frame);
+          remainingLength -= frameLength;
+          crc32.reset();
+          crc32.update(frame, 0, frameLength);
+          if ((int) crc32.getValue() != frameCrc) {
+            // The frame was only partially written.
+            break;
+          }
+          if (encrypted) {
+            frame = decryptFrame(frame);
+          }
+          journalRecordCount += readRecords(frame, content, idToKey);
+        }
+      } catch (IOException e) {
+        return false;
+      } finally {
+        Util.closeQuietly(input);
+      }
+      return true;
+    }
+
+    /** Applies the records in a frame, returning the number of records applied. */
+    private static int readRecords(
+        byte[] frame, Map<String, CachedContent> content, SparseArray<@NullableType String> idToKey)
+        throws IOException {
+      DataInputStream input = new DataInputStream(new ByteArrayInputStream(frame));
+      int count = input.readInt();
+      for (int i = 0; i < count; i++) {
+        int type = input.readByte();
+        int id = input.readInt();
+        // Remove any existing entry for the id. The key of a removed entry may since have been
+        // re-added with a different id, in which case that entry is left in place.
+        @Nullable String oldKey = idToKey.get(id);
+        if (oldKey != null) {
+          @Nullable CachedContent oldContent = content.get(oldKey);
+          if (oldContent != null && oldContent.id == id) {
+            content.remove(oldKey);
+          }
+          idToKey.remove(id);
+        }
+        if (type == RECORD_TYPE_UPDATE) {
+          String key = input.readUTF();
+          DefaultContentMetadata metadata = readContentMetadata(input);
+          @Nullable
+          CachedContent replacedContent = content.put(key, new CachedContent(id, key, metadata));
+          if (replacedContent != null) {
+            idToKey.remove(replacedContent.id);
+          }
+          idToKey.put(id, key);
+        } else if (type != RECORD_TYPE_REMOVE) {
+          throw new IOException("Invalid record type: " + type);
+        }
+      }
+      return count;
+    }
+
+    private byte[] encryptFrame(byte[] frame) throws IOException {
+      byte[] initializationVector = new byte[16];
+      castNonNull(random).nextBytes(initializationVector);
+      try {
+        castNonNull(cipher)
+            .init(
+                Cipher.ENCRYPT_MODE,
+                castNonNull(secretKeySpec),
+                new IvParameterSpec(initializationVector));
+        byte[] encryptedFrame = new byte[16 + castNonNull(cipher).getOutputSize(frame.length)];
+        System.arraycopy(initializationVector, 0, encryptedFrame, 0, 16);
+        int encryptedLength =
+            castNonNull(cipher).doFinal(frame, 0, frame.length, encryptedFrame, 16);
+        return Arrays.copyOf(encryptedFrame, 16 + encryptedLength);
+      } catch (InvalidKeyException | InvalidAlgorithmParameterException e) {
+        throw new IllegalStateException(e); // Should never happen.
+      } catch (GeneralSecurityException e) {
+        throw new IOException(e);
+      }
+    }
+
+    private byte[] decryptFrame(byte[] frame) throws IOException {
+      if (frame.length < 16) {
+        throw new IOException("Invalid encrypted frame length: " + frame.length);
+      }
+      try {
+        castNonNull(cipher)
+            .init(
+                Cipher.DECRYPT_MODE,
+                castNonNull(secretKeySpec),
+                new IvParameterSpec(frame, 0, 16));
+        return castNonNull(cipher).doFinal(frame, 16, frame.length - 16);
+      } catch (InvalidKeyException | InvalidAlgorithmParameterException e) {
+        throw new IllegalStateException(e);
+      } catch (GeneralSecurityException e) {
+        // The frame was written with a different key.
+        throw new IOException(e);
+      }
+    }
+
+    private File getJournalFile(long index) {
+      return new File(
+          checkNotNull(snapshotFile.getParentFile()),
+          snapshotFile.getName() + JOURNAL_FILE_INFIX + index);
+    }
+
+    /** Returns the indices of the journal files that exist, in ascending order. */
+    private long[] getJournalIndices() {
+      String prefix = snapshotFile.getName() + JOURNAL_FILE_INFIX;
+      @Nullable File[] files = checkNotNull(snapshotFile.getParentFile()).listFiles();
+      if (files == null) {
+        return new long[0];
+      }
+      long[] indices = new long[files.length];
+      int count = 0;
+      for (File file : files) {
+        String fileName = file.getName();
+        if (fileName.startsWith(prefix)) {
+          try {
+            indices[count] = Long.parseLong(fileName.substring(prefix.length()));
+            count++;
+          } catch (NumberFormatException e) {
+            // Not a journal file.
+          }
+        }
+      }
+      indices = Arrays.copyOf(indices, count);
+      Arrays.sort(indices);
+      return indices;
+    }
+
+    private void deleteJournals(long maxJournalIndex) {
+      for (long index : getJournalIndices()) {
+        if (index <= maxJournalIndex) {
+          getJournalFile(index).delete();
+        }
+      }
+    }
+  }
+
   /** {@link Storage} implementation that uses an SQL database. */
   private static final class DatabaseStorage implements Storage {
 
@@ -800,7 +1314,7 @@ import javax.crypto.spec.SecretKeySpec;
 
     @Override
     public void load(
-        HashMap<String, CachedContent> content, SparseArray<@NullableType String> idToKey)
+        Map<String, CachedContent> content, SparseArray<@NullableType String> idToKey)
         throws IOException {
       checkState(pendingUpdates.size() == 0);
       try {
@@ -843,7 +1357,7 @@ import javax.crypto.spec.SecretKeySpec;
     }
 
     @Override
-    public void storeFully(HashMap<String, CachedContent> content) throws IOException {
+    public void storeFully(Map<String, CachedContent> content) throws IOException {
       try {
         SQLiteDatabase writableDatabase = databaseProvider.getWritableDatabase();
         writableDatabase.beginTransactionNonExclusive();
@@ -863,7 +1377,7 @@ import javax.crypto.spec.SecretKeySpec;
     }
 
     @Override
-    public void storeIncremental(HashMap<String, CachedContent> content) throws IOException {
+    public void storeIncremental(Map<String, CachedContent> content) throws IOException {
       if (pendingUpdates.size() == 0) {
         return;
       }
@@ -903,6 +1417,11 @@ import javax.crypto.spec.SecretKeySpec;
       }
     }
 
+    @Override
+    public void release() {
+      // Do nothing.
+    }
+
     private Cursor getCursor() {
       return databaseProvider
           .getReadableDatabase()
@@ -0,0 +1,238 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.videoplayer.datasource.cache;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+import java.util.Arrays;
+
+/**
+ * A set of half-open {@code [start, end)} ranges of a resource, stored as sorted primitive arrays.
+ *
+ * <p>Ranges are sorted by their start positions, and lookups use binary search. An end position of
+ * {@link Long#MAX_VALUE} represents a range that's unbounded.
+ *
+ * <p>If the index is coalescing then overlapping and adjacent ranges are merged into a single run
+ * when they're added. Else ranges are stored as they're added, and the caller is responsible for
+ * ensuring that they don't overlap.
+ */
+/* package */ final class RangeIndex {
+
+  private static final int INITIAL_CAPACITY = 4;
+
+  private final boolean coalescing;
+
+  private long[] starts;
+  private long[] ends;
+  private int size;
+
+  /**
+   * Creates an instance.
+   *
+   * @param coalescing Whether overlapping and adjacent ranges are merged when they're added.
+   */
+  public RangeIndex(boolean coalescing) {
+    this.coalescing = coalescing;
+    starts = new long[INITIAL_CAPACITY];
+    ends = new long[INITIAL_CAPACITY];
+  }
+
+  /** Returns whether the index is empty. */
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Adds a range. If the index is coalescing, the range is merged with any ranges that it overlaps
+   * or is adjacent to.
+   *
+   * @param start The start position of the range.
+   * @param end The end position of the range, or {@link Long#MAX_VALUE} if unbounded.
+   */
+  public void add(long start, long end) {
+    int index = floorIndex(start);
+    if (!coalescing) {
+      insert(index + 1, start, end);
+      return;
+    } else if (start >= end) {
+      // Empty ranges don't cover anything.
+      return;
+    }
+    if (index < 0 || ends[index] < start) {
+      index++;
+    }
+    int lastIndex = index;
+    while (lastIndex < size && starts[lastIndex] <= end) {
+      start = min(start, starts[lastIndex]);
+      end = max(end, ends[lastIndex]);
+      lastIndex++;
+    }
+    if (lastIndex == index) {
+      insert(index, start, end);
+    } else {
+      starts[index] = start;
+      ends[index] = end;
+      removeRange(index + 1, lastIndex);
+    }
+  }
+
+  /**
+   * Removes the specified range from the index, trimming or splitting any ranges that it overlaps.
+   *
+   * @param start The start position of the range.
+   * @param end The end position of the range, or {@link Long#MAX_VALUE} if unbounded.
+   */
+  public void subtract(long start, long end) {
+    if (start >= end) {
+      return;
+    }
+    int index = floorIndex(start);
+    if (index < 0 || ends[index] <= start) {
+      index++;
+    }
+    if (index == size || starts[index] >= end) {
+      return;
+    }
+    int lastIndex = index;
+    while (lastIndex + 1 < size && starts[lastIndex + 1] < end) {
+      lastIndex++;
+    }
+    long leftStart = starts[index];
+    long rightEnd = ends[lastIndex];
+    removeRange(index, lastIndex + 1);
+    if (rightEnd > end) {
+      insert(index, end, rightEnd);
+    }
+    if (leftStart < start) {
+      insert(index, leftStart, start);
+    }
+  }
+
+  /**
+   * Removes the range starting at the specified position.
+   *
+   * @param start The start position of the range.
+   * @return Whether a range starting at the specified position was removed.
+   */
+  public boolean removeStartingAt(long start) {
+    int index = floorIndex(start);
+    if (index < 0 || starts[index] != start) {
+      return false;
+    }
+    removeRange(index, index + 1);
+    return true;
+  }
+
+  /**
+   * Returns whether any range in the index intersects the specified range.
+   *
+   * @param start The start position of the range.
+   * @param end The end position of the range, or {@link Long#MAX_VALUE} if unbounded.
+   */
+  public boolean intersects(long start, long end) {
+    int index = floorIndex(start);
+    if (index >= 0 && ends[index] > start) {
+      return true;
+    }
+    return index + 1 < size && starts[index + 1] < end;
+  }
+
+  /**
+   * Returns whether a single range in the index fully contains the specified range.
+   *
+   * @param start The start position of the range.
+   * @param end The end position of the range, or {@link Long#MAX_VALUE} if unbounded.
+   */
+  public boolean containsInSingleRange(long start, long end) {
+    int index = floorIndex(start);
+    return index >= 0 && ends[index] >= end;
+  }
+
+  /**
+   * Returns the length of the range in the index that contains {@code position}, measured from
+   * {@code position} and up to a maximum of {@code maxLength}. If {@code position} isn't contained
+   * by any range, then {@code -gapLength} is returned, where {@code gapLength} is the distance from
+   * {@code position} to the start of the next range, up to a maximum of {@code maxLength}.
+   *
+   * <p>For a coalescing index, the returned length is the length of continuously covered data.
+   *
+   * @param position The position.
+   * @param maxLength The maximum length to return.
+   * @return The length of the range containing {@code position}, or {@code -gapLength} if {@code
+   *     position} isn't contained by any range.
+   */
+  public long getContainedLength(long position, long maxLength) {
+    int index = floorIndex(position);
+    if (index >= 0 && ends[index] > position) {
+      return min(ends[index] - position, maxLength);
+    }
+    long gapLength = index + 1 < size ? starts[index + 1] - position : Long.MAX_VALUE;
+    return -min(gapLength, maxLength);
+  }
+
+  /**
+   * Returns the total length of the intersection between the ranges in the index and the specified
+   * range.
+   *
+   * @param start The start position of the range.
+   * @param end The end position of the range, or {@link Long#MAX_VALUE} if unbounded.
+   */
+  public long getIntersectionLength(long start, long end) {
+    int index = floorIndex(start);
+    if (index < 0 || ends[index] <= start) {
+      index++;
+    }
+    long length = 0;
+    for (; index < size && starts[index] < end; index++) {
+      length += min(ends[index], end) - max(starts[index], start);
+    }
+    return length;
+  }
+
+  /** Returns the index of the last range that starts at or before {@code position}, or -1. */
+  private int floorIndex(long position) {
+    int low = 0;
+    int high = size - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      if (starts[mid] <= position) {
+        low = mid + 1;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return high;
+  }
+
+  private void insert(int index, long start, long end) {
+    if (size == starts.length) {
+      starts = Arrays.copyOf(starts, size * 2);
+      ends = Arrays.copyOf(ends, size * 2);
+    }
+    System.arraycopy(starts, index, starts, index + 1, size - index);
+    System.arraycopy(ends, index, ends, index + 1, size - index);
+    starts[index] = start;
+    ends[index] = end;
+    size++;
+  }
+
+  private void removeRange(int fromIndex, int toIndex) {
+    System.arraycopy(starts, toIndex, starts, fromIndex, size - toIndex);
+    System.arraycopy(ends, toIndex, ends, fromIndex, size - toIndex);
+    size -= toIndex - fromIndex;
+  }
+}
@@ -42,6 +42,14 @@ import java.util.TreeSet;
  *
  * <p>Only one instance of SimpleCache is allowed for a given directory at a given time.
  *
+ * <p>Operations that only look up cached content for a key ({@link #getCachedSpans(String)},
+ * {@link #isCached(String, long, long)}, {@link #getCachedLength(String, long, long)}, {@link
+ * #getCachedBytes(String, long, long)}, {@link #getContentMetadata(String)} and read hits from
+ * {@link #startReadWriteNonBlocking(String, long, long)} when the evictor doesn't require cache
+ * spans to be touched) only hold a lock that is striped by key, so they don't block behind writes
+ * to other keys. Operations that modify the cache additionally hold the cache's monitor, which
+ * keeps the global size accounting, the index and the {@link CacheEvictor} callbacks consistent.
+ *
  * <p>To delete a SimpleCache, use {@link #delete(File, DatabaseProvider)} rather than deleting the
  * directory and its contents directly. This is necessary to ensure that associated index data is
  * also removed.
@@ -61,6 +69,11 @@ public final class SimpleCache implements Cache {
 
   private static final String UID_FILE_SUFFIX = ".uid";
 
+  /**
+   * The number of locks used to guard per-key {@link CachedContent} state. Must be a power of two.
+   */
+  private static final int KEY_LOCK_STRIPE_COUNT = 32;
+
   private static final HashSet<File> lockedCacheDirs = new HashSet<>();
 
   private final File cacheDir;
@@ -71,10 +84,19 @@ public final class SimpleCache implements Cache {
   private final Random random;
   private final boolean touchCacheSpans;
 
+  /**
+   * Locks guarding the state of each {@link CachedContent}, striped by key. A {@link CachedContent}
+   * is only modified whilst holding both the cache's monitor and its key lock, so its state may be
+   * read whilst holding either of them.
+   */
+  private final Object[] keyLocks;
+
   private long uid;
-  private long totalSpace;
-  private boolean released;
-  private  CacheException initializationException;
+  // Only modified whilst holding the cache's monitor.
+  private volatile long totalSpace;
+  private volatile boolean released;
+  private volatile boolean initialized;
+  @Nullable private volatile CacheException initializationException;
 
   /**
    * Returns whether {@code cacheFolder} is locked by a {@link SimpleCache} instance. To unlock the
@@ -192,6 +214,49 @@ public final class SimpleCache implements Cache {
       @Nullable byte[] legacyIndexSecretKey,
       boolean legacyIndexEncrypt,
       boolean preferLegacyIndex) {
+    this(
+        cacheDir,
+        evictor,
+        databaseProvider,
+        legacyIndexSecretKey,
+        legacyIndexEncrypt,
+        preferLegacyIndex,
+        /* journalLegacyIndex= */ false);
+  }
+
+  /**
+   * Constructs the cache. The cache will delete any unrecognized files from the cache directory.
+   * Hence the directory cannot be used to store other files.
+   *
+   * @param cacheDir A dedicated cache directory.
+   * @param evictor The evictor to be used. For download use cases where cache eviction should not
+   *     occur, use {@link NoOpCacheEvictor}.
+   * @param databaseProvider Provides the database in which the cache index is stored, or {@code
+   *     null} to use a legacy index. Using a database index is highly recommended for performance
+   *     reasons.
+   * @param legacyIndexSecretKey A 16 byte AES key for reading, and optionally writing, the legacy
+   *     index. Not used by the database index, however should still be provided when using the
+   *     database index in cases where upgrading from the legacy index may be necessary.
+   * @param legacyIndexEncrypt Whether to encrypt when writing to the legacy index. Must be {@code
+   *     false} if {@code legacyIndexSecretKey} is {@code null}. Not used by the database index.
+   * @param preferLegacyIndex Whether to use the legacy index even if a {@code databaseProvider} is
+   *     provided. Should be {@code false} in nearly all cases. Setting this to {@code true} is only
+   *     useful for downgrading from the database index back to the legacy index.
+   * @param journalLegacyIndex Whether the legacy index should append changes to a journal that's
+   *     compacted in the background, rather than rewriting the whole index file each time it's
+   *     stored. This makes storing the index proportional to the number of changes rather than to
+   *     the number of keys. If the cache is later constructed without journaling, changes that
+   *     haven't yet been compacted into the index file are still loaded, and are compacted into it
+   *     when the index is next stored. Not used by the database index.
+   */
+  public SimpleCache(
+      File cacheDir,
+      CacheEvictor evictor,
+      @Nullable DatabaseProvider databaseProvider,
+      @Nullable byte[] legacyIndexSecretKey,
+      boolean legacyIndexEncrypt,
+      boolean preferLegacyIndex,
+      boolean journalLegacyIndex) {
     this(
         cacheDir,
         evictor,
@@ -200,7 +265,8 @@ public final class SimpleCache implements Cache {
             cacheDir,
             legacyIndexSecretKey,
             legacyIndexEncrypt,
-            preferLegacyIndex),
+            preferLegacyIndex,
+            journalLegacyIndex),
         databaseProvider != null && !preferLegacyIndex
             ? new CacheFileMetadataIndex(databaseProvider)
             : null);
@@ -222,6 +288,10 @@ public final class SimpleCache implements Cache {
     listeners = new HashMap<>();
     random = new Random();
     touchCacheSpans = evictor.requiresCacheSpanTouches();
+    keyLocks = new Object[KEY_LOCK_STRIPE_COUNT];
+    for (int i = 0; i < KEY_LOCK_STRIPE_COUNT; i++) {
+      keyLocks[i] = new Object();
+    }
     uid = UID_UNSET;
 
     // Start cache initialization.
@@ -233,6 +303,7 @@ public final class SimpleCache implements Cache {
           conditionVariable.open();
           initialize();
           SimpleCache.this.evictor.onCacheInitialized();
+          initialized = true;
         }
       }
     }.start();
@@ -244,7 +315,9 @@ public final class SimpleCache implements Cache {
    *
    * @throws CacheException If an error occurred during initialization.
    */
-  public synchronized void checkInitialization() throws CacheException {
+  public void checkInitialization() throws CacheException {
+    blockUntilInitialized();
+    @Nullable CacheException initializationException = this.initializationException;
     if (initializationException != null) {
       throw initializationException;
     }
@@ -267,6 +340,9 @@ public final class SimpleCache implements Cache {
     } catch (IOException e) {
       Log.e(TAG, "Storing index file failed", e);
     } finally {
+      // Completes any background index writes, so that nothing is written after the folder is
+      // unlocked.
+      contentIndex.release();
       unlockFolder(cacheDir);
       released = true;
     }
@@ -301,23 +377,28 @@ public final class SimpleCache implements Cache {
   }
 
   @Override
-  public synchronized NavigableSet<CacheSpan> getCachedSpans(String key) {
+  public NavigableSet<CacheSpan> getCachedSpans(String key) {
     Assertions.checkState(!released);
-    CachedContent cachedContent = contentIndex.get(key);
-    return cachedContent == null || cachedContent.isEmpty()
-        ? new TreeSet<>()
-        : new TreeSet<CacheSpan>(cachedContent.getSpans());
+    blockUntilInitialized();
+    synchronized (getKeyLock(key)) {
+      @Nullable CachedContent cachedContent = contentIndex.get(key);
+      return cachedContent == null || cachedContent.isEmpty()
+          ? new TreeSet<>()
+          : new TreeSet<CacheSpan>(cachedContent.getSpans());
+    }
   }
 
   @Override
-  public synchronized Set<String> getKeys() {
+  public Set<String> getKeys() {
     Assertions.checkState(!released);
+    blockUntilInitialized();
     return new HashSet<>(contentIndex.getKeys());
   }
 
   @Override
-  public synchronized long getCacheSpace() {
+  public long getCacheSpace() {
     Assertions.checkState(!released);
+    blockUntilInitialized();
     return totalSpace;
   }
 
@@ -344,26 +425,40 @@ public final class SimpleCache implements Cache {
 
   @Override
   @Nullable
-  public synchronized CacheSpan startReadWriteNonBlocking(String key, long position, long length)
+  public CacheSpan startReadWriteNonBlocking(String key, long position, long length)
       throws CacheException {
     Assertions.checkState(!released);
     checkInitialization();
 
-    SimpleCacheSpan span = getSpan(key, position, length);
-
-    if (span.isCached) {
-      // Read case.
-      return touchSpan(key, span);
+    if (!touchCacheSpans) {
+      // Read case that doesn't modify the cache, so the cache's monitor isn't required.
+      @Nullable SimpleCacheSpan span = getValidCachedSpan(key, position, length);
+      if (span != null) {
+        return span;
+      }
     }
 
-    CachedContent cachedContent = contentIndex.getOrAdd(key);
-    if (cachedContent.lockRange(position, span.length)) {
-      // Write case.
-      return span;
-    }
+    synchronized (this) {
+      SimpleCacheSpan span = getSpan(key, position, length);
+
+      if (span.isCached) {
+        // Read case.
+        return touchSpan(key, span);
+      }
+
+      CachedContent cachedContent = contentIndex.getOrAdd(key);
+      boolean locked;
+      synchronized (getKeyLock(key)) {
+        locked = cachedContent.lockRange(position, span.length);
+      }
+      if (locked) {
+        // Write case.
+        return span;
+      }
 
-    // Lock not available.
-    return null;
+      // Lock not available.
+      return null;
+    }
   }
 
   @Override
@@ -434,7 +529,9 @@ public final class SimpleCache implements Cache {
   public synchronized void releaseHoleSpan(CacheSpan holeSpan) {
     Assertions.checkState(!released);
     CachedContent cachedContent = Assertions.checkNotNull(contentIndex.get(holeSpan.key));
-    cachedContent.unlockRange(holeSpan.position);
+    synchronized (getKeyLock(holeSpan.key)) {
+      cachedContent.unlockRange(holeSpan.position);
+    }
     contentIndex.maybeRemove(cachedContent.key);
     notifyAll();
   }
@@ -454,43 +551,37 @@ public final class SimpleCache implements Cache {
   }
 
   @Override
-  public synchronized boolean isCached(String key, long position, long length) {
+  public boolean isCached(String key, long position, long length) {
     Assertions.checkState(!released);
-    @Nullable CachedContent cachedContent = contentIndex.get(key);
-    return cachedContent != null && cachedContent.getCachedBytesLength(position, length) >= length;
+    blockUntilInitialized();
+    synchronized (getKeyLock(key)) {
+      @Nullable CachedContent cachedContent = contentIndex.get(key);
+      return cachedContent != null
+          && cachedContent.getCachedBytesLength(position, length) >= length;
+    }
   }
 
   @Override
-  public synchronized long getCachedLength(String key, long position, long length) {
+  public long getCachedLength(String key, long position, long length) {
     Assertions.checkState(!released);
+    blockUntilInitialized();
     if (length == C.LENGTH_UNSET) {
       length = Long.MAX_VALUE;
     }
-    @Nullable CachedContent cachedContent = contentIndex.get(key);
-    return cachedContent != null ? cachedContent.getCachedBytesLength(position, length) : -length;
+    synchronized (getKeyLock(key)) {
+      @Nullable CachedContent cachedContent = contentIndex.get(key);
+      return cachedContent != null ? cachedContent.getCachedBytesLength(position, length) : -length;
+    }
   }
 
   @Override
-  public synchronized long getCachedBytes(String key, long position, long length) {
-    long endPosition = length == C.LENGTH_UNSET ? Long.MAX_VALUE : position + length;
-    if (endPosition < 0) {
-      // The calculation rolled over (length is probably Long.MAX_VALUE).
-      endPosition = Long.MAX_VALUE;
-    }
-    long currentPosition = position;
-    long cachedBytes = 0;
-    while (currentPosition < endPosition) {
-      long maxRemainingLength = endPosition - currentPosition;
-      long blockLength = getCachedLength(key, currentPosition, maxRemainingLength);
-      if (blockLength > 0) {
-        cachedBytes += blockLength;
-      } else {
-        // There's a hole of length -blockLength.
-        blockLength = -blockLength;
-      }
-      currentPosition += blockLength;
+  public long getCachedBytes(String key, long position, long length) {
+    Assertions.checkState(!released);
+    blockUntilInitialized();
+    synchronized (getKeyLock(key)) {
+      @Nullable CachedContent cachedContent = contentIndex.get(key);
+      return cachedContent != null ? cachedContent.getCachedBytes(position, length) : 0;
     }
-    return cachedBytes;
   }
 
   @Override
@@ -499,7 +590,9 @@ public final class SimpleCache implements Cache {
     Assertions.checkState(!released);
     checkInitialization();
 
-    contentIndex.applyContentMetadataMutations(key, mutations);
+    synchronized (getKeyLock(key)) {
+      contentIndex.applyContentMetadataMutations(key, mutations);
+    }
     try {
       contentIndex.store();
     } catch (IOException e) {
@@ -508,9 +601,58 @@ public final class SimpleCache implements Cache {
   }
 
   @Override
-  public synchronized ContentMetadata getContentMetadata(String key) {
+  public ContentMetadata getContentMetadata(String key) {
     Assertions.checkState(!released);
-    return contentIndex.getContentMetadata(key);
+    blockUntilInitialized();
+    synchronized (getKeyLock(key)) {
+      return contentIndex.getContentMetadata(key);
+    }
+  }
+
+  /**
+   * Blocks until the cache's in-memory representation has been initialized. The initialization
+   * thread holds the cache's monitor until initialization has completed, so acquiring the monitor
+   * is sufficient to wait for it.
+   */
+  private void blockUntilInitialized() {
+    if (!initialized) {
+      synchronized (this) {
+        // Do nothing.
+      }
+    }
+  }
+
+  /** Returns the lock guarding the state of the {@link CachedContent} for the given key. */
+  private Object getKeyLock(String key) {
+    int hash = key.hashCode();
+    // Spread the higher bits of the hash, since only the lower bits are used to select a lock.
+    hash ^= hash >>> 16;
+    return keyLocks[hash & (KEY_LOCK_STRIPE_COUNT - 1)];
+  }
+
+  /**
+   * Returns the cached span corresponding to the provided key and range, or {@code null} if the
+   * start of the range isn't cached or if the underlying file of the span no longer matches. Only
+   * the key's lock is held, so stale spans are left for the caller to handle whilst holding the
+   * cache's monitor.
+   *
+   * @param key The key of the span being requested.
+   * @param position The position of the span being requested.
+   * @param length The length of the span, or {@link C#LENGTH_UNSET} if unbounded.
+   * @return The corresponding cached {@link SimpleCacheSpan}, or {@code null}.
+   */
+  @Nullable
+  private SimpleCacheSpan getValidCachedSpan(String key, long position, long length) {
+    synchronized (getKeyLock(key)) {
+      @Nullable CachedContent cachedContent = contentIndex.get(key);
+      if (cachedContent == null) {
+        return null;
+      }
+      SimpleCacheSpan span = cachedContent.getSpan(position, length);
+      return span.isCached && Assertions.checkNotNull(span.file).length() == span.length
+          ? span
+          : null;
+    }
   }
 
   /** Ensures that the cache's in-memory representation has been initialized. */
@@ -650,9 +792,11 @@ public final class SimpleCache implements Cache {
       // updating the file index. Hence we only update the file if we don't have a file index.
       updateFile = true;
     }
-    SimpleCacheSpan newSpan =
-        Assertions.checkNotNull(contentIndex.get(key))
-            .setLastTouchTimestamp(span, lastTouchTimestamp, updateFile);
+    CachedContent cachedContent = Assertions.checkNotNull(contentIndex.get(key));
+    SimpleCacheSpan newSpan;
+    synchronized (getKeyLock(key)) {
+      newSpan = cachedContent.setLastTouchTimestamp(span, lastTouchTimestamp, updateFile);
+    }
     notifySpanTouched(span, newSpan);
     return newSpan;
   }
@@ -689,16 +833,24 @@ public final class SimpleCache implements Cache {
    * @param span The span to be added.
    */
   private void addSpan(SimpleCacheSpan span) {
-    contentIndex.getOrAdd(span.key).addSpan(span);
+    CachedContent cachedContent = contentIndex.getOrAdd(span.key);
+    synchronized (getKeyLock(span.key)) {
+      cachedContent.addSpan(span);
+    }
     totalSpace += span.length;
     notifySpanAdded(span);
   }
 
   private void removeSpanInternal(CacheSpan span) {
     @Nullable CachedContent cachedContent = contentIndex.get(span.key);
-    if (cachedContent == null || !cachedContent.removeSpan(span)) {
+    if (cachedContent == null) {
       return;
     }
+    synchronized (getKeyLock(span.key)) {
+      if (!cachedContent.removeSpan(span)) {
+        return;
+      }
+    }
     totalSpace -= span.length;
     if (fileIndex != null) {
       String fileName = Assertions.checkNotNull(span.file).getName();
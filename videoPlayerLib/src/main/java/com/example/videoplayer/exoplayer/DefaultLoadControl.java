@@ -23,6 +23,7 @@ import static java.lang.Math.min;
 import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
 import com.example.videoplayer.common.C;
+import com.example.videoplayer.common.PriorityTaskManager;
 import com.example.videoplayer.common.Timeline;
 import com.example.videoplayer.common.util.Assertions;
 import com.example.videoplayer.common.util.Log;
@@ -119,6 +120,8 @@ public class DefaultLoadControl implements LoadControl {
     private boolean prioritizeTimeOverSizeThresholds;
     private int backBufferDurationMs;
     private boolean retainBackBufferFromKeyframe;
+    @Nullable private PriorityTaskManager priorityTaskManager;
+    private int lowerPriorityPreemptionBufferMs;
     private boolean buildCalled;
 
     /** Constructs a new instance. */
@@ -238,6 +241,28 @@ public class DefaultLoadControl implements LoadControl {
       return this;
     }
 
+    /**
+     * Sets a {@link PriorityTaskManager} whose lower priority tasks are {@linkplain
+     * PriorityTaskManager#setLowerPrioritiesPreempted(boolean) preempted} while the buffered
+     * duration of any player is below a watermark, so that they don't compete for bandwidth with
+     * playback when it's at risk of rebuffering.
+     *
+     * @param priorityTaskManager The {@link PriorityTaskManager}, or null to not preempt lower
+     *     priority tasks.
+     * @param bufferWatermarkMs The buffered duration below which lower priority tasks are
+     *     preempted, in milliseconds.
+     * @return This builder, for convenience.
+     * @throws IllegalStateException If {@link #build()} has already been called.
+     */
+    public Builder setLowerPriorityPreemption(
+        @Nullable PriorityTaskManager priorityTaskManager, int bufferWatermarkMs) {
+      checkState(!buildCalled);
+      assertGreaterOrEqual(bufferWatermarkMs, 0, "bufferWatermarkMs", "0");
+      this.priorityTaskManager = priorityTaskManager;
+      this.lowerPriorityPreemptionBufferMs = bufferWatermarkMs;
+      return this;
+    }
+
     /** Creates a {@link DefaultLoadControl}. */
     public DefaultLoadControl build() {
       checkState(!buildCalled);
@@ -254,7 +279,9 @@ public class DefaultLoadControl implements LoadControl {
           targetBufferBytes,
           prioritizeTimeOverSizeThresholds,
           backBufferDurationMs,
-          retainBackBufferFromKeyframe);
+          retainBackBufferFromKeyframe,
+          priorityTaskManager,
+          lowerPriorityPreemptionBufferMs);
     }
   }
 
@@ -268,6 +295,8 @@ public class DefaultLoadControl implements LoadControl {
   private final boolean prioritizeTimeOverSizeThresholds;
   private final long backBufferDurationUs;
   private final boolean retainBackBufferFromKeyframe;
+  @Nullable private final PriorityTaskManager priorityTaskManager;
+  private final long lowerPriorityPreemptionBufferUs;
   private final HashMap<PlayerId, PlayerLoadingState> loadingStates;
 
   private long threadId;
@@ -296,6 +325,32 @@ public class DefaultLoadControl implements LoadControl {
       boolean prioritizeTimeOverSizeThresholds,
       int backBufferDurationMs,
       boolean retainBackBufferFromKeyframe) {
+    this(
+        allocator,
+        minBufferMs,
+        maxBufferMs,
+        bufferForPlaybackMs,
+        bufferForPlaybackAfterRebufferMs,
+        targetBufferBytes,
+        prioritizeTimeOverSizeThresholds,
+        backBufferDurationMs,
+        retainBackBufferFromKeyframe,
+        /* priorityTaskManager= */ null,
+        /* lowerPriorityPreemptionBufferMs= */ 0);
+  }
+
+  protected DefaultLoadControl(
+      DefaultAllocator allocator,
+      int minBufferMs,
+      int maxBufferMs,
+      int bufferForPlaybackMs,
+      int bufferForPlaybackAfterRebufferMs,
+      int targetBufferBytes,
+      boolean prioritizeTimeOverSizeThresholds,
+      int backBufferDurationMs,
+      boolean retainBackBufferFromKeyframe,
+      @Nullable PriorityTaskManager priorityTaskManager,
+      int lowerPriorityPreemptionBufferMs) {
     assertGreaterOrEqual(bufferForPlaybackMs, 0, "bufferForPlaybackMs", "0");
     assertGreaterOrEqual(
         bufferForPlaybackAfterRebufferMs, 0, "bufferForPlaybackAfterRebufferMs", "0");
@@ -317,6 +372,8 @@ public class DefaultLoadControl implements LoadControl {
     this.prioritizeTimeOverSizeThresholds = prioritizeTimeOverSizeThresholds;
     this.backBufferDurationUs = Util.msToUs(backBufferDurationMs);
     this.retainBackBufferFromKeyframe = retainBackBufferFromKeyframe;
+    this.priorityTaskManager = priorityTaskManager;
+    this.lowerPriorityPreemptionBufferUs = Util.msToUs(lowerPriorityPreemptionBufferMs);
     loadingStates = new HashMap<>();
     threadId = C.INDEX_UNSET;
   }
@@ -400,6 +457,14 @@ public class DefaultLoadControl implements LoadControl {
     } else if (parameters.bufferedDurationUs >= maxBufferUs || targetBufferSizeReached) {
       playerLoadingState.isLoading = false;
     } // Else don't change the loading state.
+    if (priorityTaskManager != null) {
+      playerLoadingState.preemptsLowerPriorities =
+          playerLoadingState.isLoading
+              && Util.getPlayoutDurationForMediaDuration(
+                      parameters.bufferedDurationUs, parameters.playbackSpeed)
+                  < lowerPriorityPreemptionBufferUs;
+      updateLowerPriorityPreemption();
+    }
     return playerLoadingState.isLoading;
   }
 
@@ -473,12 +538,26 @@ public class DefaultLoadControl implements LoadControl {
             ? DEFAULT_MIN_BUFFER_SIZE
             : targetBufferBytesOverwrite;
     playerLoadingState.isLoading = false;
+    playerLoadingState.preemptsLowerPriorities = false;
+    updateLowerPriorityPreemption();
   }
 
   private void removePlayer(PlayerId playerId) {
     if (loadingStates.remove(playerId) != null) {
       updateAllocator();
+      updateLowerPriorityPreemption();
+    }
+  }
+
+  private void updateLowerPriorityPreemption() {
+    if (priorityTaskManager == null) {
+      return;
+    }
+    boolean preempted = false;
+    for (PlayerLoadingState state : loadingStates.values()) {
+      preempted |= state.preemptsLowerPriorities;
     }
+    priorityTaskManager.setLowerPrioritiesPreempted(preempted);
   }
 
   private void updateAllocator() {
@@ -521,5 +600,6 @@ public class DefaultLoadControl implements LoadControl {
   private static class PlayerLoadingState {
     public boolean isLoading;
     public int targetBufferBytes;
+    public boolean preemptsLowerPriorities;
   }
 }
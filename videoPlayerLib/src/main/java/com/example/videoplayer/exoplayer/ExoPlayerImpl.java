@@ -391,6 +391,10 @@ import java.util.concurrent.CopyOnWriteArraySet;
 
       addListener(analyticsCollector);
       bandwidthMeter.addEventListener(new Handler(applicationLooper), analyticsCollector);
+      bandwidthMeter.addEventListener(new Handler(applicationLooper), componentListener);
+      if (priorityTaskManager != null) {
+        priorityTaskManager.setBandwidthEstimate(bandwidthMeter.getBitrateEstimate());
+      }
       addAudioOffloadListener(componentListener);
       if (builder.foregroundModeTimeoutMs > 0) {
         internalPlayer.experimentalSetForegroundModeTimeoutMs(builder.foregroundModeTimeoutMs);
@@ -1052,6 +1056,7 @@ import java.util.concurrent.CopyOnWriteArraySet;
     listeners.release();
     playbackInfoUpdateHandler.removeCallbacksAndMessages(null);
     bandwidthMeter.removeEventListener(analyticsCollector);
+    bandwidthMeter.removeEventListener(componentListener);
     if (playbackInfo.sleepingForOffload) {
       playbackInfo = playbackInfo.copyWithEstimatedPosition();
     }
@@ -1713,6 +1718,9 @@ import java.util.concurrent.CopyOnWriteArraySet;
     } else {
       isPriorityTaskManagerRegistered = false;
     }
+    if (priorityTaskManager != null) {
+      priorityTaskManager.setBandwidthEstimate(bandwidthMeter.getBitrateEstimate());
+    }
     this.priorityTaskManager = priorityTaskManager;
   }
 
@@ -3067,7 +3075,8 @@ import java.util.concurrent.CopyOnWriteArraySet;
           SphericalGLSurfaceView.VideoSurfaceListener,
           AudioBecomingNoisyManager.EventListener,
           StreamVolumeManager.Listener,
-          AudioOffloadListener {
+          AudioOffloadListener,
+          BandwidthMeter.EventListener {
 
     // VideoRendererEventListener implementation
 
@@ -3337,6 +3346,15 @@ import java.util.concurrent.CopyOnWriteArraySet;
     public void onSleepingForOffloadChanged(boolean sleepingForOffload) {
       updateWakeAndWifiLock();
     }
+
+    // BandwidthMeter.EventListener implementation.
+
+    @Override
+    public void onBandwidthSample(int elapsedMs, long bytesTransferred, long bitrateEstimate) {
+      if (priorityTaskManager != null) {
+        priorityTaskManager.setBandwidthEstimate(bitrateEstimate);
+      }
+    }
   }
 
   /** Listeners that are called on the playback thread. */
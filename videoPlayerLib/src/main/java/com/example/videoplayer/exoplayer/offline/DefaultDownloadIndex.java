@@ -15,6 +15,7 @@
  */
 package com.example.videoplayer.exoplayer.offline;
 
+import static com.example.videoplayer.common.util.Assertions.checkArgument;
 import static com.example.videoplayer.common.util.Assertions.checkNotNull;
 
 import android.content.ContentValues;
@@ -23,6 +24,7 @@ import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteException;
 import android.net.Uri;
+import android.os.SystemClock;
 import android.text.TextUtils;
 import androidx.annotation.GuardedBy;
 import androidx.annotation.Nullable;
@@ -30,6 +32,7 @@ import androidx.annotation.VisibleForTesting;
 import com.example.videoplayer.common.MimeTypes;
 import com.example.videoplayer.common.StreamKey;
 import com.example.videoplayer.common.util.Assertions;
+import com.example.videoplayer.common.util.NullableType;
 import com.example.videoplayer.common.util.UnstableApi;
 import com.example.videoplayer.common.util.Util;
 import com.example.videoplayer.database.DatabaseIOException;
@@ -38,9 +41,19 @@ import com.example.videoplayer.database.VersionTable;
 import com.example.videoplayer.exoplayer.offline.Download.FailureReason;
 import com.example.videoplayer.exoplayer.offline.Download.State;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
-/** A {@link DownloadIndex} that uses SQLite to persist {@link Download Downloads}. */
+/**
+ * A {@link DownloadIndex} that uses SQLite to persist {@link Download Downloads}.
+ *
+ * <p>By default, each {@link #putDownload(Download)} and {@link #removeDownload(String)} is
+ * written immediately in its own transaction. If {@linkplain #setWriteBehind(int, long) write
+ * behind} is enabled, they are instead buffered and coalesced per download ID, and written together
+ * in a single transaction when the buffer fills, when the oldest buffered update is older than a
+ * maximum delay, or when {@link #flush()} is called. Reads from the index reflect buffered updates.
+ */
 @UnstableApi
 public final class DefaultDownloadIndex implements WritableDownloadIndex {
 
@@ -148,6 +161,30 @@ public final class DefaultDownloadIndex implements WritableDownloadIndex {
   @GuardedBy("initializationLock")
   private boolean initialized;
 
+  private final Object writeBehindLock;
+
+  /** Buffered updates by download ID. A null value means the download was removed. */
+  @GuardedBy("writeBehindLock")
+  private final LinkedHashMap<String, @NullableType Download> bufferedWrites;
+
+  @GuardedBy("writeBehindLock")
+  private int maxBufferedWrites;
+
+  @GuardedBy("writeBehindLock")
+  private long maxWriteDelayMs;
+
+  @GuardedBy("writeBehindLock")
+  private long firstBufferedWriteTimeMs;
+
+  @GuardedBy("writeBehindLock")
+  private int bufferedWriteCount;
+
+  @GuardedBy("writeBehindLock")
+  private long flushedWriteCount;
+
+  @GuardedBy("writeBehindLock")
+  private long flushCount;
+
   /**
    * Creates an instance that stores the {@link Download Downloads} in an SQLite database provided
    * by a {@link DatabaseProvider}.
@@ -178,11 +215,59 @@ public final class DefaultDownloadIndex implements WritableDownloadIndex {
     this.databaseProvider = databaseProvider;
     tableName = TABLE_PREFIX + name;
     initializationLock = new Object();
+    writeBehindLock = new Object();
+    bufferedWrites = new LinkedHashMap<>();
+  }
+
+  /**
+   * Sets whether updates are buffered and written in batches. Disabling write behind flushes any
+   * buffered updates.
+   *
+   * @param maxBufferedWrites The maximum number of downloads with buffered updates, or 0 to disable
+   *     write behind.
+   * @param maxWriteDelayMs The maximum time for which an update is buffered, in milliseconds. The
+   *     buffer is flushed by the first update after this time has elapsed, and should additionally
+   *     be {@linkplain #flush() flushed} periodically if updates may stop. {@link DownloadManager}
+   *     does this.
+   * @throws DatabaseIOException If an error occurs flushing buffered updates.
+   */
+  public void setWriteBehind(int maxBufferedWrites, long maxWriteDelayMs)
+      throws DatabaseIOException {
+    checkArgument(maxBufferedWrites >= 0 && maxWriteDelayMs >= 0);
+    synchronized (writeBehindLock) {
+      this.maxBufferedWrites = maxBufferedWrites;
+      this.maxWriteDelayMs = maxWriteDelayMs;
+      if (maxBufferedWrites == 0) {
+        flush();
+      }
+    }
+  }
+
+  /**
+   * Returns the number of transactions that were saved by write behind, which is the number of
+   * buffered updates that were flushed less the number of transactions used to flush them.
+   */
+  public long getTransactionsSavedCount() {
+    synchronized (writeBehindLock) {
+      return flushedWriteCount - flushCount;
+    }
+  }
+
+  /** Returns the number of transactions that were used to flush buffered updates. */
+  public long getFlushCount() {
+    synchronized (writeBehindLock) {
+      return flushCount;
+    }
   }
 
   @Override
   @Nullable
   public Download getDownload(String id) throws DatabaseIOException {
+    synchronized (writeBehindLock) {
+      if (bufferedWrites.containsKey(id)) {
+        return bufferedWrites.get(id);
+      }
+    }
     ensureInitialized();
     try (Cursor cursor = getCursor(WHERE_ID_EQUALS, new String[] {id})) {
       if (cursor.getCount() == 0) {
@@ -197,6 +282,8 @@ public final class DefaultDownloadIndex implements WritableDownloadIndex {
 
   @Override
   public DownloadCursor getDownloads(@Download.State int... states) throws DatabaseIOException {
+    // Querying the table is much more expensive than a flush, so flush to include buffered updates.
+    flush();
     ensureInitialized();
     Cursor cursor = getCursor(getStateQuery(states), /* selectionArgs= */ null);
     return new DownloadCursorImpl(cursor);
@@ -204,6 +291,9 @@ public final class DefaultDownloadIndex implements WritableDownloadIndex {
 
   @Override
   public void putDownload(Download download) throws DatabaseIOException {
+    if (maybeBufferWrite(download.request.id, download)) {
+      return;
+    }
     ensureInitialized();
     try {
       SQLiteDatabase writableDatabase = databaseProvider.getWritableDatabase();
@@ -215,6 +305,9 @@ public final class DefaultDownloadIndex implements WritableDownloadIndex {
 
   @Override
   public void removeDownload(String id) throws DatabaseIOException {
+    if (maybeBufferWrite(id, /* download= */ null)) {
+      return;
+    }
     ensureInitialized();
     try {
       databaseProvider.getWritableDatabase().delete(tableName, WHERE_ID_EQUALS, new String[] {id});
@@ -225,6 +318,7 @@ public final class DefaultDownloadIndex implements WritableDownloadIndex {
 
   @Override
   public void setDownloadingStatesToQueued() throws DatabaseIOException {
+    flush();
     ensureInitialized();
     try {
       ContentValues values = new ContentValues();
@@ -238,6 +332,7 @@ public final class DefaultDownloadIndex implements WritableDownloadIndex {
 
   @Override
   public void setStatesToRemoving() throws DatabaseIOException {
+    flush();
     ensureInitialized();
     try {
       ContentValues values = new ContentValues();
@@ -254,6 +349,7 @@ public final class DefaultDownloadIndex implements WritableDownloadIndex {
 
   @Override
   public void setStopReason(int stopReason) throws DatabaseIOException {
+    flush();
     ensureInitialized();
     try {
       ContentValues values = new ContentValues();
@@ -267,6 +363,7 @@ public final class DefaultDownloadIndex implements WritableDownloadIndex {
 
   @Override
   public void setStopReason(String id, int stopReason) throws DatabaseIOException {
+    flush();
     ensureInitialized();
     try {
       ContentValues values = new ContentValues();
@@ -282,6 +379,68 @@ public final class DefaultDownloadIndex implements WritableDownloadIndex {
     }
   }
 
+  @Override
+  public void flush() throws DatabaseIOException {
+    synchronized (writeBehindLock) {
+      if (bufferedWrites.isEmpty()) {
+        return;
+      }
+      ensureInitialized();
+      try {
+        SQLiteDatabase writableDatabase = databaseProvider.getWritableDatabase();
+        writableDatabase.beginTransactionNonExclusive();
+        try {
+          for (Map.Entry<String, @NullableType Download> entry : bufferedWrites.entrySet()) {
+            @Nullable Download download = entry.getValue();
+            if (download != null) {
+              putDownloadInternal(download, writableDatabase);
+            } else {
+              writableDatabase.delete(tableName, WHERE_ID_EQUALS, new String[] {entry.getKey()});
+            }
+          }
+          writableDatabase.setTransactionSuccessful();
+        } finally {
+          writableDatabase.endTransaction();
+        }
+      } catch (SQLException e) {
+        // Keep the buffered updates, so that they're written by the next flush.
+        throw new DatabaseIOException(e);
+      }
+      bufferedWrites.clear();
+      flushedWriteCount += bufferedWriteCount;
+      bufferedWriteCount = 0;
+      flushCount++;
+    }
+  }
+
+  /**
+   * Buffers an update if write behind is enabled, flushing the buffer if it's full or the oldest
+   * update has been buffered for too long.
+   *
+   * @param id The ID of the download.
+   * @param download The updated download, or null if the download was removed.
+   * @return Whether the update was buffered.
+   */
+  private boolean maybeBufferWrite(String id, @Nullable Download download)
+      throws DatabaseIOException {
+    synchronized (writeBehindLock) {
+      if (maxBufferedWrites == 0) {
+        return false;
+      }
+      long nowMs = SystemClock.elapsedRealtime();
+      if (bufferedWrites.isEmpty()) {
+        firstBufferedWriteTimeMs = nowMs;
+      }
+      bufferedWrites.put(id, download);
+      bufferedWriteCount++;
+      if (bufferedWrites.size() >= maxBufferedWrites
+          || nowMs - firstBufferedWriteTimeMs >= maxWriteDelayMs) {
+        flush();
+      }
+      return true;
+    }
+  }
+
   private void ensureInitialized() throws DatabaseIOException {
     synchronized (initializationLock) {
       if (initialized) {
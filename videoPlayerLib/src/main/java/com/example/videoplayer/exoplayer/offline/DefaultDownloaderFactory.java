@@ -37,6 +37,7 @@ public class DefaultDownloaderFactory implements DownloaderFactory {
 
   private final CacheDataSource.Factory cacheDataSourceFactory;
   private final Executor executor;
+  private final int maxParallelSegments;
   private final SparseArray<SegmentDownloaderFactory> segmentDownloaderFactories;
 
   /**
@@ -63,8 +64,29 @@ public class DefaultDownloaderFactory implements DownloaderFactory {
    */
   public DefaultDownloaderFactory(
       CacheDataSource.Factory cacheDataSourceFactory, Executor executor) {
+    this(cacheDataSourceFactory, executor, /* maxParallelSegments= */ 0);
+  }
+
+  /**
+   * Creates an instance.
+   *
+   * @param cacheDataSourceFactory A {@link CacheDataSource.Factory} for the cache into which
+   *     downloads will be written.
+   * @param executor An {@link Executor} used to download data. Passing {@code Runnable::run} will
+   *     cause each download task to download data on its own thread. Passing an {@link Executor}
+   *     that uses multiple threads will speed up download tasks that can be split into smaller
+   *     parts for parallel execution.
+   * @param maxParallelSegments The maximum number of segments that DASH, HLS and SmoothStreaming
+   *     downloads download in parallel when the number is adapted to the observed throughput and
+   *     errors, or 0 to disable adaptation. The {@code executor} should be able to run this many
+   *     segment downloads in parallel.
+   */
+  public DefaultDownloaderFactory(
+      CacheDataSource.Factory cacheDataSourceFactory, Executor executor, int maxParallelSegments) {
+    Assertions.checkArgument(maxParallelSegments >= 0);
     this.cacheDataSourceFactory = Assertions.checkNotNull(cacheDataSourceFactory);
     this.executor = Assertions.checkNotNull(executor);
+    this.maxParallelSegments = maxParallelSegments;
     this.segmentDownloaderFactories = new SparseArray<>();
   }
 
@@ -108,7 +130,10 @@ public class DefaultDownloaderFactory implements DownloaderFactory {
           .setStartPositionUs(request.timeRange.startPositionUs)
           .setDurationUs(request.timeRange.durationUs);
     }
-    return downloaderFactory.setExecutor(executor).create(mediaItem);
+    return downloaderFactory
+        .setExecutor(executor)
+        .setMaxParallelSegments(maxParallelSegments)
+        .create(mediaItem);
   }
 
   // LINT.IfChange
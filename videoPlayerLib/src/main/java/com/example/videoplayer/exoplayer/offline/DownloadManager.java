@@ -174,6 +174,7 @@ public final class DownloadManager {
   private static final int MSG_CONTENT_LENGTH_CHANGED = 11;
   private static final int MSG_UPDATE_PROGRESS = 12;
   private static final int MSG_RELEASE = 13;
+  private static final int MSG_FLUSH_INDEX = 14;
 
   private static final String TAG = "DownloadManager";
 
@@ -680,6 +681,7 @@ public final class DownloadManager {
   private static final class InternalHandler extends Handler {
 
     private static final int UPDATE_PROGRESS_INTERVAL_MS = 5000;
+    private static final int FLUSH_INDEX_DELAY_MS = 1000;
 
     public boolean released;
 
@@ -769,13 +771,18 @@ public final class DownloadManager {
           return; // No need to post back to mainHandler.
         case MSG_UPDATE_PROGRESS:
           updateProgress();
+          scheduleIndexFlush();
           return; // No need to post back to mainHandler.
         case MSG_RELEASE:
           release();
           return; // No need to post back to mainHandler.
+        case MSG_FLUSH_INDEX:
+          flushIndex();
+          return; // No need to post back to mainHandler.
         default:
           throw new IllegalStateException();
       }
+      scheduleIndexFlush();
       mainHandler
           .obtainMessage(MSG_PROCESSED, processedExternalMessage ? 1 : 0, activeTasks.size())
           .sendToTarget();
@@ -944,6 +951,8 @@ public final class DownloadManager {
       } catch (IOException e) {
         Log.e(TAG, "Failed to update index.", e);
       }
+      removeMessages(MSG_FLUSH_INDEX);
+      flushIndex();
       downloads.clear();
       thread.quit();
       synchronized (this) {
@@ -1196,6 +1205,23 @@ public final class DownloadManager {
       sendEmptyMessageDelayed(MSG_UPDATE_PROGRESS, UPDATE_PROGRESS_INTERVAL_MS);
     }
 
+    // Index updates.
+
+    /** Schedules a flush of any updates that the download index buffered. */
+    private void scheduleIndexFlush() {
+      if (!hasMessages(MSG_FLUSH_INDEX)) {
+        sendEmptyMessageDelayed(MSG_FLUSH_INDEX, FLUSH_INDEX_DELAY_MS);
+      }
+    }
+
+    private void flushIndex() {
+      try {
+        downloadIndex.flush();
+      } catch (IOException e) {
+        Log.e(TAG, "Failed to update index.", e);
+      }
+    }
+
     // Helper methods.
 
     private boolean canDownloadsRun() {
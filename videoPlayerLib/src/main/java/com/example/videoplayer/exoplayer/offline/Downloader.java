@@ -42,6 +42,17 @@ public interface Downloader {
      *     C#PERCENTAGE_UNSET}.
      */
     void onProgress(long contentLength, long bytesDownloaded, float percentDownloaded);
+
+    /**
+     * Called when the effective throughput of a download operation is measured, which is the rate
+     * at which data has been downloaded since the operation started. The default implementation
+     * does nothing.
+     *
+     * <p>May be called from the same threads as {@link #onProgress}, with the same guarantees.
+     *
+     * @param bytesPerSecond The effective throughput, in bytes per second.
+     */
+    default void onThroughput(long bytesPerSecond) {}
   }
 
   /**
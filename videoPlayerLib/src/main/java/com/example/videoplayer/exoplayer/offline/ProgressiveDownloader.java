@@ -18,6 +18,7 @@ package com.example.videoplayer.exoplayer.offline;
 import static androidx.annotation.VisibleForTesting.PRIVATE;
 import static com.example.videoplayer.common.util.Assertions.checkNotNull;
 import static com.example.videoplayer.common.util.Util.percentFloat;
+import static java.lang.Math.min;
 
 import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
@@ -30,17 +31,37 @@ import com.example.videoplayer.common.util.RunnableFutureTask;
 import com.example.videoplayer.common.util.UnstableApi;
 import com.example.videoplayer.common.util.Util;
 import com.example.videoplayer.datasource.DataSpec;
+import com.example.videoplayer.datasource.cache.Cache;
 import com.example.videoplayer.datasource.cache.CacheDataSource;
 import com.example.videoplayer.datasource.cache.CacheWriter;
+import com.example.videoplayer.datasource.cache.ContentMetadata;
+import com.example.videoplayer.datasource.cache.ContentMetadataMutations;
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 
-/** A downloader for progressive media streams. */
+/**
+ * A downloader for progressive media streams.
+ *
+ * <p>By default the stream is downloaded through a single request. If a range count greater than
+ * one is specified, then the downloader first resolves the length of the stream, and then splits it
+ * into up to that many byte ranges that are downloaded in parallel on the provided {@link
+ * Executor}, each through its own {@link CacheDataSource}. Ranges that are already fully cached are
+ * skipped. If the length of the stream can't be resolved then it's downloaded through a single
+ * request.
+ */
 @UnstableApi
 public final class ProgressiveDownloader implements Downloader {
 
+  /** The minimum length of each range when downloading in parallel ranges, in bytes. */
+  private static final long MIN_RANGE_LENGTH = 1024 * 1024;
+
   private final Executor executor;
+  private final CacheDataSource.Factory cacheDataSourceFactory;
+  private final int rangeCount;
+  private final ArrayList<RunnableFutureTask<?, ?>> activeRunnables;
 
   @VisibleForTesting(otherwise = PRIVATE)
   /* package */ final DataSpec dataSpec;
@@ -50,7 +71,7 @@ public final class ProgressiveDownloader implements Downloader {
   @Nullable private final PriorityTaskManager priorityTaskManager;
 
   @Nullable private ProgressListener progressListener;
-  private volatile  RunnableFutureTask<Void, IOException> downloadRunnable;
+  @Nullable private volatile RunnableFutureTask<Void, IOException> downloadRunnable;
   private volatile boolean isCanceled;
 
   /**
@@ -124,7 +145,37 @@ public final class ProgressiveDownloader implements Downloader {
       Executor executor,
       long position,
       long length) {
+    this(mediaItem, cacheDataSourceFactory, executor, position, length, /* rangeCount= */ 1);
+  }
+
+  /**
+   * Creates a new instance.
+   *
+   * @param mediaItem The media item with a uri to the stream to be downloaded.
+   * @param cacheDataSourceFactory A {@link CacheDataSource.Factory} for the cache into which the
+   *     download will be written.
+   * @param executor An {@link Executor} used to make requests for the media being downloaded. If
+   *     {@code rangeCount} is greater than one, it should use multiple threads so that the ranges
+   *     are downloaded in parallel.
+   * @param position The position of the {@link DataSpec} from which the {@link
+   *     ProgressiveDownloader} downloads.
+   * @param length The length of the {@link DataSpec} for which the {@link ProgressiveDownloader}
+   *     downloads.
+   * @param rangeCount The maximum number of byte ranges that are downloaded in parallel. Ranges are
+   *     at least 1 MiB long, so fewer ranges may be used for short streams.
+   */
+  public ProgressiveDownloader(
+      MediaItem mediaItem,
+      CacheDataSource.Factory cacheDataSourceFactory,
+      Executor executor,
+      long position,
+      long length,
+      int rangeCount) {
+    Assertions.checkArgument(rangeCount > 0);
     this.executor = Assertions.checkNotNull(executor);
+    this.cacheDataSourceFactory = cacheDataSourceFactory;
+    this.rangeCount = rangeCount;
+    activeRunnables = new ArrayList<>();
     Assertions.checkNotNull(mediaItem.localConfiguration);
     dataSpec =
         new DataSpec.Builder()
@@ -149,6 +200,44 @@ public final class ProgressiveDownloader implements Downloader {
     if (priorityTaskManager != null) {
       priorityTaskManager.add(C.PRIORITY_DOWNLOAD);
     }
+    try {
+      long length = rangeCount > 1 ? resolveLength() : C.LENGTH_UNSET;
+      int effectiveRangeCount =
+          length == C.LENGTH_UNSET
+              ? 1
+              : (int) min(rangeCount, Util.ceilDivide(length, MIN_RANGE_LENGTH));
+      if (effectiveRangeCount > 1) {
+        downloadRanges(length, effectiveRangeCount);
+      } else {
+        downloadSequentially();
+      }
+    } finally {
+      if (priorityTaskManager != null) {
+        priorityTaskManager.remove(C.PRIORITY_DOWNLOAD);
+      }
+    }
+  }
+
+  @Override
+  public void cancel() {
+    synchronized (activeRunnables) {
+      isCanceled = true;
+      for (int i = 0; i < activeRunnables.size(); i++) {
+        activeRunnables.get(i).cancel(/* interruptIfRunning= */ true);
+      }
+    }
+    @Nullable RunnableFutureTask<Void, IOException> downloadRunnable = this.downloadRunnable;
+    if (downloadRunnable != null) {
+      downloadRunnable.cancel(/* interruptIfRunning= */ true);
+    }
+  }
+
+  @Override
+  public void remove() {
+    dataSource.getCache().removeResource(dataSource.getCacheKeyFactory().buildCacheKey(dataSpec));
+  }
+
+  private void downloadSequentially() throws IOException, InterruptedException {
     try {
       boolean finished = false;
       while (!finished && !isCanceled) {
@@ -188,25 +277,138 @@ public final class ProgressiveDownloader implements Downloader {
     } finally {
       // If the main download thread was interrupted as part of cancelation, then it's possible that
       // the runnable is still doing work. We need to wait until it's finished before returning.
-      checkNotNull(downloadRunnable).blockUntilFinished();
+      @Nullable RunnableFutureTask<Void, IOException> downloadRunnable = this.downloadRunnable;
+      if (downloadRunnable != null) {
+        downloadRunnable.blockUntilFinished();
+      }
+    }
+  }
+
+  /**
+   * Returns the length of the data to download, or {@link C#LENGTH_UNSET} if it can't be resolved.
+   * If the length isn't known from the {@link DataSpec} or from the cache's content metadata, then
+   * the resource is opened to resolve it, and the resolved length is stored in the content
+   * metadata.
+   */
+  private long resolveLength() throws IOException, InterruptedException {
+    if (dataSpec.length != C.LENGTH_UNSET) {
+      return dataSpec.length;
+    }
+    Cache cache = dataSource.getCache();
+    String cacheKey = dataSource.getCacheKeyFactory().buildCacheKey(dataSpec);
+    long contentLength = ContentMetadata.getContentLength(cache.getContentMetadata(cacheKey));
+    if (contentLength != C.LENGTH_UNSET) {
+      return contentLength - dataSpec.position;
+    }
+    while (true) {
+      if (isCanceled) {
+        throw new InterruptedException();
+      }
       if (priorityTaskManager != null) {
-        priorityTaskManager.remove(C.PRIORITY_DOWNLOAD);
+        priorityTaskManager.proceed(C.PRIORITY_DOWNLOAD);
+      }
+      long length;
+      try {
+        length = dataSource.open(dataSpec);
+      } catch (PriorityTooLowException e) {
+        // Try again once the task is able to proceed.
+        continue;
+      } finally {
+        dataSource.close();
       }
+      if (length != C.LENGTH_UNSET) {
+        // Opening stores the length, but if nothing is cached yet then the cache discards it along
+        // with the empty content when the data source is closed.
+        ContentMetadataMutations mutations = new ContentMetadataMutations();
+        ContentMetadataMutations.setContentLength(mutations, dataSpec.position + length);
+        cache.applyContentMetadataMutations(cacheKey, mutations);
+      }
+      return length;
     }
   }
 
-  @Override
-  public void cancel() {
-    isCanceled = true;
-    RunnableFutureTask<Void, IOException> downloadRunnable = this.downloadRunnable;
-    if (downloadRunnable != null) {
-      downloadRunnable.cancel(/* interruptIfRunning= */ true);
+  /**
+   * Downloads the data by splitting it into byte ranges that are downloaded in parallel.
+   *
+   * @param length The resolved length of the data to download.
+   * @param rangeCount The number of ranges into which the data is split.
+   */
+  private void downloadRanges(long length, int rangeCount)
+      throws IOException, InterruptedException {
+    Cache cache = dataSource.getCache();
+    String cacheKey = dataSource.getCacheKeyFactory().buildCacheKey(dataSpec);
+    long bytesCached = cache.getCachedBytes(cacheKey, dataSpec.position, length);
+    RangeProgressNotifier progressNotifier = new RangeProgressNotifier(length, bytesCached);
+    progressNotifier.notifyProgress();
+
+    ArrayDeque<DataSpec> pendingRanges = new ArrayDeque<>();
+    long rangeLength = Util.ceilDivide(length, rangeCount);
+    for (long offset = 0; offset < length; offset += rangeLength) {
+      DataSpec range = dataSpec.subrange(offset, min(rangeLength, length - offset));
+      if (cache.getCachedBytes(cacheKey, range.position, range.length) < range.length) {
+        pendingRanges.add(range);
+      }
+    }
+
+    try {
+      while (!pendingRanges.isEmpty() || !activeRunnables.isEmpty()) {
+        if (!pendingRanges.isEmpty()) {
+          if (priorityTaskManager != null) {
+            priorityTaskManager.proceed(C.PRIORITY_DOWNLOAD);
+          }
+          while (!pendingRanges.isEmpty()) {
+            RangeDownloadRunnable downloadRunnable =
+                new RangeDownloadRunnable(
+                    pendingRanges.removeFirst(),
+                    cacheDataSourceFactory.createDataSourceForDownloading(),
+                    progressNotifier);
+            addActiveRunnable(downloadRunnable);
+            executor.execute(downloadRunnable);
+          }
+        }
+        RangeDownloadRunnable activeRunnable = (RangeDownloadRunnable) activeRunnables.get(0);
+        try {
+          activeRunnable.get();
+        } catch (ExecutionException e) {
+          Throwable cause = Assertions.checkNotNull(e.getCause());
+          if (cause instanceof PriorityTooLowException) {
+            // Schedule the range again once the task is able to proceed.
+            pendingRanges.addLast(activeRunnable.range);
+          } else if (cause instanceof IOException) {
+            throw (IOException) cause;
+          } else {
+            // The cause must be an uncaught Throwable type.
+            Util.sneakyThrow(cause);
+          }
+        }
+        removeActiveRunnable(activeRunnable);
+      }
+    } finally {
+      // If one of the runnables has thrown an exception, then it's possible there are other active
+      // runnables still doing work. Cancel them, and wait until they finish before returning.
+      for (int i = 0; i < activeRunnables.size(); i++) {
+        activeRunnables.get(i).cancel(/* interruptIfRunning= */ true);
+      }
+      for (int i = activeRunnables.size() - 1; i >= 0; i--) {
+        activeRunnables.get(i).blockUntilFinished();
+        removeActiveRunnable(activeRunnables.get(i));
+      }
     }
   }
 
-  @Override
-  public void remove() {
-    dataSource.getCache().removeResource(dataSource.getCacheKeyFactory().buildCacheKey(dataSpec));
+  private void addActiveRunnable(RunnableFutureTask<?, ?> runnable) throws InterruptedException {
+    synchronized (activeRunnables) {
+      if (isCanceled) {
+        throw new InterruptedException();
+      }
+      activeRunnables.add(runnable);
+    }
+  }
+
+  private void removeActiveRunnable(RunnableFutureTask<?, ?> runnable) {
+    synchronized (activeRunnables) {
+      activeRunnables.remove(runnable);
+    }
   }
 
   private void onProgress(long contentLength, long bytesCached, long newBytesCached) {
@@ -219,4 +421,53 @@ public final class ProgressiveDownloader implements Downloader {
             : percentFloat(bytesCached, contentLength);
     checkNotNull(progressListener).onProgress(contentLength, bytesCached, percentDownloaded);
   }
+
+  private static final class RangeDownloadRunnable extends RunnableFutureTask<Void, IOException> {
+
+    public final DataSpec range;
+    private final CacheWriter cacheWriter;
+
+    public RangeDownloadRunnable(
+        DataSpec range, CacheDataSource dataSource, RangeProgressNotifier progressNotifier) {
+      this.range = range;
+      cacheWriter =
+          new CacheWriter(dataSource, range, /* temporaryBuffer= */ null, progressNotifier);
+    }
+
+    @Override
+    protected Void doWork() throws IOException {
+      cacheWriter.cache();
+      return null;
+    }
+
+    @Override
+    protected void cancelWork() {
+      cacheWriter.cancel();
+    }
+  }
+
+  /** Aggregates the progress of the {@link CacheWriter}s that download each range. */
+  private final class RangeProgressNotifier implements CacheWriter.ProgressListener {
+
+    private final long length;
+
+    private long bytesCached;
+
+    public RangeProgressNotifier(long length, long bytesCached) {
+      this.length = length;
+      this.bytesCached = bytesCached;
+    }
+
+    @Override
+    public synchronized void onProgress(long requestLength, long bytesCached, long newBytesCached) {
+      if (newBytesCached > 0) {
+        this.bytesCached += newBytesCached;
+        ProgressiveDownloader.this.onProgress(length, this.bytesCached, newBytesCached);
+      }
+    }
+
+    public synchronized void notifyProgress() {
+      ProgressiveDownloader.this.onProgress(length, bytesCached, /* newBytesCached= */ 0);
+    }
+  }
 }
@@ -17,32 +17,44 @@ package com.example.videoplayer.exoplayer.offline;
 
 import static com.example.videoplayer.common.util.Assertions.checkNotNull;
 import static com.example.videoplayer.common.util.Util.percentFloat;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
 
 import android.net.Uri;
+import android.os.SystemClock;
 import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
 import com.example.videoplayer.common.C;
 import com.example.videoplayer.common.MediaItem;
 import com.example.videoplayer.common.PriorityTaskManager;
 import com.example.videoplayer.common.PriorityTaskManager.PriorityTooLowException;
 import com.example.videoplayer.common.StreamKey;
 import com.example.videoplayer.common.util.Assertions;
+import com.example.videoplayer.common.util.Clock;
+import com.example.videoplayer.common.util.ConditionVariable;
+import com.example.videoplayer.common.util.Log;
 import com.example.videoplayer.common.util.RunnableFutureTask;
 import com.example.videoplayer.common.util.UnstableApi;
 import com.example.videoplayer.common.util.Util;
 import com.example.videoplayer.datasource.DataSource;
 import com.example.videoplayer.datasource.DataSpec;
 import com.example.videoplayer.datasource.cache.Cache;
+import com.example.videoplayer.datasource.cache.Cache.CacheException;
 import com.example.videoplayer.datasource.cache.CacheDataSource;
 import com.example.videoplayer.datasource.cache.CacheKeyFactory;
 import com.example.videoplayer.datasource.cache.CacheWriter;
 import com.example.videoplayer.datasource.cache.ContentMetadata;
+import com.example.videoplayer.datasource.cache.ContentMetadataMutations;
 import com.example.videoplayer.exoplayer.upstream.ParsingLoadable;
 import com.example.videoplayer.exoplayer.upstream.ParsingLoadable.Parser;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.ExecutionException;
@@ -51,6 +63,16 @@ import java.util.concurrent.Executor;
 /**
  * Base class for multi segment stream downloaders.
  *
+ * <p>Segments are downloaded using the {@link Executor} provided on construction. By default they
+ * are handed to the executor as fast as it starts them, so its thread count bounds the number of
+ * segments that are downloaded in parallel. If a maximum number of parallel segments is set, the
+ * number of segments in flight is instead adapted up to this maximum: it's increased by one while
+ * doing so increases the throughput, halved when the throughput drops, and halved when a segment
+ * fails, in which case the segment is retried.
+ *
+ * <p>Which segments are complete is persisted in the {@link ContentMetadata} of the manifest in the
+ * cache, so that a resumed download can skip them without querying the cache for each of them.
+ *
  * @param <M> The type of the manifest object.
  */
 @UnstableApi
@@ -66,6 +88,7 @@ public abstract class SegmentDownloader<M extends FilterableManifest<M>> impleme
     protected long maxMergedSegmentStartTimeDiffMs;
     protected long startPositionUs;
     protected long durationUs;
+    protected int maxParallelSegments;
 
     public BaseFactory(CacheDataSource.Factory cacheDataSourceFactory, Parser<M> manifestParser) {
       this.cacheDataSourceFactory = cacheDataSourceFactory;
@@ -102,6 +125,12 @@ public abstract class SegmentDownloader<M extends FilterableManifest<M>> impleme
       this.durationUs = durationUs;
       return this;
     }
+
+    @Override
+    public BaseFactory<M> setMaxParallelSegments(int maxParallelSegments) {
+      this.maxParallelSegments = maxParallelSegments;
+      return this;
+    }
   }
 
   /** Smallest unit of content to be downloaded. */
@@ -127,8 +156,13 @@ public abstract class SegmentDownloader<M extends FilterableManifest<M>> impleme
 
   public static final long DEFAULT_MAX_MERGED_SEGMENT_START_TIME_DIFF_MS = 20 * C.MILLIS_PER_SECOND;
 
+  private static final String TAG = "SegmentDownloader";
+
   private static final int BUFFER_SIZE_BYTES = 128 * 1024;
 
+  /** The number of consecutive segment failures after which an adaptive download fails. */
+  private static final int MAX_CONSECUTIVE_SEGMENT_FAILURES = 3;
+
   public final long startPositionUs;
   public final long durationUs;
 
@@ -141,6 +175,7 @@ public abstract class SegmentDownloader<M extends FilterableManifest<M>> impleme
   @Nullable private final PriorityTaskManager priorityTaskManager;
   private final Executor executor;
   private final long maxMergedSegmentStartTimeDiffUs;
+  private final int maxParallelSegments;
 
   /**
    * The currently active runnables.
@@ -193,6 +228,45 @@ public abstract class SegmentDownloader<M extends FilterableManifest<M>> impleme
       long maxMergedSegmentStartTimeDiffMs,
       long startPositionUs,
       long durationUs) {
+    this(
+        mediaItem,
+        manifestParser,
+        cacheDataSourceFactory,
+        executor,
+        maxMergedSegmentStartTimeDiffMs,
+        startPositionUs,
+        durationUs,
+        /* maxParallelSegments= */ 0);
+  }
+
+  /**
+   * @param mediaItem The {@link MediaItem} to be downloaded.
+   * @param manifestParser A parser for manifests belonging to the media to be downloaded.
+   * @param cacheDataSourceFactory A {@link CacheDataSource.Factory} for the cache into which the
+   *     download will be written.
+   * @param executor An {@link Executor} used to make requests for the media being downloaded.
+   *     Providing an {@link Executor} that uses multiple threads will speed up the download by
+   *     allowing parts of it to be executed in parallel.
+   * @param maxMergedSegmentStartTimeDiffMs The maximum difference of the start time of two
+   *     segments, up to which the segments (of the same URI) should be merged into a single
+   *     download segment, in milliseconds.
+   * @param startPositionUs The start position in microseconds that the download should start from.
+   * @param durationUs The duration in microseconds from the {@code startPositionUs} to be
+   *     downloaded, or {@link C#TIME_UNSET} if the media should be downloaded to the end.
+   * @param maxParallelSegments The maximum number of segments that are downloaded in parallel when
+   *     the number is adapted to the observed throughput and errors, or 0 to disable adaptation.
+   *     The {@code executor} should be able to run this many segment downloads in parallel.
+   */
+  public SegmentDownloader(
+      MediaItem mediaItem,
+      Parser<M> manifestParser,
+      CacheDataSource.Factory cacheDataSourceFactory,
+      Executor executor,
+      long maxMergedSegmentStartTimeDiffMs,
+      long startPositionUs,
+      long durationUs,
+      int maxParallelSegments) {
+    Assertions.checkArgument(maxParallelSegments >= 0);
     checkNotNull(mediaItem.localConfiguration);
     this.manifestDataSpec = getCompressibleDataSpec(mediaItem.localConfiguration.uri);
     this.manifestParser = manifestParser;
@@ -206,6 +280,7 @@ public abstract class SegmentDownloader<M extends FilterableManifest<M>> impleme
     priorityTaskManager = cacheDataSourceFactory.getUpstreamPriorityTaskManager();
     activeRunnables = new ArrayList<>();
     maxMergedSegmentStartTimeDiffUs = Util.msToUs(maxMergedSegmentStartTimeDiffMs);
+    this.maxParallelSegments = maxParallelSegments;
   }
 
   @Override
@@ -213,6 +288,11 @@ public abstract class SegmentDownloader<M extends FilterableManifest<M>> impleme
       throws IOException, InterruptedException {
     ArrayDeque<Segment> pendingSegments = new ArrayDeque<>();
     ArrayDeque<SegmentDownloadRunnable> recycledRunnables = new ArrayDeque<>();
+    @Nullable SegmentCompletionTracker completionTracker = null;
+    @Nullable
+    ConcurrencyController concurrencyController =
+        maxParallelSegments > 0 ? new ConcurrencyController(maxParallelSegments) : null;
+    ConditionVariable segmentFinished = new ConditionVariable();
     if (priorityTaskManager != null) {
       priorityTaskManager.add(C.PRIORITY_DOWNLOAD);
     }
@@ -229,6 +309,9 @@ public abstract class SegmentDownloader<M extends FilterableManifest<M>> impleme
       // content, and merge segments where possible to minimize the number of server round trips.
       Collections.sort(segments);
       mergeSegments(segments, cacheKeyFactory, maxMergedSegmentStartTimeDiffUs);
+      completionTracker =
+          new SegmentCompletionTracker(
+              cache, cacheKeyFactory.buildCacheKey(manifestDataSpec), segments, cacheKeyFactory);
 
       // Scan the segments, removing any that are fully downloaded.
       int totalSegments = segments.size();
@@ -247,13 +330,15 @@ public abstract class SegmentDownloader<M extends FilterableManifest<M>> impleme
           }
         }
         long segmentBytesDownloaded =
-            cache.getCachedBytes(cacheKey, dataSpec.position, segmentLength);
+            completionTracker.isComplete(i) && segmentLength != C.LENGTH_UNSET
+                ? segmentLength
+                : cache.getCachedBytes(cacheKey, dataSpec.position, segmentLength);
         bytesDownloaded += segmentBytesDownloaded;
         if (segmentLength != C.LENGTH_UNSET) {
           if (segmentLength == segmentBytesDownloaded) {
             // The segment is fully downloaded.
             segmentsDownloaded++;
-            segments.remove(i);
+            completionTracker.setComplete(segments.remove(i));
           }
           if (contentLength != C.LENGTH_UNSET) {
             contentLength += segmentLength;
@@ -281,6 +366,22 @@ public abstract class SegmentDownloader<M extends FilterableManifest<M>> impleme
           priorityTaskManager.proceed(C.PRIORITY_DOWNLOAD);
         }
 
+        // Block until the number of segments in flight is below the adapted limit.
+        if (concurrencyController != null) {
+          while (activeRunnables.size() >= concurrencyController.getLimit()) {
+            segmentFinished.close();
+            processFinishedRunnables(
+                /* blockUntilFinished= */ false,
+                pendingSegments,
+                recycledRunnables,
+                completionTracker,
+                concurrencyController);
+            if (activeRunnables.size() >= concurrencyController.getLimit()) {
+              segmentFinished.block();
+            }
+          }
+        }
+
         // Create and execute a runnable to download the next segment.
         CacheDataSource segmentDataSource;
         byte[] temporaryBuffer;
@@ -297,36 +398,27 @@ public abstract class SegmentDownloader<M extends FilterableManifest<M>> impleme
             new SegmentDownloadRunnable(
                 segment, segmentDataSource, progressNotifier, temporaryBuffer);
         addActiveRunnable(downloadRunnable);
-        executor.execute(downloadRunnable);
-
-        // Clean up runnables that have finished.
-        for (int j = activeRunnables.size() - 1; j >= 0; j--) {
-          SegmentDownloadRunnable activeRunnable = (SegmentDownloadRunnable) activeRunnables.get(j);
-          // Only block until the runnable has finished if we don't have any more pending segments
-          // to start. If we do have pending segments to start then only process the runnable if
-          // it's already finished.
-          if (pendingSegments.isEmpty() || activeRunnable.isDone()) {
-            try {
-              activeRunnable.get();
-              removeActiveRunnable(j);
-              recycledRunnables.addLast(activeRunnable);
-            } catch (ExecutionException e) {
-              Throwable cause = Assertions.checkNotNull(e.getCause());
-              if (cause instanceof PriorityTooLowException) {
-                // We need to schedule this segment again in a future loop iteration.
-                pendingSegments.addFirst(activeRunnable.segment);
-                removeActiveRunnable(j);
-                recycledRunnables.addLast(activeRunnable);
-              } else if (cause instanceof IOException) {
-                throw (IOException) cause;
-              } else {
-                // The cause must be an uncaught Throwable type.
-                Util.sneakyThrow(cause);
-              }
-            }
-          }
+        if (concurrencyController != null) {
+          concurrencyController.onSegmentStarted();
+          // Signal once the runnable is done, so that the wait above doesn't poll.
+          executor.execute(
+              () -> {
+                downloadRunnable.run();
+                segmentFinished.open();
+              });
+        } else {
+          executor.execute(downloadRunnable);
         }
 
+        // Clean up runnables that have finished. Only block until they have finished if we don't
+        // have any more pending segments to start.
+        processFinishedRunnables(
+            /* blockUntilFinished= */ pendingSegments.isEmpty(),
+            pendingSegments,
+            recycledRunnables,
+            completionTracker,
+            concurrencyController);
+
         // Don't move on to the next segment until the runnable for this segment has started. This
         // drip feeds runnables to the executor, rather than providing them all up front.
         downloadRunnable.blockUntilStarted();
@@ -344,6 +436,9 @@ public abstract class SegmentDownloader<M extends FilterableManifest<M>> impleme
         activeRunnables.get(i).blockUntilFinished();
         removeActiveRunnable(i);
       }
+      if (completionTracker != null) {
+        completionTracker.persist();
+      }
       if (priorityTaskManager != null) {
         priorityTaskManager.remove(C.PRIORITY_DOWNLOAD);
       }
@@ -502,6 +597,63 @@ public abstract class SegmentDownloader<M extends FilterableManifest<M>> impleme
     }
   }
 
+  /**
+   * Processes the active runnables that have finished, recording their segments as complete, or
+   * scheduling their segments to be downloaded again if they may be retried.
+   *
+   * @param blockUntilFinished Whether to block until every active runnable has finished, rather
+   *     than only processing the runnables that have already finished.
+   * @param pendingSegments The segments that are pending download.
+   * @param recycledRunnables Finished runnables whose resources can be reused.
+   * @param completionTracker The {@link SegmentCompletionTracker} for the download.
+   * @param concurrencyController The {@link ConcurrencyController} if the number of segments in
+   *     flight is being adapted, or null.
+   * @throws IOException If a segment failed and may not be retried.
+   * @throws InterruptedException If the thread was interrupted.
+   */
+  private void processFinishedRunnables(
+      boolean blockUntilFinished,
+      ArrayDeque<Segment> pendingSegments,
+      ArrayDeque<SegmentDownloadRunnable> recycledRunnables,
+      SegmentCompletionTracker completionTracker,
+      @Nullable ConcurrencyController concurrencyController)
+      throws IOException, InterruptedException {
+    for (int i = activeRunnables.size() - 1; i >= 0; i--) {
+      SegmentDownloadRunnable activeRunnable = (SegmentDownloadRunnable) activeRunnables.get(i);
+      if (!blockUntilFinished && !activeRunnable.isDone()) {
+        continue;
+      }
+      try {
+        activeRunnable.get();
+        removeActiveRunnable(i);
+        recycledRunnables.addLast(activeRunnable);
+        completionTracker.setComplete(activeRunnable.segment);
+        if (concurrencyController != null) {
+          concurrencyController.onSegmentDownloaded(activeRunnable.getBytesDownloaded());
+        }
+      } catch (ExecutionException e) {
+        Throwable cause = Assertions.checkNotNull(e.getCause());
+        if (cause instanceof PriorityTooLowException) {
+          // We need to schedule this segment again in a future loop iteration.
+          pendingSegments.addFirst(activeRunnable.segment);
+          removeActiveRunnable(i);
+          recycledRunnables.addLast(activeRunnable);
+        } else if (cause instanceof IOException) {
+          if (concurrencyController == null || !concurrencyController.onSegmentFailed()) {
+            throw (IOException) cause;
+          }
+          Log.w(TAG, "Retrying segment with fewer segments in flight", cause);
+          pendingSegments.addFirst(activeRunnable.segment);
+          removeActiveRunnable(i);
+          recycledRunnables.addLast(activeRunnable);
+        } else {
+          // The cause must be an uncaught Throwable type.
+          Util.sneakyThrow(cause);
+        }
+      }
+    }
+  }
+
   private static void mergeSegments(
       List<Segment> segments, CacheKeyFactory keyFactory, long maxMergedSegmentStartTimeDiffUs) {
     HashMap<String, Integer> lastIndexByCacheKey = new HashMap<>();
@@ -549,6 +701,8 @@ public abstract class SegmentDownloader<M extends FilterableManifest<M>> impleme
     public final byte[] temporaryBuffer;
     private final CacheWriter cacheWriter;
 
+    private volatile long bytesDownloaded;
+
     public SegmentDownloadRunnable(
         Segment segment,
         CacheDataSource dataSource,
@@ -559,7 +713,12 @@ public abstract class SegmentDownloader<M extends FilterableManifest<M>> impleme
       this.progressNotifier = progressNotifier;
       this.temporaryBuffer = temporaryBuffer;
       this.cacheWriter =
-          new CacheWriter(dataSource, segment.dataSpec, temporaryBuffer, progressNotifier);
+          new CacheWriter(dataSource, segment.dataSpec, temporaryBuffer, this::onCacheProgress);
+    }
+
+    /** Returns the number of bytes that were downloaded, rather than already being cached. */
+    public long getBytesDownloaded() {
+      return bytesDownloaded;
     }
 
     @Override
@@ -575,6 +734,14 @@ public abstract class SegmentDownloader<M extends FilterableManifest<M>> impleme
     protected void cancelWork() {
       cacheWriter.cancel();
     }
+
+    private void onCacheProgress(long requestLength, long bytesCached, long newBytesCached) {
+      // Only accessed on the thread running the runnable.
+      bytesDownloaded += newBytesCached;
+      if (progressNotifier != null) {
+        progressNotifier.onProgress(requestLength, bytesCached, newBytesCached);
+      }
+    }
   }
 
   private static final class ProgressNotifier implements CacheWriter.ProgressListener {
@@ -584,8 +751,11 @@ public abstract class SegmentDownloader<M extends FilterableManifest<M>> impleme
     private final long contentLength;
     private final int totalSegments;
 
+    private final long startTimeMs;
+
     private long bytesDownloaded;
     private int segmentsDownloaded;
+    private long newBytesDownloaded;
 
     public ProgressNotifier(
         ProgressListener progressListener,
@@ -598,17 +768,23 @@ public abstract class SegmentDownloader<M extends FilterableManifest<M>> impleme
       this.totalSegments = totalSegments;
       this.bytesDownloaded = bytesDownloaded;
       this.segmentsDownloaded = segmentsDownloaded;
+      startTimeMs = SystemClock.elapsedRealtime();
     }
 
     @Override
-    public void onProgress(long requestLength, long bytesCached, long newBytesCached) {
+    public synchronized void onProgress(long requestLength, long bytesCached, long newBytesCached) {
       bytesDownloaded += newBytesCached;
+      newBytesDownloaded += newBytesCached;
       progressListener.onProgress(contentLength, bytesDownloaded, getPercentDownloaded());
     }
 
-    public void onSegmentDownloaded() {
+    public synchronized void onSegmentDownloaded() {
       segmentsDownloaded++;
       progressListener.onProgress(contentLength, bytesDownloaded, getPercentDownloaded());
+      long elapsedTimeMs = SystemClock.elapsedRealtime() - startTimeMs;
+      if (elapsedTimeMs > 0) {
+        progressListener.onThroughput(newBytesDownloaded * 1000 / elapsedTimeMs);
+      }
     }
 
     private float getPercentDownloaded() {
@@ -621,4 +797,186 @@ public abstract class SegmentDownloader<M extends FilterableManifest<M>> impleme
       }
     }
   }
+
+  /**
+   * Adapts the number of segments in flight to the observed throughput and errors, with additive
+   * increase and multiplicative decrease.
+   *
+   * <p>Throughput is measured over epochs, each of which lasts until as many segments have been
+   * downloaded as the limit allows in flight. At the end of an epoch, the limit is increased by one
+   * if the throughput increased compared to the previous epoch, and halved if it dropped. The limit
+   * is also halved whenever a segment fails.
+   */
+  @VisibleForTesting
+  /* package */ static final class ConcurrencyController {
+
+    /** The relative throughput increase required to increase the limit further. */
+    private static final float THROUGHPUT_INCREASE_FACTOR = 1.05f;
+
+    /** The relative throughput below which the limit is decreased. */
+    private static final float THROUGHPUT_DECREASE_FACTOR = 0.8f;
+
+    private final int maxLimit;
+    private final Clock clock;
+
+    private int limit;
+    private int consecutiveFailureCount;
+    private long epochStartTimeMs;
+    private long epochBytesDownloaded;
+    private int epochSegmentCount;
+    private long previousEpochThroughput;
+
+    public ConcurrencyController(int maxLimit) {
+      this(maxLimit, Clock.DEFAULT);
+    }
+
+    @VisibleForTesting
+    /* package */ ConcurrencyController(int maxLimit, Clock clock) {
+      this.maxLimit = maxLimit;
+      this.clock = clock;
+      limit = 1;
+      epochStartTimeMs = C.TIME_UNSET;
+      previousEpochThroughput = C.LENGTH_UNSET;
+    }
+
+    /** Returns the maximum number of segments that should be in flight. */
+    public int getLimit() {
+      return limit;
+    }
+
+    /** Called when a segment starts downloading. */
+    public void onSegmentStarted() {
+      if (epochStartTimeMs == C.TIME_UNSET) {
+        epochStartTimeMs = clock.elapsedRealtime();
+      }
+    }
+
+    /**
+     * Called when a segment finished downloading.
+     *
+     * @param bytesDownloaded The number of bytes downloaded for the segment.
+     */
+    public void onSegmentDownloaded(long bytesDownloaded) {
+      consecutiveFailureCount = 0;
+      epochBytesDownloaded += bytesDownloaded;
+      if (++epochSegmentCount < limit) {
+        return;
+      }
+      long elapsedTimeMs = clock.elapsedRealtime() - epochStartTimeMs;
+      if (elapsedTimeMs > 0 && epochBytesDownloaded > 0) {
+        long throughput = epochBytesDownloaded * 1000 / elapsedTimeMs;
+        if (previousEpochThroughput == C.LENGTH_UNSET
+            || throughput > previousEpochThroughput * THROUGHPUT_INCREASE_FACTOR) {
+          limit = min(maxLimit, limit + 1);
+        } else if (throughput < previousEpochThroughput * THROUGHPUT_DECREASE_FACTOR) {
+          limit = max(1, limit / 2);
+        } // Else the throughput is saturated, so keep the limit.
+        previousEpochThroughput = throughput;
+      }
+      startNewEpoch();
+    }
+
+    /**
+     * Called when a segment failed to download.
+     *
+     * @return Whether the segment should be retried.
+     */
+    public boolean onSegmentFailed() {
+      limit = max(1, limit / 2);
+      startNewEpoch();
+      return ++consecutiveFailureCount < MAX_CONSECUTIVE_SEGMENT_FAILURES;
+    }
+
+    private void startNewEpoch() {
+      epochStartTimeMs = clock.elapsedRealtime();
+      epochBytesDownloaded = 0;
+      epochSegmentCount = 0;
+    }
+  }
+
+  /**
+   * Tracks which segments of a download are complete, persisting them as a bitmap in the {@link
+   * ContentMetadata} of the manifest in the cache. The bitmap is stored with a fingerprint of the
+   * segments, and is ignored if the segments change, for example because other streams are being
+   * downloaded.
+   *
+   * <p>Segments that are recorded as complete aren't checked against the cache, which assumes that
+   * the cache doesn't evict content, as is the case for caches that downloads are written to.
+   */
+  private static final class SegmentCompletionTracker {
+
+    private static final String KEY_COMPLETED_SEGMENTS = "exo_seg_done";
+
+    /** The number of newly completed segments after which the bitmap is persisted. */
+    private static final int PERSIST_INTERVAL_SEGMENTS = 16;
+
+    private final Cache cache;
+    private final String manifestCacheKey;
+    private final long fingerprint;
+    private final IdentityHashMap<Segment, Integer> segmentIndices;
+    private final BitSet completedSegments;
+
+    private int unpersistedSegmentCount;
+
+    public SegmentCompletionTracker(
+        Cache cache, String manifestCacheKey, List<Segment> segments, CacheKeyFactory keyFactory) {
+      this.cache = cache;
+      this.manifestCacheKey = manifestCacheKey;
+      segmentIndices = new IdentityHashMap<>();
+      long fingerprint = segments.size();
+      for (int i = 0; i < segments.size(); i++) {
+        Segment segment = segments.get(i);
+        segmentIndices.put(segment, i);
+        fingerprint = 31 * fingerprint + keyFactory.buildCacheKey(segment.dataSpec).hashCode();
+        fingerprint = 31 * fingerprint + segment.dataSpec.position;
+        fingerprint = 31 * fingerprint + segment.dataSpec.length;
+      }
+      this.fingerprint = fingerprint;
+      completedSegments = readCompletedSegments();
+    }
+
+    /** Returns whether the segment at {@code index} was recorded as complete. */
+    public boolean isComplete(int index) {
+      return completedSegments.get(index);
+    }
+
+    /** Records a segment as complete. */
+    public void setComplete(Segment segment) {
+      int index = checkNotNull(segmentIndices.get(segment));
+      if (!completedSegments.get(index)) {
+        completedSegments.set(index);
+        if (++unpersistedSegmentCount >= PERSIST_INTERVAL_SEGMENTS) {
+          persist();
+        }
+      }
+    }
+
+    /** Persists the segments that were recorded as complete, if any changed. */
+    public void persist() {
+      if (unpersistedSegmentCount == 0) {
+        return;
+      }
+      byte[] bitmap = completedSegments.toByteArray();
+      ByteBuffer data = ByteBuffer.allocate(8 + bitmap.length).putLong(fingerprint).put(bitmap);
+      try {
+        cache.applyContentMetadataMutations(
+            manifestCacheKey,
+            new ContentMetadataMutations().set(KEY_COMPLETED_SEGMENTS, data.array()));
+        unpersistedSegmentCount = 0;
+      } catch (CacheException e) {
+        Log.w(TAG, "Failed to persist completed segments", e);
+      }
+    }
+
+    private BitSet readCompletedSegments() {
+      @Nullable
+      byte[] data =
+          cache.getContentMetadata(manifestCacheKey).get(KEY_COMPLETED_SEGMENTS, (byte[]) null);
+      if (data == null || data.length < 8) {
+        return new BitSet();
+      }
+      ByteBuffer buffer = ByteBuffer.wrap(data);
+      return buffer.getLong() == fingerprint ? BitSet.valueOf(buffer) : new BitSet();
+    }
+  }
 }
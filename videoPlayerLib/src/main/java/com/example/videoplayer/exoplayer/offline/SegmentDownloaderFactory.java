@@ -46,6 +46,17 @@ import java.util.concurrent.Executor;
    */
   SegmentDownloaderFactory setDurationUs(long durationUs);
 
+  /**
+   * Sets the maximum number of segments that are downloaded in parallel when the number is adapted
+   * to the observed throughput and errors, or 0 to disable adaptation. The {@link Executor} should
+   * be able to run this many segment downloads in parallel.
+   *
+   * <p>The default implementation doesn't adapt the number of segments, and returns this factory.
+   */
+  default SegmentDownloaderFactory setMaxParallelSegments(int maxParallelSegments) {
+    return this;
+  }
+
   /**
    * Creates the segment downloader.
    *
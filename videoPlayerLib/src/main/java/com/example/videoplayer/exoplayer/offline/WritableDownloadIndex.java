@@ -86,4 +86,14 @@ public interface WritableDownloadIndex extends DownloadIndex {
    * @throws IOException If an error occurs updating the state.
    */
   void setStopReason(String id, int stopReason) throws IOException;
+
+  /**
+   * Writes any updates that the index buffered rather than writing immediately. The default
+   * implementation does nothing.
+   *
+   * <p>This method may be slow and shouldn't normally be called on the main thread.
+   *
+   * @throws IOException If an error occurs writing the updates.
+   */
+  default void flush() throws IOException {}
 }
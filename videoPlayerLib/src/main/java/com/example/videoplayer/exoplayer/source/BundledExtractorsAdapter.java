@@ -15,12 +15,17 @@
  */
 package com.example.videoplayer.exoplayer.source;
 
+import static com.example.videoplayer.common.util.Assertions.checkArgument;
+import static com.example.videoplayer.common.util.Assertions.checkState;
+
 import android.net.Uri;
 import androidx.annotation.Nullable;
 import com.example.videoplayer.common.C;
 import com.example.videoplayer.common.DataReader;
 import com.example.videoplayer.common.util.Assertions;
 import com.example.videoplayer.common.util.UnstableApi;
+import com.example.videoplayer.datasource.DataSource;
+import com.example.videoplayer.datasource.DataSpec;
 import com.example.videoplayer.extractor.DefaultExtractorInput;
 import com.example.videoplayer.extractor.Extractor;
 import com.example.videoplayer.extractor.ExtractorInput;
@@ -29,6 +34,7 @@ import com.example.videoplayer.extractor.ExtractorsFactory;
 import com.example.videoplayer.extractor.PositionHolder;
 import com.example.videoplayer.extractor.SniffFailure;
 import com.example.videoplayer.extractor.mp3.Mp3Extractor;
+import com.example.videoplayer.extractor.mp4.FragmentedMp4Extractor;
 import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
@@ -40,12 +46,18 @@ import java.util.Map;
 /**
  * {@link ProgressiveMediaExtractor} built on top of {@link Extractor} instances, whose
  * implementation classes are bundled in the app.
+ *
+ * <p>If an {@link ExtractorSniffCache} is provided, then the extractor that it records for the
+ * stream's URI is sniffed first. The other extractors are only sniffed if it rejects the stream.
  */
 @UnstableApi
 public final class BundledExtractorsAdapter implements ProgressiveMediaExtractor {
 
   private final ExtractorsFactory extractorsFactory;
+  @Nullable private final ExtractorSniffCache sniffCache;
 
+  @Nullable private DataSource.Factory moofPrefetchDataSourceFactory;
+  private int maxPrefetchedMoofCount;
   @Nullable private Extractor extractor;
   @Nullable private ExtractorInput extractorInput;
 
@@ -55,7 +67,40 @@ public final class BundledExtractorsAdapter implements ProgressiveMediaExtractor
    * @param extractorsFactory The {@link ExtractorsFactory} providing the extractors to choose from.
    */
   public BundledExtractorsAdapter(ExtractorsFactory extractorsFactory) {
+    this(extractorsFactory, /* sniffCache= */ null);
+  }
+
+  /**
+   * Creates a holder that will select an extractor and initialize it using the specified output.
+   *
+   * @param extractorsFactory The {@link ExtractorsFactory} providing the extractors to choose from.
+   * @param sniffCache An {@link ExtractorSniffCache} that's consulted before sniffing, and updated
+   *     with the selected extractor, or null if sniffing results shouldn't be cached.
+   */
+  public BundledExtractorsAdapter(
+      ExtractorsFactory extractorsFactory, @Nullable ExtractorSniffCache sniffCache) {
     this.extractorsFactory = extractorsFactory;
+    this.sniffCache = sniffCache;
+  }
+
+  /**
+   * Enables moof prefetching if the selected extractor is a {@link FragmentedMp4Extractor}. See
+   * {@link FragmentedMp4Extractor#experimentalSetMoofPrefetching}.
+   *
+   * <p>This method is experimental and will be renamed or removed in a future release. It must be
+   * called before {@link #init}.
+   *
+   * @param dataSourceFactory A {@link DataSource.Factory} for the {@link DataSource DataSources}
+   *     from which moof boxes are read, with a separate request for each box.
+   * @param maxPrefetchedMoofCount The maximum number of moof boxes that are read ahead of the
+   *     input.
+   */
+  public void experimentalSetMoofPrefetching(
+      DataSource.Factory dataSourceFactory, int maxPrefetchedMoofCount) {
+    checkArgument(maxPrefetchedMoofCount > 0);
+    checkState(extractor == null);
+    this.moofPrefetchDataSourceFactory = dataSourceFactory;
+    this.maxPrefetchedMoofCount = maxPrefetchedMoofCount;
   }
 
   @Override
@@ -78,20 +123,28 @@ public final class BundledExtractorsAdapter implements ProgressiveMediaExtractor
     if (extractors.length == 1) {
       this.extractor = extractors[0];
     } else {
-      for (Extractor extractor : extractors) {
-        try {
-          if (extractor.sniff(extractorInput)) {
-            this.extractor = extractor;
+      String sniffCacheKey = uri.toString();
+      int cachedExtractorIndex = getCachedExtractorIndex(extractors, sniffCacheKey);
+      if (cachedExtractorIndex != C.INDEX_UNSET
+          && sniff(extractors[cachedExtractorIndex], extractorInput, position, sniffFailures)) {
+        this.extractor = extractors[cachedExtractorIndex];
+        Assertions.checkNotNull(sniffCache).onHit();
+      } else {
+        for (int i = 0; i < extractors.length; i++) {
+          if (i != cachedExtractorIndex
+              && sniff(extractors[i], extractorInput, position, sniffFailures)) {
+            this.extractor = extractors[i];
             break;
+          }
+        }
+        if (sniffCache != null) {
+          sniffCache.onMiss(/* rejectedHit= */ cachedExtractorIndex != C.INDEX_UNSET);
+          if (extractor != null) {
+            sniffCache.put(
+                sniffCacheKey, extractor.getUnderlyingImplementation().getClass().getName());
           } else {
-            List<SniffFailure> sniffFailureDetails = extractor.getSniffFailureDetails();
-            sniffFailures.addAll(sniffFailureDetails);
+            sniffCache.remove(sniffCacheKey);
           }
-        } catch (EOFException e) {
-          // Do nothing.
-        } finally {
-          Assertions.checkState(this.extractor != null || extractorInput.getPosition() == position);
-          extractorInput.resetPeekPosition();
         }
       }
       if (extractor == null) {
@@ -108,9 +161,64 @@ public final class BundledExtractorsAdapter implements ProgressiveMediaExtractor
             sniffFailures.build());
       }
     }
+    if (moofPrefetchDataSourceFactory != null
+        && extractor.getUnderlyingImplementation() instanceof FragmentedMp4Extractor) {
+      ((FragmentedMp4Extractor) extractor.getUnderlyingImplementation())
+          .experimentalSetMoofPrefetching(
+              new DataSourceRangeReader(moofPrefetchDataSourceFactory, new DataSpec(uri)),
+              maxPrefetchedMoofCount);
+    }
     extractor.init(output);
   }
 
+  /**
+   * Returns the index of the extractor recorded for {@code sniffCacheKey} by the {@link
+   * #sniffCache}, or {@link C#INDEX_UNSET} if there's no cache, entry or matching extractor.
+   */
+  private int getCachedExtractorIndex(Extractor[] extractors, String sniffCacheKey) {
+    if (sniffCache == null) {
+      return C.INDEX_UNSET;
+    }
+    @Nullable String extractorClassName = sniffCache.getExtractorClassName(sniffCacheKey);
+    if (extractorClassName == null) {
+      return C.INDEX_UNSET;
+    }
+    for (int i = 0; i < extractors.length; i++) {
+      Extractor underlyingExtractor = extractors[i].getUnderlyingImplementation();
+      if (underlyingExtractor.getClass().getName().equals(extractorClassName)) {
+        return i;
+      }
+    }
+    return C.INDEX_UNSET;
+  }
+
+  /**
+   * Sniffs the input with {@code extractor}, and resets the input's peek position afterwards.
+   *
+   * @return Whether the extractor accepted the input.
+   */
+  private static boolean sniff(
+      Extractor extractor,
+      ExtractorInput extractorInput,
+      long position,
+      ImmutableList.Builder<SniffFailure> sniffFailures)
+      throws IOException {
+    boolean accepted = false;
+    try {
+      accepted = extractor.sniff(extractorInput);
+      if (!accepted) {
+        List<SniffFailure> sniffFailureDetails = extractor.getSniffFailureDetails();
+        sniffFailures.addAll(sniffFailureDetails);
+      }
+    } catch (EOFException e) {
+      // Do nothing.
+    } finally {
+      Assertions.checkState(accepted || extractorInput.getPosition() == position);
+      extractorInput.resetPeekPosition();
+    }
+    return accepted;
+  }
+
   @Override
   public void release() {
     if (extractor != null) {
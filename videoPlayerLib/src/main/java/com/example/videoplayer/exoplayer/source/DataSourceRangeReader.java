@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.videoplayer.exoplayer.source;
+
+import android.net.Uri;
+import com.example.videoplayer.common.C;
+import com.example.videoplayer.common.util.UnstableApi;
+import com.example.videoplayer.datasource.DataSource;
+import com.example.videoplayer.datasource.DataSourceUtil;
+import com.example.videoplayer.datasource.DataSpec;
+import com.example.videoplayer.extractor.mp4.FragmentedMp4Extractor;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * A {@link FragmentedMp4Extractor.RangeReader} that reads each range with a separate request to a
+ * {@link DataSource}.
+ *
+ * <p>A new {@link DataSource} is created for each range, so ranges can be read concurrently.
+ */
+@UnstableApi
+public final class DataSourceRangeReader implements FragmentedMp4Extractor.RangeReader {
+
+  private final DataSource.Factory dataSourceFactory;
+  private final Uri uri;
+  private final Map<String, String> httpRequestHeaders;
+
+  /**
+   * Creates an instance.
+   *
+   * @param dataSourceFactory A {@link DataSource.Factory} for the {@link DataSource DataSources}
+   *     from which ranges are read.
+   * @param dataSpec The {@link DataSpec} of the stream that's being extracted. Its URI and HTTP
+   *     request headers are used for each range.
+   */
+  public DataSourceRangeReader(DataSource.Factory dataSourceFactory, DataSpec dataSpec) {
+    this.dataSourceFactory = dataSourceFactory;
+    this.uri = dataSpec.uri;
+    this.httpRequestHeaders = dataSpec.httpRequestHeaders;
+  }
+
+  @Override
+  public int read(long position, byte[] buffer, int offset, int length) throws IOException {
+    DataSource dataSource = dataSourceFactory.createDataSource();
+    try {
+      dataSource.open(
+          new DataSpec.Builder()
+              .setUri(uri)
+              .setHttpRequestHeaders(httpRequestHeaders)
+              .setPosition(position)
+              .setLength(length)
+              .build());
+      int totalBytesRead = 0;
+      while (totalBytesRead < length) {
+        int bytesRead = dataSource.read(buffer, offset + totalBytesRead, length - totalBytesRead);
+        if (bytesRead == C.RESULT_END_OF_INPUT) {
+          break;
+        }
+        totalBytesRead += bytesRead;
+      }
+      return totalBytesRead > 0 ? totalBytesRead : C.RESULT_END_OF_INPUT;
+    } finally {
+      DataSourceUtil.closeQuietly(dataSource);
+    }
+  }
+}
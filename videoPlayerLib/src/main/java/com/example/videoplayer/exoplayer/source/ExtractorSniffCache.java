@@ -0,0 +1,221 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.videoplayer.exoplayer.source;
+
+import static com.example.videoplayer.common.util.Assertions.checkArgument;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+import com.example.videoplayer.common.util.AtomicFile;
+import com.example.videoplayer.common.util.Log;
+import com.example.videoplayer.common.util.UnstableApi;
+import com.example.videoplayer.common.util.Util;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache that records which {@link com.example.videoplayer.extractor.Extractor} accepted a
+ * stream, so that it can be sniffed first the next time the same stream is opened.
+ *
+ * <p>Entries are keyed by the stream's URI, and map to the class name of the accepting extractor's
+ * {@link com.example.videoplayer.extractor.Extractor#getUnderlyingImplementation() underlying
+ * implementation}. The extractor instance itself is still created by the {@link
+ * com.example.videoplayer.extractor.ExtractorsFactory}, so any flags that the factory sets are
+ * retained. If the recorded extractor rejects the stream, then all extractors are sniffed as usual.
+ *
+ * <p>The least recently used entries are evicted once the cache is full. The cache can be persisted
+ * with {@link #store(File)} and restored with {@link #load(File)}.
+ *
+ * <p>An instance can be shared by {@link BundledExtractorsAdapter} instances on different threads.
+ */
+@UnstableApi
+public final class ExtractorSniffCache {
+
+  /** The default maximum number of entries. */
+  public static final int DEFAULT_MAX_ENTRIES = 256;
+
+  private static final String TAG = "ExtractorSniffCache";
+
+  private static final int VERSION = 1;
+
+  private final LinkedHashMap<String, String> extractorClassNames;
+
+  private int hitCount;
+  private int missCount;
+  private int rejectedHitCount;
+
+  /** Creates an instance with {@link #DEFAULT_MAX_ENTRIES}. */
+  public ExtractorSniffCache() {
+    this(DEFAULT_MAX_ENTRIES);
+  }
+
+  /**
+   * Creates an instance.
+   *
+   * @param maxEntries The maximum number of entries.
+   */
+  public ExtractorSniffCache(int maxEntries) {
+    checkArgument(maxEntries > 0);
+    extractorClassNames =
+        new LinkedHashMap<String, String>(
+            /* initialCapacity= */ 16, /* loadFactor= */ 0.75f, /* accessOrder= */ true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > maxEntries;
+          }
+        };
+  }
+
+  /**
+   * Returns the class name of the extractor that last accepted the stream with the given key, or
+   * null if there's no entry for the key.
+   */
+  @Nullable
+  public synchronized String getExtractorClassName(String key) {
+    return extractorClassNames.get(key);
+  }
+
+  /**
+   * Records the class name of the extractor that accepted the stream with the given key.
+   *
+   * @param key The key of the stream.
+   * @param extractorClassName The class name of the extractor's underlying implementation.
+   */
+  public synchronized void put(String key, String extractorClassName) {
+    extractorClassNames.put(key, extractorClassName);
+  }
+
+  /** Removes the entry for the given key, if there is one. */
+  public synchronized void remove(String key) {
+    extractorClassNames.remove(key);
+  }
+
+  /** Removes all entries. Doesn't reset the metrics. */
+  public synchronized void clear() {
+    extractorClassNames.clear();
+  }
+
+  /**
+   * Returns the number of times that the extractor recorded for a stream accepted it, meaning that
+   * no other extractors had to be sniffed.
+   */
+  public synchronized int getHitCount() {
+    return hitCount;
+  }
+
+  /** Returns the number of times that there was no entry for a stream, or the entry was stale. */
+  public synchronized int getMissCount() {
+    return missCount;
+  }
+
+  /**
+   * Returns the number of misses, as counted by {@link #getMissCount()}, that occurred because the
+   * extractor recorded for a stream rejected it.
+   */
+  public synchronized int getRejectedHitCount() {
+    return rejectedHitCount;
+  }
+
+  /** Resets the metrics to zero. */
+  public synchronized void resetMetrics() {
+    hitCount = 0;
+    missCount = 0;
+    rejectedHitCount = 0;
+  }
+
+  /**
+   * Loads entries that were persisted with {@link #store(File)}, adding them to the cache. Does
+   * nothing if the file doesn't exist. If the file can't be read, it's deleted.
+   *
+   * @param file The file from which to load entries.
+   */
+  @WorkerThread
+  public void load(File file) {
+    AtomicFile atomicFile = new AtomicFile(file);
+    if (!atomicFile.exists()) {
+      return;
+    }
+    @Nullable DataInputStream input = null;
+    try {
+      input = new DataInputStream(new BufferedInputStream(atomicFile.openRead()));
+      int version = input.readInt();
+      if (version != VERSION) {
+        throw new IOException("Unsupported version: " + version);
+      }
+      int count = input.readInt();
+      LinkedHashMap<String, String> entries = new LinkedHashMap<>();
+      for (int i = 0; i < count; i++) {
+        String key = input.readUTF();
+        entries.put(key, input.readUTF());
+      }
+      synchronized (this) {
+        extractorClassNames.putAll(entries);
+      }
+    } catch (IOException e) {
+      Log.w(TAG, "Failed to load sniff cache. Deleting " + file, e);
+      atomicFile.delete();
+    } finally {
+      Util.closeQuietly(input);
+    }
+  }
+
+  /**
+   * Persists the entries in the cache, in least recently used order.
+   *
+   * @param file The file into which the entries are written.
+   * @throws IOException If an error occurs writing the file.
+   */
+  @WorkerThread
+  public void store(File file) throws IOException {
+    LinkedHashMap<String, String> entries;
+    synchronized (this) {
+      entries = new LinkedHashMap<>(extractorClassNames);
+    }
+    AtomicFile atomicFile = new AtomicFile(file);
+    @Nullable DataOutputStream output = null;
+    try {
+      output = new DataOutputStream(new BufferedOutputStream(atomicFile.startWrite()));
+      output.writeInt(VERSION);
+      output.writeInt(entries.size());
+      for (Map.Entry<String, String> entry : entries.entrySet()) {
+        output.writeUTF(entry.getKey());
+        output.writeUTF(entry.getValue());
+      }
+      atomicFile.endWrite(output);
+      // Avoid calling close twice.
+      output = null;
+    } finally {
+      Util.closeQuietly(output);
+    }
+  }
+
+  /* package */ synchronized void onHit() {
+    hitCount++;
+  }
+
+  /* package */ synchronized void onMiss(boolean rejectedHit) {
+    missCount++;
+    if (rejectedHit) {
+      rejectedHitCount++;
+    }
+  }
+}
@@ -15,7 +15,9 @@
  */
 package com.example.videoplayer.exoplayer.source;
 
+import static com.example.videoplayer.common.util.Assertions.checkArgument;
 import static com.example.videoplayer.common.util.Assertions.checkNotNull;
+import static com.example.videoplayer.common.util.Assertions.checkStateNotNull;
 
 import android.net.Uri;
 import android.os.Looper;
@@ -44,6 +46,7 @@ import com.example.videoplayer.extractor.ExtractorOutput;
 import com.example.videoplayer.extractor.ExtractorsFactory;
 import com.example.videoplayer.extractor.SeekMap;
 import com.example.videoplayer.extractor.TrackOutput;
+import com.example.videoplayer.extractor.mp4.FragmentedMp4Extractor;
 import com.google.common.base.Supplier;
 import java.util.Objects;
 import java.util.concurrent.Executor;
@@ -87,6 +90,8 @@ public final class ProgressiveMediaSource extends BaseMediaSource
 
     private final DataSource.Factory dataSourceFactory;
 
+    // The factory of the extractors used by the BundledExtractorsAdapter, if one is used.
+    @Nullable private ExtractorsFactory extractorsFactory;
     private ProgressiveMediaExtractor.Factory progressiveMediaExtractorFactory;
     private DrmSessionManagerProvider drmSessionManagerProvider;
     private LoadErrorHandlingPolicy loadErrorHandlingPolicy;
@@ -131,6 +136,7 @@ public final class ProgressiveMediaSource extends BaseMediaSource
      */
     public Factory(DataSource.Factory dataSourceFactory, ExtractorsFactory extractorsFactory) {
       this(dataSourceFactory, playerId -> new BundledExtractorsAdapter(extractorsFactory));
+      this.extractorsFactory = extractorsFactory;
     }
 
     /**
@@ -214,6 +220,32 @@ public final class ProgressiveMediaSource extends BaseMediaSource
       return this;
     }
 
+    /**
+     * Enables reading and parsing the moof boxes of upcoming fragments of fragmented MP4 streams
+     * ahead of the extractor, with a separate request to the factory's {@link DataSource.Factory}
+     * for each box. See {@link FragmentedMp4Extractor#experimentalSetMoofPrefetching}.
+     *
+     * <p>This method is experimental and will be renamed or removed in a future release. It can
+     * only be called if the factory was created with an {@link ExtractorsFactory}.
+     *
+     * @param maxPrefetchedMoofCount The maximum number of moof boxes that are read ahead of the
+     *     extractor.
+     * @return This factory, for convenience.
+     */
+    public Factory experimentalSetMoofPrefetching(int maxPrefetchedMoofCount) {
+      checkArgument(maxPrefetchedMoofCount > 0);
+      ExtractorsFactory extractorsFactory = checkStateNotNull(this.extractorsFactory);
+      this.progressiveMediaExtractorFactory =
+          playerId -> {
+            BundledExtractorsAdapter extractorsAdapter =
+                new BundledExtractorsAdapter(extractorsFactory);
+            extractorsAdapter.experimentalSetMoofPrefetching(
+                dataSourceFactory, maxPrefetchedMoofCount);
+            return extractorsAdapter;
+          };
+      return this;
+    }
+
     /**
      * Allows the {@link ProgressiveMediaSource} to complete preparation without reading any data.
      *
@@ -35,10 +35,18 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
 
-/** A queue of media sample data. */
+/**
+ * A queue of media sample data.
+ *
+ * <p>Sample data is stored in the byte arrays of the {@link Allocation}s obtained from the {@link
+ * Allocator}, or in their {@link Allocation#buffer buffers} if they're backed by direct memory. In
+ * the latter case, data is read into direct decoder input buffers with a single bulk copy per
+ * allocation.
+ */
 /* package */ class SampleDataQueue {
 
   private static final int INITIAL_SCRATCH_SIZE = 32;
+  private static final int MAX_WRITE_SCRATCH_SIZE = 16 * 1024;
 
   private final Allocator allocator;
   private final int allocationLength;
@@ -51,6 +59,7 @@ import java.util.Arrays;
 
   // Accessed only by the loading thread (or the consuming thread when there is no loading thread).
   private long totalBytesWritten;
+  @Nullable private byte[] writeScratch;
 
   public SampleDataQueue(Allocator allocator) {
     this.allocator = allocator;
@@ -175,10 +184,12 @@ import java.util.Arrays;
   public int sampleData(DataReader input, int length, boolean allowEndOfInput) throws IOException {
     length = preAppend(length);
     int bytesAppended =
-        input.read(
-            writeAllocationNode.allocation.data,
-            writeAllocationNode.translateOffset(totalBytesWritten),
-            length);
+        writeAllocationNode.allocation.buffer != null
+            ? readToDirectAllocation(input, length)
+            : input.read(
+                writeAllocationNode.allocation.data,
+                writeAllocationNode.translateOffset(totalBytesWritten),
+                length);
     if (bytesAppended == C.RESULT_END_OF_INPUT) {
       if (allowEndOfInput) {
         return C.RESULT_END_OF_INPUT;
@@ -192,10 +203,17 @@ import java.util.Arrays;
   public void sampleData(ParsableByteArray buffer, int length) {
     while (length > 0) {
       int bytesAppended = preAppend(length);
-      buffer.readBytes(
-          writeAllocationNode.allocation.data,
-          writeAllocationNode.translateOffset(totalBytesWritten),
-          bytesAppended);
+      if (writeAllocationNode.allocation.buffer != null) {
+        writeAllocationNode
+            .getBufferView(totalBytesWritten, bytesAppended)
+            .put(buffer.getData(), buffer.getPosition(), bytesAppended);
+        buffer.skipBytes(bytesAppended);
+      } else {
+        buffer.readBytes(
+            writeAllocationNode.allocation.data,
+            writeAllocationNode.translateOffset(totalBytesWritten),
+            bytesAppended);
+      }
       length -= bytesAppended;
       postAppend(bytesAppended);
     }
@@ -212,13 +230,45 @@ import java.util.Arrays;
     if (fromNode.allocation == null) {
       return;
     }
-    // Bulk release allocations for performance (it's significantly faster when using
-    // DefaultAllocator because the allocator's lock only needs to be acquired and released once)
-    // [Internal: See b/29542039].
+    // Bulk release allocations for performance (it's faster when using DefaultAllocator because
+    // the allocator's counters only need to be updated once) [Internal: See b/29542039].
     allocator.release(fromNode);
     fromNode.clear();
   }
 
+  /**
+   * Reads from {@code input} into the direct buffer of {@link #writeAllocationNode}'s allocation.
+   * Data is read without an intermediate copy if {@code input} supports {@link
+   * DataReader#readBuffer(int) zero-copy reads}, and through {@link #writeScratch} otherwise.
+   *
+   * @param input The input to read from.
+   * @param length The maximum number of bytes to read, which must fit into the allocation.
+   * @return The number of bytes read, or {@link C#RESULT_END_OF_INPUT} if the input has ended.
+   * @throws IOException If an error occurs reading from the input.
+   */
+  private int readToDirectAllocation(DataReader input, int length) throws IOException {
+    if (input.isZeroCopyReadSupported()) {
+      @Nullable ByteBuffer source = input.readBuffer(length);
+      if (source == null) {
+        return C.RESULT_END_OF_INPUT;
+      }
+      int bytesRead = source.remaining();
+      writeAllocationNode.getBufferView(totalBytesWritten, bytesRead).put(source);
+      return bytesRead;
+    }
+    if (writeScratch == null) {
+      writeScratch = new byte[min(allocationLength, MAX_WRITE_SCRATCH_SIZE)];
+    }
+    byte[] writeScratch = this.writeScratch;
+    int bytesRead = input.read(writeScratch, 0, min(length, writeScratch.length));
+    if (bytesRead != C.RESULT_END_OF_INPUT) {
+      writeAllocationNode
+          .getBufferView(totalBytesWritten, bytesRead)
+          .put(writeScratch, 0, bytesRead);
+    }
+    return bytesRead;
+  }
+
   /**
    * Called before writing sample data to {@link #writeAllocationNode}. May cause {@link
    * #writeAllocationNode} to be initialized.
@@ -405,7 +455,11 @@ import java.util.Arrays;
     while (remaining > 0) {
       int toCopy = min(remaining, (int) (allocationNode.endPosition - absolutePosition));
       Allocation allocation = allocationNode.allocation;
-      target.put(allocation.data, allocationNode.translateOffset(absolutePosition), toCopy);
+      if (allocation.buffer != null) {
+        target.put(allocationNode.getBufferView(absolutePosition, toCopy));
+      } else {
+        target.put(allocation.data, allocationNode.translateOffset(absolutePosition), toCopy);
+      }
       remaining -= toCopy;
       absolutePosition += toCopy;
       if (absolutePosition == allocationNode.endPosition) {
@@ -431,12 +485,18 @@ import java.util.Arrays;
     while (remaining > 0) {
       int toCopy = min(remaining, (int) (allocationNode.endPosition - absolutePosition));
       Allocation allocation = allocationNode.allocation;
-      System.arraycopy(
-          allocation.data,
-          allocationNode.translateOffset(absolutePosition),
-          target,
-          length - remaining,
-          toCopy);
+      if (allocation.buffer != null) {
+        allocationNode
+            .getBufferView(absolutePosition, toCopy)
+            .get(target, length - remaining, toCopy);
+      } else {
+        System.arraycopy(
+            allocation.data,
+            allocationNode.translateOffset(absolutePosition),
+            target,
+            length - remaining,
+            toCopy);
+      }
       remaining -= toCopy;
       absolutePosition += toCopy;
       if (absolutePosition == allocationNode.endPosition) {
@@ -521,6 +581,22 @@ import java.util.Arrays;
       return (int) (absolutePosition - startPosition) + allocation.offset;
     }
 
+    /**
+     * Returns a view of the {@link #allocation}'s direct {@link Allocation#buffer} whose remaining
+     * bytes correspond to the specified range of absolute positions.
+     *
+     * @param absolutePosition The absolute position of the start of the range.
+     * @param length The length of the range.
+     * @return The view.
+     */
+    public ByteBuffer getBufferView(long absolutePosition, int length) {
+      ByteBuffer view = Assertions.checkNotNull(allocation.buffer).duplicate();
+      int offset = translateOffset(absolutePosition);
+      view.limit(offset + length);
+      view.position(offset);
+      return view;
+    }
+
     /**
      * Clears {@link #allocation} and {@link #next}.
      *
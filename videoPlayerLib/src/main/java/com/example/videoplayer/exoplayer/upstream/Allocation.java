@@ -15,10 +15,13 @@
  */
 package com.example.videoplayer.exoplayer.upstream;
 
+import androidx.annotation.Nullable;
 import com.example.videoplayer.common.util.UnstableApi;
+import com.example.videoplayer.common.util.Util;
+import java.nio.ByteBuffer;
 
 /**
- * An allocation within a byte array.
+ * An allocation within a byte array, or within a direct {@link ByteBuffer}.
  *
  * <p>The allocation's length is obtained by calling {@link
  * Allocator#getIndividualAllocationLength()} on the {@link Allocator} from which it was obtained.
@@ -29,12 +32,21 @@ public final class Allocation {
   /**
    * The array containing the allocated space. The allocated space might not be at the start of the
    * array, and so {@link #offset} must be used when indexing into it.
+   *
+   * <p>Empty if the allocated space is in {@link #buffer} instead.
    */
   public final byte[] data;
 
-  /** The offset of the allocated space in {@link #data}. */
+  /** The offset of the allocated space in {@link #data} or {@link #buffer}. */
   public final int offset;
 
+  /**
+   * The direct buffer containing the allocated space, or null if the allocated space is in {@link
+   * #data}. The buffer's position and limit must not be modified. Callers should instead operate
+   * on a {@link ByteBuffer#duplicate() duplicate}.
+   */
+  @Nullable public final ByteBuffer buffer;
+
   /**
    * @param data The array containing the allocated space.
    * @param offset The offset of the allocated space in {@code data}.
@@ -42,5 +54,16 @@ public final class Allocation {
   public Allocation(byte[] data, int offset) {
     this.data = data;
     this.offset = offset;
+    this.buffer = null;
+  }
+
+  /**
+   * @param buffer The direct buffer containing the allocated space.
+   * @param offset The offset of the allocated space in {@code buffer}.
+   */
+  public Allocation(ByteBuffer buffer, int offset) {
+    this.data = Util.EMPTY_BYTE_ARRAY;
+    this.offset = offset;
+    this.buffer = buffer;
   }
 }
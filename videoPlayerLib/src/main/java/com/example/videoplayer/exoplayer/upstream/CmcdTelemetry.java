@@ -0,0 +1,329 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.videoplayer.exoplayer.upstream;
+
+import static com.example.videoplayer.common.util.Assertions.checkArgument;
+import static java.lang.annotation.ElementType.TYPE_USE;
+
+import android.net.Uri;
+import androidx.annotation.IntDef;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import com.example.videoplayer.common.C;
+import com.example.videoplayer.common.util.Clock;
+import com.example.videoplayer.common.util.UnstableApi;
+import com.example.videoplayer.datasource.DataSource;
+import com.example.videoplayer.datasource.DataSpec;
+import com.example.videoplayer.datasource.TransferListener;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.MapMaker;
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Records the Common Media Client Data (CMCD) sent with each network request, together with the
+ * measured time to first byte, throughput and outcome of the request, and any {@link CmsdData
+ * Common Media Server Data (CMSD)} in the response.
+ *
+ * <p>Records are kept in a bounded in-memory ring, so that the most recent ones can be retrieved
+ * with {@link #getRecords()}. They can also be exported as they're made by setting a {@link
+ * Listener}.
+ *
+ * <p>An instance is a {@link TransferListener}, and should be added to the {@link DataSource
+ * DataSources} that make the requests, for example using {@code
+ * DefaultHttpDataSource.Factory.setTransferListener}. Requests without CMCD are recorded with an
+ * empty payload.
+ *
+ * <p>{@link TransferListener} isn't notified when opening a {@link DataSource} fails, so a request
+ * whose transfer never started is recorded with {@link #OUTCOME_OPEN_FAILED} when the same {@link
+ * DataSource} initializes its next request. {@link DataSource DataSources} are referenced weakly,
+ * so the requests of a {@link DataSource} that's discarded after failing to open are dropped
+ * without being recorded.
+ */
+@UnstableApi
+public final class CmcdTelemetry implements TransferListener {
+
+  /** Receives records as they're made. */
+  public interface Listener {
+
+    /**
+     * Called when a request has been recorded.
+     *
+     * <p>Called on the thread that made the request, so implementations should return quickly.
+     *
+     * @param record The {@link Record}.
+     */
+    void onRecord(Record record);
+  }
+
+  /**
+   * The outcome of a request. One of {@link #OUTCOME_COMPLETED}, {@link #OUTCOME_INCOMPLETE} or
+   * {@link #OUTCOME_OPEN_FAILED}.
+   */
+  @Documented
+  @Retention(RetentionPolicy.SOURCE)
+  @Target(TYPE_USE)
+  @IntDef({OUTCOME_COMPLETED, OUTCOME_INCOMPLETE, OUTCOME_OPEN_FAILED})
+  public @interface Outcome {}
+
+  /**
+   * The requested data was transferred in full, or the request had an unknown length and was
+   * transferred until it was closed.
+   */
+  public static final int OUTCOME_COMPLETED = 0;
+
+  /** The request was closed before the requested length was transferred. */
+  public static final int OUTCOME_INCOMPLETE = 1;
+
+  /**
+   * The request was initialized, but the transfer never started. Recorded when the {@link
+   * DataSource} that made the request initializes its next request.
+   */
+  public static final int OUTCOME_OPEN_FAILED = 2;
+
+  /** A recorded request. */
+  public static final class Record {
+
+    /** The {@link Clock#elapsedRealtime()} at which the request was initialized. */
+    public final long requestTimeMs;
+
+    /** The requested {@link Uri}, with any CMCD query parameter removed. */
+    public final Uri uri;
+
+    /**
+     * The CMCD payload of the request, keyed by the name of the request header that carried it, or
+     * by {@link CmcdConfiguration#CMCD_QUERY_PARAMETER_KEY} if it was carried by a query parameter.
+     * Empty if the request had no CMCD.
+     */
+    public final ImmutableMap<String, String> cmcdPayload;
+
+    /**
+     * The time from initializing the request to the start of the transfer, in milliseconds, or
+     * {@link C#TIME_UNSET} if the transfer never started.
+     */
+    public final long timeToFirstByteMs;
+
+    /** The duration of the transfer, in milliseconds. */
+    public final long transferDurationMs;
+
+    /** The number of bytes transferred. */
+    public final long bytesTransferred;
+
+    /**
+     * The throughput of the transfer, in bits per second, or {@link C#RATE_UNSET_INT} if the
+     * transfer was too short to measure it.
+     */
+    public final long throughputBitsPerSecond;
+
+    /** The {@link Outcome} of the request. */
+    public final @Outcome int outcome;
+
+    /** The CMSD of the response, or null if there wasn't any. */
+    @Nullable public final CmsdData cmsdData;
+
+    private Record(
+        long requestTimeMs,
+        Uri uri,
+        ImmutableMap<String, String> cmcdPayload,
+        long timeToFirstByteMs,
+        long transferDurationMs,
+        long bytesTransferred,
+        @Outcome int outcome,
+        @Nullable CmsdData cmsdData) {
+      this.requestTimeMs = requestTimeMs;
+      this.uri = uri;
+      this.cmcdPayload = cmcdPayload;
+      this.timeToFirstByteMs = timeToFirstByteMs;
+      this.transferDurationMs = transferDurationMs;
+      this.bytesTransferred = bytesTransferred;
+      this.throughputBitsPerSecond =
+          transferDurationMs > 0 ? bytesTransferred * 8000 / transferDurationMs : C.RATE_UNSET_INT;
+      this.outcome = outcome;
+      this.cmsdData = cmsdData;
+    }
+  }
+
+  /** The default maximum number of records that are kept. */
+  public static final int DEFAULT_CAPACITY = 256;
+
+  private static final String[] CMCD_HEADER_KEYS = {
+    CmcdConfiguration.KEY_CMCD_OBJECT,
+    CmcdConfiguration.KEY_CMCD_REQUEST,
+    CmcdConfiguration.KEY_CMCD_SESSION,
+    CmcdConfiguration.KEY_CMCD_STATUS
+  };
+
+  private final Clock clock;
+  @Nullable private final Listener listener;
+  // Keyed weakly by identity, so that sources whose open failed aren't retained.
+  private final ConcurrentMap<DataSource, PendingRequest> pendingRequests;
+
+  // Guarded by this.
+  private final Record[] records;
+  private int nextRecordIndex;
+  private int recordCount;
+
+  /** Creates an instance that keeps {@link #DEFAULT_CAPACITY} records, without a listener. */
+  public CmcdTelemetry() {
+    this(DEFAULT_CAPACITY, /* listener= */ null);
+  }
+
+  /**
+   * Creates an instance.
+   *
+   * @param capacity The maximum number of records that are kept. Older records are dropped.
+   * @param listener A {@link Listener} to which records are exported, or null.
+   */
+  public CmcdTelemetry(int capacity, @Nullable Listener listener) {
+    this(capacity, listener, Clock.DEFAULT);
+  }
+
+  @VisibleForTesting
+  /* package */ CmcdTelemetry(int capacity, @Nullable Listener listener, Clock clock) {
+    checkArgument(capacity > 0);
+    this.listener = listener;
+    this.clock = clock;
+    records = new Record[capacity];
+    pendingRequests = new MapMaker().weakKeys().makeMap();
+  }
+
+  /** Returns the records that are kept, from oldest to newest. */
+  public synchronized ImmutableList<Record> getRecords() {
+    ImmutableList.Builder<Record> recordList = ImmutableList.builder();
+    int firstRecordIndex = nextRecordIndex - recordCount + records.length;
+    for (int i = 0; i < recordCount; i++) {
+      recordList.add(records[(firstRecordIndex + i) % records.length]);
+    }
+    return recordList.build();
+  }
+
+  /** Drops all of the records that are kept. */
+  public synchronized void clear() {
+    for (int i = 0; i < records.length; i++) {
+      records[i] = null;
+    }
+    nextRecordIndex = 0;
+    recordCount = 0;
+  }
+
+  // TransferListener implementation.
+
+  @Override
+  public void onTransferInitializing(DataSource source, DataSpec dataSpec, boolean isNetwork) {
+    if (!isNetwork) {
+      return;
+    }
+    @Nullable
+    PendingRequest failedRequest =
+        pendingRequests.put(source, new PendingRequest(dataSpec, clock.elapsedRealtime()));
+    if (failedRequest != null) {
+      // The source is being reused without the previous transfer having started.
+      record(failedRequest, OUTCOME_OPEN_FAILED);
+    }
+  }
+
+  @Override
+  public void onTransferStart(DataSource source, DataSpec dataSpec, boolean isNetwork) {
+    @Nullable PendingRequest request = isNetwork ? pendingRequests.get(source) : null;
+    if (request == null) {
+      return;
+    }
+    request.transferStartTimeMs = clock.elapsedRealtime();
+    request.cmsdData = CmsdData.parse(source.getResponseHeaders());
+  }
+
+  @Override
+  public void onBytesTransferred(
+      DataSource source, DataSpec dataSpec, boolean isNetwork, int bytesTransferred) {
+    @Nullable PendingRequest request = isNetwork ? pendingRequests.get(source) : null;
+    if (request != null) {
+      // Only accessed on the thread making the request.
+      request.bytesTransferred += bytesTransferred;
+    }
+  }
+
+  @Override
+  public void onTransferEnd(DataSource source, DataSpec dataSpec, boolean isNetwork) {
+    @Nullable PendingRequest request = isNetwork ? pendingRequests.remove(source) : null;
+    if (request == null) {
+      return;
+    }
+    boolean incomplete =
+        request.dataSpec.length != C.LENGTH_UNSET
+            && request.bytesTransferred < request.dataSpec.length;
+    record(request, incomplete ? OUTCOME_INCOMPLETE : OUTCOME_COMPLETED);
+  }
+
+  private void record(PendingRequest request, @Outcome int outcome) {
+    boolean started = request.transferStartTimeMs != C.TIME_UNSET;
+    Record record =
+        new Record(
+            request.requestTimeMs,
+            CmcdData.removeFromUri(request.dataSpec.uri),
+            getCmcdPayload(request.dataSpec),
+            started ? request.transferStartTimeMs - request.requestTimeMs : C.TIME_UNSET,
+            started ? clock.elapsedRealtime() - request.transferStartTimeMs : 0,
+            request.bytesTransferred,
+            outcome,
+            request.cmsdData);
+    synchronized (this) {
+      records[nextRecordIndex] = record;
+      nextRecordIndex = (nextRecordIndex + 1) % records.length;
+      recordCount = Math.min(recordCount + 1, records.length);
+    }
+    if (listener != null) {
+      listener.onRecord(record);
+    }
+  }
+
+  private static ImmutableMap<String, String> getCmcdPayload(DataSpec dataSpec) {
+    ImmutableMap.Builder<String, String> payload = ImmutableMap.builder();
+    for (String key : CMCD_HEADER_KEYS) {
+      @Nullable String value = dataSpec.httpRequestHeaders.get(key);
+      if (value != null) {
+        payload.put(key, value);
+      }
+    }
+    if (dataSpec.uri.isHierarchical()) {
+      @Nullable
+      String value = dataSpec.uri.getQueryParameter(CmcdConfiguration.CMCD_QUERY_PARAMETER_KEY);
+      if (value != null) {
+        payload.put(CmcdConfiguration.CMCD_QUERY_PARAMETER_KEY, value);
+      }
+    }
+    return payload.buildOrThrow();
+  }
+
+  private static final class PendingRequest {
+
+    public final DataSpec dataSpec;
+    public final long requestTimeMs;
+
+    public volatile long transferStartTimeMs;
+    @Nullable public volatile CmsdData cmsdData;
+    public volatile long bytesTransferred;
+
+    public PendingRequest(DataSpec dataSpec, long requestTimeMs) {
+      this.dataSpec = dataSpec;
+      this.requestTimeMs = requestTimeMs;
+      transferStartTimeMs = C.TIME_UNSET;
+    }
+  }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.videoplayer.exoplayer.upstream;
+
+import android.text.TextUtils;
+import androidx.annotation.Nullable;
+import com.example.videoplayer.common.C;
+import com.example.videoplayer.common.util.UnstableApi;
+import com.google.common.base.Ascii;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Common Media Server Data (CMSD) attached to a response by a server or an intermediary, as
+ * specified in <a
+ * href="https://cdn.cta.tech/cta/media/media/resources/standards/pdfs/cta-5006-final.pdf">CTA-5006</a>.
+ *
+ * <p>Only the keys of the {@code CMSD-Dynamic} header that are relevant to bandwidth estimation
+ * are parsed. If several intermediaries set the same key, the value set closest to the client
+ * takes precedence. The raw header values are retained, for example for telemetry.
+ */
+@UnstableApi
+public final class CmsdData {
+
+  /** The response header carrying data that doesn't change as the response passes through. */
+  public static final String KEY_CMSD_STATIC = "CMSD-Static";
+
+  /** The response header carrying data set by each server or intermediary on the path. */
+  public static final String KEY_CMSD_DYNAMIC = "CMSD-Dynamic";
+
+  /**
+   * The throughput that the server estimates between itself and the client, in kbps, or {@link
+   * C#RATE_UNSET_INT} if not set. Corresponds to the CMSD key {@code etp}.
+   */
+  public final int estimatedThroughputKbps;
+
+  /**
+   * The maximum bitrate that the server suggests the client requests, in kbps, or {@link
+   * C#RATE_UNSET_INT} if not set. Corresponds to the CMSD key {@code mb}.
+   */
+  public final int maxSuggestedBitrateKbps;
+
+  /**
+   * The round trip time that the server estimates between itself and the client, in milliseconds,
+   * or {@link C#TIME_UNSET} if not set. Corresponds to the CMSD key {@code rtt}.
+   */
+  public final long roundTripTimeMs;
+
+  /**
+   * The delay between the server receiving the request and sending the response, in milliseconds,
+   * or {@link C#TIME_UNSET} if not set. Corresponds to the CMSD key {@code rd}.
+   */
+  public final long responseDelayMs;
+
+  /** The value of the {@link #KEY_CMSD_STATIC} header, or null if there wasn't one. */
+  @Nullable public final String staticHeaderValue;
+
+  /** The value of the {@link #KEY_CMSD_DYNAMIC} header, or null if there wasn't one. */
+  @Nullable public final String dynamicHeaderValue;
+
+  private CmsdData(
+      int estimatedThroughputKbps,
+      int maxSuggestedBitrateKbps,
+      long roundTripTimeMs,
+      long responseDelayMs,
+      @Nullable String staticHeaderValue,
+      @Nullable String dynamicHeaderValue) {
+    this.estimatedThroughputKbps = estimatedThroughputKbps;
+    this.maxSuggestedBitrateKbps = maxSuggestedBitrateKbps;
+    this.roundTripTimeMs = roundTripTimeMs;
+    this.responseDelayMs = responseDelayMs;
+    this.staticHeaderValue = staticHeaderValue;
+    this.dynamicHeaderValue = dynamicHeaderValue;
+  }
+
+  /**
+   * Parses the CMSD headers of a response.
+   *
+   * @param responseHeaders The response headers. Header names are matched case insensitively.
+   * @return The parsed {@link CmsdData}, or null if the response has no CMSD headers.
+   */
+  @Nullable
+  public static CmsdData parse(Map<String, List<String>> responseHeaders) {
+    @Nullable String staticHeaderValue = null;
+    @Nullable String dynamicHeaderValue = null;
+    for (Map.Entry<String, List<String>> header : responseHeaders.entrySet()) {
+      @Nullable String name = header.getKey();
+      if (name == null || header.getValue().isEmpty()) {
+        continue;
+      }
+      if (Ascii.equalsIgnoreCase(name, KEY_CMSD_STATIC)) {
+        staticHeaderValue = joinHeaderValues(header.getValue());
+      } else if (Ascii.equalsIgnoreCase(name, KEY_CMSD_DYNAMIC)) {
+        dynamicHeaderValue = joinHeaderValues(header.getValue());
+      }
+    }
+    if (staticHeaderValue == null && dynamicHeaderValue == null) {
+      return null;
+    }
+    int estimatedThroughputKbps = C.RATE_UNSET_INT;
+    int maxSuggestedBitrateKbps = C.RATE_UNSET_INT;
+    long roundTripTimeMs = C.TIME_UNSET;
+    long responseDelayMs = C.TIME_UNSET;
+    if (dynamicHeaderValue != null) {
+      // Intermediaries append their entries, so later values are set closer to the client.
+      for (String parameter : dynamicHeaderValue.split("[,;]")) {
+        int separatorIndex = parameter.indexOf('=');
+        if (separatorIndex == -1) {
+          continue;
+        }
+        String key = parameter.substring(0, separatorIndex).trim();
+        long value = parseIntegerValue(parameter.substring(separatorIndex + 1));
+        if (value < 0) {
+          continue;
+        }
+        switch (key) {
+          case "etp":
+            estimatedThroughputKbps = (int) Math.min(value, Integer.MAX_VALUE);
+            break;
+          case "mb":
+            maxSuggestedBitrateKbps = (int) Math.min(value, Integer.MAX_VALUE);
+            break;
+          case "rtt":
+            roundTripTimeMs = value;
+            break;
+          case "rd":
+            responseDelayMs = value;
+            break;
+          default:
+            break;
+        }
+      }
+    }
+    return new CmsdData(
+        estimatedThroughputKbps,
+        maxSuggestedBitrateKbps,
+        roundTripTimeMs,
+        responseDelayMs,
+        staticHeaderValue,
+        dynamicHeaderValue);
+  }
+
+  private static String joinHeaderValues(List<String> values) {
+    return values.size() == 1 ? values.get(0) : TextUtils.join(",", values);
+  }
+
+  /** Returns the non-negative integer value of a parameter, or -1 if it isn't one. */
+  private static long parseIntegerValue(String value) {
+    try {
+      return Long.parseLong(value.trim());
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+}
@@ -19,25 +19,65 @@ import static java.lang.Math.max;
 
 import androidx.annotation.Nullable;
 import com.example.videoplayer.common.util.Assertions;
-import com.example.videoplayer.common.util.NullableType;
 import com.example.videoplayer.common.util.UnstableApi;
 import com.example.videoplayer.common.util.Util;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
-/** Default implementation of {@link Allocator}. */
+/**
+ * Default implementation of {@link Allocator}.
+ *
+ * <p>Released allocations are first cached in a small lock-free magazine that's selected by the
+ * calling thread, so that a thread that repeatedly allocates and releases mostly reuses its own
+ * allocations without contending with other threads. Allocations that don't fit into the magazine
+ * are added to a shared pool, whose lock is only held to push or pop a single allocation. When
+ * neither the calling thread's magazine nor the shared pool has an available allocation, {@link
+ * #allocate()} takes one from the magazines of other threads before creating a new one, so that
+ * allocations released on one thread and allocated on another (as when a loading thread allocates
+ * and the playback thread releases) are reused rather than stranded. Allocations backed by the
+ * initial allocation block are kept in a separate pool, so that {@link #trim()} never needs to
+ * inspect them. Neither pool allocates when an allocation is added to it.
+ *
+ * <p>The allocator can optionally back its allocations with direct {@link ByteBuffer} slabs rather
+ * than with byte arrays, which keeps buffered media data off the Java heap. Each slab holds several
+ * allocations, and its memory is released only once all of its allocations have been discarded.
+ * Allocations are carved from slabs while holding the allocator's lock, but this only happens when
+ * no previously released allocation is available.
+ *
+ * <p>{@link #trim()} discards available allocations from the shared pool and from the magazines of
+ * all threads. If allocations are released concurrently with a call to {@link #trim()}, the number
+ * of available allocations may temporarily exceed the target.
+ */
 @UnstableApi
 public final class DefaultAllocator implements Allocator {
 
-  private static final int AVAILABLE_EXTRA_CAPACITY = 100;
+  /** The number of magazines. Must be a power of two. */
+  private static final int MAGAZINE_COUNT = 16;
+
+  /** The number of allocations that each magazine can hold. */
+  private static final int MAGAZINE_CAPACITY = 8;
+
+  /** The target size of each direct buffer slab, in bytes. */
+  private static final int DIRECT_SLAB_SIZE = 1024 * 1024;
 
   private final boolean trimOnReset;
   private final int individualAllocationSize;
   @Nullable private final byte[] initialAllocationBlock;
+  @Nullable private final ByteBuffer initialAllocationBuffer;
+  private final boolean useDirectBuffers;
+  private final int allocationsPerSlab;
+  private final Magazine[] magazines;
+  private final AllocationPool sharedAllocations;
+  private final AllocationPool initialAllocations;
+  private final AtomicInteger allocatedCount;
+  private final AtomicInteger availableCount;
+
+  private volatile int targetBufferSize;
 
-  private int targetBufferSize;
-  private int allocatedCount;
-  private int availableCount;
-  private @NullableType Allocation[] availableAllocations;
+  @Nullable private ByteBuffer currentSlab;
+  private int currentSlabAllocationCount;
 
   /**
    * Constructs an instance without creating any {@link Allocation}s up front.
@@ -64,20 +104,60 @@ public final class DefaultAllocator implements Allocator {
    */
   public DefaultAllocator(
       boolean trimOnReset, int individualAllocationSize, int initialAllocationCount) {
+    this(trimOnReset, individualAllocationSize, initialAllocationCount, false);
+  }
+
+  /**
+   * Constructs an instance with some {@link Allocation}s created up front, optionally backed by
+   * direct {@link ByteBuffer}s.
+   *
+   * <p>Note: {@link Allocation}s created up front will never be discarded by {@link #trim()}.
+   *
+   * @param trimOnReset Whether memory is freed when the allocator is reset. Should be true unless
+   *     the allocator will be re-used by multiple player instances. If set to false, trimming can
+   *     be forced by calling {@link #setTargetBufferSize(int)} manually when required.
+   * @param individualAllocationSize The length of each individual {@link Allocation}.
+   * @param initialAllocationCount The number of allocations to create up front.
+   * @param useDirectBuffers Whether allocations are backed by direct {@link ByteBuffer}s, in which
+   *     case {@link Allocation#buffer} is set, rather than by byte arrays.
+   */
+  public DefaultAllocator(
+      boolean trimOnReset,
+      int individualAllocationSize,
+      int initialAllocationCount,
+      boolean useDirectBuffers) {
     Assertions.checkArgument(individualAllocationSize > 0);
     Assertions.checkArgument(initialAllocationCount >= 0);
     this.trimOnReset = trimOnReset;
     this.individualAllocationSize = individualAllocationSize;
-    this.availableCount = initialAllocationCount;
-    this.availableAllocations = new Allocation[initialAllocationCount + AVAILABLE_EXTRA_CAPACITY];
-    if (initialAllocationCount > 0) {
+    this.useDirectBuffers = useDirectBuffers;
+    allocationsPerSlab = max(1, DIRECT_SLAB_SIZE / individualAllocationSize);
+    magazines = new Magazine[MAGAZINE_COUNT];
+    for (int i = 0; i < MAGAZINE_COUNT; i++) {
+      magazines[i] = new Magazine();
+    }
+    sharedAllocations = new AllocationPool(/* initialCapacity= */ MAGAZINE_CAPACITY);
+    initialAllocations = new AllocationPool(/* initialCapacity= */ max(1, initialAllocationCount));
+    allocatedCount = new AtomicInteger();
+    availableCount = new AtomicInteger(initialAllocationCount);
+    if (initialAllocationCount > 0 && useDirectBuffers) {
+      initialAllocationBlock = null;
+      initialAllocationBuffer =
+          ByteBuffer.allocateDirect(initialAllocationCount * individualAllocationSize);
+      for (int i = 0; i < initialAllocationCount; i++) {
+        int allocationOffset = i * individualAllocationSize;
+        initialAllocations.add(new Allocation(initialAllocationBuffer, allocationOffset));
+      }
+    } else if (initialAllocationCount > 0) {
       initialAllocationBlock = new byte[initialAllocationCount * individualAllocationSize];
+      initialAllocationBuffer = null;
       for (int i = 0; i < initialAllocationCount; i++) {
         int allocationOffset = i * individualAllocationSize;
-        availableAllocations[i] = new Allocation(initialAllocationBlock, allocationOffset);
+        initialAllocations.add(new Allocation(initialAllocationBlock, allocationOffset));
       }
     } else {
       initialAllocationBlock = null;
+      initialAllocationBuffer = null;
     }
   }
 
@@ -96,92 +176,181 @@ public final class DefaultAllocator implements Allocator {
   }
 
   @Override
-  public synchronized Allocation allocate() {
-    allocatedCount++;
-    Allocation allocation;
-    if (availableCount > 0) {
-      allocation = Assertions.checkNotNull(availableAllocations[--availableCount]);
-      availableAllocations[availableCount] = null;
+  public Allocation allocate() {
+    allocatedCount.incrementAndGet();
+    int magazineIndex = getMagazineIndex();
+    @Nullable Allocation allocation = magazines[magazineIndex].poll();
+    if (allocation == null) {
+      allocation = sharedAllocations.poll();
+    }
+    for (int i = 1; allocation == null && i < MAGAZINE_COUNT; i++) {
+      // Take an allocation released by another thread.
+      allocation = magazines[(magazineIndex + i) & (MAGAZINE_COUNT - 1)].poll();
+    }
+    if (allocation == null) {
+      allocation = initialAllocations.poll();
+    }
+    if (allocation != null) {
+      availableCount.decrementAndGet();
+    } else if (useDirectBuffers) {
+      allocation = newDirectAllocation();
     } else {
       allocation = new Allocation(new byte[individualAllocationSize], 0);
-      if (allocatedCount > availableAllocations.length) {
-        // Make availableAllocations be large enough to contain all allocations made by this
-        // allocator so that release() does not need to grow the availableAllocations array. See
-        // [Internal ref: b/209801945].
-        availableAllocations = Arrays.copyOf(availableAllocations, availableAllocations.length * 2);
-      }
     }
     return allocation;
   }
 
   @Override
-  public synchronized void release(Allocation allocation) {
-    availableAllocations[availableCount++] = allocation;
-    allocatedCount--;
-    // Wake up threads waiting for the allocated size to drop.
-    notifyAll();
+  public void release(Allocation allocation) {
+    availableCount.incrementAndGet();
+    allocatedCount.decrementAndGet();
+    makeAvailable(allocation, magazines[getMagazineIndex()]);
   }
 
   @Override
-  public synchronized void release(@Nullable AllocationNode allocationNode) {
+  public void release(@Nullable AllocationNode allocationNode) {
+    Magazine magazine = magazines[getMagazineIndex()];
+    int releasedCount = 0;
     while (allocationNode != null) {
-      availableAllocations[availableCount++] = allocationNode.getAllocation();
-      allocatedCount--;
+      makeAvailable(allocationNode.getAllocation(), magazine);
+      releasedCount++;
       allocationNode = allocationNode.next();
     }
-    // Wake up threads waiting for the allocated size to drop.
-    notifyAll();
+    availableCount.addAndGet(releasedCount);
+    allocatedCount.addAndGet(-releasedCount);
   }
 
   @Override
   public synchronized void trim() {
     int targetAllocationCount = Util.ceilDivide(targetBufferSize, individualAllocationSize);
-    int targetAvailableCount = max(0, targetAllocationCount - allocatedCount);
-    if (targetAvailableCount >= availableCount) {
-      // We're already at or below the target.
-      return;
-    }
-
-    if (initialAllocationBlock != null) {
-      // Some allocations are backed by an initial block. We need to make sure that we hold onto all
-      // such allocations. Re-order the available allocations so that the ones backed by the initial
-      // block come first.
-      int lowIndex = 0;
-      int highIndex = availableCount - 1;
-      while (lowIndex <= highIndex) {
-        Allocation lowAllocation = Assertions.checkNotNull(availableAllocations[lowIndex]);
-        if (lowAllocation.data == initialAllocationBlock) {
-          lowIndex++;
-        } else {
-          Allocation highAllocation = Assertions.checkNotNull(availableAllocations[highIndex]);
-          if (highAllocation.data != initialAllocationBlock) {
-            highIndex--;
-          } else {
-            availableAllocations[lowIndex++] = highAllocation;
-            availableAllocations[highIndex--] = lowAllocation;
-          }
+    int targetAvailableCount = max(0, targetAllocationCount - allocatedCount.get());
+    int magazineIndex = 0;
+    while (availableCount.get() > targetAvailableCount) {
+      @Nullable Allocation allocation = sharedAllocations.poll();
+      while (allocation == null && magazineIndex < MAGAZINE_COUNT) {
+        allocation = magazines[magazineIndex].poll();
+        if (allocation == null) {
+          magazineIndex++;
         }
       }
-      // lowIndex is the index of the first allocation not backed by an initial block.
-      targetAvailableCount = max(targetAvailableCount, lowIndex);
-      if (targetAvailableCount >= availableCount) {
-        // We're already at or below the target.
+      if (allocation == null) {
+        // The only remaining available allocations are backed by the initial block.
         return;
       }
+      if (isInitialAllocation(allocation)) {
+        // Allocations backed by the initial block are never discarded.
+        initialAllocations.add(allocation);
+      } else {
+        availableCount.decrementAndGet();
+      }
     }
-
-    // Discard allocations beyond the target.
-    Arrays.fill(availableAllocations, targetAvailableCount, availableCount, null);
-    availableCount = targetAvailableCount;
   }
 
   @Override
-  public synchronized int getTotalBytesAllocated() {
-    return allocatedCount * individualAllocationSize;
+  public int getTotalBytesAllocated() {
+    return allocatedCount.get() * individualAllocationSize;
   }
 
   @Override
   public int getIndividualAllocationLength() {
     return individualAllocationSize;
   }
+
+  private boolean isInitialAllocation(Allocation allocation) {
+    return initialAllocationBuffer != null
+        ? allocation.buffer == initialAllocationBuffer
+        : allocation.data == initialAllocationBlock;
+  }
+
+  private synchronized Allocation newDirectAllocation() {
+    @Nullable ByteBuffer slab = currentSlab;
+    if (slab == null || currentSlabAllocationCount == allocationsPerSlab) {
+      slab = ByteBuffer.allocateDirect(allocationsPerSlab * individualAllocationSize);
+      currentSlab = slab;
+      currentSlabAllocationCount = 0;
+    }
+    int allocationOffset = currentSlabAllocationCount++ * individualAllocationSize;
+    return new Allocation(slab, allocationOffset);
+  }
+
+  private void makeAvailable(Allocation allocation, Magazine magazine) {
+    if (!magazine.offer(allocation)) {
+      sharedAllocations.add(allocation);
+    }
+  }
+
+  /** Returns the index of the magazine for the calling thread. */
+  @SuppressWarnings("deprecation") // Thread.threadId() isn't available on all API levels.
+  private static int getMagazineIndex() {
+    long threadId = Thread.currentThread().getId();
+    int hash = (int) (threadId ^ (threadId >>> 32)) * 0x9E3779B9;
+    return (hash >>> 16) & (MAGAZINE_COUNT - 1);
+  }
+
+  /**
+   * An unbounded stack of available allocations. Unlike a linked queue, adding an allocation
+   * doesn't allocate once the backing array has grown to the number of allocations in use.
+   */
+  private static final class AllocationPool {
+
+    private Allocation[] allocations;
+    private int size;
+
+    public AllocationPool(int initialCapacity) {
+      allocations = new Allocation[initialCapacity];
+    }
+
+    public synchronized void add(Allocation allocation) {
+      if (size == allocations.length) {
+        allocations = Arrays.copyOf(allocations, size * 2);
+      }
+      allocations[size++] = allocation;
+    }
+
+    /** Removes and returns an allocation, or returns null if the pool is empty. */
+    @Nullable
+    public synchronized Allocation poll() {
+      if (size == 0) {
+        return null;
+      }
+      Allocation allocation = allocations[--size];
+      allocations[size] = null;
+      return allocation;
+    }
+  }
+
+  /**
+   * A fixed size set of available allocations. Each slot is updated atomically, so a magazine can
+   * be shared by threads whose IDs map to it, and can be drained by {@link #trim()}.
+   */
+  private static final class Magazine {
+
+    private final AtomicReferenceArray<Allocation> slots;
+
+    public Magazine() {
+      slots = new AtomicReferenceArray<>(MAGAZINE_CAPACITY);
+    }
+
+    /** Adds an allocation, returning whether there was space for it. */
+    public boolean offer(Allocation allocation) {
+      for (int i = 0; i < MAGAZINE_CAPACITY; i++) {
+        if (slots.get(i) == null && slots.compareAndSet(i, null, allocation)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    /** Removes and returns an allocation, or returns null if the magazine is empty. */
+    @Nullable
+    public Allocation poll() {
+      for (int i = MAGAZINE_CAPACITY - 1; i >= 0; i--) {
+        @Nullable Allocation allocation = slots.get(i);
+        if (allocation != null && slots.compareAndSet(i, allocation, null)) {
+          return allocation;
+        }
+      }
+      return null;
+    }
+  }
 }
@@ -16,6 +16,7 @@
 package com.example.videoplayer.exoplayer.upstream;
 
 import static com.google.common.base.Strings.nullToEmpty;
+import static java.lang.Math.min;
 
 import android.annotation.SuppressLint;
 import android.content.Context;
@@ -38,6 +39,7 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 /**
  * Estimates bandwidth by listening to data transfers.
@@ -46,6 +48,16 @@ import java.util.Map;
  * time a transfer ends. The initial estimate is based on the current operator's network country
  * code or the locale of the user, as well as the network connection type. This can be configured in
  * the {@link Builder}.
+ *
+ * <p>Bytes transferred are counted without locking, in counters that are striped by {@link
+ * DataSource} so that concurrent transfers don't contend with one another. The bitrate estimate is
+ * also read without locking. Only the start and end of transfers, which close samples, are
+ * serialized.
+ *
+ * <p>If {@linkplain Builder#setUseCmsdHints(boolean) enabled}, Common Media Server Data (CMSD)
+ * response headers are also taken into account. A throughput estimated by the server is added to
+ * the {@link SlidingPercentile} as a sample, and a maximum bitrate suggested by the server caps the
+ * bitrate estimate until a later response changes it.
  */
 @UnstableApi
 public final class DefaultBandwidthMeter implements BandwidthMeter, TransferListener {
@@ -133,6 +145,7 @@ public final class DefaultBandwidthMeter implements BandwidthMeter, TransferList
     private int slidingWindowMaxWeight;
     private Clock clock;
     private boolean resetOnNetworkTypeChange;
+    private boolean useCmsdHints;
 
     /**
      * Creates a builder with default parameters and without listener.
@@ -241,6 +254,18 @@ public final class DefaultBandwidthMeter implements BandwidthMeter, TransferList
       return this;
     }
 
+    /**
+     * Sets whether to use the bandwidth hints in {@link CmsdData Common Media Server Data (CMSD)}
+     * response headers. The default value is {@code false}.
+     *
+     * @param useCmsdHints Whether to use the bandwidth hints in CMSD response headers.
+     * @return This builder.
+     */
+    public Builder setUseCmsdHints(boolean useCmsdHints) {
+      this.useCmsdHints = useCmsdHints;
+      return this;
+    }
+
     /**
      * Builds the bandwidth meter.
      *
@@ -252,7 +277,8 @@ public final class DefaultBandwidthMeter implements BandwidthMeter, TransferList
           initialBitrateEstimates,
           slidingWindowMaxWeight,
           clock,
-          resetOnNetworkTypeChange);
+          resetOnNetworkTypeChange,
+          useCmsdHints);
     }
   }
 
@@ -272,11 +298,15 @@ public final class DefaultBandwidthMeter implements BandwidthMeter, TransferList
   private static final int ELAPSED_MILLIS_FOR_ESTIMATE = 2000;
   private static final int BYTES_TRANSFERRED_FOR_ESTIMATE = 512 * 1024;
 
+  /** The weight of a throughput estimated by a server, equal to that of a 256 KiB transfer. */
+  private static final int CMSD_SAMPLE_WEIGHT = 512;
+
   @Nullable private final Context context;
   private final ImmutableMap<Integer, Long> initialBitrateEstimates;
   private final EventDispatcher eventDispatcher;
   private final Clock clock;
   private final boolean resetOnNetworkTypeChange;
+  private final boolean useCmsdHints;
 
   @GuardedBy("this") // Used in TransferListener methods that are called on a background thread.
   private final SlidingPercentile slidingPercentile;
@@ -287,8 +317,8 @@ public final class DefaultBandwidthMeter implements BandwidthMeter, TransferList
   @GuardedBy("this") // Used in TransferListener methods that are called on a background thread.
   private long sampleStartTimeMs;
 
-  @GuardedBy("this") // Used in TransferListener methods that are called on a background thread.
-  private long sampleBytesTransferred;
+  // Updated without locking by onBytesTransferred, and drained when a sample is closed.
+  private final StripedCounter sampleBytesTransferred;
 
   @GuardedBy("this") // Used in TransferListener methods that are called on a background thread.
   private long totalElapsedTimeMs;
@@ -296,8 +326,11 @@ public final class DefaultBandwidthMeter implements BandwidthMeter, TransferList
   @GuardedBy("this") // Used in TransferListener methods that are called on a background thread.
   private long totalBytesTransferred;
 
-  @GuardedBy("this") // Used in TransferListener methods that are called on a background thread.
-  private long bitrateEstimate;
+  // Written when holding the lock, and read without it.
+  private volatile long bitrateEstimate;
+
+  // Written when holding the lock, and read without it. 0 if there's no maximum.
+  private volatile long maxSuggestedBitrate;
 
   @GuardedBy("this") // Used in TransferListener methods that are called on a background thread.
   private long lastReportedBitrateEstimate;
@@ -312,13 +345,16 @@ public final class DefaultBandwidthMeter implements BandwidthMeter, TransferList
       Map<Integer, Long> initialBitrateEstimates,
       int maxWeight,
       Clock clock,
-      boolean resetOnNetworkTypeChange) {
+      boolean resetOnNetworkTypeChange,
+      boolean useCmsdHints) {
     this.context = context == null ? null : context.getApplicationContext();
     this.initialBitrateEstimates = ImmutableMap.copyOf(initialBitrateEstimates);
     this.eventDispatcher = new EventDispatcher();
     this.slidingPercentile = new SlidingPercentile(maxWeight);
+    this.sampleBytesTransferred = new StripedCounter();
     this.clock = clock;
     this.resetOnNetworkTypeChange = resetOnNetworkTypeChange;
+    this.useCmsdHints = useCmsdHints;
     if (context != null) {
       NetworkTypeObserver networkTypeObserver = NetworkTypeObserver.getInstance(context);
       networkType = networkTypeObserver.getNetworkType();
@@ -346,8 +382,9 @@ public final class DefaultBandwidthMeter implements BandwidthMeter, TransferList
   }
 
   @Override
-  public synchronized long getBitrateEstimate() {
-    return bitrateEstimate;
+  public long getBitrateEstimate() {
+    long maxSuggestedBitrate = this.maxSuggestedBitrate;
+    return maxSuggestedBitrate > 0 ? min(bitrateEstimate, maxSuggestedBitrate) : bitrateEstimate;
   }
 
   @Override
@@ -378,6 +415,12 @@ public final class DefaultBandwidthMeter implements BandwidthMeter, TransferList
     if (!isTransferAtFullNetworkSpeed(dataSpec, isNetwork)) {
       return;
     }
+    if (useCmsdHints) {
+      @Nullable CmsdData cmsdData = CmsdData.parse(source.getResponseHeaders());
+      if (cmsdData != null) {
+        onCmsdData(cmsdData);
+      }
+    }
     if (streamCount == 0) {
       sampleStartTimeMs = clock.elapsedRealtime();
     }
@@ -385,12 +428,12 @@ public final class DefaultBandwidthMeter implements BandwidthMeter, TransferList
   }
 
   @Override
-  public synchronized void onBytesTransferred(
+  public void onBytesTransferred(
       DataSource source, DataSpec dataSpec, boolean isNetwork, int bytesTransferred) {
     if (!isTransferAtFullNetworkSpeed(dataSpec, isNetwork)) {
       return;
     }
-    sampleBytesTransferred += bytesTransferred;
+    sampleBytesTransferred.add(source, bytesTransferred);
   }
 
   @Override
@@ -402,17 +445,17 @@ public final class DefaultBandwidthMeter implements BandwidthMeter, TransferList
     long nowMs = clock.elapsedRealtime();
     int sampleElapsedTimeMs = (int) (nowMs - sampleStartTimeMs);
     totalElapsedTimeMs += sampleElapsedTimeMs;
-    totalBytesTransferred += sampleBytesTransferred;
     if (sampleElapsedTimeMs > 0) {
+      // Bytes that are transferred while the counter is drained are counted in the next sample.
+      long sampleBytesTransferred = this.sampleBytesTransferred.sumThenReset();
+      totalBytesTransferred += sampleBytesTransferred;
       float bitsPerSecond = (sampleBytesTransferred * 8000f) / sampleElapsedTimeMs;
       slidingPercentile.addSample((int) Math.sqrt(sampleBytesTransferred), bitsPerSecond);
-      if (totalElapsedTimeMs >= ELAPSED_MILLIS_FOR_ESTIMATE
-          || totalBytesTransferred >= BYTES_TRANSFERRED_FOR_ESTIMATE) {
+      if (hasEnoughDataForEstimate()) {
         bitrateEstimate = (long) slidingPercentile.getPercentile(0.5f);
       }
       maybeNotifyBandwidthSample(sampleElapsedTimeMs, sampleBytesTransferred, bitrateEstimate);
       sampleStartTimeMs = nowMs;
-      sampleBytesTransferred = 0;
     } // Else any sample bytes transferred will be carried forward into the next sample.
     streamCount--;
   }
@@ -446,14 +489,38 @@ public final class DefaultBandwidthMeter implements BandwidthMeter, TransferList
     this.bitrateEstimate = getInitialBitrateEstimateForNetworkType(networkType);
     long nowMs = clock.elapsedRealtime();
     int sampleElapsedTimeMs = streamCount > 0 ? (int) (nowMs - sampleStartTimeMs) : 0;
+    long sampleBytesTransferred = this.sampleBytesTransferred.sumThenReset();
     maybeNotifyBandwidthSample(sampleElapsedTimeMs, sampleBytesTransferred, bitrateEstimate);
 
     // Reset the remainder of the state.
     sampleStartTimeMs = nowMs;
-    sampleBytesTransferred = 0;
     totalBytesTransferred = 0;
     totalElapsedTimeMs = 0;
     slidingPercentile.reset();
+    maxSuggestedBitrate = 0;
+  }
+
+  @GuardedBy("this")
+  private void onCmsdData(CmsdData cmsdData) {
+    if (cmsdData.estimatedThroughputKbps != C.RATE_UNSET_INT) {
+      // Like measured samples, the server's estimate only replaces the initial estimate once
+      // enough data has been transferred.
+      slidingPercentile.addSample(CMSD_SAMPLE_WEIGHT, cmsdData.estimatedThroughputKbps * 1000f);
+      if (hasEnoughDataForEstimate()) {
+        bitrateEstimate = (long) slidingPercentile.getPercentile(0.5f);
+        maybeNotifyBandwidthSample(/* elapsedMs= */ 0, /* bytesTransferred= */ 0, bitrateEstimate);
+      }
+    }
+    maxSuggestedBitrate =
+        cmsdData.maxSuggestedBitrateKbps != C.RATE_UNSET_INT
+            ? cmsdData.maxSuggestedBitrateKbps * 1000L
+            : 0;
+  }
+
+  @GuardedBy("this")
+  private boolean hasEnoughDataForEstimate() {
+    return totalElapsedTimeMs >= ELAPSED_MILLIS_FOR_ESTIMATE
+        || totalBytesTransferred >= BYTES_TRANSFERRED_FOR_ESTIMATE;
   }
 
   @GuardedBy("this")
@@ -922,4 +989,41 @@ public final class DefaultBandwidthMeter implements BandwidthMeter, TransferList
         return new int[] {2, 2, 2, 2, 2, 2};
     }
   }
+
+  /**
+   * A counter that's striped by {@link DataSource}, so that it can be added to from several threads
+   * without locking or contention. Each stripe is padded to its own cache line.
+   */
+  private static final class StripedCounter {
+
+    // The number of longs in a 64 byte cache line.
+    private static final int STRIPE_PADDING = 8;
+
+    private final AtomicLongArray stripes;
+    private final int stripeMask;
+
+    public StripedCounter() {
+      int stripeCount =
+          Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 2 - 1);
+      stripes = new AtomicLongArray(stripeCount * STRIPE_PADDING);
+      stripeMask = stripeCount - 1;
+    }
+
+    /** Adds {@code value} to the stripe for {@code source}. */
+    public void add(DataSource source, long value) {
+      int hash = System.identityHashCode(source);
+      // Spread the hash, since identity hash codes may not vary in their lowest bits.
+      hash ^= (hash >>> 16);
+      stripes.addAndGet((hash & stripeMask) * STRIPE_PADDING, value);
+    }
+
+    /** Returns the sum of the stripes, and resets them to zero. */
+    public long sumThenReset() {
+      long sum = 0;
+      for (int i = 0; i < stripes.length(); i += STRIPE_PADDING) {
+        sum += stripes.getAndSet(i, 0);
+      }
+      return sum;
+    }
+  }
 }
@@ -15,10 +15,10 @@
  */
 package com.example.videoplayer.exoplayer.upstream;
 
+import static java.lang.Math.min;
+
 import com.example.videoplayer.common.util.UnstableApi;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
+import java.util.Arrays;
 
 /**
  * Calculate any percentile over a sliding window of weighted values. A maximum weight is
@@ -30,6 +30,10 @@ import java.util.Comparator;
  * rate observations. This is an alternative to sliding mean and exponential averaging which suffer
  * from susceptibility to outliers and slow adaptation to step functions.
  *
+ * <p>Samples are held in primitive arrays that are kept sorted by value, so that adding a sample
+ * doesn't allocate once the arrays have grown to the size of the window, and computing a
+ * percentile doesn't sort.
+ *
  * <p>See the following Wikipedia articles:
  *
  * <ul>
@@ -40,41 +44,38 @@ import java.util.Comparator;
 @UnstableApi
 public class SlidingPercentile {
 
-  // Orderings.
-  private static final Comparator<Sample> INDEX_COMPARATOR = (a, b) -> a.index - b.index;
-  private static final Comparator<Sample> VALUE_COMPARATOR =
-      (a, b) -> Float.compare(a.value, b.value);
-
-  private static final int SORT_ORDER_NONE = -1;
-  private static final int SORT_ORDER_BY_VALUE = 0;
-  private static final int SORT_ORDER_BY_INDEX = 1;
-
-  private static final int MAX_RECYCLED_SAMPLES = 5;
+  private static final int INITIAL_CAPACITY = 16;
 
   private final int maxWeight;
-  private final ArrayList<Sample> samples;
 
-  private final Sample[] recycledSamples;
+  // The samples, sorted by value and then by index.
+  private float[] sortedValues;
+  private int[] sortedWeights;
+  private int[] sortedIndices;
+
+  // The values of the samples in the order in which they were added, as a ring buffer.
+  private float[] valuesByIndex;
+  private int oldestSamplePosition;
 
-  private int currentSortOrder;
+  private int sampleCount;
   private int nextSampleIndex;
   private int totalWeight;
-  private int recycledSampleCount;
 
   /**
    * @param maxWeight The maximum weight.
    */
   public SlidingPercentile(int maxWeight) {
     this.maxWeight = maxWeight;
-    recycledSamples = new Sample[MAX_RECYCLED_SAMPLES];
-    samples = new ArrayList<>();
-    currentSortOrder = SORT_ORDER_NONE;
+    sortedValues = new float[INITIAL_CAPACITY];
+    sortedWeights = new int[INITIAL_CAPACITY];
+    sortedIndices = new int[INITIAL_CAPACITY];
+    valuesByIndex = new float[INITIAL_CAPACITY];
   }
 
   /** Resets the sliding percentile. */
   public void reset() {
-    samples.clear();
-    currentSortOrder = SORT_ORDER_NONE;
+    sampleCount = 0;
+    oldestSamplePosition = 0;
     nextSampleIndex = 0;
     totalWeight = 0;
   }
@@ -86,27 +87,33 @@ public class SlidingPercentile {
    * @param value The value of the new observation.
    */
   public void addSample(int weight, float value) {
-    ensureSortedByIndex();
-
-    Sample newSample =
-        recycledSampleCount > 0 ? recycledSamples[--recycledSampleCount] : new Sample();
-    newSample.index = nextSampleIndex++;
-    newSample.weight = weight;
-    newSample.value = value;
-    samples.add(newSample);
+    if (sampleCount == sortedValues.length) {
+      growCapacity();
+    }
+
+    // Insert after any samples with the same value, so that they remain sorted by index.
+    int position = binarySearch(value, /* after= */ true);
+    System.arraycopy(sortedValues, position, sortedValues, position + 1, sampleCount - position);
+    System.arraycopy(sortedWeights, position, sortedWeights, position + 1, sampleCount - position);
+    System.arraycopy(sortedIndices, position, sortedIndices, position + 1, sampleCount - position);
+    sortedValues[position] = value;
+    sortedWeights[position] = weight;
+    sortedIndices[position] = nextSampleIndex++;
+    valuesByIndex[(oldestSamplePosition + sampleCount) % valuesByIndex.length] = value;
+    sampleCount++;
     totalWeight += weight;
 
     while (totalWeight > maxWeight) {
       int excessWeight = totalWeight - maxWeight;
-      Sample oldestSample = samples.get(0);
-      if (oldestSample.weight <= excessWeight) {
-        totalWeight -= oldestSample.weight;
-        samples.remove(0);
-        if (recycledSampleCount < MAX_RECYCLED_SAMPLES) {
-          recycledSamples[recycledSampleCount++] = oldestSample;
-        }
+      int oldestPosition = getSortedPositionOfOldestSample();
+      int oldestWeight = sortedWeights[oldestPosition];
+      if (oldestWeight <= excessWeight) {
+        totalWeight -= oldestWeight;
+        removeSortedSample(oldestPosition);
+        oldestSamplePosition = (oldestSamplePosition + 1) % valuesByIndex.length;
+        sampleCount--;
       } else {
-        oldestSample.weight -= excessWeight;
+        sortedWeights[oldestPosition] -= excessWeight;
         totalWeight -= excessWeight;
       }
     }
@@ -119,40 +126,67 @@ public class SlidingPercentile {
    * @return The requested percentile value or {@link Float#NaN} if no samples have been added.
    */
   public float getPercentile(float percentile) {
-    ensureSortedByValue();
     float desiredWeight = percentile * totalWeight;
     int accumulatedWeight = 0;
-    for (int i = 0; i < samples.size(); i++) {
-      Sample currentSample = samples.get(i);
-      accumulatedWeight += currentSample.weight;
+    for (int i = 0; i < sampleCount; i++) {
+      accumulatedWeight += sortedWeights[i];
       if (accumulatedWeight >= desiredWeight) {
-        return currentSample.value;
+        return sortedValues[i];
       }
     }
     // Clamp to maximum value or NaN if no values.
-    return samples.isEmpty() ? Float.NaN : samples.get(samples.size() - 1).value;
+    return sampleCount == 0 ? Float.NaN : sortedValues[sampleCount - 1];
   }
 
-  /** Sorts the samples by index. */
-  private void ensureSortedByIndex() {
-    if (currentSortOrder != SORT_ORDER_BY_INDEX) {
-      Collections.sort(samples, INDEX_COMPARATOR);
-      currentSortOrder = SORT_ORDER_BY_INDEX;
+  /**
+   * Returns the position in the sorted arrays of the first sample whose value isn't less than
+   * {@code value}, or if {@code after} is true, of the first sample whose value is greater.
+   */
+  private int binarySearch(float value, boolean after) {
+    int low = 0;
+    int high = sampleCount;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      int comparison = Float.compare(sortedValues[mid], value);
+      if (comparison < 0 || (after && comparison == 0)) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
     }
+    return low;
   }
 
-  /** Sorts the samples by value. */
-  private void ensureSortedByValue() {
-    if (currentSortOrder != SORT_ORDER_BY_VALUE) {
-      Collections.sort(samples, VALUE_COMPARATOR);
-      currentSortOrder = SORT_ORDER_BY_VALUE;
+  private int getSortedPositionOfOldestSample() {
+    int oldestIndex = nextSampleIndex - sampleCount;
+    // Samples with the same value are sorted by index, so the oldest sample is normally the first
+    // with its value.
+    int position = binarySearch(valuesByIndex[oldestSamplePosition], /* after= */ false);
+    while (sortedIndices[position] != oldestIndex) {
+      position++;
     }
+    return position;
   }
 
-  private static class Sample {
+  private void removeSortedSample(int position) {
+    int moveCount = sampleCount - position - 1;
+    System.arraycopy(sortedValues, position + 1, sortedValues, position, moveCount);
+    System.arraycopy(sortedWeights, position + 1, sortedWeights, position, moveCount);
+    System.arraycopy(sortedIndices, position + 1, sortedIndices, position, moveCount);
+  }
 
-    public int index;
-    public int weight;
-    public float value;
+  private void growCapacity() {
+    int newCapacity = sortedValues.length * 2;
+    sortedValues = Arrays.copyOf(sortedValues, newCapacity);
+    sortedWeights = Arrays.copyOf(sortedWeights, newCapacity);
+    sortedIndices = Arrays.copyOf(sortedIndices, newCapacity);
+    // Unwrap the ring buffer so that the oldest sample is at the start.
+    float[] newValuesByIndex = new float[newCapacity];
+    int firstPartLength = min(sampleCount, valuesByIndex.length - oldestSamplePosition);
+    System.arraycopy(valuesByIndex, oldestSamplePosition, newValuesByIndex, 0, firstPartLength);
+    System.arraycopy(
+        valuesByIndex, 0, newValuesByIndex, firstPartLength, sampleCount - firstPartLength);
+    valuesByIndex = newValuesByIndex;
+    oldestSamplePosition = 0;
   }
 }
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.videoplayer.exoplayer.upstream.experimental;
+
+import static com.example.videoplayer.common.util.Assertions.checkArgument;
+import static java.lang.annotation.ElementType.TYPE_USE;
+
+import androidx.annotation.IntDef;
+import com.example.videoplayer.common.C;
+import com.example.videoplayer.common.ParserException;
+import com.example.videoplayer.common.util.UnstableApi;
+import com.google.common.collect.ImmutableList;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * A recording of the transfer events that a {@link BandwidthEstimator} observes, which can be
+ * replayed offline by a {@link BandwidthTraceEvaluator}.
+ *
+ * <p>Traces are recorded by a {@link BandwidthTraceRecorder}, and are serialized as text with one
+ * event per line. Each line holds the event time in milliseconds, the event type, an identifier of
+ * the data source that made the transfer and, for {@link #EVENT_BYTES_TRANSFERRED}, the number of
+ * bytes transferred, separated by spaces. Lines starting with {@code #} are comments.
+ */
+@UnstableApi
+public final class BandwidthTrace {
+
+  /**
+   * The type of an {@link Event}. One of {@link #EVENT_TRANSFER_INITIALIZING}, {@link
+   * #EVENT_TRANSFER_START}, {@link #EVENT_BYTES_TRANSFERRED} or {@link #EVENT_TRANSFER_END}.
+   */
+  @Documented
+  @Retention(RetentionPolicy.SOURCE)
+  @Target(TYPE_USE)
+  @IntDef({
+    EVENT_TRANSFER_INITIALIZING,
+    EVENT_TRANSFER_START,
+    EVENT_BYTES_TRANSFERRED,
+    EVENT_TRANSFER_END
+  })
+  public @interface EventType {}
+
+  /** A transfer is being initialized. */
+  public static final int EVENT_TRANSFER_INITIALIZING = 0;
+
+  /** A transfer started. */
+  public static final int EVENT_TRANSFER_START = 1;
+
+  /** Bytes were transferred. */
+  public static final int EVENT_BYTES_TRANSFERRED = 2;
+
+  /** A transfer ended. */
+  public static final int EVENT_TRANSFER_END = 3;
+
+  private static final String HEADER = "# bandwidth-trace 1";
+  private static final String[] EVENT_NAMES = {"init", "start", "bytes", "end"};
+
+  /** A recorded transfer event. */
+  public static final class Event {
+
+    /** The time of the event, in milliseconds since the start of the trace. */
+    public final long timeMs;
+
+    /** The {@link EventType type} of the event. */
+    public final @EventType int type;
+
+    /** An identifier of the data source that made the transfer, unique within the trace. */
+    public final int sourceId;
+
+    /** The number of bytes transferred, if the event is {@link #EVENT_BYTES_TRANSFERRED}, or 0. */
+    public final int bytesTransferred;
+
+    /** Creates an instance. */
+    public Event(long timeMs, @EventType int type, int sourceId, int bytesTransferred) {
+      this.timeMs = timeMs;
+      this.type = type;
+      this.sourceId = sourceId;
+      this.bytesTransferred = bytesTransferred;
+    }
+  }
+
+  /** The events, in the order in which they occurred. */
+  public final ImmutableList<Event> events;
+
+  /**
+   * Creates an instance.
+   *
+   * @param events The events, in the order in which they occurred. Event times must not decrease.
+   */
+  public BandwidthTrace(List<Event> events) {
+    for (int i = 1; i < events.size(); i++) {
+      checkArgument(events.get(i).timeMs >= events.get(i - 1).timeMs);
+    }
+    this.events = ImmutableList.copyOf(events);
+  }
+
+  /** Returns the time of the last event, in milliseconds since the start of the trace. */
+  public long getDurationMs() {
+    return events.isEmpty() ? 0 : events.get(events.size() - 1).timeMs;
+  }
+
+  /**
+   * Writes the trace to an output stream. The stream is flushed but not closed.
+   *
+   * @param outputStream The output stream.
+   * @throws IOException If an error occurs writing to the stream.
+   */
+  public void write(OutputStream outputStream) throws IOException {
+    Writer writer = new OutputStreamWriter(outputStream, StandardCharsets.UTF_8);
+    writer.write(HEADER);
+    writer.write('\n');
+    for (int i = 0; i < events.size(); i++) {
+      Event event = events.get(i);
+      writer.write(event.timeMs + " " + EVENT_NAMES[event.type] + " " + event.sourceId);
+      if (event.type == EVENT_BYTES_TRANSFERRED) {
+        writer.write(" " + event.bytesTransferred);
+      }
+      writer.write('\n');
+    }
+    writer.flush();
+  }
+
+  /**
+   * Reads a trace that was written by {@link #write(OutputStream)}. The stream is read to its end
+   * but not closed.
+   *
+   * @param inputStream The input stream.
+   * @return The trace.
+   * @throws ParserException If the trace is malformed.
+   * @throws IOException If an error occurs reading from the stream.
+   */
+  public static BandwidthTrace read(InputStream inputStream) throws IOException {
+    BufferedReader reader =
+        new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+    ImmutableList.Builder<Event> events = new ImmutableList.Builder<>();
+    long previousTimeMs = 0;
+    String line;
+    while ((line = reader.readLine()) != null) {
+      line = line.trim();
+      if (line.isEmpty() || line.startsWith("#")) {
+        continue;
+      }
+      String[] fields = line.split(" +");
+      int typeIndex = getEventTypeIndex(fields.length > 1 ? fields[1] : "");
+      if (typeIndex == C.INDEX_UNSET
+          || fields.length != (typeIndex == EVENT_BYTES_TRANSFERRED ? 4 : 3)) {
+        throw ParserException.createForMalformedDataOfUnknownType(
+            "Malformed trace event: " + line, /* cause= */ null);
+      }
+      @EventType int type = typeIndex;
+      try {
+        long timeMs = Long.parseLong(fields[0]);
+        int sourceId = Integer.parseInt(fields[2]);
+        int bytesTransferred = type == EVENT_BYTES_TRANSFERRED ? Integer.parseInt(fields[3]) : 0;
+        if (timeMs < previousTimeMs || bytesTransferred < 0) {
+          throw ParserException.createForMalformedDataOfUnknownType(
+              "Invalid trace event: " + line, /* cause= */ null);
+        }
+        events.add(new Event(timeMs, type, sourceId, bytesTransferred));
+        previousTimeMs = timeMs;
+      } catch (NumberFormatException e) {
+        throw ParserException.createForMalformedDataOfUnknownType(
+            "Malformed trace event: " + line, e);
+      }
+    }
+    return new BandwidthTrace(events.build());
+  }
+
+  private static int getEventTypeIndex(String name) {
+    for (int i = 0; i < EVENT_NAMES.length; i++) {
+      if (EVENT_NAMES[i].equals(name)) {
+        return i;
+      }
+    }
+    return C.INDEX_UNSET;
+  }
+}
@@ -0,0 +1,622 @@
+/*
+ * Copyright 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.videoplayer.exoplayer.upstream.experimental;
+
+import static com.example.videoplayer.common.util.Assertions.checkArgument;
+
+import android.os.Handler;
+import android.os.Looper;
+import androidx.annotation.Nullable;
+import com.example.videoplayer.common.C;
+import com.example.videoplayer.common.util.Clock;
+import com.example.videoplayer.common.util.HandlerWrapper;
+import com.example.videoplayer.common.util.UnstableApi;
+import com.example.videoplayer.common.util.Util;
+import com.example.videoplayer.datasource.ByteArrayDataSource;
+import com.example.videoplayer.datasource.DataSource;
+import com.example.videoplayer.exoplayer.DefaultLoadControl;
+import com.example.videoplayer.exoplayer.trackselection.AdaptiveTrackSelection;
+import com.google.common.collect.ImmutableList;
+import com.google.common.primitives.Ints;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Scores {@link BandwidthEstimator BandwidthEstimators} by deterministically replaying a {@link
+ * BandwidthTrace} against them.
+ *
+ * <p>Each estimator is scored in two ways:
+ *
+ * <ul>
+ *   <li>Prediction error: the trace is replayed event by event, and the estimate when each transfer
+ *       starts is compared with the throughput that the transfer then achieved.
+ *   <li>Playback outcome: the throughput achieved by the transfers in the trace is used as a model
+ *       of the network, and a playback session is simulated over it. Segments are selected from a
+ *       ladder of bitrates in the same way as {@link AdaptiveTrackSelection} with its default
+ *       parameters, and the simulated downloads are reported to the estimator. The session scores
+ *       the rebuffering and the bitrates that the estimator's predictions led to.
+ * </ul>
+ *
+ * <p>Estimators are driven by a fake {@link Clock} that follows the replayed events, so scores
+ * don't depend on the speed of the device they're computed on.
+ */
+@UnstableApi
+public final class BandwidthTraceEvaluator {
+
+  /** Creates {@link BandwidthEstimator} instances to evaluate. */
+  public interface BandwidthEstimatorFactory {
+
+    /**
+     * Creates a {@link BandwidthEstimator}.
+     *
+     * @param clock The {@link Clock} that the estimator must use.
+     */
+    BandwidthEstimator createBandwidthEstimator(Clock clock);
+  }
+
+  /** Creates {@link BandwidthStatistic} instances to evaluate. */
+  public interface BandwidthStatisticFactory {
+
+    /** Creates a {@link BandwidthStatistic}. */
+    BandwidthStatistic createBandwidthStatistic();
+  }
+
+  /** The score of an estimator. */
+  public static final class Score {
+
+    /** The name of the estimator. */
+    public final String name;
+
+    /** The number of transfers for which the estimator made a prediction. */
+    public final int predictionCount;
+
+    /** The mean absolute error of the predictions, relative to the achieved throughput. */
+    public final double meanAbsolutePredictionError;
+
+    /**
+     * The mean signed error of the predictions, relative to the achieved throughput. Positive if
+     * the estimator overestimates on average.
+     */
+    public final double meanPredictionBias;
+
+    /** The number of times that the simulated playback rebuffered. */
+    public final int rebufferCount;
+
+    /** The total duration of rebuffering in the simulated playback, in milliseconds. */
+    public final long rebufferDurationMs;
+
+    /** The mean bitrate of the segments selected in the simulated playback, in bits per second. */
+    public final long meanSelectedBitrate;
+
+    /** The number of times that the selected bitrate changed in the simulated playback. */
+    public final int switchCount;
+
+    /** Creates an instance. */
+    public Score(
+        String name,
+        int predictionCount,
+        double meanAbsolutePredictionError,
+        double meanPredictionBias,
+        int rebufferCount,
+        long rebufferDurationMs,
+        long meanSelectedBitrate,
+        int switchCount) {
+      this.name = name;
+      this.predictionCount = predictionCount;
+      this.meanAbsolutePredictionError = meanAbsolutePredictionError;
+      this.meanPredictionBias = meanPredictionBias;
+      this.rebufferCount = rebufferCount;
+      this.rebufferDurationMs = rebufferDurationMs;
+      this.meanSelectedBitrate = meanSelectedBitrate;
+      this.switchCount = switchCount;
+    }
+
+    @Override
+    public String toString() {
+      return Util.formatInvariant(
+          "%s: predictions=%d, error=%.3f, bias=%+.3f, rebuffers=%d (%d ms), bitrate=%d,"
+              + " switches=%d",
+          name,
+          predictionCount,
+          meanAbsolutePredictionError,
+          meanPredictionBias,
+          rebufferCount,
+          rebufferDurationMs,
+          meanSelectedBitrate,
+          switchCount);
+    }
+  }
+
+  /** A builder for {@link BandwidthTraceEvaluator} instances. */
+  public static final class Builder {
+
+    private final int[] bitrates;
+
+    private long segmentDurationMs;
+    private long sessionDurationMs;
+    private long initialBitrateEstimate;
+    private float bandwidthFraction;
+
+    /**
+     * Creates a builder.
+     *
+     * @param bitrates The bitrates of the tracks that can be selected in the simulated playback, in
+     *     bits per second.
+     */
+    public Builder(int... bitrates) {
+      checkArgument(bitrates.length > 0);
+      this.bitrates = bitrates.clone();
+      Arrays.sort(this.bitrates);
+      segmentDurationMs = 4_000;
+      sessionDurationMs = C.TIME_UNSET;
+      initialBitrateEstimate = ExperimentalBandwidthMeter.DEFAULT_INITIAL_BITRATE_ESTIMATE;
+      bandwidthFraction = AdaptiveTrackSelection.DEFAULT_BANDWIDTH_FRACTION;
+    }
+
+    /**
+     * Sets the duration of the segments in the simulated playback. The default is 4 seconds.
+     *
+     * @param segmentDurationMs The segment duration, in milliseconds.
+     * @return This builder for convenience.
+     */
+    public Builder setSegmentDurationMs(long segmentDurationMs) {
+      checkArgument(segmentDurationMs > 0);
+      this.segmentDurationMs = segmentDurationMs;
+      return this;
+    }
+
+    /**
+     * Sets the duration of the simulated playback. The network model repeats if the session is
+     * longer than the trace. The default is {@link C#TIME_UNSET}, in which case the session lasts
+     * as long as the network model derived from the trace.
+     *
+     * @param sessionDurationMs The session duration, in milliseconds, or {@link C#TIME_UNSET}.
+     * @return This builder for convenience.
+     */
+    public Builder setSessionDurationMs(long sessionDurationMs) {
+      checkArgument(sessionDurationMs > 0 || sessionDurationMs == C.TIME_UNSET);
+      this.sessionDurationMs = sessionDurationMs;
+      return this;
+    }
+
+    /**
+     * Sets the estimate that's used in the simulated playback while the estimator doesn't have one.
+     * The default is {@link ExperimentalBandwidthMeter#DEFAULT_INITIAL_BITRATE_ESTIMATE}.
+     *
+     * @param initialBitrateEstimate The initial estimate, in bits per second.
+     * @return This builder for convenience.
+     */
+    public Builder setInitialBitrateEstimate(long initialBitrateEstimate) {
+      this.initialBitrateEstimate = initialBitrateEstimate;
+      return this;
+    }
+
+    /**
+     * Sets the fraction of the estimate that's considered available in the simulated playback. The
+     * default is {@link AdaptiveTrackSelection#DEFAULT_BANDWIDTH_FRACTION}.
+     *
+     * @param bandwidthFraction The fraction.
+     * @return This builder for convenience.
+     */
+    public Builder setBandwidthFraction(float bandwidthFraction) {
+      checkArgument(bandwidthFraction > 0);
+      this.bandwidthFraction = bandwidthFraction;
+      return this;
+    }
+
+    /** Builds the evaluator. */
+    public BandwidthTraceEvaluator build() {
+      return new BandwidthTraceEvaluator(this);
+    }
+  }
+
+  private static final int MIN_DURATION_FOR_QUALITY_INCREASE_MS =
+      AdaptiveTrackSelection.DEFAULT_MIN_DURATION_FOR_QUALITY_INCREASE_MS;
+  private static final int MAX_DURATION_FOR_QUALITY_DECREASE_MS =
+      AdaptiveTrackSelection.DEFAULT_MAX_DURATION_FOR_QUALITY_DECREASE_MS;
+
+  private final int[] bitrates;
+  private final long segmentDurationMs;
+  private final long sessionDurationMs;
+  private final long initialBitrateEstimate;
+  private final float bandwidthFraction;
+
+  private BandwidthTraceEvaluator(Builder builder) {
+    bitrates = builder.bitrates;
+    segmentDurationMs = builder.segmentDurationMs;
+    sessionDurationMs = builder.sessionDurationMs;
+    initialBitrateEstimate = builder.initialBitrateEstimate;
+    bandwidthFraction = builder.bandwidthFraction;
+  }
+
+  /**
+   * Scores each combination of the {@link CombinedParallelSampleBandwidthEstimator} and {@link
+   * SplitParallelSampleBandwidthEstimator} with the given statistics.
+   *
+   * @param trace The trace to replay.
+   * @param statisticFactories Factories of the statistics to evaluate, keyed by name.
+   * @return The scores, named {@code "Combined/<statistic name>"} and {@code "Split/<statistic
+   *     name>"}.
+   * @throws IllegalArgumentException If the trace doesn't contain a completed transfer.
+   */
+  public ImmutableList<Score> evaluateAll(
+      BandwidthTrace trace, Map<String, BandwidthStatisticFactory> statisticFactories) {
+    ImmutableList.Builder<Score> scores = new ImmutableList.Builder<>();
+    for (Map.Entry<String, BandwidthStatisticFactory> entry : statisticFactories.entrySet()) {
+      BandwidthStatisticFactory statisticFactory = entry.getValue();
+      scores.add(
+          evaluate(
+              trace,
+              "Combined/" + entry.getKey(),
+              clock ->
+                  new CombinedParallelSampleBandwidthEstimator.Builder()
+                      .setBandwidthStatistic(statisticFactory.createBandwidthStatistic())
+                      .setClock(clock)
+                      .build()));
+      scores.add(
+          evaluate(
+              trace,
+              "Split/" + entry.getKey(),
+              clock ->
+                  new SplitParallelSampleBandwidthEstimator.Builder()
+                      .setBandwidthStatistic(statisticFactory.createBandwidthStatistic())
+                      .setClock(clock)
+                      .build()));
+    }
+    return scores.build();
+  }
+
+  /**
+   * Scores an estimator.
+   *
+   * @param trace The trace to replay.
+   * @param name The name of the estimator.
+   * @param estimatorFactory A factory of the estimator. It's called once for each replay.
+   * @return The score.
+   * @throws IllegalArgumentException If the trace doesn't contain a completed transfer.
+   */
+  public Score evaluate(
+      BandwidthTrace trace, String name, BandwidthEstimatorFactory estimatorFactory) {
+    NetworkModel networkModel = NetworkModel.fromTrace(trace);
+
+    // Replay the trace, comparing the estimate at the start of each transfer with its throughput.
+    ReplayClock clock = new ReplayClock();
+    BandwidthEstimator estimator = estimatorFactory.createBandwidthEstimator(clock);
+    Map<Integer, Transfer> transfers = new HashMap<>();
+    int predictionCount = 0;
+    double absoluteErrorSum = 0;
+    double errorSum = 0;
+    for (int i = 0; i < trace.events.size(); i++) {
+      BandwidthTrace.Event event = trace.events.get(i);
+      clock.timeMs = event.timeMs;
+      @Nullable Transfer transfer = transfers.get(event.sourceId);
+      switch (event.type) {
+        case BandwidthTrace.EVENT_TRANSFER_INITIALIZING:
+          if (transfer == null) {
+            transfer = new Transfer();
+            transfers.put(event.sourceId, transfer);
+          }
+          estimator.onTransferInitializing(transfer.source);
+          break;
+        case BandwidthTrace.EVENT_TRANSFER_START:
+          if (transfer == null) {
+            transfer = new Transfer();
+            transfers.put(event.sourceId, transfer);
+          }
+          transfer.startTimeMs = event.timeMs;
+          transfer.predictedBitrate = estimator.getBandwidthEstimate();
+          estimator.onTransferStart(transfer.source);
+          break;
+        case BandwidthTrace.EVENT_BYTES_TRANSFERRED:
+          // Events of transfers that started before the trace are ignored.
+          if (transfer != null && transfer.startTimeMs != C.TIME_UNSET) {
+            transfer.bytesTransferred += event.bytesTransferred;
+            estimator.onBytesTransferred(transfer.source, event.bytesTransferred);
+          }
+          break;
+        case BandwidthTrace.EVENT_TRANSFER_END:
+          if (transfer == null || transfer.startTimeMs == C.TIME_UNSET) {
+            break;
+          }
+          estimator.onTransferEnd(transfer.source);
+          transfers.remove(event.sourceId);
+          long durationMs = event.timeMs - transfer.startTimeMs;
+          if (durationMs > 0
+              && transfer.bytesTransferred > 0
+              && transfer.predictedBitrate != BandwidthEstimator.ESTIMATE_NOT_AVAILABLE) {
+            double bitrate = transfer.bytesTransferred * 8000.0 / durationMs;
+            double error = (transfer.predictedBitrate - bitrate) / bitrate;
+            predictionCount++;
+            absoluteErrorSum += Math.abs(error);
+            errorSum += error;
+          }
+          break;
+        default:
+          throw new IllegalStateException();
+      }
+    }
+
+    // Simulate a playback session over the network model, using a new instance of the estimator.
+    clock = new ReplayClock();
+    estimator = estimatorFactory.createBandwidthEstimator(clock);
+    DataSource source = createReplayDataSource();
+    long sessionDurationMs =
+        this.sessionDurationMs != C.TIME_UNSET
+            ? this.sessionDurationMs
+            : networkModel.getPeriodMs();
+    int segmentCount = (int) Math.max(1, Util.ceilDivide(sessionDurationMs, segmentDurationMs));
+    double timeMs = 0;
+    double bufferedDurationMs = 0;
+    boolean started = false;
+    boolean playing = false;
+    int rebufferCount = 0;
+    double rebufferDurationMs = 0;
+    long selectedBitrateSum = 0;
+    int switchCount = 0;
+    int selectedIndex = C.INDEX_UNSET;
+    for (int i = 0; i < segmentCount; i++) {
+      int newSelectedIndex =
+          selectTrack(estimator.getBandwidthEstimate(), selectedIndex, bufferedDurationMs);
+      if (selectedIndex != C.INDEX_UNSET && newSelectedIndex != selectedIndex) {
+        switchCount++;
+      }
+      selectedIndex = newSelectedIndex;
+      selectedBitrateSum += bitrates[selectedIndex];
+
+      long segmentBytes = (long) bitrates[selectedIndex] * segmentDurationMs / 8000;
+      clock.timeMs = (long) timeMs;
+      estimator.onTransferInitializing(source);
+      estimator.onTransferStart(source);
+      double endTimeMs = networkModel.getTransferEndTimeMs(timeMs, segmentBytes * 8);
+      clock.timeMs = (long) endTimeMs;
+      estimator.onBytesTransferred(source, Ints.saturatedCast(segmentBytes));
+      estimator.onTransferEnd(source);
+      double downloadDurationMs = endTimeMs - timeMs;
+      timeMs = endTimeMs;
+
+      if (playing) {
+        bufferedDurationMs -= downloadDurationMs;
+        if (bufferedDurationMs < 0) {
+          rebufferCount++;
+          rebufferDurationMs -= bufferedDurationMs;
+          bufferedDurationMs = 0;
+          playing = false;
+        }
+      } else if (started) {
+        rebufferDurationMs += downloadDurationMs;
+      }
+      bufferedDurationMs += segmentDurationMs;
+      if (!playing) {
+        long bufferForPlaybackMs =
+            started
+                ? DefaultLoadControl.DEFAULT_BUFFER_FOR_PLAYBACK_AFTER_REBUFFER_MS
+                : DefaultLoadControl.DEFAULT_BUFFER_FOR_PLAYBACK_MS;
+        playing = bufferedDurationMs >= bufferForPlaybackMs;
+        started |= playing;
+      }
+      if (playing && bufferedDurationMs > DefaultLoadControl.DEFAULT_MAX_BUFFER_MS) {
+        // Stop loading until the buffer drains.
+        timeMs += bufferedDurationMs - DefaultLoadControl.DEFAULT_MAX_BUFFER_MS;
+        bufferedDurationMs = DefaultLoadControl.DEFAULT_MAX_BUFFER_MS;
+      }
+    }
+
+    return new Score(
+        name,
+        predictionCount,
+        predictionCount > 0 ? absoluteErrorSum / predictionCount : 0,
+        predictionCount > 0 ? errorSum / predictionCount : 0,
+        rebufferCount,
+        (long) rebufferDurationMs,
+        selectedBitrateSum / segmentCount,
+        switchCount);
+  }
+
+  /** Selects a track in the same way as {@link AdaptiveTrackSelection}. */
+  private int selectTrack(long bitrateEstimate, int selectedIndex, double bufferedDurationMs) {
+    if (bitrateEstimate == BandwidthEstimator.ESTIMATE_NOT_AVAILABLE) {
+      bitrateEstimate = initialBitrateEstimate;
+    }
+    long allocatedBitrate = (long) (bitrateEstimate * bandwidthFraction);
+    int idealIndex = 0;
+    for (int i = bitrates.length - 1; i > 0; i--) {
+      if (bitrates[i] <= allocatedBitrate) {
+        idealIndex = i;
+        break;
+      }
+    }
+    if (selectedIndex == C.INDEX_UNSET || idealIndex == selectedIndex) {
+      return idealIndex;
+    }
+    if (idealIndex > selectedIndex && bufferedDurationMs < MIN_DURATION_FOR_QUALITY_INCREASE_MS) {
+      // Not enough is buffered to risk a higher bitrate.
+      return selectedIndex;
+    } else if (idealIndex < selectedIndex
+        && bufferedDurationMs >= MAX_DURATION_FOR_QUALITY_DECREASE_MS) {
+      // Enough is buffered to keep the current bitrate.
+      return selectedIndex;
+    }
+    return idealIndex;
+  }
+
+  /**
+   * A model of the network's capacity over time, derived from the throughput of the transfers in a
+   * trace. While several transfers are in progress their throughputs are summed, and while none is
+   * in progress the capacity is assumed to be unchanged. The model repeats after its period.
+   */
+  private static final class NetworkModel {
+
+    private final long[] intervalEndTimesMs;
+    private final double[] bitsPerMs;
+
+    private NetworkModel(long[] intervalEndTimesMs, double[] bitsPerMs) {
+      this.intervalEndTimesMs = intervalEndTimesMs;
+      this.bitsPerMs = bitsPerMs;
+    }
+
+    public static NetworkModel fromTrace(BandwidthTrace trace) {
+      // Find the completed transfers.
+      List<long[]> transfers = new ArrayList<>();
+      Map<Integer, long[]> activeTransfers = new HashMap<>();
+      for (int i = 0; i < trace.events.size(); i++) {
+        BandwidthTrace.Event event = trace.events.get(i);
+        @Nullable long[] transfer = activeTransfers.get(event.sourceId);
+        if (event.type == BandwidthTrace.EVENT_TRANSFER_START) {
+          // Holds the start time, end time and bytes transferred.
+          activeTransfers.put(event.sourceId, new long[] {event.timeMs, C.TIME_UNSET, 0});
+        } else if (transfer != null && event.type == BandwidthTrace.EVENT_BYTES_TRANSFERRED) {
+          transfer[2] += event.bytesTransferred;
+        } else if (transfer != null && event.type == BandwidthTrace.EVENT_TRANSFER_END) {
+          activeTransfers.remove(event.sourceId);
+          transfer[1] = event.timeMs;
+          if (transfer[1] > transfer[0] && transfer[2] > 0) {
+            transfers.add(transfer);
+          }
+        }
+      }
+      checkArgument(!transfers.isEmpty(), "The trace doesn't contain a completed transfer");
+
+      // Split the trace into intervals in which the same transfers are in progress.
+      TreeSet<Long> boundaryTimesMs = new TreeSet<>();
+      for (int i = 0; i < transfers.size(); i++) {
+        boundaryTimesMs.add(transfers.get(i)[0]);
+        boundaryTimesMs.add(transfers.get(i)[1]);
+      }
+      long startTimeMs = boundaryTimesMs.first();
+      long[] intervalEndTimesMs = new long[boundaryTimesMs.size() - 1];
+      double[] bitsPerMs = new double[intervalEndTimesMs.length];
+      long intervalStartTimeMs = startTimeMs;
+      int intervalIndex = 0;
+      for (long intervalEndTimeMs : boundaryTimesMs.tailSet(startTimeMs, /* inclusive= */ false)) {
+        for (int i = 0; i < transfers.size(); i++) {
+          long[] transfer = transfers.get(i);
+          if (transfer[0] <= intervalStartTimeMs && transfer[1] >= intervalEndTimeMs) {
+            bitsPerMs[intervalIndex] += transfer[2] * 8.0 / (transfer[1] - transfer[0]);
+          }
+        }
+        if (bitsPerMs[intervalIndex] == 0) {
+          // The network was idle, so assume that its capacity was unchanged. A transfer is always
+          // in progress in the first interval.
+          bitsPerMs[intervalIndex] = bitsPerMs[intervalIndex - 1];
+        }
+        intervalEndTimesMs[intervalIndex] = intervalEndTimeMs - startTimeMs;
+        intervalStartTimeMs = intervalEndTimeMs;
+        intervalIndex++;
+      }
+      return new NetworkModel(intervalEndTimesMs, bitsPerMs);
+    }
+
+    /** Returns the period of the model, in milliseconds. */
+    public long getPeriodMs() {
+      return intervalEndTimesMs[intervalEndTimesMs.length - 1];
+    }
+
+    /** Returns the time at which a transfer of {@code bits} that starts at {@code timeMs} ends. */
+    public double getTransferEndTimeMs(double timeMs, long bits) {
+      long periodMs = getPeriodMs();
+      double remainingBits = bits;
+      while (true) {
+        long periodStartTimeMs = (long) (timeMs / periodMs) * periodMs;
+        double positionMs = timeMs - periodStartTimeMs;
+        // The first interval that ends after the position.
+        int intervalIndex =
+            Util.binarySearchFloor(
+                    intervalEndTimesMs,
+                    (long) positionMs,
+                    /* inclusive= */ true,
+                    /* stayInBounds= */ false)
+                + 1;
+        if (intervalIndex == intervalEndTimesMs.length) {
+          // Rounding put the position at the end of the period.
+          timeMs = periodStartTimeMs + periodMs;
+          continue;
+        }
+        double intervalEndTimeMs = periodStartTimeMs + intervalEndTimesMs[intervalIndex];
+        double intervalBits = bitsPerMs[intervalIndex] * (intervalEndTimeMs - timeMs);
+        if (intervalBits >= remainingBits) {
+          return timeMs + remainingBits / bitsPerMs[intervalIndex];
+        }
+        remainingBits -= intervalBits;
+        timeMs = intervalEndTimeMs;
+      }
+    }
+  }
+
+  /** The state of a replayed transfer. */
+  private static final class Transfer {
+
+    public final DataSource source;
+    public long startTimeMs;
+    public long bytesTransferred;
+    public long predictedBitrate;
+
+    public Transfer() {
+      source = createReplayDataSource();
+      startTimeMs = C.TIME_UNSET;
+    }
+  }
+
+  /**
+   * Returns a {@link DataSource} that identifies a replayed transfer to an estimator. Estimators
+   * only use data sources as keys, and the replayed data isn't available, so the source is empty.
+   */
+  private static DataSource createReplayDataSource() {
+    return new ByteArrayDataSource(/* uriResolver= */ uri -> Util.EMPTY_BYTE_ARRAY);
+  }
+
+  /**
+   * A {@link Clock} whose time is set by the replay.
+   *
+   * <p>Estimators don't post messages, so handlers are created as by {@link Clock#DEFAULT}, and
+   * deliver messages in real time rather than replayed time.
+   */
+  private static final class ReplayClock implements Clock {
+
+    public long timeMs;
+
+    @Override
+    public long currentTimeMillis() {
+      return timeMs;
+    }
+
+    @Override
+    public long elapsedRealtime() {
+      return timeMs;
+    }
+
+    @Override
+    public long uptimeMillis() {
+      return timeMs;
+    }
+
+    @Override
+    public long nanoTime() {
+      return timeMs * 1_000_000;
+    }
+
+    @Override
+    public HandlerWrapper createHandler(Looper looper, @Nullable Handler.Callback callback) {
+      return Clock.DEFAULT.createHandler(looper, callback);
+    }
+
+    @Override
+    public void onThreadBlocked() {}
+  }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.videoplayer.exoplayer.upstream.experimental;
+
+import static com.example.videoplayer.common.util.Assertions.checkArgument;
+
+import androidx.annotation.GuardedBy;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import com.example.videoplayer.common.C;
+import com.example.videoplayer.common.util.Clock;
+import com.example.videoplayer.common.util.UnstableApi;
+import com.example.videoplayer.datasource.DataSource;
+import com.example.videoplayer.datasource.DataSpec;
+import com.example.videoplayer.datasource.TransferListener;
+import com.google.common.collect.MapMaker;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Map;
+
+/**
+ * A {@link TransferListener} that records the transfers it's notified of into a {@link
+ * BandwidthTrace}.
+ *
+ * <p>Only transfers that a bandwidth meter would observe are recorded, which are network transfers
+ * without {@link DataSpec#FLAG_MIGHT_NOT_USE_FULL_NETWORK_SPEED}. Event times are relative to the
+ * first recorded event.
+ *
+ * <p>Only the most recent events are kept, up to a capacity. The transfers whose first events were
+ * dropped are ignored when the trace is replayed by a {@link BandwidthTraceEvaluator}.
+ */
+@UnstableApi
+public final class BandwidthTraceRecorder implements TransferListener {
+
+  /** The default maximum number of events that are kept. */
+  public static final int DEFAULT_CAPACITY = 100_000;
+
+  private final int capacity;
+  private final Clock clock;
+
+  @GuardedBy("this")
+  private final ArrayDeque<BandwidthTrace.Event> events;
+
+  // Keyed weakly by identity, so that sources whose transfers never end aren't retained.
+  @GuardedBy("this")
+  private final Map<DataSource, Integer> sourceIds;
+
+  @GuardedBy("this")
+  private long startTimeMs;
+
+  @GuardedBy("this")
+  private int nextSourceId;
+
+  /** Creates an instance that keeps {@link #DEFAULT_CAPACITY} events. */
+  public BandwidthTraceRecorder() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Creates an instance.
+   *
+   * @param capacity The maximum number of events that are kept. Older events are dropped.
+   */
+  public BandwidthTraceRecorder(int capacity) {
+    this(capacity, Clock.DEFAULT);
+  }
+
+  @VisibleForTesting
+  /* package */ BandwidthTraceRecorder(int capacity, Clock clock) {
+    checkArgument(capacity > 0);
+    this.capacity = capacity;
+    this.clock = clock;
+    events = new ArrayDeque<>();
+    sourceIds = new MapMaker().weakKeys().makeMap();
+    startTimeMs = C.TIME_UNSET;
+  }
+
+  /** Returns a trace of the most recent transfers recorded so far. */
+  public synchronized BandwidthTrace getTrace() {
+    return new BandwidthTrace(new ArrayList<>(events));
+  }
+
+  /** Discards the transfers recorded so far. */
+  public synchronized void clear() {
+    events.clear();
+    sourceIds.clear();
+    startTimeMs = C.TIME_UNSET;
+  }
+
+  @Override
+  public synchronized void onTransferInitializing(
+      DataSource source, DataSpec dataSpec, boolean isNetwork) {
+    if (isTransferAtFullNetworkSpeed(dataSpec, isNetwork)) {
+      addEvent(BandwidthTrace.EVENT_TRANSFER_INITIALIZING, source, /* bytesTransferred= */ 0);
+    }
+  }
+
+  @Override
+  public synchronized void onTransferStart(
+      DataSource source, DataSpec dataSpec, boolean isNetwork) {
+    if (isTransferAtFullNetworkSpeed(dataSpec, isNetwork)) {
+      addEvent(BandwidthTrace.EVENT_TRANSFER_START, source, /* bytesTransferred= */ 0);
+    }
+  }
+
+  @Override
+  public synchronized void onBytesTransferred(
+      DataSource source, DataSpec dataSpec, boolean isNetwork, int bytesTransferred) {
+    if (isTransferAtFullNetworkSpeed(dataSpec, isNetwork)) {
+      addEvent(BandwidthTrace.EVENT_BYTES_TRANSFERRED, source, bytesTransferred);
+    }
+  }
+
+  @Override
+  public synchronized void onTransferEnd(DataSource source, DataSpec dataSpec, boolean isNetwork) {
+    if (isTransferAtFullNetworkSpeed(dataSpec, isNetwork)) {
+      addEvent(BandwidthTrace.EVENT_TRANSFER_END, source, /* bytesTransferred= */ 0);
+      // The source may be reused for another transfer, which is recorded as a different source.
+      sourceIds.remove(source);
+    }
+  }
+
+  @GuardedBy("this")
+  private void addEvent(
+      @BandwidthTrace.EventType int type, DataSource source, int bytesTransferred) {
+    long nowMs = clock.elapsedRealtime();
+    if (startTimeMs == C.TIME_UNSET) {
+      startTimeMs = nowMs;
+    }
+    @Nullable Integer sourceId = sourceIds.get(source);
+    if (sourceId == null) {
+      sourceId = nextSourceId++;
+      sourceIds.put(source, sourceId);
+    }
+    if (events.size() == capacity) {
+      events.removeFirst();
+    }
+    events.addLast(
+        new BandwidthTrace.Event(nowMs - startTimeMs, type, sourceId, bytesTransferred));
+  }
+
+  private static boolean isTransferAtFullNetworkSpeed(DataSpec dataSpec, boolean isNetwork) {
+    return isNetwork && !dataSpec.isFlagSet(DataSpec.FLAG_MIGHT_NOT_USE_FULL_NETWORK_SPEED);
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.videoplayer.exoplayer.upstream.experimental;
+
+import static com.example.videoplayer.common.util.Assertions.checkArgument;
+import static com.example.videoplayer.exoplayer.upstream.experimental.BandwidthEstimator.ESTIMATE_NOT_AVAILABLE;
+
+import com.example.videoplayer.common.util.UnstableApi;
+
+/**
+ * A {@link BandwidthStatistic} that estimates bandwidth as the harmonic mean of a sliding window of
+ * samples, discounted when the samples vary widely.
+ *
+ * <p>The harmonic mean is dominated by the slowest samples, so it's robust to short bursts of high
+ * throughput that would otherwise lead to selecting a bitrate the network can't sustain. If the
+ * coefficient of variation (the standard deviation divided by the mean) of the samples exceeds a
+ * threshold, the estimate is additionally divided by one plus the excess, so that the estimate is
+ * more conservative when throughput is unstable.
+ */
+@UnstableApi
+public class HarmonicMeanBandwidthStatistic implements BandwidthStatistic {
+
+  /** The default maximum number of samples. */
+  public static final int DEFAULT_MAX_SAMPLES_COUNT = 5;
+
+  /** The default coefficient of variation above which the estimate is discounted. */
+  public static final double DEFAULT_MAX_COEFFICIENT_OF_VARIATION = 0.25;
+
+  private final double maxCoefficientOfVariation;
+  private final long[] bitrates;
+
+  private int nextSampleIndex;
+  private int sampleCount;
+  private long bitrateEstimate;
+
+  /**
+   * Creates an instance with a maximum of {@link #DEFAULT_MAX_SAMPLES_COUNT} samples, discounting
+   * the estimate above {@link #DEFAULT_MAX_COEFFICIENT_OF_VARIATION}.
+   */
+  public HarmonicMeanBandwidthStatistic() {
+    this(DEFAULT_MAX_SAMPLES_COUNT, DEFAULT_MAX_COEFFICIENT_OF_VARIATION);
+  }
+
+  /**
+   * Creates an instance.
+   *
+   * @param maxSampleCount The maximum number of samples.
+   * @param maxCoefficientOfVariation The coefficient of variation of the samples above which the
+   *     estimate is discounted. Must not be negative.
+   */
+  public HarmonicMeanBandwidthStatistic(int maxSampleCount, double maxCoefficientOfVariation) {
+    checkArgument(maxSampleCount > 0 && maxCoefficientOfVariation >= 0);
+    this.maxCoefficientOfVariation = maxCoefficientOfVariation;
+    bitrates = new long[maxSampleCount];
+    bitrateEstimate = ESTIMATE_NOT_AVAILABLE;
+  }
+
+  @Override
+  public void addSample(long bytes, long durationUs) {
+    if (durationUs == 0) {
+      // The bitrate is undefined.
+      return;
+    }
+    // Clamp to 1 bps, so that the harmonic mean is defined.
+    bitrates[nextSampleIndex] = Math.max(1, bytes * 8_000_000 / durationUs);
+    nextSampleIndex = (nextSampleIndex + 1) % bitrates.length;
+    sampleCount = Math.min(sampleCount + 1, bitrates.length);
+    bitrateEstimate = calculateBitrateEstimate();
+  }
+
+  @Override
+  public long getBandwidthEstimate() {
+    return bitrateEstimate;
+  }
+
+  @Override
+  public void reset() {
+    nextSampleIndex = 0;
+    sampleCount = 0;
+    bitrateEstimate = ESTIMATE_NOT_AVAILABLE;
+  }
+
+  private long calculateBitrateEstimate() {
+    double reciprocalSum = 0;
+    double sum = 0;
+    double squareSum = 0;
+    for (int i = 0; i < sampleCount; i++) {
+      double bitrate = bitrates[i];
+      reciprocalSum += 1 / bitrate;
+      sum += bitrate;
+      squareSum += bitrate * bitrate;
+    }
+    double harmonicMean = sampleCount / reciprocalSum;
+    double mean = sum / sampleCount;
+    double variance = Math.max(0, squareSum / sampleCount - mean * mean);
+    double coefficientOfVariation = Math.sqrt(variance) / mean;
+    double excessVariation = Math.max(0, coefficientOfVariation - maxCoefficientOfVariation);
+    return (long) (harmonicMean / (1 + excessVariation));
+  }
+}
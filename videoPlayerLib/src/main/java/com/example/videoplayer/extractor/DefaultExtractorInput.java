@@ -17,6 +17,7 @@ package com.example.videoplayer.extractor;
 
 import static java.lang.Math.min;
 
+import androidx.annotation.Nullable;
 import com.example.videoplayer.common.C;
 import com.example.videoplayer.common.DataReader;
 import com.example.videoplayer.common.MediaLibraryInfo;
@@ -26,6 +27,7 @@ import com.example.videoplayer.common.util.Util;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 /** An {@link ExtractorInput} that wraps a {@link DataReader}. */
@@ -40,6 +42,13 @@ public final class DefaultExtractorInput implements ExtractorInput {
   private static final int PEEK_MAX_FREE_SPACE = 512 * 1024;
   private static final int SCRATCH_SPACE_SIZE = 4096;
 
+  /**
+   * The maximum number of bytes requested from {@link DataReader#readBuffer(int)} at a time when
+   * skipping. A reader may fall back to copying into a newly allocated array, so larger skips are
+   * split into requests of at most this size.
+   */
+  private static final int MAX_SKIP_BUFFER_LENGTH = 64 * 1024;
+
   private final byte[] scratchSpace;
   private final DataReader dataReader;
   private final long streamLength;
@@ -74,6 +83,36 @@ public final class DefaultExtractorInput implements ExtractorInput {
     return bytesRead;
   }
 
+  /**
+   * {@inheritDoc}
+   *
+   * <p>Zero-copy reads are supported if the wrapped {@link DataReader} supports them and there is no
+   * peeked data, since peeked data has already been copied into the peek buffer.
+   */
+  @Override
+  public boolean isZeroCopyReadSupported() {
+    return peekBufferLength == 0 && dataReader.isZeroCopyReadSupported();
+  }
+
+  @Override
+  @Nullable
+  public ByteBuffer readBuffer(int length) throws IOException {
+    if (peekBufferLength > 0) {
+      byte[] buffer = new byte[min(peekBufferLength, length)];
+      int bytesRead = readFromPeekBuffer(buffer, /* offset= */ 0, buffer.length);
+      commitBytesRead(bytesRead);
+      return ByteBuffer.wrap(buffer);
+    }
+    if (Thread.interrupted()) {
+      throw new InterruptedIOException();
+    }
+    @Nullable ByteBuffer buffer = dataReader.readBuffer(length);
+    if (buffer != null) {
+      commitBytesRead(buffer.remaining());
+    }
+    return buffer;
+  }
+
   @Override
   public boolean readFully(byte[] target, int offset, int length, boolean allowEndOfInput)
       throws IOException {
@@ -94,7 +133,10 @@ public final class DefaultExtractorInput implements ExtractorInput {
   public int skip(int length) throws IOException {
     int bytesSkipped = skipFromPeekBuffer(length);
     if (bytesSkipped == 0) {
-      bytesSkipped = readFromUpstream(scratchSpace, 0, min(length, scratchSpace.length), 0, true);
+      bytesSkipped =
+          dataReader.isZeroCopyReadSupported()
+              ? skipFromUpstream(length, /* bytesAlreadySkipped= */ 0, /* allowEndOfInput= */ true)
+              : readFromUpstream(scratchSpace, 0, min(length, scratchSpace.length), 0, true);
     }
     commitBytesRead(bytesSkipped);
     return bytesSkipped;
@@ -104,9 +146,13 @@ public final class DefaultExtractorInput implements ExtractorInput {
   public boolean skipFully(int length, boolean allowEndOfInput) throws IOException {
     int bytesSkipped = skipFromPeekBuffer(length);
     while (bytesSkipped < length && bytesSkipped != C.RESULT_END_OF_INPUT) {
-      int minLength = min(length, bytesSkipped + scratchSpace.length);
-      bytesSkipped =
-          readFromUpstream(scratchSpace, -bytesSkipped, minLength, bytesSkipped, allowEndOfInput);
+      if (dataReader.isZeroCopyReadSupported()) {
+        bytesSkipped = skipFromUpstream(length, bytesSkipped, allowEndOfInput);
+      } else {
+        int minLength = min(length, bytesSkipped + scratchSpace.length);
+        bytesSkipped =
+            readFromUpstream(scratchSpace, -bytesSkipped, minLength, bytesSkipped, allowEndOfInput);
+      }
     }
     commitBytesRead(bytesSkipped);
     return bytesSkipped != C.RESULT_END_OF_INPUT;
@@ -305,6 +351,39 @@ public final class DefaultExtractorInput implements ExtractorInput {
     return bytesAlreadyRead + bytesRead;
   }
 
+  /**
+   * Skips from the upstream {@link DataReader} using {@link DataReader#readBuffer(int)}, which
+   * avoids copying the skipped data into {@link #scratchSpace}. At most {@link
+   * #MAX_SKIP_BUFFER_LENGTH} bytes are skipped per call.
+   *
+   * @param length The maximum number of bytes to skip, including {@code bytesAlreadySkipped}.
+   * @param bytesAlreadySkipped The number of bytes already skipped.
+   * @param allowEndOfInput True if encountering the end of the input having skipped no data is
+   *     allowed, and should result in {@link C#RESULT_END_OF_INPUT} being returned. False if it
+   *     should be considered an error, causing an {@link EOFException} to be thrown.
+   * @return The total number of bytes skipped so far, or {@link C#RESULT_END_OF_INPUT} if {@code
+   *     allowEndOfInput} is true and the input has ended having skipped no bytes.
+   * @throws EOFException If the end of input was encountered having partially satisfied the skip,
+   *     or if no bytes were skipped and {@code allowEndOfInput} is false.
+   * @throws IOException If an error occurs reading from the input.
+   */
+  private int skipFromUpstream(int length, int bytesAlreadySkipped, boolean allowEndOfInput)
+      throws IOException {
+    if (Thread.interrupted()) {
+      throw new InterruptedIOException();
+    }
+    @Nullable
+    ByteBuffer buffer =
+        dataReader.readBuffer(min(length - bytesAlreadySkipped, MAX_SKIP_BUFFER_LENGTH));
+    if (buffer == null) {
+      if (bytesAlreadySkipped == 0 && allowEndOfInput) {
+        return C.RESULT_END_OF_INPUT;
+      }
+      throw new EOFException();
+    }
+    return bytesAlreadySkipped + buffer.remaining();
+  }
+
   /**
    * Advances the position by the specified number of bytes read.
    *
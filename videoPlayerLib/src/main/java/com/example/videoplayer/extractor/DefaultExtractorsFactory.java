@@ -156,6 +156,7 @@ public final class DefaultExtractorsFactory implements ExtractorsFactory {
   private SubtitleParser.Factory subtitleParserFactory;
   private @C.VideoCodecFlags int codecsToParseWithinGopSampleDependencies;
   private @JpegExtractor.Flags int jpegFlags;
+  @Nullable private SeekIndexStore seekIndexStore;
 
   public DefaultExtractorsFactory() {
     tsMode = TsExtractor.MODE_SINGLE_PMT;
@@ -411,6 +412,22 @@ public final class DefaultExtractorsFactory implements ExtractorsFactory {
     return this;
   }
 
+  /**
+   * Sets a {@link SeekIndexStore} in which {@link MatroskaExtractor} and {@link Mp4Extractor}
+   * instances created by the factory persist the seek indices that they build, keyed by the URI of
+   * the stream. The store isn't used for streams whose URI is unknown.
+   *
+   * @see MatroskaExtractor#setSeekIndexStore(SeekIndexStore, String)
+   * @see Mp4Extractor#setSeekIndexStore(SeekIndexStore, String)
+   * @param seekIndexStore The {@link SeekIndexStore}, or {@code null} to not persist seek indices.
+   * @return The factory, for convenience.
+   */
+  public synchronized DefaultExtractorsFactory setSeekIndexStore(
+      @Nullable SeekIndexStore seekIndexStore) {
+    this.seekIndexStore = seekIndexStore;
+    return this;
+  }
+
   @Override
   public synchronized Extractor[] createExtractors() {
     return createExtractors(Uri.EMPTY, new HashMap<>());
@@ -421,28 +438,30 @@ public final class DefaultExtractorsFactory implements ExtractorsFactory {
       Uri uri, Map<String, List<String>> responseHeaders) {
     List<Extractor> extractors =
         new ArrayList<>(/* initialCapacity= */ DEFAULT_EXTRACTOR_ORDER.length);
+    @Nullable String seekIndexKey = uri.equals(Uri.EMPTY) ? null : uri.toString();
 
     @FileTypes.Type
     int responseHeadersInferredFileType = inferFileTypeFromResponseHeaders(responseHeaders);
     if (responseHeadersInferredFileType != FileTypes.UNKNOWN) {
-      addExtractorsForFileType(responseHeadersInferredFileType, extractors);
+      addExtractorsForFileType(responseHeadersInferredFileType, seekIndexKey, extractors);
     }
 
     @FileTypes.Type int uriInferredFileType = inferFileTypeFromUri(uri);
     if (uriInferredFileType != FileTypes.UNKNOWN
         && uriInferredFileType != responseHeadersInferredFileType) {
-      addExtractorsForFileType(uriInferredFileType, extractors);
+      addExtractorsForFileType(uriInferredFileType, seekIndexKey, extractors);
     }
 
     for (int fileType : DEFAULT_EXTRACTOR_ORDER) {
       if (fileType != responseHeadersInferredFileType && fileType != uriInferredFileType) {
-        addExtractorsForFileType(fileType, extractors);
+        addExtractorsForFileType(fileType, seekIndexKey, extractors);
       }
     }
     return extractors.toArray(new Extractor[0]);
   }
 
-  private void addExtractorsForFileType(@FileTypes.Type int fileType, List<Extractor> extractors) {
+  private void addExtractorsForFileType(
+      @FileTypes.Type int fileType, @Nullable String seekIndexKey, List<Extractor> extractors) {
     switch (fileType) {
       case FileTypes.AC3:
         extractors.add(new Ac3Extractor());
@@ -484,13 +503,17 @@ public final class DefaultExtractorsFactory implements ExtractorsFactory {
         extractors.add(new FlvExtractor());
         break;
       case FileTypes.MATROSKA:
-        extractors.add(
+        MatroskaExtractor matroskaExtractor =
             new MatroskaExtractor(
                 subtitleParserFactory,
                 matroskaFlags
                     | (textTrackTranscodingEnabled
                         ? 0
-                        : MatroskaExtractor.FLAG_EMIT_RAW_SUBTITLE_DATA)));
+                        : MatroskaExtractor.FLAG_EMIT_RAW_SUBTITLE_DATA));
+        if (seekIndexStore != null && seekIndexKey != null) {
+          matroskaExtractor.setSeekIndexStore(seekIndexStore, seekIndexKey);
+        }
+        extractors.add(matroskaExtractor);
         break;
       case FileTypes.MP3:
         extractors.add(
@@ -513,7 +536,7 @@ public final class DefaultExtractorsFactory implements ExtractorsFactory {
                     | (textTrackTranscodingEnabled
                         ? 0
                         : FragmentedMp4Extractor.FLAG_EMIT_RAW_SUBTITLE_DATA)));
-        extractors.add(
+        Mp4Extractor mp4Extractor =
             new Mp4Extractor(
                 subtitleParserFactory,
                 mp4Flags
@@ -521,7 +544,11 @@ public final class DefaultExtractorsFactory implements ExtractorsFactory {
                         codecsToParseWithinGopSampleDependencies)
                     | (textTrackTranscodingEnabled
                         ? 0
-                        : Mp4Extractor.FLAG_EMIT_RAW_SUBTITLE_DATA)));
+                        : Mp4Extractor.FLAG_EMIT_RAW_SUBTITLE_DATA));
+        if (seekIndexStore != null && seekIndexKey != null) {
+          mp4Extractor.setSeekIndexStore(seekIndexStore, seekIndexKey);
+        }
+        extractors.add(mp4Extractor);
         break;
       case FileTypes.OGG:
         extractors.add(new OggExtractor());
@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.videoplayer.extractor;
+
+import static com.example.videoplayer.common.util.Assertions.checkArgument;
+
+import androidx.annotation.Nullable;
+import com.example.videoplayer.common.util.AtomicFile;
+import com.example.videoplayer.common.util.Log;
+import com.example.videoplayer.common.util.UnstableApi;
+import com.example.videoplayer.common.util.Util;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A {@link SeekIndexStore} that stores each index in its own file in a directory.
+ *
+ * <p>File names are derived from a hash of the key, and each file also records its key so that
+ * hash collisions can be detected. Once more than the maximum number of indices are stored, the
+ * least recently used ones are deleted.
+ */
+@UnstableApi
+public final class FileSeekIndexStore implements SeekIndexStore {
+
+  /** The default maximum number of stored indices. */
+  public static final int DEFAULT_MAX_ENTRIES = 64;
+
+  private static final String TAG = "FileSeekIndexStore";
+  private static final String FILE_SUFFIX = ".idx";
+
+  private final File directory;
+  private final int maxEntries;
+
+  /**
+   * Creates an instance that stores up to {@link #DEFAULT_MAX_ENTRIES} indices.
+   *
+   * @param directory The directory in which to store indices. It's created if it doesn't exist, and
+   *     should not be used for anything else.
+   */
+  public FileSeekIndexStore(File directory) {
+    this(directory, DEFAULT_MAX_ENTRIES);
+  }
+
+  /**
+   * Creates an instance.
+   *
+   * @param directory The directory in which to store indices. It's created if it doesn't exist, and
+   *     should not be used for anything else.
+   * @param maxEntries The maximum number of stored indices.
+   */
+  public FileSeekIndexStore(File directory, int maxEntries) {
+    checkArgument(maxEntries > 0);
+    this.directory = directory;
+    this.maxEntries = maxEntries;
+  }
+
+  @Override
+  @Nullable
+  public synchronized byte[] get(String key) {
+    File file = getFile(key);
+    AtomicFile atomicFile = new AtomicFile(file);
+    if (!atomicFile.exists()) {
+      return null;
+    }
+    @Nullable DataInputStream input = null;
+    try {
+      input = new DataInputStream(new BufferedInputStream(atomicFile.openRead()));
+      if (!key.equals(input.readUTF())) {
+        return null;
+      }
+      byte[] index = new byte[input.readInt()];
+      input.readFully(index);
+      // Record the access, so that the least recently used indices are deleted first.
+      file.setLastModified(System.currentTimeMillis());
+      return index;
+    } catch (IOException | RuntimeException e) {
+      Log.w(TAG, "Failed to read seek index. Deleting " + file, e);
+      atomicFile.delete();
+      return null;
+    } finally {
+      Util.closeQuietly(input);
+    }
+  }
+
+  @Override
+  public synchronized void put(String key, byte[] index) {
+    if (!directory.exists() && !directory.mkdirs()) {
+      Log.w(TAG, "Failed to create directory " + directory);
+      return;
+    }
+    AtomicFile atomicFile = new AtomicFile(getFile(key));
+    @Nullable DataOutputStream output = null;
+    try {
+      output = new DataOutputStream(new BufferedOutputStream(atomicFile.startWrite()));
+      output.writeUTF(key);
+      output.writeInt(index.length);
+      output.write(index);
+      atomicFile.endWrite(output);
+      // Avoid calling close twice.
+      output = null;
+    } catch (IOException e) {
+      Log.w(TAG, "Failed to write seek index for " + key, e);
+    } finally {
+      Util.closeQuietly(output);
+    }
+    evictLeastRecentlyUsed();
+  }
+
+  @Override
+  public synchronized void remove(String key) {
+    new AtomicFile(getFile(key)).delete();
+  }
+
+  private File getFile(String key) {
+    return new File(directory, Integer.toHexString(key.hashCode()) + FILE_SUFFIX);
+  }
+
+  private void evictLeastRecentlyUsed() {
+    @Nullable File[] files = directory.listFiles((dir, name) -> name.endsWith(FILE_SUFFIX));
+    if (files == null || files.length <= maxEntries) {
+      return;
+    }
+    long[] lastModifiedTimes = new long[files.length];
+    for (int i = 0; i < files.length; i++) {
+      lastModifiedTimes[i] = files[i].lastModified();
+    }
+    long[] sortedTimes = lastModifiedTimes.clone();
+    Arrays.sort(sortedTimes);
+    long threshold = sortedTimes[files.length - maxEntries - 1];
+    for (int i = 0; i < files.length; i++) {
+      if (lastModifiedTimes[i] <= threshold) {
+        new AtomicFile(files[i]).delete();
+      }
+    }
+  }
+}
@@ -15,8 +15,10 @@
  */
 package com.example.videoplayer.extractor;
 
+import androidx.annotation.Nullable;
 import com.example.videoplayer.common.util.UnstableApi;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 /** An overridable {@link ExtractorInput} implementation forwarding all methods to another input. */
 @UnstableApi
@@ -33,6 +35,17 @@ public class ForwardingExtractorInput implements ExtractorInput {
     return input.read(buffer, offset, length);
   }
 
+  @Override
+  public boolean isZeroCopyReadSupported() {
+    return input.isZeroCopyReadSupported();
+  }
+
+  @Override
+  @Nullable
+  public ByteBuffer readBuffer(int length) throws IOException {
+    return input.readBuffer(length);
+  }
+
   @Override
   public boolean readFully(byte[] target, int offset, int length, boolean allowEndOfInput)
       throws IOException {
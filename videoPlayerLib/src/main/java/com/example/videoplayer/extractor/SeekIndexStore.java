@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.videoplayer.extractor;
+
+import androidx.annotation.Nullable;
+import com.example.videoplayer.common.util.UnstableApi;
+
+/**
+ * Persists the seek indices that extractors build while parsing a stream, so that they don't need
+ * to be rebuilt when the same stream is opened again.
+ *
+ * <p>Indices are opaque, versioned binary blobs whose format is defined by the extractor that
+ * stores them. Extractors validate an index against the stream before using it, and ignore it if
+ * it doesn't match.
+ *
+ * <p>Methods are called on extractors' loading threads, so implementations must be thread-safe.
+ */
+@UnstableApi
+public interface SeekIndexStore {
+
+  /**
+   * Returns the index stored for the given key, or null if there isn't one.
+   *
+   * @param key The key that identifies the stream.
+   * @return The stored index, or null.
+   */
+  @Nullable
+  byte[] get(String key);
+
+  /**
+   * Stores an index, replacing any that's already stored for the given key.
+   *
+   * @param key The key that identifies the stream.
+   * @param index The index.
+   */
+  void put(String key, byte[] index);
+
+  /**
+   * Removes the index stored for the given key, if there is one.
+   *
+   * @param key The key that identifies the stream.
+   */
+  void remove(String key);
+}
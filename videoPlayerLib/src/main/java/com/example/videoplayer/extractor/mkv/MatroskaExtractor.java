@@ -53,12 +53,17 @@ import com.example.videoplayer.extractor.ExtractorsFactory;
 import com.example.videoplayer.extractor.HevcConfig;
 import com.example.videoplayer.extractor.MpegAudioUtil;
 import com.example.videoplayer.extractor.PositionHolder;
+import com.example.videoplayer.extractor.SeekIndexStore;
 import com.example.videoplayer.extractor.SeekMap;
 import com.example.videoplayer.extractor.TrackOutput;
 import com.example.videoplayer.extractor.TrueHdSampleRechunker;
 import com.example.videoplayer.extractor.text.SubtitleParser;
 import com.example.videoplayer.extractor.text.SubtitleTranscodingExtractorOutput;
 import com.google.common.collect.ImmutableList;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.lang.annotation.Documented;
 import java.lang.annotation.Retention;
@@ -128,6 +133,9 @@ public class MatroskaExtractor implements Extractor {
 
   private static final String TAG = "MatroskaExtractor";
 
+  /** The version of the format in which cues are persisted to a {@link SeekIndexStore}. */
+  private static final int SEEK_INDEX_VERSION = 1;
+
   private static final int UNSET_ENTRY_ID = -1;
 
   private static final int BLOCK_STATE_START = 0;
@@ -492,6 +500,10 @@ public class MatroskaExtractor implements Extractor {
   // Extractor outputs.
   private  ExtractorOutput extractorOutput;
 
+  // Persisted seek index.
+  @Nullable private SeekIndexStore seekIndexStore;
+  @Nullable private String seekIndexKey;
+
   /**
    * @deprecated Use {@link #MatroskaExtractor(SubtitleParser.Factory)} instead.
    */
@@ -554,6 +566,21 @@ public class MatroskaExtractor implements Extractor {
     blockSampleSizes = new int[1];
   }
 
+  /**
+   * Sets a {@link SeekIndexStore} in which the seek index built from the Cues element is persisted.
+   * If the store holds a matching index when the stream is opened again, then it's used instead of
+   * seeking to and parsing the Cues element.
+   *
+   * <p>Must be called before {@link #init(ExtractorOutput)}.
+   *
+   * @param seekIndexStore The {@link SeekIndexStore}.
+   * @param key The key that identifies the stream in the store.
+   */
+  public final void setSeekIndexStore(SeekIndexStore seekIndexStore, String key) {
+    this.seekIndexStore = seekIndexStore;
+    this.seekIndexKey = key;
+  }
+
   @Override
   public final boolean sniff(ExtractorInput input) throws IOException {
     return new Sniffer().sniff(input);
@@ -759,7 +786,12 @@ public class MatroskaExtractor implements Extractor {
       case ID_CLUSTER:
         if (!sentSeekMap) {
           // We need to build cues before parsing the cluster.
-          if (seekForCuesEnabled && cuesContentPosition != C.INDEX_UNSET) {
+          @Nullable ChunkIndex storedSeekIndex = loadSeekIndex();
+          if (storedSeekIndex != null) {
+            // The cues were built when the stream was previously opened.
+            extractorOutput.seekMap(storedSeekIndex);
+            sentSeekMap = true;
+          } else if (seekForCuesEnabled && cuesContentPosition != C.INDEX_UNSET) {
             // We know where the Cues element is located. Seek to request it.
             seekForCues = true;
           } else {
@@ -821,8 +853,12 @@ public class MatroskaExtractor implements Extractor {
         break;
       case ID_CUES:
         if (!sentSeekMap) {
-          extractorOutput.seekMap(buildSeekMap(cueTimesUs, cueClusterPositions));
+          SeekMap seekMap = buildSeekMap(cueTimesUs, cueClusterPositions);
+          extractorOutput.seekMap(seekMap);
           sentSeekMap = true;
+          if (seekMap instanceof ChunkIndex) {
+            storeSeekIndex((ChunkIndex) seekMap);
+          }
         } else {
           // We have already built the cues. Ignore.
         }
@@ -1925,6 +1961,75 @@ public class MatroskaExtractor implements Extractor {
     return new ChunkIndex(sizes, offsets, durationsUs, timesUs);
   }
 
+  /**
+   * Returns the seek index persisted in the {@link #seekIndexStore}, or null if there's no store,
+   * no persisted index, or if the persisted index doesn't match the stream.
+   */
+  @Nullable
+  private ChunkIndex loadSeekIndex() {
+    if (seekIndexStore == null || segmentContentPosition == C.INDEX_UNSET) {
+      return null;
+    }
+    String key = checkNotNull(seekIndexKey);
+    @Nullable byte[] seekIndex = seekIndexStore.get(key);
+    if (seekIndex == null) {
+      return null;
+    }
+    try {
+      DataInputStream input = new DataInputStream(new ByteArrayInputStream(seekIndex));
+      if (input.readInt() != SEEK_INDEX_VERSION
+          || input.readLong() != segmentContentPosition
+          || input.readLong() != segmentContentSize
+          || input.readLong() != durationUs) {
+        // The index was built for a different version of the format or for different content.
+        return null;
+      }
+      int length = input.readInt();
+      int[] sizes = new int[length];
+      long[] offsets = new long[length];
+      long[] durationsUs = new long[length];
+      long[] timesUs = new long[length];
+      for (int i = 0; i < length; i++) {
+        sizes[i] = input.readInt();
+        offsets[i] = input.readLong();
+        durationsUs[i] = input.readLong();
+        timesUs[i] = input.readLong();
+      }
+      return new ChunkIndex(sizes, offsets, durationsUs, timesUs);
+    } catch (IOException | RuntimeException e) {
+      Log.w(TAG, "Ignoring malformed seek index", e);
+      seekIndexStore.remove(key);
+      return null;
+    }
+  }
+
+  /** Persists {@code chunkIndex} in the {@link #seekIndexStore}, if there is one. */
+  private void storeSeekIndex(ChunkIndex chunkIndex) {
+    if (seekIndexStore == null) {
+      return;
+    }
+    ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+    DataOutputStream output = new DataOutputStream(byteArrayOutputStream);
+    try {
+      output.writeInt(SEEK_INDEX_VERSION);
+      output.writeLong(segmentContentPosition);
+      output.writeLong(segmentContentSize);
+      output.writeLong(durationUs);
+      output.writeInt(chunkIndex.length);
+      for (int i = 0; i < chunkIndex.length; i++) {
+        output.writeInt(chunkIndex.sizes[i]);
+        output.writeLong(chunkIndex.offsets[i]);
+        output.writeLong(chunkIndex.durationsUs[i]);
+        output.writeLong(chunkIndex.timesUs[i]);
+      }
+      output.flush();
+    } catch (IOException e) {
+      // Never happens when writing to a ByteArrayOutputStream.
+      throw new IllegalStateException(e);
+    }
+    seekIndexStore.put(checkNotNull(seekIndexKey), byteArrayOutputStream.toByteArray());
+  }
+
   /**
    * Updates the position of the holder to Cues element's position if the extractor configuration
    * permits use of master seek entry. After building Cues sets the holder's position back to where
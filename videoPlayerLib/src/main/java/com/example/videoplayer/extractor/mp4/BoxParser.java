@@ -120,6 +120,19 @@ public final class BoxParser {
   /** The magic signature for an Opus Identification header, as defined in RFC-7845. */
   private static final byte[] opusMagic = Util.getUtf8Bytes("OpusHead");
 
+  /** Supplies {@link TrackSampleTable} instances that were obtained without parsing stbl boxes. */
+  public interface SampleTableSupplier {
+
+    /**
+     * Returns the sample table for a track, or null if the stbl box should be parsed instead.
+     *
+     * @param track The track.
+     * @param stbl The track's stbl (sample table) box.
+     */
+    @Nullable
+    TrackSampleTable getSampleTable(Track track, Mp4Box.ContainerBox stbl);
+  }
+
   /** Parses the version number out of the additional integer component of a full box. */
   public static int parseFullBoxVersion(int fullBoxInt) {
     return 0x000000FF & (fullBoxInt >> 24);
@@ -153,6 +166,47 @@ public final class BoxParser {
       boolean isQuickTime,
       Function<@NullableType Track, @NullableType Track> modifyTrackFunction)
       throws ParserException {
+    return parseTraks(
+        moov,
+        gaplessInfoHolder,
+        duration,
+        drmInitData,
+        ignoreEditLists,
+        isQuickTime,
+        modifyTrackFunction,
+        /* sampleTableSupplier= */ null);
+  }
+
+  /**
+   * Parse the trak boxes in a moov box (defined in ISO/IEC 14496-12), using sample tables from a
+   * {@link SampleTableSupplier} where available.
+   *
+   * <p>The {@code gaplessInfoHolder} isn't populated from stbl boxes whose sample tables are
+   * obtained from {@code sampleTableSupplier}.
+   *
+   * @param moov Moov box to decode.
+   * @param gaplessInfoHolder Holder to populate with gapless playback information.
+   * @param duration The duration in units of the timescale declared in the mvhd box, or {@link
+   *     C#TIME_UNSET} if the duration should be parsed from the tkhd box.
+   * @param drmInitData {@link DrmInitData} to be included in the format, or {@code null}.
+   * @param ignoreEditLists Whether to ignore any edit lists in the trak boxes.
+   * @param isQuickTime True for QuickTime media. False otherwise.
+   * @param modifyTrackFunction A function to apply to the {@link Track Tracks} in the result.
+   * @param sampleTableSupplier A {@link SampleTableSupplier} to query before parsing each stbl box,
+   *     or {@code null} if all stbl boxes should be parsed.
+   * @return A list of {@link TrackSampleTable} instances.
+   * @throws ParserException Thrown if the trak boxes can't be parsed.
+   */
+  public static List<TrackSampleTable> parseTraks(
+      Mp4Box.ContainerBox moov,
+      GaplessInfoHolder gaplessInfoHolder,
+      long duration,
+      @Nullable DrmInitData drmInitData,
+      boolean ignoreEditLists,
+      boolean isQuickTime,
+      Function<@NullableType Track, @NullableType Track> modifyTrackFunction,
+      @Nullable SampleTableSupplier sampleTableSupplier)
+      throws ParserException {
     List<TrackSampleTable> trackSampleTables = new ArrayList<>();
     for (int i = 0; i < moov.containerChildren.size(); i++) {
       Mp4Box.ContainerBox atom = moov.containerChildren.get(i);
@@ -178,7 +232,12 @@ public final class BoxParser {
                       checkNotNull(atom.getContainerBoxOfType(Mp4Box.TYPE_mdia))
                           .getContainerBoxOfType(Mp4Box.TYPE_minf))
                   .getContainerBoxOfType(Mp4Box.TYPE_stbl));
-      TrackSampleTable trackSampleTable = parseStbl(track, stblAtom, gaplessInfoHolder);
+      @Nullable
+      TrackSampleTable trackSampleTable =
+          sampleTableSupplier != null ? sampleTableSupplier.getSampleTable(track, stblAtom) : null;
+      if (trackSampleTable == null) {
+        trackSampleTable = parseStbl(track, stblAtom, gaplessInfoHolder);
+      }
       trackSampleTables.add(trackSampleTable);
     }
     return trackSampleTables;
@@ -454,11 +513,7 @@ public final class BoxParser {
           /* durationUs= */ 0);
     }
 
-    if (track.type == C.TRACK_TYPE_VIDEO && track.mediaDurationUs > 0) {
-      float frameRate = sampleCount / (track.mediaDurationUs / 1000000f);
-      Format format = track.format.buildUpon().setFrameRate(frameRate).build();
-      track = track.copyWithFormat(format);
-    }
+    track = maybeSetFrameRate(track, sampleCount);
 
     // Entries are byte offsets of chunks.
     boolean chunkOffsetsAreLongs = false;
@@ -663,18 +718,7 @@ public final class BoxParser {
       }
     }
 
-    if (track.mediaDurationUs > 0) {
-      long averageBitrate =
-          Util.scaleLargeValue(
-              totalSize * C.BITS_PER_BYTE,
-              C.MICROS_PER_SECOND,
-              track.mediaDurationUs,
-              RoundingMode.HALF_DOWN);
-      if (averageBitrate > 0 && averageBitrate < Integer.MAX_VALUE) {
-        Format format = track.format.buildUpon().setAverageBitrate((int) averageBitrate).build();
-        track = track.copyWithFormat(format);
-      }
-    }
+    track = maybeSetAverageBitrate(track, totalSize);
 
     long durationUs = Util.scaleLargeTimestamp(duration, C.MICROS_PER_SECOND, track.timescale);
 
@@ -862,6 +906,152 @@ public final class BoxParser {
         editedDurationUs);
   }
 
+  /**
+   * Parses an stbl box (defined in ISO/IEC 14496-12) into a sample table whose samples are decoded
+   * on demand, or returns null if the box should be parsed by {@link #parseStbl} instead.
+   *
+   * <p>Only the stbl boxes of tracks with many samples are decoded on demand, and only if the
+   * track's edit list, if any, keeps all of its samples. The resulting sample table is otherwise
+   * equivalent to the one returned by {@link #parseStbl}.
+   *
+   * @param track Track to which this sample table corresponds.
+   * @param stblBox stbl (sample table) box to decode.
+   * @param gaplessInfoHolder Holder to populate with gapless playback information.
+   * @return Sample table described by the stbl box, or null.
+   */
+  @Nullable
+  public static TrackSampleTable parseStblOnDemand(
+      Track track, Mp4Box.ContainerBox stblBox, GaplessInfoHolder gaplessInfoHolder) {
+    if (track.editListDurations != null && track.editListDurations.length != 1) {
+      return null;
+    }
+    @Nullable PagedSampleTable pagedSampleTable = PagedSampleTable.create(track, stblBox);
+    if (pagedSampleTable == null) {
+      return null;
+    }
+    track = maybeSetFrameRate(track, pagedSampleTable.declaredSampleCount);
+    track = maybeSetAverageBitrate(track, pagedSampleTable.totalSize);
+    long duration = pagedSampleTable.duration;
+
+    if (track.editListDurations == null) {
+      return new TrackSampleTable(
+          track,
+          pagedSampleTable,
+          Util.scaleLargeTimestamp(duration, C.MICROS_PER_SECOND, track.timescale));
+    }
+
+    // Apply the edit as parseStbl does, but only where doing so doesn't remove any samples.
+    int sampleCount = pagedSampleTable.sampleCount;
+    long editMediaTime = checkNotNull(track.editListMediaTimes)[0];
+    long editDuration = track.editListDurations[0];
+    long editEndTime =
+        editMediaTime
+            + Util.scaleLargeTimestamp(editDuration, track.timescale, track.movieTimescale);
+    long editDurationUs =
+        Util.scaleLargeTimestamp(editDuration, C.MICROS_PER_SECOND, track.movieTimescale);
+    if (track.type == C.TRACK_TYPE_AUDIO) {
+      int lastIndex = sampleCount - 1;
+      long firstTimestamp = pagedSampleTable.getTimestamp(0);
+      if (canApplyEditWithGaplessInfo(
+          firstTimestamp,
+          pagedSampleTable.getTimestamp(
+              Util.constrainValue(MAX_GAPLESS_TRIM_SIZE_SAMPLES, 0, lastIndex)),
+          pagedSampleTable.getTimestamp(
+              Util.constrainValue(sampleCount - MAX_GAPLESS_TRIM_SIZE_SAMPLES, 0, lastIndex)),
+          duration,
+          editMediaTime,
+          editEndTime)) {
+        long encoderDelay =
+            Util.scaleLargeTimestamp(
+                editMediaTime - firstTimestamp, track.format.sampleRate, track.timescale);
+        long encoderPadding =
+            Util.scaleLargeTimestamp(
+                duration - editEndTime, track.format.sampleRate, track.timescale);
+        if ((encoderDelay != 0 || encoderPadding != 0)
+            && encoderDelay <= Integer.MAX_VALUE
+            && encoderPadding <= Integer.MAX_VALUE) {
+          gaplessInfoHolder.encoderDelay = (int) encoderDelay;
+          gaplessInfoHolder.encoderPadding = (int) encoderPadding;
+          return new TrackSampleTable(track, pagedSampleTable, editDurationUs);
+        }
+      }
+    }
+
+    if (editDuration == 0) {
+      pagedSampleTable.setTimestampShift(editMediaTime);
+      return new TrackSampleTable(
+          track,
+          pagedSampleTable,
+          Util.scaleLargeTimestamp(
+              duration - editMediaTime, C.MICROS_PER_SECOND, track.timescale));
+    }
+
+    if (editMediaTime == -1) {
+      // The edit is empty, so it removes all samples.
+      return null;
+    }
+    int startIndex =
+        pagedSampleTable.binarySearchTimestampFloor(
+            editMediaTime, /* inclusive= */ true, /* stayInBounds= */ true);
+    int endIndex =
+        pagedSampleTable.binarySearchTimestampCeil(
+            editEndTime,
+            /* inclusive= */ track.type == C.TRACK_TYPE_AUDIO,
+            /* stayInBounds= */ false);
+    int initialStartIndex = startIndex;
+    while (startIndex >= 0
+        && (pagedSampleTable.getFlags(startIndex) & C.BUFFER_FLAG_KEY_FRAME) == 0) {
+      startIndex--;
+    }
+    if (startIndex < 0) {
+      startIndex = initialStartIndex;
+      while (startIndex < endIndex
+          && (pagedSampleTable.getFlags(startIndex) & C.BUFFER_FLAG_KEY_FRAME) == 0) {
+        startIndex++;
+      }
+    }
+    if (startIndex != 0 || endIndex != sampleCount) {
+      return null;
+    }
+    pagedSampleTable.setTimestampShift(editMediaTime);
+    if (Util.scaleLargeTimestamp(
+            pagedSampleTable.getMinimumTimestamp() - editMediaTime,
+            C.MICROS_PER_SECOND,
+            track.timescale)
+        < 0) {
+      Format format = track.format.buildUpon().setHasPrerollSamples(true).build();
+      track = track.copyWithFormat(format);
+    }
+    return new TrackSampleTable(track, pagedSampleTable, editDurationUs);
+  }
+
+  /** Returns {@code track} with its frame rate set from its sample count, if it's a video track. */
+  private static Track maybeSetFrameRate(Track track, int sampleCount) {
+    if (track.type == C.TRACK_TYPE_VIDEO && track.mediaDurationUs > 0) {
+      float frameRate = sampleCount / (track.mediaDurationUs / 1000000f);
+      Format format = track.format.buildUpon().setFrameRate(frameRate).build();
+      track = track.copyWithFormat(format);
+    }
+    return track;
+  }
+
+  /** Returns {@code track} with its average bitrate set from the total size of its samples. */
+  private static Track maybeSetAverageBitrate(Track track, long totalSize) {
+    if (track.mediaDurationUs > 0) {
+      long averageBitrate =
+          Util.scaleLargeValue(
+              totalSize * C.BITS_PER_BYTE,
+              C.MICROS_PER_SECOND,
+              track.mediaDurationUs,
+              RoundingMode.HALF_DOWN);
+      if (averageBitrate > 0 && averageBitrate < Integer.MAX_VALUE) {
+        Format format = track.format.buildUpon().setAverageBitrate((int) averageBitrate).build();
+        track = track.copyWithFormat(format);
+      }
+    }
+    return track;
+  }
+
   @Nullable
   private static Metadata parseUdtaMeta(ParsableByteArray meta, int limit) {
     meta.skipBytes(Mp4Box.HEADER_SIZE);
@@ -2606,9 +2796,30 @@ public final class BoxParser {
     int latestDelayIndex = Util.constrainValue(MAX_GAPLESS_TRIM_SIZE_SAMPLES, 0, lastIndex);
     int earliestPaddingIndex =
         Util.constrainValue(timestamps.length - MAX_GAPLESS_TRIM_SIZE_SAMPLES, 0, lastIndex);
-    return timestamps[0] <= editStartTime
-        && editStartTime < timestamps[latestDelayIndex]
-        && timestamps[earliestPaddingIndex] < editEndTime
+    return canApplyEditWithGaplessInfo(
+        timestamps[0],
+        timestamps[latestDelayIndex],
+        timestamps[earliestPaddingIndex],
+        duration,
+        editStartTime,
+        editEndTime);
+  }
+
+  /**
+   * Returns whether it's possible to apply the specified edit using gapless playback info, given
+   * the timestamps of the first sample, the latest sample that can be trimmed from the start and
+   * the earliest sample that can be trimmed from the end.
+   */
+  private static boolean canApplyEditWithGaplessInfo(
+      long firstTimestamp,
+      long latestDelayTimestamp,
+      long earliestPaddingTimestamp,
+      long duration,
+      long editStartTime,
+      long editEndTime) {
+    return firstTimestamp <= editStartTime
+        && editStartTime < latestDelayTimestamp
+        && earliestPaddingTimestamp < editEndTime
         && editEndTime <= duration;
   }
 
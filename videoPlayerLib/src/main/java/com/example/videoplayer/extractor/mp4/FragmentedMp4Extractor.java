@@ -15,6 +15,7 @@
  */
 package com.example.videoplayer.extractor.mp4;
 
+import static com.example.videoplayer.common.util.Assertions.checkArgument;
 import static com.example.videoplayer.common.util.Assertions.checkNotNull;
 import static com.example.videoplayer.common.util.Assertions.checkState;
 import static com.example.videoplayer.common.util.Util.castNonNull;
@@ -28,6 +29,7 @@ import android.util.Pair;
 import android.util.SparseArray;
 import androidx.annotation.IntDef;
 import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
 import com.example.videoplayer.common.C;
 import com.example.videoplayer.common.DrmInitData;
 import com.example.videoplayer.common.DrmInitData.SchemeData;
@@ -75,6 +77,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
 
 /** Extracts data from the FMP4 container format. */
 @SuppressWarnings("ConstantField")
@@ -89,6 +92,30 @@ public class FragmentedMp4Extractor implements Extractor {
     return () -> new Extractor[] {new FragmentedMp4Extractor(subtitleParserFactory)};
   }
 
+  /**
+   * Reads byte ranges of the stream being extracted, independently of the {@link ExtractorInput}.
+   *
+   * @see #experimentalSetMoofPrefetching(RangeReader, int)
+   */
+  public interface RangeReader {
+
+    /**
+     * Reads up to {@code length} bytes of the stream, starting at {@code position}.
+     *
+     * <p>Called on background threads, possibly concurrently, so implementations must be
+     * thread-safe. Threads are interrupted if their reads are no longer needed.
+     *
+     * @param position The position in the stream from which to read.
+     * @param buffer The buffer into which the bytes should be read.
+     * @param offset The offset in {@code buffer} at which the bytes should be written.
+     * @param length The maximum number of bytes to read.
+     * @return The number of bytes read, or {@link C#RESULT_END_OF_INPUT} if the end of the stream
+     *     was reached.
+     * @throws IOException If an error occurs reading from the stream.
+     */
+    int read(long position, byte[] buffer, int offset, int length) throws IOException;
+  }
+
   /**
    * Flags controlling the behavior of the extractor. Possible flag values are {@link
    * #FLAG_WORKAROUND_EVERY_VIDEO_FRAME_IS_SYNC_FRAME}, {@link #FLAG_WORKAROUND_IGNORE_TFDT_BOX},
@@ -260,6 +287,14 @@ public class FragmentedMp4Extractor implements Extractor {
 
   private long seekPositionBeforeSidxProcessing;
 
+  // The segment index from which the seek map was output, if any.
+  @Nullable private ChunkIndex segmentIndex;
+
+  @Nullable private RangeReader moofRangeReader;
+  private int maxPrefetchedMoofCount;
+  @Nullable private ExecutorService moofPrefetchExecutorService;
+  @Nullable private MoofPrefetcher moofPrefetcher;
+
   /**
    * @deprecated Use {@link #FragmentedMp4Extractor(SubtitleParser.Factory)} instead
    */
@@ -463,6 +498,53 @@ public class FragmentedMp4Extractor implements Extractor {
     return flags;
   }
 
+  /**
+   * Enables reading and parsing the moof boxes of upcoming fragments ahead of the input.
+   *
+   * <p>Once a segment index (sidx) has been read, each time the extractor reaches a moof box the
+   * moof boxes of the next {@code maxPrefetchedMoofCount} fragments listed in the index are read
+   * with the {@link RangeReader}, and their fragment tables and sample encryption data are parsed
+   * on background threads. When the extractor reaches a moof box that's been prefetched, it skips
+   * the box in the input and uses the parsed fragments, so that reading samples isn't delayed by
+   * parsing. Prefetched moof boxes are discarded on {@link #seek}, and prefetches that haven't
+   * completed when their box is reached are discarded rather than waited for.
+   *
+   * <p>Skipped boxes are still read from the input, so prefetching only saves the time taken to
+   * parse moof boxes on the loading thread. It doesn't reduce the amount of data that's loaded or
+   * hide the latency of the input, and the range reads add requests and bytes of their own. It's
+   * only worthwhile for streams with large moof boxes, such as those with many samples per
+   * fragment or with sample encryption data.
+   *
+   * <p>Moof boxes are only prefetched if each of their track fragments has a tfdt box, since
+   * otherwise they can't be parsed before the preceding fragments. Prefetching is disabled if
+   * {@link #FLAG_WORKAROUND_IGNORE_TFDT_BOX} is set.
+   *
+   * <p>This method is experimental and will be renamed or removed in a future release. It must be
+   * called before the first call to {@link #read}.
+   *
+   * @param rangeReader The {@link RangeReader} with which moof boxes are read.
+   * @param maxPrefetchedMoofCount The maximum number of moof boxes that are read ahead of the
+   *     input.
+   */
+  public void experimentalSetMoofPrefetching(RangeReader rangeReader, int maxPrefetchedMoofCount) {
+    experimentalSetMoofPrefetching(
+        rangeReader, maxPrefetchedMoofCount, MoofPrefetcher.SHARED_EXECUTOR_SERVICE);
+  }
+
+  /**
+   * Equivalent to {@link #experimentalSetMoofPrefetching(RangeReader, int)}, but reads and parses
+   * moof boxes on the given {@link ExecutorService}.
+   */
+  @VisibleForTesting
+  /* package */ void experimentalSetMoofPrefetching(
+      RangeReader rangeReader, int maxPrefetchedMoofCount, ExecutorService executorService) {
+    checkArgument(maxPrefetchedMoofCount > 0);
+    checkState(moofPrefetcher == null);
+    this.moofRangeReader = rangeReader;
+    this.maxPrefetchedMoofCount = maxPrefetchedMoofCount;
+    this.moofPrefetchExecutorService = executorService;
+  }
+
   @Override
   public boolean sniff(ExtractorInput input) throws IOException {
     @Nullable SniffFailure sniffFailure = Sniffer.sniffFragmented(input);
@@ -520,11 +602,14 @@ public class FragmentedMp4Extractor implements Extractor {
     pendingSeekTimeUs = timeUs;
     containerAtoms.clear();
     enterReadingAtomHeaderState();
+    if (moofPrefetcher != null) {
+      moofPrefetcher.reset();
+    }
   }
 
   @Override
   public void release() {
-    // Do nothing
+    releaseMoofPrefetcher();
   }
 
   @Override
@@ -536,8 +621,10 @@ public class FragmentedMp4Extractor implements Extractor {
             if (seekPositionBeforeSidxProcessing != C.INDEX_UNSET) {
               seekPosition.position = seekPositionBeforeSidxProcessing;
               seekPositionBeforeSidxProcessing = C.INDEX_UNSET;
-              extractorOutput.seekMap(chunkIndexMerger.merge());
+              ChunkIndex mergedSegmentIndex = chunkIndexMerger.merge();
+              extractorOutput.seekMap(mergedSegmentIndex);
               haveOutputSeekMapFromMultipleSidx = true;
+              setSegmentIndex(mergedSegmentIndex);
               return Extractor.RESULT_SEEK;
             } else {
               reorderingBufferQueue.flush();
@@ -634,6 +721,17 @@ public class FragmentedMp4Extractor implements Extractor {
         fragment.auxiliaryDataPosition = atomPosition;
         fragment.dataPosition = atomPosition;
       }
+      @Nullable MoofPrefetcher moofPrefetcher = maybeCreateMoofPrefetcher();
+      @Nullable
+      MoofPrefetcher.PrefetchedMoof prefetchedMoof =
+          moofPrefetcher != null ? moofPrefetcher.takePrefetchedMoof(atomPosition, atomSize) : null;
+      if (prefetchedMoof != null) {
+        // The box is still read from the input. Only parsing it is skipped.
+        input.skipFully((int) (atomSize - atomHeaderBytesRead));
+        onPrefetchedMoofRead(prefetchedMoof);
+        enterReadingAtomHeaderState();
+        return true;
+      }
     }
 
     if (atomType == Mp4Box.TYPE_mdat) {
@@ -717,6 +815,7 @@ public class FragmentedMp4Extractor implements Extractor {
         segmentIndexEarliestPresentationTimeUs = result.first;
         extractorOutput.seekMap(result.second);
         haveOutputSeekMap = true;
+        setSegmentIndex(result.second);
       } else if ((flags & FLAG_MERGE_FRAGMENTED_SIDX) != 0
           && !haveOutputSeekMapFromMultipleSidx
           && chunkIndexMerger.size() > 1) {
@@ -739,6 +838,8 @@ public class FragmentedMp4Extractor implements Extractor {
 
   private void onMoovContainerAtomRead(ContainerBox moov) throws ParserException {
     checkState(sideloadedTrack == null, "Unexpected moov box.");
+    // The prefetcher parses fragments using the sample tables from the previous moov box.
+    releaseMoofPrefetcher();
 
     @Nullable DrmInitData drmInitData = getDrmInitDataFromAtoms(moov.leafChildren);
 
@@ -842,7 +943,19 @@ public class FragmentedMp4Extractor implements Extractor {
 
   private void onMoofContainerAtomRead(ContainerBox moof) throws ParserException {
     parseMoof(moof, trackBundles, sideloadedTrack != null, flags, scratchBytes);
+    onMoofParsed(moof);
+  }
+
+  private void onPrefetchedMoofRead(MoofPrefetcher.PrefetchedMoof prefetchedMoof)
+      throws ParserException {
+    SparseArray<TrackFragment> fragments = prefetchedMoof.fragments;
+    for (int i = 0; i < fragments.size(); i++) {
+      checkNotNull(trackBundles.get(fragments.keyAt(i))).setFragment(fragments.valueAt(i));
+    }
+    onMoofParsed(prefetchedMoof.moof);
+  }
 
+  private void onMoofParsed(ContainerBox moof) {
     @Nullable DrmInitData drmInitData = getDrmInitDataFromAtoms(moof.leafChildren);
     if (drmInitData != null) {
       int trackCount = trackBundles.size();
@@ -860,6 +973,52 @@ public class FragmentedMp4Extractor implements Extractor {
     }
   }
 
+  private void setSegmentIndex(ChunkIndex segmentIndex) {
+    this.segmentIndex = segmentIndex;
+    // The prefetcher locates fragments using the previous segment index.
+    releaseMoofPrefetcher();
+  }
+
+  @Nullable
+  private MoofPrefetcher maybeCreateMoofPrefetcher() {
+    if (moofPrefetcher == null
+        && moofRangeReader != null
+        && segmentIndex != null
+        && trackBundles.size() > 0
+        && (flags & FLAG_WORKAROUND_IGNORE_TFDT_BOX) == 0) {
+      SparseArray<TrackSampleTable> moovSampleTables = new SparseArray<>();
+      SparseArray<DefaultSampleValues> defaultSampleValuesArray = new SparseArray<>();
+      for (int i = 0; i < trackBundles.size(); i++) {
+        TrackBundle trackBundle = trackBundles.valueAt(i);
+        moovSampleTables.put(trackBundles.keyAt(i), trackBundle.moovSampleTable);
+        defaultSampleValuesArray.put(trackBundles.keyAt(i), trackBundle.defaultSampleValues);
+      }
+      boolean haveSideloadedTrack = sideloadedTrack != null;
+      moofPrefetcher =
+          new MoofPrefetcher(
+              moofRangeReader,
+              segmentIndex,
+              (moof, moofPosition) ->
+                  parseMoofAheadOfTime(
+                      moof,
+                      moofPosition,
+                      moovSampleTables,
+                      defaultSampleValuesArray,
+                      haveSideloadedTrack,
+                      flags),
+              maxPrefetchedMoofCount,
+              checkNotNull(moofPrefetchExecutorService));
+    }
+    return moofPrefetcher;
+  }
+
+  private void releaseMoofPrefetcher() {
+    if (moofPrefetcher != null) {
+      moofPrefetcher.release();
+      moofPrefetcher = null;
+    }
+  }
+
   private void initExtraTracks() {
     int nextExtraTrackId = EXTRA_TRACKS_BASE_ID;
 
@@ -1019,6 +1178,55 @@ public class FragmentedMp4Extractor implements Extractor {
     }
   }
 
+  /**
+   * Parses the track fragments of a moof atom into new {@link TrackFragment} instances, keyed like
+   * the track bundles, or returns null if a track fragment depends on the one that precedes it.
+   *
+   * <p>Called on a background thread, so only the sample tables and default sample values that are
+   * passed in are used.
+   */
+  @Nullable
+  private static SparseArray<TrackFragment> parseMoofAheadOfTime(
+      ContainerBox moof,
+      long moofPosition,
+      SparseArray<TrackSampleTable> moovSampleTables,
+      SparseArray<DefaultSampleValues> defaultSampleValuesArray,
+      boolean haveSideloadedTrack,
+      @Flags int flags)
+      throws ParserException {
+    SparseArray<TrackFragment> fragments = new SparseArray<>();
+    byte[] extendedTypeScratch = new byte[16];
+    int moofContainerChildrenSize = moof.containerChildren.size();
+    for (int i = 0; i < moofContainerChildrenSize; i++) {
+      ContainerBox traf = moof.containerChildren.get(i);
+      if (traf.type != Mp4Box.TYPE_traf) {
+        continue;
+      }
+      if (traf.getLeafBoxOfType(Mp4Box.TYPE_tfdt) == null) {
+        // The decode time of the fragment follows on from the previous fragment.
+        return null;
+      }
+      int trackId = parseTfhdTrackId(checkNotNull(traf.getLeafBoxOfType(Mp4Box.TYPE_tfhd)).data);
+      int trackIndex = haveSideloadedTrack ? 0 : moovSampleTables.indexOfKey(trackId);
+      if (trackIndex < 0) {
+        continue;
+      }
+      TrackFragment fragment = new TrackFragment();
+      fragment.atomPosition = moofPosition;
+      fragment.auxiliaryDataPosition = moofPosition;
+      fragment.dataPosition = moofPosition;
+      parseTraf(
+          traf,
+          moovSampleTables.valueAt(trackIndex),
+          defaultSampleValuesArray.valueAt(trackIndex),
+          flags,
+          extendedTypeScratch,
+          fragment);
+      fragments.put(moovSampleTables.keyAt(trackIndex), fragment);
+    }
+    return fragments;
+  }
+
   /** Parses a traf atom (defined in 14496-12). */
   private static void parseTraf(
       ContainerBox traf,
@@ -1028,7 +1236,10 @@ public class FragmentedMp4Extractor implements Extractor {
       byte[] extendedTypeScratch)
       throws ParserException {
     LeafBox tfhd = checkNotNull(traf.getLeafBoxOfType(Mp4Box.TYPE_tfhd));
-    @Nullable TrackBundle trackBundle = parseTfhd(tfhd.data, trackBundles, haveSideloadedTrack);
+    int trackId = parseTfhdTrackId(tfhd.data);
+    @Nullable
+    TrackBundle trackBundle =
+        haveSideloadedTrack ? trackBundles.valueAt(0) : trackBundles.get(trackId);
     if (trackBundle == null) {
       return;
     }
@@ -1038,20 +1249,50 @@ public class FragmentedMp4Extractor implements Extractor {
     boolean fragmentDecodeTimeIncludesMoov = fragment.nextFragmentDecodeTimeIncludesMoov;
     trackBundle.resetFragmentInfo();
     trackBundle.currentlyInFragment = true;
+    fragment.nextFragmentDecodeTime = fragmentDecodeTime;
+    fragment.nextFragmentDecodeTimeIncludesMoov = fragmentDecodeTimeIncludesMoov;
+    parseTraf(
+        traf,
+        trackBundle.moovSampleTable,
+        trackBundle.defaultSampleValues,
+        flags,
+        extendedTypeScratch,
+        fragment);
+  }
+
+  /**
+   * Parses a traf atom (defined in 14496-12) into a {@link TrackFragment}.
+   *
+   * @param traf The traf atom to decode.
+   * @param moovSampleTable The sample table of the track from the moov atom.
+   * @param defaultSampleValues The default sample values of the track from the trex atom.
+   * @param flags Flags to allow any required workaround to be executed.
+   * @param extendedTypeScratch A scratch array of at least 16 bytes.
+   * @param fragment The {@link TrackFragment} into which parsed data should be placed. Its
+   *     positions must be set to the position of the enclosing moof atom, and its next fragment
+   *     decode time to that of the previous fragment of the track.
+   */
+  private static void parseTraf(
+      ContainerBox traf,
+      TrackSampleTable moovSampleTable,
+      DefaultSampleValues defaultSampleValues,
+      @Flags int flags,
+      byte[] extendedTypeScratch,
+      TrackFragment fragment)
+      throws ParserException {
+    LeafBox tfhd = checkNotNull(traf.getLeafBoxOfType(Mp4Box.TYPE_tfhd));
+    parseTfhd(tfhd.data, defaultSampleValues, fragment);
     @Nullable LeafBox tfdtAtom = traf.getLeafBoxOfType(Mp4Box.TYPE_tfdt);
     if (tfdtAtom != null && (flags & FLAG_WORKAROUND_IGNORE_TFDT_BOX) == 0) {
       fragment.nextFragmentDecodeTime = parseTfdt(tfdtAtom.data);
       fragment.nextFragmentDecodeTimeIncludesMoov = true;
-    } else {
-      fragment.nextFragmentDecodeTime = fragmentDecodeTime;
-      fragment.nextFragmentDecodeTimeIncludesMoov = fragmentDecodeTimeIncludesMoov;
     }
 
-    parseTruns(traf, trackBundle, flags);
+    parseTruns(traf, moovSampleTable, flags, fragment);
 
     @Nullable
     TrackEncryptionBox encryptionBox =
-        trackBundle.moovSampleTable.track.getSampleDescriptionEncryptionBox(
+        moovSampleTable.track.getSampleDescriptionEncryptionBox(
             checkNotNull(fragment.header).sampleDescriptionIndex);
 
     @Nullable LeafBox saiz = traf.getLeafBoxOfType(Mp4Box.TYPE_saiz);
@@ -1080,7 +1321,8 @@ public class FragmentedMp4Extractor implements Extractor {
     }
   }
 
-  private static void parseTruns(ContainerBox traf, TrackBundle trackBundle, @Flags int flags)
+  private static void parseTruns(
+      ContainerBox traf, TrackSampleTable moovSampleTable, @Flags int flags, TrackFragment out)
       throws ParserException {
     int trunCount = 0;
     int totalSampleCount = 0;
@@ -1098,10 +1340,7 @@ public class FragmentedMp4Extractor implements Extractor {
         }
       }
     }
-    trackBundle.currentTrackRunIndex = 0;
-    trackBundle.currentSampleInTrackRun = 0;
-    trackBundle.currentSampleIndex = 0;
-    trackBundle.fragment.initTables(trunCount, totalSampleCount);
+    out.initTables(trunCount, totalSampleCount);
 
     int trunIndex = 0;
     int trunStartPosition = 0;
@@ -1109,7 +1348,7 @@ public class FragmentedMp4Extractor implements Extractor {
       LeafBox trun = leafChildren.get(i);
       if (trun.type == Mp4Box.TYPE_trun) {
         trunStartPosition =
-            parseTrun(trackBundle, trunIndex++, flags, trun.data, trunStartPosition);
+            parseTrun(moovSampleTable, out, trunIndex++, flags, trun.data, trunStartPosition);
       }
     }
   }
@@ -1181,38 +1420,31 @@ public class FragmentedMp4Extractor implements Extractor {
         version == 0 ? saio.readUnsignedInt() : saio.readUnsignedLongToLong();
   }
 
+  /** Returns the ID of the track to which a tfhd atom (defined in 14496-12) refers. */
+  private static int parseTfhdTrackId(ParsableByteArray tfhd) {
+    tfhd.setPosition(Mp4Box.FULL_HEADER_SIZE);
+    return tfhd.readInt();
+  }
+
   /**
-   * Parses a tfhd atom (defined in 14496-12), updates the corresponding {@link TrackFragment} and
-   * returns the {@link TrackBundle} of the corresponding {@link Track}. If the tfhd does not refer
-   * to any {@link TrackBundle}, {@code null} is returned and no changes are made.
+   * Parses a tfhd atom (defined in 14496-12) into a {@link TrackFragment}.
    *
    * @param tfhd The tfhd atom to decode.
-   * @param trackBundles The track bundles, one of which corresponds to the tfhd atom being parsed.
-   * @param haveSideloadedTrack Whether {@code trackBundles} contains a single bundle corresponding
-   *     to a side-loaded track.
-   * @return The {@link TrackBundle} to which the {@link TrackFragment} belongs, or null if the tfhd
-   *     does not refer to any {@link TrackBundle}.
+   * @param defaultSampleValues The default sample values of the track from the trex atom.
+   * @param out The {@link TrackFragment} into which parsed data should be placed.
    */
-  @Nullable
-  private static TrackBundle parseTfhd(
-      ParsableByteArray tfhd, SparseArray<TrackBundle> trackBundles, boolean haveSideloadedTrack) {
+  private static void parseTfhd(
+      ParsableByteArray tfhd, DefaultSampleValues defaultSampleValues, TrackFragment out) {
     tfhd.setPosition(Mp4Box.HEADER_SIZE);
     int fullAtom = tfhd.readInt();
     int atomFlags = BoxParser.parseFullBoxFlags(fullAtom);
-    int trackId = tfhd.readInt();
-    @Nullable
-    TrackBundle trackBundle =
-        haveSideloadedTrack ? trackBundles.valueAt(0) : trackBundles.get(trackId);
-    if (trackBundle == null) {
-      return null;
-    }
+    tfhd.skipBytes(4); // track_ID
     if ((atomFlags & 0x01 /* base_data_offset_present */) != 0) {
       long baseDataPosition = tfhd.readUnsignedLongToLong();
-      trackBundle.fragment.dataPosition = baseDataPosition;
-      trackBundle.fragment.auxiliaryDataPosition = baseDataPosition;
+      out.dataPosition = baseDataPosition;
+      out.auxiliaryDataPosition = baseDataPosition;
     }
 
-    DefaultSampleValues defaultSampleValues = trackBundle.defaultSampleValues;
     int defaultSampleDescriptionIndex =
         ((atomFlags & 0x02 /* default_sample_description_index_present */) != 0)
             ? tfhd.readInt() - 1
@@ -1229,13 +1461,12 @@ public class FragmentedMp4Extractor implements Extractor {
         ((atomFlags & 0x20 /* default_sample_flags_present */) != 0)
             ? tfhd.readInt()
             : defaultSampleValues.flags;
-    trackBundle.fragment.header =
+    out.header =
         new DefaultSampleValues(
             defaultSampleDescriptionIndex,
             defaultSampleDuration,
             defaultSampleSize,
             defaultSampleFlags);
-    return trackBundle;
   }
 
   /**
@@ -1274,15 +1505,16 @@ public class FragmentedMp4Extractor implements Extractor {
   /**
    * Parses a trun atom (defined in 14496-12).
    *
-   * @param trackBundle The {@link TrackBundle} that contains the {@link TrackFragment} into which
-   *     parsed data should be placed.
+   * @param moovSampleTable The sample table of the track from the moov atom.
+   * @param fragment The {@link TrackFragment} into which parsed data should be placed.
    * @param index Index of the track run in the fragment.
    * @param flags Flags to allow any required workaround to be executed.
    * @param trun The trun atom to decode.
    * @return The starting position of samples for the next run.
    */
   private static int parseTrun(
-      TrackBundle trackBundle,
+      TrackSampleTable moovSampleTable,
+      TrackFragment fragment,
       int index,
       @Flags int flags,
       ParsableByteArray trun,
@@ -1292,8 +1524,7 @@ public class FragmentedMp4Extractor implements Extractor {
     int fullAtom = trun.readInt();
     int atomFlags = BoxParser.parseFullBoxFlags(fullAtom);
 
-    Track track = trackBundle.moovSampleTable.track;
-    TrackFragment fragment = trackBundle.fragment;
+    Track track = moovSampleTable.track;
     DefaultSampleValues defaultSampleValues = castNonNull(fragment.header);
 
     fragment.trunLength[index] = trun.readUnsignedIntToInt();
@@ -1357,7 +1588,7 @@ public class FragmentedMp4Extractor implements Extractor {
       samplePresentationTimesUs[i] =
           Util.scaleLargeTimestamp(samplePresentationTime, C.MICROS_PER_SECOND, timescale);
       if (!fragment.nextFragmentDecodeTimeIncludesMoov) {
-        samplePresentationTimesUs[i] += trackBundle.moovSampleTable.durationUs;
+        samplePresentationTimesUs[i] += moovSampleTable.durationUs;
       }
       sampleSizeTable[i] = sampleSize;
       sampleIsSyncFrameTable[i] =
@@ -1912,7 +2143,7 @@ public class FragmentedMp4Extractor implements Extractor {
   }
 
   /** Returns whether the extractor should decode a leaf atom with type {@code atom}. */
-  private static boolean shouldParseLeafAtom(int atom) {
+  /* package */ static boolean shouldParseLeafAtom(int atom) {
     return atom == Mp4Box.TYPE_hdlr
         || atom == Mp4Box.TYPE_mdhd
         || atom == Mp4Box.TYPE_mvhd
@@ -1947,7 +2178,7 @@ public class FragmentedMp4Extractor implements Extractor {
   }
 
   /** Returns whether the extractor should decode a container atom with type {@code atom}. */
-  private static boolean shouldParseContainerAtom(int atom) {
+  /* package */ static boolean shouldParseContainerAtom(int atom) {
     return atom == Mp4Box.TYPE_moov
         || atom == Mp4Box.TYPE_trak
         || atom == Mp4Box.TYPE_mdia
@@ -1980,9 +2211,10 @@ public class FragmentedMp4Extractor implements Extractor {
     private static final int SINGLE_SUBSAMPLE_ENCRYPTION_DATA_LENGTH = 8;
 
     public final TrackOutput output;
-    public final TrackFragment fragment;
     public final ParsableByteArray scratch;
 
+    public TrackFragment fragment;
+
     public TrackSampleTable moovSampleTable;
     public DefaultSampleValues defaultSampleValues;
     public int currentSampleIndex;
@@ -2040,6 +2272,13 @@ public class FragmentedMp4Extractor implements Extractor {
       currentlyInFragment = false;
     }
 
+    /** Resets the current fragment info and replaces the fragment with one that's been parsed. */
+    public void setFragment(TrackFragment fragment) {
+      resetFragmentInfo();
+      this.fragment = fragment;
+      currentlyInFragment = true;
+    }
+
     /**
      * Advances {@link #firstSampleToOutputIndex} to point to the sync sample at or before the
      * specified seek time in the current fragment.
@@ -2060,21 +2299,21 @@ public class FragmentedMp4Extractor implements Extractor {
     /** Returns the presentation time of the current sample in microseconds. */
     public long getCurrentSamplePresentationTimeUs() {
       return !currentlyInFragment
-          ? moovSampleTable.timestampsUs[currentSampleIndex]
+          ? moovSampleTable.getTimestampUs(currentSampleIndex)
           : fragment.getSamplePresentationTimeUs(currentSampleIndex);
     }
 
     /** Returns the byte offset of the current sample. */
     public long getCurrentSampleOffset() {
       return !currentlyInFragment
-          ? moovSampleTable.offsets[currentSampleIndex]
+          ? moovSampleTable.getOffset(currentSampleIndex)
           : fragment.trunDataPosition[currentTrackRunIndex];
     }
 
     /** Returns the size of the current sample in bytes. */
     public int getCurrentSampleSize() {
       return !currentlyInFragment
-          ? moovSampleTable.sizes[currentSampleIndex]
+          ? moovSampleTable.getSize(currentSampleIndex)
           : fragment.sampleSizeTable[currentSampleIndex];
     }
 
@@ -2082,7 +2321,7 @@ public class FragmentedMp4Extractor implements Extractor {
     public @C.BufferFlags int getCurrentSampleFlags() {
       int flags =
           !currentlyInFragment
-              ? moovSampleTable.flags[currentSampleIndex]
+              ? moovSampleTable.getFlags(currentSampleIndex)
               : (fragment.sampleIsSyncFrameTable[currentSampleIndex] ? C.BUFFER_FLAG_KEY_FRAME : 0);
       if (getEncryptionBoxIfEncrypted() != null) {
         flags |= C.BUFFER_FLAG_ENCRYPTED;
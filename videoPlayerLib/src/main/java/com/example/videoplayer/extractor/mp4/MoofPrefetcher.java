@@ -0,0 +1,321 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.videoplayer.extractor.mp4;
+
+import static java.lang.Math.min;
+
+import android.util.SparseArray;
+import androidx.annotation.Nullable;
+import com.example.videoplayer.common.ParserException;
+import com.example.videoplayer.common.util.Log;
+import com.example.videoplayer.common.util.NullableType;
+import com.example.videoplayer.common.util.ParsableByteArray;
+import com.example.videoplayer.common.util.Util;
+import com.example.videoplayer.container.Mp4Box;
+import com.example.videoplayer.container.Mp4Box.ContainerBox;
+import com.example.videoplayer.container.Mp4Box.LeafBox;
+import com.example.videoplayer.extractor.ChunkIndex;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Reads and parses the moof boxes of upcoming fragments ahead of a {@link FragmentedMp4Extractor}.
+ *
+ * <p>The fragments are located using the segment index (sidx). The moof box of each of the
+ * fragments that follow the one being read is fetched with a separate {@link
+ * FragmentedMp4Extractor.RangeReader range read} and parsed into {@link TrackFragment
+ * TrackFragments} on a worker thread. When the extractor reaches a moof box that's been
+ * prefetched, it can skip the box and use the parsed fragments.
+ *
+ * <p>The extractor still reads the skipped box from its input, so each prefetched moof box is
+ * downloaded twice, and the range reads cost extra requests. Prefetching only saves the time
+ * taken to parse the box on the loading thread. It doesn't hide the latency of the input.
+ *
+ * <p>Worker threads are daemon threads, shared by all instances, and are only kept while there are
+ * prefetches to run.
+ *
+ * <p>Methods must be called on the extractor's loading thread.
+ */
+/* package */ final class MoofPrefetcher {
+
+  /** Parses the fragments of a moof box. Called on a worker thread. */
+  public interface FragmentParser {
+
+    /**
+     * Parses the fragments of a moof box.
+     *
+     * @param moof The moof box.
+     * @param moofPosition The position of the moof box in the stream.
+     * @return The parsed fragments, keyed like the extractor's track bundles, or null if the moof
+     *     box can't be parsed without the fragments that precede it.
+     * @throws ParserException If the moof box is malformed.
+     */
+    @Nullable
+    SparseArray<TrackFragment> parse(ContainerBox moof, long moofPosition) throws ParserException;
+  }
+
+  /** A moof box that was read and parsed ahead of the extractor. */
+  public static final class PrefetchedMoof {
+
+    /** The position of the moof box in the stream. */
+    public final long position;
+
+    /** The size of the moof box, in bytes. */
+    public final long size;
+
+    /** The moof box. */
+    public final ContainerBox moof;
+
+    /** The parsed fragments, keyed like the extractor's track bundles. */
+    public final SparseArray<TrackFragment> fragments;
+
+    public PrefetchedMoof(
+        long position, long size, ContainerBox moof, SparseArray<TrackFragment> fragments) {
+      this.position = position;
+      this.size = size;
+      this.moof = moof;
+      this.fragments = fragments;
+    }
+  }
+
+  private static final String TAG = "MoofPrefetcher";
+
+  /**
+   * The number of bytes that are read from the start of a fragment to find its moof box. Moof
+   * boxes that are longer are read with a second range read.
+   */
+  private static final int INITIAL_READ_LENGTH = 16 * 1024;
+
+  /** The {@link ExecutorService} on which moof boxes are read and parsed by default. */
+  public static final ExecutorService SHARED_EXECUTOR_SERVICE =
+      Executors.newCachedThreadPool(MoofPrefetcher::newWorkerThread);
+
+  private final FragmentedMp4Extractor.RangeReader rangeReader;
+  private final ChunkIndex segmentIndex;
+  private final FragmentParser fragmentParser;
+  private final int maxPrefetchedMoofCount;
+  private final ExecutorService executorService;
+  // Keyed by the index of the fragment in the segment index.
+  private final SparseArray<Future<@NullableType PrefetchedMoof>> pendingMoofs;
+
+  /**
+   * Creates an instance.
+   *
+   * @param rangeReader The {@link FragmentedMp4Extractor.RangeReader} used to read moof boxes.
+   * @param segmentIndex The segment index of the stream.
+   * @param fragmentParser The {@link FragmentParser}.
+   * @param maxPrefetchedMoofCount The maximum number of fragments that are read ahead of the one
+   *     being read by the extractor.
+   * @param executorService The {@link ExecutorService} on which moof boxes are read and parsed,
+   *     which is not shut down by this instance. Usually {@link #SHARED_EXECUTOR_SERVICE}.
+   */
+  public MoofPrefetcher(
+      FragmentedMp4Extractor.RangeReader rangeReader,
+      ChunkIndex segmentIndex,
+      FragmentParser fragmentParser,
+      int maxPrefetchedMoofCount,
+      ExecutorService executorService) {
+    this.rangeReader = rangeReader;
+    this.segmentIndex = segmentIndex;
+    this.fragmentParser = fragmentParser;
+    this.maxPrefetchedMoofCount = maxPrefetchedMoofCount;
+    this.executorService = executorService;
+    pendingMoofs = new SparseArray<>();
+  }
+
+  /**
+   * Returns the moof box at {@code position} if it's been read and parsed, or null if it hasn't.
+   * Prefetches of the fragments that follow it are started if they haven't been already.
+   *
+   * <p>Prefetches that haven't completed aren't waited for, since the extractor can read the box
+   * from its input sooner than the prefetch can complete.
+   *
+   * @param position The position of the moof box in the stream.
+   * @param size The size of the moof box, in bytes.
+   */
+  @Nullable
+  public PrefetchedMoof takePrefetchedMoof(long position, long size) {
+    int fragmentIndex =
+        Util.binarySearchFloor(
+            segmentIndex.offsets, position, /* inclusive= */ true, /* stayInBounds= */ false);
+    if (fragmentIndex < 0
+        || position >= segmentIndex.offsets[fragmentIndex] + segmentIndex.sizes[fragmentIndex]) {
+      return null;
+    }
+    @Nullable PrefetchedMoof prefetchedMoof = null;
+    @Nullable Future<@NullableType PrefetchedMoof> pendingMoof = pendingMoofs.get(fragmentIndex);
+    if (pendingMoof != null && pendingMoof.isDone()) {
+      try {
+        prefetchedMoof = pendingMoof.get();
+      } catch (ExecutionException e) {
+        Log.w(TAG, "Failed to prefetch moof at " + position, e.getCause());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    prefetchFragmentsAfter(fragmentIndex);
+    if (prefetchedMoof == null
+        || prefetchedMoof.position != position
+        || prefetchedMoof.size != size) {
+      return null;
+    }
+    return prefetchedMoof;
+  }
+
+  /** Cancels the pending prefetches. */
+  public void reset() {
+    for (int i = 0; i < pendingMoofs.size(); i++) {
+      pendingMoofs.valueAt(i).cancel(/* mayInterruptIfRunning= */ true);
+    }
+    pendingMoofs.clear();
+  }
+
+  /** Cancels the pending prefetches. The instance must not be used after it's been released. */
+  public void release() {
+    reset();
+  }
+
+  private void prefetchFragmentsAfter(int fragmentIndex) {
+    int lastFragmentIndex = min(fragmentIndex + maxPrefetchedMoofCount, segmentIndex.length - 1);
+    for (int i = pendingMoofs.size() - 1; i >= 0; i--) {
+      int pendingFragmentIndex = pendingMoofs.keyAt(i);
+      if (pendingFragmentIndex <= fragmentIndex || pendingFragmentIndex > lastFragmentIndex) {
+        pendingMoofs.valueAt(i).cancel(/* mayInterruptIfRunning= */ true);
+        pendingMoofs.removeAt(i);
+      }
+    }
+    for (int i = fragmentIndex + 1; i <= lastFragmentIndex; i++) {
+      if (pendingMoofs.get(i) == null) {
+        long fragmentPosition = segmentIndex.offsets[i];
+        int fragmentSize = segmentIndex.sizes[i];
+        pendingMoofs.put(
+            i, executorService.submit(() -> readMoof(fragmentPosition, fragmentSize)));
+      }
+    }
+  }
+
+  /** Reads and parses the moof box of a fragment, or returns null if it can't be prefetched. */
+  @Nullable
+  private PrefetchedMoof readMoof(long fragmentPosition, int fragmentSize) throws IOException {
+    byte[] data = new byte[min(fragmentSize, INITIAL_READ_LENGTH)];
+    readFully(fragmentPosition, data, /* offset= */ 0, data.length);
+    // Fragments may start with boxes such as styp or prft, so skip any that precede the moof.
+    int boxPosition = 0;
+    while (data.length - boxPosition >= Mp4Box.HEADER_SIZE) {
+      long boxSize = readUnsignedInt(data, boxPosition);
+      int boxType = readInt(data, boxPosition + 4);
+      if (boxSize < Mp4Box.HEADER_SIZE || boxSize > fragmentSize - boxPosition) {
+        // The box has a large or unknown size, or is malformed, so leave it to the extractor.
+        return null;
+      } else if (boxType != Mp4Box.TYPE_moof) {
+        boxPosition += (int) boxSize;
+        continue;
+      }
+      int moofEnd = boxPosition + (int) boxSize;
+      if (moofEnd > data.length) {
+        int bytesRead = data.length;
+        data = Arrays.copyOf(data, moofEnd);
+        readFully(fragmentPosition + bytesRead, data, bytesRead, moofEnd - bytesRead);
+      }
+      @Nullable
+      ContainerBox moof =
+          readContainerBox(
+              data, Mp4Box.TYPE_moof, boxPosition + Mp4Box.HEADER_SIZE, moofEnd, fragmentPosition);
+      if (moof == null) {
+        return null;
+      }
+      long moofPosition = fragmentPosition + boxPosition;
+      @Nullable SparseArray<TrackFragment> fragments = fragmentParser.parse(moof, moofPosition);
+      return fragments != null ? new PrefetchedMoof(moofPosition, boxSize, moof, fragments) : null;
+    }
+    return null;
+  }
+
+  private void readFully(long position, byte[] buffer, int offset, int length) throws IOException {
+    while (length > 0) {
+      int bytesRead = rangeReader.read(position, buffer, offset, length);
+      if (bytesRead <= 0) {
+        throw new EOFException();
+      }
+      position += bytesRead;
+      offset += bytesRead;
+      length -= bytesRead;
+    }
+  }
+
+  /**
+   * Returns the container box with the given payload, with the same children as if it were read by
+   * the extractor, or null if it has children that the extractor would read differently.
+   */
+  @Nullable
+  private static ContainerBox readContainerBox(
+      byte[] data, int type, int start, int end, long dataPosition) {
+    ContainerBox containerBox = new ContainerBox(type, dataPosition + end);
+    int boxPosition = start;
+    while (boxPosition < end) {
+      if (end - boxPosition < Mp4Box.HEADER_SIZE) {
+        return null;
+      }
+      long boxSize = readUnsignedInt(data, boxPosition);
+      int boxType = readInt(data, boxPosition + 4);
+      if (boxSize < Mp4Box.HEADER_SIZE || boxSize > end - boxPosition) {
+        return null;
+      }
+      int boxEnd = boxPosition + (int) boxSize;
+      if (FragmentedMp4Extractor.shouldParseContainerAtom(boxType)) {
+        @Nullable
+        ContainerBox child =
+            boxType != Mp4Box.TYPE_meta
+                ? readContainerBox(
+                    data, boxType, boxPosition + Mp4Box.HEADER_SIZE, boxEnd, dataPosition)
+                : null;
+        if (child == null) {
+          return null;
+        }
+        containerBox.add(child);
+      } else if (FragmentedMp4Extractor.shouldParseLeafAtom(boxType)) {
+        containerBox.add(
+            new LeafBox(
+                boxType, new ParsableByteArray(Arrays.copyOfRange(data, boxPosition, boxEnd))));
+      }
+      boxPosition = boxEnd;
+    }
+    return containerBox;
+  }
+
+  private static Thread newWorkerThread(Runnable runnable) {
+    Thread thread = new Thread(runnable, "ExoPlayer:MoofPrefetcher");
+    // Don't keep the process alive if an extractor isn't released.
+    thread.setDaemon(true);
+    return thread;
+  }
+
+  private static long readUnsignedInt(byte[] data, int position) {
+    return readInt(data, position) & 0xFFFFFFFFL;
+  }
+
+  private static int readInt(byte[] data, int position) {
+    return (data[position] & 0xFF) << 24
+        | (data[position + 1] & 0xFF) << 16
+        | (data[position + 2] & 0xFF) << 8
+        | (data[position + 3] & 0xFF);
+  }
+}
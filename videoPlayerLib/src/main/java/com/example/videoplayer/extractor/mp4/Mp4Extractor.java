@@ -41,8 +41,10 @@ import com.example.videoplayer.common.Metadata;
 import com.example.videoplayer.common.MimeTypes;
 import com.example.videoplayer.common.ParserException;
 import com.example.videoplayer.common.util.Assertions;
+import com.example.videoplayer.common.util.Log;
 import com.example.videoplayer.common.util.ParsableByteArray;
 import com.example.videoplayer.common.util.UnstableApi;
+import com.example.videoplayer.common.util.Util;
 import com.example.videoplayer.container.MdtaMetadataEntry;
 import com.example.videoplayer.container.Mp4Box;
 import com.example.videoplayer.container.Mp4Box.ContainerBox;
@@ -55,6 +57,7 @@ import com.example.videoplayer.extractor.ExtractorOutput;
 import com.example.videoplayer.extractor.ExtractorsFactory;
 import com.example.videoplayer.extractor.GaplessInfoHolder;
 import com.example.videoplayer.extractor.PositionHolder;
+import com.example.videoplayer.extractor.SeekIndexStore;
 import com.example.videoplayer.extractor.SeekMap;
 import com.example.videoplayer.extractor.SeekPoint;
 import com.example.videoplayer.extractor.SniffFailure;
@@ -107,7 +110,8 @@ public final class Mp4Extractor implements Extractor, SeekMap {
         FLAG_EMIT_RAW_SUBTITLE_DATA,
         FLAG_READ_WITHIN_GOP_SAMPLE_DEPENDENCIES,
         FLAG_READ_AUXILIARY_TRACKS,
-        FLAG_READ_WITHIN_GOP_SAMPLE_DEPENDENCIES_H265
+        FLAG_READ_WITHIN_GOP_SAMPLE_DEPENDENCIES_H265,
+        FLAG_DECODE_SAMPLE_TABLES_ON_DEMAND
       })
   public @interface Flags {}
 
@@ -173,6 +177,17 @@ public final class Mp4Extractor implements Extractor, SeekMap {
    */
   public static final int FLAG_READ_WITHIN_GOP_SAMPLE_DEPENDENCIES_H265 = 1 << 7;
 
+  /**
+   * Flag to decode the sample tables of tracks with many samples on demand, rather than expanding
+   * them into arrays when the moov atom is processed.
+   *
+   * <p>The sample table boxes are kept, and samples are decoded from them in pages as they're read
+   * or sought to. This bounds the memory used by the sample tables of long recordings, and reduces
+   * the time taken to start reading samples. Sample tables whose edit lists remove samples are
+   * always expanded.
+   */
+  public static final int FLAG_DECODE_SAMPLE_TABLES_ON_DEMAND = 1 << 8;
+
   /**
    * @deprecated Use {@link #newFactory(SubtitleParser.Factory)} instead.
    */
@@ -195,6 +210,8 @@ public final class Mp4Extractor implements Extractor, SeekMap {
   })
   private @interface State {}
 
+  private static final String TAG = "Mp4Extractor";
+
   private static final int STATE_READING_ATOM_HEADER = 0;
   private static final int STATE_READING_ATOM_PAYLOAD = 1;
   private static final int STATE_READING_SAMPLE = 2;
@@ -223,6 +240,12 @@ public final class Mp4Extractor implements Extractor, SeekMap {
    */
   private static final long MAXIMUM_READ_AHEAD_BYTES_STREAM = 10 * 1024 * 1024;
 
+  /**
+   * For tracks whose sample tables are decoded on demand, the accumulated sample sizes are only
+   * calculated for every this many samples, to keep their memory use bounded.
+   */
+  private static final int ON_DEMAND_ACCUMULATED_SAMPLE_SIZE_STRIDE = 16;
+
   private final SubtitleParser.Factory subtitleParserFactory;
   private final @Flags int flags;
 
@@ -256,11 +279,15 @@ public final class Mp4Extractor implements Extractor, SeekMap {
   // Used when auxiliary tracks samples are in the auxiliary tracks MP4 (inside axte atom).
   private long sampleOffsetForAuxiliaryTracks;
 
+  // Persisted sample tables.
+  @Nullable private SeekIndexStore seekIndexStore;
+  @Nullable private String seekIndexKey;
+
   // Extractor outputs.
   private ExtractorOutput extractorOutput;
   private Mp4Track[] tracks;
 
-  private long  [][] accumulatedSampleSizes;
+  @Nullable private AccumulatedSampleSizes accumulatedSampleSizes;
   private int firstVideoTrackIndex;
   private long durationUs;
   private @FileType int fileType;
@@ -335,6 +362,22 @@ public final class Mp4Extractor implements Extractor, SeekMap {
     return flags;
   }
 
+  /**
+   * Sets a {@link SeekIndexStore} in which the sample tables parsed from the moov atom are
+   * persisted. If the store holds matching sample tables when the stream is opened again, then
+   * they're used instead of parsing the stbl atoms. The moov atom is still read, since the track
+   * formats are parsed from it.
+   *
+   * <p>Must be called before {@link #init(ExtractorOutput)}.
+   *
+   * @param seekIndexStore The {@link SeekIndexStore}.
+   * @param key The key that identifies the stream in the store.
+   */
+  public void setSeekIndexStore(SeekIndexStore seekIndexStore, String key) {
+    this.seekIndexStore = seekIndexStore;
+    this.seekIndexKey = key;
+  }
+
   @Override
   public boolean sniff(ExtractorInput input) throws IOException {
     @Nullable
@@ -463,14 +506,14 @@ public final class Mp4Extractor implements Extractor, SeekMap {
       if (sampleIndex == C.INDEX_UNSET) {
         return new SeekPoints(SeekPoint.START);
       }
-      long sampleTimeUs = sampleTable.timestampsUs[sampleIndex];
+      long sampleTimeUs = sampleTable.getTimestampUs(sampleIndex);
       firstTimeUs = sampleTimeUs;
-      firstOffset = sampleTable.offsets[sampleIndex];
+      firstOffset = sampleTable.getOffset(sampleIndex);
       if (sampleTimeUs < timeUs && sampleIndex < sampleTable.sampleCount - 1) {
         int secondSampleIndex = sampleTable.getIndexOfLaterOrEqualSynchronizationSample(timeUs);
         if (secondSampleIndex != C.INDEX_UNSET && secondSampleIndex != sampleIndex) {
-          secondTimeUs = sampleTable.timestampsUs[secondSampleIndex];
-          secondOffset = sampleTable.offsets[secondSampleIndex];
+          secondTimeUs = sampleTable.getTimestampUs(secondSampleIndex);
+          secondOffset = sampleTable.getOffset(secondSampleIndex);
         }
       }
     } else {
@@ -503,6 +546,9 @@ public final class Mp4Extractor implements Extractor, SeekMap {
   /**
    * Returns the list of sample timestamps of a {@code trackId}, in microseconds.
    *
+   * <p>If the track's sample table is {@linkplain #FLAG_DECODE_SAMPLE_TABLES_ON_DEMAND decoded on
+   * demand}, then the list is decoded in full by this call.
+   *
    * @param trackId The id of the track to get the sample timestamps.
    * @return The corresponding sample timestmaps of the track.
    */
@@ -510,7 +556,15 @@ public final class Mp4Extractor implements Extractor, SeekMap {
     if (tracks.length <= trackId) {
       return new long[0];
     }
-    return tracks[trackId].sampleTable.timestampsUs;
+    TrackSampleTable sampleTable = tracks[trackId].sampleTable;
+    if (!sampleTable.isDecodedOnDemand()) {
+      return sampleTable.timestampsUs;
+    }
+    long[] timestampsUs = new long[sampleTable.sampleCount];
+    for (int i = 0; i < timestampsUs.length; i++) {
+      timestampsUs[i] = sampleTable.getTimestampUs(i);
+    }
+    return timestampsUs;
   }
 
   // Private methods.
@@ -661,6 +715,28 @@ public final class Mp4Extractor implements Extractor, SeekMap {
     }
   }
 
+  /**
+   * Returns the sample tables for {@code moov} that are persisted in the {@link #seekIndexStore},
+   * or null if there are none.
+   */
+  @Nullable
+  private TrackSampleTableCodec.DecodedSampleTables loadSampleTables(
+      ContainerBox moov, boolean ignoreEditLists) {
+    SeekIndexStore seekIndexStore = checkNotNull(this.seekIndexStore);
+    String key = checkNotNull(seekIndexKey);
+    @Nullable byte[] data = seekIndexStore.get(key);
+    if (data == null) {
+      return null;
+    }
+    try {
+      return TrackSampleTableCodec.decode(data, moov, ignoreEditLists);
+    } catch (IOException | RuntimeException e) {
+      Log.w(TAG, "Ignoring malformed sample tables", e);
+      seekIndexStore.remove(key);
+      return null;
+    }
+  }
+
   /**
    * Processes moov atom and updates the stored track metadata.
    *
@@ -702,6 +778,16 @@ public final class Mp4Extractor implements Extractor, SeekMap {
             BoxParser.parseMvhd(checkNotNull(moov.getLeafBoxOfType(Mp4Box.TYPE_mvhd)).data));
 
     boolean ignoreEditLists = (flags & FLAG_WORKAROUND_IGNORE_EDIT_LISTS) != 0;
+    // Auxiliary tracks are read from a second moov atom in the same stream, so they aren't stored.
+    boolean useSeekIndexStore = seekIndexStore != null && !readingAuxiliaryTracks;
+    @Nullable
+    TrackSampleTableCodec.DecodedSampleTables storedSampleTables =
+        useSeekIndexStore ? loadSampleTables(moov, ignoreEditLists) : null;
+    @Nullable BoxParser.SampleTableSupplier sampleTableSupplier = storedSampleTables;
+    if (sampleTableSupplier == null && (flags & FLAG_DECODE_SAMPLE_TABLES_ON_DEMAND) != 0) {
+      sampleTableSupplier =
+          (track, stbl) -> BoxParser.parseStblOnDemand(track, stbl, gaplessInfoHolder);
+    }
     List<TrackSampleTable> trackSampleTables =
         parseTraks(
             moov,
@@ -710,7 +796,19 @@ public final class Mp4Extractor implements Extractor, SeekMap {
             /* drmInitData= */ null,
             ignoreEditLists,
             isQuickTime,
-            /* modifyTrackFunction= */ track -> track);
+            /* modifyTrackFunction= */ track -> track,
+            sampleTableSupplier);
+    if (storedSampleTables != null) {
+      // Parsing the stbl atoms may have overwritten the gapless information from the udta atom.
+      gaplessInfoHolder.encoderDelay = storedSampleTables.encoderDelay;
+      gaplessInfoHolder.encoderPadding = storedSampleTables.encoderPadding;
+    } else if (useSeekIndexStore) {
+      checkNotNull(seekIndexStore)
+          .put(
+              checkNotNull(seekIndexKey),
+              TrackSampleTableCodec.encode(
+                  moov, ignoreEditLists, gaplessInfoHolder, trackSampleTables));
+    }
 
     if (readingAuxiliaryTracks) {
       checkState(
@@ -783,7 +881,7 @@ public final class Mp4Extractor implements Extractor, SeekMap {
     this.firstVideoTrackIndex = firstVideoTrackIndex;
     this.durationUs = durationUs;
     this.tracks = tracks.toArray(new Mp4Track[0]);
-    accumulatedSampleSizes = calculateAccumulatedSampleSizes(this.tracks);
+    accumulatedSampleSizes = new AccumulatedSampleSizes(this.tracks);
 
     extractorOutput.endTracks();
     extractorOutput.seekMap(this);
@@ -880,8 +978,8 @@ public final class Mp4Extractor implements Extractor, SeekMap {
     Mp4Track track = tracks[sampleTrackIndex];
     TrackOutput trackOutput = track.trackOutput;
     int sampleIndex = track.sampleIndex;
-    long position = track.sampleTable.offsets[sampleIndex] + sampleOffsetForAuxiliaryTracks;
-    int sampleSize = track.sampleTable.sizes[sampleIndex];
+    long position = track.sampleTable.getOffset(sampleIndex) + sampleOffsetForAuxiliaryTracks;
+    int sampleSize = track.sampleTable.getSize(sampleIndex);
     @Nullable TrueHdSampleRechunker trueHdSampleRechunker = track.trueHdSampleRechunker;
     long skipAmount = position - inputPosition + sampleBytesRead;
     if (skipAmount < 0 || skipAmount >= RELOAD_MINIMUM_SEEK_DISTANCE) {
@@ -916,7 +1014,7 @@ public final class Mp4Extractor implements Extractor, SeekMap {
           int numberOfBytesToDetermineSampleDependencies = 0;
           if (!isSampleDependedOn
               && nalUnitPrefixLength + NalUnitUtil.numberOfBytesInNalUnitHeader(track.track.format)
-                  <= track.sampleTable.sizes[sampleIndex] - sampleBytesRead) {
+                  <= track.sampleTable.getSize(sampleIndex) - sampleBytesRead) {
             // Parsing sample dependencies needs the first few NAL unit bytes. Read them in the same
             // readFully call that reads the NAL length. This ensures sampleBytesRead,
             // sampleBytesWritten and isSampleDependedOn remain in a consistent state if we have
@@ -983,8 +1081,8 @@ public final class Mp4Extractor implements Extractor, SeekMap {
       }
     }
 
-    long timeUs = track.sampleTable.timestampsUs[sampleIndex];
-    @C.BufferFlags int sampleFlags = track.sampleTable.flags[sampleIndex];
+    long timeUs = track.sampleTable.getTimestampUs(sampleIndex);
+    @C.BufferFlags int sampleFlags = track.sampleTable.getFlags(sampleIndex);
     if (!isSampleDependedOn) {
       sampleFlags |= C.BUFFER_FLAG_NOT_DEPENDED_ON;
     }
@@ -1035,8 +1133,9 @@ public final class Mp4Extractor implements Extractor, SeekMap {
       if (sampleIndex == track.sampleTable.sampleCount) {
         continue;
       }
-      long sampleOffset = track.sampleTable.offsets[sampleIndex];
-      long sampleAccumulatedBytes = castNonNull(accumulatedSampleSizes)[trackIndex][sampleIndex];
+      long sampleOffset = track.sampleTable.getOffset(sampleIndex);
+      long sampleAccumulatedBytes =
+          castNonNull(accumulatedSampleSizes).get(trackIndex, sampleIndex);
       long skipAmount = sampleOffset - inputPosition;
       boolean requiresReload = skipAmount < 0 || skipAmount >= RELOAD_MINIMUM_SEEK_DISTANCE;
       if ((!requiresReload && preferredRequiresReload)
@@ -1120,43 +1219,9 @@ public final class Mp4Extractor implements Extractor, SeekMap {
     return false;
   }
 
-  /**
-   * For each sample of each track, calculates accumulated size of all samples which need to be read
-   * before this sample can be used.
-   */
-  private static long[][] calculateAccumulatedSampleSizes(Mp4Track[] tracks) {
-    long[][] accumulatedSampleSizes = new long[tracks.length][];
-    int[] nextSampleIndex = new int[tracks.length];
-    long[] nextSampleTimesUs = new long[tracks.length];
-    boolean[] tracksFinished = new boolean[tracks.length];
-    for (int i = 0; i < tracks.length; i++) {
-      accumulatedSampleSizes[i] = new long[tracks[i].sampleTable.sampleCount];
-      nextSampleTimesUs[i] = tracks[i].sampleTable.timestampsUs[0];
-    }
-    long accumulatedSampleSize = 0;
-    int finishedTracks = 0;
-    while (finishedTracks < tracks.length) {
-      long minTimeUs = Long.MAX_VALUE;
-      int minTimeTrackIndex = -1;
-      for (int i = 0; i < tracks.length; i++) {
-        if (!tracksFinished[i] && nextSampleTimesUs[i] <= minTimeUs) {
-          minTimeTrackIndex = i;
-          minTimeUs = nextSampleTimesUs[i];
-        }
-      }
-      int trackSampleIndex = nextSampleIndex[minTimeTrackIndex];
-      accumulatedSampleSizes[minTimeTrackIndex][trackSampleIndex] = accumulatedSampleSize;
-      accumulatedSampleSize += tracks[minTimeTrackIndex].sampleTable.sizes[trackSampleIndex];
-      nextSampleIndex[minTimeTrackIndex] = ++trackSampleIndex;
-      if (trackSampleIndex < accumulatedSampleSizes[minTimeTrackIndex].length) {
-        nextSampleTimesUs[minTimeTrackIndex] =
-            tracks[minTimeTrackIndex].sampleTable.timestampsUs[trackSampleIndex];
-      } else {
-        tracksFinished[minTimeTrackIndex] = true;
-        finishedTracks++;
-      }
-    }
-    return accumulatedSampleSizes;
+  /** Returns the number of samples of {@code track} covered by each accumulated sample size. */
+  private static int getAccumulatedSampleSizeStride(Mp4Track track) {
+    return track.sampleTable.isDecodedOnDemand() ? ON_DEMAND_ACCUMULATED_SAMPLE_SIZE_STRIDE : 1;
   }
 
   /**
@@ -1174,7 +1239,7 @@ public final class Mp4Extractor implements Extractor, SeekMap {
     if (sampleIndex == C.INDEX_UNSET) {
       return offset;
     }
-    long sampleOffset = sampleTable.offsets[sampleIndex];
+    long sampleOffset = sampleTable.getOffset(sampleIndex);
     return min(sampleOffset, offset);
   }
 
@@ -1266,6 +1331,79 @@ public final class Mp4Extractor implements Extractor, SeekMap {
         || atom == Mp4Box.TYPE_axte;
   }
 
+  /**
+   * For each sample of each track, the accumulated size of all samples which need to be read before
+   * the sample can be used.
+   *
+   * <p>The sizes are calculated by merging the tracks' samples in timestamp order. The merge only
+   * advances as far as the samples whose sizes are requested, so that reading the first samples
+   * doesn't require every sample of the tracks to be decoded.
+   *
+   * <p>For tracks whose sample tables are decoded on demand, the size is only calculated for every
+   * {@link #ON_DEMAND_ACCUMULATED_SAMPLE_SIZE_STRIDE} samples, and is used for the samples that
+   * follow it.
+   */
+  private static final class AccumulatedSampleSizes {
+
+    private final Mp4Track[] tracks;
+    private final long[][] accumulatedSampleSizes;
+    private final int[] nextSampleIndices;
+    private final long[] nextSampleTimesUs;
+    private final boolean[] tracksFinished;
+
+    private long accumulatedSampleSize;
+
+    public AccumulatedSampleSizes(Mp4Track[] tracks) {
+      this.tracks = tracks;
+      accumulatedSampleSizes = new long[tracks.length][];
+      nextSampleIndices = new int[tracks.length];
+      nextSampleTimesUs = new long[tracks.length];
+      tracksFinished = new boolean[tracks.length];
+      for (int i = 0; i < tracks.length; i++) {
+        TrackSampleTable sampleTable = tracks[i].sampleTable;
+        int stride = getAccumulatedSampleSizeStride(tracks[i]);
+        accumulatedSampleSizes[i] = new long[Util.ceilDivide(sampleTable.sampleCount, stride)];
+        nextSampleTimesUs[i] = sampleTable.getTimestampUs(0);
+      }
+    }
+
+    /** Returns the accumulated size for a sample of a track. */
+    public long get(int trackIndex, int sampleIndex) {
+      int stride = getAccumulatedSampleSizeStride(tracks[trackIndex]);
+      int strideIndex = sampleIndex / stride;
+      while (nextSampleIndices[trackIndex] <= strideIndex * stride) {
+        mergeNextSample();
+      }
+      return accumulatedSampleSizes[trackIndex][strideIndex];
+    }
+
+    /** Adds the size of the sample with the smallest timestamp that hasn't been merged yet. */
+    private void mergeNextSample() {
+      long minTimeUs = Long.MAX_VALUE;
+      int minTimeTrackIndex = -1;
+      for (int i = 0; i < tracks.length; i++) {
+        if (!tracksFinished[i] && nextSampleTimesUs[i] <= minTimeUs) {
+          minTimeTrackIndex = i;
+          minTimeUs = nextSampleTimesUs[i];
+        }
+      }
+      Mp4Track track = tracks[minTimeTrackIndex];
+      int trackSampleIndex = nextSampleIndices[minTimeTrackIndex];
+      int stride = getAccumulatedSampleSizeStride(track);
+      if (trackSampleIndex % stride == 0) {
+        accumulatedSampleSizes[minTimeTrackIndex][trackSampleIndex / stride] =
+            accumulatedSampleSize;
+      }
+      accumulatedSampleSize += track.sampleTable.getSize(trackSampleIndex);
+      nextSampleIndices[minTimeTrackIndex] = ++trackSampleIndex;
+      if (trackSampleIndex < track.sampleTable.sampleCount) {
+        nextSampleTimesUs[minTimeTrackIndex] = track.sampleTable.getTimestampUs(trackSampleIndex);
+      } else {
+        tracksFinished[minTimeTrackIndex] = true;
+      }
+    }
+  }
+
   private static final class Mp4Track {
 
     public final Track track;
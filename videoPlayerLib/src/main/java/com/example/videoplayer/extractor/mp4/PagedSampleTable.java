@@ -0,0 +1,910 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.videoplayer.extractor.mp4;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+import androidx.annotation.Nullable;
+import com.example.videoplayer.common.C;
+import com.example.videoplayer.common.MimeTypes;
+import com.example.videoplayer.common.util.Log;
+import com.example.videoplayer.common.util.NullableType;
+import com.example.videoplayer.common.util.ParsableByteArray;
+import com.example.videoplayer.common.util.Util;
+import com.example.videoplayer.container.Mp4Box;
+import com.example.videoplayer.container.Mp4Box.LeafBox;
+import java.util.Arrays;
+
+/**
+ * A sample table that keeps the raw boxes of an stbl box, and decodes its samples on demand in
+ * pages of {@link #PAGE_SIZE} samples.
+ *
+ * <p>When the table is created, the number of samples, their total and maximum sizes and their
+ * duration are calculated from the boxes' entries without decoding the samples. A sparse index
+ * with the state needed to resume decoding at the start of each page and the synchronization
+ * samples in each page is built as pages are first accessed, so samples near the start of the
+ * table are available without reading the whole table. Decoded pages are kept in a small cache,
+ * so the memory used by the table is bounded by the size of the raw boxes rather than by the
+ * number of samples.
+ *
+ * <p>Samples are decoded exactly as {@link BoxParser#parseStbl} decodes them. Timestamps are
+ * available in timescale units, and in microseconds after subtracting a {@linkplain
+ * #setTimestampShift(long) shift}.
+ *
+ * <p>The table is safe to use from several threads.
+ */
+/* package */ final class PagedSampleTable {
+
+  /** The number of samples in each page. */
+  public static final int PAGE_SIZE = 1024;
+
+  /** The maximum number of decoded pages that are kept. */
+  private static final int MAX_CACHED_PAGES = 4;
+
+  /**
+   * The minimum number of samples for which a table is paged. Below this, expanding the full table
+   * takes no more memory than the page cache.
+   */
+  private static final int MIN_SAMPLE_COUNT = MAX_CACHED_PAGES * PAGE_SIZE;
+
+  private static final String TAG = "PagedSampleTable";
+
+  // Offsets of the first entry of each box, following the box header, the full box header and the
+  // fields that precede the entries.
+  private static final int SAMPLE_SIZE_ENTRIES_OFFSET = Mp4Box.FULL_HEADER_SIZE + 8;
+  private static final int ENTRIES_OFFSET = Mp4Box.FULL_HEADER_SIZE + 4;
+
+  /** The number of samples declared by the stsz or stz2 box. */
+  public final int declaredSampleCount;
+
+  /** The number of samples, which is less than the declared number if the chunk data ends early. */
+  public final int sampleCount;
+
+  /** The maximum sample size in bytes. */
+  public final int maximumSize;
+
+  /** The total size of the samples in bytes. */
+  public final long totalSize;
+
+  /** The duration of the samples, in timescale units. */
+  public final long duration;
+
+  private final int trackId;
+  private final long timescale;
+
+  private final byte[] sampleSizeData;
+  private final int sampleSizeFieldBits; // 0 if the sample size is fixed, or 4, 8, 16 or 32.
+  private final int fixedSampleSize;
+  private final byte[] chunkOffsetData;
+  private final boolean chunkOffsetsAreLongs;
+  private final int chunkCount;
+  private final byte[] stscData;
+  private final int stscEntryCount;
+  private final byte[] sttsData;
+  private final int sttsEntryCount;
+  @Nullable private final byte[] cttsData;
+  private final int cttsEntryCount;
+  @Nullable private final byte[] stssData;
+  private final int stssEntryCount;
+
+  // The sparse index, with an entry for each page. Only the first indexedPageCount entries are set.
+  private final Cursor[] pageStartCursors;
+  // The index of the last synchronization sample at or before the end of each page.
+  private final int[] pageLastSynchronizationSampleIndices;
+  // The index of the first synchronization sample in each page, or C.INDEX_UNSET if there's none.
+  private final int[] pageFirstSynchronizationSampleIndices;
+  // The cursor from which the next page is indexed.
+  private final Cursor indexCursor;
+  private int indexedPageCount;
+  // The minimum timestamp of the indexed samples.
+  private long indexedMinimumTimestamp;
+
+  private final @NullableType Page[] pages;
+  @Nullable private Page lastAccessedPage;
+  private long pageAccessCount;
+  private long timestampShift;
+
+  /**
+   * Creates a table for an stbl box, or returns null if the stbl box isn't suitable for paging.
+   *
+   * <p>Tables aren't created for stbl boxes with too few samples, raw audio that may need to be
+   * rechunked, or boxes that are malformed, which should be parsed by {@link BoxParser#parseStbl}.
+   *
+   * @param track The track to which the stbl box belongs.
+   * @param stblBox The stbl (sample table) box.
+   * @return The table, or null.
+   */
+  @Nullable
+  public static PagedSampleTable create(Track track, Mp4Box.ContainerBox stblBox) {
+    @Nullable String sampleMimeType = track.format.sampleMimeType;
+    if (MimeTypes.AUDIO_RAW.equals(sampleMimeType)
+        || MimeTypes.AUDIO_MLAW.equals(sampleMimeType)
+        || MimeTypes.AUDIO_ALAW.equals(sampleMimeType)) {
+      return null;
+    }
+
+    int sampleSizeFieldBits;
+    int fixedSampleSize = C.LENGTH_UNSET;
+    ParsableByteArray sampleSizes;
+    @Nullable LeafBox stszBox = stblBox.getLeafBoxOfType(Mp4Box.TYPE_stsz);
+    if (stszBox != null) {
+      sampleSizes = stszBox.data;
+      if (sampleSizes.limit() < SAMPLE_SIZE_ENTRIES_OFFSET) {
+        return null;
+      }
+      int sampleSize = readInt(sampleSizes.getData(), Mp4Box.FULL_HEADER_SIZE);
+      if (sampleSize < 0) {
+        return null;
+      } else if (sampleSize != 0) {
+        fixedSampleSize = sampleSize;
+      }
+      sampleSizeFieldBits = fixedSampleSize == C.LENGTH_UNSET ? 32 : 0;
+    } else {
+      @Nullable LeafBox stz2Box = stblBox.getLeafBoxOfType(Mp4Box.TYPE_stz2);
+      if (stz2Box == null) {
+        return null;
+      }
+      sampleSizes = stz2Box.data;
+      if (sampleSizes.limit() < SAMPLE_SIZE_ENTRIES_OFFSET) {
+        return null;
+      }
+      sampleSizeFieldBits = sampleSizes.getData()[Mp4Box.FULL_HEADER_SIZE + 3] & 0xFF;
+      if (sampleSizeFieldBits != 4 && sampleSizeFieldBits != 8 && sampleSizeFieldBits != 16) {
+        return null;
+      }
+    }
+    int sampleCount = readInt(sampleSizes.getData(), Mp4Box.FULL_HEADER_SIZE + 4);
+    if (sampleCount < MIN_SAMPLE_COUNT
+        || !hasEntries(sampleSizes, SAMPLE_SIZE_ENTRIES_OFFSET, sampleCount, sampleSizeFieldBits)) {
+      return null;
+    }
+
+    boolean chunkOffsetsAreLongs = false;
+    @Nullable LeafBox chunkOffsetBox = stblBox.getLeafBoxOfType(Mp4Box.TYPE_stco);
+    if (chunkOffsetBox == null) {
+      chunkOffsetsAreLongs = true;
+      chunkOffsetBox = stblBox.getLeafBoxOfType(Mp4Box.TYPE_co64);
+    }
+    @Nullable LeafBox stscBox = stblBox.getLeafBoxOfType(Mp4Box.TYPE_stsc);
+    @Nullable LeafBox sttsBox = stblBox.getLeafBoxOfType(Mp4Box.TYPE_stts);
+    if (chunkOffsetBox == null || stscBox == null || sttsBox == null) {
+      return null;
+    }
+    @Nullable LeafBox cttsBox = stblBox.getLeafBoxOfType(Mp4Box.TYPE_ctts);
+    @Nullable LeafBox stssBox = stblBox.getLeafBoxOfType(Mp4Box.TYPE_stss);
+    int chunkCount = getEntryCount(chunkOffsetBox.data, chunkOffsetsAreLongs ? 64 : 32);
+    int stscEntryCount = getEntryCount(stscBox.data, /* entryBits= */ 96);
+    int sttsEntryCount = getEntryCount(sttsBox.data, /* entryBits= */ 64);
+    int cttsEntryCount = cttsBox != null ? getEntryCount(cttsBox.data, /* entryBits= */ 64) : 0;
+    int stssEntryCount = stssBox != null ? getEntryCount(stssBox.data, /* entryBits= */ 32) : 0;
+    if (chunkCount == C.LENGTH_UNSET
+        || stscEntryCount <= 0
+        || readInt(stscBox.data.getData(), ENTRIES_OFFSET) != 1
+        || sttsEntryCount <= 0
+        || cttsEntryCount == C.LENGTH_UNSET
+        || stssEntryCount == C.LENGTH_UNSET) {
+      // Let parseStbl handle the malformed box.
+      return null;
+    }
+    // Empty stss boxes are ignored, which causes all samples to be treated as sync samples.
+    @Nullable
+    byte[] stssData = stssBox != null && stssEntryCount > 0 ? stssBox.data.getData() : null;
+
+    PagedSampleTable table =
+        new PagedSampleTable(
+            track,
+            sampleCount,
+            sampleSizes.getData(),
+            sampleSizeFieldBits,
+            fixedSampleSize,
+            chunkOffsetBox.data.getData(),
+            chunkOffsetsAreLongs,
+            chunkCount,
+            stscBox.data.getData(),
+            stscEntryCount,
+            sttsBox.data.getData(),
+            sttsEntryCount,
+            cttsBox != null ? cttsBox.data.getData() : null,
+            cttsEntryCount,
+            stssData,
+            stssEntryCount);
+    return table.sampleCount > 0 ? table : null;
+  }
+
+  private PagedSampleTable(
+      Track track,
+      int declaredSampleCount,
+      byte[] sampleSizeData,
+      int sampleSizeFieldBits,
+      int fixedSampleSize,
+      byte[] chunkOffsetData,
+      boolean chunkOffsetsAreLongs,
+      int chunkCount,
+      byte[] stscData,
+      int stscEntryCount,
+      byte[] sttsData,
+      int sttsEntryCount,
+      @Nullable byte[] cttsData,
+      int cttsEntryCount,
+      @Nullable byte[] stssData,
+      int stssEntryCount) {
+    this.declaredSampleCount = declaredSampleCount;
+    this.timescale = track.timescale;
+    this.sampleSizeData = sampleSizeData;
+    this.sampleSizeFieldBits = sampleSizeFieldBits;
+    this.fixedSampleSize = fixedSampleSize;
+    this.chunkOffsetData = chunkOffsetData;
+    this.chunkOffsetsAreLongs = chunkOffsetsAreLongs;
+    this.chunkCount = chunkCount;
+    this.stscData = stscData;
+    this.stscEntryCount = stscEntryCount;
+    this.sttsData = sttsData;
+    this.sttsEntryCount = sttsEntryCount;
+    this.cttsData = cttsData;
+    this.cttsEntryCount = cttsEntryCount;
+    this.stssData = stssData;
+    this.stssEntryCount = stssEntryCount;
+    pages = new Page[MAX_CACHED_PAGES];
+    trackId = track.id;
+
+    long availableSampleCount = getAvailableSampleCount();
+    if (availableSampleCount < declaredSampleCount) {
+      Log.w(TAG, "Unexpected end of chunk data");
+      sampleCount = (int) availableSampleCount;
+    } else {
+      sampleCount = declaredSampleCount;
+    }
+    if (sampleSizeFieldBits == 0) {
+      maximumSize = sampleCount > 0 ? fixedSampleSize : 0;
+      totalSize = (long) sampleCount * fixedSampleSize;
+    } else {
+      int maximumSize = 0;
+      long totalSize = 0;
+      for (int i = 0; i < sampleCount; i++) {
+        int sampleSize = readSampleSize(i);
+        totalSize += sampleSize;
+        maximumSize = max(maximumSize, sampleSize);
+      }
+      this.maximumSize = maximumSize;
+      this.totalSize = totalSize;
+    }
+    duration = getDecodeTime(sampleCount) + getTimestampOffset(sampleCount - 1);
+
+    int pageCount = Util.ceilDivide(sampleCount, PAGE_SIZE);
+    pageStartCursors = new Cursor[pageCount];
+    pageLastSynchronizationSampleIndices = new int[pageCount];
+    pageFirstSynchronizationSampleIndices = new int[pageCount];
+    indexCursor = new Cursor();
+    indexedMinimumTimestamp = Long.MAX_VALUE;
+  }
+
+  /**
+   * Returns the minimum sample timestamp, in timescale units.
+   *
+   * <p>All samples are read to find the minimum, so this should be avoided where possible.
+   */
+  public synchronized long getMinimumTimestamp() {
+    indexPagesThrough(pageStartCursors.length - 1);
+    return indexedMinimumTimestamp;
+  }
+
+  /**
+   * Sets the shift that's subtracted from timestamps in timescale units before they're converted
+   * to microseconds. Must be called before the table is shared with other threads.
+   */
+  public synchronized void setTimestampShift(long timestampShift) {
+    if (this.timestampShift != timestampShift) {
+      this.timestampShift = timestampShift;
+      Arrays.fill(pages, null);
+      lastAccessedPage = null;
+    }
+  }
+
+  /** Returns the offset of a sample in bytes. */
+  public synchronized long getOffset(int sampleIndex) {
+    return getPage(sampleIndex).offsets[sampleIndex % PAGE_SIZE];
+  }
+
+  /** Returns the size of a sample in bytes. */
+  public synchronized int getSize(int sampleIndex) {
+    return getPage(sampleIndex).sizes[sampleIndex % PAGE_SIZE];
+  }
+
+  /** Returns the timestamp of a sample in timescale units. */
+  public synchronized long getTimestamp(int sampleIndex) {
+    return getPage(sampleIndex).timestamps[sampleIndex % PAGE_SIZE];
+  }
+
+  /** Returns the timestamp of a sample in microseconds. */
+  public synchronized long getTimestampUs(int sampleIndex) {
+    return getPage(sampleIndex).timestampsUs[sampleIndex % PAGE_SIZE];
+  }
+
+  /** Returns the {@link C.BufferFlags} of a sample. */
+  public synchronized @C.BufferFlags int getFlags(int sampleIndex) {
+    return getPage(sampleIndex).flags[sampleIndex % PAGE_SIZE];
+  }
+
+  /**
+   * Equivalent to {@link Util#binarySearchFloor(long[], long, boolean, boolean)} over the sample
+   * timestamps in timescale units.
+   */
+  public synchronized int binarySearchTimestampFloor(
+      long timestamp, boolean inclusive, boolean stayInBounds) {
+    int index = binarySearchTimestamp(timestamp);
+    if (index < 0) {
+      index = -(index + 2);
+    } else {
+      while (--index >= 0 && getTimestamp(index) == timestamp) {}
+      if (inclusive) {
+        index++;
+      }
+    }
+    return stayInBounds ? max(0, index) : index;
+  }
+
+  /**
+   * Equivalent to {@link Util#binarySearchCeil(long[], long, boolean, boolean)} over the sample
+   * timestamps in timescale units.
+   */
+  public synchronized int binarySearchTimestampCeil(
+      long timestamp, boolean inclusive, boolean stayInBounds) {
+    int index = binarySearchTimestamp(timestamp);
+    if (index < 0) {
+      index = ~index;
+    } else {
+      while (++index < sampleCount && getTimestamp(index) == timestamp) {}
+      if (inclusive) {
+        index--;
+      }
+    }
+    return stayInBounds ? min(sampleCount - 1, index) : index;
+  }
+
+  /**
+   * Returns the index of the closest synchronization sample at or before the given timestamp, or
+   * {@link C#INDEX_UNSET} if there isn't one. See {@link
+   * TrackSampleTable#getIndexOfEarlierOrEqualSynchronizationSample(long)}.
+   *
+   * <p>The timestamp is searched for exactly as {@link Util#binarySearchFloor(long[], long,
+   * boolean, boolean)} searches the timestamps of a full table, so the result is the same even if
+   * frames are reordered past synchronization samples. This decodes the pages that the binary
+   * search visits.
+   */
+  public synchronized int getIndexOfEarlierOrEqualSynchronizationSample(long timeUs) {
+    int startIndex = binarySearchTimestampUs(timeUs);
+    if (startIndex < 0) {
+      startIndex = -(startIndex + 2);
+    } else {
+      while (startIndex > 0 && getTimestampUs(startIndex - 1) == timeUs) {
+        startIndex--;
+      }
+    }
+    if (startIndex < 0) {
+      return C.INDEX_UNSET;
+    }
+    Page page = getPage(startIndex);
+    for (int i = startIndex - page.firstSampleIndex; i >= 0; i--) {
+      if ((page.flags[i] & C.BUFFER_FLAG_KEY_FRAME) != 0) {
+        return page.firstSampleIndex + i;
+      }
+    }
+    return page.index > 0 ? pageLastSynchronizationSampleIndices[page.index - 1] : C.INDEX_UNSET;
+  }
+
+  /**
+   * Returns the index of the closest synchronization sample at or after the given timestamp, or
+   * {@link C#INDEX_UNSET} if there isn't one. See {@link
+   * TrackSampleTable#getIndexOfLaterOrEqualSynchronizationSample(long)}.
+   *
+   * <p>The timestamp is searched for exactly as {@link Util#binarySearchCeil(long[], long,
+   * boolean, boolean)} searches the timestamps of a full table.
+   */
+  public synchronized int getIndexOfLaterOrEqualSynchronizationSample(long timeUs) {
+    int startIndex = binarySearchTimestampUs(timeUs);
+    if (startIndex < 0) {
+      startIndex = ~startIndex;
+    } else {
+      while (startIndex < sampleCount - 1 && getTimestampUs(startIndex + 1) == timeUs) {
+        startIndex++;
+      }
+    }
+    if (startIndex == sampleCount) {
+      return C.INDEX_UNSET;
+    }
+    Page page = getPage(startIndex);
+    for (int i = startIndex - page.firstSampleIndex; i < page.length; i++) {
+      if ((page.flags[i] & C.BUFFER_FLAG_KEY_FRAME) != 0) {
+        return page.firstSampleIndex + i;
+      }
+    }
+    for (int i = page.index + 1; i < pageStartCursors.length; i++) {
+      indexPagesThrough(i);
+      if (pageFirstSynchronizationSampleIndices[i] != C.INDEX_UNSET) {
+        return pageFirstSynchronizationSampleIndices[i];
+      }
+    }
+    return C.INDEX_UNSET;
+  }
+
+  /** Equivalent to {@link Arrays#binarySearch(long[], long)} over the sample timestamps. */
+  private int binarySearchTimestamp(long timestamp) {
+    int lowIndex = 0;
+    int highIndex = sampleCount - 1;
+    while (lowIndex <= highIndex) {
+      int midIndex = (lowIndex + highIndex) >>> 1;
+      long midTimestamp = getTimestamp(midIndex);
+      if (midTimestamp < timestamp) {
+        lowIndex = midIndex + 1;
+      } else if (midTimestamp > timestamp) {
+        highIndex = midIndex - 1;
+      } else {
+        return midIndex;
+      }
+    }
+    return -(lowIndex + 1);
+  }
+
+  /** Equivalent to {@link Arrays#binarySearch(long[], long)} over the sample timestamps in us. */
+  private int binarySearchTimestampUs(long timeUs) {
+    int lowIndex = 0;
+    int highIndex = sampleCount - 1;
+    while (lowIndex <= highIndex) {
+      int midIndex = (lowIndex + highIndex) >>> 1;
+      long midTimeUs = getTimestampUs(midIndex);
+      if (midTimeUs < timeUs) {
+        lowIndex = midIndex + 1;
+      } else if (midTimeUs > timeUs) {
+        highIndex = midIndex - 1;
+      } else {
+        return midIndex;
+      }
+    }
+    return -(lowIndex + 1);
+  }
+
+  private long toUs(long timestamp) {
+    return Util.scaleLargeTimestamp(timestamp - timestampShift, C.MICROS_PER_SECOND, timescale);
+  }
+
+  /** Returns the page containing a sample, decoding it if it isn't cached. */
+  private Page getPage(int sampleIndex) {
+    int pageIndex = sampleIndex / PAGE_SIZE;
+    @Nullable Page page = lastAccessedPage;
+    if (page == null || page.index != pageIndex) {
+      page = null;
+      int leastRecentlyAccessedSlot = 0;
+      long leastRecentAccessCount = Long.MAX_VALUE;
+      for (int i = 0; i < pages.length; i++) {
+        @Nullable Page cachedPage = pages[i];
+        if (cachedPage == null) {
+          // Slots are filled in order, so the remaining slots are empty too.
+          leastRecentlyAccessedSlot = i;
+          break;
+        } else if (cachedPage.index == pageIndex) {
+          page = cachedPage;
+          break;
+        } else if (cachedPage.accessCount < leastRecentAccessCount) {
+          leastRecentlyAccessedSlot = i;
+          leastRecentAccessCount = cachedPage.accessCount;
+        }
+      }
+      if (page == null) {
+        page = pages[leastRecentlyAccessedSlot];
+        if (page == null) {
+          page = new Page();
+          pages[leastRecentlyAccessedSlot] = page;
+        }
+        decodePage(pageIndex, page);
+      }
+      lastAccessedPage = page;
+    }
+    page.accessCount = ++pageAccessCount;
+    return page;
+  }
+
+  /** Extends the sparse index to cover the pages up to and including {@code pageIndex}. */
+  private void indexPagesThrough(int pageIndex) {
+    while (indexedPageCount <= pageIndex) {
+      int firstSampleIndex = indexedPageCount * PAGE_SIZE;
+      int length = min(PAGE_SIZE, sampleCount - firstSampleIndex);
+      int lastSynchronizationSampleIndex =
+          indexedPageCount > 0
+              ? pageLastSynchronizationSampleIndices[indexedPageCount - 1]
+              : C.INDEX_UNSET;
+      int firstSynchronizationSampleIndex = C.INDEX_UNSET;
+      pageStartCursors[indexedPageCount] = new Cursor(indexCursor);
+      for (int i = 0; i < length; i++) {
+        // The number of samples is limited to those in the chunk data, so it can't end early.
+        indexCursor.readNextSample();
+        indexedMinimumTimestamp = min(indexedMinimumTimestamp, indexCursor.sampleTimestamp);
+        if ((indexCursor.sampleFlags & C.BUFFER_FLAG_KEY_FRAME) != 0) {
+          lastSynchronizationSampleIndex = firstSampleIndex + i;
+          if (firstSynchronizationSampleIndex == C.INDEX_UNSET) {
+            firstSynchronizationSampleIndex = firstSampleIndex + i;
+          }
+        }
+      }
+      pageLastSynchronizationSampleIndices[indexedPageCount] = lastSynchronizationSampleIndex;
+      pageFirstSynchronizationSampleIndices[indexedPageCount] = firstSynchronizationSampleIndex;
+      indexedPageCount++;
+      if (indexedPageCount == pageStartCursors.length) {
+        indexCursor.logIfInconsistent(trackId);
+      }
+    }
+  }
+
+  private void decodePage(int pageIndex, Page page) {
+    indexPagesThrough(pageIndex);
+    Cursor cursor = new Cursor(pageStartCursors[pageIndex]);
+    int firstSampleIndex = pageIndex * PAGE_SIZE;
+    int length = min(PAGE_SIZE, sampleCount - firstSampleIndex);
+    for (int i = 0; i < length; i++) {
+      // The page has been indexed, so the chunk data can't end early.
+      cursor.readNextSample();
+      page.offsets[i] = cursor.sampleOffset;
+      page.sizes[i] = cursor.sampleSize;
+      page.timestamps[i] = cursor.sampleTimestamp;
+      page.timestampsUs[i] = toUs(cursor.sampleTimestamp);
+      page.flags[i] = cursor.sampleFlags;
+    }
+    if (firstSampleIndex + length == sampleCount) {
+      page.flags[length - 1] |= C.BUFFER_FLAG_LAST_SAMPLE;
+    }
+    page.index = pageIndex;
+    page.firstSampleIndex = firstSampleIndex;
+    page.length = length;
+  }
+
+  /**
+   * Returns the number of samples in the chunks, following the stsc entries as {@link
+   * Cursor#readNextSample()} does, or {@link Long#MAX_VALUE} if the chunk data doesn't end.
+   */
+  private long getAvailableSampleCount() {
+    long availableSampleCount = 0;
+    int chunkIndex = 0;
+    int samplesPerChunk = 0;
+    int nextStscEntryIndex = 0;
+    int nextSamplesPerChunkChangeIndex = 0;
+    while (chunkIndex < chunkCount) {
+      if (chunkIndex == nextSamplesPerChunkChangeIndex) {
+        int position = ENTRIES_OFFSET + 12 * nextStscEntryIndex++;
+        samplesPerChunk = readInt(stscData, position + 4);
+        nextSamplesPerChunkChangeIndex =
+            nextStscEntryIndex < stscEntryCount
+                ? readInt(stscData, position + 12) - 1
+                : C.INDEX_UNSET;
+      }
+      if (samplesPerChunk < 0) {
+        // The cursor never leaves a chunk with a negative number of samples.
+        return Long.MAX_VALUE;
+      }
+      // Entries that don't move forward are never applied, like in the cursor.
+      int runEndIndex =
+          nextSamplesPerChunkChangeIndex > chunkIndex && nextSamplesPerChunkChangeIndex < chunkCount
+              ? nextSamplesPerChunkChangeIndex
+              : chunkCount;
+      availableSampleCount += (long) (runEndIndex - chunkIndex) * samplesPerChunk;
+      chunkIndex = runEndIndex;
+    }
+    return availableSampleCount;
+  }
+
+  /**
+   * Returns the decode time after {@code sampleCount} samples, following the stts entries as {@link
+   * Cursor#readNextSample()} does.
+   */
+  private long getDecodeTime(int sampleCount) {
+    long decodeTime = 0;
+    int remainingSamplesAtTimestampDelta = readInt(sttsData, ENTRIES_OFFSET);
+    int timestampDelta = readInt(sttsData, ENTRIES_OFFSET + 4);
+    int nextSttsEntryIndex = 1;
+    int remainingSampleCount = sampleCount;
+    while (remainingSampleCount > 0) {
+      if (remainingSamplesAtTimestampDelta <= 0) {
+        // The remaining count never reaches zero again, so the delta doesn't change.
+        decodeTime += (long) remainingSampleCount * timestampDelta;
+        break;
+      }
+      int length = min(remainingSamplesAtTimestampDelta, remainingSampleCount);
+      decodeTime += (long) length * timestampDelta;
+      remainingSamplesAtTimestampDelta -= length;
+      remainingSampleCount -= length;
+      if (remainingSamplesAtTimestampDelta == 0 && nextSttsEntryIndex < sttsEntryCount) {
+        int position = ENTRIES_OFFSET + 8 * nextSttsEntryIndex++;
+        remainingSamplesAtTimestampDelta = readInt(sttsData, position);
+        timestampDelta = readInt(sttsData, position + 4);
+      }
+    }
+    return decodeTime;
+  }
+
+  /**
+   * Returns the ctts timestamp offset of a sample, following the ctts entries as {@link
+   * Cursor#readNextSample()} does.
+   */
+  private int getTimestampOffset(int sampleIndex) {
+    if (cttsData == null) {
+      return 0;
+    }
+    int remainingSamplesAtTimestampOffset = 0;
+    int timestampOffset = 0;
+    int nextCttsEntryIndex = 0;
+    int remainingSampleCount = sampleIndex + 1;
+    while (remainingSampleCount > 0) {
+      while (remainingSamplesAtTimestampOffset == 0 && nextCttsEntryIndex < cttsEntryCount) {
+        int position = ENTRIES_OFFSET + 8 * nextCttsEntryIndex++;
+        remainingSamplesAtTimestampOffset = readInt(cttsData, position);
+        timestampOffset = readInt(cttsData, position + 4);
+      }
+      if (remainingSamplesAtTimestampOffset <= 0) {
+        // No more entries are read, so the offset doesn't change.
+        break;
+      }
+      int length = min(remainingSamplesAtTimestampOffset, remainingSampleCount);
+      remainingSamplesAtTimestampOffset -= length;
+      remainingSampleCount -= length;
+    }
+    return timestampOffset;
+  }
+
+  private int readSampleSize(int sampleIndex) {
+    switch (sampleSizeFieldBits) {
+      case 0:
+        return fixedSampleSize;
+      case 4:
+        int sizes = sampleSizeData[SAMPLE_SIZE_ENTRIES_OFFSET + sampleIndex / 2] & 0xFF;
+        return sampleIndex % 2 == 0 ? (sizes & 0xF0) >> 4 : sizes & 0x0F;
+      case 8:
+        return sampleSizeData[SAMPLE_SIZE_ENTRIES_OFFSET + sampleIndex] & 0xFF;
+      case 16:
+        int position = SAMPLE_SIZE_ENTRIES_OFFSET + 2 * sampleIndex;
+        return (sampleSizeData[position] & 0xFF) << 8 | (sampleSizeData[position + 1] & 0xFF);
+      default:
+        return readInt(sampleSizeData, SAMPLE_SIZE_ENTRIES_OFFSET + 4 * sampleIndex);
+    }
+  }
+
+  private long readChunkOffset(int chunkIndex) {
+    if (chunkOffsetsAreLongs) {
+      int position = ENTRIES_OFFSET + 8 * chunkIndex;
+      return ((long) readInt(chunkOffsetData, position) << 32)
+          | (readInt(chunkOffsetData, position + 4) & 0xFFFFFFFFL);
+    }
+    return readInt(chunkOffsetData, ENTRIES_OFFSET + 4 * chunkIndex) & 0xFFFFFFFFL;
+  }
+
+  private static int readInt(byte[] data, int position) {
+    return (data[position] & 0xFF) << 24
+        | (data[position + 1] & 0xFF) << 16
+        | (data[position + 2] & 0xFF) << 8
+        | (data[position + 3] & 0xFF);
+  }
+
+  /**
+   * Returns the entry count of a box whose entry count follows the full box header, or {@link
+   * C#LENGTH_UNSET} if the box is too short to hold the entries.
+   */
+  private static int getEntryCount(ParsableByteArray box, int entryBits) {
+    if (box.limit() < ENTRIES_OFFSET) {
+      return C.LENGTH_UNSET;
+    }
+    int entryCount = readInt(box.getData(), Mp4Box.FULL_HEADER_SIZE);
+    return hasEntries(box, ENTRIES_OFFSET, entryCount, entryBits) ? entryCount : C.LENGTH_UNSET;
+  }
+
+  private static boolean hasEntries(
+      ParsableByteArray box, int entriesOffset, int entryCount, int entryBits) {
+    return entryCount >= 0
+        && entriesOffset + ((long) entryCount * entryBits + 7) / 8 <= box.limit();
+  }
+
+  /** A page of decoded samples. */
+  private static final class Page {
+
+    public final long[] offsets;
+    public final int[] sizes;
+    public final long[] timestamps;
+    public final long[] timestampsUs;
+    public final int[] flags;
+
+    public int index;
+    public int firstSampleIndex;
+    public int length;
+    public long accessCount;
+
+    public Page() {
+      offsets = new long[PAGE_SIZE];
+      sizes = new int[PAGE_SIZE];
+      timestamps = new long[PAGE_SIZE];
+      timestampsUs = new long[PAGE_SIZE];
+      flags = new int[PAGE_SIZE];
+      index = C.INDEX_UNSET;
+    }
+  }
+
+  /**
+   * The state of a sequential read of the boxes, which mirrors the state kept by {@link
+   * BoxParser#parseStbl} so that samples are decoded identically.
+   */
+  private final class Cursor {
+
+    // The sample most recently read by readNextSample.
+    public long sampleOffset;
+    public int sampleSize;
+    public long sampleTimestamp;
+    public @C.BufferFlags int sampleFlags;
+
+    private int sampleIndex;
+
+    private int chunkIndex;
+    private int samplesPerChunk;
+    private int nextStscEntryIndex;
+    private int nextSamplesPerChunkChangeIndex;
+    private int remainingSamplesInChunk;
+    private long offset;
+
+    private long decodeTime;
+    private int nextSttsEntryIndex;
+    private int remainingSamplesAtTimestampDelta;
+    private int timestampDelta;
+
+    private int nextCttsEntryIndex;
+    private int remainingSamplesAtTimestampOffset;
+    private int timestampOffset;
+
+    private int nextStssEntryIndex;
+    private int remainingSynchronizationSamples;
+    private int nextSynchronizationSampleIndex;
+
+    /** Creates a cursor positioned before the first sample. */
+    public Cursor() {
+      chunkIndex = C.INDEX_UNSET;
+      // The first stsc entry applies from the first chunk.
+      nextSamplesPerChunkChangeIndex = 0;
+      nextSttsEntryIndex = 1;
+      remainingSamplesAtTimestampDelta = readInt(sttsData, ENTRIES_OFFSET);
+      timestampDelta = readInt(sttsData, ENTRIES_OFFSET + 4);
+      nextSynchronizationSampleIndex = C.INDEX_UNSET;
+      if (stssData != null) {
+        nextStssEntryIndex = 1;
+        remainingSynchronizationSamples = stssEntryCount;
+        nextSynchronizationSampleIndex = readInt(stssData, ENTRIES_OFFSET) - 1;
+      }
+    }
+
+    /** Creates a copy of {@code other}. */
+    public Cursor(Cursor other) {
+      sampleIndex = other.sampleIndex;
+      chunkIndex = other.chunkIndex;
+      samplesPerChunk = other.samplesPerChunk;
+      nextStscEntryIndex = other.nextStscEntryIndex;
+      nextSamplesPerChunkChangeIndex = other.nextSamplesPerChunkChangeIndex;
+      remainingSamplesInChunk = other.remainingSamplesInChunk;
+      offset = other.offset;
+      decodeTime = other.decodeTime;
+      nextSttsEntryIndex = other.nextSttsEntryIndex;
+      remainingSamplesAtTimestampDelta = other.remainingSamplesAtTimestampDelta;
+      timestampDelta = other.timestampDelta;
+      nextCttsEntryIndex = other.nextCttsEntryIndex;
+      remainingSamplesAtTimestampOffset = other.remainingSamplesAtTimestampOffset;
+      timestampOffset = other.timestampOffset;
+      nextStssEntryIndex = other.nextStssEntryIndex;
+      remainingSynchronizationSamples = other.remainingSynchronizationSamples;
+      nextSynchronizationSampleIndex = other.nextSynchronizationSampleIndex;
+    }
+
+    /**
+     * Reads the next sample into the public fields, or returns false if the chunk data ended
+     * before it.
+     */
+    public boolean readNextSample() {
+      // Advance to the next chunk if necessary.
+      while (remainingSamplesInChunk == 0) {
+        if (++chunkIndex == chunkCount) {
+          return false;
+        }
+        offset = readChunkOffset(chunkIndex);
+        if (chunkIndex == nextSamplesPerChunkChangeIndex) {
+          int position = ENTRIES_OFFSET + 12 * nextStscEntryIndex++;
+          samplesPerChunk = readInt(stscData, position + 4);
+          nextSamplesPerChunkChangeIndex =
+              nextStscEntryIndex < stscEntryCount
+                  ? readInt(stscData, position + 12) - 1
+                  : C.INDEX_UNSET;
+        }
+        remainingSamplesInChunk = samplesPerChunk;
+      }
+
+      // Add on the timestamp offset if ctts is present.
+      if (cttsData != null) {
+        while (remainingSamplesAtTimestampOffset == 0 && nextCttsEntryIndex < cttsEntryCount) {
+          int position = ENTRIES_OFFSET + 8 * nextCttsEntryIndex++;
+          remainingSamplesAtTimestampOffset = readInt(cttsData, position);
+          timestampOffset = readInt(cttsData, position + 4);
+        }
+        remainingSamplesAtTimestampOffset--;
+      }
+
+      sampleOffset = offset;
+      sampleSize = readSampleSize(sampleIndex);
+      sampleTimestamp = decodeTime + timestampOffset;
+
+      // All samples are synchronization samples if the stss is not present.
+      sampleFlags = stssData == null ? C.BUFFER_FLAG_KEY_FRAME : 0;
+      if (sampleIndex == nextSynchronizationSampleIndex) {
+        sampleFlags = C.BUFFER_FLAG_KEY_FRAME;
+        remainingSynchronizationSamples--;
+        if (remainingSynchronizationSamples > 0) {
+          nextSynchronizationSampleIndex =
+              readInt(Util.castNonNull(stssData), ENTRIES_OFFSET + 4 * nextStssEntryIndex++) - 1;
+        }
+      }
+
+      // Add on the duration of this sample.
+      decodeTime += timestampDelta;
+      remainingSamplesAtTimestampDelta--;
+      if (remainingSamplesAtTimestampDelta == 0 && nextSttsEntryIndex < sttsEntryCount) {
+        int position = ENTRIES_OFFSET + 8 * nextSttsEntryIndex++;
+        remainingSamplesAtTimestampDelta = readInt(sttsData, position);
+        timestampDelta = readInt(sttsData, position + 4);
+      }
+
+      offset += sampleSize;
+      remainingSamplesInChunk--;
+      sampleIndex++;
+      return true;
+    }
+
+    /** Logs a warning if the boxes weren't consistent with each other when read to the end. */
+    public void logIfInconsistent(int trackId) {
+      // The stbl box is malformed, but the stream may still be playable.
+      boolean isCttsValid = true;
+      if (cttsData != null) {
+        for (int i = nextCttsEntryIndex; i < cttsEntryCount; i++) {
+          if (readInt(cttsData, ENTRIES_OFFSET + 8 * i) != 0) {
+            isCttsValid = false;
+            break;
+          }
+        }
+      }
+      int remainingTimestampDeltaChanges = sttsEntryCount - nextSttsEntryIndex;
+      if (remainingSynchronizationSamples != 0
+          || remainingSamplesAtTimestampDelta != 0
+          || remainingSamplesInChunk != 0
+          || remainingTimestampDeltaChanges != 0
+          || remainingSamplesAtTimestampOffset != 0
+          || !isCttsValid) {
+        Log.w(
+            TAG,
+            "Inconsistent stbl box for track "
+                + trackId
+                + ": remainingSynchronizationSamples "
+                + remainingSynchronizationSamples
+                + ", remainingSamplesAtTimestampDelta "
+                + remainingSamplesAtTimestampDelta
+                + ", remainingSamplesInChunk "
+                + remainingSamplesInChunk
+                + ", remainingTimestampDeltaChanges "
+                + remainingTimestampDeltaChanges
+                + ", remainingSamplesAtTimestampOffset "
+                + remainingSamplesAtTimestampOffset
+                + (!isCttsValid ? ", ctts invalid" : ""));
+      }
+    }
+  }
+}
@@ -15,12 +15,20 @@
  */
 package com.example.videoplayer.extractor.mp4;
 
+import androidx.annotation.Nullable;
 import com.example.videoplayer.common.C;
 import com.example.videoplayer.common.util.Assertions;
 import com.example.videoplayer.common.util.UnstableApi;
 import com.example.videoplayer.common.util.Util;
 
-/** Sample table for a track in an MP4 file. */
+/**
+ * Sample table for a track in an MP4 file.
+ *
+ * <p>A table either holds its samples in arrays, or {@linkplain #isDecodedOnDemand() decodes them
+ * on demand} from the stbl box it was parsed from. The arrays are empty in the latter case, so
+ * samples should be read using {@link #getOffset(int)}, {@link #getSize(int)}, {@link
+ * #getTimestampUs(int)} and {@link #getFlags(int)}, which work for both.
+ */
 @UnstableApi
 public final class TrackSampleTable {
 
@@ -30,24 +38,35 @@ public final class TrackSampleTable {
   /** Number of samples. */
   public final int sampleCount;
 
-  /** Sample offsets in bytes. */
+  /**
+   * Sample offsets in bytes. Empty if the table is {@linkplain #isDecodedOnDemand() decoded on
+   * demand}.
+   */
   public final long[] offsets;
 
-  /** Sample sizes in bytes. */
+  /**
+   * Sample sizes in bytes. Empty if the table is {@linkplain #isDecodedOnDemand() decoded on
+   * demand}.
+   */
   public final int[] sizes;
 
-  /** Maximum sample size in {@link #sizes}. */
+  /** Maximum sample size. */
   public final int maximumSize;
 
-  /** Sample timestamps in microseconds. */
+  /**
+   * Sample timestamps in microseconds. Empty if the table is {@linkplain #isDecodedOnDemand()
+   * decoded on demand}.
+   */
   public final long[] timestampsUs;
 
-  /** Sample flags. */
+  /** Sample flags. Empty if the table is {@linkplain #isDecodedOnDemand() decoded on demand}. */
   public final int[] flags;
 
   /** The duration of the track sample table in microseconds. */
   public final long durationUs;
 
+  @Nullable private final PagedSampleTable pagedSampleTable;
+
   public TrackSampleTable(
       Track track,
       long[] offsets,
@@ -71,6 +90,58 @@ public final class TrackSampleTable {
     if (flags.length > 0) {
       flags[flags.length - 1] |= C.BUFFER_FLAG_LAST_SAMPLE;
     }
+    pagedSampleTable = null;
+  }
+
+  /**
+   * Creates a table whose samples are decoded on demand.
+   *
+   * @param track The track corresponding to this sample table.
+   * @param pagedSampleTable The {@link PagedSampleTable} from which samples are decoded.
+   * @param durationUs The duration of the track sample table in microseconds.
+   */
+  /* package */ TrackSampleTable(Track track, PagedSampleTable pagedSampleTable, long durationUs) {
+    this.track = track;
+    this.pagedSampleTable = pagedSampleTable;
+    this.durationUs = durationUs;
+    sampleCount = pagedSampleTable.sampleCount;
+    maximumSize = pagedSampleTable.maximumSize;
+    offsets = new long[0];
+    sizes = new int[0];
+    timestampsUs = new long[0];
+    flags = new int[0];
+  }
+
+  /**
+   * Returns whether samples are decoded on demand from the stbl box, rather than being held in
+   * {@link #offsets}, {@link #sizes}, {@link #timestampsUs} and {@link #flags}.
+   */
+  public boolean isDecodedOnDemand() {
+    return pagedSampleTable != null;
+  }
+
+  /** Returns the offset of a sample in bytes. */
+  public long getOffset(int sampleIndex) {
+    return pagedSampleTable != null
+        ? pagedSampleTable.getOffset(sampleIndex)
+        : offsets[sampleIndex];
+  }
+
+  /** Returns the size of a sample in bytes. */
+  public int getSize(int sampleIndex) {
+    return pagedSampleTable != null ? pagedSampleTable.getSize(sampleIndex) : sizes[sampleIndex];
+  }
+
+  /** Returns the timestamp of a sample in microseconds. */
+  public long getTimestampUs(int sampleIndex) {
+    return pagedSampleTable != null
+        ? pagedSampleTable.getTimestampUs(sampleIndex)
+        : timestampsUs[sampleIndex];
+  }
+
+  /** Returns the flags of a sample. */
+  public int getFlags(int sampleIndex) {
+    return pagedSampleTable != null ? pagedSampleTable.getFlags(sampleIndex) : flags[sampleIndex];
   }
 
   /**
@@ -81,6 +152,9 @@ public final class TrackSampleTable {
    * @return Index of the synchronization sample, or {@link C#INDEX_UNSET} if none.
    */
   public int getIndexOfEarlierOrEqualSynchronizationSample(long timeUs) {
+    if (pagedSampleTable != null) {
+      return pagedSampleTable.getIndexOfEarlierOrEqualSynchronizationSample(timeUs);
+    }
     // Video frame timestamps may not be sorted, so the behavior of this call can be undefined.
     // Frames are not reordered past synchronization samples so this works in practice.
     int startIndex = Util.binarySearchFloor(timestampsUs, timeUs, true, false);
@@ -100,6 +174,9 @@ public final class TrackSampleTable {
    * @return index Index of the synchronization sample, or {@link C#INDEX_UNSET} if none.
    */
   public int getIndexOfLaterOrEqualSynchronizationSample(long timeUs) {
+    if (pagedSampleTable != null) {
+      return pagedSampleTable.getIndexOfLaterOrEqualSynchronizationSample(timeUs);
+    }
     int startIndex = Util.binarySearchCeil(timestampsUs, timeUs, true, false);
     for (int i = startIndex; i < timestampsUs.length; i++) {
       if ((flags[i] & C.BUFFER_FLAG_KEY_FRAME) != 0) {
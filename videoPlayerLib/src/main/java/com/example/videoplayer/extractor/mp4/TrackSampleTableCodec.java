@@ -0,0 +1,343 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.videoplayer.extractor.mp4;
+
+import android.util.SparseArray;
+import androidx.annotation.Nullable;
+import com.example.videoplayer.common.Format;
+import com.example.videoplayer.common.util.ParsableByteArray;
+import com.example.videoplayer.container.Mp4Box;
+import com.example.videoplayer.extractor.GaplessInfoHolder;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Encodes the {@link TrackSampleTable sample tables} parsed from a moov box into a compact form for
+ * persisting in a {@link com.example.videoplayer.extractor.SeekIndexStore}, and decodes them.
+ *
+ * <p>The encoded form is identified by the end position of the moov box, a checksum of its mvhd
+ * box and whether edit lists were ignored, and is only decoded if these match the moov box being
+ * processed. Sample offsets and timestamps are stored as variable length deltas, which typically
+ * take one or two bytes per sample. The format fields that {@link BoxParser} derives from the
+ * sample table (the frame rate, the average bitrate and whether there are preroll samples) are
+ * stored alongside it, and are applied to the track when the table is decoded.
+ */
+/* package */ final class TrackSampleTableCodec {
+
+  private static final int VERSION = 2;
+
+  /** Sample tables decoded from their encoded form. */
+  public static final class DecodedSampleTables implements BoxParser.SampleTableSupplier {
+
+    /** The gapless encoder delay that was populated when the sample tables were parsed. */
+    public final int encoderDelay;
+
+    /** The gapless encoder padding that was populated when the sample tables were parsed. */
+    public final int encoderPadding;
+
+    private final SparseArray<EncodedTable> tablesByTrackId;
+
+    private DecodedSampleTables(
+        int encoderDelay, int encoderPadding, SparseArray<EncodedTable> tablesByTrackId) {
+      this.encoderDelay = encoderDelay;
+      this.encoderPadding = encoderPadding;
+      this.tablesByTrackId = tablesByTrackId;
+    }
+
+    @Override
+    @Nullable
+    public TrackSampleTable getSampleTable(Track track, Mp4Box.ContainerBox stbl) {
+      @Nullable EncodedTable table = tablesByTrackId.get(track.id);
+      if (table == null || table.declaredSampleCount != getDeclaredSampleCount(stbl)) {
+        return null;
+      }
+      Format format = track.format;
+      if (format.frameRate != table.frameRate
+          || format.averageBitrate != table.averageBitrate
+          || format.hasPrerollSamples != table.hasPrerollSamples) {
+        format =
+            format
+                .buildUpon()
+                .setFrameRate(table.frameRate)
+                .setAverageBitrate(table.averageBitrate)
+                .setHasPrerollSamples(table.hasPrerollSamples)
+                .build();
+        track = track.copyWithFormat(format);
+      }
+      return new TrackSampleTable(
+          track,
+          table.offsets,
+          table.sizes,
+          table.maximumSize,
+          table.timestampsUs,
+          table.flags,
+          table.durationUs);
+    }
+  }
+
+  private TrackSampleTableCodec() {}
+
+  /**
+   * Encodes sample tables.
+   *
+   * @param moov The moov box from which the sample tables were parsed.
+   * @param ignoreEditLists Whether edit lists were ignored when parsing the sample tables.
+   * @param gaplessInfoHolder The gapless information populated when parsing the sample tables.
+   * @param trackSampleTables The sample tables.
+   * @return The encoded sample tables.
+   */
+  public static byte[] encode(
+      Mp4Box.ContainerBox moov,
+      boolean ignoreEditLists,
+      GaplessInfoHolder gaplessInfoHolder,
+      List<TrackSampleTable> trackSampleTables) {
+    ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+    DataOutputStream output = new DataOutputStream(byteArrayOutputStream);
+    try {
+      output.writeInt(VERSION);
+      output.writeLong(moov.endPosition);
+      output.writeLong(getMvhdChecksum(moov));
+      output.writeBoolean(ignoreEditLists);
+      output.writeInt(gaplessInfoHolder.encoderDelay);
+      output.writeInt(gaplessInfoHolder.encoderPadding);
+      output.writeInt(trackSampleTables.size());
+      for (int i = 0; i < trackSampleTables.size(); i++) {
+        TrackSampleTable table = trackSampleTables.get(i);
+        output.writeInt(table.track.id);
+        output.writeInt(getDeclaredSampleCount(getStbl(moov, table.track.id)));
+        output.writeFloat(table.track.format.frameRate);
+        output.writeInt(table.track.format.averageBitrate);
+        output.writeBoolean(table.track.format.hasPrerollSamples);
+        output.writeInt(table.maximumSize);
+        output.writeLong(table.durationUs);
+        output.writeInt(table.sampleCount);
+        long previousOffset = 0;
+        long previousTimestampUs = 0;
+        for (int j = 0; j < table.sampleCount; j++) {
+          long offset = table.getOffset(j);
+          int size = table.getSize(j);
+          long timestampUs = table.getTimestampUs(j);
+          writeVarLong(output, zigZagEncode(offset - previousOffset));
+          writeVarLong(output, zigZagEncode(timestampUs - previousTimestampUs));
+          writeVarLong(output, size & 0xFFFFFFFFL);
+          writeVarLong(output, table.getFlags(j) & 0xFFFFFFFFL);
+          previousOffset = offset + size;
+          previousTimestampUs = timestampUs;
+        }
+      }
+      output.flush();
+    } catch (IOException e) {
+      // Never happens when writing to a ByteArrayOutputStream.
+      throw new IllegalStateException(e);
+    }
+    return byteArrayOutputStream.toByteArray();
+  }
+
+  /**
+   * Decodes sample tables that were encoded by {@link #encode}.
+   *
+   * @param data The encoded sample tables.
+   * @param moov The moov box being processed.
+   * @param ignoreEditLists Whether edit lists are being ignored.
+   * @return The decoded sample tables, or null if they were encoded with a different version of the
+   *     format or for a different moov box.
+   * @throws IOException If {@code data} is malformed.
+   */
+  @Nullable
+  public static DecodedSampleTables decode(
+      byte[] data, Mp4Box.ContainerBox moov, boolean ignoreEditLists) throws IOException {
+    DataInputStream input = new DataInputStream(new ByteArrayInputStream(data));
+    if (input.readInt() != VERSION
+        || input.readLong() != moov.endPosition
+        || input.readLong() != getMvhdChecksum(moov)
+        || input.readBoolean() != ignoreEditLists) {
+      return null;
+    }
+    int encoderDelay = input.readInt();
+    int encoderPadding = input.readInt();
+    int trackCount = input.readInt();
+    SparseArray<EncodedTable> tablesByTrackId = new SparseArray<>(trackCount);
+    for (int i = 0; i < trackCount; i++) {
+      int trackId = input.readInt();
+      int declaredSampleCount = input.readInt();
+      float frameRate = input.readFloat();
+      int averageBitrate = input.readInt();
+      boolean hasPrerollSamples = input.readBoolean();
+      int maximumSize = input.readInt();
+      long durationUs = input.readLong();
+      int sampleCount = input.readInt();
+      if (sampleCount < 0 || sampleCount > data.length) {
+        throw new IOException("Invalid sample count: " + sampleCount);
+      }
+      long[] offsets = new long[sampleCount];
+      int[] sizes = new int[sampleCount];
+      long[] timestampsUs = new long[sampleCount];
+      int[] flags = new int[sampleCount];
+      long previousOffset = 0;
+      long previousTimestampUs = 0;
+      for (int j = 0; j < sampleCount; j++) {
+        offsets[j] = previousOffset + zigZagDecode(readVarLong(input));
+        timestampsUs[j] = previousTimestampUs + zigZagDecode(readVarLong(input));
+        sizes[j] = (int) readVarLong(input);
+        flags[j] = (int) readVarLong(input);
+        previousOffset = offsets[j] + sizes[j];
+        previousTimestampUs = timestampsUs[j];
+      }
+      tablesByTrackId.put(
+          trackId,
+          new EncodedTable(
+              declaredSampleCount,
+              frameRate,
+              averageBitrate,
+              hasPrerollSamples,
+              offsets,
+              sizes,
+              maximumSize,
+              timestampsUs,
+              flags,
+              durationUs));
+    }
+    return new DecodedSampleTables(encoderDelay, encoderPadding, tablesByTrackId);
+  }
+
+  /**
+   * Returns the number of samples declared by the stsz or stz2 box in {@code stbl}, or -1 if there
+   * isn't one.
+   */
+  private static int getDeclaredSampleCount(@Nullable Mp4Box.ContainerBox stbl) {
+    if (stbl == null) {
+      return -1;
+    }
+    @Nullable Mp4Box.LeafBox sampleSizeBox = stbl.getLeafBoxOfType(Mp4Box.TYPE_stsz);
+    if (sampleSizeBox == null) {
+      sampleSizeBox = stbl.getLeafBoxOfType(Mp4Box.TYPE_stz2);
+    }
+    if (sampleSizeBox == null || sampleSizeBox.data.limit() < 20) {
+      return -1;
+    }
+    // The sample count follows the box header, the full box header and a 32-bit field in both
+    // the stsz and the stz2 box.
+    ParsableByteArray data = sampleSizeBox.data;
+    data.setPosition(Mp4Box.FULL_HEADER_SIZE + 4);
+    return data.readInt();
+  }
+
+  @Nullable
+  private static Mp4Box.ContainerBox getStbl(Mp4Box.ContainerBox moov, int trackId) {
+    for (int i = 0; i < moov.containerChildren.size(); i++) {
+      Mp4Box.ContainerBox trak = moov.containerChildren.get(i);
+      if (trak.type != Mp4Box.TYPE_trak) {
+        continue;
+      }
+      @Nullable Mp4Box.LeafBox tkhd = trak.getLeafBoxOfType(Mp4Box.TYPE_tkhd);
+      if (tkhd == null || getTrackId(tkhd.data) != trackId) {
+        continue;
+      }
+      @Nullable Mp4Box.ContainerBox mdia = trak.getContainerBoxOfType(Mp4Box.TYPE_mdia);
+      @Nullable
+      Mp4Box.ContainerBox minf = mdia != null ? mdia.getContainerBoxOfType(Mp4Box.TYPE_minf) : null;
+      return minf != null ? minf.getContainerBoxOfType(Mp4Box.TYPE_stbl) : null;
+    }
+    return null;
+  }
+
+  private static int getTrackId(ParsableByteArray tkhd) {
+    tkhd.setPosition(Mp4Box.HEADER_SIZE);
+    int version = BoxParser.parseFullBoxVersion(tkhd.readInt());
+    // Skip the creation and modification times.
+    tkhd.skipBytes(version == 0 ? 8 : 16);
+    return tkhd.readInt();
+  }
+
+  private static long getMvhdChecksum(Mp4Box.ContainerBox moov) {
+    CRC32 crc = new CRC32();
+    @Nullable Mp4Box.LeafBox mvhd = moov.getLeafBoxOfType(Mp4Box.TYPE_mvhd);
+    if (mvhd != null) {
+      crc.update(mvhd.data.getData(), /* off= */ 0, mvhd.data.limit());
+    }
+    return crc.getValue();
+  }
+
+  private static long zigZagEncode(long value) {
+    return (value << 1) ^ (value >> 63);
+  }
+
+  private static long zigZagDecode(long value) {
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  private static void writeVarLong(DataOutputStream output, long value) throws IOException {
+    while ((value & ~0x7FL) != 0) {
+      output.writeByte((int) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    output.writeByte((int) value);
+  }
+
+  private static long readVarLong(DataInputStream input) throws IOException {
+    long value = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      int b = input.readUnsignedByte();
+      value |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IOException("Malformed variable length value");
+  }
+
+  private static final class EncodedTable {
+
+    public final int declaredSampleCount;
+    public final float frameRate;
+    public final int averageBitrate;
+    public final boolean hasPrerollSamples;
+    public final long[] offsets;
+    public final int[] sizes;
+    public final int maximumSize;
+    public final long[] timestampsUs;
+    public final int[] flags;
+    public final long durationUs;
+
+    public EncodedTable(
+        int declaredSampleCount,
+        float frameRate,
+        int averageBitrate,
+        boolean hasPrerollSamples,
+        long[] offsets,
+        int[] sizes,
+        int maximumSize,
+        long[] timestampsUs,
+        int[] flags,
+        long durationUs) {
+      this.declaredSampleCount = declaredSampleCount;
+      this.frameRate = frameRate;
+      this.averageBitrate = averageBitrate;
+      this.hasPrerollSamples = hasPrerollSamples;
+      this.offsets = offsets;
+      this.sizes = sizes;
+      this.maximumSize = maximumSize;
+      this.timestampsUs = timestampsUs;
+      this.flags = flags;
+      this.durationUs = durationUs;
+    }
+  }
+}
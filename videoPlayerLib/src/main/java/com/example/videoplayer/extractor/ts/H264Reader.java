@@ -381,14 +381,36 @@ public final class H264Reader implements ElementaryStreamReader {
       if (!isFilling) {
         return;
       }
+      if (bufferLength == 0) {
+        // The slice header is usually in the first data passed for the NAL unit, so try to read it
+        // in place, and only copy the data if the header continues in the next data.
+        bitArray.reset(data, offset, limit);
+        readSliceHeader();
+        if (isFilling) {
+          appendToBuffer(data, offset, limit);
+        }
+        return;
+      }
+      appendToBuffer(data, offset, limit);
+      bitArray.reset(buffer, 0, bufferLength);
+      readSliceHeader();
+    }
+
+    private void appendToBuffer(byte[] data, int offset, int limit) {
       int readLength = limit - offset;
       if (buffer.length < bufferLength + readLength) {
         buffer = Arrays.copyOf(buffer, (bufferLength + readLength) * 2);
       }
       System.arraycopy(data, offset, buffer, bufferLength, readLength);
       bufferLength += readLength;
+    }
 
-      bitArray.reset(buffer, 0, bufferLength);
+    /**
+     * Reads the slice header from {@link #bitArray}, which holds the NAL unit from its header
+     * onwards. Sets {@link #isFilling} to false if the header is read, or if it can't be decoded.
+     * Leaves it set if more data is needed.
+     */
+    private void readSliceHeader() {
       if (!bitArray.canReadBits(8)) {
         return;
       }
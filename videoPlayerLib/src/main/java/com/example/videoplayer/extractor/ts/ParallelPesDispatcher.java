@@ -0,0 +1,288 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.videoplayer.extractor.ts;
+
+import static com.example.videoplayer.common.util.Assertions.checkState;
+import static com.example.videoplayer.common.util.Util.castNonNull;
+
+import android.util.SparseArray;
+import androidx.annotation.GuardedBy;
+import androidx.annotation.Nullable;
+import com.example.videoplayer.common.ParserException;
+import com.example.videoplayer.common.util.NullableType;
+import com.example.videoplayer.common.util.ParsableByteArray;
+import com.example.videoplayer.common.util.TimestampAdjuster;
+import com.example.videoplayer.extractor.ExtractorOutput;
+import java.util.IdentityHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the {@link PesReader PesReaders} of the programs in a transport stream on a pool of worker
+ * threads.
+ *
+ * <p>Each program has a lane: a single producer, single consumer ring of packet slices and seeks,
+ * which is filled by the loading thread and drained in order by at most one worker at a time. The
+ * readers of a program therefore see their packets in stream order, as they would if they were run
+ * on the loading thread, and write their samples to their {@link
+ * com.example.videoplayer.extractor.TrackOutput TrackOutputs} in the same order. The lanes of
+ * different programs are drained in parallel.
+ *
+ * <p>Packet slices refer to the extractor's packet buffer rather than copying it, so the loading
+ * thread must call {@link #awaitIdle()} before it modifies the buffer.
+ */
+/* package */ final class ParallelPesDispatcher {
+
+  private final int laneCapacity;
+  private final ExecutorService executorService;
+  private final SparseArray<Lane> lanes; // Indexed by program number.
+  private final IdentityHashMap<TsPayloadReader, LaneReader> laneReaders;
+  private final AtomicInteger pendingEntryCount;
+  private final Object idleLock;
+
+  @GuardedBy("idleLock")
+  @Nullable
+  private Throwable failure;
+
+  /**
+   * Creates an instance.
+   *
+   * @param threadCount The number of worker threads.
+   * @param laneCapacity The maximum number of entries that can be pending in each lane between
+   *     calls to {@link #awaitIdle()}.
+   */
+  public ParallelPesDispatcher(int threadCount, int laneCapacity) {
+    this.laneCapacity = laneCapacity;
+    executorService =
+        Executors.newFixedThreadPool(
+            threadCount, runnable -> new Thread(runnable, "ExoPlayer:TsProgramReader"));
+    lanes = new SparseArray<>();
+    laneReaders = new IdentityHashMap<>();
+    pendingEntryCount = new AtomicInteger();
+    idleLock = new Object();
+  }
+
+  /**
+   * Returns a {@link TsPayloadReader} that forwards to {@code reader} on the lane of {@code
+   * programNumber}. A reader that's shared by several programs stays on the lane of the first.
+   *
+   * <p>Must be called on the loading thread, after {@code reader} has been initialized.
+   */
+  public TsPayloadReader wrap(TsPayloadReader reader, int programNumber) {
+    @Nullable LaneReader laneReader = laneReaders.get(reader);
+    if (laneReader == null) {
+      @Nullable Lane lane = lanes.get(programNumber);
+      if (lane == null) {
+        lane = new Lane();
+        lanes.put(programNumber, lane);
+      }
+      laneReader = new LaneReader(reader, lane);
+      laneReaders.put(reader, laneReader);
+    }
+    return laneReader;
+  }
+
+  /**
+   * Returns the reader that's wrapped by {@code reader}, or {@code reader} if it wasn't returned by
+   * {@link #wrap}.
+   */
+  public static TsPayloadReader unwrap(TsPayloadReader reader) {
+    return reader instanceof LaneReader ? ((LaneReader) reader).reader : reader;
+  }
+
+  /**
+   * Blocks until every entry in every lane has been handled.
+   *
+   * <p>If a reader threw, then the first {@link ParserException}, {@link RuntimeException} or
+   * {@link Error} that was thrown is rethrown.
+   *
+   * @throws ParserException If a reader failed to parse its data.
+   */
+  public void awaitIdle() throws ParserException {
+    @Nullable Throwable failure;
+    synchronized (idleLock) {
+      boolean wasInterrupted = false;
+      while (pendingEntryCount.get() > 0) {
+        try {
+          idleLock.wait();
+        } catch (InterruptedException e) {
+          // The workers are bounded by the entries already queued, so keep waiting for them.
+          wasInterrupted = true;
+        }
+      }
+      if (wasInterrupted) {
+        Thread.currentThread().interrupt();
+      }
+      failure = this.failure;
+      this.failure = null;
+    }
+    if (failure instanceof ParserException) {
+      throw (ParserException) failure;
+    } else if (failure instanceof Error) {
+      throw (Error) failure;
+    } else if (failure != null) {
+      throw (RuntimeException) failure;
+    }
+  }
+
+  /** Releases the worker threads. Must be called when idle. */
+  public void release() {
+    executorService.shutdown();
+  }
+
+  private void onEntriesHandled(int entryCount, @Nullable Throwable entryFailure) {
+    if (entryFailure != null) {
+      synchronized (idleLock) {
+        if (failure == null) {
+          failure = entryFailure;
+        }
+      }
+    }
+    if (pendingEntryCount.addAndGet(-entryCount) == 0) {
+      synchronized (idleLock) {
+        idleLock.notifyAll();
+      }
+    }
+  }
+
+  /** Forwards to a reader on a lane. */
+  private static final class LaneReader implements TsPayloadReader {
+
+    private final TsPayloadReader reader;
+    private final Lane lane;
+
+    public LaneReader(TsPayloadReader reader, Lane lane) {
+      this.reader = reader;
+      this.lane = lane;
+    }
+
+    @Override
+    public void init(
+        TimestampAdjuster timestampAdjuster,
+        ExtractorOutput extractorOutput,
+        TrackIdGenerator idGenerator) {
+      reader.init(timestampAdjuster, extractorOutput, idGenerator);
+    }
+
+    @Override
+    public void seek() {
+      lane.add(reader, /* data= */ null, /* position= */ 0, /* limit= */ 0, /* flags= */ 0);
+    }
+
+    @Override
+    public void consume(ParsableByteArray data, @Flags int flags) {
+      lane.add(reader, data.getData(), data.getPosition(), data.limit(), flags);
+    }
+  }
+
+  /** A ring of entries for the readers of a program, drained in order on a worker thread. */
+  private final class Lane implements Runnable {
+
+    private final @NullableType TsPayloadReader[] readers;
+    // The data of each packet slice, or null if the entry is a seek.
+    private final byte[] @NullableType [] data;
+    private final int[] positions;
+    private final int[] limits;
+    private final int[] flags;
+    private final AtomicBoolean drainScheduled;
+    private final ParsableByteArray packetSlice;
+
+    // Accessed only by the worker that's draining the lane.
+    private boolean failed;
+
+    // Written only by the loading thread.
+    private volatile int writeIndex;
+    // Written only by the worker that's draining the lane.
+    private volatile int readIndex;
+
+    public Lane() {
+      readers = new TsPayloadReader[laneCapacity];
+      data = new byte[laneCapacity][];
+      positions = new int[laneCapacity];
+      limits = new int[laneCapacity];
+      flags = new int[laneCapacity];
+      drainScheduled = new AtomicBoolean();
+      packetSlice = new ParsableByteArray();
+    }
+
+    public void add(
+        TsPayloadReader reader,
+        @Nullable byte[] data,
+        int position,
+        int limit,
+        @TsPayloadReader.Flags int flags) {
+      int writeIndex = this.writeIndex;
+      checkState(writeIndex - readIndex < laneCapacity);
+      int index = writeIndex % laneCapacity;
+      readers[index] = reader;
+      this.data[index] = data;
+      positions[index] = position;
+      limits[index] = limit;
+      this.flags[index] = flags;
+      pendingEntryCount.incrementAndGet();
+      // Publishes the entry to the worker.
+      this.writeIndex = writeIndex + 1;
+      if (drainScheduled.compareAndSet(false, true)) {
+        executorService.execute(this);
+      }
+    }
+
+    @Override
+    public void run() {
+      while (true) {
+        int readIndex = this.readIndex;
+        int entryCount = 0;
+        @Nullable Throwable entryFailure = null;
+        while (readIndex != writeIndex) {
+          int index = readIndex % laneCapacity;
+          TsPayloadReader reader = castNonNull(readers[index]);
+          @Nullable byte[] data = this.data[index];
+          readers[index] = null;
+          this.data[index] = null;
+          if (!failed) {
+            try {
+              if (data == null) {
+                reader.seek();
+              } else {
+                packetSlice.reset(data, limits[index]);
+                packetSlice.setPosition(positions[index]);
+                reader.consume(packetSlice, flags[index]);
+              }
+            } catch (Throwable e) {
+              // Skip the remaining entries, since the loading thread will fail when it's next idle.
+              // Errors are caught too, so that the entries are still counted as handled and the
+              // loading thread doesn't wait for them forever.
+              failed = true;
+              entryFailure = e;
+            }
+          }
+          // Frees the entry's slot for the loading thread.
+          this.readIndex = ++readIndex;
+          entryCount++;
+        }
+        onEntriesHandled(entryCount, entryFailure);
+        drainScheduled.set(false);
+        // Drain again if an entry was added after the check above, unless the thread that added it
+        // has already scheduled a drain.
+        if (readIndex == writeIndex || !drainScheduled.compareAndSet(false, true)) {
+          return;
+        }
+      }
+    }
+  }
+}
@@ -17,6 +17,7 @@ package com.example.videoplayer.extractor.ts;
 
 import static com.example.videoplayer.extractor.ts.TsPayloadReader.EsInfo.AUDIO_TYPE_UNDEFINED;
 import static com.example.videoplayer.extractor.ts.TsPayloadReader.FLAG_PAYLOAD_UNIT_START_INDICATOR;
+import static java.lang.Math.min;
 import static java.lang.annotation.ElementType.TYPE_USE;
 
 import android.util.SparseArray;
@@ -155,7 +156,8 @@ public final class TsExtractor implements Extractor {
   private static final long AC4_FORMAT_IDENTIFIER = 0x41432d34;
   private static final long HEVC_FORMAT_IDENTIFIER = 0x48455643;
 
-  private static final int BUFFER_SIZE = TS_PACKET_SIZE * 50;
+  private static final int INITIAL_BUFFER_SIZE = TS_PACKET_SIZE * 50;
+  private static final int MAX_BUFFER_SIZE = TS_PACKET_SIZE * 800;
   private static final int SNIFF_TS_PACKET_COUNT = 5;
 
   private final @Mode int mode;
@@ -163,12 +165,14 @@ public final class TsExtractor implements Extractor {
   private final int timestampSearchBytes;
   private final List<TimestampAdjuster> timestampAdjusters;
   private final ParsableByteArray tsPacketBuffer;
-  private final SparseIntArray continuityCounters;
+  private final int[] continuityCounters; // Indexed by pid, or C.INDEX_UNSET if unknown
   private final TsPayloadReader.Factory payloadReaderFactory;
   private final SubtitleParser.Factory subtitleParserFactory;
   private final SparseArray<TsPayloadReader> tsPayloadReaders; // Indexed by pid
+  // The readers in tsPayloadReaders, for dispatch without a binary search. Indexed by pid.
+  private final @NullableType TsPayloadReader[] payloadReadersByPid;
   private final SparseBooleanArray trackIds;
-  private final SparseBooleanArray trackPids;
+  private final boolean[] trackPids; // Indexed by pid
   private final TsDurationReader durationReader;
 
   // Accessed only by the loading thread.
@@ -181,6 +185,8 @@ public final class TsExtractor implements Extractor {
   @Nullable private TsPayloadReader id3Reader;
   private int bytesSinceLastSync;
   private int pcrPid;
+  private int parallelProgramReadingThreadCount;
+  @Nullable private ParallelPesDispatcher parallelPesDispatcher;
 
   /**
    * @deprecated Use {@link #TsExtractor(SubtitleParser.Factory)} instead.
@@ -336,17 +342,43 @@ public final class TsExtractor implements Extractor {
       timestampAdjusters = new ArrayList<>();
       timestampAdjusters.add(timestampAdjuster);
     }
-    tsPacketBuffer = new ParsableByteArray(new byte[BUFFER_SIZE], 0);
+    tsPacketBuffer = new ParsableByteArray(new byte[INITIAL_BUFFER_SIZE], 0);
     trackIds = new SparseBooleanArray();
-    trackPids = new SparseBooleanArray();
+    trackPids = new boolean[MAX_PID_PLUS_ONE];
     tsPayloadReaders = new SparseArray<>();
-    continuityCounters = new SparseIntArray();
+    payloadReadersByPid = new TsPayloadReader[MAX_PID_PLUS_ONE];
+    continuityCounters = new int[MAX_PID_PLUS_ONE];
+    Arrays.fill(continuityCounters, C.INDEX_UNSET);
     durationReader = new TsDurationReader(timestampSearchBytes);
     output = ExtractorOutput.PLACEHOLDER;
     pcrPid = -1;
     resetPayloadReaders();
   }
 
+  /**
+   * Sets the number of worker threads on which the elementary streams of different programs are
+   * read, or 0 to read them all on the thread that calls {@link #read}. The default is 0. Has no
+   * effect unless the mode is {@link #MODE_MULTI_PMT}.
+   *
+   * <p>The elementary streams of each program are read in stream order by one worker at a time,
+   * so the samples of each track are output in the same order as when they're read on a single
+   * thread. Each call to {@link #read} waits for the workers to finish with the packets it read,
+   * so no work is done in the background between calls. This can speed up extraction when several
+   * programs are extracted from one stream, for example to monitor a broadcast multiplex, but the
+   * {@link ExtractorOutput} and its {@link TrackOutput TrackOutputs} must then accept calls from
+   * the worker threads.
+   *
+   * <p>This method is experimental and will be renamed or removed in a future release. It must be
+   * called before the first call to {@link #read}.
+   *
+   * @param threadCount The number of worker threads, or 0 to disable parallel reading.
+   */
+  public void experimentalSetParallelProgramReadingThreadCount(int threadCount) {
+    Assertions.checkArgument(threadCount >= 0);
+    Assertions.checkState(parallelPesDispatcher == null);
+    parallelProgramReadingThreadCount = threadCount;
+  }
+
   // Extractor implementation.
 
   @Override
@@ -408,16 +440,19 @@ public final class TsExtractor implements Extractor {
       tsBinarySearchSeeker.setSeekTargetUs(timeUs);
     }
     tsPacketBuffer.reset(/* limit= */ 0);
-    continuityCounters.clear();
+    Arrays.fill(continuityCounters, C.INDEX_UNSET);
     for (int i = 0; i < tsPayloadReaders.size(); i++) {
-      tsPayloadReaders.valueAt(i).seek();
+      // Any parallel readers are idle between calls to read, so they're reset directly.
+      ParallelPesDispatcher.unwrap(tsPayloadReaders.valueAt(i)).seek();
     }
     bytesSinceLastSync = 0;
   }
 
   @Override
   public void release() {
-    // Do nothing
+    if (parallelPesDispatcher != null) {
+      parallelPesDispatcher.release();
+    }
   }
 
   @Override
@@ -449,7 +484,7 @@ public final class TsExtractor implements Extractor {
     if (!fillBufferWithAtLeastOnePacket(input)) {
       // Send a synthesized empty pusi to allow for packetFinished to be triggered on the last unit.
       for (int i = 0; i < tsPayloadReaders.size(); i++) {
-        TsPayloadReader payloadReader = tsPayloadReaders.valueAt(i);
+        TsPayloadReader payloadReader = ParallelPesDispatcher.unwrap(tsPayloadReaders.valueAt(i));
         if (payloadReader instanceof PesReader) {
           PesReader pesReader = (PesReader) payloadReader;
           if (pesReader.canConsumeSynthesizedEmptyPusi(isModeHls)) {
@@ -466,6 +501,49 @@ public final class TsExtractor implements Extractor {
       return RESULT_CONTINUE;
     }
 
+    // Consume the whole batch of packets that follow on from the first in the buffer, so that the
+    // overhead of a call is paid per batch rather than per packet. The batch ends early when the
+    // tracks end, since the state checked at the top of this method changes.
+    byte[] data = tsPacketBuffer.getData();
+    boolean wereTracksEnded = tracksEnded;
+    try {
+      while (true) {
+        consumePacket(endOfPacket, limit, inputLength);
+        if (tracksEnded != wereTracksEnded
+            || endOfPacket + TS_PACKET_SIZE > limit
+            || data[endOfPacket] != TS_SYNC_BYTE) {
+          break;
+        }
+        endOfPacket += TS_PACKET_SIZE;
+      }
+    } finally {
+      if (parallelPesDispatcher != null) {
+        // Parallel readers refer to the packet buffer, which may be modified by the next call, and
+        // must be idle before a seek or release. This holds even if consuming a packet threw.
+        parallelPesDispatcher.awaitIdle();
+      }
+    }
+    return RESULT_CONTINUE;
+  }
+
+  // Internals.
+
+  /**
+   * Consumes the packet that starts at the position of the packet buffer and ends at {@code
+   * endOfPacket}, and sets the position to {@code endOfPacket}.
+   */
+  private void consumePacket(int endOfPacket, int limit, long inputLength)
+      throws ParserException {
+    // Drop packets with PIDs that no reader is interested in before parsing anything else.
+    byte[] data = tsPacketBuffer.getData();
+    int packetPosition = tsPacketBuffer.getPosition();
+    int pid = ((data[packetPosition + 1] & 0x1F) << 8) | (data[packetPosition + 2] & 0xFF);
+    @Nullable TsPayloadReader payloadReader = payloadReadersByPid[pid];
+    if (payloadReader == null) {
+      tsPacketBuffer.setPosition(endOfPacket);
+      return;
+    }
+
     @TsPayloadReader.Flags int packetHeaderFlags = 0;
 
     // Note: See ISO/IEC 13818-1, section 2.4.3.2 for details of the header format.
@@ -473,31 +551,29 @@ public final class TsExtractor implements Extractor {
     if ((tsPacketHeader & 0x800000) != 0) { // transport_error_indicator
       // There are uncorrectable errors in this packet.
       tsPacketBuffer.setPosition(endOfPacket);
-      return RESULT_CONTINUE;
+      return;
     }
     packetHeaderFlags |= (tsPacketHeader & 0x400000) != 0 ? FLAG_PAYLOAD_UNIT_START_INDICATOR : 0;
     // Ignoring transport_priority (tsPacketHeader & 0x200000)
-    int pid = (tsPacketHeader & 0x1FFF00) >> 8;
     // Ignoring transport_scrambling_control (tsPacketHeader & 0xC0)
     boolean adaptationFieldExists = (tsPacketHeader & 0x20) != 0;
     boolean payloadExists = (tsPacketHeader & 0x10) != 0;
-
-    TsPayloadReader payloadReader = payloadExists ? tsPayloadReaders.get(pid) : null;
-    if (payloadReader == null) {
+    if (!payloadExists) {
       tsPacketBuffer.setPosition(endOfPacket);
-      return RESULT_CONTINUE;
+      return;
     }
 
     // Discontinuity check.
     if (mode != MODE_HLS) {
       int continuityCounter = tsPacketHeader & 0xF;
-      int previousCounter = continuityCounters.get(pid, continuityCounter - 1);
-      continuityCounters.put(pid, continuityCounter);
+      int previousCounter = continuityCounters[pid];
+      continuityCounters[pid] = continuityCounter;
       if (previousCounter == continuityCounter) {
         // Duplicate packet found.
         tsPacketBuffer.setPosition(endOfPacket);
-        return RESULT_CONTINUE;
-      } else if (continuityCounter != ((previousCounter + 1) & 0xF)) {
+        return;
+      } else if (previousCounter != C.INDEX_UNSET
+          && continuityCounter != ((previousCounter + 1) & 0xF)) {
         // Discontinuity found.
         payloadReader.seek();
       }
@@ -530,11 +606,8 @@ public final class TsExtractor implements Extractor {
     }
 
     tsPacketBuffer.setPosition(endOfPacket);
-    return RESULT_CONTINUE;
   }
 
-  // Internals.
-
   private void maybeOutputSeekMap(long inputLength) {
     if (!hasOutputSeekMap) {
       hasOutputSeekMap = true;
@@ -556,7 +629,7 @@ public final class TsExtractor implements Extractor {
   private boolean fillBufferWithAtLeastOnePacket(ExtractorInput input) throws IOException {
     byte[] data = tsPacketBuffer.getData();
     // Shift bytes to the start of the buffer if there isn't enough space left at the end.
-    if (BUFFER_SIZE - tsPacketBuffer.getPosition() < TS_PACKET_SIZE) {
+    if (data.length - tsPacketBuffer.getPosition() < TS_PACKET_SIZE) {
       int bytesLeft = tsPacketBuffer.bytesLeft();
       if (bytesLeft > 0) {
         System.arraycopy(data, tsPacketBuffer.getPosition(), data, 0, bytesLeft);
@@ -566,11 +639,19 @@ public final class TsExtractor implements Extractor {
     // Read more bytes until we have at least one packet.
     while (tsPacketBuffer.bytesLeft() < TS_PACKET_SIZE) {
       int limit = tsPacketBuffer.limit();
-      int read = input.read(data, limit, BUFFER_SIZE - limit);
+      int read = input.read(data, limit, data.length - limit);
       if (read == C.RESULT_END_OF_INPUT) {
         return false;
       }
       tsPacketBuffer.setLimit(limit + read);
+      if (limit + read == data.length && data.length < MAX_BUFFER_SIZE) {
+        // The input had at least as much data ready as the buffer could hold, so grow the buffer to
+        // read larger batches of packets.
+        int position = tsPacketBuffer.getPosition();
+        data = Arrays.copyOf(data, min(data.length * 2, MAX_BUFFER_SIZE));
+        tsPacketBuffer.reset(data, limit + read);
+        tsPacketBuffer.setPosition(position);
+      }
     }
     return true;
   }
@@ -606,22 +687,49 @@ public final class TsExtractor implements Extractor {
   private boolean shouldConsumePacketPayload(int packetPid) {
     return mode == MODE_HLS
         || tracksEnded
-        || !trackPids.get(packetPid, /* valueIfKeyNotFound= */ false); // It's a PSI packet
+        || !trackPids[packetPid]; // It's a PSI packet
   }
 
   private void resetPayloadReaders() {
     trackIds.clear();
     tsPayloadReaders.clear();
+    Arrays.fill(payloadReadersByPid, null);
     SparseArray<TsPayloadReader> initialPayloadReaders =
         payloadReaderFactory.createInitialPayloadReaders();
     int initialPayloadReadersSize = initialPayloadReaders.size();
     for (int i = 0; i < initialPayloadReadersSize; i++) {
-      tsPayloadReaders.put(initialPayloadReaders.keyAt(i), initialPayloadReaders.valueAt(i));
+      putPayloadReader(initialPayloadReaders.keyAt(i), initialPayloadReaders.valueAt(i));
     }
-    tsPayloadReaders.put(TS_PAT_PID, new SectionReader(new PatReader()));
+    putPayloadReader(TS_PAT_PID, new SectionReader(new PatReader()));
     id3Reader = null;
   }
 
+  private TsPayloadReader maybeReadInParallel(TsPayloadReader reader, int programNumber) {
+    if (mode != MODE_MULTI_PMT
+        || parallelProgramReadingThreadCount == 0
+        || !(reader instanceof PesReader)) {
+      return reader;
+    }
+    if (parallelPesDispatcher == null) {
+      // Each packet in a batch adds at most a seek and a packet slice to a lane.
+      parallelPesDispatcher =
+          new ParallelPesDispatcher(
+              parallelProgramReadingThreadCount,
+              /* laneCapacity= */ 2 * MAX_BUFFER_SIZE / TS_PACKET_SIZE);
+    }
+    return parallelPesDispatcher.wrap(reader, programNumber);
+  }
+
+  private void putPayloadReader(int pid, TsPayloadReader payloadReader) {
+    tsPayloadReaders.put(pid, payloadReader);
+    payloadReadersByPid[pid] = payloadReader;
+  }
+
+  private void removePayloadReader(int pid) {
+    tsPayloadReaders.remove(pid);
+    payloadReadersByPid[pid] = null;
+  }
+
   /** Parses Program Association Table data. */
   private class PatReader implements SectionPayloadReader {
 
@@ -666,13 +774,13 @@ public final class TsExtractor implements Extractor {
         } else {
           int pid = patScratch.readBits(13);
           if (tsPayloadReaders.get(pid) == null) {
-            tsPayloadReaders.put(pid, new SectionReader(new PmtReader(pid)));
+            putPayloadReader(pid, new SectionReader(new PmtReader(pid)));
             remainingPmts++;
           }
         }
       }
       if (mode != MODE_HLS) {
-        tsPayloadReaders.remove(TS_PAT_PID);
+        removePayloadReader(TS_PAT_PID);
       }
     }
   }
@@ -810,7 +918,7 @@ public final class TsExtractor implements Extractor {
         int trackId = trackIdToPidScratch.keyAt(i);
         int trackPid = trackIdToPidScratch.valueAt(i);
         trackIds.put(trackId, true);
-        trackPids.put(trackPid, true);
+        trackPids[trackPid] = true;
         @Nullable TsPayloadReader reader = trackIdToReaderScratch.valueAt(i);
         if (reader != null) {
           if (reader != id3Reader) {
@@ -819,7 +927,7 @@ public final class TsExtractor implements Extractor {
                 output,
                 new TrackIdGenerator(programNumber, trackId, MAX_PID_PLUS_ONE));
           }
-          tsPayloadReaders.put(trackPid, reader);
+          putPayloadReader(trackPid, maybeReadInParallel(reader, programNumber));
         }
       }
 
@@ -830,7 +938,7 @@ public final class TsExtractor implements Extractor {
           tracksEnded = true;
         }
       } else {
-        tsPayloadReaders.remove(pid);
+        removePayloadReader(pid);
         remainingPmts = mode == MODE_SINGLE_PMT ? 0 : remainingPmts - 1;
         if (remainingPmts == 0) {
           output.endTracks();
@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.videoplayer.common;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.example.videoplayer.common.PriorityTaskManager.PriorityTooLowException;
+import com.example.videoplayer.test.utils.FakeClock;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Tests {@link PriorityTaskManager}. */
+@RunWith(AndroidJUnit4.class)
+public final class PriorityTaskManagerTest {
+
+  private static final int HIGH_PRIORITY = C.PRIORITY_PLAYBACK;
+  private static final int LOW_PRIORITY = C.PRIORITY_DOWNLOAD;
+
+  /** 1 MB/s, so that a share of 0.5 refills at 500 bytes per millisecond. */
+  private static final long BANDWIDTH_ESTIMATE_BITS_PER_SECOND = 8_000_000;
+
+  /** The burst of a 500 KB/s share, which lasts 500 ms. */
+  private static final long SHARE_BURST_BYTES = 250_000;
+
+  private FakeClock clock;
+  private PriorityTaskManager priorityTaskManager;
+
+  @Before
+  public void setUp() {
+    clock = new FakeClock(/* initialTimeMs= */ 10_000);
+    priorityTaskManager = new PriorityTaskManager(clock);
+    priorityTaskManager.add(HIGH_PRIORITY);
+  }
+
+  @Test
+  public void proceedWithShareOrThrow_highestPriority_proceeds() throws Exception {
+    priorityTaskManager.proceedWithShareOrThrow(HIGH_PRIORITY);
+  }
+
+  @Test
+  public void proceedWithShareOrThrow_withoutShare_throws() {
+    priorityTaskManager.setBandwidthEstimate(BANDWIDTH_ESTIMATE_BITS_PER_SECOND);
+
+    assertThrows(
+        PriorityTooLowException.class,
+        () -> priorityTaskManager.proceedWithShareOrThrow(LOW_PRIORITY));
+  }
+
+  @Test
+  public void proceedWithShareOrThrow_withoutBandwidth_throws() {
+    priorityTaskManager.setLowerPriorityBandwidthShare(0.5f);
+
+    assertThrows(
+        PriorityTooLowException.class,
+        () -> priorityTaskManager.proceedWithShareOrThrow(LOW_PRIORITY));
+  }
+
+  @Test
+  public void proceedWithShareOrThrow_withShareAndBandwidthEstimate_proceeds() throws Exception {
+    priorityTaskManager.setLowerPriorityBandwidthShare(0.5f);
+    priorityTaskManager.setBandwidthEstimate(BANDWIDTH_ESTIMATE_BITS_PER_SECOND);
+
+    priorityTaskManager.proceedWithShareOrThrow(LOW_PRIORITY);
+  }
+
+  @Test
+  public void getShareWaitMs_afterBurstUsed_returnsTimeUntilRefilled() {
+    priorityTaskManager.setLowerPriorityBandwidthShare(0.5f);
+    priorityTaskManager.setBandwidthEstimate(BANDWIDTH_ESTIMATE_BITS_PER_SECOND);
+    assertThat(priorityTaskManager.getShareWaitMs(LOW_PRIORITY)).isEqualTo(0);
+
+    priorityTaskManager.onBytesTransferred(LOW_PRIORITY, SHARE_BURST_BYTES + 50_000);
+
+    assertThat(priorityTaskManager.getShareWaitMs(LOW_PRIORITY)).isEqualTo(100);
+  }
+
+  @Test
+  public void getShareWaitMs_afterRefill_returnsZero() throws Exception {
+    priorityTaskManager.setLowerPriorityBandwidthShare(0.5f);
+    priorityTaskManager.setBandwidthEstimate(BANDWIDTH_ESTIMATE_BITS_PER_SECOND);
+    priorityTaskManager.getShareWaitMs(LOW_PRIORITY);
+    priorityTaskManager.onBytesTransferred(LOW_PRIORITY, SHARE_BURST_BYTES + 50_000);
+
+    clock.advanceTime(60);
+    long waitAfter60MsMs = priorityTaskManager.getShareWaitMs(LOW_PRIORITY);
+    clock.advanceTime(41);
+    long waitAfter101MsMs = priorityTaskManager.getShareWaitMs(LOW_PRIORITY);
+
+    assertThat(waitAfter60MsMs).isEqualTo(40);
+    assertThat(waitAfter101MsMs).isEqualTo(0);
+    priorityTaskManager.proceedWithShareOrThrow(LOW_PRIORITY);
+  }
+
+  @Test
+  public void getShareWaitMs_refillIsCappedAtBurst() {
+    priorityTaskManager.setLowerPriorityBandwidthShare(0.5f);
+    priorityTaskManager.setBandwidthEstimate(BANDWIDTH_ESTIMATE_BITS_PER_SECOND);
+    priorityTaskManager.getShareWaitMs(LOW_PRIORITY);
+
+    clock.advanceTime(60_000);
+    priorityTaskManager.onBytesTransferred(LOW_PRIORITY, SHARE_BURST_BYTES + 50_000);
+
+    assertThat(priorityTaskManager.getShareWaitMs(LOW_PRIORITY)).isEqualTo(100);
+  }
+
+  @Test
+  public void getShareWaitMs_bytesTransferredByHighestPriority_doNotUseShare() {
+    priorityTaskManager.setLowerPriorityBandwidthShare(0.5f);
+    priorityTaskManager.setBandwidthEstimate(BANDWIDTH_ESTIMATE_BITS_PER_SECOND);
+    priorityTaskManager.getShareWaitMs(LOW_PRIORITY);
+
+    priorityTaskManager.onBytesTransferred(HIGH_PRIORITY, SHARE_BURST_BYTES + 50_000);
+
+    assertThat(priorityTaskManager.getShareWaitMs(LOW_PRIORITY)).isEqualTo(0);
+  }
+
+  @Test
+  public void proceedWithShareOrThrow_whilePreempted_throws() throws Exception {
+    priorityTaskManager.setLowerPriorityBandwidthShare(0.5f);
+    priorityTaskManager.setBandwidthEstimate(BANDWIDTH_ESTIMATE_BITS_PER_SECOND);
+
+    priorityTaskManager.setLowerPrioritiesPreempted(true);
+
+    assertThat(priorityTaskManager.getShareWaitMs(LOW_PRIORITY)).isEqualTo(C.TIME_UNSET);
+    assertThrows(
+        PriorityTooLowException.class,
+        () -> priorityTaskManager.proceedWithShareOrThrow(LOW_PRIORITY));
+    priorityTaskManager.proceedWithShareOrThrow(HIGH_PRIORITY);
+  }
+
+  @Test
+  public void proceedWithShareOrThrow_afterPreemptionEnds_proceeds() throws Exception {
+    priorityTaskManager.setLowerPriorityBandwidthShare(0.5f);
+    priorityTaskManager.setBandwidthEstimate(BANDWIDTH_ESTIMATE_BITS_PER_SECOND);
+    priorityTaskManager.setLowerPrioritiesPreempted(true);
+
+    priorityTaskManager.setLowerPrioritiesPreempted(false);
+
+    priorityTaskManager.proceedWithShareOrThrow(LOW_PRIORITY);
+  }
+
+  @Test
+  public void proceedWithShareOrThrow_afterHigherPriorityRemoved_proceeds() throws Exception {
+    priorityTaskManager.add(LOW_PRIORITY);
+
+    priorityTaskManager.remove(HIGH_PRIORITY);
+
+    priorityTaskManager.proceedWithShareOrThrow(LOW_PRIORITY);
+  }
+}
@@ -0,0 +1,263 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.videoplayer.container;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Tests {@link NalUnitUtil}'s start code scanning and emulation prevention removal. */
+@RunWith(AndroidJUnit4.class)
+public final class NalUnitUtilTest {
+
+  @Test
+  public void findNalUnit_startCodeAtStartOfData_returnsStartOffset() {
+    byte[] data = {0, 0, 1, 0x65, 5, 6};
+
+    assertThat(NalUnitUtil.findNalUnit(data, 0, data.length, new boolean[3])).isEqualTo(0);
+  }
+
+  @Test
+  public void findNalUnit_startCodeAtEveryPosition_returnsPosition() {
+    // The scan checks every third byte, so cover each alignment of the start code.
+    for (int position = 0; position + 4 <= 12; position++) {
+      byte[] data = new byte[12];
+      Arrays.fill(data, (byte) 0x55);
+      data[position] = 0;
+      data[position + 1] = 0;
+      data[position + 2] = 1;
+      data[position + 3] = 0x65;
+
+      assertThat(NalUnitUtil.findNalUnit(data, 0, data.length, new boolean[3]))
+          .isEqualTo(position);
+    }
+  }
+
+  @Test
+  public void findNalUnit_startCodeAtEndOfData_isFoundByNextCall() {
+    byte[] data = {5, 6, 7, 0, 0, 1, 0x65, 8};
+    boolean[] prefixFlags = new boolean[3];
+
+    int firstResult = NalUnitUtil.findNalUnit(data, 0, 6, prefixFlags);
+    int secondResult = NalUnitUtil.findNalUnit(data, 6, data.length, prefixFlags);
+
+    assertThat(firstResult).isEqualTo(6);
+    assertThat(secondResult).isEqualTo(3);
+    assertThat(prefixFlags).asList().containsExactly(false, false, false);
+  }
+
+  @Test
+  public void findNalUnit_startCodeSplitAfterFirstZero_isFoundByNextCall() {
+    byte[] data = {5, 6, 7, 0, 0, 1, 0x65, 8};
+    boolean[] prefixFlags = new boolean[3];
+
+    int firstResult = NalUnitUtil.findNalUnit(data, 0, 4, prefixFlags);
+    int secondResult = NalUnitUtil.findNalUnit(data, 4, data.length, prefixFlags);
+
+    assertThat(firstResult).isEqualTo(4);
+    assertThat(secondResult).isEqualTo(3);
+  }
+
+  @Test
+  public void findNalUnit_startCodeSplitAfterSecondZero_isFoundByNextCall() {
+    byte[] data = {5, 6, 7, 0, 0, 1, 0x65, 8};
+    boolean[] prefixFlags = new boolean[3];
+
+    int firstResult = NalUnitUtil.findNalUnit(data, 0, 5, prefixFlags);
+    int secondResult = NalUnitUtil.findNalUnit(data, 5, data.length, prefixFlags);
+
+    assertThat(firstResult).isEqualTo(5);
+    assertThat(secondResult).isEqualTo(3);
+  }
+
+  @Test
+  public void findNalUnit_startCodeSplitAcrossSingleByteCalls_isFound() {
+    byte[] data = {5, 0, 0, 1, 0x65};
+    boolean[] prefixFlags = new boolean[3];
+
+    for (int i = 0; i < 4; i++) {
+      assertThat(NalUnitUtil.findNalUnit(data, i, i + 1, prefixFlags)).isEqualTo(i + 1);
+    }
+    int result = NalUnitUtil.findNalUnit(data, 4, 5, prefixFlags);
+
+    assertThat(result).isEqualTo(1);
+  }
+
+  @Test
+  public void findNalUnit_zerosBeforeSplitNotFollowedByOne_clearsPrefixFlags() {
+    byte[] data = {5, 0, 0, 2, 0, 1, 0x65};
+    boolean[] prefixFlags = new boolean[3];
+
+    int firstResult = NalUnitUtil.findNalUnit(data, 0, 3, prefixFlags);
+    int secondResult = NalUnitUtil.findNalUnit(data, 3, data.length, prefixFlags);
+
+    assertThat(firstResult).isEqualTo(3);
+    assertThat(secondResult).isEqualTo(data.length);
+    assertThat(prefixFlags).asList().containsExactly(false, false, false);
+  }
+
+  @Test
+  public void findNalUnit_zeroRunsInSplitData_matchesByteByByteScan() {
+    // Data with long runs of zeros and ones, searched in chunks of every length up to 7.
+    Random random = new Random(/* seed= */ 0);
+    for (int iteration = 0; iteration < 200; iteration++) {
+      byte[] data = new byte[64];
+      for (int i = 0; i < data.length; i++) {
+        int value = random.nextInt(8);
+        data[i] = (byte) (value < 5 ? 0 : value < 7 ? 1 : 0x42);
+      }
+      List<Integer> expected = findNalUnitsByteByByte(data);
+      for (int chunkLength = 1; chunkLength <= 7; chunkLength++) {
+        assertThat(findNalUnitsInChunks(data, chunkLength)).isEqualTo(expected);
+      }
+    }
+  }
+
+  @Test
+  public void unescapeStream_withoutEmulationPreventionBytes_leavesDataUnchanged() {
+    byte[] data = {0, 0, 1, 0, 0, 2, 3, 0, 3};
+    byte[] original = data.clone();
+
+    int length = NalUnitUtil.unescapeStream(data, data.length);
+
+    assertThat(length).isEqualTo(data.length);
+    assertThat(data).isEqualTo(original);
+  }
+
+  @Test
+  public void unescapeStream_emulationPreventionByteAtStart_removesIt() {
+    byte[] data = {0, 0, 3, 1, 2};
+
+    int length = NalUnitUtil.unescapeStream(data, data.length);
+
+    assertThat(Arrays.copyOf(data, length)).isEqualTo(new byte[] {0, 0, 1, 2});
+  }
+
+  @Test
+  public void unescapeStream_emulationPreventionByteAtEnd_removesIt() {
+    byte[] data = {1, 2, 0, 0, 3};
+
+    int length = NalUnitUtil.unescapeStream(data, data.length);
+
+    assertThat(Arrays.copyOf(data, length)).isEqualTo(new byte[] {1, 2, 0, 0});
+  }
+
+  @Test
+  public void unescapeStream_emulationPreventionByteAtLimit_removesIt() {
+    byte[] data = {1, 0, 0, 3, 0, 0, 3};
+
+    int length = NalUnitUtil.unescapeStream(data, /* limit= */ 4);
+
+    assertThat(Arrays.copyOf(data, length)).isEqualTo(new byte[] {1, 0, 0});
+  }
+
+  @Test
+  public void unescapeStream_partialOccurrenceAtEnd_leavesItInPlace() {
+    byte[] data = {0, 0, 3, 5, 0, 0};
+
+    int length = NalUnitUtil.unescapeStream(data, data.length);
+
+    assertThat(Arrays.copyOf(data, length)).isEqualTo(new byte[] {0, 0, 5, 0, 0});
+  }
+
+  @Test
+  public void unescapeStream_consecutiveEmulationPreventionBytes_removesEach() {
+    byte[] data = {0, 0, 3, 0, 0, 3, 0, 0, 3, 1};
+
+    int length = NalUnitUtil.unescapeStream(data, data.length);
+
+    assertThat(Arrays.copyOf(data, length)).isEqualTo(new byte[] {0, 0, 0, 0, 0, 0, 1});
+  }
+
+  @Test
+  public void unescapeStream_randomData_matchesByteByByteUnescape() {
+    Random random = new Random(/* seed= */ 0);
+    for (int iteration = 0; iteration < 500; iteration++) {
+      byte[] data = new byte[1 + random.nextInt(40)];
+      for (int i = 0; i < data.length; i++) {
+        int value = random.nextInt(6);
+        data[i] = (byte) (value < 3 ? 0 : value < 5 ? 3 : 0x42);
+      }
+      byte[] expected = unescapeByteByByte(data);
+
+      int length = NalUnitUtil.unescapeStream(data, data.length);
+
+      assertThat(Arrays.copyOf(data, length)).isEqualTo(expected);
+    }
+  }
+
+  /** Returns the offsets of the start codes in {@code data} that are followed by another byte. */
+  private static List<Integer> findNalUnitsByteByByte(byte[] data) {
+    List<Integer> offsets = new ArrayList<>();
+    for (int i = 0; i + 3 < data.length; i++) {
+      if (data[i] == 0 && data[i + 1] == 0 && data[i + 2] == 1) {
+        offsets.add(i);
+        // The scan resumes after the start code, as the readers' scans do.
+        i += 2;
+      }
+    }
+    return offsets;
+  }
+
+  /**
+   * Returns the offsets of the start codes that {@link NalUnitUtil#findNalUnit} finds when {@code
+   * data} is passed in chunks of {@code chunkLength} bytes, resuming after each start code found.
+   */
+  private static List<Integer> findNalUnitsInChunks(byte[] data, int chunkLength) {
+    List<Integer> offsets = new ArrayList<>();
+    boolean[] prefixFlags = new boolean[3];
+    int resumeOffset = 0;
+    for (int chunkStart = 0; chunkStart < data.length; chunkStart += chunkLength) {
+      int chunkEnd = min(chunkStart + chunkLength, data.length);
+      int offset = max(chunkStart, resumeOffset);
+      while (offset < chunkEnd) {
+        int nalUnitOffset = NalUnitUtil.findNalUnit(data, offset, chunkEnd, prefixFlags);
+        if (nalUnitOffset == chunkEnd) {
+          break;
+        }
+        offsets.add(nalUnitOffset);
+        offset = nalUnitOffset + 3;
+        resumeOffset = offset;
+      }
+    }
+    return offsets;
+  }
+
+  /** Replaces [0, 0, 3] with [0, 0], resuming the search after each emulation prevention byte. */
+  private static byte[] unescapeByteByByte(byte[] data) {
+    byte[] unescaped = new byte[data.length];
+    int length = 0;
+    int i = 0;
+    while (i < data.length) {
+      if (i + 2 < data.length && data[i] == 0 && data[i + 1] == 0 && data[i + 2] == 3) {
+        unescaped[length++] = 0;
+        unescaped[length++] = 0;
+        i += 3;
+      } else {
+        unescaped[length++] = data[i++];
+      }
+    }
+    return Arrays.copyOf(unescaped, length);
+  }
+}
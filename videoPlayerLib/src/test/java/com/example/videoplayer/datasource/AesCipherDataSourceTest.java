@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.videoplayer.datasource;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.net.Uri;
+import androidx.annotation.Nullable;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.example.videoplayer.common.C;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import javax.crypto.Cipher;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Tests {@link AesCipherDataSource} and {@link AesFlushingCipher}. */
+@RunWith(AndroidJUnit4.class)
+public final class AesCipherDataSourceTest {
+
+  private static final byte[] SECRET_KEY = {
+    0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15
+  };
+  private static final String KEY = "key";
+  private static final int READ_AHEAD_BUFFER_LENGTH = 64;
+  private static final int READ_LENGTH = 5;
+
+  @Test
+  public void read_withReadAheadBuffer_returnsDecryptedData() throws IOException {
+    byte[] data = createData(/* length= */ 1_000);
+
+    byte[] readData =
+        readAll(createDataSource(data, new byte[READ_AHEAD_BUFFER_LENGTH]), /* position= */ 0);
+
+    assertThat(readData).isEqualTo(data);
+  }
+
+  @Test
+  public void read_withReadAheadBufferAndUnalignedEnd_returnsEndOfInputWithoutDecrypting()
+      throws IOException {
+    // Read from a position that isn't a multiple of the AES block size, and end when the last
+    // read-ahead buffer is exactly full, so that the cipher has pending bytes when upstream ends.
+    int position = 4;
+    byte[] data = createData(/* length= */ position + 4 * READ_AHEAD_BUFFER_LENGTH);
+
+    byte[] readData =
+        readAll(createDataSource(data, new byte[READ_AHEAD_BUFFER_LENGTH]), position);
+
+    assertThat(readData).isEqualTo(Arrays.copyOfRange(data, position, data.length));
+  }
+
+  @Test
+  public void read_withoutReadAheadBuffer_returnsDecryptedData() throws IOException {
+    int position = 4;
+    byte[] data = createData(/* length= */ 1_000);
+
+    byte[] readData = readAll(createDataSource(data, /* readAheadBuffer= */ null), position);
+
+    assertThat(readData).isEqualTo(Arrays.copyOfRange(data, position, data.length));
+  }
+
+  @Test
+  public void update_withZeroLengthAndPendingBytes_doesNotChangeCipherState() {
+    byte[] data = createData(/* length= */ 100);
+    byte[] encrypted = encrypt(data);
+    AesFlushingCipher cipher =
+        new AesFlushingCipher(Cipher.DECRYPT_MODE, SECRET_KEY, KEY, /* offset= */ 0);
+
+    // Leave pending bytes by transforming part of a block, then transform nothing.
+    cipher.updateInPlace(encrypted, /* offset= */ 0, /* length= */ 3);
+    cipher.updateInPlace(encrypted, /* offset= */ 3, /* length= */ 0);
+    cipher.updateInPlace(encrypted, /* offset= */ 3, /* length= */ encrypted.length - 3);
+
+    assertThat(encrypted).isEqualTo(data);
+  }
+
+  private static AesCipherDataSource createDataSource(
+      byte[] data, @Nullable byte[] readAheadBuffer) {
+    return new AesCipherDataSource(
+        SECRET_KEY, new ByteArrayDataSource(encrypt(data)), readAheadBuffer);
+  }
+
+  private static byte[] readAll(AesCipherDataSource dataSource, long position) throws IOException {
+    dataSource.open(
+        new DataSpec.Builder()
+            .setUri(Uri.parse("https://example.test/media"))
+            .setPosition(position)
+            .setKey(KEY)
+            .build());
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    // Read in small amounts, so that reads go through the read-ahead buffer if there is one.
+    byte[] buffer = new byte[READ_LENGTH];
+    int read;
+    while ((read = dataSource.read(buffer, /* offset= */ 0, READ_LENGTH))
+        != C.RESULT_END_OF_INPUT) {
+      output.write(buffer, 0, read);
+    }
+    dataSource.close();
+    return output.toByteArray();
+  }
+
+  private static byte[] createData(int length) {
+    byte[] data = new byte[length];
+    new Random(/* seed= */ 0).nextBytes(data);
+    return data;
+  }
+
+  private static byte[] encrypt(byte[] data) {
+    byte[] encrypted = Arrays.copyOf(data, data.length);
+    new AesFlushingCipher(Cipher.ENCRYPT_MODE, SECRET_KEY, KEY, /* offset= */ 0)
+        .updateInPlace(encrypted, /* offset= */ 0, encrypted.length);
+    return encrypted;
+  }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.videoplayer.datasource;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.example.videoplayer.common.C;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Tests {@link CoalescingDataSource}.
+ *
+ * <p>All sources are read on the test thread, so followers only read data that the leader has
+ * already read, or that they'll read from upstream.
+ */
+@RunWith(AndroidJUnit4.class)
+public final class CoalescingDataSourceTest {
+
+  private static final String URI = "https://example.test/media";
+  private static final int DATA_LENGTH = 200_000;
+
+  private byte[] data;
+  private int upstreamOpenCount;
+  private DataSource.Factory upstreamFactory;
+
+  @Before
+  public void setUp() {
+    data = new byte[DATA_LENGTH];
+    new Random(/* seed= */ 0).nextBytes(data);
+    upstreamFactory =
+        () -> {
+          upstreamOpenCount++;
+          return new ByteArrayDataSource(data);
+        };
+  }
+
+  @Test
+  public void open_beforeLeaderReads_followsLeader() throws IOException {
+    CoalescingDataSource.Factory factory = new CoalescingDataSource.Factory(upstreamFactory);
+    DataSource leader = factory.createDataSource();
+    DataSource follower = factory.createDataSource();
+
+    leader.open(createDataSpec(/* position= */ 0));
+    follower.open(createDataSpec(/* position= */ 0));
+
+    assertThat(readToEnd(leader)).isEqualTo(data);
+    assertThat(readToEnd(follower)).isEqualTo(data);
+    assertThat(upstreamOpenCount).isEqualTo(1);
+    assertThat(factory.getCoalescedOpenCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void open_behindLeaderWithoutFollowers_opensUpstream() throws IOException {
+    CoalescingDataSource.Factory factory = new CoalescingDataSource.Factory(upstreamFactory);
+    DataSource leader = factory.createDataSource();
+    DataSource source = factory.createDataSource();
+
+    leader.open(createDataSpec(/* position= */ 0));
+    readFully(leader, /* length= */ 1000);
+    // The leader had no followers, so it didn't buffer the data that it read.
+    source.open(createDataSpec(/* position= */ 0));
+
+    assertThat(readToEnd(source)).isEqualTo(data);
+    assertThat(upstreamOpenCount).isEqualTo(2);
+    assertThat(factory.getCoalescedOpenCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void open_atLeaderPositionWithoutFollowers_followsLeader() throws IOException {
+    CoalescingDataSource.Factory factory = new CoalescingDataSource.Factory(upstreamFactory);
+    DataSource leader = factory.createDataSource();
+    DataSource follower = factory.createDataSource();
+
+    leader.open(createDataSpec(/* position= */ 0));
+    readFully(leader, /* length= */ 1000);
+    follower.open(createDataSpec(/* position= */ 1000));
+    readToEnd(leader);
+
+    assertThat(readToEnd(follower)).isEqualTo(Arrays.copyOfRange(data, 1000, DATA_LENGTH));
+    assertThat(upstreamOpenCount).isEqualTo(1);
+    assertThat(factory.getCoalescedOpenCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void open_behindLeaderWithFollower_followsLeader() throws IOException {
+    CoalescingDataSource.Factory factory = new CoalescingDataSource.Factory(upstreamFactory);
+    DataSource leader = factory.createDataSource();
+    DataSource follower1 = factory.createDataSource();
+    DataSource follower2 = factory.createDataSource();
+
+    leader.open(createDataSpec(/* position= */ 0));
+    follower1.open(createDataSpec(/* position= */ 0));
+    readFully(leader, /* length= */ 1000);
+    follower2.open(createDataSpec(/* position= */ 0));
+    readToEnd(leader);
+
+    assertThat(readToEnd(follower1)).isEqualTo(data);
+    assertThat(readToEnd(follower2)).isEqualTo(data);
+    assertThat(upstreamOpenCount).isEqualTo(1);
+    assertThat(factory.getCoalescedOpenCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void close_leaderBeforeFollowerReads_followerReadsFromUpstream() throws IOException {
+    CoalescingDataSource.Factory factory = new CoalescingDataSource.Factory(upstreamFactory);
+    DataSource leader = factory.createDataSource();
+    DataSource follower = factory.createDataSource();
+
+    leader.open(createDataSpec(/* position= */ 0));
+    follower.open(createDataSpec(/* position= */ 0));
+    readFully(leader, /* length= */ 100_000);
+    leader.close();
+
+    assertThat(readToEnd(follower)).isEqualTo(data);
+    assertThat(upstreamOpenCount).isEqualTo(2);
+  }
+
+  @Test
+  public void close_followerBeforeLeader_leaderCanBeFollowedAtItsPosition() throws IOException {
+    CoalescingDataSource.Factory factory = new CoalescingDataSource.Factory(upstreamFactory);
+    DataSource leader = factory.createDataSource();
+    DataSource follower1 = factory.createDataSource();
+    DataSource follower2 = factory.createDataSource();
+
+    leader.open(createDataSpec(/* position= */ 0));
+    follower1.open(createDataSpec(/* position= */ 0));
+    readFully(leader, /* length= */ 1000);
+    follower1.close();
+    // The leader reads across a chunk boundary without buffering the data.
+    readFully(leader, /* length= */ 100_000);
+    follower2.open(createDataSpec(/* position= */ 101_000));
+    byte[] leaderData = readToEnd(leader);
+    leader.close();
+
+    assertThat(leaderData).isEqualTo(Arrays.copyOfRange(data, 101_000, DATA_LENGTH));
+    assertThat(readToEnd(follower2)).isEqualTo(leaderData);
+    assertThat(upstreamOpenCount).isEqualTo(1);
+    assertThat(factory.getCoalescedOpenCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void read_afterBufferedDataDiscarded_followerReadsFromUpstream() throws IOException {
+    CoalescingDataSource.Factory factory =
+        new CoalescingDataSource.Factory(upstreamFactory, /* maxBufferSize= */ 1000);
+    DataSource leader = factory.createDataSource();
+    DataSource follower = factory.createDataSource();
+
+    leader.open(createDataSpec(/* position= */ 0));
+    follower.open(createDataSpec(/* position= */ 0));
+    readToEnd(leader);
+
+    assertThat(readToEnd(follower)).isEqualTo(data);
+    assertThat(upstreamOpenCount).isEqualTo(2);
+  }
+
+  private static DataSpec createDataSpec(long position) {
+    return new DataSpec.Builder().setUri(URI).setPosition(position).build();
+  }
+
+  private static byte[] readFully(DataSource source, int length) throws IOException {
+    byte[] buffer = new byte[length];
+    int bytesRead = 0;
+    while (bytesRead < length) {
+      int result = source.read(buffer, bytesRead, length - bytesRead);
+      assertThat(result).isNotEqualTo(C.RESULT_END_OF_INPUT);
+      bytesRead += result;
+    }
+    return buffer;
+  }
+
+  private static byte[] readToEnd(DataSource source) throws IOException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    byte[] buffer = new byte[4096];
+    int result;
+    while ((result = source.read(buffer, 0, buffer.length)) != C.RESULT_END_OF_INPUT) {
+      output.write(buffer, 0, result);
+    }
+    return output.toByteArray();
+  }
+}
@@ -0,0 +1,298 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.videoplayer.datasource;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.junit.Assert.assertThrows;
+
+import android.net.Uri;
+import androidx.annotation.Nullable;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.common.collect.ImmutableMap;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Tests {@link HttpConnectionPool}, by reading ranges with pooled {@link DefaultHttpDataSource}
+ * instances from a local HTTP server.
+ */
+@RunWith(AndroidJUnit4.class)
+public final class HttpConnectionPoolTest {
+
+  private static final int TIMEOUT_MS = 10_000;
+  private static final int DATA_LENGTH = 1000;
+  private static final String CONTENT_TYPE = "video/mp4";
+  private static final Pattern RANGE_PATTERN = Pattern.compile("bytes=(\\d+)-(\\d+)");
+
+  private byte[] data;
+  private HttpServer server;
+  private Uri uri;
+  // The ranges requested from the server, and the ports of the connections that requested them.
+  private List<String> requestedRanges;
+  private List<Integer> requestPorts;
+  private List<String> requestedTestHeaders;
+  // Counted down for each request, and initially set to expect two requests.
+  private CountDownLatch requestLatch;
+  private ExecutorService executorService;
+
+  @Before
+  public void setUp() throws IOException {
+    data = new byte[DATA_LENGTH];
+    new Random(/* seed= */ 0).nextBytes(data);
+    requestedRanges = new ArrayList<>();
+    requestPorts = new ArrayList<>();
+    requestedTestHeaders = new ArrayList<>();
+    requestLatch = new CountDownLatch(2);
+    server =
+        HttpServer.create(
+            new InetSocketAddress(InetAddress.getLoopbackAddress(), /* port= */ 0),
+            /* backlog= */ 0);
+    server.createContext("/media", this::handleRequest);
+    server.setExecutor(Executors.newCachedThreadPool());
+    server.start();
+    uri = Uri.parse("http://127.0.0.1:" + server.getAddress().getPort() + "/media");
+    executorService = Executors.newSingleThreadExecutor();
+  }
+
+  @After
+  public void tearDown() {
+    executorService.shutdownNow();
+    server.stop(/* delay= */ 0);
+  }
+
+  @Test(timeout = TIMEOUT_MS)
+  public void open_afterRangeReadInFull_reusesConnection() throws IOException {
+    HttpConnectionPool pool = new HttpConnectionPool();
+    DataSource.Factory factory = new DefaultHttpDataSource.Factory().setConnectionPool(pool);
+
+    assertThat(readRange(factory.createDataSource(), /* position= */ 0, /* length= */ 100))
+        .isEqualTo(Arrays.copyOfRange(data, 0, 100));
+    assertThat(readRange(factory.createDataSource(), /* position= */ 500, /* length= */ 100))
+        .isEqualTo(Arrays.copyOfRange(data, 500, 600));
+
+    assertThat(pool.getMissCount()).isEqualTo(1);
+    assertThat(pool.getHitCount()).isEqualTo(1);
+    assertThat(getRequestedRanges()).containsExactly("bytes=0-99", "bytes=500-599").inOrder();
+    List<Integer> requestPorts = getRequestPorts();
+    assertThat(requestPorts.get(1)).isEqualTo(requestPorts.get(0));
+  }
+
+  @Test(timeout = TIMEOUT_MS)
+  public void open_withConnectionLimitReached_blocksUntilConnectionReleased() throws Exception {
+    HttpConnectionPool pool =
+        new HttpConnectionPool(/* maxConnectionsPerHost= */ 1, /* maxPrefetchSize= */ 0);
+    DataSource.Factory factory = new DefaultHttpDataSource.Factory().setConnectionPool(pool);
+    DataSource firstDataSource = factory.createDataSource();
+    firstDataSource.open(createDataSpec(/* position= */ 0, /* length= */ 100));
+
+    AtomicReference<Thread> secondReadThread = new AtomicReference<>();
+    Future<byte[]> secondRead =
+        executorService.submit(
+            () -> {
+              secondReadThread.set(Thread.currentThread());
+              return readRange(factory.createDataSource(), /* position= */ 100, /* length= */ 100);
+            });
+    awaitWaiting(secondReadThread);
+    assertThat(secondRead.isDone()).isFalse();
+    assertThat(requestLatch.getCount()).isEqualTo(1);
+    DataSourceUtil.readExactly(firstDataSource, /* length= */ 100);
+    firstDataSource.close();
+
+    assertThat(requestLatch.await(TIMEOUT_MS, MILLISECONDS)).isTrue();
+    assertThat(secondRead.get(TIMEOUT_MS, MILLISECONDS))
+        .isEqualTo(Arrays.copyOfRange(data, 100, 200));
+    assertThat(getRequestedRanges()).containsExactly("bytes=0-99", "bytes=100-199").inOrder();
+  }
+
+  @Test(timeout = TIMEOUT_MS)
+  public void open_nextRangeAfterRangeReadInFull_readsPrefetchedResponse() throws IOException {
+    HttpConnectionPool pool =
+        new HttpConnectionPool(
+            HttpConnectionPool.DEFAULT_MAX_CONNECTIONS_PER_HOST, /* maxPrefetchSize= */ 100);
+    DataSource.Factory factory = new DefaultHttpDataSource.Factory().setConnectionPool(pool);
+
+    readRange(factory.createDataSource(), /* position= */ 0, /* length= */ 100);
+    byte[] nextRange =
+        readRange(factory.createDataSource(), /* position= */ 100, /* length= */ 100);
+    pool.release();
+
+    assertThat(nextRange).isEqualTo(Arrays.copyOfRange(data, 100, 200));
+    assertThat(pool.getPrefetchHitCount()).isEqualTo(1);
+    assertThat(pool.getPrefetchWastedCount()).isEqualTo(0);
+    // The next range was only requested once, by the prefetch.
+    assertThat(getRequestedRanges()).containsExactly("bytes=0-99", "bytes=100-199").inOrder();
+  }
+
+  @Test(timeout = TIMEOUT_MS)
+  public void open_nextRangeWithOtherHeaders_readsFromServer() throws IOException {
+    HttpConnectionPool pool =
+        new HttpConnectionPool(
+            HttpConnectionPool.DEFAULT_MAX_CONNECTIONS_PER_HOST, /* maxPrefetchSize= */ 100);
+    DataSource.Factory firstFactory =
+        new DefaultHttpDataSource.Factory()
+            .setDefaultRequestProperties(ImmutableMap.of("X-Test", "1"))
+            .setConnectionPool(pool);
+    DataSource.Factory secondFactory =
+        new DefaultHttpDataSource.Factory()
+            .setDefaultRequestProperties(ImmutableMap.of("X-Test", "2"))
+            .setConnectionPool(pool);
+
+    readRange(firstFactory.createDataSource(), /* position= */ 0, /* length= */ 100);
+    byte[] nextRange =
+        readRange(secondFactory.createDataSource(), /* position= */ 100, /* length= */ 100);
+    pool.release();
+
+    assertThat(nextRange).isEqualTo(Arrays.copyOfRange(data, 100, 200));
+    assertThat(pool.getPrefetchHitCount()).isEqualTo(0);
+    assertThat(getRequestedTestHeaders()).contains("2");
+  }
+
+  @Test(timeout = TIMEOUT_MS)
+  public void open_nextRangeWithOtherUserAgent_readsFromServer() throws IOException {
+    HttpConnectionPool pool =
+        new HttpConnectionPool(
+            HttpConnectionPool.DEFAULT_MAX_CONNECTIONS_PER_HOST, /* maxPrefetchSize= */ 100);
+    DataSource.Factory firstFactory =
+        new DefaultHttpDataSource.Factory().setUserAgent("first").setConnectionPool(pool);
+    DataSource.Factory secondFactory =
+        new DefaultHttpDataSource.Factory().setUserAgent("second").setConnectionPool(pool);
+
+    readRange(firstFactory.createDataSource(), /* position= */ 0, /* length= */ 100);
+    byte[] nextRange =
+        readRange(secondFactory.createDataSource(), /* position= */ 100, /* length= */ 100);
+    pool.release();
+
+    assertThat(nextRange).isEqualTo(Arrays.copyOfRange(data, 100, 200));
+    assertThat(pool.getPrefetchHitCount()).isEqualTo(0);
+  }
+
+  @Test(timeout = TIMEOUT_MS)
+  public void open_prefetchedResponseWithRejectedContentType_throws() throws IOException {
+    HttpConnectionPool pool =
+        new HttpConnectionPool(
+            HttpConnectionPool.DEFAULT_MAX_CONNECTIONS_PER_HOST, /* maxPrefetchSize= */ 100);
+    DataSource.Factory firstFactory = new DefaultHttpDataSource.Factory().setConnectionPool(pool);
+    DataSource.Factory secondFactory =
+        new DefaultHttpDataSource.Factory()
+            .setContentTypePredicate(contentType -> !CONTENT_TYPE.equals(contentType))
+            .setConnectionPool(pool);
+
+    readRange(firstFactory.createDataSource(), /* position= */ 0, /* length= */ 100);
+    DataSource secondDataSource = secondFactory.createDataSource();
+
+    assertThrows(
+        HttpDataSource.InvalidContentTypeException.class,
+        () -> secondDataSource.open(createDataSpec(/* position= */ 100, /* length= */ 100)));
+    secondDataSource.close();
+    pool.release();
+    assertThat(pool.getPrefetchHitCount()).isEqualTo(1);
+  }
+
+  @Test(timeout = TIMEOUT_MS)
+  public void open_otherRangeAfterRangeReadInFull_readsFromServer() throws IOException {
+    HttpConnectionPool pool =
+        new HttpConnectionPool(
+            HttpConnectionPool.DEFAULT_MAX_CONNECTIONS_PER_HOST, /* maxPrefetchSize= */ 100);
+    DataSource.Factory factory = new DefaultHttpDataSource.Factory().setConnectionPool(pool);
+
+    readRange(factory.createDataSource(), /* position= */ 0, /* length= */ 100);
+    byte[] otherRange =
+        readRange(factory.createDataSource(), /* position= */ 500, /* length= */ 100);
+
+    assertThat(otherRange).isEqualTo(Arrays.copyOfRange(data, 500, 600));
+    assertThat(pool.getPrefetchHitCount()).isEqualTo(0);
+    assertThat(getRequestedRanges()).contains("bytes=500-599");
+  }
+
+  private DataSpec createDataSpec(long position, long length) {
+    return new DataSpec.Builder().setUri(uri).setPosition(position).setLength(length).build();
+  }
+
+  private byte[] readRange(DataSource dataSource, long position, long length) throws IOException {
+    try {
+      dataSource.open(createDataSpec(position, length));
+      return DataSourceUtil.readToEnd(dataSource);
+    } finally {
+      dataSource.close();
+    }
+  }
+
+  private synchronized List<String> getRequestedRanges() {
+    return new ArrayList<>(requestedRanges);
+  }
+
+  private synchronized List<Integer> getRequestPorts() {
+    return new ArrayList<>(requestPorts);
+  }
+
+  private synchronized List<String> getRequestedTestHeaders() {
+    return new ArrayList<>(requestedTestHeaders);
+  }
+
+  /** Waits until {@code threadReference} is set, and its thread is blocked waiting. */
+  private static void awaitWaiting(AtomicReference<Thread> threadReference) {
+    @Nullable Thread thread;
+    while ((thread = threadReference.get()) == null || thread.getState() != Thread.State.WAITING) {
+      Thread.yield();
+    }
+  }
+
+  private void handleRequest(HttpExchange exchange) throws IOException {
+    @Nullable String range = exchange.getRequestHeaders().getFirst("Range");
+    synchronized (this) {
+      requestedRanges.add(range);
+      requestPorts.add(exchange.getRemoteAddress().getPort());
+      requestedTestHeaders.add(exchange.getRequestHeaders().getFirst("X-Test"));
+    }
+    requestLatch.countDown();
+    @Nullable Matcher matcher = range != null ? RANGE_PATTERN.matcher(range) : null;
+    if (matcher == null || !matcher.matches()) {
+      exchange.sendResponseHeaders(/* rCode= */ 416, /* responseLength= */ -1);
+      exchange.close();
+      return;
+    }
+    int start = Integer.parseInt(matcher.group(1));
+    int end = Integer.parseInt(matcher.group(2));
+    exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+    exchange
+        .getResponseHeaders()
+        .set("Content-Range", "bytes " + start + "-" + end + "/" + DATA_LENGTH);
+    exchange.sendResponseHeaders(/* rCode= */ 206, /* responseLength= */ end - start + 1);
+    try (OutputStream responseBody = exchange.getResponseBody()) {
+      responseBody.write(data, start, end - start + 1);
+    }
+  }
+}
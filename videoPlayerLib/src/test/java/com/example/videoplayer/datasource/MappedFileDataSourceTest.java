@@ -0,0 +1,225 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.videoplayer.datasource;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import android.net.Uri;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.example.videoplayer.common.C;
+import com.example.videoplayer.common.PlaybackException;
+import com.example.videoplayer.datasource.FileDataSource.FileDataSourceException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+
+/** Tests {@link MappedFileDataSource}. */
+@RunWith(AndroidJUnit4.class)
+public final class MappedFileDataSourceTest {
+
+  private static final int FILE_LENGTH = 1_000;
+
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private byte[] data;
+  private Uri uri;
+
+  @Before
+  public void setUp() throws IOException {
+    data = createData(FILE_LENGTH);
+    File file = temporaryFolder.newFile("file");
+    writeFile(file, data);
+    uri = Uri.fromFile(file);
+  }
+
+  @Test
+  public void open_withUnsetLength_returnsFileLength() throws IOException {
+    MappedFileDataSource dataSource = new MappedFileDataSource();
+
+    long length = dataSource.open(new DataSpec(uri));
+
+    assertThat(length).isEqualTo(FILE_LENGTH);
+    assertThat(dataSource.getUri()).isEqualTo(uri);
+    dataSource.close();
+  }
+
+  @Test
+  public void read_wholeFile_readsDataThenEndOfInput() throws IOException {
+    MappedFileDataSource dataSource = new MappedFileDataSource();
+    dataSource.open(new DataSpec(uri));
+
+    byte[] readData = readToEnd(dataSource);
+    int result = dataSource.read(new byte[10], /* offset= */ 0, /* length= */ 10);
+
+    assertThat(readData).isEqualTo(data);
+    assertThat(result).isEqualTo(C.RESULT_END_OF_INPUT);
+    dataSource.close();
+  }
+
+  @Test
+  public void read_withPositionAndLength_readsRange() throws IOException {
+    MappedFileDataSource dataSource = new MappedFileDataSource();
+
+    long length =
+        dataSource.open(
+            new DataSpec.Builder().setUri(uri).setPosition(100).setLength(250).build());
+    byte[] readData = readToEnd(dataSource);
+
+    assertThat(length).isEqualTo(250);
+    assertThat(readData).isEqualTo(Arrays.copyOfRange(data, 100, 350));
+    dataSource.close();
+  }
+
+  @Test
+  public void read_withLengthToEndOfFile_readsRange() throws IOException {
+    MappedFileDataSource dataSource = new MappedFileDataSource();
+
+    dataSource.open(
+        new DataSpec.Builder().setUri(uri).setPosition(900).setLength(100).build());
+    byte[] readData = readToEnd(dataSource);
+
+    assertThat(readData).isEqualTo(Arrays.copyOfRange(data, 900, FILE_LENGTH));
+    dataSource.close();
+  }
+
+  @Test
+  public void read_atEndOfFile_returnsEndOfInput() throws IOException {
+    MappedFileDataSource dataSource = new MappedFileDataSource();
+
+    long length = dataSource.open(new DataSpec.Builder().setUri(uri).setPosition(1_000).build());
+    int result = dataSource.read(new byte[10], /* offset= */ 0, /* length= */ 10);
+
+    assertThat(length).isEqualTo(0);
+    assertThat(result).isEqualTo(C.RESULT_END_OF_INPUT);
+    dataSource.close();
+  }
+
+  @Test
+  public void readBuffer_readsWithoutCopying() throws IOException {
+    MappedFileDataSource dataSource = new MappedFileDataSource();
+    dataSource.open(new DataSpec.Builder().setUri(uri).setPosition(10).setLength(30).build());
+
+    ByteBuffer first = dataSource.readBuffer(/* length= */ 20);
+    ByteBuffer second = dataSource.readBuffer(/* length= */ 20);
+    ByteBuffer third = dataSource.readBuffer(/* length= */ 20);
+
+    assertThat(dataSource.isZeroCopyReadSupported()).isTrue();
+    assertThat(first.isReadOnly()).isTrue();
+    assertThat(toArray(first)).isEqualTo(Arrays.copyOfRange(data, 10, 30));
+    assertThat(toArray(second)).isEqualTo(Arrays.copyOfRange(data, 30, 40));
+    assertThat(third).isNull();
+    dataSource.close();
+  }
+
+  @Test
+  public void open_positionAfterEndOfFile_throwsPositionOutOfRange() {
+    MappedFileDataSource dataSource = new MappedFileDataSource();
+
+    FileDataSourceException exception =
+        assertThrows(
+            FileDataSourceException.class,
+            () -> dataSource.open(new DataSpec.Builder().setUri(uri).setPosition(1_001).build()));
+
+    assertThat(exception.reason)
+        .isEqualTo(PlaybackException.ERROR_CODE_IO_READ_POSITION_OUT_OF_RANGE);
+  }
+
+  @Test
+  public void open_lengthPastEndOfFile_throwsPositionOutOfRange() {
+    MappedFileDataSource dataSource = new MappedFileDataSource();
+
+    FileDataSourceException exception =
+        assertThrows(
+            FileDataSourceException.class,
+            () ->
+                dataSource.open(
+                    new DataSpec.Builder().setUri(uri).setPosition(900).setLength(101).build()));
+
+    assertThat(exception.reason)
+        .isEqualTo(PlaybackException.ERROR_CODE_IO_READ_POSITION_OUT_OF_RANGE);
+  }
+
+  @Test
+  public void open_missingFile_throwsFileNotFound() {
+    MappedFileDataSource dataSource = new MappedFileDataSource();
+    Uri missingFileUri = Uri.fromFile(new File(temporaryFolder.getRoot(), "missing"));
+
+    FileDataSourceException exception =
+        assertThrows(
+            FileDataSourceException.class, () -> dataSource.open(new DataSpec(missingFileUri)));
+
+    assertThat(exception.reason).isEqualTo(PlaybackException.ERROR_CODE_IO_FILE_NOT_FOUND);
+  }
+
+  @Test
+  public void open_fileReplacedWithDifferentLength_readsNewContent() throws IOException {
+    MappedFileDataSource.Factory factory = new MappedFileDataSource.Factory();
+    MappedFileDataSource dataSource = factory.createDataSource();
+    dataSource.open(new DataSpec(uri));
+    dataSource.close();
+    byte[] newData = createData(FILE_LENGTH / 2);
+    writeFile(new File(uri.getPath()), newData);
+
+    dataSource = factory.createDataSource();
+    long length = dataSource.open(new DataSpec(uri));
+    byte[] readData = readToEnd(dataSource);
+
+    assertThat(length).isEqualTo(newData.length);
+    assertThat(readData).isEqualTo(newData);
+    dataSource.close();
+  }
+
+  private static byte[] readToEnd(DataSource dataSource) throws IOException {
+    byte[] buffer = new byte[FILE_LENGTH * 2];
+    int length = 0;
+    while (true) {
+      // Read in small chunks, so that reads continue from the previous position.
+      int bytesRead = dataSource.read(buffer, length, /* length= */ 64);
+      if (bytesRead == C.RESULT_END_OF_INPUT) {
+        return Arrays.copyOf(buffer, length);
+      }
+      length += bytesRead;
+    }
+  }
+
+  private static byte[] toArray(ByteBuffer buffer) {
+    byte[] array = new byte[buffer.remaining()];
+    buffer.get(array);
+    return array;
+  }
+
+  private static byte[] createData(int length) {
+    byte[] data = new byte[length];
+    for (int i = 0; i < length; i++) {
+      data[i] = (byte) (i * 31 + length);
+    }
+    return data;
+  }
+
+  private static void writeFile(File file, byte[] data) throws IOException {
+    try (FileOutputStream outputStream = new FileOutputStream(file)) {
+      outputStream.write(data);
+    }
+  }
+}
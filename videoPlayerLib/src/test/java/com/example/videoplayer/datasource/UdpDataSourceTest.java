@@ -0,0 +1,249 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.videoplayer.datasource;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import android.net.Uri;
+import androidx.annotation.Nullable;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.example.videoplayer.common.PlaybackException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Tests {@link UdpDataSource} with a receive ring. */
+@RunWith(AndroidJUnit4.class)
+public final class UdpDataSourceTest {
+
+  private static final DataSpec DATA_SPEC = new DataSpec(Uri.parse("udp://127.0.0.1:0"));
+  private static final int MAX_PACKET_SIZE = 100;
+  private static final int SOCKET_TIMEOUT_MS = 2_000;
+
+  private DatagramSocket sendingSocket;
+  @Nullable private UdpDataSource dataSource;
+
+  @Before
+  public void setUp() throws IOException {
+    sendingSocket = new DatagramSocket();
+  }
+
+  @After
+  public void tearDown() {
+    if (dataSource != null) {
+      dataSource.close();
+    }
+    sendingSocket.close();
+  }
+
+  @Test
+  public void read_moreDatagramsThanRingSlots_wrapsAroundInOrder() throws Exception {
+    UdpDataSource dataSource = openDataSource(/* receiveRingPacketCount= */ 3);
+
+    // Reading each batch before sending the next keeps the ring from filling, and 10 batches of 2
+    // datagrams wrap around the ring several times.
+    for (int batch = 0; batch < 10; batch++) {
+      send(dataSource, createDatagram(2 * batch, /* length= */ 10));
+      send(dataSource, createDatagram(2 * batch + 1, /* length= */ 20));
+
+      assertThat(readDatagram(dataSource, /* length= */ 10))
+          .isEqualTo(createDatagram(2 * batch, /* length= */ 10));
+      assertThat(readDatagram(dataSource, /* length= */ 20))
+          .isEqualTo(createDatagram(2 * batch + 1, /* length= */ 20));
+    }
+    assertThat(dataSource.getDroppedPacketCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void read_withLargeBuffer_readsAcrossBufferedDatagrams() throws Exception {
+    UdpDataSource dataSource = openDataSource(/* receiveRingPacketCount= */ 2);
+    // Overflowing the ring ensures that both of its datagrams have been received.
+    for (int i = 0; i < 3; i++) {
+      send(dataSource, createDatagram(i, /* length= */ 10));
+    }
+    awaitDroppedPacketCount(dataSource, /* count= */ 1);
+
+    byte[] buffer = new byte[50];
+    int bytesRead = dataSource.read(buffer, /* offset= */ 0, buffer.length);
+
+    assertThat(bytesRead).isEqualTo(20);
+  }
+
+  @Test
+  public void read_afterRingOverflows_countsDroppedDatagrams() throws Exception {
+    UdpDataSource dataSource = openDataSource(/* receiveRingPacketCount= */ 2);
+
+    for (int i = 0; i < 5; i++) {
+      send(dataSource, createDatagram(i, /* length= */ 10));
+    }
+    awaitDroppedPacketCount(dataSource, /* count= */ 3);
+
+    assertThat(dataSource.getOverrunCount()).isEqualTo(1);
+    assertThat(readDatagram(dataSource, /* length= */ 10))
+        .isEqualTo(createDatagram(/* id= */ 0, /* length= */ 10));
+    assertThat(readDatagram(dataSource, /* length= */ 10))
+        .isEqualTo(createDatagram(/* id= */ 1, /* length= */ 10));
+
+    // A second overflow is counted as a separate overrun.
+    for (int i = 5; i < 8; i++) {
+      send(dataSource, createDatagram(i, /* length= */ 10));
+    }
+    awaitDroppedPacketCount(dataSource, /* count= */ 4);
+
+    assertThat(dataSource.getOverrunCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void read_releasesSlotWhileRingIsFull_keepsNextDatagram() throws Exception {
+    UdpDataSource dataSource = openDataSource(/* receiveRingPacketCount= */ 1);
+    send(dataSource, createDatagram(/* id= */ 0, /* length= */ 10));
+    send(dataSource, createDatagram(/* id= */ 1, /* length= */ 10));
+    awaitDroppedPacketCount(dataSource, /* count= */ 1);
+
+    // The receiving thread is blocked receiving while the ring is full, and the read frees a slot.
+    assertThat(readDatagram(dataSource, /* length= */ 10))
+        .isEqualTo(createDatagram(/* id= */ 0, /* length= */ 10));
+    send(dataSource, createDatagram(/* id= */ 2, /* length= */ 10));
+
+    assertThat(readDatagram(dataSource, /* length= */ 10))
+        .isEqualTo(createDatagram(/* id= */ 2, /* length= */ 10));
+    assertThat(dataSource.getDroppedPacketCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void read_withoutDatagrams_throwsTimeout() throws Exception {
+    UdpDataSource dataSource =
+        openDataSource(/* receiveRingPacketCount= */ 2, /* socketTimeoutMillis= */ 50);
+
+    UdpDataSource.UdpDataSourceException exception =
+        assertThrows(
+            UdpDataSource.UdpDataSourceException.class,
+            () -> dataSource.read(new byte[10], /* offset= */ 0, /* length= */ 10));
+
+    assertThat(exception.reason)
+        .isEqualTo(PlaybackException.ERROR_CODE_IO_NETWORK_CONNECTION_TIMEOUT);
+  }
+
+  @Test
+  public void read_whenInterrupted_throwsInterruptedIOException() throws Exception {
+    UdpDataSource dataSource =
+        openDataSource(/* receiveRingPacketCount= */ 2, /* socketTimeoutMillis= */ 0);
+    AtomicReference<Exception> readException = new AtomicReference<>();
+    Thread readingThread =
+        new Thread(
+            () -> {
+              try {
+                dataSource.read(new byte[10], /* offset= */ 0, /* length= */ 10);
+              } catch (Exception e) {
+                readException.set(e);
+              }
+            });
+
+    readingThread.start();
+    readingThread.interrupt();
+    readingThread.join(SOCKET_TIMEOUT_MS);
+
+    assertThat(readingThread.isAlive()).isFalse();
+    assertThat(readException.get()).isInstanceOf(UdpDataSource.UdpDataSourceException.class);
+    assertThat(readException.get()).hasCauseThat().isInstanceOf(InterruptedIOException.class);
+  }
+
+  @Test
+  public void close_stopsReceivingThread() throws Exception {
+    Set<Thread> otherReceivingThreads = findReceivingThreads();
+    UdpDataSource dataSource = openDataSource(/* receiveRingPacketCount= */ 2);
+    Set<Thread> receivingThreads = findReceivingThreads();
+    receivingThreads.removeAll(otherReceivingThreads);
+    assertThat(receivingThreads).hasSize(1);
+    Thread receivingThread = receivingThreads.iterator().next();
+
+    dataSource.close();
+    receivingThread.join(SOCKET_TIMEOUT_MS);
+
+    assertThat(receivingThread.isAlive()).isFalse();
+    assertThat(dataSource.getLocalPort()).isEqualTo(UdpDataSource.UDP_PORT_UNSET);
+  }
+
+  private UdpDataSource openDataSource(int receiveRingPacketCount) throws IOException {
+    return openDataSource(receiveRingPacketCount, SOCKET_TIMEOUT_MS);
+  }
+
+  private UdpDataSource openDataSource(int receiveRingPacketCount, int socketTimeoutMillis)
+      throws IOException {
+    UdpDataSource dataSource =
+        new UdpDataSource(
+            MAX_PACKET_SIZE,
+            socketTimeoutMillis,
+            receiveRingPacketCount,
+            /* receiveBufferSize= */ 0);
+    this.dataSource = dataSource;
+    dataSource.open(DATA_SPEC);
+    return dataSource;
+  }
+
+  private void send(UdpDataSource dataSource, byte[] datagram) throws IOException {
+    InetAddress address = InetAddress.getLoopbackAddress();
+    sendingSocket.send(
+        new DatagramPacket(datagram, datagram.length, address, dataSource.getLocalPort()));
+  }
+
+  private static byte[] readDatagram(UdpDataSource dataSource, int length) throws IOException {
+    byte[] datagram = new byte[length];
+    int bytesRead = 0;
+    while (bytesRead < length) {
+      bytesRead += dataSource.read(datagram, bytesRead, length - bytesRead);
+    }
+    return datagram;
+  }
+
+  private static byte[] createDatagram(int id, int length) {
+    byte[] datagram = new byte[length];
+    for (int i = 0; i < length; i++) {
+      datagram[i] = (byte) (id * 31 + i);
+    }
+    return datagram;
+  }
+
+  private static void awaitDroppedPacketCount(UdpDataSource dataSource, int count)
+      throws InterruptedException {
+    long deadlineMs = System.currentTimeMillis() + SOCKET_TIMEOUT_MS;
+    while (dataSource.getDroppedPacketCount() < count
+        && System.currentTimeMillis() < deadlineMs) {
+      Thread.sleep(1);
+    }
+    assertThat(dataSource.getDroppedPacketCount()).isEqualTo(count);
+  }
+
+  private static Set<Thread> findReceivingThreads() {
+    Set<Thread> receivingThreads = new HashSet<>();
+    for (Thread thread : Thread.getAllStackTraces().keySet()) {
+      if (thread.getName().equals("ExoPlayer:UdpReceiver") && thread.isAlive()) {
+        receivingThreads.add(thread);
+      }
+    }
+    return receivingThreads;
+  }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.videoplayer.datasource.cache;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.annotation.Nullable;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+
+/** Tests the legacy storage of {@link CachedContentIndex}, with and without journaling. */
+@RunWith(AndroidJUnit4.class)
+public final class CachedContentIndexTest {
+
+  private static final byte[] SECRET_KEY = {
+    0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15
+  };
+
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void journaledStore_restoresKeysAndMetadata() throws IOException {
+    File cacheDir = temporaryFolder.newFolder();
+    CachedContentIndex index = createIndex(cacheDir, /* journal= */ true, /* encrypt= */ false);
+    index.getOrAdd("key1");
+    index.getOrAdd("key2");
+    index.applyContentMetadataMutations(
+        "key2", new ContentMetadataMutations().set("name", "value"));
+    index.store();
+    index.applyContentMetadataMutations("key1", new ContentMetadataMutations().set("name", 1));
+    index.store();
+    index.release();
+
+    assertThat(getJournalFiles(cacheDir)).isNotEmpty();
+    CachedContentIndex restoredIndex =
+        createIndex(cacheDir, /* journal= */ true, /* encrypt= */ false);
+    assertThat(restoredIndex.getKeys()).containsExactly("key1", "key2");
+    assertThat(restoredIndex.getContentMetadata("key1").get("name", /* defaultValue= */ 0))
+        .isEqualTo(1);
+    @Nullable
+    String value = restoredIndex.getContentMetadata("key2").get("name", (String) null);
+    assertThat(value).isEqualTo("value");
+    assertIdsConsistent(restoredIndex);
+  }
+
+  @Test
+  public void encryptedJournaledStore_restoresKeys() throws IOException {
+    File cacheDir = temporaryFolder.newFolder();
+    CachedContentIndex index = createIndex(cacheDir, /* journal= */ true, /* encrypt= */ true);
+    index.getOrAdd("key1");
+    index.store();
+    index.getOrAdd("key2");
+    index.store();
+    index.release();
+
+    CachedContentIndex restoredIndex =
+        createIndex(cacheDir, /* journal= */ true, /* encrypt= */ true);
+    assertThat(restoredIndex.getKeys()).containsExactly("key1", "key2");
+  }
+
+  @Test
+  public void storeWithoutJournaling_afterJournaledStore_keepsJournaledChanges()
+      throws IOException {
+    File cacheDir = temporaryFolder.newFolder();
+    CachedContentIndex index = createIndex(cacheDir, /* journal= */ false, /* encrypt= */ false);
+    index.getOrAdd("key1");
+    index.store();
+    index.release();
+    index = createIndex(cacheDir, /* journal= */ true, /* encrypt= */ false);
+    index.getOrAdd("key2");
+    index.store();
+    index.release();
+
+    CachedContentIndex restoredIndex =
+        createIndex(cacheDir, /* journal= */ false, /* encrypt= */ false);
+    assertThat(restoredIndex.getKeys()).containsExactly("key1", "key2");
+    restoredIndex.store();
+    restoredIndex.release();
+
+    assertThat(getJournalFiles(cacheDir)).isEmpty();
+    restoredIndex = createIndex(cacheDir, /* journal= */ false, /* encrypt= */ false);
+    assertThat(restoredIndex.getKeys()).containsExactly("key1", "key2");
+  }
+
+  @Test
+  public void journaledStore_afterStoreWithoutJournaling_doesNotReplayStaleJournal()
+      throws IOException {
+    File cacheDir = temporaryFolder.newFolder();
+    CachedContentIndex index = createIndex(cacheDir, /* journal= */ true, /* encrypt= */ false);
+    index.getOrAdd("keptKey");
+    // New keys are assigned the id after the largest one in use, so this id is reused below.
+    int removedId = index.assignIdForKey("removedKey");
+    index.store();
+    index.release();
+
+    // Remove the key without journaling, and reuse its id once the removal has been stored.
+    index = createIndex(cacheDir, /* journal= */ false, /* encrypt= */ false);
+    index.maybeRemove("removedKey");
+    index.store();
+    int reusedId = index.assignIdForKey("newKey");
+    index.store();
+    index.release();
+    assertThat(reusedId).isEqualTo(removedId);
+
+    CachedContentIndex restoredIndex =
+        createIndex(cacheDir, /* journal= */ true, /* encrypt= */ false);
+    assertThat(restoredIndex.getKeys()).containsExactly("keptKey", "newKey");
+    assertThat(restoredIndex.getKeyForId(reusedId)).isEqualTo("newKey");
+    assertIdsConsistent(restoredIndex);
+  }
+
+  private static CachedContentIndex createIndex(File cacheDir, boolean journal, boolean encrypt)
+      throws IOException {
+    CachedContentIndex index =
+        new CachedContentIndex(
+            /* databaseProvider= */ null,
+            cacheDir,
+            encrypt ? SECRET_KEY : null,
+            /* legacyStorageEncrypt= */ encrypt,
+            /* preferLegacyStorage= */ true,
+            /* journalLegacyStorage= */ journal);
+    index.initialize(/* uid= */ 0);
+    return index;
+  }
+
+  private static List<File> getJournalFiles(File cacheDir) {
+    List<File> journalFiles = new ArrayList<>();
+    @Nullable File[] files = cacheDir.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        if (file.getName().startsWith(CachedContentIndex.FILE_NAME_ATOMIC + ".journal.")) {
+          journalFiles.add(file);
+        }
+      }
+    }
+    return journalFiles;
+  }
+
+  private static void assertIdsConsistent(CachedContentIndex index) {
+    for (CachedContent cachedContent : index.getAll()) {
+      assertThat(index.getKeyForId(cachedContent.id)).isEqualTo(cachedContent.key);
+    }
+  }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.videoplayer.datasource.cache;
+
+import static com.example.videoplayer.common.util.Assertions.checkNotNull;
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.example.videoplayer.common.C;
+import java.io.File;
+import java.io.IOException;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+
+/** Tests looking up and removing spans in {@link CachedContent}. */
+@RunWith(AndroidJUnit4.class)
+public final class CachedContentTest {
+
+  private static final String KEY = "key";
+
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private File cacheDir;
+  private CachedContentIndex index;
+  private CachedContent cachedContent;
+
+  @Before
+  public void setUp() throws IOException {
+    cacheDir = temporaryFolder.newFolder();
+    index =
+        new CachedContentIndex(
+            /* databaseProvider= */ null,
+            cacheDir,
+            /* legacyStorageSecretKey= */ null,
+            /* legacyStorageEncrypt= */ false,
+            /* preferLegacyStorage= */ true,
+            /* journalLegacyStorage= */ false);
+    index.initialize(/* uid= */ 0);
+    cachedContent = index.getOrAdd(KEY);
+  }
+
+  @Test
+  public void getSpan_withinCachedSpan_returnsCachedSpan() {
+    SimpleCacheSpan span = addSpan(/* position= */ 10, /* length= */ 10);
+
+    assertThat(cachedContent.getSpan(/* position= */ 10, /* length= */ 5)).isSameInstanceAs(span);
+    assertThat(cachedContent.getSpan(/* position= */ 19, C.LENGTH_UNSET)).isSameInstanceAs(span);
+  }
+
+  @Test
+  public void getSpan_beforeCachedSpan_returnsHoleUpToSpan() {
+    addSpan(/* position= */ 10, /* length= */ 10);
+
+    assertHole(cachedContent.getSpan(/* position= */ 0, C.LENGTH_UNSET), 0, 10);
+    assertHole(cachedContent.getSpan(/* position= */ 2, /* length= */ 5), 2, 5);
+  }
+
+  @Test
+  public void getSpan_betweenCachedSpans_returnsHoleUpToNextSpan() {
+    addSpan(/* position= */ 0, /* length= */ 10);
+    addSpan(/* position= */ 30, /* length= */ 10);
+    addSpan(/* position= */ 20, /* length= */ 5);
+
+    assertHole(cachedContent.getSpan(/* position= */ 10, C.LENGTH_UNSET), 10, 10);
+    assertHole(cachedContent.getSpan(/* position= */ 25, /* length= */ 100), 25, 5);
+  }
+
+  @Test
+  public void getSpan_afterLastCachedSpan_returnsRequestedHole() {
+    addSpan(/* position= */ 0, /* length= */ 10);
+
+    assertHole(cachedContent.getSpan(/* position= */ 10, C.LENGTH_UNSET), 10, C.LENGTH_UNSET);
+    assertHole(cachedContent.getSpan(/* position= */ 15, /* length= */ 7), 15, 7);
+  }
+
+  @Test
+  public void getSpan_afterRemoveSpan_returnsHole() {
+    addSpan(/* position= */ 0, /* length= */ 10);
+    SimpleCacheSpan span = addSpan(/* position= */ 10, /* length= */ 10);
+    addSpan(/* position= */ 20, /* length= */ 10);
+
+    assertThat(cachedContent.removeSpan(span)).isTrue();
+
+    assertHole(cachedContent.getSpan(/* position= */ 10, C.LENGTH_UNSET), 10, 10);
+    assertThat(cachedContent.getCachedBytesLength(/* position= */ 0, /* length= */ 30))
+        .isEqualTo(10);
+    assertThat(cachedContent.getCachedBytes(/* position= */ 0, /* length= */ 30)).isEqualTo(20);
+  }
+
+  @Test
+  public void getSpan_afterSetLastTouchTimestamp_returnsUpdatedSpan() {
+    SimpleCacheSpan span = addSpan(/* position= */ 10, /* length= */ 10);
+
+    SimpleCacheSpan updatedSpan =
+        cachedContent.setLastTouchTimestamp(
+            span, /* lastTouchTimestamp= */ 2000, /* updateFile= */ false);
+
+    assertThat(cachedContent.getSpan(/* position= */ 15, C.LENGTH_UNSET))
+        .isSameInstanceAs(updatedSpan);
+    assertThat(updatedSpan.lastTouchTimestamp).isEqualTo(2000);
+  }
+
+  @Test
+  public void getSpan_withManySpans_returnsEachSpan() {
+    SimpleCacheSpan[] spans = new SimpleCacheSpan[100];
+    // Add the spans out of order so that they're inserted into the middle of the lookup arrays.
+    for (int i = 0; i < spans.length; i++) {
+      int position = (i * 37) % spans.length * 20;
+      spans[position / 20] = addSpan(position, /* length= */ 10);
+    }
+
+    for (int i = 0; i < spans.length; i++) {
+      assertThat(cachedContent.getSpan(/* position= */ i * 20 + 5, C.LENGTH_UNSET))
+          .isSameInstanceAs(spans[i]);
+      long holePosition = i * 20 + 10;
+      assertHole(
+          cachedContent.getSpan(holePosition, C.LENGTH_UNSET),
+          holePosition,
+          /* length= */ i + 1 < spans.length ? 10 : C.LENGTH_UNSET);
+    }
+  }
+
+  private SimpleCacheSpan addSpan(long position, long length) {
+    File file =
+        SimpleCacheSpan.getCacheFile(cacheDir, cachedContent.id, position, /* timestamp= */ 1000);
+    SimpleCacheSpan span = checkNotNull(SimpleCacheSpan.createCacheEntry(file, length, index));
+    cachedContent.addSpan(span);
+    return span;
+  }
+
+  private static void assertHole(SimpleCacheSpan span, long position, long length) {
+    assertThat(span.isCached).isFalse();
+    assertThat(span.position).isEqualTo(position);
+    assertThat(span.length).isEqualTo(length);
+  }
+}
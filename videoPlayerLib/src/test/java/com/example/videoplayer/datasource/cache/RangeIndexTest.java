@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.videoplayer.datasource.cache;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Tests {@link RangeIndex}. */
+@RunWith(AndroidJUnit4.class)
+public final class RangeIndexTest {
+
+  @Test
+  public void newIndex_isEmpty() {
+    RangeIndex rangeIndex = new RangeIndex(/* coalescing= */ true);
+
+    assertThat(rangeIndex.isEmpty()).isTrue();
+    assertThat(rangeIndex.intersects(0, Long.MAX_VALUE)).isFalse();
+    assertThat(rangeIndex.getContainedLength(/* position= */ 0, /* maxLength= */ 10))
+        .isEqualTo(-10);
+  }
+
+  @Test
+  public void add_emptyRange_isIgnored() {
+    RangeIndex rangeIndex = new RangeIndex(/* coalescing= */ true);
+
+    rangeIndex.add(10, 10);
+
+    assertThat(rangeIndex.isEmpty()).isTrue();
+  }
+
+  @Test
+  public void add_coalescing_mergesOverlappingAndAdjacentRanges() {
+    RangeIndex rangeIndex = new RangeIndex(/* coalescing= */ true);
+
+    rangeIndex.add(0, 10);
+    rangeIndex.add(20, 30);
+    rangeIndex.add(10, 15);
+    rangeIndex.add(14, 20);
+
+    assertThat(rangeIndex.containsInSingleRange(0, 30)).isTrue();
+    assertThat(rangeIndex.getContainedLength(/* position= */ 5, Long.MAX_VALUE)).isEqualTo(25);
+  }
+
+  @Test
+  public void add_coalescing_mergesRangeSpanningSeveralRanges() {
+    RangeIndex rangeIndex = new RangeIndex(/* coalescing= */ true);
+    rangeIndex.add(0, 10);
+    rangeIndex.add(20, 30);
+    rangeIndex.add(40, 50);
+
+    rangeIndex.add(5, 45);
+
+    assertThat(rangeIndex.containsInSingleRange(0, 50)).isTrue();
+    assertThat(rangeIndex.getIntersectionLength(0, Long.MAX_VALUE)).isEqualTo(50);
+  }
+
+  @Test
+  public void add_nonCoalescing_keepsAdjacentRangesSeparate() {
+    RangeIndex rangeIndex = new RangeIndex(/* coalescing= */ false);
+
+    rangeIndex.add(0, 10);
+    rangeIndex.add(10, 20);
+
+    assertThat(rangeIndex.containsInSingleRange(0, 10)).isTrue();
+    assertThat(rangeIndex.containsInSingleRange(10, 20)).isTrue();
+    assertThat(rangeIndex.containsInSingleRange(5, 15)).isFalse();
+    assertThat(rangeIndex.getContainedLength(/* position= */ 5, Long.MAX_VALUE)).isEqualTo(5);
+  }
+
+  @Test
+  public void subtract_middleOfRange_splitsRange() {
+    RangeIndex rangeIndex = new RangeIndex(/* coalescing= */ true);
+    rangeIndex.add(0, 30);
+
+    rangeIndex.subtract(10, 20);
+
+    assertThat(rangeIndex.containsInSingleRange(0, 10)).isTrue();
+    assertThat(rangeIndex.containsInSingleRange(20, 30)).isTrue();
+    assertThat(rangeIndex.intersects(10, 20)).isFalse();
+    assertThat(rangeIndex.getIntersectionLength(0, 30)).isEqualTo(20);
+  }
+
+  @Test
+  public void subtract_acrossRanges_trimsAndRemovesRanges() {
+    RangeIndex rangeIndex = new RangeIndex(/* coalescing= */ true);
+    rangeIndex.add(0, 10);
+    rangeIndex.add(20, 30);
+    rangeIndex.add(40, 50);
+
+    rangeIndex.subtract(5, 45);
+
+    assertThat(rangeIndex.containsInSingleRange(0, 5)).isTrue();
+    assertThat(rangeIndex.containsInSingleRange(45, 50)).isTrue();
+    assertThat(rangeIndex.intersects(5, 45)).isFalse();
+  }
+
+  @Test
+  public void subtract_unbounded_removesEverythingFromStart() {
+    RangeIndex rangeIndex = new RangeIndex(/* coalescing= */ true);
+    rangeIndex.add(0, 10);
+    rangeIndex.add(20, Long.MAX_VALUE);
+
+    rangeIndex.subtract(5, Long.MAX_VALUE);
+
+    assertThat(rangeIndex.getIntersectionLength(0, Long.MAX_VALUE)).isEqualTo(5);
+  }
+
+  @Test
+  public void removeStartingAt_removesOnlyRangeWithMatchingStart() {
+    RangeIndex rangeIndex = new RangeIndex(/* coalescing= */ false);
+    rangeIndex.add(0, 10);
+    rangeIndex.add(10, 20);
+
+    assertThat(rangeIndex.removeStartingAt(5)).isFalse();
+    assertThat(rangeIndex.removeStartingAt(10)).isTrue();
+    assertThat(rangeIndex.removeStartingAt(10)).isFalse();
+    assertThat(rangeIndex.intersects(10, 20)).isFalse();
+    assertThat(rangeIndex.removeStartingAt(0)).isTrue();
+    assertThat(rangeIndex.isEmpty()).isTrue();
+  }
+
+  @Test
+  public void intersects_treatsRangesAsHalfOpen() {
+    RangeIndex rangeIndex = new RangeIndex(/* coalescing= */ true);
+    rangeIndex.add(10, 20);
+
+    assertThat(rangeIndex.intersects(0, 10)).isFalse();
+    assertThat(rangeIndex.intersects(20, 30)).isFalse();
+    assertThat(rangeIndex.intersects(0, 11)).isTrue();
+    assertThat(rangeIndex.intersects(19, 30)).isTrue();
+    assertThat(rangeIndex.intersects(12, 15)).isTrue();
+    assertThat(rangeIndex.intersects(0, Long.MAX_VALUE)).isTrue();
+  }
+
+  @Test
+  public void containsInSingleRange_unboundedRange() {
+    RangeIndex rangeIndex = new RangeIndex(/* coalescing= */ true);
+    rangeIndex.add(10, Long.MAX_VALUE);
+
+    assertThat(rangeIndex.containsInSingleRange(10, Long.MAX_VALUE)).isTrue();
+    assertThat(rangeIndex.containsInSingleRange(5, Long.MAX_VALUE)).isFalse();
+  }
+
+  @Test
+  public void getContainedLength_returnsCoveredLengthOrNegativeGap() {
+    RangeIndex rangeIndex = new RangeIndex(/* coalescing= */ true);
+    rangeIndex.add(10, 20);
+    rangeIndex.add(30, 40);
+
+    assertThat(rangeIndex.getContainedLength(/* position= */ 12, Long.MAX_VALUE)).isEqualTo(8);
+    assertThat(rangeIndex.getContainedLength(/* position= */ 12, /* maxLength= */ 5)).isEqualTo(5);
+    assertThat(rangeIndex.getContainedLength(/* position= */ 0, Long.MAX_VALUE)).isEqualTo(-10);
+    assertThat(rangeIndex.getContainedLength(/* position= */ 20, Long.MAX_VALUE)).isEqualTo(-10);
+    assertThat(rangeIndex.getContainedLength(/* position= */ 20, /* maxLength= */ 4))
+        .isEqualTo(-4);
+    assertThat(rangeIndex.getContainedLength(/* position= */ 40, Long.MAX_VALUE))
+        .isEqualTo(-Long.MAX_VALUE);
+  }
+
+  @Test
+  public void getIntersectionLength_sumsOverlapWithEachRange() {
+    RangeIndex rangeIndex = new RangeIndex(/* coalescing= */ true);
+    rangeIndex.add(10, 20);
+    rangeIndex.add(30, 40);
+    rangeIndex.add(50, Long.MAX_VALUE);
+
+    assertThat(rangeIndex.getIntersectionLength(0, 10)).isEqualTo(0);
+    assertThat(rangeIndex.getIntersectionLength(15, 35)).isEqualTo(10);
+    assertThat(rangeIndex.getIntersectionLength(0, 60)).isEqualTo(30);
+  }
+}
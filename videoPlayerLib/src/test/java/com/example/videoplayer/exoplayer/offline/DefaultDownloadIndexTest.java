@@ -0,0 +1,215 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.videoplayer.exoplayer.offline;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.net.Uri;
+import android.os.SystemClock;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.example.videoplayer.common.C;
+import com.example.videoplayer.database.StandaloneDatabaseProvider;
+import java.io.IOException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Tests {@link DefaultDownloadIndex}'s write behind mode. */
+@RunWith(AndroidJUnit4.class)
+public final class DefaultDownloadIndexTest {
+
+  private static final long MAX_WRITE_DELAY_MS = 10_000;
+
+  private StandaloneDatabaseProvider databaseProvider;
+  private DefaultDownloadIndex downloadIndex;
+  // Reads the same table without write behind, so it only sees updates that have been written.
+  private DefaultDownloadIndex tableReader;
+
+  @Before
+  public void setUp() {
+    databaseProvider = new StandaloneDatabaseProvider(ApplicationProvider.getApplicationContext());
+    downloadIndex = new DefaultDownloadIndex(databaseProvider);
+    tableReader = new DefaultDownloadIndex(databaseProvider);
+  }
+
+  @After
+  public void tearDown() {
+    databaseProvider.close();
+  }
+
+  @Test
+  public void putDownload_withoutWriteBehind_writesImmediately() throws IOException {
+    downloadIndex.putDownload(createDownload("id", Download.STATE_QUEUED));
+
+    assertThat(tableReader.getDownload("id")).isNotNull();
+    assertThat(downloadIndex.getFlushCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void putDownload_withWriteBehind_buffersUntilBufferIsFull() throws IOException {
+    downloadIndex.setWriteBehind(/* maxBufferedWrites= */ 3, MAX_WRITE_DELAY_MS);
+
+    downloadIndex.putDownload(createDownload("id1", Download.STATE_QUEUED));
+    downloadIndex.putDownload(createDownload("id2", Download.STATE_QUEUED));
+
+    assertThat(tableReader.getDownload("id1")).isNull();
+    assertThat(tableReader.getDownload("id2")).isNull();
+    assertThat(downloadIndex.getFlushCount()).isEqualTo(0);
+
+    downloadIndex.putDownload(createDownload("id3", Download.STATE_QUEUED));
+
+    assertThat(tableReader.getDownload("id1")).isNotNull();
+    assertThat(tableReader.getDownload("id2")).isNotNull();
+    assertThat(tableReader.getDownload("id3")).isNotNull();
+    assertThat(downloadIndex.getFlushCount()).isEqualTo(1);
+    assertThat(downloadIndex.getTransactionsSavedCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void putDownload_sameIdRepeatedly_coalescesUpdates() throws IOException {
+    downloadIndex.setWriteBehind(/* maxBufferedWrites= */ 2, MAX_WRITE_DELAY_MS);
+
+    for (int i = 0; i < 5; i++) {
+      downloadIndex.putDownload(createDownload("id", Download.STATE_DOWNLOADING, i * 100));
+    }
+
+    // The updates occupy one slot in the buffer, so it doesn't fill.
+    assertThat(tableReader.getDownload("id")).isNull();
+
+    downloadIndex.flush();
+
+    assertThat(tableReader.getDownload("id").contentLength).isEqualTo(400);
+    assertThat(downloadIndex.getFlushCount()).isEqualTo(1);
+    assertThat(downloadIndex.getTransactionsSavedCount()).isEqualTo(4);
+  }
+
+  @Test
+  public void putDownload_afterMaxWriteDelay_flushes() throws IOException {
+    downloadIndex.setWriteBehind(/* maxBufferedWrites= */ 100, MAX_WRITE_DELAY_MS);
+    downloadIndex.putDownload(createDownload("id1", Download.STATE_QUEUED));
+
+    SystemClock.sleep(MAX_WRITE_DELAY_MS);
+    downloadIndex.putDownload(createDownload("id2", Download.STATE_QUEUED));
+
+    assertThat(tableReader.getDownload("id1")).isNotNull();
+    assertThat(tableReader.getDownload("id2")).isNotNull();
+  }
+
+  @Test
+  public void removeDownload_withWriteBehind_isBufferedAndCoalesced() throws IOException {
+    downloadIndex.putDownload(createDownload("id", Download.STATE_COMPLETED));
+    downloadIndex.setWriteBehind(/* maxBufferedWrites= */ 100, MAX_WRITE_DELAY_MS);
+
+    downloadIndex.putDownload(createDownload("id", Download.STATE_REMOVING));
+    downloadIndex.removeDownload("id");
+
+    assertThat(tableReader.getDownload("id").state).isEqualTo(Download.STATE_COMPLETED);
+
+    downloadIndex.flush();
+
+    assertThat(tableReader.getDownload("id")).isNull();
+  }
+
+  @Test
+  public void getDownload_withBufferedUpdates_returnsBufferedDownload() throws IOException {
+    downloadIndex.putDownload(createDownload("id1", Download.STATE_QUEUED));
+    downloadIndex.putDownload(createDownload("id2", Download.STATE_QUEUED));
+    downloadIndex.setWriteBehind(/* maxBufferedWrites= */ 100, MAX_WRITE_DELAY_MS);
+
+    downloadIndex.putDownload(createDownload("id1", Download.STATE_COMPLETED));
+    downloadIndex.removeDownload("id2");
+    downloadIndex.putDownload(createDownload("id3", Download.STATE_QUEUED));
+
+    assertThat(downloadIndex.getDownload("id1").state).isEqualTo(Download.STATE_COMPLETED);
+    assertThat(downloadIndex.getDownload("id2")).isNull();
+    assertThat(downloadIndex.getDownload("id3")).isNotNull();
+    assertThat(downloadIndex.getFlushCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void getDownloads_withBufferedUpdates_includesBufferedUpdates() throws IOException {
+    downloadIndex.setWriteBehind(/* maxBufferedWrites= */ 100, MAX_WRITE_DELAY_MS);
+    downloadIndex.putDownload(createDownload("id1", Download.STATE_QUEUED));
+    downloadIndex.putDownload(createDownload("id2", Download.STATE_COMPLETED));
+
+    try (DownloadCursor cursor = downloadIndex.getDownloads(Download.STATE_QUEUED)) {
+      assertThat(cursor.getCount()).isEqualTo(1);
+      assertThat(cursor.moveToFirst()).isTrue();
+      assertThat(cursor.getDownload().request.id).isEqualTo("id1");
+    }
+  }
+
+  @Test
+  public void setStopReason_withBufferedUpdates_appliesToBufferedDownloads() throws IOException {
+    downloadIndex.setWriteBehind(/* maxBufferedWrites= */ 100, MAX_WRITE_DELAY_MS);
+    downloadIndex.putDownload(createDownload("id", Download.STATE_COMPLETED));
+
+    downloadIndex.setStopReason(/* stopReason= */ 1);
+
+    assertThat(downloadIndex.getDownload("id").stopReason).isEqualTo(1);
+  }
+
+  @Test
+  public void setWriteBehind_disabled_flushesBufferedUpdates() throws IOException {
+    downloadIndex.setWriteBehind(/* maxBufferedWrites= */ 100, MAX_WRITE_DELAY_MS);
+    downloadIndex.putDownload(createDownload("id", Download.STATE_QUEUED));
+
+    downloadIndex.setWriteBehind(/* maxBufferedWrites= */ 0, /* maxWriteDelayMs= */ 0);
+
+    assertThat(tableReader.getDownload("id")).isNotNull();
+    assertThat(downloadIndex.getFlushCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void downloadManagerRelease_flushesBufferedUpdates() throws IOException {
+    downloadIndex.setWriteBehind(/* maxBufferedWrites= */ 100, MAX_WRITE_DELAY_MS);
+    DownloadManager downloadManager =
+        new DownloadManager(
+            ApplicationProvider.getApplicationContext(),
+            downloadIndex,
+            request -> {
+              throw new UnsupportedOperationException();
+            });
+
+    // Downloads are paused, so the download is only added to the index.
+    downloadManager.addDownload(createDownloadRequest("id"));
+    downloadManager.release();
+
+    assertThat(tableReader.getDownload("id")).isNotNull();
+  }
+
+  private static Download createDownload(String id, @Download.State int state) {
+    return createDownload(id, state, C.LENGTH_UNSET);
+  }
+
+  private static Download createDownload(
+      String id, @Download.State int state, long contentLength) {
+    return new Download(
+        createDownloadRequest(id),
+        state,
+        /* startTimeMs= */ 0,
+        /* updateTimeMs= */ 0,
+        contentLength,
+        Download.STOP_REASON_NONE,
+        Download.FAILURE_REASON_NONE);
+  }
+
+  private static DownloadRequest createDownloadRequest(String id) {
+    return new DownloadRequest.Builder(id, Uri.parse("https://example.test/" + id)).build();
+  }
+}
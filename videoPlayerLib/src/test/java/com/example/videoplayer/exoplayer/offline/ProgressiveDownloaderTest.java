@@ -0,0 +1,288 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.videoplayer.exoplayer.offline;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import android.net.Uri;
+import androidx.annotation.Nullable;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.example.videoplayer.common.C;
+import com.example.videoplayer.common.MediaItem;
+import com.example.videoplayer.datasource.ByteArrayDataSource;
+import com.example.videoplayer.datasource.DataSource;
+import com.example.videoplayer.datasource.DataSourceUtil;
+import com.example.videoplayer.datasource.DataSpec;
+import com.example.videoplayer.datasource.TransferListener;
+import com.example.videoplayer.datasource.cache.CacheDataSource;
+import com.example.videoplayer.datasource.cache.ContentMetadata;
+import com.example.videoplayer.datasource.cache.NoOpCacheEvictor;
+import com.example.videoplayer.datasource.cache.SimpleCache;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+
+/** Tests {@link ProgressiveDownloader}'s parallel range mode. */
+@RunWith(AndroidJUnit4.class)
+public final class ProgressiveDownloaderTest {
+
+  private static final Uri URI = Uri.parse("https://example.test/media.mp4");
+  // Long enough to be split into four ranges of at least 1 MiB.
+  private static final int DATA_LENGTH = 4 * 1024 * 1024 + 100;
+  private static final int RANGE_COUNT = 4;
+
+  @Rule public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private byte[] data;
+  private SimpleCache cache;
+  private List<DataSpec> openedDataSpecs;
+  private AtomicLong upstreamBytesRead;
+  @Nullable private volatile CountDownLatch blockedReads;
+  private CacheDataSource.Factory cacheDataSourceFactory;
+  private ExecutorService executorService;
+
+  @Before
+  public void setUp() throws IOException {
+    data = new byte[DATA_LENGTH];
+    for (int i = 0; i < data.length; i++) {
+      data[i] = (byte) (i * 31 + (i >> 16));
+    }
+    cache = new SimpleCache(tempFolder.newFolder(), new NoOpCacheEvictor());
+    openedDataSpecs = Collections.synchronizedList(new ArrayList<>());
+    upstreamBytesRead = new AtomicLong();
+    cacheDataSourceFactory =
+        new CacheDataSource.Factory()
+            .setCache(cache)
+            .setUpstreamDataSourceFactory(FakeUpstreamDataSource::new);
+    executorService = Executors.newFixedThreadPool(RANGE_COUNT);
+  }
+
+  @After
+  public void tearDown() {
+    executorService.shutdownNow();
+    cache.release();
+  }
+
+  @Test
+  public void download_withRangeCount_downloadsRangesInParallel() throws Exception {
+    List<Float> percentages = Collections.synchronizedList(new ArrayList<>());
+
+    createDownloader(RANGE_COUNT)
+        .download(
+            (contentLength, bytesDownloaded, percentDownloaded) ->
+                percentages.add(percentDownloaded));
+
+    assertThat(readFromCache()).isEqualTo(data);
+    assertThat(ContentMetadata.getContentLength(cache.getContentMetadata(URI.toString())))
+        .isEqualTo(DATA_LENGTH);
+    assertThat(upstreamBytesRead.get()).isEqualTo(DATA_LENGTH);
+    // The first request resolves the length, and the others each request a range.
+    assertThat(openedDataSpecs).hasSize(RANGE_COUNT + 1);
+    assertThat(openedDataSpecs.get(0).length).isEqualTo(C.LENGTH_UNSET);
+    List<Long> rangePositions = new ArrayList<>();
+    for (DataSpec dataSpec : openedDataSpecs.subList(1, openedDataSpecs.size())) {
+      assertThat(dataSpec.length).isEqualTo(getRangeLength(dataSpec.position));
+      rangePositions.add(dataSpec.position);
+    }
+    assertThat(rangePositions)
+        .containsExactly(0L, getRangeStart(1), getRangeStart(2), getRangeStart(3));
+    assertThat(percentages.get(0)).isEqualTo(0f);
+    assertThat(percentages.get(percentages.size() - 1)).isEqualTo(100f);
+  }
+
+  @Test
+  public void download_withShortStream_downloadsSequentially() throws Exception {
+    data = new byte[1024];
+
+    createDownloader(RANGE_COUNT).download(/* progressListener= */ null);
+
+    assertThat(readFromCache()).isEqualTo(data);
+    // The length is resolved, but a single range is downloaded through a single request.
+    assertThat(openedDataSpecs).hasSize(2);
+  }
+
+  @Test
+  public void download_withSomeRangesCached_onlyDownloadsMissingRanges() throws Exception {
+    long cachedLength = getRangeStart(2);
+    createDownloader(/* position= */ 0, cachedLength, /* rangeCount= */ 1)
+        .download(/* progressListener= */ null);
+    upstreamBytesRead.set(0);
+    List<Long> bytesDownloadedUpdates = Collections.synchronizedList(new ArrayList<>());
+
+    createDownloader(RANGE_COUNT)
+        .download(
+            (contentLength, bytesDownloaded, percentDownloaded) ->
+                bytesDownloadedUpdates.add(bytesDownloaded));
+
+    assertThat(readFromCache()).isEqualTo(data);
+    assertThat(upstreamBytesRead.get()).isEqualTo(DATA_LENGTH - cachedLength);
+    assertThat(bytesDownloadedUpdates.get(0)).isEqualTo(cachedLength);
+    assertThat(bytesDownloadedUpdates.get(bytesDownloadedUpdates.size() - 1))
+        .isEqualTo(DATA_LENGTH);
+  }
+
+  @Test
+  public void cancel_whileDownloadingRanges_stopsDownloadThenResumes() throws Exception {
+    // Block reads once each range has read some data.
+    CountDownLatch blockedReads = new CountDownLatch(RANGE_COUNT);
+    this.blockedReads = blockedReads;
+    ProgressiveDownloader downloader = createDownloader(RANGE_COUNT);
+    AtomicReference<Exception> downloadException = new AtomicReference<>();
+    Thread downloadThread =
+        new Thread(
+            () -> {
+              try {
+                downloader.download(/* progressListener= */ null);
+              } catch (Exception e) {
+                downloadException.set(e);
+              }
+            });
+    downloadThread.start();
+    assertThat(blockedReads.await(10, TimeUnit.SECONDS)).isTrue();
+
+    downloader.cancel();
+    downloadThread.join(/* millis= */ 10_000);
+
+    assertThat(downloadThread.isAlive()).isFalse();
+    assertThat(downloadException.get()).isInstanceOf(CancellationException.class);
+
+    this.blockedReads = null;
+    long bytesReadBeforeCancel = upstreamBytesRead.get();
+    createDownloader(RANGE_COUNT).download(/* progressListener= */ null);
+
+    assertThat(readFromCache()).isEqualTo(data);
+    assertThat(bytesReadBeforeCancel).isGreaterThan(0);
+    // Data that was read before canceling may not have been written to the cache.
+    assertThat(upstreamBytesRead.get()).isLessThan(DATA_LENGTH + bytesReadBeforeCancel);
+  }
+
+  @Test
+  public void cancel_beforeDownload_throwsWithoutDownloading() {
+    ProgressiveDownloader downloader = createDownloader(RANGE_COUNT);
+
+    downloader.cancel();
+
+    assertThrows(
+        InterruptedException.class, () -> downloader.download(/* progressListener= */ null));
+    assertThat(openedDataSpecs).isEmpty();
+  }
+
+  private ProgressiveDownloader createDownloader(int rangeCount) {
+    return createDownloader(/* position= */ 0, /* length= */ C.LENGTH_UNSET, rangeCount);
+  }
+
+  private ProgressiveDownloader createDownloader(long position, long length, int rangeCount) {
+    return new ProgressiveDownloader(
+        MediaItem.fromUri(URI),
+        cacheDataSourceFactory,
+        executorService,
+        position,
+        length,
+        rangeCount);
+  }
+
+  private byte[] readFromCache() throws IOException {
+    CacheDataSource cacheDataSource = new CacheDataSource(cache, /* upstreamDataSource= */ null);
+    try {
+      cacheDataSource.open(new DataSpec(URI));
+      return DataSourceUtil.readToEnd(cacheDataSource);
+    } finally {
+      cacheDataSource.close();
+    }
+  }
+
+  private long getRangeStart(int rangeIndex) {
+    long rangeLength = (data.length + RANGE_COUNT - 1) / RANGE_COUNT;
+    return rangeIndex * rangeLength;
+  }
+
+  private long getRangeLength(long rangeStart) {
+    long rangeLength = (data.length + RANGE_COUNT - 1) / RANGE_COUNT;
+    return Math.min(rangeLength, data.length - rangeStart);
+  }
+
+  /**
+   * A {@link ByteArrayDataSource} of the test data that records what it opens and reads, and that
+   * can block reads until it's interrupted.
+   */
+  private final class FakeUpstreamDataSource implements DataSource {
+
+    private final ByteArrayDataSource dataSource;
+    private boolean hasRead;
+
+    public FakeUpstreamDataSource() {
+      dataSource = new ByteArrayDataSource(data);
+    }
+
+    @Override
+    public void addTransferListener(TransferListener transferListener) {
+      dataSource.addTransferListener(transferListener);
+    }
+
+    @Override
+    public long open(DataSpec dataSpec) throws IOException {
+      openedDataSpecs.add(dataSpec);
+      return dataSource.open(dataSpec);
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+      @Nullable CountDownLatch blockedReads = ProgressiveDownloaderTest.this.blockedReads;
+      if (blockedReads != null && hasRead) {
+        blockedReads.countDown();
+        try {
+          new CountDownLatch(1).await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException();
+        }
+      }
+      int bytesRead = dataSource.read(buffer, offset, length);
+      if (bytesRead > 0) {
+        hasRead = true;
+        upstreamBytesRead.addAndGet(bytesRead);
+      }
+      return bytesRead;
+    }
+
+    @Nullable
+    @Override
+    public Uri getUri() {
+      return dataSource.getUri();
+    }
+
+    @Override
+    public void close() throws IOException {
+      dataSource.close();
+    }
+  }
+}
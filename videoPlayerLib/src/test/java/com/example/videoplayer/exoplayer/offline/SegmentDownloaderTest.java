@@ -0,0 +1,371 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.videoplayer.exoplayer.offline;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.net.Uri;
+import androidx.annotation.Nullable;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.example.videoplayer.common.C;
+import com.example.videoplayer.common.MediaItem;
+import com.example.videoplayer.common.StreamKey;
+import com.example.videoplayer.datasource.ByteArrayDataSource;
+import com.example.videoplayer.datasource.DataSource;
+import com.example.videoplayer.datasource.DataSpec;
+import com.example.videoplayer.datasource.TransferListener;
+import com.example.videoplayer.datasource.cache.CacheDataSource;
+import com.example.videoplayer.datasource.cache.NoOpCacheEvictor;
+import com.example.videoplayer.datasource.cache.SimpleCache;
+import com.example.videoplayer.test.utils.FakeClock;
+import com.google.common.io.ByteStreams;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+
+/** Tests {@link SegmentDownloader}. */
+@RunWith(AndroidJUnit4.class)
+public final class SegmentDownloaderTest {
+
+  private static final Uri MANIFEST_URI = Uri.parse("https://example.test/manifest");
+  private static final int SEGMENT_LENGTH = 100;
+
+  @Rule public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private SimpleCache cache;
+  private List<Uri> openedUris;
+  private CacheDataSource.Factory cacheDataSourceFactory;
+
+  @Before
+  public void setUp() throws IOException {
+    cache = new SimpleCache(tempFolder.newFolder(), new NoOpCacheEvictor());
+    openedUris = Collections.synchronizedList(new ArrayList<>());
+    byte[] data = new byte[SEGMENT_LENGTH];
+    cacheDataSourceFactory =
+        new CacheDataSource.Factory()
+            .setCache(cache)
+            .setUpstreamDataSourceFactory(() -> new RecordingDataSource(data, openedUris));
+  }
+
+  @After
+  public void tearDown() {
+    cache.release();
+  }
+
+  @Test
+  public void download_downloadsAllSegments() throws Exception {
+    createDownloader(createSegmentUris(4), /* maxParallelSegments= */ 0).download(null);
+
+    assertThat(getOpenedSegmentUris()).containsExactlyElementsIn(createSegmentUris(4));
+    for (Uri segmentUri : createSegmentUris(4)) {
+      assertThat(cache.getCachedBytes(segmentUri.toString(), 0, SEGMENT_LENGTH))
+          .isEqualTo(SEGMENT_LENGTH);
+    }
+  }
+
+  @Test
+  public void download_withMaxParallelSegments_downloadsAllSegments() throws Exception {
+    ExecutorService executorService = Executors.newFixedThreadPool(4);
+    try {
+      createDownloader(createSegmentUris(20), /* maxParallelSegments= */ 4, executorService)
+          .download(null);
+    } finally {
+      executorService.shutdown();
+    }
+
+    assertThat(getOpenedSegmentUris()).containsExactlyElementsIn(createSegmentUris(20));
+  }
+
+  @Test
+  public void download_resumed_skipsSegmentsRecordedAsComplete() throws Exception {
+    createDownloader(createSegmentUris(4), /* maxParallelSegments= */ 0).download(null);
+    // Remove the segments from the cache, so that only the completion record says that they're
+    // complete.
+    for (Uri segmentUri : createSegmentUris(4)) {
+      cache.removeResource(segmentUri.toString());
+    }
+    openedUris.clear();
+
+    createDownloader(createSegmentUris(4), /* maxParallelSegments= */ 0).download(null);
+
+    assertThat(getOpenedSegmentUris()).isEmpty();
+  }
+
+  @Test
+  public void download_resumedWithOtherSegments_ignoresCompletionRecord() throws Exception {
+    createDownloader(createSegmentUris(4), /* maxParallelSegments= */ 0).download(null);
+    for (Uri segmentUri : createSegmentUris(4)) {
+      cache.removeResource(segmentUri.toString());
+    }
+    openedUris.clear();
+
+    createDownloader(createSegmentUris(5), /* maxParallelSegments= */ 0).download(null);
+
+    assertThat(getOpenedSegmentUris()).containsExactlyElementsIn(createSegmentUris(5));
+  }
+
+  @Test
+  public void download_resumedAfterRemove_downloadsAllSegments() throws Exception {
+    createDownloader(createSegmentUris(4), /* maxParallelSegments= */ 0).download(null);
+    createDownloader(createSegmentUris(4), /* maxParallelSegments= */ 0).remove();
+    openedUris.clear();
+
+    createDownloader(createSegmentUris(4), /* maxParallelSegments= */ 0).download(null);
+
+    assertThat(getOpenedSegmentUris()).containsExactlyElementsIn(createSegmentUris(4));
+  }
+
+  @Test
+  public void concurrencyController_startsWithOneSegment() {
+    SegmentDownloader.ConcurrencyController controller =
+        new SegmentDownloader.ConcurrencyController(/* maxLimit= */ 4, new FakeClock(0));
+
+    assertThat(controller.getLimit()).isEqualTo(1);
+  }
+
+  @Test
+  public void concurrencyController_whileThroughputIncreases_increasesLimitUpToMax() {
+    FakeClock clock = new FakeClock(/* initialTimeMs= */ 0);
+    SegmentDownloader.ConcurrencyController controller =
+        new SegmentDownloader.ConcurrencyController(/* maxLimit= */ 3, clock);
+
+    // Each epoch downloads one segment per segment in flight, at 10 bytes per millisecond each.
+    runEpoch(controller, clock, /* bytesPerSegment= */ 1000);
+    int limitAfterFirstEpoch = controller.getLimit();
+    runEpoch(controller, clock, /* bytesPerSegment= */ 1000);
+    int limitAfterSecondEpoch = controller.getLimit();
+    runEpoch(controller, clock, /* bytesPerSegment= */ 1000);
+    runEpoch(controller, clock, /* bytesPerSegment= */ 1000);
+
+    assertThat(limitAfterFirstEpoch).isEqualTo(2);
+    assertThat(limitAfterSecondEpoch).isEqualTo(3);
+    assertThat(controller.getLimit()).isEqualTo(3);
+  }
+
+  @Test
+  public void concurrencyController_whileThroughputSaturated_keepsLimit() {
+    FakeClock clock = new FakeClock(/* initialTimeMs= */ 0);
+    SegmentDownloader.ConcurrencyController controller =
+        new SegmentDownloader.ConcurrencyController(/* maxLimit= */ 8, clock);
+    runEpoch(controller, clock, /* bytesPerSegment= */ 1000);
+    assertThat(controller.getLimit()).isEqualTo(2);
+
+    // The same total throughput, shared by two segments.
+    runEpoch(controller, clock, /* bytesPerSegment= */ 500);
+
+    assertThat(controller.getLimit()).isEqualTo(2);
+  }
+
+  @Test
+  public void concurrencyController_whenThroughputDrops_halvesLimit() {
+    FakeClock clock = new FakeClock(/* initialTimeMs= */ 0);
+    SegmentDownloader.ConcurrencyController controller =
+        new SegmentDownloader.ConcurrencyController(/* maxLimit= */ 8, clock);
+    for (int i = 1; i <= 4; i++) {
+      runEpoch(controller, clock, /* bytesPerSegment= */ 1000);
+    }
+    assertThat(controller.getLimit()).isEqualTo(5);
+
+    runEpoch(controller, clock, /* bytesPerSegment= */ 100);
+
+    assertThat(controller.getLimit()).isEqualTo(2);
+  }
+
+  @Test
+  public void concurrencyController_onSegmentFailed_halvesLimitAndAllowsRetries() {
+    FakeClock clock = new FakeClock(/* initialTimeMs= */ 0);
+    SegmentDownloader.ConcurrencyController controller =
+        new SegmentDownloader.ConcurrencyController(/* maxLimit= */ 8, clock);
+    for (int i = 1; i <= 3; i++) {
+      runEpoch(controller, clock, /* bytesPerSegment= */ 1000);
+    }
+    assertThat(controller.getLimit()).isEqualTo(4);
+
+    boolean firstRetry = controller.onSegmentFailed();
+    int limitAfterFirstFailure = controller.getLimit();
+    boolean secondRetry = controller.onSegmentFailed();
+    boolean thirdRetry = controller.onSegmentFailed();
+
+    assertThat(firstRetry).isTrue();
+    assertThat(limitAfterFirstFailure).isEqualTo(2);
+    assertThat(secondRetry).isTrue();
+    assertThat(thirdRetry).isFalse();
+    assertThat(controller.getLimit()).isEqualTo(1);
+  }
+
+  @Test
+  public void concurrencyController_segmentDownloadedBetweenFailures_resetsFailureCount() {
+    SegmentDownloader.ConcurrencyController controller =
+        new SegmentDownloader.ConcurrencyController(/* maxLimit= */ 8, new FakeClock(0));
+
+    controller.onSegmentFailed();
+    controller.onSegmentFailed();
+    controller.onSegmentDownloaded(/* bytesDownloaded= */ 1000);
+
+    assertThat(controller.onSegmentFailed()).isTrue();
+  }
+
+  /**
+   * Downloads as many segments as the limit allows in flight, each of {@code bytesPerSegment}
+   * bytes, over 100 ms.
+   */
+  private static void runEpoch(
+      SegmentDownloader.ConcurrencyController controller, FakeClock clock, long bytesPerSegment) {
+    int limit = controller.getLimit();
+    for (int i = 0; i < limit; i++) {
+      controller.onSegmentStarted();
+    }
+    clock.advanceTime(100);
+    for (int i = 0; i < limit; i++) {
+      controller.onSegmentDownloaded(bytesPerSegment);
+    }
+  }
+
+  private TestSegmentDownloader createDownloader(List<Uri> segmentUris, int maxParallelSegments) {
+    return createDownloader(segmentUris, maxParallelSegments, Runnable::run);
+  }
+
+  private TestSegmentDownloader createDownloader(
+      List<Uri> segmentUris, int maxParallelSegments, Executor executor) {
+    return new TestSegmentDownloader(
+        new MediaItem.Builder().setUri(MANIFEST_URI).build(),
+        cacheDataSourceFactory,
+        executor,
+        maxParallelSegments,
+        segmentUris);
+  }
+
+  private List<Uri> getOpenedSegmentUris() {
+    List<Uri> segmentUris = new ArrayList<>();
+    synchronized (openedUris) {
+      for (Uri uri : openedUris) {
+        if (!uri.equals(MANIFEST_URI)) {
+          segmentUris.add(uri);
+        }
+      }
+    }
+    return segmentUris;
+  }
+
+  private static List<Uri> createSegmentUris(int count) {
+    List<Uri> segmentUris = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      segmentUris.add(Uri.parse("https://example.test/segment" + i));
+    }
+    return segmentUris;
+  }
+
+  private static final class TestManifest implements FilterableManifest<TestManifest> {
+
+    @Override
+    public TestManifest copy(List<StreamKey> streamKeys) {
+      return this;
+    }
+  }
+
+  /** Downloads a segment of {@link #SEGMENT_LENGTH} bytes from each of the given URIs. */
+  private static final class TestSegmentDownloader extends SegmentDownloader<TestManifest> {
+
+    private final List<Uri> segmentUris;
+
+    public TestSegmentDownloader(
+        MediaItem mediaItem,
+        CacheDataSource.Factory cacheDataSourceFactory,
+        Executor executor,
+        int maxParallelSegments,
+        List<Uri> segmentUris) {
+      super(
+          mediaItem,
+          (uri, inputStream) -> {
+            // Read the manifest, so that it's cached.
+            ByteStreams.exhaust(inputStream);
+            return new TestManifest();
+          },
+          cacheDataSourceFactory,
+          executor,
+          DEFAULT_MAX_MERGED_SEGMENT_START_TIME_DIFF_MS,
+          /* startPositionUs= */ 0,
+          /* durationUs= */ C.TIME_UNSET,
+          maxParallelSegments);
+      this.segmentUris = segmentUris;
+    }
+
+    @Override
+    protected List<Segment> getSegments(
+        DataSource dataSource, TestManifest manifest, boolean removing) {
+      List<Segment> segments = new ArrayList<>();
+      for (int i = 0; i < segmentUris.size(); i++) {
+        segments.add(
+            new Segment(
+                /* startTimeUs= */ i * C.MICROS_PER_SECOND,
+                new DataSpec.Builder()
+                    .setUri(segmentUris.get(i))
+                    .setLength(SEGMENT_LENGTH)
+                    .build()));
+      }
+      return segments;
+    }
+  }
+
+  /** A {@link ByteArrayDataSource} that records the URIs it opens. */
+  private static final class RecordingDataSource implements DataSource {
+
+    private final ByteArrayDataSource dataSource;
+    private final List<Uri> openedUris;
+
+    public RecordingDataSource(byte[] data, List<Uri> openedUris) {
+      dataSource = new ByteArrayDataSource(data);
+      this.openedUris = openedUris;
+    }
+
+    @Override
+    public void addTransferListener(TransferListener transferListener) {
+      dataSource.addTransferListener(transferListener);
+    }
+
+    @Override
+    public long open(DataSpec dataSpec) throws IOException {
+      openedUris.add(dataSpec.uri);
+      return dataSource.open(dataSpec);
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+      return dataSource.read(buffer, offset, length);
+    }
+
+    @Nullable
+    @Override
+    public Uri getUri() {
+      return dataSource.getUri();
+    }
+
+    @Override
+    public void close() throws IOException {
+      dataSource.close();
+    }
+  }
+}
@@ -0,0 +1,260 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.videoplayer.exoplayer.source;
+
+import static com.example.videoplayer.common.util.Assertions.checkNotNull;
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import android.net.Uri;
+import androidx.annotation.Nullable;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.example.videoplayer.common.C;
+import com.example.videoplayer.datasource.ByteArrayDataSource;
+import com.example.videoplayer.datasource.DataSpec;
+import com.example.videoplayer.extractor.Extractor;
+import com.example.videoplayer.extractor.ExtractorInput;
+import com.example.videoplayer.extractor.ExtractorOutput;
+import com.example.videoplayer.extractor.NoOpExtractorOutput;
+import com.example.videoplayer.extractor.PositionHolder;
+import com.google.common.collect.ImmutableMap;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+
+/** Tests {@link ExtractorSniffCache} and its use by {@link BundledExtractorsAdapter}. */
+@RunWith(AndroidJUnit4.class)
+public final class ExtractorSniffCacheTest {
+
+  private static final Uri URI = Uri.parse("https://example.test/media");
+  private static final String KEY = URI.toString();
+
+  @Rule public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private ExtractorSniffCache sniffCache;
+  // The simple class names of the extractors that sniffed the stream, in order.
+  private List<String> sniffedExtractors;
+  @Nullable private Extractor initializedExtractor;
+
+  @Before
+  public void setUp() {
+    sniffCache = new ExtractorSniffCache();
+    sniffedExtractors = new ArrayList<>();
+  }
+
+  @Test
+  public void init_withoutEntry_sniffsUntilAcceptedAndRecordsExtractor() throws IOException {
+    Extractor extractor = selectExtractor(/* format= */ 3);
+
+    assertThat(extractor).isInstanceOf(ThirdFakeExtractor.class);
+    assertThat(sniffedExtractors)
+        .containsExactly("FirstFakeExtractor", "SecondFakeExtractor", "ThirdFakeExtractor")
+        .inOrder();
+    assertThat(sniffCache.getExtractorClassName(KEY))
+        .isEqualTo(ThirdFakeExtractor.class.getName());
+    assertThat(sniffCache.getHitCount()).isEqualTo(0);
+    assertThat(sniffCache.getMissCount()).isEqualTo(1);
+    assertThat(sniffCache.getRejectedHitCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void init_withEntry_onlySniffsRecordedExtractor() throws IOException {
+    selectExtractor(/* format= */ 3);
+    sniffedExtractors.clear();
+
+    Extractor extractor = selectExtractor(/* format= */ 3);
+
+    assertThat(extractor).isInstanceOf(ThirdFakeExtractor.class);
+    assertThat(sniffedExtractors).containsExactly("ThirdFakeExtractor");
+    assertThat(sniffCache.getHitCount()).isEqualTo(1);
+    assertThat(sniffCache.getMissCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void init_recordedExtractorRejectsStream_sniffsOthersAndUpdatesEntry()
+      throws IOException {
+    sniffCache.put(KEY, ThirdFakeExtractor.class.getName());
+
+    Extractor extractor = selectExtractor(/* format= */ 2);
+
+    assertThat(extractor).isInstanceOf(SecondFakeExtractor.class);
+    // The recorded extractor isn't sniffed a second time.
+    assertThat(sniffedExtractors)
+        .containsExactly("ThirdFakeExtractor", "FirstFakeExtractor", "SecondFakeExtractor")
+        .inOrder();
+    assertThat(sniffCache.getExtractorClassName(KEY))
+        .isEqualTo(SecondFakeExtractor.class.getName());
+    assertThat(sniffCache.getHitCount()).isEqualTo(0);
+    assertThat(sniffCache.getMissCount()).isEqualTo(1);
+    assertThat(sniffCache.getRejectedHitCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void init_noExtractorAcceptsStream_removesEntry() {
+    sniffCache.put(KEY, ThirdFakeExtractor.class.getName());
+
+    assertThrows(
+        UnrecognizedInputFormatException.class, () -> selectExtractor(/* format= */ 4));
+
+    assertThat(sniffCache.getExtractorClassName(KEY)).isNull();
+    assertThat(sniffCache.getRejectedHitCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void init_entryForExtractorNotCreatedByFactory_countsMissWithoutRejectedHit()
+      throws IOException {
+    sniffCache.put(KEY, "com.example.UnknownExtractor");
+
+    Extractor extractor = selectExtractor(/* format= */ 1);
+
+    assertThat(extractor).isInstanceOf(FirstFakeExtractor.class);
+    assertThat(sniffCache.getExtractorClassName(KEY))
+        .isEqualTo(FirstFakeExtractor.class.getName());
+    assertThat(sniffCache.getMissCount()).isEqualTo(1);
+    assertThat(sniffCache.getRejectedHitCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void put_beyondMaxEntries_evictsLeastRecentlyUsedEntry() {
+    ExtractorSniffCache sniffCache = new ExtractorSniffCache(/* maxEntries= */ 2);
+    sniffCache.put("key1", "Extractor1");
+    sniffCache.put("key2", "Extractor2");
+    sniffCache.getExtractorClassName("key1");
+
+    sniffCache.put("key3", "Extractor3");
+
+    assertThat(sniffCache.getExtractorClassName("key1")).isEqualTo("Extractor1");
+    assertThat(sniffCache.getExtractorClassName("key2")).isNull();
+    assertThat(sniffCache.getExtractorClassName("key3")).isEqualTo("Extractor3");
+  }
+
+  @Test
+  public void store_thenLoad_restoresEntries() throws IOException {
+    File file = new File(tempFolder.getRoot(), "sniff_cache");
+    sniffCache.put("key1", "Extractor1");
+    sniffCache.put("key2", "Extractor2");
+
+    sniffCache.store(file);
+    ExtractorSniffCache restoredSniffCache = new ExtractorSniffCache();
+    restoredSniffCache.load(file);
+
+    assertThat(restoredSniffCache.getExtractorClassName("key1")).isEqualTo("Extractor1");
+    assertThat(restoredSniffCache.getExtractorClassName("key2")).isEqualTo("Extractor2");
+  }
+
+  @Test
+  public void load_unsupportedVersion_deletesFileWithoutAddingEntries() throws IOException {
+    File file = tempFolder.newFile("sniff_cache");
+    try (FileOutputStream outputStream = new FileOutputStream(file)) {
+      outputStream.write(new byte[] {0, 0, 0, 99, 0, 0, 0, 0});
+    }
+
+    sniffCache.load(file);
+
+    assertThat(file.exists()).isFalse();
+    assertThat(sniffCache.getExtractorClassName(KEY)).isNull();
+  }
+
+  /**
+   * Selects an extractor with a {@link BundledExtractorsAdapter} for a stream whose first byte is
+   * {@code format}, from fake extractors that each accept a single format.
+   */
+  private Extractor selectExtractor(int format) throws IOException {
+    ByteArrayDataSource dataSource = new ByteArrayDataSource(new byte[] {(byte) format, 0, 0});
+    dataSource.open(new DataSpec(URI));
+    BundledExtractorsAdapter adapter =
+        new BundledExtractorsAdapter(
+            () ->
+                new Extractor[] {
+                  new FirstFakeExtractor(), new SecondFakeExtractor(), new ThirdFakeExtractor()
+                },
+            sniffCache);
+    try {
+      adapter.init(
+          dataSource,
+          URI,
+          /* responseHeaders= */ ImmutableMap.of(),
+          /* position= */ 0,
+          /* length= */ C.LENGTH_UNSET,
+          new NoOpExtractorOutput());
+      return checkNotNull(initializedExtractor);
+    } finally {
+      dataSource.close();
+    }
+  }
+
+  /** An extractor that accepts streams whose first byte is its format, and records sniffs. */
+  private abstract class FakeExtractor implements Extractor {
+
+    private final int format;
+
+    protected FakeExtractor(int format) {
+      this.format = format;
+    }
+
+    @Override
+    public boolean sniff(ExtractorInput input) throws IOException {
+      sniffedExtractors.add(getClass().getSimpleName());
+      byte[] firstByte = new byte[1];
+      input.peekFully(firstByte, /* offset= */ 0, /* length= */ 1);
+      return firstByte[0] == format;
+    }
+
+    @Override
+    public void init(ExtractorOutput output) {
+      initializedExtractor = this;
+    }
+
+    @Override
+    public int read(ExtractorInput input, PositionHolder seekPosition) {
+      return RESULT_END_OF_INPUT;
+    }
+
+    @Override
+    public void seek(long position, long timeUs) {}
+
+    @Override
+    public void release() {}
+  }
+
+  private final class FirstFakeExtractor extends FakeExtractor {
+
+    public FirstFakeExtractor() {
+      super(/* format= */ 1);
+    }
+  }
+
+  private final class SecondFakeExtractor extends FakeExtractor {
+
+    public SecondFakeExtractor() {
+      super(/* format= */ 2);
+    }
+  }
+
+  private final class ThirdFakeExtractor extends FakeExtractor {
+
+    public ThirdFakeExtractor() {
+      super(/* format= */ 3);
+    }
+  }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.videoplayer.exoplayer.source;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.lang.Math.min;
+
+import androidx.annotation.Nullable;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.example.videoplayer.common.C;
+import com.example.videoplayer.common.DataReader;
+import com.example.videoplayer.decoder.DecoderInputBuffer;
+import com.example.videoplayer.exoplayer.upstream.DefaultAllocator;
+import com.example.videoplayer.extractor.DefaultExtractorInput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Tests {@link SampleDataQueue}. */
+@RunWith(AndroidJUnit4.class)
+public final class SampleDataQueueTest {
+
+  private static final int ALLOCATION_SIZE = 100;
+  private static final int DATA_LENGTH = 1_050;
+
+  @Test
+  public void sampleData_heapAllocations_writesData() throws IOException {
+    byte[] data = createData();
+    FakeDataReader dataReader = new FakeDataReader(data, /* zeroCopyReadSupported= */ false);
+    SampleDataQueue sampleDataQueue = createSampleDataQueue(/* useDirectBuffers= */ false);
+
+    writeAll(sampleDataQueue, dataReader, data.length);
+
+    assertThat(readAll(sampleDataQueue, data.length)).isEqualTo(data);
+  }
+
+  @Test
+  public void sampleData_directAllocationsWithoutZeroCopyReads_copiesThroughScratch()
+      throws IOException {
+    byte[] data = createData();
+    FakeDataReader dataReader = new FakeDataReader(data, /* zeroCopyReadSupported= */ false);
+    SampleDataQueue sampleDataQueue = createSampleDataQueue(/* useDirectBuffers= */ true);
+
+    writeAll(sampleDataQueue, dataReader, data.length);
+
+    assertThat(readAll(sampleDataQueue, data.length)).isEqualTo(data);
+    assertThat(dataReader.readCount).isGreaterThan(0);
+    assertThat(dataReader.readBufferCount).isEqualTo(0);
+  }
+
+  @Test
+  public void sampleData_directAllocationsWithZeroCopyReads_readsBuffers() throws IOException {
+    byte[] data = createData();
+    FakeDataReader dataReader = new FakeDataReader(data, /* zeroCopyReadSupported= */ true);
+    SampleDataQueue sampleDataQueue = createSampleDataQueue(/* useDirectBuffers= */ true);
+
+    writeAll(sampleDataQueue, dataReader, data.length);
+
+    assertThat(readAll(sampleDataQueue, data.length)).isEqualTo(data);
+    assertThat(dataReader.readCount).isEqualTo(0);
+    assertThat(dataReader.readBufferCount).isGreaterThan(0);
+  }
+
+  @Test
+  public void sampleData_directAllocationsFromExtractorInput_readsBuffers() throws IOException {
+    byte[] data = createData();
+    FakeDataReader dataReader = new FakeDataReader(data, /* zeroCopyReadSupported= */ true);
+    DefaultExtractorInput input =
+        new DefaultExtractorInput(dataReader, /* position= */ 0, data.length);
+    SampleDataQueue sampleDataQueue = createSampleDataQueue(/* useDirectBuffers= */ true);
+
+    writeAll(sampleDataQueue, input, data.length);
+
+    assertThat(readAll(sampleDataQueue, data.length)).isEqualTo(data);
+    assertThat(input.getPosition()).isEqualTo(data.length);
+    assertThat(dataReader.readCount).isEqualTo(0);
+    assertThat(dataReader.readBufferCount).isGreaterThan(0);
+  }
+
+  @Test
+  public void sampleData_directAllocationsFromExtractorInputWithPeekedData_writesPeekedDataFirst()
+      throws IOException {
+    byte[] data = createData();
+    FakeDataReader dataReader = new FakeDataReader(data, /* zeroCopyReadSupported= */ true);
+    DefaultExtractorInput input =
+        new DefaultExtractorInput(dataReader, /* position= */ 0, data.length);
+    input.advancePeekPosition(150);
+    input.resetPeekPosition();
+    SampleDataQueue sampleDataQueue = createSampleDataQueue(/* useDirectBuffers= */ true);
+
+    writeAll(sampleDataQueue, input, data.length);
+
+    assertThat(readAll(sampleDataQueue, data.length)).isEqualTo(data);
+    assertThat(input.getPosition()).isEqualTo(data.length);
+    // The peeked data is read with read(), and the rest without copying.
+    assertThat(dataReader.readCount).isGreaterThan(0);
+    assertThat(dataReader.readBufferCount).isGreaterThan(0);
+  }
+
+  @Test
+  public void sampleData_directAllocationsAtEndOfInput_returnsEndOfInput() throws IOException {
+    byte[] data = createData();
+    FakeDataReader dataReader = new FakeDataReader(data, /* zeroCopyReadSupported= */ true);
+    DefaultExtractorInput input =
+        new DefaultExtractorInput(dataReader, /* position= */ 0, data.length);
+    SampleDataQueue sampleDataQueue = createSampleDataQueue(/* useDirectBuffers= */ true);
+    writeAll(sampleDataQueue, input, data.length);
+
+    int result =
+        sampleDataQueue.sampleData(input, /* length= */ 10, /* allowEndOfInput= */ true);
+
+    assertThat(result).isEqualTo(C.RESULT_END_OF_INPUT);
+    assertThat(sampleDataQueue.getTotalBytesWritten()).isEqualTo(data.length);
+  }
+
+  private static SampleDataQueue createSampleDataQueue(boolean useDirectBuffers) {
+    return new SampleDataQueue(
+        new DefaultAllocator(
+            /* trimOnReset= */ true,
+            ALLOCATION_SIZE,
+            /* initialAllocationCount= */ 0,
+            useDirectBuffers));
+  }
+
+  private static void writeAll(SampleDataQueue sampleDataQueue, DataReader input, int length)
+      throws IOException {
+    int bytesWritten = 0;
+    while (bytesWritten < length) {
+      bytesWritten +=
+          sampleDataQueue.sampleData(input, length - bytesWritten, /* allowEndOfInput= */ false);
+    }
+  }
+
+  private static byte[] readAll(SampleDataQueue sampleDataQueue, int length) {
+    DecoderInputBuffer buffer =
+        new DecoderInputBuffer(DecoderInputBuffer.BUFFER_REPLACEMENT_MODE_NORMAL);
+    SampleQueue.SampleExtrasHolder extrasHolder = new SampleQueue.SampleExtrasHolder();
+    extrasHolder.size = length;
+    sampleDataQueue.readToBuffer(buffer, extrasHolder);
+    ByteBuffer data = buffer.data;
+    data.flip();
+    byte[] result = new byte[data.remaining()];
+    data.get(result);
+    return result;
+  }
+
+  private static byte[] createData() {
+    byte[] data = new byte[DATA_LENGTH];
+    for (int i = 0; i < data.length; i++) {
+      data[i] = (byte) (i * 31);
+    }
+    return data;
+  }
+
+  /** A {@link DataReader} that counts its reads, and optionally supports zero-copy reads. */
+  private static final class FakeDataReader implements DataReader {
+
+    private final ByteBuffer data;
+    private final boolean zeroCopyReadSupported;
+
+    public int readCount;
+    public int readBufferCount;
+
+    public FakeDataReader(byte[] data, boolean zeroCopyReadSupported) {
+      this.data = ByteBuffer.wrap(data).asReadOnlyBuffer();
+      this.zeroCopyReadSupported = zeroCopyReadSupported;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) {
+      readCount++;
+      if (!data.hasRemaining()) {
+        return C.RESULT_END_OF_INPUT;
+      }
+      // Return short reads, as a network source would.
+      int bytesRead = min(min(length, 70), data.remaining());
+      data.get(buffer, offset, bytesRead);
+      return bytesRead;
+    }
+
+    @Override
+    public boolean isZeroCopyReadSupported() {
+      return zeroCopyReadSupported;
+    }
+
+    @Override
+    @Nullable
+    public ByteBuffer readBuffer(int length) {
+      readBufferCount++;
+      if (!data.hasRemaining()) {
+        return null;
+      }
+      int bytesRead = min(min(length, 70), data.remaining());
+      ByteBuffer buffer = data.slice();
+      buffer.limit(bytesRead);
+      data.position(data.position() + bytesRead);
+      return buffer;
+    }
+  }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.videoplayer.exoplayer.upstream;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.net.Uri;
+import androidx.annotation.Nullable;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.example.videoplayer.common.C;
+import com.example.videoplayer.datasource.DataSource;
+import com.example.videoplayer.datasource.DataSpec;
+import com.example.videoplayer.datasource.TransferListener;
+import com.example.videoplayer.test.utils.FakeClock;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Tests {@link CmcdTelemetry}. */
+@RunWith(AndroidJUnit4.class)
+public final class CmcdTelemetryTest {
+
+  private static final DataSpec DATA_SPEC =
+      new DataSpec.Builder().setUri("https://example.test/media").setLength(100).build();
+
+  @Test
+  public void completedTransfer_isRecordedAsCompleted() {
+    CmcdTelemetry telemetry = createTelemetry();
+    DataSource source = new FakeDataSource();
+
+    telemetry.onTransferInitializing(source, DATA_SPEC, /* isNetwork= */ true);
+    telemetry.onTransferStart(source, DATA_SPEC, /* isNetwork= */ true);
+    telemetry.onBytesTransferred(source, DATA_SPEC, /* isNetwork= */ true, 100);
+    telemetry.onTransferEnd(source, DATA_SPEC, /* isNetwork= */ true);
+
+    assertThat(telemetry.getRecords()).hasSize(1);
+    CmcdTelemetry.Record record = telemetry.getRecords().get(0);
+    assertThat(record.outcome).isEqualTo(CmcdTelemetry.OUTCOME_COMPLETED);
+    assertThat(record.bytesTransferred).isEqualTo(100);
+  }
+
+  @Test
+  public void failedOpen_thenReuse_isRecordedAsOpenFailed() {
+    CmcdTelemetry telemetry = createTelemetry();
+    DataSource source = new FakeDataSource();
+
+    telemetry.onTransferInitializing(source, DATA_SPEC, /* isNetwork= */ true);
+    // Opening failed, so the transfer never started or ended.
+    telemetry.onTransferInitializing(source, DATA_SPEC, /* isNetwork= */ true);
+    telemetry.onTransferStart(source, DATA_SPEC, /* isNetwork= */ true);
+    telemetry.onBytesTransferred(source, DATA_SPEC, /* isNetwork= */ true, 50);
+    telemetry.onTransferEnd(source, DATA_SPEC, /* isNetwork= */ true);
+
+    assertThat(telemetry.getRecords()).hasSize(2);
+    CmcdTelemetry.Record failedRecord = telemetry.getRecords().get(0);
+    assertThat(failedRecord.outcome).isEqualTo(CmcdTelemetry.OUTCOME_OPEN_FAILED);
+    assertThat(failedRecord.timeToFirstByteMs).isEqualTo(C.TIME_UNSET);
+    assertThat(telemetry.getRecords().get(1).outcome)
+        .isEqualTo(CmcdTelemetry.OUTCOME_INCOMPLETE);
+  }
+
+  private static CmcdTelemetry createTelemetry() {
+    return new CmcdTelemetry(
+        CmcdTelemetry.DEFAULT_CAPACITY,
+        /* listener= */ null,
+        new FakeClock(/* initialTimeMs= */ 0));
+  }
+
+  private static final class FakeDataSource implements DataSource {
+
+    @Override
+    public void addTransferListener(TransferListener transferListener) {}
+
+    @Override
+    public long open(DataSpec dataSpec) {
+      return C.LENGTH_UNSET;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) {
+      return C.RESULT_END_OF_INPUT;
+    }
+
+    @Nullable
+    @Override
+    public Uri getUri() {
+      return null;
+    }
+
+    @Override
+    public void close() {}
+  }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.videoplayer.exoplayer.upstream;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.example.videoplayer.common.C;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Tests {@link CmsdData}. */
+@RunWith(AndroidJUnit4.class)
+public final class CmsdDataTest {
+
+  @Test
+  public void parse_withoutCmsdHeaders_returnsNull() {
+    Map<String, List<String>> headers =
+        ImmutableMap.of("Content-Type", ImmutableList.of("video/mp4"));
+
+    assertThat(CmsdData.parse(headers)).isNull();
+  }
+
+  @Test
+  public void parse_dynamicHeader_parsesKeys() {
+    Map<String, List<String>> headers =
+        ImmutableMap.of(
+            CmsdData.KEY_CMSD_DYNAMIC,
+            ImmutableList.of("\"cdn\";etp=5000;mb=3000;rtt=40;rd=12;n=\"edge\""));
+
+    CmsdData cmsdData = CmsdData.parse(headers);
+
+    assertThat(cmsdData.estimatedThroughputKbps).isEqualTo(5000);
+    assertThat(cmsdData.maxSuggestedBitrateKbps).isEqualTo(3000);
+    assertThat(cmsdData.roundTripTimeMs).isEqualTo(40);
+    assertThat(cmsdData.responseDelayMs).isEqualTo(12);
+    assertThat(cmsdData.staticHeaderValue).isNull();
+    assertThat(cmsdData.dynamicHeaderValue)
+        .isEqualTo("\"cdn\";etp=5000;mb=3000;rtt=40;rd=12;n=\"edge\"");
+  }
+
+  @Test
+  public void parse_entriesFromSeveralIntermediaries_usesValuesClosestToClient() {
+    Map<String, List<String>> headers =
+        ImmutableMap.of(
+            CmsdData.KEY_CMSD_DYNAMIC,
+            ImmutableList.of("\"origin\";etp=9000;mb=4000", "\"edge\";etp=2000"));
+
+    CmsdData cmsdData = CmsdData.parse(headers);
+
+    assertThat(cmsdData.estimatedThroughputKbps).isEqualTo(2000);
+    assertThat(cmsdData.maxSuggestedBitrateKbps).isEqualTo(4000);
+    assertThat(cmsdData.dynamicHeaderValue)
+        .isEqualTo("\"origin\";etp=9000;mb=4000,\"edge\";etp=2000");
+  }
+
+  @Test
+  public void parse_headerNamesInOtherCase_parsesHeaders() {
+    Map<String, List<String>> headers =
+        ImmutableMap.of(
+            "cmsd-static", ImmutableList.of("ot=v"),
+            "CMSD-DYNAMIC", ImmutableList.of("etp=100"));
+
+    CmsdData cmsdData = CmsdData.parse(headers);
+
+    assertThat(cmsdData.staticHeaderValue).isEqualTo("ot=v");
+    assertThat(cmsdData.estimatedThroughputKbps).isEqualTo(100);
+  }
+
+  @Test
+  public void parse_staticHeaderOnly_returnsUnsetValues() {
+    Map<String, List<String>> headers =
+        ImmutableMap.of(CmsdData.KEY_CMSD_STATIC, ImmutableList.of("ot=v,sf=h"));
+
+    CmsdData cmsdData = CmsdData.parse(headers);
+
+    assertThat(cmsdData.staticHeaderValue).isEqualTo("ot=v,sf=h");
+    assertThat(cmsdData.dynamicHeaderValue).isNull();
+    assertThat(cmsdData.estimatedThroughputKbps).isEqualTo(C.RATE_UNSET_INT);
+    assertThat(cmsdData.maxSuggestedBitrateKbps).isEqualTo(C.RATE_UNSET_INT);
+    assertThat(cmsdData.roundTripTimeMs).isEqualTo(C.TIME_UNSET);
+    assertThat(cmsdData.responseDelayMs).isEqualTo(C.TIME_UNSET);
+  }
+
+  @Test
+  public void parse_invalidValues_ignoresThem() {
+    Map<String, List<String>> headers =
+        ImmutableMap.of(
+            CmsdData.KEY_CMSD_DYNAMIC, ImmutableList.of("etp=fast;mb=-5;rtt;rd=1.5;etp=7"));
+
+    CmsdData cmsdData = CmsdData.parse(headers);
+
+    assertThat(cmsdData.estimatedThroughputKbps).isEqualTo(7);
+    assertThat(cmsdData.maxSuggestedBitrateKbps).isEqualTo(C.RATE_UNSET_INT);
+    assertThat(cmsdData.roundTripTimeMs).isEqualTo(C.TIME_UNSET);
+    assertThat(cmsdData.responseDelayMs).isEqualTo(C.TIME_UNSET);
+  }
+
+  @Test
+  public void parse_valueAboveIntegerRange_isClamped() {
+    Map<String, List<String>> headers =
+        ImmutableMap.of(CmsdData.KEY_CMSD_DYNAMIC, ImmutableList.of("etp=99999999999"));
+
+    CmsdData cmsdData = CmsdData.parse(headers);
+
+    assertThat(cmsdData.estimatedThroughputKbps).isEqualTo(Integer.MAX_VALUE);
+  }
+
+  @Test
+  public void parse_headerWithNullNameOrNoValues_skipsIt() {
+    // HttpURLConnection reports the status line as a header with a null name.
+    Map<String, List<String>> headers = new HashMap<>();
+    headers.put(null, ImmutableList.of("HTTP/1.1 200 OK"));
+    headers.put(CmsdData.KEY_CMSD_STATIC, ImmutableList.of());
+    headers.put(CmsdData.KEY_CMSD_DYNAMIC, ImmutableList.of("etp=100"));
+
+    CmsdData cmsdData = CmsdData.parse(headers);
+
+    assertThat(cmsdData.staticHeaderValue).isNull();
+    assertThat(cmsdData.estimatedThroughputKbps).isEqualTo(100);
+  }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.videoplayer.exoplayer.upstream;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.annotation.Nullable;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Tests {@link DefaultAllocator}. */
+@RunWith(AndroidJUnit4.class)
+public final class DefaultAllocatorTest {
+
+  private static final int ALLOCATION_SIZE = 16;
+
+  @Test
+  public void allocate_afterRelease_reusesAllocations() {
+    DefaultAllocator allocator = new DefaultAllocator(/* trimOnReset= */ true, ALLOCATION_SIZE);
+    List<Allocation> allocations = allocate(allocator, /* count= */ 100);
+    releaseAll(allocator, allocations);
+
+    List<Allocation> reallocations = allocate(allocator, /* count= */ 100);
+
+    assertThat(reallocations).containsExactlyElementsIn(allocations);
+    assertThat(allocator.getTotalBytesAllocated()).isEqualTo(100 * ALLOCATION_SIZE);
+  }
+
+  @Test
+  public void allocate_afterReleaseOnOtherThreads_reusesAllocations() throws Exception {
+    DefaultAllocator allocator = new DefaultAllocator(/* trimOnReset= */ true, ALLOCATION_SIZE);
+    List<Allocation> allocations = allocate(allocator, /* count= */ 64);
+    // Release a few allocations on each of several threads, so that they're held in magazines
+    // other than the one used by the allocating thread.
+    for (int i = 0; i < allocations.size(); i += 4) {
+      List<Allocation> threadAllocations = allocations.subList(i, i + 4);
+      Thread thread = new Thread(() -> releaseAll(allocator, threadAllocations));
+      thread.start();
+      thread.join();
+    }
+
+    List<Allocation> reallocations = allocate(allocator, /* count= */ 64);
+
+    assertThat(reallocations).containsExactlyElementsIn(allocations);
+  }
+
+  @Test
+  public void release_allocationNodes_makesAllocationsAvailable() {
+    DefaultAllocator allocator = new DefaultAllocator(/* trimOnReset= */ true, ALLOCATION_SIZE);
+    List<Allocation> allocations = allocate(allocator, /* count= */ 20);
+
+    allocator.release(new ListAllocationNode(allocations, /* index= */ 0));
+
+    assertThat(allocator.getTotalBytesAllocated()).isEqualTo(0);
+    assertThat(allocate(allocator, /* count= */ 20)).containsExactlyElementsIn(allocations);
+  }
+
+  @Test
+  public void trim_discardsAvailableAllocationsAboveTarget() {
+    DefaultAllocator allocator = new DefaultAllocator(/* trimOnReset= */ true, ALLOCATION_SIZE);
+    allocator.setTargetBufferSize(10 * ALLOCATION_SIZE);
+    List<Allocation> allocations = allocate(allocator, /* count= */ 50);
+    releaseAll(allocator, allocations);
+
+    allocator.trim();
+
+    List<Allocation> reallocations = allocate(allocator, /* count= */ 50);
+    assertThat(countShared(reallocations, allocations)).isEqualTo(10);
+  }
+
+  @Test
+  public void trim_keepsInitialAllocations() {
+    DefaultAllocator allocator =
+        new DefaultAllocator(
+            /* trimOnReset= */ true, ALLOCATION_SIZE, /* initialAllocationCount= */ 10);
+    List<Allocation> allocations = allocate(allocator, /* count= */ 30);
+    releaseAll(allocator, allocations);
+
+    allocator.trim();
+
+    List<Allocation> reallocations = allocate(allocator, /* count= */ 30);
+    assertThat(countShared(reallocations, allocations)).isEqualTo(10);
+  }
+
+  @Test
+  public void allocate_withDirectBuffers_returnsDisjointBufferRegions() {
+    DefaultAllocator allocator =
+        new DefaultAllocator(
+            /* trimOnReset= */ true,
+            ALLOCATION_SIZE,
+            /* initialAllocationCount= */ 0,
+            /* useDirectBuffers= */ true);
+
+    List<Allocation> allocations = allocate(allocator, /* count= */ 10);
+
+    Map<Object, List<Integer>> offsetsByBuffer = new IdentityHashMap<>();
+    for (Allocation allocation : allocations) {
+      assertThat(allocation.buffer).isNotNull();
+      List<Integer> offsets =
+          offsetsByBuffer.computeIfAbsent(allocation.buffer, buffer -> new ArrayList<>());
+      assertThat(offsets).doesNotContain(allocation.offset);
+      offsets.add(allocation.offset);
+    }
+  }
+
+  private static List<Allocation> allocate(DefaultAllocator allocator, int count) {
+    List<Allocation> allocations = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      allocations.add(allocator.allocate());
+    }
+    return allocations;
+  }
+
+  private static void releaseAll(DefaultAllocator allocator, List<Allocation> allocations) {
+    for (int i = 0; i < allocations.size(); i++) {
+      allocator.release(allocations.get(i));
+    }
+  }
+
+  private static int countShared(List<Allocation> allocations, List<Allocation> otherAllocations) {
+    Map<Allocation, Boolean> others = new IdentityHashMap<>();
+    for (Allocation allocation : otherAllocations) {
+      others.put(allocation, true);
+    }
+    int count = 0;
+    for (Allocation allocation : allocations) {
+      if (others.containsKey(allocation)) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  private static final class ListAllocationNode implements Allocator.AllocationNode {
+
+    private final List<Allocation> allocations;
+    private final int index;
+
+    public ListAllocationNode(List<Allocation> allocations, int index) {
+      this.allocations = allocations;
+      this.index = index;
+    }
+
+    @Override
+    public Allocation getAllocation() {
+      return allocations.get(index);
+    }
+
+    @Override
+    @Nullable
+    public Allocator.AllocationNode next() {
+      return index + 1 < allocations.size() ? new ListAllocationNode(allocations, index + 1) : null;
+    }
+  }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.videoplayer.exoplayer.upstream;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.net.Uri;
+import androidx.annotation.Nullable;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.example.videoplayer.common.C;
+import com.example.videoplayer.datasource.DataSource;
+import com.example.videoplayer.datasource.DataSpec;
+import com.example.videoplayer.datasource.TransferListener;
+import com.example.videoplayer.test.utils.FakeClock;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Tests {@link DefaultBandwidthMeter}'s use of CMSD hints. */
+@RunWith(AndroidJUnit4.class)
+public final class DefaultBandwidthMeterTest {
+
+  private static final DataSpec DATA_SPEC = new DataSpec(Uri.parse("https://example.test/media"));
+  private static final long INITIAL_BITRATE_ESTIMATE = 1_000_000;
+
+  @Test
+  public void transfer_withCmsdHintsDisabled_ignoresHints() {
+    FakeClock clock = new FakeClock(/* initialTimeMs= */ 0);
+    DefaultBandwidthMeter bandwidthMeter = createBandwidthMeter(clock, /* useCmsdHints= */ false);
+
+    transfer(bandwidthMeter, clock, "etp=5000;mb=300", /* bytes= */ 0, /* durationMs= */ 0);
+
+    assertThat(bandwidthMeter.getBitrateEstimate()).isEqualTo(INITIAL_BITRATE_ESTIMATE);
+  }
+
+  @Test
+  public void transfer_withThroughputHintBeforeEnoughData_keepsInitialEstimate() {
+    FakeClock clock = new FakeClock(/* initialTimeMs= */ 0);
+    DefaultBandwidthMeter bandwidthMeter = createBandwidthMeter(clock, /* useCmsdHints= */ true);
+
+    // 25 KB in 100 ms is 2 Mbps, but too little data to replace the initial estimate.
+    transfer(bandwidthMeter, clock, "etp=5000", /* bytes= */ 25_000, /* durationMs= */ 100);
+
+    assertThat(bandwidthMeter.getBitrateEstimate()).isEqualTo(INITIAL_BITRATE_ESTIMATE);
+  }
+
+  @Test
+  public void transfer_withThroughputHintAfterEnoughData_includesHintInEstimate() {
+    FakeClock clock = new FakeClock(/* initialTimeMs= */ 0);
+    DefaultBandwidthMeter bandwidthMeter = createBandwidthMeter(clock, /* useCmsdHints= */ true);
+    // 250 KB in 2 s is 1 Mbps, with a weight of 500.
+    transfer(bandwidthMeter, clock, /* cmsdDynamic= */ null, 250_000, /* durationMs= */ 2_000);
+    assertThat(bandwidthMeter.getBitrateEstimate()).isEqualTo(1_000_000);
+
+    // The hint's weight of 512 makes it the median.
+    transfer(bandwidthMeter, clock, "etp=4000", /* bytes= */ 0, /* durationMs= */ 0);
+
+    assertThat(bandwidthMeter.getBitrateEstimate()).isEqualTo(4_000_000);
+  }
+
+  @Test
+  public void transfer_withMaxBitrateHint_capsEstimateUntilLaterResponse() {
+    FakeClock clock = new FakeClock(/* initialTimeMs= */ 0);
+    DefaultBandwidthMeter bandwidthMeter = createBandwidthMeter(clock, /* useCmsdHints= */ true);
+
+    transfer(bandwidthMeter, clock, "mb=300", /* bytes= */ 0, /* durationMs= */ 0);
+    long cappedBitrateEstimate = bandwidthMeter.getBitrateEstimate();
+    transfer(bandwidthMeter, clock, "rtt=20", /* bytes= */ 0, /* durationMs= */ 0);
+
+    assertThat(cappedBitrateEstimate).isEqualTo(300_000);
+    assertThat(bandwidthMeter.getBitrateEstimate()).isEqualTo(INITIAL_BITRATE_ESTIMATE);
+  }
+
+  private static DefaultBandwidthMeter createBandwidthMeter(FakeClock clock, boolean useCmsdHints) {
+    return new DefaultBandwidthMeter.Builder(/* context= */ null)
+        .setInitialBitrateEstimate(INITIAL_BITRATE_ESTIMATE)
+        .setClock(clock)
+        .setUseCmsdHints(useCmsdHints)
+        .build();
+  }
+
+  /** Reports a transfer from a source whose response has the given CMSD-Dynamic header. */
+  private static void transfer(
+      DefaultBandwidthMeter bandwidthMeter,
+      FakeClock clock,
+      @Nullable String cmsdDynamic,
+      int bytes,
+      long durationMs) {
+    DataSource source = new FakeDataSource(cmsdDynamic);
+    bandwidthMeter.onTransferInitializing(source, DATA_SPEC, /* isNetwork= */ true);
+    bandwidthMeter.onTransferStart(source, DATA_SPEC, /* isNetwork= */ true);
+    clock.advanceTime(durationMs);
+    bandwidthMeter.onBytesTransferred(source, DATA_SPEC, /* isNetwork= */ true, bytes);
+    bandwidthMeter.onTransferEnd(source, DATA_SPEC, /* isNetwork= */ true);
+  }
+
+  private static final class FakeDataSource implements DataSource {
+
+    private final Map<String, List<String>> responseHeaders;
+
+    public FakeDataSource(@Nullable String cmsdDynamic) {
+      responseHeaders =
+          cmsdDynamic == null
+              ? ImmutableMap.of()
+              : ImmutableMap.of(CmsdData.KEY_CMSD_DYNAMIC, ImmutableList.of(cmsdDynamic));
+    }
+
+    @Override
+    public void addTransferListener(TransferListener transferListener) {}
+
+    @Override
+    public long open(DataSpec dataSpec) {
+      return C.LENGTH_UNSET;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) {
+      return C.RESULT_END_OF_INPUT;
+    }
+
+    @Nullable
+    @Override
+    public Uri getUri() {
+      return null;
+    }
+
+    @Override
+    public Map<String, List<String>> getResponseHeaders() {
+      return responseHeaders;
+    }
+
+    @Override
+    public void close() {}
+  }
+}
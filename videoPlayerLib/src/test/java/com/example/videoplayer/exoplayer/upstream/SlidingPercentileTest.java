@@ -0,0 +1,193 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.videoplayer.exoplayer.upstream;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Tests {@link SlidingPercentile}. */
+@RunWith(AndroidJUnit4.class)
+public final class SlidingPercentileTest {
+
+  @Test
+  public void getPercentile_noSamples_returnsNaN() {
+    SlidingPercentile slidingPercentile = new SlidingPercentile(/* maxWeight= */ 10);
+
+    assertThat(slidingPercentile.getPercentile(0.5f)).isNaN();
+  }
+
+  @Test
+  public void getPercentile_returnsFirstValueReachingWeight() {
+    SlidingPercentile slidingPercentile = new SlidingPercentile(/* maxWeight= */ 100);
+    // Added out of order, to check that the values are sorted.
+    for (float value : new float[] {3, 5, 1, 4, 2}) {
+      slidingPercentile.addSample(/* weight= */ 1, value);
+    }
+
+    assertThat(slidingPercentile.getPercentile(0.1f)).isEqualTo(1);
+    assertThat(slidingPercentile.getPercentile(0.2f)).isEqualTo(1);
+    assertThat(slidingPercentile.getPercentile(0.5f)).isEqualTo(3);
+    assertThat(slidingPercentile.getPercentile(1f)).isEqualTo(5);
+  }
+
+  @Test
+  public void getPercentile_weightedSamples_integratesWeights() {
+    SlidingPercentile slidingPercentile = new SlidingPercentile(/* maxWeight= */ 100);
+    slidingPercentile.addSample(/* weight= */ 1, /* value= */ 10);
+    slidingPercentile.addSample(/* weight= */ 8, /* value= */ 20);
+    slidingPercentile.addSample(/* weight= */ 1, /* value= */ 30);
+
+    assertThat(slidingPercentile.getPercentile(0.1f)).isEqualTo(10);
+    assertThat(slidingPercentile.getPercentile(0.5f)).isEqualTo(20);
+    assertThat(slidingPercentile.getPercentile(0.9f)).isEqualTo(20);
+    assertThat(slidingPercentile.getPercentile(0.95f)).isEqualTo(30);
+  }
+
+  @Test
+  public void addSample_atMaxWeight_evictsOldestSamples() {
+    SlidingPercentile slidingPercentile = new SlidingPercentile(/* maxWeight= */ 3);
+    slidingPercentile.addSample(/* weight= */ 1, /* value= */ 10);
+    slidingPercentile.addSample(/* weight= */ 1, /* value= */ 40);
+    slidingPercentile.addSample(/* weight= */ 1, /* value= */ 30);
+
+    slidingPercentile.addSample(/* weight= */ 2, /* value= */ 20);
+
+    // 10 and 40 are evicted.
+    assertThat(slidingPercentile.getPercentile(0.33f)).isEqualTo(20);
+    assertThat(slidingPercentile.getPercentile(0.66f)).isEqualTo(20);
+    assertThat(slidingPercentile.getPercentile(1f)).isEqualTo(30);
+  }
+
+  @Test
+  public void addSample_partiallyExceedingMaxWeight_trimsWeightOfOldestSample() {
+    SlidingPercentile slidingPercentile = new SlidingPercentile(/* maxWeight= */ 10);
+    slidingPercentile.addSample(/* weight= */ 6, /* value= */ 1);
+
+    slidingPercentile.addSample(/* weight= */ 6, /* value= */ 2);
+
+    // The first sample's weight is trimmed from 6 to 4.
+    assertThat(slidingPercentile.getPercentile(0.4f)).isEqualTo(1);
+    assertThat(slidingPercentile.getPercentile(0.41f)).isEqualTo(2);
+
+    slidingPercentile.addSample(/* weight= */ 4, /* value= */ 3);
+
+    // The trimmed sample's remaining weight is exactly the excess, so it's evicted.
+    assertThat(slidingPercentile.getPercentile(0.6f)).isEqualTo(2);
+    assertThat(slidingPercentile.getPercentile(0.61f)).isEqualTo(3);
+  }
+
+  @Test
+  public void addSample_equalValues_evictsInOrderAdded() {
+    SlidingPercentile slidingPercentile = new SlidingPercentile(/* maxWeight= */ 10);
+    slidingPercentile.addSample(/* weight= */ 2, /* value= */ 5);
+    slidingPercentile.addSample(/* weight= */ 8, /* value= */ 5);
+    // Evicts the first sample, and trims the second to a weight of 5.
+    slidingPercentile.addSample(/* weight= */ 5, /* value= */ 1);
+
+    // Evicts the second sample, which leaves no sample with a value of 5.
+    slidingPercentile.addSample(/* weight= */ 5, /* value= */ 9);
+
+    assertThat(slidingPercentile.getPercentile(0.5f)).isEqualTo(1);
+    assertThat(slidingPercentile.getPercentile(0.51f)).isEqualTo(9);
+  }
+
+  @Test
+  public void reset_removesSamples() {
+    SlidingPercentile slidingPercentile = new SlidingPercentile(/* maxWeight= */ 10);
+    slidingPercentile.addSample(/* weight= */ 5, /* value= */ 1);
+
+    slidingPercentile.reset();
+    slidingPercentile.addSample(/* weight= */ 5, /* value= */ 2);
+
+    assertThat(slidingPercentile.getPercentile(0.1f)).isEqualTo(2);
+  }
+
+  @Test
+  public void getPercentile_randomSamples_matchesListImplementation() {
+    Random random = new Random(/* seed= */ 0);
+    // Windows that hold fewer and more samples than the initial capacity of the arrays.
+    for (int maxWeight : new int[] {1, 7, 50, 400}) {
+      SlidingPercentile slidingPercentile = new SlidingPercentile(maxWeight);
+      ListSlidingPercentile expected = new ListSlidingPercentile(maxWeight);
+      for (int i = 0; i < 2_000; i++) {
+        int weight = 1 + random.nextInt(10);
+        // Few distinct values, so that many samples have equal values.
+        float value = random.nextInt(8);
+        slidingPercentile.addSample(weight, value);
+        expected.addSample(weight, value);
+        for (float percentile : new float[] {0.1f, 0.5f, 0.9f, 1f}) {
+          assertThat(slidingPercentile.getPercentile(percentile))
+              .isEqualTo(expected.getPercentile(percentile));
+        }
+      }
+    }
+  }
+
+  /** A straightforward sliding percentile that keeps its samples in the order they were added. */
+  private static final class ListSlidingPercentile {
+
+    private final int maxWeight;
+    private final List<float[]> samples;
+
+    public ListSlidingPercentile(int maxWeight) {
+      this.maxWeight = maxWeight;
+      samples = new ArrayList<>();
+    }
+
+    public void addSample(int weight, float value) {
+      samples.add(new float[] {weight, value});
+      int totalWeight = 0;
+      for (float[] sample : samples) {
+        totalWeight += (int) sample[0];
+      }
+      while (totalWeight > maxWeight) {
+        float[] oldestSample = samples.get(0);
+        int excessWeight = totalWeight - maxWeight;
+        if (oldestSample[0] <= excessWeight) {
+          totalWeight -= (int) oldestSample[0];
+          samples.remove(0);
+        } else {
+          oldestSample[0] -= excessWeight;
+          totalWeight -= excessWeight;
+        }
+      }
+    }
+
+    public float getPercentile(float percentile) {
+      List<float[]> sortedSamples = new ArrayList<>(samples);
+      sortedSamples.sort((first, second) -> Float.compare(first[1], second[1]));
+      int totalWeight = 0;
+      for (float[] sample : sortedSamples) {
+        totalWeight += (int) sample[0];
+      }
+      float desiredWeight = percentile * totalWeight;
+      int accumulatedWeight = 0;
+      for (float[] sample : sortedSamples) {
+        accumulatedWeight += (int) sample[0];
+        if (accumulatedWeight >= desiredWeight) {
+          return sample[1];
+        }
+      }
+      return sortedSamples.get(sortedSamples.size() - 1)[1];
+    }
+  }
+}
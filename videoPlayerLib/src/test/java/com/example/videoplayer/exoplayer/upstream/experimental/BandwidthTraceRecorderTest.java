@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.videoplayer.exoplayer.upstream.experimental;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.example.videoplayer.datasource.ByteArrayDataSource;
+import com.example.videoplayer.datasource.DataSource;
+import com.example.videoplayer.datasource.DataSpec;
+import com.example.videoplayer.test.utils.FakeClock;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Tests {@link BandwidthTraceRecorder}. */
+@RunWith(AndroidJUnit4.class)
+public final class BandwidthTraceRecorderTest {
+
+  private static final DataSpec DATA_SPEC =
+      new DataSpec.Builder().setUri("https://example.test/media").build();
+
+  @Test
+  public void getTrace_returnsNetworkTransfers() {
+    FakeClock clock = new FakeClock(/* initialTimeMs= */ 0);
+    BandwidthTraceRecorder recorder =
+        new BandwidthTraceRecorder(BandwidthTraceRecorder.DEFAULT_CAPACITY, clock);
+
+    clock.advanceTime(1_000);
+    recordTransfer(recorder, createDataSource(), /* isNetwork= */ false, clock);
+    recordTransfer(recorder, createDataSource(), /* isNetwork= */ true, clock);
+
+    BandwidthTrace trace = recorder.getTrace();
+    assertThat(trace.events).hasSize(4);
+    assertThat(trace.events.get(0).type).isEqualTo(BandwidthTrace.EVENT_TRANSFER_INITIALIZING);
+    assertThat(trace.events.get(0).timeMs).isEqualTo(0);
+    assertThat(trace.events.get(2).type).isEqualTo(BandwidthTrace.EVENT_BYTES_TRANSFERRED);
+    assertThat(trace.events.get(2).bytesTransferred).isEqualTo(100_000);
+    assertThat(trace.events.get(3).type).isEqualTo(BandwidthTrace.EVENT_TRANSFER_END);
+    assertThat(trace.events.get(3).timeMs).isEqualTo(100);
+  }
+
+  @Test
+  public void getTrace_afterCapacityReached_returnsMostRecentEvents() {
+    FakeClock clock = new FakeClock(/* initialTimeMs= */ 0);
+    BandwidthTraceRecorder recorder = new BandwidthTraceRecorder(/* capacity= */ 6, clock);
+
+    for (int i = 0; i < 3; i++) {
+      recordTransfer(recorder, createDataSource(), /* isNetwork= */ true, clock);
+    }
+
+    BandwidthTrace trace = recorder.getTrace();
+    assertThat(trace.events).hasSize(6);
+    assertThat(trace.events.get(0).type).isEqualTo(BandwidthTrace.EVENT_BYTES_TRANSFERRED);
+    assertThat(trace.events.get(0).sourceId).isEqualTo(1);
+    assertThat(trace.events.get(5).type).isEqualTo(BandwidthTrace.EVENT_TRANSFER_END);
+    assertThat(trace.events.get(5).sourceId).isEqualTo(2);
+  }
+
+  @Test
+  public void getTrace_afterCapacityReached_canBeEvaluated() {
+    FakeClock clock = new FakeClock(/* initialTimeMs= */ 0);
+    BandwidthTraceRecorder recorder = new BandwidthTraceRecorder(/* capacity= */ 6, clock);
+    for (int i = 0; i < 3; i++) {
+      recordTransfer(recorder, createDataSource(), /* isNetwork= */ true, clock);
+    }
+    BandwidthTraceEvaluator evaluator =
+        new BandwidthTraceEvaluator.Builder(1_000_000, 4_000_000).build();
+
+    BandwidthTraceEvaluator.Score score =
+        evaluator.evaluate(
+            recorder.getTrace(),
+            "Combined",
+            estimatorClock ->
+                new CombinedParallelSampleBandwidthEstimator.Builder()
+                    .setClock(estimatorClock)
+                    .build());
+
+    // The transfer whose start was dropped isn't replayed.
+    assertThat(score.predictionCount).isAtMost(1);
+    assertThat(score.meanSelectedBitrate).isGreaterThan(0);
+  }
+
+  /** Records a transfer of 100 KB that lasts 100 ms. */
+  private static void recordTransfer(
+      BandwidthTraceRecorder recorder, DataSource source, boolean isNetwork, FakeClock clock) {
+    recorder.onTransferInitializing(source, DATA_SPEC, isNetwork);
+    recorder.onTransferStart(source, DATA_SPEC, isNetwork);
+    clock.advanceTime(100);
+    recorder.onBytesTransferred(source, DATA_SPEC, isNetwork, /* bytesTransferred= */ 100_000);
+    recorder.onTransferEnd(source, DATA_SPEC, isNetwork);
+  }
+
+  private static DataSource createDataSource() {
+    return new ByteArrayDataSource(new byte[1]);
+  }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.videoplayer.exoplayer.upstream.experimental;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Tests {@link HarmonicMeanBandwidthStatistic}. */
+@RunWith(AndroidJUnit4.class)
+public final class HarmonicMeanBandwidthStatisticTest {
+
+  @Test
+  public void getBandwidthEstimate_afterConstruction_returnsNoEstimate() {
+    HarmonicMeanBandwidthStatistic statistic = new HarmonicMeanBandwidthStatistic();
+
+    assertThat(statistic.getBandwidthEstimate())
+        .isEqualTo(BandwidthEstimator.ESTIMATE_NOT_AVAILABLE);
+  }
+
+  @Test
+  public void getBandwidthEstimate_equalSamples_returnsSampleBitrate() {
+    HarmonicMeanBandwidthStatistic statistic = new HarmonicMeanBandwidthStatistic();
+
+    addSample(statistic, /* bitrate= */ 1_000_000);
+    addSample(statistic, /* bitrate= */ 1_000_000);
+
+    assertThat(statistic.getBandwidthEstimate()).isEqualTo(1_000_000);
+  }
+
+  @Test
+  public void getBandwidthEstimate_similarSamples_returnsHarmonicMean() {
+    HarmonicMeanBandwidthStatistic statistic = new HarmonicMeanBandwidthStatistic();
+
+    // The coefficient of variation is 1/11, which is below the default threshold.
+    addSample(statistic, /* bitrate= */ 1_000_000);
+    addSample(statistic, /* bitrate= */ 1_200_000);
+
+    // 2 / (1 / 1_000_000 + 1 / 1_200_000)
+    assertThat(statistic.getBandwidthEstimate()).isEqualTo(1_090_909);
+  }
+
+  @Test
+  public void getBandwidthEstimate_widelyVaryingSamples_discountsHarmonicMean() {
+    HarmonicMeanBandwidthStatistic statistic = new HarmonicMeanBandwidthStatistic();
+
+    // The coefficient of variation is 0.5, which exceeds the default threshold by 0.25.
+    addSample(statistic, /* bitrate= */ 1_000_000);
+    addSample(statistic, /* bitrate= */ 3_000_000);
+
+    // The harmonic mean is 1_500_000, divided by 1.25.
+    assertThat(statistic.getBandwidthEstimate()).isEqualTo(1_200_000);
+  }
+
+  @Test
+  public void getBandwidthEstimate_moreSamplesThanMax_usesMostRecentSamples() {
+    HarmonicMeanBandwidthStatistic statistic =
+        new HarmonicMeanBandwidthStatistic(
+            /* maxSampleCount= */ 2, /* maxCoefficientOfVariation= */ 1);
+
+    addSample(statistic, /* bitrate= */ 100_000);
+    addSample(statistic, /* bitrate= */ 2_000_000);
+    addSample(statistic, /* bitrate= */ 2_000_000);
+
+    assertThat(statistic.getBandwidthEstimate()).isEqualTo(2_000_000);
+  }
+
+  @Test
+  public void addSample_zeroDuration_isIgnored() {
+    HarmonicMeanBandwidthStatistic statistic = new HarmonicMeanBandwidthStatistic();
+    addSample(statistic, /* bitrate= */ 1_000_000);
+
+    statistic.addSample(/* bytes= */ 1_000, /* durationUs= */ 0);
+
+    assertThat(statistic.getBandwidthEstimate()).isEqualTo(1_000_000);
+  }
+
+  @Test
+  public void addSample_zeroBytes_isClampedToOneBitPerSecond() {
+    HarmonicMeanBandwidthStatistic statistic = new HarmonicMeanBandwidthStatistic();
+
+    statistic.addSample(/* bytes= */ 0, /* durationUs= */ 1_000_000);
+
+    assertThat(statistic.getBandwidthEstimate()).isEqualTo(1);
+  }
+
+  @Test
+  public void reset_removesSamples() {
+    HarmonicMeanBandwidthStatistic statistic = new HarmonicMeanBandwidthStatistic();
+    addSample(statistic, /* bitrate= */ 1_000_000);
+
+    statistic.reset();
+
+    assertThat(statistic.getBandwidthEstimate())
+        .isEqualTo(BandwidthEstimator.ESTIMATE_NOT_AVAILABLE);
+    addSample(statistic, /* bitrate= */ 2_000_000);
+    assertThat(statistic.getBandwidthEstimate()).isEqualTo(2_000_000);
+  }
+
+  /** Adds a sample of one second at the given bitrate. */
+  private static void addSample(HarmonicMeanBandwidthStatistic statistic, long bitrate) {
+    statistic.addSample(/* bytes= */ bitrate / 8, /* durationUs= */ 1_000_000);
+  }
+}
@@ -0,0 +1,250 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.videoplayer.extractor.mp4;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.lang.Math.min;
+
+import android.net.Uri;
+import androidx.annotation.Nullable;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.example.videoplayer.common.C;
+import com.example.videoplayer.common.DataReader;
+import com.example.videoplayer.common.Format;
+import com.example.videoplayer.common.util.ParsableByteArray;
+import com.example.videoplayer.datasource.ByteArrayDataSource;
+import com.example.videoplayer.datasource.DataSpec;
+import com.example.videoplayer.extractor.DefaultExtractorInput;
+import com.example.videoplayer.extractor.Extractor;
+import com.example.videoplayer.extractor.ExtractorInput;
+import com.example.videoplayer.extractor.ExtractorOutput;
+import com.example.videoplayer.extractor.PositionHolder;
+import com.example.videoplayer.extractor.SeekMap;
+import com.example.videoplayer.extractor.TrackOutput;
+import com.example.videoplayer.extractor.text.SubtitleParser;
+import com.google.common.util.concurrent.MoreExecutors;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Tests {@link MoofPrefetcher}, by comparing the samples output by a {@link
+ * FragmentedMp4Extractor} that prefetches moof boxes with those output by one that doesn't.
+ *
+ * <p>Moof boxes are read and parsed on the loading thread, so that each prefetch completes before
+ * the extractor reaches its box.
+ */
+@RunWith(AndroidJUnit4.class)
+public final class MoofPrefetcherTest {
+
+  private static final int SAMPLES_PER_FRAGMENT = 45;
+
+  @Test
+  public void extract_withPrefetching_outputsSameSamples() throws IOException {
+    SyntheticMoov.TrackConfig config = createConfig();
+
+    assertPrefetchingOutputsSameSamples(config);
+  }
+
+  @Test
+  public void extract_withPrefetchingAndCompositionOffsets_outputsSameSamples()
+      throws IOException {
+    SyntheticMoov.TrackConfig config = createConfig();
+    config.compositionOffsets = true;
+
+    assertPrefetchingOutputsSameSamples(config);
+  }
+
+  @Test
+  public void extract_withPrefetching_usesPrefetchedMoofs() throws IOException {
+    SyntheticMoov.TrackConfig config = createConfig();
+    byte[] data = SyntheticMoov.createFragmentedMp4(config, SAMPLES_PER_FRAGMENT);
+    // Serve moof boxes with longer sample durations, but the same layout, to the prefetcher.
+    config.sampleDuration *= 2;
+    byte[] prefetchedData = SyntheticMoov.createFragmentedMp4(config, SAMPLES_PER_FRAGMENT);
+
+    RecordingExtractorOutput output =
+        extract(data, createRangeReader(prefetchedData, new AtomicInteger()));
+
+    // The first fragment is read before any prefetches start.
+    List<Long> expectedTimesUs = new ArrayList<>();
+    for (int i = 0; i < config.sampleCount; i++) {
+      long sampleDuration = i < SAMPLES_PER_FRAGMENT ? 1_001 : 2_002;
+      expectedTimesUs.add(i * sampleDuration * C.MICROS_PER_SECOND / config.timescale);
+    }
+    assertThat(output.timesUs).containsExactlyElementsIn(expectedTimesUs).inOrder();
+  }
+
+  @Test
+  public void extract_withFailingPrefetches_outputsSameSamples() throws IOException {
+    byte[] data = SyntheticMoov.createFragmentedMp4(createConfig(), SAMPLES_PER_FRAGMENT);
+    FragmentedMp4Extractor.RangeReader failingRangeReader =
+        (position, buffer, offset, length) -> {
+          throw new IOException();
+        };
+
+    RecordingExtractorOutput expected = extract(data, /* rangeReader= */ null);
+    RecordingExtractorOutput actual = extract(data, failingRangeReader);
+
+    assertSameSamples(actual, expected);
+  }
+
+  private static SyntheticMoov.TrackConfig createConfig() {
+    SyntheticMoov.TrackConfig config = new SyntheticMoov.TrackConfig();
+    config.sampleCount = 10 * SAMPLES_PER_FRAGMENT + 7;
+    return config;
+  }
+
+  private static void assertPrefetchingOutputsSameSamples(SyntheticMoov.TrackConfig config)
+      throws IOException {
+    byte[] data = SyntheticMoov.createFragmentedMp4(config, SAMPLES_PER_FRAGMENT);
+    AtomicInteger rangeReadCount = new AtomicInteger();
+
+    RecordingExtractorOutput expected = extract(data, /* rangeReader= */ null);
+    RecordingExtractorOutput actual = extract(data, createRangeReader(data, rangeReadCount));
+
+    assertThat(expected.timesUs).hasSize(config.sampleCount);
+    assertThat(rangeReadCount.get()).isGreaterThan(0);
+    assertSameSamples(actual, expected);
+  }
+
+  private static void assertSameSamples(
+      RecordingExtractorOutput actual, RecordingExtractorOutput expected) {
+    assertThat(actual.format).isEqualTo(expected.format);
+    assertThat(actual.timesUs).containsExactlyElementsIn(expected.timesUs).inOrder();
+    assertThat(actual.flags).containsExactlyElementsIn(expected.flags).inOrder();
+    assertThat(actual.sizes).containsExactlyElementsIn(expected.sizes).inOrder();
+    assertThat(actual.data.toByteArray()).isEqualTo(expected.data.toByteArray());
+  }
+
+  /**
+   * Extracts all samples from {@code data}, prefetching moof boxes with {@code rangeReader} if it's
+   * not null.
+   */
+  private static RecordingExtractorOutput extract(
+      byte[] data, @Nullable FragmentedMp4Extractor.RangeReader rangeReader) throws IOException {
+    FragmentedMp4Extractor extractor =
+        new FragmentedMp4Extractor(SubtitleParser.Factory.UNSUPPORTED);
+    if (rangeReader != null) {
+      extractor.experimentalSetMoofPrefetching(
+          rangeReader,
+          /* maxPrefetchedMoofCount= */ 2,
+          MoreExecutors.newDirectExecutorService());
+    }
+    RecordingExtractorOutput output = new RecordingExtractorOutput();
+    extractor.init(output);
+    PositionHolder positionHolder = new PositionHolder();
+    ExtractorInput input = createInput(data, /* position= */ 0);
+    int result = Extractor.RESULT_CONTINUE;
+    while (result != Extractor.RESULT_END_OF_INPUT) {
+      result = extractor.read(input, positionHolder);
+      if (result == Extractor.RESULT_SEEK) {
+        input = createInput(data, positionHolder.position);
+      }
+    }
+    extractor.release();
+    return output;
+  }
+
+  private static ExtractorInput createInput(byte[] data, long position) throws IOException {
+    ByteArrayDataSource dataSource = new ByteArrayDataSource(data);
+    dataSource.open(new DataSpec.Builder().setUri(Uri.EMPTY).setPosition(position).build());
+    return new DefaultExtractorInput(dataSource, position, data.length);
+  }
+
+  private static FragmentedMp4Extractor.RangeReader createRangeReader(
+      byte[] data, AtomicInteger readCount) {
+    return (position, buffer, offset, length) -> {
+      readCount.incrementAndGet();
+      if (position >= data.length) {
+        return C.RESULT_END_OF_INPUT;
+      }
+      int bytesRead = (int) min(length, data.length - position);
+      System.arraycopy(data, (int) position, buffer, offset, bytesRead);
+      return bytesRead;
+    };
+  }
+
+  /** Records the format and samples of a single track. */
+  private static final class RecordingExtractorOutput implements ExtractorOutput, TrackOutput {
+
+    public final List<Long> timesUs;
+    public final List<Integer> flags;
+    public final List<Integer> sizes;
+    public final ByteArrayOutputStream data;
+
+    @Nullable public Format format;
+
+    public RecordingExtractorOutput() {
+      timesUs = new ArrayList<>();
+      flags = new ArrayList<>();
+      sizes = new ArrayList<>();
+      data = new ByteArrayOutputStream();
+    }
+
+    @Override
+    public TrackOutput track(int id, @C.TrackType int type) {
+      return this;
+    }
+
+    @Override
+    public void endTracks() {}
+
+    @Override
+    public void seekMap(SeekMap seekMap) {}
+
+    @Override
+    public void format(Format format) {
+      this.format = format;
+    }
+
+    @Override
+    public int sampleData(
+        DataReader input, int length, boolean allowEndOfInput, @SampleDataPart int sampleDataPart)
+        throws IOException {
+      byte[] buffer = new byte[length];
+      int bytesRead = input.read(buffer, /* offset= */ 0, length);
+      if (bytesRead == C.RESULT_END_OF_INPUT) {
+        return C.RESULT_END_OF_INPUT;
+      }
+      data.write(buffer, /* off= */ 0, bytesRead);
+      return bytesRead;
+    }
+
+    @Override
+    public void sampleData(ParsableByteArray data, int length, @SampleDataPart int sampleDataPart) {
+      byte[] buffer = new byte[length];
+      data.readBytes(buffer, /* offset= */ 0, length);
+      this.data.write(buffer, /* off= */ 0, length);
+    }
+
+    @Override
+    public void sampleMetadata(
+        long timeUs,
+        @C.BufferFlags int flags,
+        int size,
+        int offset,
+        @Nullable CryptoData cryptoData) {
+      timesUs.add(timeUs);
+      this.flags.add(flags);
+      sizes.add(size);
+    }
+  }
+}
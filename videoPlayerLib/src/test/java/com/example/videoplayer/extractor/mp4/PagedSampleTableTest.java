@@ -0,0 +1,191 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.videoplayer.extractor.mp4;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+import androidx.annotation.Nullable;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.example.videoplayer.common.C;
+import com.example.videoplayer.container.Mp4Box;
+import com.example.videoplayer.extractor.GaplessInfoHolder;
+import java.io.IOException;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Tests {@link PagedSampleTable}, by comparing the sample tables returned by {@link
+ * BoxParser#parseStblOnDemand} with those returned by {@link BoxParser#parseStbl}.
+ */
+@RunWith(AndroidJUnit4.class)
+public final class PagedSampleTableTest {
+
+  @Test
+  public void parseStblOnDemand_matchesParseStbl() throws IOException {
+    SyntheticMoov.TrackConfig config = createConfig();
+
+    assertOnDemandTableMatchesParsedTable(config);
+  }
+
+  @Test
+  public void parseStblOnDemand_withCompositionOffsets_matchesParseStbl() throws IOException {
+    SyntheticMoov.TrackConfig config = createConfig();
+    config.compositionOffsets = true;
+
+    assertOnDemandTableMatchesParsedTable(config);
+  }
+
+  @Test
+  public void parseStblOnDemand_withOpenGop_matchesParseStbl() throws IOException {
+    SyntheticMoov.TrackConfig config = createConfig();
+    config.compositionOffsets = true;
+    config.openGop = true;
+
+    assertOnDemandTableMatchesParsedTable(config);
+  }
+
+  @Test
+  public void parseStblOnDemand_withFixedSampleSize_matchesParseStbl() throws IOException {
+    SyntheticMoov.TrackConfig config = createConfig();
+    config.fixedSampleSize = true;
+
+    assertOnDemandTableMatchesParsedTable(config);
+  }
+
+  @Test
+  public void parseStblOnDemand_withPartialLastPageAndChunk_matchesParseStbl() throws IOException {
+    SyntheticMoov.TrackConfig config = createConfig();
+    config.sampleCount = 10 * PagedSampleTable.PAGE_SIZE + 1;
+    config.samplesPerChunk = 7;
+
+    assertOnDemandTableMatchesParsedTable(config);
+  }
+
+  @Test
+  public void parseStblOnDemand_withSparseKeyFrames_matchesParseStbl() throws IOException {
+    SyntheticMoov.TrackConfig config = createConfig();
+    // Leave whole pages without synchronization samples.
+    config.keyFrameInterval = 3 * PagedSampleTable.PAGE_SIZE + 5;
+
+    assertOnDemandTableMatchesParsedTable(config);
+  }
+
+  @Test
+  public void parseStblOnDemand_withEditListKeepingAllSamples_matchesParseStbl()
+      throws IOException {
+    SyntheticMoov.TrackConfig config = createConfig();
+    config.compositionOffsets = true;
+    // Start the edit after the first frame, so that it becomes preroll, and end it after the last
+    // frame is displayed, so that no samples are removed.
+    long mediaEndTime = (long) (config.sampleCount + 2) * config.sampleDuration;
+    config.edit =
+        new long[] {
+          /* mediaTime= */ config.sampleDuration,
+          /* duration= */ mediaEndTime * SyntheticMoov.MOVIE_TIMESCALE / config.timescale + 1
+        };
+
+    assertOnDemandTableMatchesParsedTable(config);
+  }
+
+  @Test
+  public void parseStblOnDemand_withFewSamples_fallsBackToParseStbl() throws IOException {
+    SyntheticMoov.TrackConfig config = createConfig();
+    config.sampleCount = 100;
+    Mp4Box.ContainerBox moov = SyntheticMoov.createMoov(config);
+
+    assertThat(parseTraks(moov, /* onDemand= */ true).get(0).isDecodedOnDemand()).isFalse();
+  }
+
+  private static SyntheticMoov.TrackConfig createConfig() {
+    SyntheticMoov.TrackConfig config = new SyntheticMoov.TrackConfig();
+    config.sampleCount = 10_000;
+    return config;
+  }
+
+  private static void assertOnDemandTableMatchesParsedTable(SyntheticMoov.TrackConfig config)
+      throws IOException {
+    Mp4Box.ContainerBox moov = SyntheticMoov.createMoov(config);
+    TrackSampleTable expected = parseTraks(moov, /* onDemand= */ false).get(0);
+    TrackSampleTable actual = parseTraks(moov, /* onDemand= */ true).get(0);
+
+    assertThat(actual.isDecodedOnDemand()).isTrue();
+    assertThat(actual.track.format).isEqualTo(expected.track.format);
+    assertThat(actual.sampleCount).isEqualTo(expected.sampleCount);
+    assertThat(actual.maximumSize).isEqualTo(expected.maximumSize);
+    assertThat(actual.durationUs).isEqualTo(expected.durationUs);
+    for (int i = 0; i < expected.sampleCount; i++) {
+      assertThat(actual.getOffset(i)).isEqualTo(expected.getOffset(i));
+      assertThat(actual.getSize(i)).isEqualTo(expected.getSize(i));
+      assertThat(actual.getTimestampUs(i)).isEqualTo(expected.getTimestampUs(i));
+      assertThat(actual.getFlags(i)).isEqualTo(expected.getFlags(i));
+    }
+    // Look up synchronization samples around the first, middle and last samples, and beyond them.
+    long lastTimestampUs = expected.timestampsUs[expected.sampleCount - 1];
+    long[] timesUs = {
+      -1, 0, 1, expected.timestampsUs[expected.sampleCount / 2], lastTimestampUs - 1,
+      lastTimestampUs, lastTimestampUs + 1
+    };
+    for (long timeUs : timesUs) {
+      assertThat(actual.getIndexOfEarlierOrEqualSynchronizationSample(timeUs))
+          .isEqualTo(expected.getIndexOfEarlierOrEqualSynchronizationSample(timeUs));
+      assertThat(actual.getIndexOfLaterOrEqualSynchronizationSample(timeUs))
+          .isEqualTo(expected.getIndexOfLaterOrEqualSynchronizationSample(timeUs));
+    }
+    // Look up synchronization samples at the timestamps of key frames, of the frames around them,
+    // which may be reordered past them, and of other frames.
+    for (int i = 0; i < expected.sampleCount; i++) {
+      if (i % 97 != 0 && !isNearKeyFrame(expected, i)) {
+        continue;
+      }
+      long timeUs = expected.timestampsUs[i];
+      assertThat(actual.getIndexOfEarlierOrEqualSynchronizationSample(timeUs))
+          .isEqualTo(expected.getIndexOfEarlierOrEqualSynchronizationSample(timeUs));
+      assertThat(actual.getIndexOfLaterOrEqualSynchronizationSample(timeUs))
+          .isEqualTo(expected.getIndexOfLaterOrEqualSynchronizationSample(timeUs));
+    }
+  }
+
+  private static boolean isNearKeyFrame(TrackSampleTable table, int sampleIndex) {
+    for (int i = max(0, sampleIndex - 2); i <= min(table.sampleCount - 1, sampleIndex + 2); i++) {
+      if ((table.flags[i] & C.BUFFER_FLAG_KEY_FRAME) != 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static List<TrackSampleTable> parseTraks(Mp4Box.ContainerBox moov, boolean onDemand)
+      throws IOException {
+    GaplessInfoHolder gaplessInfoHolder = new GaplessInfoHolder();
+    @Nullable
+    BoxParser.SampleTableSupplier sampleTableSupplier =
+        onDemand
+            ? (track, stbl) -> BoxParser.parseStblOnDemand(track, stbl, gaplessInfoHolder)
+            : null;
+    return BoxParser.parseTraks(
+        moov,
+        gaplessInfoHolder,
+        /* duration= */ C.TIME_UNSET,
+        /* drmInitData= */ null,
+        /* ignoreEditLists= */ false,
+        /* isQuickTime= */ false,
+        /* modifyTrackFunction= */ track -> track,
+        sampleTableSupplier);
+  }
+}
@@ -0,0 +1,496 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.videoplayer.extractor.mp4;
+
+import static com.example.videoplayer.common.util.Assertions.checkNotNull;
+
+import androidx.annotation.Nullable;
+import com.example.videoplayer.common.util.ParsableByteArray;
+import com.example.videoplayer.common.util.Util;
+import com.example.videoplayer.container.Mp4Box;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Builds moov boxes and fragmented MP4 streams with synthetic H.263 video tracks, for testing how
+ * sample tables and fragments are parsed.
+ */
+/* package */ final class SyntheticMoov {
+
+  /** The timescale of the movie. */
+  public static final int MOVIE_TIMESCALE = 1_000;
+
+  /** Describes a synthetic video track. */
+  public static final class TrackConfig {
+
+    public int sampleCount = 100;
+    public int timescale = 30_000;
+    public int sampleDuration = 1_001;
+    public int keyFrameInterval = 30;
+    public int samplesPerChunk = 10;
+    public boolean compositionOffsets;
+
+    /**
+     * Whether frames are reordered past key frames, as in open GOP streams. Only applies if there
+     * are composition offsets.
+     */
+    public boolean openGop;
+
+    public boolean fixedSampleSize;
+
+    /** The media time and duration of a single edit, or null if there's no edit list. */
+    @Nullable public long[] edit;
+  }
+
+  private SyntheticMoov() {}
+
+  /** Returns a moov box containing a track for each of {@code tracks}. */
+  public static Mp4Box.ContainerBox createMoov(TrackConfig... tracks) {
+    List<byte[]> children = new ArrayList<>();
+    long movieDuration = 0;
+    for (TrackConfig track : tracks) {
+      movieDuration = Math.max(movieDuration, getMovieDuration(track));
+    }
+    children.add(createMvhd(movieDuration));
+    for (int i = 0; i < tracks.length; i++) {
+      children.add(createTrak(/* trackId= */ i + 1, tracks[i]));
+    }
+    byte[] moov = box("moov", children.toArray(new byte[0][]));
+    return (Mp4Box.ContainerBox) parseBox(new ParsableByteArray(moov));
+  }
+
+  /**
+   * Returns a fragmented MP4 stream containing {@code track}, with a segment index and {@code
+   * samplesPerFragment} samples in each fragment. Each byte of a sample's data is its index.
+   */
+  public static byte[] createFragmentedMp4(TrackConfig track, int samplesPerFragment) {
+    ByteWriter ftyp = new ByteWriter();
+    ftyp.writeType("iso6");
+    ftyp.writeInt(0); // Minor version.
+    ftyp.writeType("iso6");
+    ftyp.writeType("dash");
+
+    // The moov box describes the track, but its samples are all in fragments.
+    TrackConfig emptyTrack = new TrackConfig();
+    emptyTrack.sampleCount = 0;
+    emptyTrack.timescale = track.timescale;
+    emptyTrack.sampleDuration = track.sampleDuration;
+    ByteWriter trex = new ByteWriter();
+    trex.writeInt(1); // Track ID.
+    trex.writeInt(1); // Default sample description index.
+    trex.writeZeros(12); // Default sample duration, size and flags.
+    byte[] moov =
+        box(
+            "moov",
+            createMvhd(/* duration= */ 0),
+            createTrak(/* trackId= */ 1, emptyTrack),
+            box("mvex", fullBox("trex", trex.toByteArray())));
+
+    List<byte[]> fragments = new ArrayList<>();
+    for (int i = 0; i < track.sampleCount; i += samplesPerFragment) {
+      fragments.add(
+          createFragment(
+              track,
+              /* sequenceNumber= */ fragments.size() + 1,
+              /* firstSampleIndex= */ i,
+              /* sampleCount= */ Math.min(samplesPerFragment, track.sampleCount - i)));
+    }
+
+    ByteWriter sidx = new ByteWriter();
+    sidx.writeInt(1); // Reference ID.
+    sidx.writeInt(track.timescale);
+    sidx.writeInt(0); // Earliest presentation time.
+    sidx.writeInt(0); // First offset.
+    sidx.writeShort(0); // Reserved.
+    sidx.writeShort(fragments.size());
+    for (int i = 0; i < fragments.size(); i++) {
+      int sampleCount = Math.min(samplesPerFragment, track.sampleCount - i * samplesPerFragment);
+      sidx.writeInt(fragments.get(i).length);
+      sidx.writeInt(sampleCount * track.sampleDuration);
+      sidx.writeInt(0x90000000); // Starts with a type 1 stream access point.
+    }
+
+    ByteWriter writer = new ByteWriter();
+    writer.write(box("ftyp", ftyp.toByteArray()));
+    writer.write(moov);
+    writer.write(fullBox("sidx", sidx.toByteArray()));
+    for (byte[] fragment : fragments) {
+      writer.write(fragment);
+    }
+    return writer.toByteArray();
+  }
+
+  /** Returns the stbl box of the track at {@code trackIndex} in {@code moov}. */
+  public static Mp4Box.ContainerBox getStbl(Mp4Box.ContainerBox moov, int trackIndex) {
+    List<Mp4Box.ContainerBox> traks = new ArrayList<>();
+    for (Mp4Box.ContainerBox child : moov.containerChildren) {
+      if (child.type == Mp4Box.TYPE_trak) {
+        traks.add(child);
+      }
+    }
+    return checkNotNull(
+        checkNotNull(
+                checkNotNull(traks.get(trackIndex).getContainerBoxOfType(Mp4Box.TYPE_mdia))
+                    .getContainerBoxOfType(Mp4Box.TYPE_minf))
+            .getContainerBoxOfType(Mp4Box.TYPE_stbl));
+  }
+
+  /** Returns the size of the sample at {@code index}. */
+  public static int getSampleSize(TrackConfig track, int index) {
+    if (track.fixedSampleSize) {
+      return 1_000;
+    }
+    return index % track.keyFrameInterval == 0 ? 5_000 + index % 7 : 500 + (index * 37) % 500;
+  }
+
+  /**
+   * Returns whether a frame is displayed two frames after it's decoded. Unless the stream has open
+   * GOPs, frames aren't reordered past key frames.
+   */
+  private static boolean isDisplayedLater(TrackConfig track, int index) {
+    return index % 2 == 1 && (track.openGop || (index + 1) % track.keyFrameInterval != 0);
+  }
+
+  private static long getMovieDuration(TrackConfig track) {
+    long mediaDuration = (long) track.sampleCount * track.sampleDuration;
+    return Util.scaleLargeTimestamp(mediaDuration, MOVIE_TIMESCALE, track.timescale);
+  }
+
+  private static byte[] createMvhd(long duration) {
+    ByteWriter writer = new ByteWriter();
+    writer.writeInt(0); // Creation time.
+    writer.writeInt(0); // Modification time.
+    writer.writeInt(MOVIE_TIMESCALE);
+    writer.writeInt((int) duration);
+    writer.writeInt(0x00010000); // Rate.
+    writer.writeShort(0x0100); // Volume.
+    writer.writeZeros(10);
+    writeIdentityMatrix(writer);
+    writer.writeZeros(24);
+    writer.writeInt(1_000); // Next track ID.
+    return fullBox("mvhd", writer.toByteArray());
+  }
+
+  private static byte[] createTrak(int trackId, TrackConfig track) {
+    List<byte[]> children = new ArrayList<>();
+    children.add(createTkhd(trackId, getMovieDuration(track)));
+    if (track.edit != null) {
+      ByteWriter elst = new ByteWriter();
+      elst.writeInt(1); // Entry count.
+      elst.writeInt((int) track.edit[1]);
+      elst.writeInt((int) track.edit[0]);
+      elst.writeShort(1); // Media rate integer.
+      elst.writeShort(0); // Media rate fraction.
+      children.add(box("edts", fullBox("elst", elst.toByteArray())));
+    }
+    children.add(
+        box("mdia", createMdhd(track), createHdlr(), box("minf", createStbl(track))));
+    return box("trak", children.toArray(new byte[0][]));
+  }
+
+  private static byte[] createTkhd(int trackId, long duration) {
+    ByteWriter writer = new ByteWriter();
+    writer.writeInt(0); // Creation time.
+    writer.writeInt(0); // Modification time.
+    writer.writeInt(trackId);
+    writer.writeInt(0); // Reserved.
+    writer.writeInt((int) duration);
+    writer.writeZeros(8);
+    writer.writeShort(0); // Layer.
+    writer.writeShort(0); // Alternate group.
+    writer.writeShort(0); // Volume.
+    writer.writeShort(0); // Reserved.
+    writeIdentityMatrix(writer);
+    writer.writeInt(176 << 16); // Width.
+    writer.writeInt(144 << 16); // Height.
+    return fullBox("tkhd", writer.toByteArray());
+  }
+
+  private static byte[] createMdhd(TrackConfig track) {
+    ByteWriter writer = new ByteWriter();
+    writer.writeInt(0); // Creation time.
+    writer.writeInt(0); // Modification time.
+    writer.writeInt(track.timescale);
+    writer.writeInt(track.sampleCount * track.sampleDuration);
+    writer.writeShort(0x55C4); // Language ("und").
+    writer.writeShort(0); // Quality.
+    return fullBox("mdhd", writer.toByteArray());
+  }
+
+  private static byte[] createHdlr() {
+    ByteWriter writer = new ByteWriter();
+    writer.writeInt(0); // Pre-defined.
+    writer.writeType("vide");
+    writer.writeZeros(12);
+    writer.writeZeros(1); // Empty name.
+    return fullBox("hdlr", writer.toByteArray());
+  }
+
+  private static byte[] createStbl(TrackConfig track) {
+    List<byte[]> children = new ArrayList<>();
+    children.add(createStsd());
+
+    ByteWriter stts = new ByteWriter();
+    stts.writeInt(1);
+    stts.writeInt(track.sampleCount);
+    stts.writeInt(track.sampleDuration);
+    children.add(fullBox("stts", stts.toByteArray()));
+
+    if (track.compositionOffsets) {
+      // Alternate between P frames that are displayed later and B frames that aren't.
+      ByteWriter ctts = new ByteWriter();
+      ctts.writeInt(track.sampleCount);
+      for (int i = 0; i < track.sampleCount; i++) {
+        ctts.writeInt(1);
+        ctts.writeInt(isDisplayedLater(track, i) ? 2 * track.sampleDuration : 0);
+      }
+      children.add(fullBox("ctts", ctts.toByteArray()));
+    }
+
+    ByteWriter stss = new ByteWriter();
+    int keyFrameCount = Util.ceilDivide(track.sampleCount, track.keyFrameInterval);
+    stss.writeInt(keyFrameCount);
+    for (int i = 0; i < keyFrameCount; i++) {
+      stss.writeInt(i * track.keyFrameInterval + 1);
+    }
+    children.add(fullBox("stss", stss.toByteArray()));
+
+    int chunkCount = Util.ceilDivide(track.sampleCount, track.samplesPerChunk);
+    ByteWriter stsc = new ByteWriter();
+    int lastChunkSampleCount = track.sampleCount - (chunkCount - 1) * track.samplesPerChunk;
+    boolean lastChunkDiffers = lastChunkSampleCount != track.samplesPerChunk;
+    stsc.writeInt(lastChunkDiffers ? 2 : 1);
+    stsc.writeInt(1); // First chunk.
+    stsc.writeInt(track.samplesPerChunk);
+    stsc.writeInt(1); // Sample description index.
+    if (lastChunkDiffers) {
+      stsc.writeInt(chunkCount);
+      stsc.writeInt(lastChunkSampleCount);
+      stsc.writeInt(1);
+    }
+    children.add(fullBox("stsc", stsc.toByteArray()));
+
+    ByteWriter stsz = new ByteWriter();
+    stsz.writeInt(track.fixedSampleSize ? getSampleSize(track, 0) : 0);
+    stsz.writeInt(track.sampleCount);
+    if (!track.fixedSampleSize) {
+      for (int i = 0; i < track.sampleCount; i++) {
+        stsz.writeInt(getSampleSize(track, i));
+      }
+    }
+    children.add(fullBox("stsz", stsz.toByteArray()));
+
+    ByteWriter stco = new ByteWriter();
+    stco.writeInt(chunkCount);
+    long offset = 1_000;
+    for (int i = 0; i < track.sampleCount; i++) {
+      if (i % track.samplesPerChunk == 0) {
+        stco.writeInt((int) offset);
+      }
+      offset += getSampleSize(track, i);
+    }
+    children.add(fullBox("stco", stco.toByteArray()));
+
+    return box("stbl", children.toArray(new byte[0][]));
+  }
+
+  private static byte[] createFragment(
+      TrackConfig track, int sequenceNumber, int firstSampleIndex, int sampleCount) {
+    ByteWriter mfhd = new ByteWriter();
+    mfhd.writeInt(sequenceNumber);
+    ByteWriter tfhd = new ByteWriter();
+    tfhd.writeInt(1); // Track ID.
+    ByteWriter tfdt = new ByteWriter();
+    long baseMediaDecodeTime = (long) firstSampleIndex * track.sampleDuration;
+    tfdt.writeInt((int) (baseMediaDecodeTime >>> 32));
+    tfdt.writeInt((int) baseMediaDecodeTime);
+    ByteWriter mdat = new ByteWriter();
+    for (int i = firstSampleIndex; i < firstSampleIndex + sampleCount; i++) {
+      byte[] sampleData = new byte[getSampleSize(track, i)];
+      Arrays.fill(sampleData, (byte) i);
+      mdat.write(sampleData);
+    }
+
+    // The data offset doesn't change the size of the moof box, so it's built twice to find it.
+    byte[] moof = new byte[0];
+    for (int i = 0; i < 2; i++) {
+      byte[] trun = createTrun(track, firstSampleIndex, sampleCount, moof.length + 8);
+      moof =
+          box(
+              "moof",
+              fullBox("mfhd", mfhd.toByteArray()),
+              box(
+                  "traf",
+                  fullBox("tfhd", /* versionAndFlags= */ 0x020000, tfhd.toByteArray()),
+                  fullBox("tfdt", /* versionAndFlags= */ 0x01000000, tfdt.toByteArray()),
+                  trun));
+    }
+    ByteWriter writer = new ByteWriter();
+    writer.write(moof);
+    writer.write(box("mdat", mdat.toByteArray()));
+    return writer.toByteArray();
+  }
+
+  private static byte[] createTrun(
+      TrackConfig track, int firstSampleIndex, int sampleCount, int dataOffset) {
+    // Data offset, sample duration, size and flags, and composition time offsets if needed.
+    int flags = 0x000701 | (track.compositionOffsets ? 0x000800 : 0);
+    ByteWriter trun = new ByteWriter();
+    trun.writeInt(sampleCount);
+    trun.writeInt(dataOffset);
+    for (int i = firstSampleIndex; i < firstSampleIndex + sampleCount; i++) {
+      boolean isKeyFrame = i % track.keyFrameInterval == 0;
+      trun.writeInt(track.sampleDuration);
+      trun.writeInt(getSampleSize(track, i));
+      trun.writeInt(isKeyFrame ? 0x02000000 : 0x01010000);
+      if (track.compositionOffsets) {
+        trun.writeInt(isDisplayedLater(track, i) ? 2 * track.sampleDuration : 0);
+      }
+    }
+    return fullBox("trun", flags, trun.toByteArray());
+  }
+
+  private static byte[] createStsd() {
+    ByteWriter entry = new ByteWriter();
+    entry.writeZeros(6); // Reserved.
+    entry.writeShort(1); // Data reference index.
+    entry.writeZeros(16);
+    entry.writeShort(176); // Width.
+    entry.writeShort(144); // Height.
+    entry.writeInt(0x00480000); // Horizontal resolution.
+    entry.writeInt(0x00480000); // Vertical resolution.
+    entry.writeInt(0); // Reserved.
+    entry.writeShort(1); // Frame count.
+    entry.writeZeros(32); // Compressor name.
+    entry.writeShort(0x18); // Depth.
+    entry.writeShort(-1); // Pre-defined.
+    ByteWriter stsd = new ByteWriter();
+    stsd.writeInt(1); // Entry count.
+    stsd.write(box("H263", entry.toByteArray()));
+    return fullBox("stsd", stsd.toByteArray());
+  }
+
+  private static void writeIdentityMatrix(ByteWriter writer) {
+    int[] matrix = {0x00010000, 0, 0, 0, 0x00010000, 0, 0, 0, 0x40000000};
+    for (int value : matrix) {
+      writer.writeInt(value);
+    }
+  }
+
+  private static byte[] box(String type, byte[]... payloads) {
+    ByteWriter writer = new ByteWriter();
+    int size = Mp4Box.HEADER_SIZE;
+    for (byte[] payload : payloads) {
+      size += payload.length;
+    }
+    writer.writeInt(size);
+    writer.writeType(type);
+    for (byte[] payload : payloads) {
+      writer.write(payload);
+    }
+    return writer.toByteArray();
+  }
+
+  private static byte[] fullBox(String type, byte[] payload) {
+    return fullBox(type, /* versionAndFlags= */ 0, payload);
+  }
+
+  private static byte[] fullBox(String type, int versionAndFlags, byte[] payload) {
+    ByteWriter header = new ByteWriter();
+    header.writeInt(versionAndFlags);
+    return box(type, header.toByteArray(), payload);
+  }
+
+  /** Parses the box at the position of {@code data}, as {@code Mp4Extractor} does. */
+  private static Mp4Box parseBox(ParsableByteArray data) {
+    int startPosition = data.getPosition();
+    int size = data.readInt();
+    int type = data.readInt();
+    int endPosition = startPosition + size;
+    if (type == Mp4Box.TYPE_moov
+        || type == Mp4Box.TYPE_trak
+        || type == Mp4Box.TYPE_mdia
+        || type == Mp4Box.TYPE_minf
+        || type == Mp4Box.TYPE_stbl
+        || type == Mp4Box.TYPE_edts) {
+      Mp4Box.ContainerBox containerBox = new Mp4Box.ContainerBox(type, endPosition);
+      while (data.getPosition() < endPosition) {
+        Mp4Box child = parseBox(data);
+        if (child instanceof Mp4Box.ContainerBox) {
+          containerBox.add((Mp4Box.ContainerBox) child);
+        } else {
+          containerBox.add((Mp4Box.LeafBox) child);
+        }
+      }
+      return containerBox;
+    }
+    byte[] boxData = new byte[size];
+    System.arraycopy(data.getData(), startPosition, boxData, 0, size);
+    data.setPosition(endPosition);
+    return new Mp4Box.LeafBox(type, new ParsableByteArray(boxData));
+  }
+
+  private static final class ByteWriter {
+
+    private final ByteArrayOutputStream byteArrayOutputStream;
+    private final DataOutputStream output;
+
+    public ByteWriter() {
+      byteArrayOutputStream = new ByteArrayOutputStream();
+      output = new DataOutputStream(byteArrayOutputStream);
+    }
+
+    public void writeInt(int value) {
+      try {
+        output.writeInt(value);
+      } catch (IOException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    public void writeShort(int value) {
+      try {
+        output.writeShort(value);
+      } catch (IOException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    public void writeZeros(int length) {
+      write(new byte[length]);
+    }
+
+    public void writeType(String type) {
+      write(Util.getUtf8Bytes(type));
+    }
+
+    public void write(byte[] data) {
+      try {
+        output.write(data);
+      } catch (IOException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    public byte[] toByteArray() {
+      return byteArrayOutputStream.toByteArray();
+    }
+  }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.videoplayer.extractor.mp4;
+
+import static com.example.videoplayer.common.util.Assertions.checkNotNull;
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.annotation.Nullable;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.example.videoplayer.common.C;
+import com.example.videoplayer.common.Format;
+import com.example.videoplayer.container.Mp4Box;
+import com.example.videoplayer.extractor.GaplessInfoHolder;
+import java.io.IOException;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Tests {@link TrackSampleTableCodec}. */
+@RunWith(AndroidJUnit4.class)
+public final class TrackSampleTableCodecTest {
+
+  @Test
+  public void decode_restoresSampleTablesAsParsed() throws Exception {
+    SyntheticMoov.TrackConfig config = new SyntheticMoov.TrackConfig();
+    config.compositionOffsets = true;
+    Mp4Box.ContainerBox moov = SyntheticMoov.createMoov(config);
+
+    List<TrackSampleTable> parsedTables = parseTraks(moov, /* sampleTableSupplier= */ null);
+    List<TrackSampleTable> decodedTables = encodeAndDecode(moov, parsedTables);
+
+    assertSampleTablesEqual(decodedTables, parsedTables);
+  }
+
+  @Test
+  public void decode_restoresFrameRateAndAverageBitrate() throws Exception {
+    Mp4Box.ContainerBox moov = SyntheticMoov.createMoov(new SyntheticMoov.TrackConfig());
+    List<TrackSampleTable> parsedTables = parseTraks(moov, /* sampleTableSupplier= */ null);
+    Format parsedFormat = parsedTables.get(0).track.format;
+    assertThat(parsedFormat.frameRate).isGreaterThan(0);
+    assertThat(parsedFormat.averageBitrate).isGreaterThan(0);
+
+    List<TrackSampleTable> decodedTables = encodeAndDecode(moov, parsedTables);
+
+    assertThat(decodedTables.get(0).track.format).isEqualTo(parsedFormat);
+  }
+
+  @Test
+  public void decode_withEditListRemovingPreroll_restoresPrerollFlag() throws Exception {
+    SyntheticMoov.TrackConfig config = new SyntheticMoov.TrackConfig();
+    // Start the edit two frames after the first key frame, so that those frames become preroll.
+    long editMediaTime = 2L * config.sampleDuration;
+    long editDuration = 3_000;
+    config.edit = new long[] {editMediaTime, editDuration};
+    Mp4Box.ContainerBox moov = SyntheticMoov.createMoov(config);
+    List<TrackSampleTable> parsedTables = parseTraks(moov, /* sampleTableSupplier= */ null);
+    assertThat(parsedTables.get(0).track.format.hasPrerollSamples).isTrue();
+
+    List<TrackSampleTable> decodedTables = encodeAndDecode(moov, parsedTables);
+
+    assertSampleTablesEqual(decodedTables, parsedTables);
+  }
+
+  @Test
+  public void decode_withDifferentEditListHandling_returnsNull() throws Exception {
+    Mp4Box.ContainerBox moov = SyntheticMoov.createMoov(new SyntheticMoov.TrackConfig());
+    List<TrackSampleTable> parsedTables = parseTraks(moov, /* sampleTableSupplier= */ null);
+    byte[] data =
+        TrackSampleTableCodec.encode(
+            moov, /* ignoreEditLists= */ false, new GaplessInfoHolder(), parsedTables);
+
+    assertThat(TrackSampleTableCodec.decode(data, moov, /* ignoreEditLists= */ true)).isNull();
+  }
+
+  @Test
+  public void getSampleTable_withDifferentSampleCount_returnsNull() throws Exception {
+    SyntheticMoov.TrackConfig config = new SyntheticMoov.TrackConfig();
+    Mp4Box.ContainerBox moov = SyntheticMoov.createMoov(config);
+    List<TrackSampleTable> parsedTables = parseTraks(moov, /* sampleTableSupplier= */ null);
+    byte[] data =
+        TrackSampleTableCodec.encode(
+            moov, /* ignoreEditLists= */ false, new GaplessInfoHolder(), parsedTables);
+    TrackSampleTableCodec.DecodedSampleTables decodedTables =
+        checkNotNull(TrackSampleTableCodec.decode(data, moov, /* ignoreEditLists= */ false));
+    config.sampleCount++;
+    Mp4Box.ContainerBox otherStbl = SyntheticMoov.getStbl(SyntheticMoov.createMoov(config), 0);
+
+    assertThat(decodedTables.getSampleTable(parsedTables.get(0).track, otherStbl)).isNull();
+  }
+
+  private static List<TrackSampleTable> encodeAndDecode(
+      Mp4Box.ContainerBox moov, List<TrackSampleTable> parsedTables) throws IOException {
+    GaplessInfoHolder gaplessInfoHolder = new GaplessInfoHolder();
+    byte[] data =
+        TrackSampleTableCodec.encode(
+            moov, /* ignoreEditLists= */ false, gaplessInfoHolder, parsedTables);
+    TrackSampleTableCodec.DecodedSampleTables decodedTables =
+        checkNotNull(TrackSampleTableCodec.decode(data, moov, /* ignoreEditLists= */ false));
+    return parseTraks(moov, decodedTables);
+  }
+
+  private static List<TrackSampleTable> parseTraks(
+      Mp4Box.ContainerBox moov, @Nullable BoxParser.SampleTableSupplier sampleTableSupplier)
+      throws IOException {
+    return BoxParser.parseTraks(
+        moov,
+        new GaplessInfoHolder(),
+        /* duration= */ C.TIME_UNSET,
+        /* drmInitData= */ null,
+        /* ignoreEditLists= */ false,
+        /* isQuickTime= */ false,
+        /* modifyTrackFunction= */ track -> track,
+        sampleTableSupplier);
+  }
+
+  private static void assertSampleTablesEqual(
+      List<TrackSampleTable> actualTables, List<TrackSampleTable> expectedTables) {
+    assertThat(actualTables).hasSize(expectedTables.size());
+    for (int i = 0; i < expectedTables.size(); i++) {
+      TrackSampleTable actual = actualTables.get(i);
+      TrackSampleTable expected = expectedTables.get(i);
+      assertThat(actual.track.format).isEqualTo(expected.track.format);
+      assertThat(actual.sampleCount).isEqualTo(expected.sampleCount);
+      assertThat(actual.maximumSize).isEqualTo(expected.maximumSize);
+      assertThat(actual.durationUs).isEqualTo(expected.durationUs);
+      for (int j = 0; j < expected.sampleCount; j++) {
+        assertThat(actual.getOffset(j)).isEqualTo(expected.getOffset(j));
+        assertThat(actual.getSize(j)).isEqualTo(expected.getSize(j));
+        assertThat(actual.getTimestampUs(j)).isEqualTo(expected.getTimestampUs(j));
+        assertThat(actual.getFlags(j)).isEqualTo(expected.getFlags(j));
+      }
+    }
+  }
+}
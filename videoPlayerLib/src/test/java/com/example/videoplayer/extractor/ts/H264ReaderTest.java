@@ -0,0 +1,214 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.videoplayer.extractor.ts;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.lang.Math.min;
+
+import androidx.annotation.Nullable;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.example.videoplayer.common.C;
+import com.example.videoplayer.common.DataReader;
+import com.example.videoplayer.common.Format;
+import com.example.videoplayer.common.MimeTypes;
+import com.example.videoplayer.common.ParserException;
+import com.example.videoplayer.common.util.ParsableByteArray;
+import com.example.videoplayer.extractor.ExtractorOutput;
+import com.example.videoplayer.extractor.SeekMap;
+import com.example.videoplayer.extractor.TrackOutput;
+import com.google.common.collect.ImmutableList;
+import com.google.common.primitives.Bytes;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Tests {@link H264Reader}, for streams without access unit delimiters. */
+@RunWith(AndroidJUnit4.class)
+public final class H264ReaderTest {
+
+  // Three byte start codes, since the reader can't tell whether a four byte start code that's split
+  // across chunks is a three byte one preceded by zero padding.
+  private static final byte[] START_CODE = {0, 0, 1};
+  // Baseline profile, 320x240, with 4 bit frame numbers and picture order count type 2.
+  private static final byte[] SPS = {
+    0x67, 0x42, (byte) 0xC0, 0x1E, (byte) 0xDA, 0x05, 0x07, (byte) 0xE4
+  };
+  private static final byte[] PPS = {0x68, (byte) 0xCE, 0x3C, (byte) 0x80};
+  // Slice headers with the first macroblock, slice type, PPS id and frame number (and IDR id).
+  private static final byte[] IDR_SLICE_HEADER = {0x65, (byte) 0x88, (byte) 0x86};
+  private static final byte[][] P_SLICE_HEADERS = {
+    {0x41, (byte) 0x9A, 0x30}, {0x41, (byte) 0x9A, 0x50}, {0x41, (byte) 0x9A, 0x70}
+  };
+  private static final int SLICE_DATA_LENGTH = 300;
+
+  @Test
+  public void consume_wholeStream_outputsSamplePerPicture() throws ParserException {
+    byte[] stream = createStream();
+    int sliceSize = START_CODE.length + IDR_SLICE_HEADER.length + SLICE_DATA_LENGTH;
+
+    List<String> samples = readSamples(stream, stream.length);
+
+    // The first sample starts at the first slice, after the parameter sets.
+    assertThat(samples)
+        .containsExactly(
+            "time=0, flags=" + C.BUFFER_FLAG_KEY_FRAME + ", size=" + sliceSize,
+            "time=0, flags=0, size=" + sliceSize,
+            "time=0, flags=0, size=" + sliceSize,
+            "time=0, flags=0, size=" + sliceSize)
+        .inOrder();
+  }
+
+  @Test
+  public void consume_splitAtEachPosition_outputsSameSamples() throws ParserException {
+    byte[] stream = createStream();
+    List<String> expectedSamples = readSamples(stream, stream.length);
+
+    // Splits in slice headers make the reader buffer them, and splits elsewhere don't.
+    for (int splitPosition = 1; splitPosition < stream.length; splitPosition++) {
+      assertThat(readSamples(stream, splitPosition, stream.length - splitPosition))
+          .isEqualTo(expectedSamples);
+    }
+  }
+
+  @Test
+  public void consume_smallChunks_outputsSameSamples() throws ParserException {
+    byte[] stream = createStream();
+    List<String> expectedSamples = readSamples(stream, stream.length);
+
+    for (int chunkLength = 1; chunkLength <= 5; chunkLength++) {
+      int[] chunkLengths = new int[(stream.length + chunkLength - 1) / chunkLength];
+      Arrays.fill(chunkLengths, chunkLength);
+      chunkLengths[chunkLengths.length - 1] =
+          stream.length - (chunkLengths.length - 1) * chunkLength;
+
+      assertThat(readSamples(stream, chunkLengths)).isEqualTo(expectedSamples);
+    }
+  }
+
+  /** Returns a stream with SPS, PPS and IDR slice, followed by three P slices. */
+  private static byte[] createStream() {
+    List<byte[]> nalUnits = new ArrayList<>();
+    nalUnits.add(START_CODE);
+    nalUnits.add(SPS);
+    nalUnits.add(START_CODE);
+    nalUnits.add(PPS);
+    nalUnits.add(START_CODE);
+    nalUnits.add(createSlice(IDR_SLICE_HEADER));
+    for (byte[] sliceHeader : P_SLICE_HEADERS) {
+      nalUnits.add(START_CODE);
+      nalUnits.add(createSlice(sliceHeader));
+    }
+    return Bytes.concat(nalUnits.toArray(new byte[0][]));
+  }
+
+  private static byte[] createSlice(byte[] sliceHeader) {
+    byte[] slice = Arrays.copyOf(sliceHeader, sliceHeader.length + SLICE_DATA_LENGTH);
+    Arrays.fill(slice, sliceHeader.length, slice.length, (byte) 0x55);
+    return slice;
+  }
+
+  /**
+   * Passes {@code stream} to a reader in one PES packet, in chunks of the given lengths, and
+   * returns a description of each sample that's output.
+   */
+  private static List<String> readSamples(byte[] stream, int... chunkLengths)
+      throws ParserException {
+    H264Reader reader =
+        new H264Reader(
+            new SeiReader(ImmutableList.of(), MimeTypes.VIDEO_MP2T),
+            /* allowNonIdrKeyframes= */ false,
+            /* detectAccessUnits= */ true,
+            MimeTypes.VIDEO_MP2T);
+    RecordingTrackOutput trackOutput = new RecordingTrackOutput();
+    reader.createTracks(
+        new SingleTrackExtractorOutput(trackOutput),
+        new TsPayloadReader.TrackIdGenerator(/* firstTrackId= */ 0, /* trackIdIncrement= */ 1));
+    reader.packetStarted(/* pesTimeUs= */ 0, /* flags= */ 0);
+    int position = 0;
+    for (int chunkLength : chunkLengths) {
+      // Pass each chunk in its own array, with other data around it. The data isn't zero, so that
+      // it can't be mistaken for the start of a four byte start code.
+      byte[] chunk = new byte[chunkLength + 2];
+      Arrays.fill(chunk, (byte) 0xFF);
+      System.arraycopy(stream, position, chunk, 1, chunkLength);
+      ParsableByteArray data = new ParsableByteArray(chunk, /* limit= */ chunkLength + 1);
+      data.setPosition(1);
+      reader.consume(data);
+      position += chunkLength;
+    }
+    reader.packetFinished(/* isEndOfInput= */ true);
+    return trackOutput.samples;
+  }
+
+  private static final class SingleTrackExtractorOutput implements ExtractorOutput {
+
+    private final TrackOutput trackOutput;
+
+    public SingleTrackExtractorOutput(TrackOutput trackOutput) {
+      this.trackOutput = trackOutput;
+    }
+
+    @Override
+    public TrackOutput track(int id, @C.TrackType int type) {
+      return trackOutput;
+    }
+
+    @Override
+    public void endTracks() {}
+
+    @Override
+    public void seekMap(SeekMap seekMap) {}
+  }
+
+  /** A {@link TrackOutput} that discards sample data, and records sample metadata. */
+  private static final class RecordingTrackOutput implements TrackOutput {
+
+    public final List<String> samples;
+
+    public RecordingTrackOutput() {
+      samples = new ArrayList<>();
+    }
+
+    @Override
+    public void format(Format format) {}
+
+    @Override
+    public int sampleData(
+        DataReader input, int length, boolean allowEndOfInput, @SampleDataPart int sampleDataPart)
+        throws IOException {
+      byte[] scratch = new byte[min(length, 4096)];
+      return input.read(scratch, 0, scratch.length);
+    }
+
+    @Override
+    public void sampleData(ParsableByteArray data, int length, @SampleDataPart int sampleDataPart) {
+      data.skipBytes(length);
+    }
+
+    @Override
+    public void sampleMetadata(
+        long timeUs,
+        @C.BufferFlags int flags,
+        int size,
+        int offset,
+        @Nullable CryptoData cryptoData) {
+      samples.add("time=" + timeUs + ", flags=" + flags + ", size=" + size);
+    }
+  }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.videoplayer.extractor.ts;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import androidx.annotation.Nullable;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.example.videoplayer.common.ParserException;
+import com.example.videoplayer.common.util.ParsableByteArray;
+import com.example.videoplayer.common.util.TimestampAdjuster;
+import com.example.videoplayer.extractor.ExtractorOutput;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Tests {@link ParallelPesDispatcher}. */
+@RunWith(AndroidJUnit4.class)
+public final class ParallelPesDispatcherTest {
+
+  private static final int TIMEOUT_MS = 10_000;
+
+  private ParallelPesDispatcher dispatcher;
+
+  @Before
+  public void setUp() {
+    dispatcher = new ParallelPesDispatcher(/* threadCount= */ 2, /* laneCapacity= */ 16);
+  }
+
+  @After
+  public void tearDown() {
+    dispatcher.release();
+  }
+
+  @Test(timeout = TIMEOUT_MS)
+  public void awaitIdle_afterConsume_readersSeePacketsInOrder() throws ParserException {
+    FakePayloadReader reader = new FakePayloadReader(/* failure= */ null);
+    TsPayloadReader wrappedReader = dispatcher.wrap(reader, /* programNumber= */ 1);
+
+    for (int i = 0; i < 10; i++) {
+      wrappedReader.consume(new ParsableByteArray(new byte[] {(byte) i}), /* flags= */ 0);
+    }
+    dispatcher.awaitIdle();
+
+    assertThat(reader.consumedBytes).containsExactly(0, 1, 2, 3, 4, 5, 6, 7, 8, 9).inOrder();
+  }
+
+  @Test(timeout = TIMEOUT_MS)
+  public void awaitIdle_afterReaderThrowsParserException_throwsParserException()
+      throws ParserException {
+    ParserException failure =
+        ParserException.createForMalformedContainer(/* message= */ null, /* cause= */ null);
+    FakePayloadReader reader = new FakePayloadReader(failure);
+    TsPayloadReader wrappedReader = dispatcher.wrap(reader, /* programNumber= */ 1);
+
+    wrappedReader.consume(new ParsableByteArray(new byte[] {0}), /* flags= */ 0);
+    wrappedReader.consume(new ParsableByteArray(new byte[] {1}), /* flags= */ 0);
+    ParserException thrown = assertThrows(ParserException.class, dispatcher::awaitIdle);
+
+    assertThat(thrown).isSameInstanceAs(failure);
+    assertThat(reader.consumedBytes).isEmpty();
+  }
+
+  @Test(timeout = TIMEOUT_MS)
+  public void awaitIdle_afterReaderThrowsError_throwsErrorInsteadOfBlocking()
+      throws ParserException {
+    Error failure = new StackOverflowError();
+    FakePayloadReader reader = new FakePayloadReader(failure);
+    TsPayloadReader wrappedReader = dispatcher.wrap(reader, /* programNumber= */ 1);
+
+    wrappedReader.consume(new ParsableByteArray(new byte[] {0}), /* flags= */ 0);
+    wrappedReader.consume(new ParsableByteArray(new byte[] {1}), /* flags= */ 0);
+    Error thrown = assertThrows(Error.class, dispatcher::awaitIdle);
+
+    assertThat(thrown).isSameInstanceAs(failure);
+  }
+
+  /** Records the first byte of each packet, or throws a failure for every packet. */
+  private static final class FakePayloadReader implements TsPayloadReader {
+
+    public final List<Integer> consumedBytes;
+
+    @Nullable private final Throwable failure;
+
+    public FakePayloadReader(@Nullable Throwable failure) {
+      this.failure = failure;
+      consumedBytes = new ArrayList<>();
+    }
+
+    @Override
+    public void init(
+        TimestampAdjuster timestampAdjuster,
+        ExtractorOutput extractorOutput,
+        TrackIdGenerator idGenerator) {}
+
+    @Override
+    public void seek() {}
+
+    @Override
+    public void consume(ParsableByteArray data, @Flags int flags) throws ParserException {
+      if (failure instanceof ParserException) {
+        throw (ParserException) failure;
+      } else if (failure instanceof Error) {
+        throw (Error) failure;
+      }
+      consumedBytes.add(data.readUnsignedByte());
+    }
+  }
+}
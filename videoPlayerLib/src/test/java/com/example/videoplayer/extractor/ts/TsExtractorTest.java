@@ -0,0 +1,333 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.videoplayer.extractor.ts;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.lang.Math.min;
+
+import android.util.SparseArray;
+import androidx.annotation.Nullable;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.example.videoplayer.common.C;
+import com.example.videoplayer.common.DataReader;
+import com.example.videoplayer.common.util.ParsableByteArray;
+import com.example.videoplayer.common.util.TimestampAdjuster;
+import com.example.videoplayer.extractor.DefaultExtractorInput;
+import com.example.videoplayer.extractor.Extractor;
+import com.example.videoplayer.extractor.ExtractorInput;
+import com.example.videoplayer.extractor.ExtractorOutput;
+import com.example.videoplayer.extractor.PositionHolder;
+import com.example.videoplayer.extractor.text.SubtitleParser;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Tests the batched packet path of {@link TsExtractor}, using payload readers that record the
+ * payloads they're given.
+ */
+@RunWith(AndroidJUnit4.class)
+public final class TsExtractorTest {
+
+  private static final int TS_PACKET_SIZE = TsExtractor.TS_PACKET_SIZE;
+  private static final int PAYLOAD_SIZE = TS_PACKET_SIZE - 4;
+  private static final int PID = 0x100;
+
+  @Test
+  public void read_packetsSplitAcrossReads_consumesEachPayloadWhole() throws IOException {
+    RecordingPayloadReader reader = new RecordingPayloadReader();
+    TsExtractor extractor = createExtractor(PID, reader);
+    ByteArrayOutputStream stream = new ByteArrayOutputStream();
+    for (int i = 0; i < 10; i++) {
+      stream.write(createPacket(PID, /* continuityCounter= */ i, /* payloadByte= */ i));
+    }
+
+    // Reads that end part way through packets, and don't line up with them.
+    readToEnd(extractor, stream.toByteArray(), /* maxReadLength= */ 97);
+
+    assertThat(reader.payloads).hasSize(10);
+    for (int i = 0; i < 10; i++) {
+      assertThat(reader.payloads.get(i)).isEqualTo(createPayload(/* payloadByte= */ i));
+    }
+    assertThat(reader.seekCount).isEqualTo(0);
+  }
+
+  @Test
+  public void read_packetsInOneRead_consumesAllPayloadsInOrder() throws IOException {
+    RecordingPayloadReader reader = new RecordingPayloadReader();
+    TsExtractor extractor = createExtractor(PID, reader);
+    ByteArrayOutputStream stream = new ByteArrayOutputStream();
+    // More packets than fit in the initial buffer, so that it's refilled and grown.
+    for (int i = 0; i < 200; i++) {
+      stream.write(createPacket(PID, /* continuityCounter= */ i, /* payloadByte= */ i));
+    }
+
+    readToEnd(extractor, stream.toByteArray(), /* maxReadLength= */ Integer.MAX_VALUE);
+
+    assertThat(reader.payloads).hasSize(200);
+    for (int i = 0; i < 200; i++) {
+      assertThat(reader.payloads.get(i)).isEqualTo(createPayload(/* payloadByte= */ i));
+    }
+  }
+
+  @Test
+  public void read_continuityCounterDiscontinuity_seeksReader() throws IOException {
+    RecordingPayloadReader reader = new RecordingPayloadReader();
+    TsExtractor extractor = createExtractor(PID, reader);
+    ByteArrayOutputStream stream = new ByteArrayOutputStream();
+    stream.write(createPacket(PID, /* continuityCounter= */ 14, /* payloadByte= */ 0));
+    stream.write(createPacket(PID, /* continuityCounter= */ 15, /* payloadByte= */ 1));
+    // The counter wraps around, which isn't a discontinuity.
+    stream.write(createPacket(PID, /* continuityCounter= */ 0, /* payloadByte= */ 2));
+    stream.write(createPacket(PID, /* continuityCounter= */ 5, /* payloadByte= */ 3));
+
+    readToEnd(extractor, stream.toByteArray(), /* maxReadLength= */ Integer.MAX_VALUE);
+
+    assertThat(reader.payloads).hasSize(4);
+    assertThat(reader.seekCount).isEqualTo(1);
+    assertThat(reader.seekCountBeforePayload).containsExactly(0, 0, 0, 1).inOrder();
+  }
+
+  @Test
+  public void read_duplicateContinuityCounter_dropsPacket() throws IOException {
+    RecordingPayloadReader reader = new RecordingPayloadReader();
+    TsExtractor extractor = createExtractor(PID, reader);
+    ByteArrayOutputStream stream = new ByteArrayOutputStream();
+    stream.write(createPacket(PID, /* continuityCounter= */ 0, /* payloadByte= */ 0));
+    stream.write(createPacket(PID, /* continuityCounter= */ 1, /* payloadByte= */ 1));
+    stream.write(createPacket(PID, /* continuityCounter= */ 1, /* payloadByte= */ 1));
+    stream.write(createPacket(PID, /* continuityCounter= */ 2, /* payloadByte= */ 2));
+
+    readToEnd(extractor, stream.toByteArray(), /* maxReadLength= */ Integer.MAX_VALUE);
+
+    assertThat(reader.payloads).hasSize(3);
+    assertThat(reader.payloads.get(2)).isEqualTo(createPayload(/* payloadByte= */ 2));
+    assertThat(reader.seekCount).isEqualTo(0);
+  }
+
+  @Test
+  public void read_continuityCountersArePerPid() throws IOException {
+    int otherPid = 0x101;
+    RecordingPayloadReader reader = new RecordingPayloadReader();
+    RecordingPayloadReader otherReader = new RecordingPayloadReader();
+    TsExtractor extractor = createExtractor(PID, reader, otherPid, otherReader);
+    ByteArrayOutputStream stream = new ByteArrayOutputStream();
+    for (int i = 0; i < 4; i++) {
+      stream.write(createPacket(PID, /* continuityCounter= */ i, /* payloadByte= */ i));
+      stream.write(createPacket(otherPid, /* continuityCounter= */ 8 + i, /* payloadByte= */ i));
+    }
+
+    readToEnd(extractor, stream.toByteArray(), /* maxReadLength= */ Integer.MAX_VALUE);
+
+    assertThat(reader.payloads).hasSize(4);
+    assertThat(otherReader.payloads).hasSize(4);
+    assertThat(reader.seekCount).isEqualTo(0);
+    assertThat(otherReader.seekCount).isEqualTo(0);
+  }
+
+  @Test
+  public void read_dispatchesPacketsByPid() throws IOException {
+    int maxPid = 0x1FFF;
+    RecordingPayloadReader reader = new RecordingPayloadReader();
+    RecordingPayloadReader maxPidReader = new RecordingPayloadReader();
+    TsExtractor extractor = createExtractor(PID, reader, maxPid, maxPidReader);
+    ByteArrayOutputStream stream = new ByteArrayOutputStream();
+    for (int i = 0; i < 3; i++) {
+      stream.write(createPacket(PID, /* continuityCounter= */ i, /* payloadByte= */ i));
+      // A PID that no reader is interested in.
+      stream.write(createPacket(/* pid= */ 0x200, i, /* payloadByte= */ 0));
+      stream.write(createPacket(maxPid, /* continuityCounter= */ i, /* payloadByte= */ 10 + i));
+    }
+
+    readToEnd(extractor, stream.toByteArray(), /* maxReadLength= */ 300);
+
+    assertThat(reader.payloads).hasSize(3);
+    assertThat(maxPidReader.payloads).hasSize(3);
+    for (int i = 0; i < 3; i++) {
+      assertThat(reader.payloads.get(i)).isEqualTo(createPayload(/* payloadByte= */ i));
+      assertThat(maxPidReader.payloads.get(i)).isEqualTo(createPayload(/* payloadByte= */ 10 + i));
+    }
+  }
+
+  @Test
+  public void read_packetWithTransportError_dropsPacket() throws IOException {
+    RecordingPayloadReader reader = new RecordingPayloadReader();
+    TsExtractor extractor = createExtractor(PID, reader);
+    byte[] erroredPacket = createPacket(PID, /* continuityCounter= */ 1, /* payloadByte= */ 1);
+    erroredPacket[1] |= (byte) 0x80;
+    ByteArrayOutputStream stream = new ByteArrayOutputStream();
+    stream.write(createPacket(PID, /* continuityCounter= */ 0, /* payloadByte= */ 0));
+    stream.write(erroredPacket);
+    stream.write(createPacket(PID, /* continuityCounter= */ 1, /* payloadByte= */ 2));
+
+    readToEnd(extractor, stream.toByteArray(), /* maxReadLength= */ Integer.MAX_VALUE);
+
+    assertThat(reader.payloads).hasSize(2);
+    assertThat(reader.payloads.get(1)).isEqualTo(createPayload(/* payloadByte= */ 2));
+    assertThat(reader.seekCount).isEqualTo(0);
+  }
+
+  @Test
+  public void read_garbageBetweenPackets_resynchronizes() throws IOException {
+    RecordingPayloadReader reader = new RecordingPayloadReader();
+    TsExtractor extractor = createExtractor(PID, reader);
+    ByteArrayOutputStream stream = new ByteArrayOutputStream();
+    stream.write(createPacket(PID, /* continuityCounter= */ 0, /* payloadByte= */ 0));
+    stream.write(new byte[] {1, 2, 3});
+    stream.write(createPacket(PID, /* continuityCounter= */ 1, /* payloadByte= */ 1));
+    stream.write(createPacket(PID, /* continuityCounter= */ 2, /* payloadByte= */ 2));
+
+    readToEnd(extractor, stream.toByteArray(), /* maxReadLength= */ Integer.MAX_VALUE);
+
+    assertThat(reader.payloads).hasSize(3);
+    assertThat(reader.payloads.get(2)).isEqualTo(createPayload(/* payloadByte= */ 2));
+  }
+
+  private static TsExtractor createExtractor(int pid, TsPayloadReader reader) {
+    SparseArray<TsPayloadReader> initialPayloadReaders = new SparseArray<>();
+    initialPayloadReaders.put(pid, reader);
+    return createExtractor(initialPayloadReaders);
+  }
+
+  private static TsExtractor createExtractor(
+      int pid, TsPayloadReader reader, int otherPid, TsPayloadReader otherReader) {
+    SparseArray<TsPayloadReader> initialPayloadReaders = new SparseArray<>();
+    initialPayloadReaders.put(pid, reader);
+    initialPayloadReaders.put(otherPid, otherReader);
+    return createExtractor(initialPayloadReaders);
+  }
+
+  /**
+   * Creates an extractor in {@link TsExtractor#MODE_MULTI_PMT} that reads the given PIDs with the
+   * given readers.
+   */
+  private static TsExtractor createExtractor(SparseArray<TsPayloadReader> initialPayloadReaders) {
+    TsPayloadReader.Factory payloadReaderFactory =
+        new TsPayloadReader.Factory() {
+          @Override
+          public SparseArray<TsPayloadReader> createInitialPayloadReaders() {
+            return initialPayloadReaders;
+          }
+
+          @Override
+          @Nullable
+          public TsPayloadReader createPayloadReader(
+              int streamType, TsPayloadReader.EsInfo esInfo) {
+            return null;
+          }
+        };
+    TsExtractor extractor =
+        new TsExtractor(
+            TsExtractor.MODE_MULTI_PMT,
+            /* extractorFlags= */ 0,
+            SubtitleParser.Factory.UNSUPPORTED,
+            new TimestampAdjuster(/* firstSampleTimestampUs= */ 0),
+            payloadReaderFactory,
+            TsExtractor.DEFAULT_TIMESTAMP_SEARCH_BYTES);
+    extractor.init(ExtractorOutput.PLACEHOLDER);
+    return extractor;
+  }
+
+  private static void readToEnd(Extractor extractor, byte[] data, int maxReadLength)
+      throws IOException {
+    ExtractorInput input =
+        new DefaultExtractorInput(
+            new ShortReadDataReader(data, maxReadLength), /* position= */ 0, C.LENGTH_UNSET);
+    PositionHolder positionHolder = new PositionHolder();
+    while (extractor.read(input, positionHolder) != Extractor.RESULT_END_OF_INPUT) {}
+  }
+
+  private static byte[] createPacket(int pid, int continuityCounter, int payloadByte) {
+    byte[] packet = new byte[TS_PACKET_SIZE];
+    packet[0] = (byte) TsExtractor.TS_SYNC_BYTE;
+    packet[1] = (byte) (pid >> 8);
+    packet[2] = (byte) pid;
+    // Payload only, with no adaptation field.
+    packet[3] = (byte) (0x10 | (continuityCounter & 0xF));
+    System.arraycopy(createPayload(payloadByte), 0, packet, 4, PAYLOAD_SIZE);
+    return packet;
+  }
+
+  private static byte[] createPayload(int payloadByte) {
+    byte[] payload = new byte[PAYLOAD_SIZE];
+    for (int i = 0; i < payload.length; i++) {
+      // Avoid sync bytes, so that payloads can't be mistaken for packets.
+      byte value = (byte) (payloadByte + i);
+      payload[i] = value == TsExtractor.TS_SYNC_BYTE ? 0 : value;
+    }
+    return payload;
+  }
+
+  /** A {@link DataReader} that returns at most a given number of bytes from each read. */
+  private static final class ShortReadDataReader implements DataReader {
+
+    private final byte[] data;
+    private final int maxReadLength;
+
+    private int position;
+
+    public ShortReadDataReader(byte[] data, int maxReadLength) {
+      this.data = data;
+      this.maxReadLength = maxReadLength;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) {
+      if (position == data.length) {
+        return C.RESULT_END_OF_INPUT;
+      }
+      int bytesRead = min(min(length, maxReadLength), data.length - position);
+      System.arraycopy(data, position, buffer, offset, bytesRead);
+      position += bytesRead;
+      return bytesRead;
+    }
+  }
+
+  /** A {@link TsPayloadReader} that records the payloads it consumes and its seeks. */
+  private static final class RecordingPayloadReader implements TsPayloadReader {
+
+    public final List<byte[]> payloads;
+    public final List<Integer> seekCountBeforePayload;
+    public int seekCount;
+
+    public RecordingPayloadReader() {
+      payloads = new ArrayList<>();
+      seekCountBeforePayload = new ArrayList<>();
+    }
+
+    @Override
+    public void init(
+        TimestampAdjuster timestampAdjuster,
+        ExtractorOutput extractorOutput,
+        TrackIdGenerator idGenerator) {}
+
+    @Override
+    public void seek() {
+      seekCount++;
+    }
+
+    @Override
+    public void consume(ParsableByteArray data, @Flags int flags) {
+      byte[] payload = new byte[data.bytesLeft()];
+      data.readBytes(payload, /* offset= */ 0, payload.length);
+      payloads.add(payload);
+      seekCountBeforePayload.add(seekCount);
+    }
+  }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.videoplayer.test.utils;
+
+import android.os.Handler;
+import android.os.Looper;
+import androidx.annotation.Nullable;
+import com.example.videoplayer.common.C;
+import com.example.videoplayer.common.util.Clock;
+import com.example.videoplayer.common.util.HandlerWrapper;
+
+/**
+ * Fake {@link Clock} implementation that only advances when {@link #advanceTime(long)} is called.
+ *
+ * <p>Handlers created by this clock are backed by {@link Clock#DEFAULT}, so messages they post run
+ * in real time rather than fake time.
+ */
+public final class FakeClock implements Clock {
+
+  private final long bootTimeMs;
+
+  private long timeSinceBootMs;
+
+  /**
+   * Creates a fake clock that starts at the given time since boot.
+   *
+   * @param initialTimeMs The initial elapsed time since boot, in milliseconds.
+   */
+  public FakeClock(long initialTimeMs) {
+    this(/* bootTimeMs= */ 0, initialTimeMs);
+  }
+
+  /**
+   * Creates a fake clock.
+   *
+   * @param bootTimeMs The time the device booted since the Unix Epoch, in milliseconds.
+   * @param initialTimeMs The initial elapsed time since boot, in milliseconds.
+   */
+  public FakeClock(long bootTimeMs, long initialTimeMs) {
+    this.bootTimeMs = bootTimeMs;
+    this.timeSinceBootMs = initialTimeMs;
+  }
+
+  /**
+   * Advances the time.
+   *
+   * @param timeDiffMs The amount of time to add to the timestamp in milliseconds.
+   */
+  public synchronized void advanceTime(long timeDiffMs) {
+    timeSinceBootMs += timeDiffMs;
+  }
+
+  @Override
+  public synchronized long currentTimeMillis() {
+    return bootTimeMs + timeSinceBootMs;
+  }
+
+  @Override
+  public synchronized long elapsedRealtime() {
+    return timeSinceBootMs;
+  }
+
+  @Override
+  public synchronized long uptimeMillis() {
+    return elapsedRealtime();
+  }
+
+  @Override
+  public synchronized long nanoTime() {
+    return timeSinceBootMs * C.NANOS_PER_SECOND / C.MILLIS_PER_SECOND;
+  }
+
+  @Override
+  public HandlerWrapper createHandler(Looper looper, @Nullable Handler.Callback callback) {
+    return Clock.DEFAULT.createHandler(looper, callback);
+  }
+
+  @Override
+  public void onThreadBlocked() {}
+}